@@ -0,0 +1,158 @@
+/*
+ * This file is part of Caustic.
+ *
+ * Copyright (c) 2013 Spout LLC <http://www.spout.org/>
+ * Caustic is licensed under the Spout License Version 1.
+ *
+ * Caustic is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the Free
+ * Software Foundation, either version 3 of the License, or (at your option)
+ * any later version.
+ *
+ * In addition, 180 days after any changes are published, you can use the
+ * software, incorporating those changes, under the terms of the MIT license,
+ * as described in the Spout License Version 1.
+ *
+ * Caustic is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE.  See the GNU Lesser General Public License for
+ * more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License,
+ * the MIT license and the Spout License Version 1 along with this program.
+ * If not, see <http://www.gnu.org/licenses/> for the GNU Lesser General Public
+ * License and see <http://spout.in/licensev1> for the full license, including
+ * the MIT license.
+ */
+package org.spout.renderer.benchmark;
+
+/**
+ * Generates the file corpora for the loader benchmarks. All corpora are grids of quads over the unit square with a height variation, texture coords and normals, so their size grows with the square of
+ * the grid size.
+ * <p/>
+ * The grids mirror the ones of {@code TestObjFiles} and {@code TestColladaFiles} in the tests, which this module can't depend on. Keep them in sync, so the benchmarks measure the files the tests check.
+ */
+final class Corpora {
+	private Corpora() {
+	}
+
+	/**
+	 * Creates a triangulated .obj grid. Each vertex uses the same index for all three attributes.
+	 *
+	 * @param size The number of quads on each side
+	 * @return The .obj file contents
+	 */
+	static byte[] createObj(int size) {
+		final StringBuilder builder = new StringBuilder();
+		for (int y = 0; y <= size; y++) {
+			for (int x = 0; x <= size; x++) {
+				builder.append("v ").append(x / (float) size).append(' ').append(y / (float) size).append(' ').append(getHeight(x, y)).append('\n');
+			}
+		}
+		for (int y = 0; y <= size; y++) {
+			for (int x = 0; x <= size; x++) {
+				builder.append("vt ").append(x / (float) size).append(' ').append(y / (float) size).append('\n');
+			}
+		}
+		for (int y = 0; y <= size; y++) {
+			for (int x = 0; x <= size; x++) {
+				builder.append("vn 0 0 1\n");
+			}
+		}
+		for (int y = 0; y < size; y++) {
+			for (int x = 0; x < size; x++) {
+				final int i = y * (size + 1) + x + 1;
+				appendFace(builder, i, i + 1, i + size + 2);
+				appendFace(builder, i, i + size + 2, i + size + 1);
+			}
+		}
+		return builder.toString().getBytes();
+	}
+
+	private static void appendFace(StringBuilder builder, int a, int b, int c) {
+		builder.append('f');
+		for (int i : new int[]{a, b, c}) {
+			builder.append(' ').append(i).append('/').append(i).append('/').append(i);
+		}
+		builder.append('\n');
+	}
+
+	/**
+	 * Creates a Collada grid with a single "triangles" primitive. Number arrays are separated by single spaces, so both Collada loaders can read it.
+	 *
+	 * @param size The number of quads on each side
+	 * @return The .dae file contents
+	 */
+	static byte[] createCollada(int size) {
+		final int vertexCount = (size + 1) * (size + 1);
+		final StringBuilder builder = new StringBuilder();
+		builder.append("<?xml version=\"1.0\" encoding=\"utf-8\"?>\n");
+		builder.append("<COLLADA xmlns=\"http://www.collada.org/2005/11/COLLADASchema\" version=\"1.4.1\">\n");
+		builder.append("<library_geometries>\n<geometry id=\"grid\" name=\"Grid\">\n<mesh>\n");
+		builder.append("<source id=\"grid-positions\">\n<float_array id=\"grid-positions-array\" count=\"").append(vertexCount * 3).append("\">");
+		for (int y = 0; y <= size; y++) {
+			for (int x = 0; x <= size; x++) {
+				appendSeparator(builder, x, y);
+				builder.append(x / (float) size).append(' ').append(y / (float) size).append(' ').append(getHeight(x, y));
+			}
+		}
+		builder.append("</float_array>\n");
+		appendAccessor(builder, "grid-positions-array", vertexCount, 3);
+		builder.append("<source id=\"grid-normals\">\n<float_array id=\"grid-normals-array\" count=\"").append(vertexCount * 3).append("\">");
+		for (int y = 0; y <= size; y++) {
+			for (int x = 0; x <= size; x++) {
+				appendSeparator(builder, x, y);
+				builder.append("0 0 1");
+			}
+		}
+		builder.append("</float_array>\n");
+		appendAccessor(builder, "grid-normals-array", vertexCount, 3);
+		builder.append("<source id=\"grid-map\">\n<float_array id=\"grid-map-array\" count=\"").append(vertexCount * 2).append("\">");
+		for (int y = 0; y <= size; y++) {
+			for (int x = 0; x <= size; x++) {
+				appendSeparator(builder, x, y);
+				builder.append(x / (float) size).append(' ').append(y / (float) size);
+			}
+		}
+		builder.append("</float_array>\n");
+		appendAccessor(builder, "grid-map-array", vertexCount, 2);
+		builder.append("<vertices id=\"grid-vertices\">\n<input semantic=\"POSITION\" source=\"#grid-positions\"/>\n</vertices>\n");
+		builder.append("<triangles count=\"").append(size * size * 2).append("\">\n");
+		builder.append("<input semantic=\"VERTEX\" source=\"#grid-vertices\" offset=\"0\"/>\n");
+		builder.append("<input semantic=\"NORMAL\" source=\"#grid-normals\" offset=\"1\"/>\n");
+		builder.append("<input semantic=\"TEXCOORD\" source=\"#grid-map\" offset=\"2\" set=\"0\"/>\n");
+		builder.append("<p>");
+		for (int y = 0; y < size; y++) {
+			for (int x = 0; x < size; x++) {
+				final int i = y * (size + 1) + x;
+				final int[] corners = {i, i + 1, i + size + 2, i, i + size + 2, i + size + 1};
+				for (int c = 0; c < corners.length; c++) {
+					if (x != 0 || y != 0 || c != 0) {
+						builder.append(' ');
+					}
+					builder.append(corners[c]).append(' ').append(corners[c]).append(' ').append(corners[c]);
+				}
+			}
+		}
+		builder.append("</p>\n</triangles>\n</mesh>\n</geometry>\n</library_geometries>\n</COLLADA>\n");
+		return builder.toString().getBytes();
+	}
+
+	private static float getHeight(int x, int y) {
+		return (x * 7 + y * 3) % 5 / 100f;
+	}
+
+	private static void appendSeparator(StringBuilder builder, int x, int y) {
+		if (x != 0 || y != 0) {
+			builder.append(' ');
+		}
+	}
+
+	private static void appendAccessor(StringBuilder builder, String arrayID, int count, int stride) {
+		builder.append("<technique_common>\n<accessor source=\"#").append(arrayID).append("\" count=\"").append(count).append("\" stride=\"").append(stride).append("\">\n");
+		for (int i = 0; i < stride; i++) {
+			builder.append("<param name=\"").append("XYZ".charAt(i)).append("\" type=\"float\"/>\n");
+		}
+		builder.append("</accessor>\n</technique_common>\n</source>\n");
+	}
+}
@@ -0,0 +1,121 @@
+/*
+ * This file is part of Caustic.
+ *
+ * Copyright (c) 2013 Spout LLC <http://www.spout.org/>
+ * Caustic is licensed under the Spout License Version 1.
+ *
+ * Caustic is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the Free
+ * Software Foundation, either version 3 of the License, or (at your option)
+ * any later version.
+ *
+ * In addition, 180 days after any changes are published, you can use the
+ * software, incorporating those changes, under the terms of the MIT license,
+ * as described in the Spout License Version 1.
+ *
+ * Caustic is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE.  See the GNU Lesser General Public License for
+ * more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License,
+ * the MIT license and the Spout License Version 1 along with this program.
+ * If not, see <http://www.gnu.org/licenses/> for the GNU Lesser General Public
+ * License and see <http://spout.in/licensev1> for the full license, including
+ * the MIT license.
+ */
+package org.spout.renderer.benchmark;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import gnu.trove.list.array.TFloatArrayList;
+import gnu.trove.list.array.TIntArrayList;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import org.spout.math.vector.Vector3f;
+import org.spout.renderer.util.ColladaFileLoader;
+import org.spout.renderer.util.ColladaFileLoader.Geometry;
+import org.spout.renderer.util.MeshFile;
+import org.spout.renderer.util.ObjFileLoader;
+import org.spout.renderer.util.ObjFileLoader.Mesh;
+
+/**
+ * Loading generated .obj and .dae grids with {@link ObjFileLoader} and {@link ColladaFileLoader}, and the same mesh from a {@link MeshFile}. The grid size is the number of quads on each side, the
+ * 600 .obj grid is about 30 MiB, and large enough to be parsed in parallel.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class FileLoaderBenchmark {
+	@Param({"50", "300", "600"})
+	private int gridSize;
+	private byte[] obj;
+	private byte[] collada;
+	private Path objFile;
+	private Path meshFile;
+
+	@Setup
+	public void setup() throws IOException {
+		obj = Corpora.createObj(gridSize);
+		collada = Corpora.createCollada(gridSize);
+		objFile = Files.createTempFile("benchmark", ".obj");
+		Files.write(objFile, obj);
+		meshFile = Files.createTempFile("benchmark", ".mesh");
+		MeshFile.write(ObjFileLoader.loadMesh(new ByteArrayInputStream(obj)).getVertexData(), 0, meshFile);
+	}
+
+	@TearDown
+	public void tearDown() throws IOException {
+		Files.delete(objFile);
+		Files.delete(meshFile);
+	}
+
+	@Benchmark
+	public Vector3f objFromStream() {
+		return ObjFileLoader.load(new ByteArrayInputStream(obj), new TFloatArrayList(), new TFloatArrayList(), new TFloatArrayList(), new TIntArrayList());
+	}
+
+	@Benchmark
+	public Vector3f objFromMappedFile() throws IOException {
+		return ObjFileLoader.load(objFile, new TFloatArrayList(), new TFloatArrayList(), new TFloatArrayList(), new TIntArrayList());
+	}
+
+	@Benchmark
+	public Mesh objMesh() {
+		return ObjFileLoader.loadMesh(new ByteArrayInputStream(obj));
+	}
+
+	@Benchmark
+	public Vector3f colladaDOM() {
+		return ColladaFileLoader.loadMesh(new ByteArrayInputStream(collada), new TFloatArrayList(), new TFloatArrayList(), new TFloatArrayList(), new TIntArrayList());
+	}
+
+	@Benchmark
+	public List<Geometry> colladaStAX() {
+		return ColladaFileLoader.loadGeometries(new ByteArrayInputStream(collada));
+	}
+
+	@Benchmark
+	public MeshFile meshFile() throws IOException {
+		return MeshFile.load(meshFile);
+	}
+}
@@ -0,0 +1,73 @@
+/*
+ * This file is part of Caustic.
+ *
+ * Copyright (c) 2013 Spout LLC <http://www.spout.org/>
+ * Caustic is licensed under the Spout License Version 1.
+ *
+ * Caustic is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the Free
+ * Software Foundation, either version 3 of the License, or (at your option)
+ * any later version.
+ *
+ * In addition, 180 days after any changes are published, you can use the
+ * software, incorporating those changes, under the terms of the MIT license,
+ * as described in the Spout License Version 1.
+ *
+ * Caustic is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE.  See the GNU Lesser General Public License for
+ * more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License,
+ * the MIT license and the Spout License Version 1 along with this program.
+ * If not, see <http://www.gnu.org/licenses/> for the GNU Lesser General Public
+ * License and see <http://spout.in/licensev1> for the full license, including
+ * the MIT license.
+ */
+package org.spout.renderer.benchmark;
+
+import org.spout.renderer.gl.Program;
+import org.spout.renderer.gl.Shader;
+import org.spout.renderer.headless.HeadlessGLFactory;
+
+/**
+ * Helpers for the benchmarks running against the {@link HeadlessGLFactory}.
+ */
+final class Headless {
+	private Headless() {
+	}
+
+	/**
+	 * Creates a headless factory that only counts the commands, so that the memory use stays constant.
+	 *
+	 * @return The factory
+	 */
+	static HeadlessGLFactory createFactory() {
+		final HeadlessGLFactory factory = new HeadlessGLFactory();
+		factory.getCommandLog().setRecording(false);
+		return factory;
+	}
+
+	/**
+	 * Creates a program from the factory with a vertex and fragment shader, declaring the uniforms.
+	 *
+	 * @param factory The factory
+	 * @param uniforms The uniform declarations, such as "mat4 modelMatrix"
+	 * @return The created program
+	 */
+	static Program createProgram(HeadlessGLFactory factory, String... uniforms) {
+		final StringBuilder declarations = new StringBuilder();
+		for (String uniform : uniforms) {
+			declarations.append("uniform ").append(uniform).append(";\n");
+		}
+		final Program program = factory.createProgram();
+		for (String type : new String[]{"vertex", "fragment"}) {
+			final Shader shader = factory.createShader();
+			shader.setSource("$shader_type: " + type + "\n" + declarations + "void main() {}\n");
+			shader.create();
+			program.addShader(shader);
+		}
+		program.create();
+		return program;
+	}
+}
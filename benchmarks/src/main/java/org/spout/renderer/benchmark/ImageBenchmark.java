@@ -0,0 +1,116 @@
+/*
+ * This file is part of Caustic.
+ *
+ * Copyright (c) 2013 Spout LLC <http://www.spout.org/>
+ * Caustic is licensed under the Spout License Version 1.
+ *
+ * Caustic is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the Free
+ * Software Foundation, either version 3 of the License, or (at your option)
+ * any later version.
+ *
+ * In addition, 180 days after any changes are published, you can use the
+ * software, incorporating those changes, under the terms of the MIT license,
+ * as described in the Spout License Version 1.
+ *
+ * Caustic is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE.  See the GNU Lesser General Public License for
+ * more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License,
+ * the MIT license and the Spout License Version 1 along with this program.
+ * If not, see <http://www.gnu.org/licenses/> for the GNU Lesser General Public
+ * License and see <http://spout.in/licensev1> for the full license, including
+ * the MIT license.
+ */
+package org.spout.renderer.benchmark;
+
+import java.awt.image.BufferedImage;
+import java.nio.ByteBuffer;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import org.spout.renderer.gl.Texture.Format;
+import org.spout.renderer.util.CausticUtil;
+import org.spout.renderer.util.TextureAtlas;
+
+/**
+ * Converting images to texture data with {@link CausticUtil#getImageData(java.awt.image.BufferedImage, org.spout.renderer.gl.Texture.Format)}, and packing tiles into a {@link TextureAtlas}.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ImageBenchmark {
+	private static final int ATLAS_SIZE = 256;
+	private static final int TILE_SIZE = 16;
+
+	@Benchmark
+	public ByteBuffer getImageData(ImageState state) {
+		return CausticUtil.getImageData(state.image, state.format);
+	}
+
+	@Benchmark
+	public TextureAtlas addTextures(AtlasState state) throws Exception {
+		final TextureAtlas atlas = new TextureAtlas(ATLAS_SIZE, ATLAS_SIZE);
+		final BufferedImage[] tiles = state.tiles;
+		for (int i = 0; i < tiles.length; i++) {
+			atlas.addTexture("tile" + i, tiles[i]);
+		}
+		return atlas;
+	}
+
+	private static BufferedImage createImage(int size, Random random) {
+		final BufferedImage image = new BufferedImage(size, size, BufferedImage.TYPE_INT_ARGB);
+		for (int y = 0; y < size; y++) {
+			for (int x = 0; x < size; x++) {
+				image.setRGB(x, y, random.nextInt());
+			}
+		}
+		return image;
+	}
+
+	@State(Scope.Thread)
+	public static class ImageState {
+		@Param({"256", "1024"})
+		private int imageSize;
+		@Param({"RGB", "RGBA"})
+		private Format format;
+		private BufferedImage image;
+
+		@Setup
+		public void setup() {
+			image = createImage(imageSize, new Random(42));
+		}
+	}
+
+	@State(Scope.Thread)
+	public static class AtlasState {
+		@Param({"16", "64"})
+		private int tileCount;
+		private BufferedImage[] tiles;
+
+		@Setup
+		public void setup() {
+			final Random random = new Random(42);
+			tiles = new BufferedImage[tileCount];
+			for (int i = 0; i < tileCount; i++) {
+				tiles[i] = createImage(TILE_SIZE, random);
+			}
+		}
+	}
+}
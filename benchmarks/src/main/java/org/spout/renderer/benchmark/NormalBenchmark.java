@@ -0,0 +1,124 @@
+/*
+ * This file is part of Caustic.
+ *
+ * Copyright (c) 2013 Spout LLC <http://www.spout.org/>
+ * Caustic is licensed under the Spout License Version 1.
+ *
+ * Caustic is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the Free
+ * Software Foundation, either version 3 of the License, or (at your option)
+ * any later version.
+ *
+ * In addition, 180 days after any changes are published, you can use the
+ * software, incorporating those changes, under the terms of the MIT license,
+ * as described in the Spout License Version 1.
+ *
+ * Caustic is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE.  See the GNU Lesser General Public License for
+ * more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License,
+ * the MIT license and the Spout License Version 1 along with this program.
+ * If not, see <http://www.gnu.org/licenses/> for the GNU Lesser General Public
+ * License and see <http://spout.in/licensev1> for the full license, including
+ * the MIT license.
+ */
+package org.spout.renderer.benchmark;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import gnu.trove.list.TFloatList;
+import gnu.trove.list.TIntList;
+import gnu.trove.list.array.TFloatArrayList;
+import gnu.trove.list.array.TIntArrayList;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import org.spout.renderer.util.CausticUtil;
+import org.spout.renderer.util.NormalGenerator;
+
+/**
+ * Generating normals and tangents for a height map grid, with the list based {@link CausticUtil} methods and with {@link NormalGenerator}. A 32 grid is about the size of a remeshed voxel chunk.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class NormalBenchmark {
+	@Param({"32", "500"})
+	private int gridSize;
+	private TFloatList positionList;
+	private TFloatList normalList;
+	private TFloatList textureCoordList;
+	private TIntList indexList;
+	private float[] positions;
+	private float[] normals;
+	private float[] textureCoords;
+	private int[] indices;
+	private float[] tangents;
+	private TFloatList listOutput;
+
+	@Setup
+	public void setup() {
+		final Random random = new Random(42);
+		positionList = new TFloatArrayList();
+		textureCoordList = new TFloatArrayList();
+		indexList = new TIntArrayList();
+		for (int y = 0; y <= gridSize; y++) {
+			for (int x = 0; x <= gridSize; x++) {
+				positionList.add(new float[]{x, random.nextFloat(), y});
+				textureCoordList.add(new float[]{x / (float) gridSize, y / (float) gridSize});
+			}
+		}
+		for (int y = 0; y < gridSize; y++) {
+			for (int x = 0; x < gridSize; x++) {
+				final int i = y * (gridSize + 1) + x;
+				indexList.add(new int[]{i, i + gridSize + 1, i + 1, i + 1, i + gridSize + 1, i + gridSize + 2});
+			}
+		}
+		normalList = CausticUtil.generateNormals(positionList, indexList);
+		positions = positionList.toArray();
+		normals = normalList.toArray();
+		textureCoords = textureCoordList.toArray();
+		indices = indexList.toArray();
+		tangents = new float[positions.length / 3 * 4];
+		listOutput = new TFloatArrayList();
+	}
+
+	@Benchmark
+	public TFloatList normalsFromLists() {
+		CausticUtil.generateNormals(positionList, indexList, listOutput);
+		return listOutput;
+	}
+
+	@Benchmark
+	public float[] normalsFromArrays() {
+		NormalGenerator.generateNormals(positions, indices, normals);
+		return normals;
+	}
+
+	@Benchmark
+	public TFloatList tangentsFromLists() {
+		CausticUtil.generateTangents(positionList, normalList, textureCoordList, indexList, listOutput);
+		return listOutput;
+	}
+
+	@Benchmark
+	public float[] tangentsFromArrays() {
+		NormalGenerator.generateTangents(positions, normals, textureCoords, indices, tangents);
+		return tangents;
+	}
+}
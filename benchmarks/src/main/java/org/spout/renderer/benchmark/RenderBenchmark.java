@@ -0,0 +1,140 @@
+/*
+ * This file is part of Caustic.
+ *
+ * Copyright (c) 2013 Spout LLC <http://www.spout.org/>
+ * Caustic is licensed under the Spout License Version 1.
+ *
+ * Caustic is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the Free
+ * Software Foundation, either version 3 of the License, or (at your option)
+ * any later version.
+ *
+ * In addition, 180 days after any changes are published, you can use the
+ * software, incorporating those changes, under the terms of the MIT license,
+ * as described in the Spout License Version 1.
+ *
+ * Caustic is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE.  See the GNU Lesser General Public License for
+ * more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License,
+ * the MIT license and the Spout License Version 1 along with this program.
+ * If not, see <http://www.gnu.org/licenses/> for the GNU Lesser General Public
+ * License and see <http://spout.in/licensev1> for the full license, including
+ * the MIT license.
+ */
+package org.spout.renderer.benchmark;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import gnu.trove.list.array.TFloatArrayList;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import org.spout.math.vector.Vector3f;
+import org.spout.renderer.Action.RenderModelsAction;
+import org.spout.renderer.Camera;
+import org.spout.renderer.Material;
+import org.spout.renderer.data.Uniform.FloatUniform;
+import org.spout.renderer.data.Uniform.Vector3Uniform;
+import org.spout.renderer.data.VertexAttribute;
+import org.spout.renderer.data.VertexAttribute.DataType;
+import org.spout.renderer.data.VertexData;
+import org.spout.renderer.gl.Context;
+import org.spout.renderer.gl.VertexArray;
+import org.spout.renderer.headless.CommandLog;
+import org.spout.renderer.headless.HeadlessGLFactory;
+import org.spout.renderer.model.Model;
+
+/**
+ * Executing a {@link RenderModelsAction} on models spread over a few materials, against the {@link HeadlessGLFactory}, so that only the sorting, the matrix computations and the uniform dispatch are
+ * measured. With a static camera the render queue of the action stays sorted, moving it changes the depth of all the models, so they are all sorted again. The models are spread in front of the
+ * camera, with about half of them outside of its view frustum, to compare with rendering with frustum culling.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class RenderBenchmark {
+	@Param({"100", "10000"})
+	private int modelCount;
+	@Param({"1", "16"})
+	private int materialCount;
+	private Context context;
+	private CommandLog log;
+	private Camera camera;
+	private RenderModelsAction action;
+	private RenderModelsAction culledAction;
+	private int frame = 0;
+
+	@Setup
+	public void setup() {
+		final HeadlessGLFactory factory = Headless.createFactory();
+		log = factory.getCommandLog();
+		context = factory.createContext();
+		context.create();
+		camera = Camera.createPerspective(60, 1280, 720, 0.1f, 1000);
+		context.setCamera(camera);
+		context.getUniforms().add(new Vector3Uniform("lightPosition", new Vector3f(0, 100, 0)));
+		final VertexData data = new VertexData();
+		final VertexAttribute positions = new VertexAttribute("positions", DataType.FLOAT, 3);
+		positions.setData(TFloatArrayList.wrap(new float[]{0, 0, 0, 1, 0, 0, 0, 1, 0}));
+		data.addAttribute(0, positions);
+		data.getIndices().add(new int[]{0, 1, 2});
+		final VertexArray vertexArray = factory.createVertexArray();
+		vertexArray.setData(data);
+		vertexArray.create();
+		final Material[] materials = new Material[materialCount];
+		for (int i = 0; i < materialCount; i++) {
+			materials[i] = new Material(Headless.createProgram(factory, "mat4 projectionMatrix", "mat4 viewMatrix", "mat4 modelMatrix", "mat4 normalMatrix",
+					"vec3 lightPosition", "float diffuseIntensity", "vec3 modelColor"));
+			materials[i].getUniforms().add(new FloatUniform("diffuseIntensity", 0.8f));
+		}
+		final Random random = new Random(42);
+		final List<Model> models = new ArrayList<>(modelCount);
+		for (int i = 0; i < modelCount; i++) {
+			final Model model = new Model(vertexArray, materials[random.nextInt(materialCount)]);
+			model.setPosition(new Vector3f(random.nextFloat() * 100 - 50, random.nextFloat() * 100 - 50, -random.nextFloat() * 100));
+			model.getUniforms().add(new Vector3Uniform("modelColor", new Vector3f(random.nextFloat(), random.nextFloat(), random.nextFloat())));
+			models.add(model);
+		}
+		action = new RenderModelsAction(models);
+		culledAction = new RenderModelsAction(models);
+		culledAction.getQueue().setCullingEnabled(true);
+		culledAction.getQueue().setParallelCullingThreshold(4096);
+	}
+
+	@Benchmark
+	public long execute() {
+		action.execute(context);
+		return log.getCommandCount();
+	}
+
+	@Benchmark
+	public long executeMovingCamera() {
+		camera.setPosition(new Vector3f(0, 0, frame++ & 63));
+		action.execute(context);
+		return log.getCommandCount();
+	}
+
+	@Benchmark
+	public long executeCulled() {
+		culledAction.execute(context);
+		return log.getCommandCount();
+	}
+}
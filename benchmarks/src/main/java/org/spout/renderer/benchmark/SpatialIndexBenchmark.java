@@ -0,0 +1,183 @@
+/*
+ * This file is part of Caustic.
+ *
+ * Copyright (c) 2013 Spout LLC <http://www.spout.org/>
+ * Caustic is licensed under the Spout License Version 1.
+ *
+ * Caustic is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the Free
+ * Software Foundation, either version 3 of the License, or (at your option)
+ * any later version.
+ *
+ * In addition, 180 days after any changes are published, you can use the
+ * software, incorporating those changes, under the terms of the MIT license,
+ * as described in the Spout License Version 1.
+ *
+ * Caustic is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE.  See the GNU Lesser General Public License for
+ * more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License,
+ * the MIT license and the Spout License Version 1 along with this program.
+ * If not, see <http://www.gnu.org/licenses/> for the GNU Lesser General Public
+ * License and see <http://spout.in/licensev1> for the full license, including
+ * the MIT license.
+ */
+package org.spout.renderer.benchmark;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import gnu.trove.list.array.TFloatArrayList;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import org.spout.math.vector.Vector3f;
+import org.spout.renderer.Camera;
+import org.spout.renderer.Frustum;
+import org.spout.renderer.Material;
+import org.spout.renderer.data.Bounds;
+import org.spout.renderer.data.VertexAttribute;
+import org.spout.renderer.data.VertexAttribute.DataType;
+import org.spout.renderer.data.VertexData;
+import org.spout.renderer.gl.VertexArray;
+import org.spout.renderer.headless.HeadlessGLFactory;
+import org.spout.renderer.model.Model;
+import org.spout.renderer.model.SpatialIndex;
+
+/**
+ * Culling models spread in a large cube with a {@link SpatialIndex}, compared to testing the bounds of every model of a list. The camera only sees a small part of the cube. The moving variants move
+ * a hundredth of the models before each query, half of them slightly, so they stay in their leaf box, and half of them anywhere in the cube. The list and the index have their own models, so that
+ * the list ones aren't registered with the index.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+public class SpatialIndexBenchmark {
+	private static final float WORLD_SIZE = 1000;
+
+	@Benchmark
+	public int cullList(ListState state) {
+		return state.cull();
+	}
+
+	@Benchmark
+	public int queryIndex(IndexState state) {
+		return state.query();
+	}
+
+	@Benchmark
+	public int cullListMoving(ListState state) {
+		state.moveModels();
+		return state.cull();
+	}
+
+	@Benchmark
+	public int queryIndexMoving(IndexState state) {
+		state.moveModels();
+		return state.query();
+	}
+
+	@State(Scope.Thread)
+	public static class ModelState {
+		@Param({"10000", "100000", "1000000"})
+		protected int modelCount;
+		protected final List<Model> models = new ArrayList<>();
+		protected final List<Model> results = new ArrayList<>();
+		protected Frustum frustum;
+		private Random random;
+
+		protected void createModels() {
+			final HeadlessGLFactory factory = Headless.createFactory();
+			final VertexData data = new VertexData();
+			final VertexAttribute positions = new VertexAttribute("positions", DataType.FLOAT, 3);
+			positions.setData(TFloatArrayList.wrap(new float[]{0, 0, 0, 1, 0, 0, 0, 1, 0}));
+			data.addAttribute(0, positions);
+			data.getIndices().add(new int[]{0, 1, 2});
+			final VertexArray vertexArray = factory.createVertexArray();
+			vertexArray.setData(data);
+			vertexArray.create();
+			final Material material = new Material(Headless.createProgram(factory, "mat4 modelMatrix"));
+			random = new Random(42);
+			for (int i = 0; i < modelCount; i++) {
+				final Model model = new Model(vertexArray, material);
+				model.setPosition(randomPosition());
+				models.add(model);
+			}
+			final Camera camera = Camera.createPerspective(60, 1280, 720, 0.1f, 250);
+			camera.setPosition(new Vector3f(WORLD_SIZE / 2, WORLD_SIZE / 2, WORLD_SIZE / 2));
+			frustum = camera.getFrustum();
+		}
+
+		protected void moveModels() {
+			for (int i = 0, count = modelCount / 100; i < count; i++) {
+				final Model model = models.get(random.nextInt(modelCount));
+				if ((i & 1) == 0) {
+					model.setPosition(model.getPosition().add(random.nextFloat() * 0.01f, 0, 0));
+				} else {
+					model.setPosition(randomPosition());
+				}
+			}
+		}
+
+		private Vector3f randomPosition() {
+			return new Vector3f(random.nextFloat() * WORLD_SIZE, random.nextFloat() * WORLD_SIZE, random.nextFloat() * WORLD_SIZE);
+		}
+	}
+
+	@State(Scope.Thread)
+	public static class ListState extends ModelState {
+		@Setup
+		public void setup() {
+			createModels();
+		}
+
+		protected int cull() {
+			results.clear();
+			for (int i = 0, size = models.size(); i < size; i++) {
+				final Model model = models.get(i);
+				final Bounds bounds = model.getBounds();
+				if (bounds == null || frustum.intersects(bounds)) {
+					results.add(model);
+				}
+			}
+			return results.size();
+		}
+	}
+
+	@State(Scope.Thread)
+	public static class IndexState extends ModelState {
+		private SpatialIndex index;
+
+		@Setup
+		public void setup() {
+			createModels();
+			index = new SpatialIndex(modelCount);
+			for (Model model : models) {
+				index.add(model);
+			}
+			// Build the tree
+			query();
+		}
+
+		protected int query() {
+			results.clear();
+			index.queryFrustum(frustum, results);
+			return results.size();
+		}
+	}
+}
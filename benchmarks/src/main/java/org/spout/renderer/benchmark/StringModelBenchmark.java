@@ -0,0 +1,99 @@
+/*
+ * This file is part of Caustic.
+ *
+ * Copyright (c) 2013 Spout LLC <http://www.spout.org/>
+ * Caustic is licensed under the Spout License Version 1.
+ *
+ * Caustic is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the Free
+ * Software Foundation, either version 3 of the License, or (at your option)
+ * any later version.
+ *
+ * In addition, 180 days after any changes are published, you can use the
+ * software, incorporating those changes, under the terms of the MIT license,
+ * as described in the Spout License Version 1.
+ *
+ * Caustic is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE.  See the GNU Lesser General Public License for
+ * more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License,
+ * the MIT license and the Spout License Version 1 along with this program.
+ * If not, see <http://www.gnu.org/licenses/> for the GNU Lesser General Public
+ * License and see <http://spout.in/licensev1> for the full license, including
+ * the MIT license.
+ */
+package org.spout.renderer.benchmark;
+
+import java.awt.Font;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import org.spout.renderer.gl.Program;
+import org.spout.renderer.headless.CommandLog;
+import org.spout.renderer.headless.HeadlessGLFactory;
+import org.spout.renderer.model.StringModel;
+
+/**
+ * Setting and rendering the string of a {@link StringModel}, with and without color codes. The model is created from the {@link HeadlessGLFactory}, so the rendering only measures the per glyph uniform
+ * updates.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class StringModelBenchmark {
+	private static final String GLYPHS = " !\"#$%&'()*+,-./0123456789:;<=>?@ABCDEFGHIJKLMNOPQRSTUVWXYZ[\\]^_`abcdefghijklmnopqrstuvwxyz{|}~";
+	private static final String LINE = "The quick brown fox jumps over the lazy dog 0123456789\n";
+	@Param({"1", "20"})
+	private int lineCount;
+	@Param({"false", "true"})
+	private boolean colored;
+	private StringModel model;
+	private CommandLog log;
+	private String string;
+
+	@Setup
+	public void setup() {
+		final HeadlessGLFactory factory = Headless.createFactory();
+		log = factory.getCommandLog();
+		final Program program = Headless.createProgram(factory, "vec4 fontColor", "vec2 glyphOffset", "sampler2D glyphs");
+		model = new StringModel(factory, program, GLYPHS, new Font(Font.MONOSPACED, Font.PLAIN, 16), 1024);
+		final StringBuilder builder = new StringBuilder();
+		for (int i = 0; i < lineCount; i++) {
+			if (colored) {
+				builder.append("#ffff0000").append(LINE, 0, 20).append("#ff00ff00").append(LINE, 20, 40).append("#ff0000ff").append(LINE.substring(40));
+			} else {
+				builder.append(LINE);
+			}
+		}
+		string = builder.toString();
+		model.setString(string);
+	}
+
+	@Benchmark
+	public StringModel setString() {
+		model.setString(string);
+		return model;
+	}
+
+	@Benchmark
+	public long render() {
+		model.render();
+		return log.getCommandCount();
+	}
+}
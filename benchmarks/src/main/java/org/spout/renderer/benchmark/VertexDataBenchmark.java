@@ -0,0 +1,129 @@
+/*
+ * This file is part of Caustic.
+ *
+ * Copyright (c) 2013 Spout LLC <http://www.spout.org/>
+ * Caustic is licensed under the Spout License Version 1.
+ *
+ * Caustic is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the Free
+ * Software Foundation, either version 3 of the License, or (at your option)
+ * any later version.
+ *
+ * In addition, 180 days after any changes are published, you can use the
+ * software, incorporating those changes, under the terms of the MIT license,
+ * as described in the Spout License Version 1.
+ *
+ * Caustic is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE.  See the GNU Lesser General Public License for
+ * more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License,
+ * the MIT license and the Spout License Version 1 along with this program.
+ * If not, see <http://www.gnu.org/licenses/> for the GNU Lesser General Public
+ * License and see <http://spout.in/licensev1> for the full license, including
+ * the MIT license.
+ */
+package org.spout.renderer.benchmark;
+
+import java.nio.ByteBuffer;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import gnu.trove.list.TFloatList;
+import gnu.trove.list.TIntList;
+import gnu.trove.list.array.TFloatArrayList;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import org.spout.renderer.data.VertexAttribute;
+import org.spout.renderer.data.VertexAttribute.DataType;
+import org.spout.renderer.data.VertexData;
+import org.spout.renderer.data.VertexFormat;
+import org.spout.renderer.util.CausticUtil;
+
+/**
+ * Building the buffers of {@link VertexAttribute} and {@link VertexData}: setting attribute data from lists and arrays, interleaving, and encoding the indices.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class VertexDataBenchmark {
+	@Param({"1000", "100000"})
+	private int vertexCount;
+	private TFloatList positionList;
+	private float[] positionArray;
+	private VertexAttribute attribute;
+	private VertexData data;
+	private VertexFormat format;
+
+	@Setup
+	public void setup() {
+		final Random random = new Random(42);
+		positionList = new TFloatArrayList(vertexCount * 3);
+		for (int i = 0; i < vertexCount * 3; i++) {
+			positionList.add(random.nextFloat());
+		}
+		positionArray = positionList.toArray();
+		attribute = new VertexAttribute("positions", DataType.FLOAT, 3);
+		data = new VertexData();
+		final VertexAttribute positions = new VertexAttribute("positions", DataType.FLOAT, 3);
+		positions.setData(positionList);
+		data.addAttribute(0, positions);
+		final VertexAttribute normals = new VertexAttribute("normals", DataType.FLOAT, 3);
+		normals.setData(positionList);
+		data.addAttribute(1, normals);
+		final TIntList indices = data.getIndices();
+		// Indices that fit in an unsigned short, so that both types can encode them
+		final int indexRange = Math.min(vertexCount, 65536);
+		for (int i = 0; i < vertexCount * 2; i++) {
+			indices.add(random.nextInt(indexRange));
+		}
+		format = new VertexFormat(data);
+	}
+
+	@Benchmark
+	public VertexAttribute setDataFromList() {
+		attribute.setData(positionList);
+		return attribute;
+	}
+
+	@Benchmark
+	public VertexAttribute transferDataFromArray() {
+		final ByteBuffer buffer = CausticUtil.createByteBuffer(positionArray.length * DataType.FLOAT.getByteSize());
+		buffer.asFloatBuffer().put(positionArray);
+		attribute.transferData(buffer);
+		return attribute;
+	}
+
+	@Benchmark
+	public ByteBuffer interleave() {
+		return format.interleave(data);
+	}
+
+	@Benchmark
+	public int getIndicesBuffer(IndicesType type) {
+		final ByteBuffer buffer = data.getIndicesBuffer(type.indicesType);
+		final int remaining = buffer.remaining();
+		data.releaseIndicesBuffer(buffer);
+		return remaining;
+	}
+
+	@State(Scope.Benchmark)
+	public static class IndicesType {
+		@Param({"UNSIGNED_SHORT", "UNSIGNED_INT"})
+		private DataType indicesType;
+	}
+}
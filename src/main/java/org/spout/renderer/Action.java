@@ -26,7 +26,7 @@
  */
 package org.spout.renderer;
 
-import java.util.Collections;
+import java.util.ArrayList;
 import java.util.List;
 
 import org.spout.renderer.data.Color;
@@ -35,6 +35,7 @@ import org.spout.renderer.gl.Context.Capability;
 import org.spout.renderer.gl.FrameBuffer;
 import org.spout.renderer.gl.Program;
 import org.spout.renderer.model.Model;
+import org.spout.renderer.model.SpatialIndex;
 import org.spout.renderer.util.Rectangle;
 
 /**
@@ -240,32 +241,84 @@ public abstract class Action {
 	}
 
 	/**
-	 * An action that renders the models to the bound buffer. The models will be reordered to be grouped by material. This reordering is done via a stable sort ({@link
-	 * java.util.Collections#sort(java.util.List)}) so that models with the same materials are not reordered. This grouping improves performance by reducing the amount of rendering calls.
+	 * An action that renders the models to the bound buffer. The models are rendered in the order of a {@link RenderQueue}, which groups them by program, textures, material and vertex array, then
+	 * from front to back. This grouping improves performance by reducing the amount of state changes. The queue is only sorted again when models are added, removed or changed. If culling is enabled
+	 * on the queue, the models outside of the view frustum of the camera are skipped. The models can also come from a {@link SpatialIndex}, queried for those in the view frustum on each execution.
 	 */
 	public static class RenderModelsAction extends Action {
 		private final List<Model> models;
+		private final SpatialIndex index;
+		private final RenderQueue queue;
 
 		/**
-		 * Constructs a model rendering action with the models to render
+		 * Constructs a model rendering action with the models to render. The list is read on each execution to update the queue of the action, but never modified.
 		 *
 		 * @param models The models
 		 */
 		public RenderModelsAction(List<Model> models) {
+			if (models == null) {
+				throw new IllegalArgumentException("Models cannot be null");
+			}
 			this.models = models;
+			index = null;
+			queue = new RenderQueue();
+		}
+
+		/**
+		 * Constructs a model rendering action with the spatial index of the models to render. Only the models in the view frustum of the camera are queued on each execution.
+		 *
+		 * @param index The spatial index
+		 */
+		public RenderModelsAction(SpatialIndex index) {
+			if (index == null) {
+				throw new IllegalArgumentException("Index cannot be null");
+			}
+			models = new ArrayList<>();
+			this.index = index;
+			queue = new RenderQueue();
+		}
+
+		/**
+		 * Constructs a model rendering action with the queue of the models to render, which is managed by the caller.
+		 *
+		 * @param queue The render queue
+		 */
+		public RenderModelsAction(RenderQueue queue) {
+			if (queue == null) {
+				throw new IllegalArgumentException("Queue cannot be null");
+			}
+			models = null;
+			index = null;
+			this.queue = queue;
 		}
 
 		@Override
 		public void execute(Context context) {
-			// Batch the models with the same materials together
-			Collections.sort(models);
+			// Upload the camera matrices and context uniforms once for all the programs, if the context has a uniform buffer
+			context.updateUniformBuffer();
+			// Batch the models with the same state together
+			if (index != null) {
+				// Reuse the list for the models in the frustum
+				models.clear();
+				index.queryFrustum(context.getCamera().getFrustum(), models);
+			}
+			if (models != null) {
+				queue.setModels(models);
+			}
+			queue.update(context.getCamera());
+			// Mark the models outside of the view frustum, if enabled
+			queue.cull(context.getCamera());
 			// Current material
 			Material current = null;
-			for (Model model : models) {
-				final Material material = model.getMaterial();
-				if (material == null) {
-					throw new IllegalStateException("Null material");
+			// Handles of the matrix uniforms in the current program
+			int modelMatrixHandle = -1;
+			int normalMatrixHandle = -1;
+			for (int i = 0, size = queue.size(); i < size; i++) {
+				if (!queue.isVisible(i)) {
+					continue;
 				}
+				final Model model = queue.get(i);
+				final Material material = model.getMaterial();
 				// If we switched material
 				if (current != material) {
 					// Unbind the old material if any
@@ -276,15 +329,19 @@ public abstract class Action {
 					current = material;
 					// Bind it
 					current.bind();
+					final Program program = current.getProgram();
+					// Resolve the model matrix handles once for the material
+					modelMatrixHandle = program.getUniformHandle("modelMatrix");
+					normalMatrixHandle = program.getUniformHandle("normalMatrix");
 					// Upload the camera matrices
-					uploadCameraMatrices(context.getCamera(), current.getProgram());
+					uploadCameraMatrices(context.getCamera(), program);
 					// Upload the context uniforms
 					context.uploadUniforms(current.getProgram());
 					// Upload the material uniforms
 					material.uploadUniforms();
 				}
 				// Upload the model and normal matrices
-				uploadModelMatrices(model, context.getCamera(), current.getProgram());
+				uploadModelMatrices(model, context.getCamera(), current.getProgram(), modelMatrixHandle, normalMatrixHandle);
 				// Upload the model uniforms
 				model.uploadUniforms();
 				// Render the model
@@ -292,14 +349,26 @@ public abstract class Action {
 			}
 		}
 
+		/**
+		 * Returns the render queue of the action, which can be used to configure the culling and read the culled and visible counts of the last execution.
+		 *
+		 * @return The render queue
+		 */
+		public RenderQueue getQueue() {
+			return queue;
+		}
+
 		private static void uploadCameraMatrices(Camera camera, Program program) {
 			program.setUniform("projectionMatrix", camera.getProjectionMatrix());
 			program.setUniform("viewMatrix", camera.getViewMatrix());
 		}
 
-		private static void uploadModelMatrices(Model model, Camera camera, Program program) {
-			program.setUniform("modelMatrix", model.getMatrix());
-			program.setUniform("normalMatrix", camera.getViewMatrix().mul(model.getMatrix()).invert().transpose());
+		private static void uploadModelMatrices(Model model, Camera camera, Program program, int modelMatrixHandle, int normalMatrixHandle) {
+			program.setUniform(modelMatrixHandle, model.getMatrix());
+			if (normalMatrixHandle != -1) {
+				// Only computed again when the model or camera moved
+				program.setUniformMatrix4(normalMatrixHandle, model.getNormalMatrix(camera));
+			}
 		}
 	}
 
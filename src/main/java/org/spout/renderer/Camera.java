@@ -32,7 +32,8 @@ import org.spout.math.matrix.MatrixNf;
 import org.spout.math.vector.Vector3f;
 
 /**
- * Represents a camera with a projection, position and rotation, for rendering purposes.
+ * Represents a camera with a projection, position and rotation, for rendering purposes. The camera has a version, incremented each time the view matrix changes, so that values derived from it
+ * can be cached.
  */
 public class Camera {
 	private Matrix4f projection = new Matrix4f();
@@ -41,6 +42,10 @@ public class Camera {
 	private Matrix4f rotationMatrixInverse = new Matrix4f();
 	private Matrix4f matrix = new Matrix4f();
 	private boolean updateMatrix = true;
+	private int version = 0;
+	// The view frustum, and the version it was updated for
+	private final Frustum frustum = new Frustum();
+	private int frustumVersion = -1;
 
 	/**
 	 * Creates a new camera from the supplied projection matrix.
@@ -75,6 +80,29 @@ public class Camera {
 		return matrix;
 	}
 
+	/**
+	 * Returns the view frustum of the camera, for the current projection and view matrices. It's only updated when the camera moved since the last call, in place, so the same frustum is always
+	 * returned.
+	 *
+	 * @return The frustum
+	 */
+	public Frustum getFrustum() {
+		if (frustumVersion != version) {
+			frustum.update(projection, getViewMatrix());
+			frustumVersion = version;
+		}
+		return frustum;
+	}
+
+	/**
+	 * Returns the version of the view matrix, incremented each time the position or rotation is set.
+	 *
+	 * @return The version
+	 */
+	public int getVersion() {
+		return version;
+	}
+
 	/**
 	 * Gets the camera position.
 	 *
@@ -92,6 +120,7 @@ public class Camera {
 	public void setPosition(Vector3f position) {
 		this.position = position;
 		updateMatrix = true;
+		version++;
 	}
 
 	/**
@@ -111,6 +140,7 @@ public class Camera {
 	public void setRotation(Quaternionf rotation) {
 		this.rotation = rotation;
 		updateMatrix = true;
+		version++;
 	}
 
 	/**
@@ -0,0 +1,164 @@
+/*
+ * This file is part of Caustic.
+ *
+ * Copyright (c) 2013 Spout LLC <http://www.spout.org/>
+ * Caustic is licensed under the Spout License Version 1.
+ *
+ * Caustic is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the Free
+ * Software Foundation, either version 3 of the License, or (at your option)
+ * any later version.
+ *
+ * In addition, 180 days after any changes are published, you can use the
+ * software, incorporating those changes, under the terms of the MIT license,
+ * as described in the Spout License Version 1.
+ *
+ * Caustic is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE.  See the GNU Lesser General Public License for
+ * more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License,
+ * the MIT license and the Spout License Version 1 along with this program.
+ * If not, see <http://www.gnu.org/licenses/> for the GNU Lesser General Public
+ * License and see <http://spout.in/licensev1> for the full license, including
+ * the MIT license.
+ */
+package org.spout.renderer;
+
+import org.spout.math.matrix.Matrix4f;
+import org.spout.math.vector.Vector3f;
+import org.spout.renderer.data.Bounds;
+import org.spout.renderer.util.MatrixUtil;
+
+/**
+ * Represents the view frustum of a camera, as six planes extracted from the product of the projection and view matrices. Bounds can be tested against it to skip rendering what the camera can't
+ * see. The planes are normalized and point inwards, so the signed distance of a point to a plane is positive inside the frustum.
+ */
+public class Frustum {
+	private static final int PLANE_COUNT = 6;
+	// The a, b, c and d coefficients of the left, right, bottom, top, near and far planes
+	private final float[] planes = new float[PLANE_COUNT * 4];
+	// Scratch array for the projection view matrix
+	private final float[] projectionView = new float[16];
+
+	/**
+	 * Updates the planes from the projection and view matrices.
+	 *
+	 * @param projection The projection matrix
+	 * @param view The view matrix
+	 */
+	public void update(Matrix4f projection, Matrix4f view) {
+		MatrixUtil.mul(projection, view, projectionView);
+		final float[] m = projectionView;
+		// A point is inside if -w <= x, y, z <= w in clip space, each bound gives a plane from the fourth row plus or minus another
+		for (int i = 0; i < PLANE_COUNT; i++) {
+			final int row = (i / 2) * 4;
+			final float sign = i % 2 == 0 ? 1 : -1;
+			final float a = m[12] + sign * m[row];
+			final float b = m[13] + sign * m[row + 1];
+			final float c = m[14] + sign * m[row + 2];
+			final float d = m[15] + sign * m[row + 3];
+			final float length = (float) Math.sqrt(a * a + b * b + c * c);
+			final float invLength = length == 0 ? 0 : 1 / length;
+			planes[i * 4] = a * invLength;
+			planes[i * 4 + 1] = b * invLength;
+			planes[i * 4 + 2] = c * invLength;
+			planes[i * 4 + 3] = d * invLength;
+		}
+	}
+
+	/**
+	 * Returns true if the point is inside the frustum.
+	 *
+	 * @param point The point to test
+	 * @return Whether or not the point is inside
+	 */
+	public boolean contains(Vector3f point) {
+		for (int i = 0; i < PLANE_COUNT * 4; i += 4) {
+			if (distance(i, point.getX(), point.getY(), point.getZ()) < 0) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Returns true if the bounds are at least partially inside the frustum. The sphere is tested first, then the box if the sphere crosses a plane. This is conservative: bounds close to the corners
+	 * of the frustum can be considered inside while they're not.
+	 *
+	 * @param bounds The bounds to test
+	 * @return Whether or not the bounds intersect the frustum
+	 */
+	public boolean intersects(Bounds bounds) {
+		final float radius = bounds.getRadius();
+		for (int i = 0; i < PLANE_COUNT * 4; i += 4) {
+			final float distance = distance(i, bounds.getCenterX(), bounds.getCenterY(), bounds.getCenterZ());
+			if (distance < -radius) {
+				return false;
+			}
+			if (distance < radius) {
+				// The sphere crosses the plane, test the corner of the box the farthest along the plane normal
+				final float x = planes[i] >= 0 ? bounds.getMaxX() : bounds.getMinX();
+				final float y = planes[i + 1] >= 0 ? bounds.getMaxY() : bounds.getMinY();
+				final float z = planes[i + 2] >= 0 ? bounds.getMaxZ() : bounds.getMinZ();
+				if (distance(i, x, y, z) < 0) {
+					return false;
+				}
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Returns true if the box is at least partially inside the frustum. This is conservative, like {@link #intersects(Bounds)}.
+	 *
+	 * @param minX The minimum x coordinate of the box
+	 * @param minY The minimum y coordinate of the box
+	 * @param minZ The minimum z coordinate of the box
+	 * @param maxX The maximum x coordinate of the box
+	 * @param maxY The maximum y coordinate of the box
+	 * @param maxZ The maximum z coordinate of the box
+	 * @return Whether or not the box intersects the frustum
+	 */
+	public boolean intersects(float minX, float minY, float minZ, float maxX, float maxY, float maxZ) {
+		for (int i = 0; i < PLANE_COUNT * 4; i += 4) {
+			// The corner of the box the farthest along the plane normal
+			final float x = planes[i] >= 0 ? maxX : minX;
+			final float y = planes[i + 1] >= 0 ? maxY : minY;
+			final float z = planes[i + 2] >= 0 ? maxZ : minZ;
+			if (distance(i, x, y, z) < 0) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Returns true if the box is entirely inside the frustum.
+	 *
+	 * @param minX The minimum x coordinate of the box
+	 * @param minY The minimum y coordinate of the box
+	 * @param minZ The minimum z coordinate of the box
+	 * @param maxX The maximum x coordinate of the box
+	 * @param maxY The maximum y coordinate of the box
+	 * @param maxZ The maximum z coordinate of the box
+	 * @return Whether or not the box is inside
+	 */
+	public boolean contains(float minX, float minY, float minZ, float maxX, float maxY, float maxZ) {
+		for (int i = 0; i < PLANE_COUNT * 4; i += 4) {
+			// The corner of the box the farthest against the plane normal
+			final float x = planes[i] >= 0 ? minX : maxX;
+			final float y = planes[i + 1] >= 0 ? minY : maxY;
+			final float z = planes[i + 2] >= 0 ? minZ : maxZ;
+			if (distance(i, x, y, z) < 0) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	private float distance(int plane, float x, float y, float z) {
+		return planes[plane] * x + planes[plane + 1] * y + planes[plane + 2] * z + planes[plane + 3];
+	}
+}
@@ -79,6 +79,7 @@ public final class GLImplementation {
 		tryLoadClass(GLVersion.GL30, "lwjgl.gl30.GL30GLFactory");
 		tryLoadClass(GLVersion.GLES20, "android.gles20.GLES20GLFactory");
 		//tryLoadClass(GLVersion.GLES30, "android.gles30.GLES30GLFactory");
+		tryLoadClass(GLVersion.HEADLESS, "headless.HeadlessGLFactory");
 	}
 
 	private static void tryLoadClass(GLVersion version, String localPkg) {
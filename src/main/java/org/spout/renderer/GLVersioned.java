@@ -44,6 +44,7 @@ public interface GLVersioned {
 		GL20,
 		GL30,
 		GLES20,
-		GLES30
+		GLES30,
+		HEADLESS
 	}
 }
@@ -26,9 +26,12 @@
  */
 package org.spout.renderer;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
 import java.util.concurrent.atomic.AtomicInteger;
 
-import gnu.trove.iterator.TIntObjectIterator;
 import gnu.trove.map.TIntObjectMap;
 import gnu.trove.map.hash.TIntObjectHashMap;
 
@@ -38,7 +41,7 @@ import org.spout.renderer.gl.Texture;
 
 /**
  * Represents an OpenGL material. Materials are assigned to models, and these can share the same material. The material provides the shader program to use when rendering the models, the texture for
- * each unit (if any) and a set of uniforms that will be constant for all models using the material.
+ * each unit (if any) and a set of uniforms that will be constant for all models using the material. The material has a version, incremented each time the program or a texture changes.
  */
 public class Material implements Comparable<Material> {
 	// Reflects the current available ID
@@ -49,6 +52,11 @@ public class Material implements Comparable<Material> {
 	private Program program;
 	// Textures by unit
 	private TIntObjectMap<Texture> textures;
+	// Units of the textures, cached to bind them without an iterator, null when outdated
+	private int[] textureUnits;
+	// Units and textures, in increasing unit order, to group the materials with the same textures, null when outdated
+	private List<Object> textureSet;
+	private int version = 0;
 	// Material uniforms
 	private final UniformHolder uniforms = new UniformHolder();
 
@@ -66,12 +74,9 @@ public class Material implements Comparable<Material> {
 	public void bind() {
 		program.bind();
 		if (textures != null) {
-			final TIntObjectIterator<Texture> iterator = textures.iterator();
-			while (iterator.hasNext()) {
-				iterator.advance();
+			for (int unit : getCachedTextureUnits()) {
 				// Bind the texture to the unit
-				final int unit = iterator.key();
-				iterator.value().bind(unit);
+				textures.get(unit).bind(unit);
 				// Bind the shader sampler uniform to the unit
 				program.bindTextureUniform(unit);
 			}
@@ -84,8 +89,8 @@ public class Material implements Comparable<Material> {
 	public void unbind() {
 		program.unbind();
 		if (textures != null) {
-			for (Texture texture : textures.valueCollection()) {
-				texture.unbind();
+			for (int unit : getCachedTextureUnits()) {
+				textures.get(unit).unbind();
 			}
 		}
 	}
@@ -108,6 +113,7 @@ public class Material implements Comparable<Material> {
 		}
 		program.checkCreated();
 		this.program = program;
+		version++;
 	}
 
 	/**
@@ -134,6 +140,9 @@ public class Material implements Comparable<Material> {
 			textures = new TIntObjectHashMap<>();
 		}
 		textures.put(unit, texture);
+		textureUnits = null;
+		textureSet = null;
+		version++;
 	}
 
 	/**
@@ -164,9 +173,61 @@ public class Material implements Comparable<Material> {
 	public void removeTexture(int unit) {
 		if (textures != null) {
 			textures.remove(unit);
+			textureUnits = null;
+			textureSet = null;
+			version++;
 		}
 	}
 
+	/**
+	 * Returns the units in which a texture is present, in increasing order.
+	 *
+	 * @return A new array of the texture units
+	 */
+	public int[] getTextureUnits() {
+		if (textures == null) {
+			return new int[0];
+		}
+		final int[] units = getCachedTextureUnits().clone();
+		Arrays.sort(units);
+		return units;
+	}
+
+	/**
+	 * Returns the version of the material, incremented each time the program is set or a texture is added or removed.
+	 *
+	 * @return The version
+	 */
+	public int getVersion() {
+		return version;
+	}
+
+	/**
+	 * Returns the units and textures of the material, in increasing unit order. Materials with the same textures in the same units have equal texture sets. The set is only created again after the
+	 * textures change.
+	 *
+	 * @return The texture set
+	 */
+	List<Object> getTextureSet() {
+		if (textureSet == null) {
+			final int[] units = getTextureUnits();
+			final List<Object> set = new ArrayList<>(units.length * 2);
+			for (int unit : units) {
+				set.add(unit);
+				set.add(textures.get(unit));
+			}
+			textureSet = Collections.unmodifiableList(set);
+		}
+		return textureSet;
+	}
+
+	private int[] getCachedTextureUnits() {
+		if (textureUnits == null) {
+			textureUnits = textures.keys();
+		}
+		return textureUnits;
+	}
+
 	/**
 	 * Returns the uniform holder for this material.
 	 *
@@ -43,6 +43,7 @@ import org.spout.renderer.gl.Context;
 import org.spout.renderer.gl.Context.Capability;
 import org.spout.renderer.gl.FrameBuffer;
 import org.spout.renderer.model.Model;
+import org.spout.renderer.model.SpatialIndex;
 import org.spout.renderer.util.Rectangle;
 
 /**
@@ -160,8 +161,8 @@ public class Pipeline {
 		}
 
 		/**
-		 * Builds the next action in the chain. The actions renders the model list. The models will be reordered to be grouped by material. This reordering is done via a stable sort ({@link
-		 * java.util.Collections#sort(java.util.List)}) so that models with the same materials are not reordered. This grouping improves performance by reducing the amount of rendering calls.
+		 * Builds the next action in the chain. The actions renders the model list. The models are rendered in the order of a {@link RenderQueue}, which groups them by state to reduce the amount of
+		 * state changes. The list is read on each run to update the queue, but isn't modified.
 		 *
 		 * @param models The models to render
 		 * @return The builder itself, for chained calls
@@ -170,6 +171,27 @@ public class Pipeline {
 			return doAction(new RenderModelsAction(models));
 		}
 
+		/**
+		 * Builds the next action in the chain. The actions renders the models of the queue, in its order. The queue is managed by the caller, which avoids checking a list for added and removed models
+		 * on each run.
+		 *
+		 * @param queue The queue of the models to render
+		 * @return The builder itself, for chained calls
+		 */
+		public PipelineBuilder renderModels(RenderQueue queue) {
+			return doAction(new RenderModelsAction(queue));
+		}
+
+		/**
+		 * Builds the next action in the chain. The action renders the models of the spatial index that are in the view frustum of the camera, which is faster than culling a list for large scenes.
+		 *
+		 * @param index The spatial index of the models to render
+		 * @return The builder itself, for chained calls
+		 */
+		public PipelineBuilder renderModels(SpatialIndex index) {
+			return doAction(new RenderModelsAction(index));
+		}
+
 		/**
 		 * Builds the next action in the chain. The action updates the context's display.
 		 *
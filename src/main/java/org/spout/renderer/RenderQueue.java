@@ -0,0 +1,629 @@
+/*
+ * This file is part of Caustic.
+ *
+ * Copyright (c) 2013 Spout LLC <http://www.spout.org/>
+ * Caustic is licensed under the Spout License Version 1.
+ *
+ * Caustic is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the Free
+ * Software Foundation, either version 3 of the License, or (at your option)
+ * any later version.
+ *
+ * In addition, 180 days after any changes are published, you can use the
+ * software, incorporating those changes, under the terms of the MIT license,
+ * as described in the Spout License Version 1.
+ *
+ * Caustic is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE.  See the GNU Lesser General Public License for
+ * more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License,
+ * the MIT license and the Spout License Version 1 along with this program.
+ * If not, see <http://www.gnu.org/licenses/> for the GNU Lesser General Public
+ * License and see <http://spout.in/licensev1> for the full license, including
+ * the MIT license.
+ */
+package org.spout.renderer;
+
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.RecursiveAction;
+
+import gnu.trove.impl.Constants;
+import gnu.trove.map.TObjectIntMap;
+import gnu.trove.map.hash.TObjectIntHashMap;
+
+import org.spout.math.matrix.Matrix4f;
+import org.spout.math.vector.Vector3f;
+import org.spout.renderer.data.Bounds;
+import org.spout.renderer.gl.Program;
+import org.spout.renderer.gl.VertexArray;
+import org.spout.renderer.model.Model;
+import org.spout.renderer.util.CausticUtil;
+
+/**
+ * A persistent queue of models, in the order they should be rendered in to minimize the state changes. Each model has a 64 bit sort key made of, from the most to the least significant bits, its
+ * program, the set of textures of its material, its material, its vertex array and its quantized depth from the camera. So models are grouped by program first, and rendered from front to back
+ * within a group of identical state. The programs, texture sets, materials and vertex arrays are given the smallest free rank when first seen by the queue, so the ranks stay small. A rank is freed
+ * when no model of the queue uses its state anymore. Past the number of ranks that fit in the key, states share the last rank, which only degrades the grouping, see {@link #getSharedStateCount()}.
+ * <p/>
+ * The queue is sorted by {@link #update(Camera)}, which only computes the keys of the models that changed since the last update, or of all models if the camera moved. When only a few keys changed
+ * the queue is sorted incrementally with an insertion sort, otherwise with a radix sort. Neither allocate memory, and nothing is done if nothing changed.
+ * <p/>
+ * When culling is enabled, {@link #cull(Camera)} marks the models whose bounds are outside of the view frustum of the camera as not visible. Models without bounds are always visible. Large queues can
+ * be culled in parallel, see {@link #setParallelCullingThreshold(int)}.
+ */
+public class RenderQueue {
+	private static final int PROGRAM_BITS = 11;
+	private static final int TEXTURES_BITS = 12;
+	private static final int MATERIAL_BITS = 14;
+	private static final int VERTEX_ARRAY_BITS = 12;
+	private static final int DEPTH_BITS = 14;
+	private static final int VERTEX_ARRAY_SHIFT = DEPTH_BITS;
+	private static final int MATERIAL_SHIFT = VERTEX_ARRAY_SHIFT + VERTEX_ARRAY_BITS;
+	private static final int TEXTURES_SHIFT = MATERIAL_SHIFT + MATERIAL_BITS;
+	private static final int PROGRAM_SHIFT = TEXTURES_SHIFT + TEXTURES_BITS;
+	// Above this number of changed keys, a radix sort is faster than an insertion sort
+	private static final int INCREMENTAL_SORT_LIMIT = 16;
+	private static final int RADIX_BITS = 8;
+	private static final int RADIX = 1 << RADIX_BITS;
+	// The minimum number of models culled by each task, when culling in parallel
+	private static final int MIN_CULLING_CHUNK_SIZE = 256;
+	// The entries by model, and in render order
+	private final Map<Model, Entry> entries = new HashMap<>();
+	private Entry[] order = new Entry[16];
+	private int size = 0;
+	// Scratch storage for the radix sort
+	private Entry[] sortBuffer = new Entry[16];
+	private final int[] counts = new int[RADIX];
+	// The ranks of the states used by the models of the queue
+	private final Ranks programRanks = new Ranks(PROGRAM_BITS);
+	private final Ranks textureSetRanks = new Ranks(TEXTURES_BITS);
+	private final Ranks materialRanks = new Ranks(MATERIAL_BITS);
+	private final Ranks vertexArrayRanks = new Ranks(VERTEX_ARRAY_BITS);
+	// The camera the depths were computed for, and its version then
+	private Camera camera;
+	private int cameraVersion;
+	// Incremented on each call to set the models, to find the ones which aren't in the list anymore
+	private int modelsStamp = 0;
+	// Sort counters
+	private long fullSortCount = 0;
+	private long incrementalSortCount = 0;
+	// Culling settings, and the visible count as of the last culling
+	private boolean cullingEnabled = false;
+	private int parallelCullingThreshold = Integer.MAX_VALUE;
+	private int visibleCount = 0;
+
+	/**
+	 * Adds the model to the queue, if not already present. It's placed on the next update.
+	 *
+	 * @param model The model to add
+	 */
+	public void add(Model model) {
+		if (model == null) {
+			throw new IllegalArgumentException("Model cannot be null");
+		}
+		if (!entries.containsKey(model)) {
+			addEntry(model);
+		}
+	}
+
+	/**
+	 * Removes the model from the queue, if present. The order of the other models is kept.
+	 *
+	 * @param model The model to remove
+	 * @return Whether or not the model was in the queue
+	 */
+	public boolean remove(Model model) {
+		final Entry entry = entries.remove(model);
+		if (entry == null) {
+			return false;
+		}
+		releaseState(entry);
+		for (int i = 0; i < size; i++) {
+			if (order[i] == entry) {
+				System.arraycopy(order, i + 1, order, i, size - i - 1);
+				order[--size] = null;
+				break;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Makes the queue contain the models of the list, adding the new ones and removing those that aren't in it anymore. Models already in the queue keep their place, so that only the changes need
+	 * sorting on the next update. Models present more than once in the list are only queued once. The list isn't modified.
+	 *
+	 * @param models The models to queue
+	 */
+	public void setModels(List<Model> models) {
+		modelsStamp++;
+		int seen = 0;
+		for (int i = 0, count = models.size(); i < count; i++) {
+			final Model model = models.get(i);
+			Entry entry = entries.get(model);
+			if (entry == null) {
+				if (model == null) {
+					throw new IllegalArgumentException("Model cannot be null");
+				}
+				entry = addEntry(model);
+			}
+			if (entry.stamp != modelsStamp) {
+				entry.stamp = modelsStamp;
+				seen++;
+			}
+		}
+		if (seen == size) {
+			return;
+		}
+		// Remove the entries which weren't seen, keeping the order
+		int kept = 0;
+		for (int i = 0; i < size; i++) {
+			final Entry entry = order[i];
+			if (entry.stamp == modelsStamp) {
+				order[kept++] = entry;
+			} else {
+				entries.remove(entry.model);
+				releaseState(entry);
+			}
+		}
+		Arrays.fill(order, kept, size, null);
+		size = kept;
+	}
+
+	/**
+	 * Removes all the models from the queue, and frees all the state ranks.
+	 */
+	public void clear() {
+		entries.clear();
+		Arrays.fill(order, 0, size, null);
+		Arrays.fill(sortBuffer, null);
+		size = 0;
+		programRanks.clear();
+		textureSetRanks.clear();
+		materialRanks.clear();
+		vertexArrayRanks.clear();
+		camera = null;
+	}
+
+	/**
+	 * Updates the sort keys of the models that changed since the last update, and sorts the queue again if any did. A model changed if its material, the program or textures of the material, its
+	 * vertex array or its transformation changed. All the keys are updated if the camera isn't the same as in the last update, or moved.
+	 *
+	 * @param camera The camera to compute the depths from
+	 * @throws IllegalStateException If a model has no material
+	 */
+	public void update(Camera camera) {
+		if (camera == null) {
+			throw new IllegalArgumentException("Camera cannot be null");
+		}
+		final boolean cameraChanged = camera != this.camera || camera.getVersion() != cameraVersion;
+		if (cameraChanged) {
+			this.camera = camera;
+			cameraVersion = camera.getVersion();
+		}
+		// The depth is the opposite of the z coordinate in view space, as the camera looks down the negative z axis
+		final Matrix4f view = camera.getViewMatrix();
+		final float depthX = -view.get(2, 0);
+		final float depthY = -view.get(2, 1);
+		final float depthZ = -view.get(2, 2);
+		final float depthW = -view.get(2, 3);
+		int changed = 0;
+		for (int i = 0; i < size; i++) {
+			final Entry entry = order[i];
+			final Model model = entry.model;
+			boolean outdated = cameraChanged;
+			if (entry.isStateOutdated()) {
+				updateStateKey(entry);
+				outdated = true;
+			}
+			if (model.getVersion() != entry.modelVersion) {
+				entry.modelVersion = model.getVersion();
+				outdated = true;
+			}
+			if (outdated) {
+				final Vector3f position = model.getPosition();
+				final float depth = depthX * position.getX() + depthY * position.getY() + depthZ * position.getZ() + depthW;
+				entry.key = entry.stateKey | quantizeDepth(depth);
+				changed++;
+			}
+		}
+		if (changed == 0) {
+			return;
+		}
+		if (changed <= INCREMENTAL_SORT_LIMIT) {
+			insertionSort();
+			incrementalSortCount++;
+		} else {
+			radixSort();
+			fullSortCount++;
+		}
+	}
+
+	/**
+	 * Marks the models which are outside of the view frustum of the camera as not visible, if culling is enabled, using their bounds in world space. The world bounds of the models are updated in place
+	 * if they moved. Queues with at least the parallel culling threshold of models are culled by the threads of {@link CausticUtil#getForkJoinPool()}. Models must not be modified from
+	 * other threads during the culling.
+	 *
+	 * @param camera The camera to cull for
+	 */
+	public void cull(Camera camera) {
+		if (camera == null) {
+			throw new IllegalArgumentException("Camera cannot be null");
+		}
+		if (!cullingEnabled) {
+			visibleCount = size;
+			return;
+		}
+		final Frustum frustum = camera.getFrustum();
+		if (size >= parallelCullingThreshold) {
+			final int chunkSize = Math.max(MIN_CULLING_CHUNK_SIZE, size / (CausticUtil.getForkJoinPool().getParallelism() * 4));
+			CausticUtil.getForkJoinPool().invoke(new CullingTask(frustum, 0, size, chunkSize));
+		} else {
+			cull(frustum, 0, size);
+		}
+		int count = 0;
+		for (int i = 0; i < size; i++) {
+			if (order[i].visible) {
+				count++;
+			}
+		}
+		visibleCount = count;
+	}
+
+	/**
+	 * Returns true if the model at the index in the render order was visible in the last culling, or if culling is disabled.
+	 *
+	 * @param index The index of the model
+	 * @return Whether or not the model is visible
+	 */
+	public boolean isVisible(int index) {
+		checkIndex(index);
+		return !cullingEnabled || order[index].visible;
+	}
+
+	/**
+	 * Returns the number of models that were visible in the last culling. All the models are visible if culling is disabled.
+	 *
+	 * @return The visible count
+	 */
+	public int getVisibleCount() {
+		return visibleCount;
+	}
+
+	/**
+	 * Returns the number of models that were culled in the last culling.
+	 *
+	 * @return The culled count
+	 */
+	public int getCulledCount() {
+		return Math.max(0, size - visibleCount);
+	}
+
+	/**
+	 * Enables or disables the culling of models outside of the view frustum. Disabled by default.
+	 *
+	 * @param enabled Whether or not to cull
+	 */
+	public void setCullingEnabled(boolean enabled) {
+		cullingEnabled = enabled;
+	}
+
+	/**
+	 * Returns true if the models outside of the view frustum are culled.
+	 *
+	 * @return Whether or not culling is enabled
+	 */
+	public boolean isCullingEnabled() {
+		return cullingEnabled;
+	}
+
+	/**
+	 * Sets the number of models from which the culling is done in parallel. Splitting the work only pays off for large queues, of several thousand models. Defaults to {@link Integer#MAX_VALUE}, so
+	 * never.
+	 *
+	 * @param threshold The minimum model count for parallel culling
+	 */
+	public void setParallelCullingThreshold(int threshold) {
+		if (threshold < 0) {
+			throw new IllegalArgumentException("Threshold cannot be negative");
+		}
+		parallelCullingThreshold = threshold;
+	}
+
+	/**
+	 * Returns the number of models from which the culling is done in parallel.
+	 *
+	 * @return The parallel culling threshold
+	 */
+	public int getParallelCullingThreshold() {
+		return parallelCullingThreshold;
+	}
+
+	/**
+	 * Returns the number of models in the queue.
+	 *
+	 * @return The model count
+	 */
+	public int size() {
+		return size;
+	}
+
+	/**
+	 * Returns the model at the index in the render order, as of the last update.
+	 *
+	 * @param index The index of the model
+	 * @return The model
+	 */
+	public Model get(int index) {
+		checkIndex(index);
+		return order[index].model;
+	}
+
+	/**
+	 * Returns the sort key of the model at the index in the render order, as of the last update.
+	 *
+	 * @param index The index of the model
+	 * @return The sort key
+	 */
+	public long getKey(int index) {
+		checkIndex(index);
+		return order[index].key;
+	}
+
+	/**
+	 * Returns the number of updates that sorted the whole queue with a radix sort.
+	 *
+	 * @return The full sort count
+	 */
+	public long getFullSortCount() {
+		return fullSortCount;
+	}
+
+	/**
+	 * Returns the number of updates that sorted the queue incrementally, because only a few keys changed.
+	 *
+	 * @return The incremental sort count
+	 */
+	public long getIncrementalSortCount() {
+		return incrementalSortCount;
+	}
+
+	/**
+	 * Returns the number of states used by the models of the queue whose rank doesn't fit in the sort key, because there are more programs, texture sets, materials or vertex arrays than the ranks
+	 * that fit. These states share the last rank, so their models aren't grouped by them anymore, only by the remaining parts of the key.
+	 *
+	 * @return The shared state count
+	 */
+	public int getSharedStateCount() {
+		return programRanks.getSharedCount() + textureSetRanks.getSharedCount() + materialRanks.getSharedCount() + vertexArrayRanks.getSharedCount();
+	}
+
+	private Entry addEntry(Model model) {
+		final Entry entry = new Entry(model);
+		entries.put(model, entry);
+		if (size == order.length) {
+			order = Arrays.copyOf(order, size * 2);
+			sortBuffer = new Entry[size * 2];
+		}
+		order[size++] = entry;
+		return entry;
+	}
+
+	private void updateStateKey(Entry entry) {
+		final Material material = entry.model.getMaterial();
+		if (material == null) {
+			throw new IllegalStateException("Null material");
+		}
+		final Program program = material.getProgram();
+		final Object textureSet = material.getTextureSet();
+		final VertexArray vertexArray = entry.model.getVertexArray();
+		// Acquire the new ranks before releasing the old ones, so unchanged states keep theirs
+		final long stateKey = (long) programRanks.acquire(program) << PROGRAM_SHIFT
+				| (long) textureSetRanks.acquire(textureSet) << TEXTURES_SHIFT
+				| (long) materialRanks.acquire(material) << MATERIAL_SHIFT
+				| (long) vertexArrayRanks.acquire(vertexArray) << VERTEX_ARRAY_SHIFT;
+		releaseState(entry);
+		entry.material = material;
+		entry.materialVersion = material.getVersion();
+		entry.program = program;
+		entry.textureSet = textureSet;
+		entry.vertexArray = vertexArray;
+		entry.stateKey = stateKey;
+	}
+
+	// Releases the ranks of the state the key of the entry was computed for, if any
+	private void releaseState(Entry entry) {
+		if (entry.material == null) {
+			return;
+		}
+		programRanks.release(entry.program);
+		textureSetRanks.release(entry.textureSet);
+		materialRanks.release(entry.material);
+		vertexArrayRanks.release(entry.vertexArray);
+		entry.material = null;
+		entry.program = null;
+		entry.textureSet = null;
+		entry.vertexArray = null;
+	}
+
+	private void cull(Frustum frustum, int start, int end) {
+		for (int i = start; i < end; i++) {
+			final Entry entry = order[i];
+			final Bounds bounds = entry.model.getBounds();
+			entry.visible = bounds == null || frustum.intersects(bounds);
+		}
+	}
+
+	private void insertionSort() {
+		// Stable, and linear for the entries that are already in place
+		for (int i = 1; i < size; i++) {
+			final Entry entry = order[i];
+			int j = i - 1;
+			while (j >= 0 && order[j].key > entry.key) {
+				order[j + 1] = order[j];
+				j--;
+			}
+			order[j + 1] = entry;
+		}
+	}
+
+	private void radixSort() {
+		// Least significant digit first, each pass is stable
+		Entry[] source = order;
+		Entry[] destination = sortBuffer;
+		for (int shift = 0; shift < Long.SIZE; shift += RADIX_BITS) {
+			Arrays.fill(counts, 0);
+			for (int i = 0; i < size; i++) {
+				counts[digit(source[i].key, shift)]++;
+			}
+			// Skip the pass if all the keys have the same digit, which is common for the state bits
+			if (counts[digit(source[0].key, shift)] == size) {
+				continue;
+			}
+			// Turn the counts into start offsets
+			int offset = 0;
+			for (int digit = 0; digit < RADIX; digit++) {
+				final int count = counts[digit];
+				counts[digit] = offset;
+				offset += count;
+			}
+			for (int i = 0; i < size; i++) {
+				final Entry entry = source[i];
+				destination[counts[digit(entry.key, shift)]++] = entry;
+			}
+			final Entry[] swap = source;
+			source = destination;
+			destination = swap;
+		}
+		order = source;
+		sortBuffer = destination;
+	}
+
+	private void checkIndex(int index) {
+		if (index < 0 || index >= size) {
+			throw new IndexOutOfBoundsException("Index: " + index + ", size: " + size);
+		}
+	}
+
+	private static int digit(long key, int shift) {
+		return (int) (key >>> shift) & RADIX - 1;
+	}
+
+	private static long quantizeDepth(float depth) {
+		// The bits of a positive float increase with its value, keeping the top ones gives buckets of constant relative precision
+		if (!(depth > 0)) {
+			return 0;
+		}
+		return Float.floatToRawIntBits(depth) >>> Integer.SIZE - 1 - DEPTH_BITS;
+	}
+
+	private class CullingTask extends RecursiveAction {
+		private static final long serialVersionUID = 1;
+		private final Frustum frustum;
+		private final int start;
+		private final int end;
+		private final int chunkSize;
+
+		private CullingTask(Frustum frustum, int start, int end, int chunkSize) {
+			this.frustum = frustum;
+			this.start = start;
+			this.end = end;
+			this.chunkSize = chunkSize;
+		}
+
+		@Override
+		protected void compute() {
+			if (end - start <= chunkSize) {
+				cull(frustum, start, end);
+				return;
+			}
+			final int middle = (start + end) >>> 1;
+			invokeAll(new CullingTask(frustum, start, middle, chunkSize), new CullingTask(frustum, middle, end, chunkSize));
+		}
+	}
+
+	// Ranks of the states of one kind, counting the entries using each state, so the rank of a state is freed with its last entry
+	private static class Ranks {
+		private final int limit;
+		private final TObjectIntMap<Object> ranks = new TObjectIntHashMap<>(Constants.DEFAULT_CAPACITY, Constants.DEFAULT_LOAD_FACTOR, -1);
+		private final BitSet used = new BitSet();
+		private int[] references = new int[16];
+		private int sharedCount = 0;
+
+		private Ranks(int bits) {
+			limit = 1 << bits;
+		}
+
+		// Returns the rank of the state in the key, and counts one more entry using it
+		private int acquire(Object state) {
+			int rank = ranks.get(state);
+			if (rank == -1) {
+				rank = used.nextClearBit(0);
+				used.set(rank);
+				ranks.put(state, rank);
+				if (rank >= references.length) {
+					references = Arrays.copyOf(references, Math.max(rank + 1, references.length * 2));
+				}
+				if (rank >= limit) {
+					sharedCount++;
+				}
+			}
+			references[rank]++;
+			// States past the ranks that fit share the last one
+			return Math.min(rank, limit - 1);
+		}
+
+		// Counts one less entry using the state, and frees its rank if it was the last
+		private void release(Object state) {
+			final int rank = ranks.get(state);
+			if (--references[rank] == 0) {
+				ranks.remove(state);
+				used.clear(rank);
+				if (rank >= limit) {
+					sharedCount--;
+				}
+			}
+		}
+
+		private int getSharedCount() {
+			return sharedCount;
+		}
+
+		private void clear() {
+			ranks.clear();
+			used.clear();
+			Arrays.fill(references, 0);
+			sharedCount = 0;
+		}
+	}
+
+	private static class Entry {
+		private final Model model;
+		private long key;
+		// The part of the key for the state, and the state it was computed for, holding a rank of each
+		private long stateKey;
+		private Material material;
+		private int materialVersion;
+		private Program program;
+		private Object textureSet;
+		private VertexArray vertexArray;
+		private int modelVersion;
+		// The stamp of the last list of models this was in
+		private int stamp;
+		private boolean visible = true;
+
+		private Entry(Model model) {
+			this.model = model;
+		}
+
+		private boolean isStateOutdated() {
+			final Material current = model.getMaterial();
+			return current == null || current != material || current.getVersion() != materialVersion || model.getVertexArray() != vertexArray;
+		}
+	}
+}
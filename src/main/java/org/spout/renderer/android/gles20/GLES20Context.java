@@ -36,6 +36,7 @@ import android.opengl.GLSurfaceView;
 import org.spout.renderer.android.AndroidUtil;
 import org.spout.renderer.data.Color;
 import org.spout.renderer.gl.Context;
+import org.spout.renderer.gl.StateCache;
 import org.spout.renderer.gl.Texture.Format;
 import org.spout.renderer.util.CausticUtil;
 import org.spout.renderer.util.Rectangle;
@@ -46,7 +47,8 @@ import org.spout.renderer.util.Rectangle;
  * @see org.spout.renderer.gl.Context
  */
 public class GLES20Context extends Context implements GLSurfaceView.Renderer {
-	protected GLES20Context() {
+	protected GLES20Context(StateCache stateCache) {
+		super(stateCache);
 	}
 
 	@Override
@@ -61,8 +63,10 @@ public class GLES20Context extends Context implements GLSurfaceView.Renderer {
 		// Set the title
 		Display.setTitle(windowTitle);
 		*/
+		// The new context has its own state
+		stateCache.invalidate();
 		// Set the default view port
-		GLES20.glViewport(0, 0, windowSize.getFloorX(), windowSize.getFloorY());
+		setViewPort(new Rectangle(0, 0, windowSize.getFloorX(), windowSize.getFloorY()));
 		// Set the alpha blending function for transparency
 		GLES20.glBlendFunc(GLES20.GL_SRC_ALPHA, GLES20.GL_ONE_MINUS_SRC_ALPHA);
 		// Check for errors
@@ -78,6 +82,7 @@ public class GLES20Context extends Context implements GLSurfaceView.Renderer {
 		AndroidUtil.checkForGLESError();
 		// TODO: Destroy the display
 		// Display.destroy();
+		stateCache.invalidate();
 		super.destroy();
 	}
 
@@ -89,7 +94,10 @@ public class GLES20Context extends Context implements GLSurfaceView.Renderer {
 
 	@Override
 	public void setClearColor(Color color) {
-		Color normC = color.normalize();
+		final Color normC = color.normalize();
+		if (!stateCache.setClearColor(normC.getRed(), normC.getGreen(), normC.getBlue(), normC.getAlpha())) {
+			return;
+		}
 		GLES20.glClearColor(normC.getRed(), normC.getGreen(), normC.getBlue(), normC.getAlpha());
 		// Check for errors
 		AndroidUtil.checkForGLESError();
@@ -104,6 +112,9 @@ public class GLES20Context extends Context implements GLSurfaceView.Renderer {
 
 	@Override
 	public void enableCapability(Capability capability) {
+		if (!stateCache.enableCapability(capability)) {
+			return;
+		}
 		GLES20.glEnable(capability.getGLConstant());
 		// Check for errors
 		AndroidUtil.checkForGLESError();
@@ -111,6 +122,9 @@ public class GLES20Context extends Context implements GLSurfaceView.Renderer {
 
 	@Override
 	public void setViewPort(Rectangle viewPort) {
+		if (!stateCache.setViewPort(viewPort.getX(), viewPort.getY(), viewPort.getWidth(), viewPort.getHeight())) {
+			return;
+		}
 		GLES20.glViewport(viewPort.getX(), viewPort.getY(), viewPort.getWidth(), viewPort.getHeight());
 		// Check for errors
 		AndroidUtil.checkForGLESError();
@@ -127,6 +141,9 @@ public class GLES20Context extends Context implements GLSurfaceView.Renderer {
 
 	@Override
 	public void disableCapability(Capability capability) {
+		if (!stateCache.disableCapability(capability)) {
+			return;
+		}
 		GLES20.glDisable(capability.getGLConstant());
 		// Check for errors
 		AndroidUtil.checkForGLESError();
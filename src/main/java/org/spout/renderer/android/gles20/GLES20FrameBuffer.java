@@ -38,6 +38,7 @@ import android.opengl.GLES20;
 import org.spout.renderer.android.AndroidUtil;
 import org.spout.renderer.gl.FrameBuffer;
 import org.spout.renderer.gl.RenderBuffer;
+import org.spout.renderer.gl.StateCache;
 import org.spout.renderer.gl.Texture;
 import org.spout.renderer.util.CausticUtil;
 
@@ -48,11 +49,16 @@ import org.spout.renderer.util.CausticUtil;
  */
 public class GLES20FrameBuffer extends FrameBuffer {
 	private int[] bufferId;
+	// Shadow of the OpenGL state
+	private final StateCache stateCache;
 
 	/**
 	 * Constructs a new frame buffer for OpenGL 2.0ES.
+	 *
+	 * @param stateCache The state cache
 	 */
-	protected GLES20FrameBuffer() {
+	protected GLES20FrameBuffer(StateCache stateCache) {
+		this.stateCache = stateCache;
 	}
 
 	@Override
@@ -60,7 +66,9 @@ public class GLES20FrameBuffer extends FrameBuffer {
 		// Generate and bind the frame buffer
 		GLES20.glGenFramebuffers(1, this.bufferId, 0);
 		this.id = bufferId[0];
-		GLES20.glBindFramebuffer(GLES20.GL_FRAMEBUFFER, id);
+		if (stateCache.bindFrameBuffer(id)) {
+			GLES20.glBindFramebuffer(GLES20.GL_FRAMEBUFFER, id);
+		}
 		// Track the color attachments to output for later use
 		final TIntSet outputBuffers = new TIntHashSet();
 		// Attach the textures
@@ -107,7 +115,9 @@ public class GLES20FrameBuffer extends FrameBuffer {
 			throw new IllegalStateException("Failed to create the frame buffer");
 		}
 		// Unbind the frame buffer
-		GLES20.glBindFramebuffer(GLES20.GL_FRAMEBUFFER, 0);
+		if (stateCache.bindFrameBuffer(0)) {
+			GLES20.glBindFramebuffer(GLES20.GL_FRAMEBUFFER, 0);
+		}
 		// Update the state
 		super.create();
 		// Check for errors
@@ -118,8 +128,11 @@ public class GLES20FrameBuffer extends FrameBuffer {
 	public void destroy() {
 		checkCreated();
 		// Unbind and delete the frame buffer
-		GLES20.glBindFramebuffer(GLES20.GL_FRAMEBUFFER, 0);
+		if (stateCache.bindFrameBuffer(0)) {
+			GLES20.glBindFramebuffer(GLES20.GL_FRAMEBUFFER, 0);
+		}
 		GLES20.glDeleteFramebuffers(1, new int[]{id}, 0);
+		stateCache.deleteFrameBuffer(id);
 		// Release some resources
 		textures.clear();
 		buffers.clear();
@@ -132,7 +145,9 @@ public class GLES20FrameBuffer extends FrameBuffer {
 	@Override
 	public void bind() {
 		checkCreated();
-		GLES20.glBindFramebuffer(GLES20.GL_FRAMEBUFFER, id);
+		if (stateCache.bindFrameBuffer(id)) {
+			GLES20.glBindFramebuffer(GLES20.GL_FRAMEBUFFER, id);
+		}
 		// Check for errors
 		AndroidUtil.checkForGLESError();
 	}
@@ -140,7 +155,9 @@ public class GLES20FrameBuffer extends FrameBuffer {
 	@Override
 	public void unbind() {
 		checkCreated();
-		GLES20.glBindFramebuffer(GLES20.GL_FRAMEBUFFER, 0);
+		if (stateCache.bindFrameBuffer(0)) {
+			GLES20.glBindFramebuffer(GLES20.GL_FRAMEBUFFER, 0);
+		}
 		// Check for errors
 		AndroidUtil.checkForGLESError();
 	}
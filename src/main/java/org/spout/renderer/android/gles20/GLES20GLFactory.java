@@ -33,7 +33,9 @@ import org.spout.renderer.gl.Program;
 import org.spout.renderer.gl.RenderBuffer;
 import org.spout.renderer.gl.Context;
 import org.spout.renderer.gl.Shader;
+import org.spout.renderer.gl.StateCache;
 import org.spout.renderer.gl.Texture;
+import org.spout.renderer.gl.UniformBuffer;
 import org.spout.renderer.gl.VertexArray;
 
 /**
@@ -46,27 +48,30 @@ public class GLES20GLFactory implements GLFactory {
 		GLImplementation.register(GLVersion.GLES20, new GLES20GLFactory());
 	}
 
+	// Shared by the context and objects, as they use the same OpenGL state
+	private final StateCache stateCache = new StateCache();
+
 	private GLES20GLFactory() {
 	}
 
 	@Override
 	public FrameBuffer createFrameBuffer() {
-		return new GLES20FrameBuffer();
+		return new GLES20FrameBuffer(stateCache);
 	}
 
 	@Override
 	public Program createProgram() {
-		return new GLES20Program();
+		return new GLES20Program(stateCache);
 	}
 
 	@Override
 	public RenderBuffer createRenderBuffer() {
-		return new GLES20RenderBuffer();
+		return new GLES20RenderBuffer(stateCache);
 	}
 
 	@Override
 	public Context createContext() {
-		return new GLES20Context();
+		return new GLES20Context(stateCache);
 	}
 
 	@Override
@@ -76,12 +81,17 @@ public class GLES20GLFactory implements GLFactory {
 
 	@Override
 	public Texture createTexture() {
-		return new GLES20Texture();
+		return new GLES20Texture(stateCache);
+	}
+
+	@Override
+	public UniformBuffer createUniformBuffer() {
+		throw new UnsupportedOperationException("Uniform buffers are not supported by OpenGL ES 2.0");
 	}
 
 	@Override
 	public VertexArray createVertexArray() {
-		return new GLES20VertexArray();
+		return new GLES20VertexArray(stateCache);
 	}
 
 	@Override
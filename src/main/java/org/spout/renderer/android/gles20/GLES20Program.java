@@ -27,14 +27,8 @@
 package org.spout.renderer.android.gles20;
 
 import java.nio.FloatBuffer;
-import java.nio.IntBuffer;
-import java.util.Collections;
-import java.util.Set;
 
-import gnu.trove.impl.Constants;
 import gnu.trove.iterator.TObjectIntIterator;
-import gnu.trove.map.TObjectIntMap;
-import gnu.trove.map.hash.TObjectIntHashMap;
 
 import android.opengl.GLES20;
 
@@ -45,11 +39,10 @@ import org.spout.math.vector.Vector2f;
 import org.spout.math.vector.Vector3f;
 import org.spout.math.vector.Vector4f;
 import org.spout.renderer.android.AndroidUtil;
-import org.spout.renderer.data.Uniform;
-import org.spout.renderer.data.UniformHolder;
 import org.spout.renderer.gl.Program;
 import org.spout.renderer.gl.Shader.ShaderType;
-import org.spout.renderer.util.CausticUtil;
+import org.spout.renderer.gl.StateCache;
+import org.spout.renderer.util.MatrixUtil;
 
 /**
  * An OpenGLES 2.0 implementation of {@link org.spout.renderer.gl.Program}.
@@ -57,10 +50,11 @@ import org.spout.renderer.util.CausticUtil;
  * @see org.spout.renderer.gl.Program
  */
 public class GLES20Program extends Program {
-	// Map of the uniform names to their locations
-	private final TObjectIntMap<String> uniforms = new TObjectIntHashMap<>(Constants.DEFAULT_CAPACITY, Constants.DEFAULT_LOAD_FACTOR, -1);
+	// Shadow of the OpenGL state
+	private final StateCache stateCache;
 
-	protected GLES20Program() {
+	protected GLES20Program(StateCache stateCache) {
+		this.stateCache = stateCache;
 	}
 
 	@Override
@@ -102,12 +96,19 @@ public class GLES20Program extends Program {
 		// Load uniforms
 		int[] params = new int[1];
 		GLES20.glGetProgramiv(id, GLES20.GL_ACTIVE_UNIFORMS, params, 0);
+		final int[] length = new int[1];
+		final int[] size = new int[1];
+		final int[] type = new int[1];
+		final byte[] nameBytes = new byte[256];
 		for (int i = 0; i < params[0]; i++) {
-			byte nameByte = 0;
-			GLES20.glGetActiveUniform(id, i, 1, IntBuffer.allocate(1), IntBuffer.allocate(1), IntBuffer.allocate(1), nameByte);
+			GLES20.glGetActiveUniform(id, i, nameBytes.length, length, 0, size, 0, type, 0, nameBytes, 0);
 			// Simplify array names
-			final String name = new String(new byte[]{nameByte}).trim().replaceFirst("\\[\\d+\\]", "");
-			uniforms.put(name, GLES20.glGetUniformLocation(id, name));
+			final String name = new String(nameBytes, 0, length[0]).replaceFirst("\\[\\d+\\]", "");
+			// Built-in uniforms have no location
+			final int location = GLES20.glGetUniformLocation(id, name);
+			if (location != -1) {
+				addUniform(name, location, type[0], size[0]);
+			}
 		}
 		super.create();
 		AndroidUtil.checkForGLESError();
@@ -117,7 +118,7 @@ public class GLES20Program extends Program {
 	public void destroy() {
 		checkCreated();
 		GLES20.glDeleteProgram(id);
-		uniforms.clear();
+		stateCache.deleteProgram(id);
 		super.destroy();
 		AndroidUtil.checkForGLESError();
 	}
@@ -125,14 +126,18 @@ public class GLES20Program extends Program {
 	@Override
 	public void bind() {
 		checkCreated();
-		GLES20.glUseProgram(id);
-		AndroidUtil.checkForGLESError();
+		if (stateCache.useProgram(id)) {
+			GLES20.glUseProgram(id);
+			AndroidUtil.checkForGLESError();
+		}
 	}
 
 	@Override
 	public void unbind() {
 		checkCreated();
-		GLES20.glUseProgram(0);
+		if (stateCache.useProgram(0)) {
+			GLES20.glUseProgram(0);
+		}
 	}
 
 	@Override
@@ -143,98 +148,84 @@ public class GLES20Program extends Program {
 		setUniform(textureLayouts.get(unit), unit);
 	}
 
-	@Override
-	public void upload(Uniform uniform) {
-		checkCreated();
-		uniform.upload(this);
-	}
-
-	@Override
-	public void upload(UniformHolder uniforms) {
-		checkCreated();
-		for (Uniform uniform : uniforms) {
-			uniform.upload(this);
-		}
-	}
-
 	// TODO: Support int and boolean vectors
 
 	@Override
-	public void setUniform(String name, boolean b) {
+	public void setUniform(int handle, boolean b) {
 		checkCreated();
-		if (!uniforms.containsKey(name)) {
+		if (!updateValue(handle, b ? 1 : 0)) {
 			return;
 		}
-		GLES20.glUniform1i(uniforms.get(name), b ? 1 : 0);
+		GLES20.glUniform1i(getUniformLocation(handle), b ? 1 : 0);
 		AndroidUtil.checkForGLESError();
 	}
 
 	@Override
-	public void setUniform(String name, int i) {
+	public void setUniform(int handle, int i) {
 		checkCreated();
-		if (!uniforms.containsKey(name)) {
+		if (!updateValue(handle, i)) {
 			return;
 		}
-		GLES20.glUniform1i(uniforms.get(name), i);
+		GLES20.glUniform1i(getUniformLocation(handle), i);
 		AndroidUtil.checkForGLESError();
 	}
 
 	@Override
-	public void setUniform(String name, float f) {
+	public void setUniform(int handle, float f) {
 		checkCreated();
-		if (!uniforms.containsKey(name)) {
+		if (!updateValue(handle, Float.floatToRawIntBits(f))) {
 			return;
 		}
-		GLES20.glUniform1f(uniforms.get(name), f);
+		GLES20.glUniform1f(getUniformLocation(handle), f);
 		AndroidUtil.checkForGLESError();
 	}
 
 	@Override
-	public void setUniform(String name, Vector2f v) {
+	public void setUniform(int handle, Vector2f v) {
 		checkCreated();
-		if (!uniforms.containsKey(name)) {
+		if (!updateValue(handle, v)) {
 			return;
 		}
-		GLES20.glUniform2f(uniforms.get(name), v.getX(), v.getY());
+		GLES20.glUniform2f(getUniformLocation(handle), v.getX(), v.getY());
 		AndroidUtil.checkForGLESError();
 	}
 
 	@Override
-	public void setUniform(String name, Vector2f[] vs) {
+	public void setUniform(int handle, Vector2f[] vs) {
 		checkCreated();
-		if (!uniforms.containsKey(name)) {
+		if (!updateValue(handle, vs)) {
 			return;
 		}
 		int count = 0;
-		final FloatBuffer vectorBuffer = CausticUtil.createFloatBuffer(vs.length * 2);
+		final FloatBuffer vectorBuffer = getScratchBuffer(vs.length * 2);
 		for (Vector2f v : vs) {
 			vectorBuffer.put(v.getX());
 			vectorBuffer.put(v.getY());
 			count++;
 		}
 		vectorBuffer.flip();
-		GLES20.glUniform2fv(uniforms.get(name), count, vectorBuffer);
+		GLES20.glUniform2fv(getUniformLocation(handle), count, vectorBuffer);
 		AndroidUtil.checkForGLESError();
 	}
 
 	@Override
-	public void setUniform(String name, Vector3f v) {
+	public void setUniform(int handle, Vector3f v) {
 		checkCreated();
-		if (!uniforms.containsKey(name)) {
+		if (!updateValue(handle, v)) {
 			return;
 		}
-		GLES20.glUniform3f(uniforms.get(name), v.getX(), v.getY(), v.getZ());
+		GLES20.glUniform3f(getUniformLocation(handle), v.getX(), v.getY(), v.getZ());
 		AndroidUtil.checkForGLESError();
 	}
 
 	@Override
-	public void setUniform(String name, Vector3f[] vs) {
+	public void setUniform(int handle, Vector3f[] vs) {
 		checkCreated();
-		if (!uniforms.containsKey(name)) {
+		if (!updateValue(handle, vs)) {
 			return;
 		}
 		int count = 0;
-		final FloatBuffer vectorBuffer = CausticUtil.createFloatBuffer(vs.length * 3);
+		final FloatBuffer vectorBuffer = getScratchBuffer(vs.length * 3);
 		for (Vector3f v : vs) {
 			vectorBuffer.put(v.getX());
 			vectorBuffer.put(v.getY());
@@ -242,62 +233,67 @@ public class GLES20Program extends Program {
 			count++;
 		}
 		vectorBuffer.flip();
-		GLES20.glUniform3fv(uniforms.get(name), count, vectorBuffer);
+		GLES20.glUniform3fv(getUniformLocation(handle), count, vectorBuffer);
 		AndroidUtil.checkForGLESError();
 	}
 
 	@Override
-	public void setUniform(String name, Vector4f v) {
+	public void setUniform(int handle, Vector4f v) {
 		checkCreated();
-		if (!uniforms.containsKey(name)) {
+		if (!updateValue(handle, v)) {
 			return;
 		}
-		GLES20.glUniform4f(uniforms.get(name), v.getX(), v.getY(), v.getZ(), v.getW());
+		GLES20.glUniform4f(getUniformLocation(handle), v.getX(), v.getY(), v.getZ(), v.getW());
 		AndroidUtil.checkForGLESError();
 	}
 
 	@Override
-	public void setUniform(String name, Matrix2f m) {
+	public void setUniform(int handle, Matrix2f m) {
 		checkCreated();
-		if (!uniforms.containsKey(name)) {
+		if (!updateValue(handle, m)) {
 			return;
 		}
-		final FloatBuffer buffer = CausticUtil.createFloatBuffer(4);
-		buffer.put(m.toArray(true));
+		final FloatBuffer buffer = getScratchBuffer(4);
+		MatrixUtil.putColumnMajor(m, buffer);
 		buffer.flip();
-		GLES20.glUniformMatrix2fv(uniforms.get(name), 1, false, buffer);
+		GLES20.glUniformMatrix2fv(getUniformLocation(handle), 1, false, buffer);
 		AndroidUtil.checkForGLESError();
 	}
 
 	@Override
-	public void setUniform(String name, Matrix3f m) {
+	public void setUniform(int handle, Matrix3f m) {
 		checkCreated();
-		if (!uniforms.containsKey(name)) {
+		if (!updateValue(handle, m)) {
 			return;
 		}
-		final FloatBuffer buffer = CausticUtil.createFloatBuffer(9);
-		buffer.put(m.toArray(true));
+		final FloatBuffer buffer = getScratchBuffer(9);
+		MatrixUtil.putColumnMajor(m, buffer);
 		buffer.flip();
-		GLES20.glUniformMatrix3fv(uniforms.get(name), 1, false, buffer);
+		GLES20.glUniformMatrix3fv(getUniformLocation(handle), 1, false, buffer);
 		AndroidUtil.checkForGLESError();
 	}
 
 	@Override
-	public void setUniform(String name, Matrix4f m) {
+	public void setUniform(int handle, Matrix4f m) {
 		checkCreated();
-		if (!uniforms.containsKey(name)) {
+		if (!updateValue(handle, m)) {
 			return;
 		}
-		final FloatBuffer buffer = CausticUtil.createFloatBuffer(16);
-		buffer.put(m.toArray(true));
+		final FloatBuffer buffer = getScratchBuffer(16);
+		MatrixUtil.putColumnMajor(m, buffer);
 		buffer.flip();
-		GLES20.glUniformMatrix4fv(uniforms.get(name), 1, false, buffer);
+		GLES20.glUniformMatrix4fv(getUniformLocation(handle), 1, false, buffer);
 		AndroidUtil.checkForGLESError();
 	}
 
 	@Override
-	public Set<String> getUniformNames() {
-		return Collections.unmodifiableSet(uniforms.keySet());
+	public void setUniformMatrix4(int handle, FloatBuffer columnMajor) {
+		checkCreated();
+		if (!updateValue(handle, columnMajor)) {
+			return;
+		}
+		GLES20.glUniformMatrix4fv(getUniformLocation(handle), columnMajor.remaining() / 16, false, columnMajor);
+		AndroidUtil.checkForGLESError();
 	}
 
 	@Override
@@ -30,6 +30,7 @@ import android.opengl.GLES20;
 
 import org.spout.renderer.android.AndroidUtil;
 import org.spout.renderer.gl.RenderBuffer;
+import org.spout.renderer.gl.StateCache;
 
 /**
  * An OpenGLES 2.0 implementation of {@link org.spout.renderer.gl.RenderBuffer} using EXT.
@@ -37,12 +38,17 @@ import org.spout.renderer.gl.RenderBuffer;
  * @see org.spout.renderer.gl.RenderBuffer
  */
 public class GLES20RenderBuffer extends RenderBuffer {
+	// Shadow of the OpenGL state
+	private final StateCache stateCache;
+
 	/**
 	 * Constructs a new render buffer for OpenGL 2.0. If no EXT extension for render buffers is available, an exception is thrown.
 	 *
+	 * @param stateCache The state cache
 	 * @throws UnsupportedOperationException If the hardware doesn't support EXT render buffers.
 	 */
-	protected GLES20RenderBuffer() {
+	protected GLES20RenderBuffer(StateCache stateCache) {
+		this.stateCache = stateCache;
 	}
 
 	@Override
@@ -60,11 +66,15 @@ public class GLES20RenderBuffer extends RenderBuffer {
 		int[] bufferId = new int[1];
 		GLES20.glGenRenderbuffers(1, bufferId, 0);
 		id = bufferId[0];
-		GLES20.glBindRenderbuffer(GLES20.GL_RENDERBUFFER, id);
+		if (stateCache.bindRenderBuffer(id)) {
+			GLES20.glBindRenderbuffer(GLES20.GL_RENDERBUFFER, id);
+		}
 		// Set the storage format and size
 		GLES20.glRenderbufferStorage(GLES20.GL_RENDERBUFFER, format.getGLConstant(), width, height);
 		// Unbind the render buffer
-		GLES20.glBindRenderbuffer(GLES20.GL_RENDERBUFFER, 0);
+		if (stateCache.bindRenderBuffer(0)) {
+			GLES20.glBindRenderbuffer(GLES20.GL_RENDERBUFFER, 0);
+		}
 		// Update the state
 		super.create();
 		// Check for errors
@@ -75,8 +85,11 @@ public class GLES20RenderBuffer extends RenderBuffer {
 	public void destroy() {
 		checkCreated();
 		// Unbind and delete the render buffer
-		GLES20.glBindRenderbuffer(GLES20.GL_RENDERBUFFER, 0);
+		if (stateCache.bindRenderBuffer(0)) {
+			GLES20.glBindRenderbuffer(GLES20.GL_RENDERBUFFER, 0);
+		}
 		GLES20.glDeleteRenderbuffers(1, new int[]{id}, 0);
+		stateCache.deleteRenderBuffer(id);
 		// Update state
 		super.destroy();
 		// Check for errors
@@ -86,7 +99,9 @@ public class GLES20RenderBuffer extends RenderBuffer {
 	@Override
 	public void bind() {
 		checkCreated();
-		GLES20.glBindRenderbuffer(GLES20.GL_RENDERBUFFER, id);
+		if (stateCache.bindRenderBuffer(id)) {
+			GLES20.glBindRenderbuffer(GLES20.GL_RENDERBUFFER, id);
+		}
 		// Check for errors
 		AndroidUtil.checkForGLESError();
 	}
@@ -94,7 +109,9 @@ public class GLES20RenderBuffer extends RenderBuffer {
 	@Override
 	public void unbind() {
 		checkCreated();
-		GLES20.glBindRenderbuffer(GLES20.GL_RENDERBUFFER, 0);
+		if (stateCache.bindRenderBuffer(0)) {
+			GLES20.glBindRenderbuffer(GLES20.GL_RENDERBUFFER, 0);
+		}
 		// Check for errors
 		AndroidUtil.checkForGLESError();
 	}
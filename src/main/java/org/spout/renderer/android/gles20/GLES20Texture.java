@@ -31,6 +31,7 @@ import java.nio.ByteBuffer;
 import android.opengl.GLES20;
 
 import org.spout.renderer.android.AndroidUtil;
+import org.spout.renderer.gl.StateCache;
 import org.spout.renderer.gl.Texture;
 
 /**
@@ -39,7 +40,11 @@ import org.spout.renderer.gl.Texture;
  * @see org.spout.renderer.gl.Texture
  */
 public class GLES20Texture extends Texture {
-	protected GLES20Texture() {
+	// Shadow of the OpenGL state
+	private final StateCache stateCache;
+
+	protected GLES20Texture(StateCache stateCache) {
+		this.stateCache = stateCache;
 	}
 
 	@Override
@@ -53,7 +58,7 @@ public class GLES20Texture extends Texture {
 		int[] params = new int[1];
 		GLES20.glGenTextures(1, params, 0);
 		id = params[0];
-		GLES20.glBindTexture(GLES20.GL_TEXTURE_2D, id);
+		bindTexture(id);
 		// Upload the texture to the GPU
 		uploadTexture(imageData, width, height);
 		// Set the vertical and horizontal texture wraps (in the texture parameters)
@@ -76,7 +81,7 @@ public class GLES20Texture extends Texture {
 			GLES20.glTexParameteri(GLES20.GL_TEXTURE_2D, GL14.GL_TEXTURE_COMPARE_FUNC, compareMode.getGLConstant());
 		}*/
 		// Unbind the texture
-		GLES20.glBindTexture(GLES20.GL_TEXTURE_2D, 0);
+		bindTexture(0);
 		// Update the state
 		super.create();
 		// Check for errors
@@ -107,9 +112,10 @@ public class GLES20Texture extends Texture {
 	public void destroy() {
 		checkCreated();
 		// Unbind the texture
-		GLES20.glBindTexture(GLES20.GL_TEXTURE_2D, 0);
+		bindTexture(0);
 		// Delete the texture
 		GLES20.glDeleteTextures(1, new int[]{id}, 0);
+		stateCache.deleteTexture(id);
 		// Reset the data
 		super.destroy();
 		// Check for errors
@@ -119,12 +125,12 @@ public class GLES20Texture extends Texture {
 	@Override
 	public void bind(int unit) {
 		checkCreated();
-		if (unit != -1) {
+		if (unit != -1 && stateCache.activeTexture(unit)) {
 			// Activate the texture unit
 			GLES20.glActiveTexture(GLES20.GL_TEXTURE0 + unit);
 		}
 		// Bind the texture
-		GLES20.glBindTexture(GLES20.GL_TEXTURE_2D, id);
+		bindTexture(id);
 		// Check for errors
 		AndroidUtil.checkForGLESError();
 	}
@@ -133,11 +139,17 @@ public class GLES20Texture extends Texture {
 	public void unbind() {
 		checkCreated();
 		// Unbind the texture
-		GLES20.glBindTexture(GLES20.GL_TEXTURE_2D, 0);
+		bindTexture(0);
 		// Check for errors
 		AndroidUtil.checkForGLESError();
 	}
 
+	private void bindTexture(int id) {
+		if (stateCache.bindTexture(id)) {
+			GLES20.glBindTexture(GLES20.GL_TEXTURE_2D, id);
+		}
+	}
+
 	@Override
 	public GLVersion getGLVersion() {
 		return GLVersion.GLES20;
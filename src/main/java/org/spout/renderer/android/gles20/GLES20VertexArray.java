@@ -26,16 +26,20 @@
  */
 package org.spout.renderer.android.gles20;
 
+import java.nio.ByteBuffer;
+
 import android.opengl.GLES20;
 
 import org.spout.renderer.android.AndroidUtil;
 import org.spout.renderer.data.VertexAttribute;
-import org.spout.renderer.data.VertexAttribute.DataType;
+import org.spout.renderer.data.VertexFormat;
+import org.spout.renderer.gl.StateCache;
 import org.spout.renderer.gl.VertexArray;
+import org.spout.renderer.util.CausticUtil;
 
 /**
  * An OpenGLES 2.0 implementation of {@link org.spout.renderer.gl.VertexArray}. <p/> Vertex arrays will be used if the ARB or APPLE extension is supported by the hardware. Else, since core OpenGL
- * doesn't support them until 3.0, the vertex attributes will have to be redefined on each render call.
+ * doesn't support them until 3.0, the vertex attributes will have to be redefined when rendering after another vertex array. Drawing leaves the buffers bound.
  *
  * @see org.spout.renderer.gl.VertexArray
  */
@@ -43,8 +47,13 @@ public class GLES20VertexArray extends VertexArray {
 	private int[] attributeSizes;
 	private int[] attributeTypes;
 	private boolean[] attributeNormalizing;
+	private int[] attributeOffsets;
+	private int attributeStride;
+	// Shadow of the OpenGL state
+	private final StateCache stateCache;
 
-	protected GLES20VertexArray() {
+	protected GLES20VertexArray(StateCache stateCache) {
+		this.stateCache = stateCache;
 	}
 
 	@Override
@@ -56,39 +65,66 @@ public class GLES20VertexArray extends VertexArray {
 			throw new IllegalStateException("Vertex data has not been set");
 		}
 
-		// Generate, bind and fill the indices vbo then unbind
+		// Generate, bind and fill the indices vbo
 		int params[] = new int[1];
 		GLES20.glGenBuffers(1, params, 0);
-		id = params[0];
-		GLES20.glBindBuffer(GLES20.GL_ELEMENT_ARRAY_BUFFER, indicesBufferID);
-		// GLES20.glBufferData(GLES20.GL_ELEMENT_ARRAY_BUFFER, vertexData.getIndicesBuffer(), GLES20.GL_STATIC_DRAW);
-		GLES20.glBindBuffer(GLES20.GL_ELEMENT_ARRAY_BUFFER, 0);
+		indicesBufferID = params[0];
+		bindBuffer(GLES20.GL_ELEMENT_ARRAY_BUFFER, indicesBufferID);
+		indicesType = vertexData.getIndicesType();
+		final ByteBuffer indicesBuffer = vertexData.getIndicesBuffer(indicesType);
+		GLES20.glBufferData(GLES20.GL_ELEMENT_ARRAY_BUFFER, indicesBuffer.remaining(), indicesBuffer, usageHint.getGLConstant());
+		vertexData.releaseIndicesBuffer(indicesBuffer);
 		// Save the count of indices to draw
 		indicesCountCache = vertexData.getIndicesCount();
 		resetIndicesCountAndOffset();
-		// Create the map for attribute index to buffer ID
-		final int attributeCount = vertexData.getAttributeCount();
-		attributeBufferIDs = new int[attributeCount];
+		// Save the count of attributes
+		attributeCount = vertexData.getAttributeCount();
 
 		// If we don't have a vao, we have to save these manually
 		attributeSizes = new int[attributeCount];
 		attributeTypes = new int[attributeCount];
 		attributeNormalizing = new boolean[attributeCount];
+		attributeOffsets = new int[attributeCount];
 
-		// For each attribute, generate, bind and fill the vbo
-		// Setup the vao if available
-		for (int i = 0; i < attributeCount; i++) {
-			final VertexAttribute attribute = vertexData.getAttribute(i);
+		if (layoutMode == LayoutMode.INTERLEAVED) {
+			// Generate, bind and fill the single vbo holding all the attributes
+			final VertexFormat format = new VertexFormat(vertexData);
+			final ByteBuffer interleaved = format.interleave(vertexData);
 			GLES20.glGenBuffers(1, params, 0);
 			final int bufferID = params[0];
-			GLES20.glBindBuffer(GLES20.GL_ARRAY_BUFFER, bufferID);
-			GLES20.glBufferData(GLES20.GL_ARRAY_BUFFER, attribute.getSize(), attribute.getData(), GLES20.GL_STATIC_DRAW);
-			attributeBufferIDs[i] = bufferID;
-			// Or as a float, normalized or not
-			GLES20.glVertexAttribPointer(i, attribute.getSize(), attribute.getType().getGLConstant(), attribute.getUploadMode().normalize(), 0, 0);
+			bindBuffer(GLES20.GL_ARRAY_BUFFER, bufferID);
+			GLES20.glBufferData(GLES20.GL_ARRAY_BUFFER, interleaved.remaining(), interleaved, usageHint.getGLConstant());
+			CausticUtil.getBufferPool().release(interleaved);
+			attributeBufferIDs = new int[]{bufferID};
+			attributeStride = format.getStride();
+			// Save the attribute properties at their offset in the vertex
+			for (int i = 0; i < attributeCount; i++) {
+				attributeSizes[i] = format.getSize(i);
+				attributeTypes[i] = format.getType(i).getGLConstant();
+				attributeNormalizing[i] = format.getUploadMode(i).normalize();
+				attributeOffsets[i] = format.getOffset(i);
+			}
+		} else {
+			// Create the map for attribute index to buffer ID
+			attributeBufferIDs = new int[attributeCount];
+			attributeStride = 0;
+			// For each attribute, generate, bind and fill the vbo
+			// Setup the vao if available
+			for (int i = 0; i < attributeCount; i++) {
+				final VertexAttribute attribute = vertexData.getAttribute(i);
+				GLES20.glGenBuffers(1, params, 0);
+				final int bufferID = params[0];
+				bindBuffer(GLES20.GL_ARRAY_BUFFER, bufferID);
+				final ByteBuffer data = attribute.getData();
+				GLES20.glBufferData(GLES20.GL_ARRAY_BUFFER, data.remaining(), data, usageHint.getGLConstant());
+				attributeBufferIDs[i] = bufferID;
+				// We save the properties for rendering
+				attributeSizes[i] = attribute.getSize();
+				attributeTypes[i] = attribute.getType().getGLConstant();
+				attributeNormalizing[i] = attribute.getUploadMode().normalize();
+				attributeOffsets[i] = 0;
+			}
 		}
-		// Unbind the last vbo
-		GLES20.glBindBuffer(GLES20.GL_ARRAY_BUFFER, 0);
 		// Update state
 		super.create();
 		// Check for errors
@@ -98,54 +134,83 @@ public class GLES20VertexArray extends VertexArray {
 	@Override
 	public void destroy() {
 		checkCreated();
-		// Unbind any bound buffer
-		GLES20.glBindBuffer(GLES20.GL_ARRAY_BUFFER, 0);
-		// Unbind and delete indices buffer
-		GLES20.glBindBuffer(GLES20.GL_ELEMENT_ARRAY_BUFFER, 0);
+		// Delete the indices and attribute buffers, which unbinds them
 		GLES20.glDeleteBuffers(1, new int[]{indicesBufferID}, 0);
-		// Delete the attribute buffers
-		for (int i = 0; i < attributeBufferIDs.length; i++) {
-			// Disable the attribute
-			GLES20.glDisableVertexAttribArray(i);
+		stateCache.deleteBuffer(indicesBufferID);
+		GLES20.glDeleteBuffers(attributeBufferIDs.length, attributeBufferIDs, 0);
+		for (int bufferID : attributeBufferIDs) {
+			stateCache.deleteBuffer(bufferID);
 		}
-		GLES20.glDeleteBuffers(attributeBufferIDs.length, attributeBufferIDs, 1);
 		// Delete the attribute properties
 		attributeSizes = null;
 		attributeTypes = null;
 		attributeNormalizing = null;
+		attributeOffsets = null;
 		super.destroy();
 		// Check for errors
 		AndroidUtil.checkForGLESError();
 	}
 
+	@Override
+	public void update() {
+		super.update();
+		// Check for errors
+		AndroidUtil.checkForGLESError();
+	}
+
+	@Override
+	protected void bindBuffer(int target, int bufferID) {
+		// The state is tracked, so there's no need to unbind
+		if (bufferID != 0 && stateCache.bindBuffer(target, bufferID)) {
+			GLES20.glBindBuffer(target, bufferID);
+		}
+	}
+
+	@Override
+	protected void bufferData(int target, ByteBuffer data, int usage) {
+		GLES20.glBufferData(target, data.remaining(), data, usage);
+	}
+
+	@Override
+	protected void bufferSubData(int target, int offset, ByteBuffer data) {
+		GLES20.glBufferSubData(target, offset, data.remaining(), data);
+	}
+
 	@Override
 	public void draw() {
 		checkCreated();
-		// Enable the vertex attributes
-		for (int i = 0; i < attributeBufferIDs.length; i++) {
-			// Bind the buffer
-			GLES20.glBindBuffer(GLES20.GL_ARRAY_BUFFER, attributeBufferIDs[i]);
-			// Define the attribute
-			GLES20.glVertexAttribPointer(i, attributeSizes[i], attributeTypes[i], attributeNormalizing[i], 0, 0);
-			// Enable it
-			GLES20.glEnableVertexAttribArray(i);
+		// Define the attributes again only if another vertex array did since
+		if (stateCache.setVertexAttributesOwner(indicesBufferID)) {
+			defineAttributes();
 		}
-		// Unbind the last buffer
-		GLES20.glBindBuffer(GLES20.GL_ARRAY_BUFFER, 0);
 		// Bind the indices buffer
-		GLES20.glBindBuffer(GLES20.GL_ELEMENT_ARRAY_BUFFER, indicesBufferID);
+		bindBuffer(GLES20.GL_ELEMENT_ARRAY_BUFFER, indicesBufferID);
 		// Draw all indices with the provided mode
-		GLES20.glDrawElements(drawingMode.getGLConstant(), indicesCount, GLES20.GL_UNSIGNED_INT, indicesOffset * DataType.INT.getByteSize());
-		// Unbind the indices buffer
-		GLES20.glBindBuffer(GLES20.GL_ELEMENT_ARRAY_BUFFER, 0);
-		// Disable all attributes
-		for (int i = 0; i < attributeBufferIDs.length; i++) {
-			GLES20.glDisableVertexAttribArray(i);
-		}
+		GLES20.glDrawElements(drawingMode.getGLConstant(), indicesCount, indicesType.getGLConstant(), indicesOffset * indicesType.getByteSize());
 		// Check for errors
 		AndroidUtil.checkForGLESError();
 	}
 
+	private void defineAttributes() {
+		for (int i = 0; i < attributeCount; i++) {
+			// Bind the buffer, only once if the attributes are interleaved
+			bindBuffer(GLES20.GL_ARRAY_BUFFER, attributeBufferIDs[layoutMode == LayoutMode.INTERLEAVED ? 0 : i]);
+			// Define the attribute and enable it
+			GLES20.glVertexAttribPointer(i, attributeSizes[i], attributeTypes[i], attributeNormalizing[i], attributeStride, attributeOffsets[i]);
+			if (stateCache.enableVertexAttribute(i)) {
+				GLES20.glEnableVertexAttribArray(i);
+			}
+		}
+		// Disable the attributes left enabled by a vertex array with more of them
+		long extra = stateCache.getEnabledVertexAttributes() & -(1L << attributeCount);
+		while (extra != 0) {
+			final int i = Long.numberOfTrailingZeros(extra);
+			extra &= extra - 1;
+			stateCache.disableVertexAttribute(i);
+			GLES20.glDisableVertexAttribArray(i);
+		}
+	}
+
 	@Override
 	public GLVersion getGLVersion() {
 		return GLVersion.GLES20;
@@ -0,0 +1,325 @@
+/*
+ * This file is part of Caustic.
+ *
+ * Copyright (c) 2013 Spout LLC <http://www.spout.org/>
+ * Caustic is licensed under the Spout License Version 1.
+ *
+ * Caustic is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the Free
+ * Software Foundation, either version 3 of the License, or (at your option)
+ * any later version.
+ *
+ * In addition, 180 days after any changes are published, you can use the
+ * software, incorporating those changes, under the terms of the MIT license,
+ * as described in the Spout License Version 1.
+ *
+ * Caustic is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE.  See the GNU Lesser General Public License for
+ * more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License,
+ * the MIT license and the Spout License Version 1 along with this program.
+ * If not, see <http://www.gnu.org/licenses/> for the GNU Lesser General Public
+ * License and see <http://spout.in/licensev1> for the full license, including
+ * the MIT license.
+ */
+package org.spout.renderer.data;
+
+import java.nio.FloatBuffer;
+
+import org.spout.math.matrix.Matrix4f;
+import org.spout.math.vector.Vector3f;
+import org.spout.renderer.data.VertexAttribute.DataType;
+
+/**
+ * Represents bounds around a mesh, as an axis aligned box and a sphere. The sphere allows for a quick test, the box for a tighter one. Bounds are computed from the positions of {@link VertexData}
+ * with {@link #fromVertexData(VertexData)}, and moved to world space with {@link #transform(Matrix4f, Bounds)}. Transforming into existing bounds modifies them in place, which avoids allocating
+ * new bounds each time a model moves; the other bounds should be treated as immutable.
+ */
+public class Bounds {
+	private float minX, minY, minZ;
+	private float maxX, maxY, maxZ;
+	private float centerX, centerY, centerZ;
+	private float radius;
+
+	/**
+	 * Constructs new empty bounds, at the origin with a zero size. They're meant to be transformed into.
+	 */
+	public Bounds() {
+	}
+
+	/**
+	 * Constructs new bounds from the box corners. The sphere is the one around the box.
+	 *
+	 * @param min The minimum corner of the box
+	 * @param max The maximum corner of the box
+	 */
+	public Bounds(Vector3f min, Vector3f max) {
+		this(min, max, new Vector3f((min.getX() + max.getX()) / 2, (min.getY() + max.getY()) / 2, (min.getZ() + max.getZ()) / 2),
+				length((max.getX() - min.getX()) / 2, (max.getY() - min.getY()) / 2, (max.getZ() - min.getZ()) / 2));
+	}
+
+	/**
+	 * Constructs new bounds from the box corners and the sphere.
+	 *
+	 * @param min The minimum corner of the box
+	 * @param max The maximum corner of the box
+	 * @param center The center of the sphere
+	 * @param radius The radius of the sphere
+	 */
+	public Bounds(Vector3f min, Vector3f max, Vector3f center, float radius) {
+		if (min == null || max == null || center == null) {
+			throw new IllegalArgumentException("Corners and center cannot be null");
+		}
+		if (radius < 0) {
+			throw new IllegalArgumentException("Radius cannot be negative");
+		}
+		minX = min.getX();
+		minY = min.getY();
+		minZ = min.getZ();
+		maxX = max.getX();
+		maxY = max.getY();
+		maxZ = max.getZ();
+		centerX = center.getX();
+		centerY = center.getY();
+		centerZ = center.getZ();
+		this.radius = radius;
+	}
+
+	/**
+	 * Returns the minimum corner of the box.
+	 *
+	 * @return A new vector of the minimum corner
+	 */
+	public Vector3f getMin() {
+		return new Vector3f(minX, minY, minZ);
+	}
+
+	/**
+	 * Returns the maximum corner of the box.
+	 *
+	 * @return A new vector of the maximum corner
+	 */
+	public Vector3f getMax() {
+		return new Vector3f(maxX, maxY, maxZ);
+	}
+
+	/**
+	 * Returns the center of the sphere.
+	 *
+	 * @return A new vector of the center
+	 */
+	public Vector3f getCenter() {
+		return new Vector3f(centerX, centerY, centerZ);
+	}
+
+	/**
+	 * Returns the x coordinate of the minimum corner of the box.
+	 *
+	 * @return The x coordinate
+	 */
+	public float getMinX() {
+		return minX;
+	}
+
+	/**
+	 * Returns the y coordinate of the minimum corner of the box.
+	 *
+	 * @return The y coordinate
+	 */
+	public float getMinY() {
+		return minY;
+	}
+
+	/**
+	 * Returns the z coordinate of the minimum corner of the box.
+	 *
+	 * @return The z coordinate
+	 */
+	public float getMinZ() {
+		return minZ;
+	}
+
+	/**
+	 * Returns the x coordinate of the maximum corner of the box.
+	 *
+	 * @return The x coordinate
+	 */
+	public float getMaxX() {
+		return maxX;
+	}
+
+	/**
+	 * Returns the y coordinate of the maximum corner of the box.
+	 *
+	 * @return The y coordinate
+	 */
+	public float getMaxY() {
+		return maxY;
+	}
+
+	/**
+	 * Returns the z coordinate of the maximum corner of the box.
+	 *
+	 * @return The z coordinate
+	 */
+	public float getMaxZ() {
+		return maxZ;
+	}
+
+	/**
+	 * Returns the x coordinate of the center of the sphere.
+	 *
+	 * @return The x coordinate
+	 */
+	public float getCenterX() {
+		return centerX;
+	}
+
+	/**
+	 * Returns the y coordinate of the center of the sphere.
+	 *
+	 * @return The y coordinate
+	 */
+	public float getCenterY() {
+		return centerY;
+	}
+
+	/**
+	 * Returns the z coordinate of the center of the sphere.
+	 *
+	 * @return The z coordinate
+	 */
+	public float getCenterZ() {
+		return centerZ;
+	}
+
+	/**
+	 * Returns the radius of the sphere.
+	 *
+	 * @return The radius
+	 */
+	public float getRadius() {
+		return radius;
+	}
+
+	/**
+	 * Returns the bounds transformed by the matrix, see {@link #transform(Matrix4f, Bounds)}.
+	 *
+	 * @param m The transformation matrix
+	 * @return The new transformed bounds
+	 */
+	public Bounds transform(Matrix4f m) {
+		return transform(m, new Bounds());
+	}
+
+	/**
+	 * Transforms the bounds by the matrix, into the destination, which can't be these bounds. The box is the axis aligned box around the transformed box, and the sphere is scaled by the largest scale
+	 * of the matrix, so both still enclose the transformed mesh.
+	 *
+	 * @param m The transformation matrix
+	 * @param destination The bounds to store the result in
+	 * @return The destination
+	 */
+	public Bounds transform(Matrix4f m, Bounds destination) {
+		if (destination == this) {
+			throw new IllegalArgumentException("Cannot transform the bounds into themselves");
+		}
+		final float boxCenterX = (minX + maxX) / 2;
+		final float boxCenterY = (minY + maxY) / 2;
+		final float boxCenterZ = (minZ + maxZ) / 2;
+		final float extentX = (maxX - minX) / 2;
+		final float extentY = (maxY - minY) / 2;
+		final float extentZ = (maxZ - minZ) / 2;
+		float maxScale2 = 0;
+		for (int row = 0; row < 3; row++) {
+			final float m0 = m.get(row, 0);
+			final float m1 = m.get(row, 1);
+			final float m2 = m.get(row, 2);
+			final float m3 = m.get(row, 3);
+			final float boxCenter = m0 * boxCenterX + m1 * boxCenterY + m2 * boxCenterZ + m3;
+			// The extent of the box around the transformed box uses the absolute values of the matrix
+			final float boxExtent = Math.abs(m0) * extentX + Math.abs(m1) * extentY + Math.abs(m2) * extentZ;
+			final float sphereCenter = m0 * centerX + m1 * centerY + m2 * centerZ + m3;
+			switch (row) {
+				case 0:
+					destination.minX = boxCenter - boxExtent;
+					destination.maxX = boxCenter + boxExtent;
+					destination.centerX = sphereCenter;
+					break;
+				case 1:
+					destination.minY = boxCenter - boxExtent;
+					destination.maxY = boxCenter + boxExtent;
+					destination.centerY = sphereCenter;
+					break;
+				default:
+					destination.minZ = boxCenter - boxExtent;
+					destination.maxZ = boxCenter + boxExtent;
+					destination.centerZ = sphereCenter;
+			}
+			// Use the row index as a column index for the scales
+			maxScale2 = Math.max(maxScale2, m.get(0, row) * m.get(0, row) + m.get(1, row) * m.get(1, row) + m.get(2, row) * m.get(2, row));
+		}
+		destination.radius = radius * (float) Math.sqrt(maxScale2);
+		return destination;
+	}
+
+	/**
+	 * Returns the index of the attribute the positions are read from by {@link #fromVertexData(VertexData)}: the one named "positions", or else the one at index zero.
+	 *
+	 * @param data The vertex data
+	 * @return The index of the positions
+	 */
+	public static int getPositionsIndex(VertexData data) {
+		return data.hasAttribute("positions") ? data.getAttributeIndex("positions") : 0;
+	}
+
+	/**
+	 * Computes the bounds of the positions of the vertex data. The positions are the float attribute named "positions", or else the one at index zero, with two or three components. The box is the
+	 * one around the positions, and the sphere is centered on the box with the distance to the farthest position as its radius, which is tighter than the sphere around the box.
+	 *
+	 * @param data The vertex data
+	 * @return The bounds, or null if the data has no float positions or no vertices
+	 */
+	public static Bounds fromVertexData(VertexData data) {
+		final VertexAttribute attribute = data.getAttribute(getPositionsIndex(data));
+		if (attribute == null || !attribute.hasData() || attribute.getType() != DataType.FLOAT || attribute.getSize() < 2) {
+			return null;
+		}
+		final int size = attribute.getSize();
+		final FloatBuffer positions = attribute.getData().asFloatBuffer();
+		final int count = positions.remaining() / size;
+		if (count == 0) {
+			return null;
+		}
+		float minX = Float.POSITIVE_INFINITY, minY = Float.POSITIVE_INFINITY, minZ = Float.POSITIVE_INFINITY;
+		float maxX = Float.NEGATIVE_INFINITY, maxY = Float.NEGATIVE_INFINITY, maxZ = Float.NEGATIVE_INFINITY;
+		for (int i = 0; i < count; i++) {
+			final float x = positions.get(i * size);
+			final float y = positions.get(i * size + 1);
+			final float z = size > 2 ? positions.get(i * size + 2) : 0;
+			minX = Math.min(minX, x);
+			minY = Math.min(minY, y);
+			minZ = Math.min(minZ, z);
+			maxX = Math.max(maxX, x);
+			maxY = Math.max(maxY, y);
+			maxZ = Math.max(maxZ, z);
+		}
+		final float centerX = (minX + maxX) / 2;
+		final float centerY = (minY + maxY) / 2;
+		final float centerZ = (minZ + maxZ) / 2;
+		float radius2 = 0;
+		for (int i = 0; i < count; i++) {
+			final float dx = positions.get(i * size) - centerX;
+			final float dy = positions.get(i * size + 1) - centerY;
+			final float dz = (size > 2 ? positions.get(i * size + 2) : 0) - centerZ;
+			radius2 = Math.max(radius2, dx * dx + dy * dy + dz * dz);
+		}
+		return new Bounds(new Vector3f(minX, minY, minZ), new Vector3f(maxX, maxY, maxZ), new Vector3f(centerX, centerY, centerZ), (float) Math.sqrt(radius2));
+	}
+
+	private static float length(float x, float y, float z) {
+		return (float) Math.sqrt(x * x + y * y + z * z);
+	}
+}
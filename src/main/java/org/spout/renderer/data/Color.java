@@ -49,6 +49,8 @@ public class Color extends Vector4f {
 	public static final Color DARK_GRAY = new Color(64, 64, 64);
 	private static final long serialVersionUID = 1L;
 	private final boolean normalized;
+	// The normalized version of this color, created on first use as the color is immutable
+	private transient Color normalizedColor;
 
 	/**
 	 * Constructs a new color from the encoded RGBA value. If <code>hasAlpha</code> is false, the alpha value is discarded and replaced with 255 (opaque).
@@ -153,7 +155,7 @@ public class Color extends Vector4f {
 
 	/**
 	 * Returns the normalized version of this color. If all the component are already smaller or equal to one, the color itself is returned. Else, all the values are divided by 255 and the new normalized
-	 * color is returned.
+	 * color is returned. The normalized color is only created once and returned by the next calls.
 	 *
 	 * @return The normalized color
 	 */
@@ -162,7 +164,10 @@ public class Color extends Vector4f {
 		if (isNormalized()) {
 			return this;
 		} else {
-			return new Color(getX() / 255f, getY() / 255f, getZ() / 255f, getW() / 255f);
+			if (normalizedColor == null) {
+				normalizedColor = new Color(getX() / 255f, getY() / 255f, getZ() / 255f, getW() / 255f);
+			}
+			return normalizedColor;
 		}
 	}
 
@@ -33,23 +33,63 @@ import org.spout.math.vector.Vector2f;
 import org.spout.math.vector.Vector3f;
 import org.spout.math.vector.Vector4f;
 import org.spout.renderer.gl.Program;
+import org.spout.renderer.util.Std140Packer;
 
 /**
- * Represents a shader uniform, which has a name and a value.
+ * Represents a shader uniform, which has a name and a value. The version is incremented each time the value is set, which lets programs skip uploading a uniform that didn't change since its last
+ * upload. The handle of the uniform in the last program it was uploaded to is kept, so that it's only looked up when the program changes.
  */
 public abstract class Uniform {
 	protected final String name;
+	protected int version = 0;
+	// The handle in the last program, and the generation of the program it's valid for
+	private Program handleProgram;
+	private int handleGeneration;
+	private int handle;
 
 	protected Uniform(String name) {
 		this.name = name;
 	}
 
 	/**
-	 * Uploads this uniform to the program.
+	 * Uploads this uniform to the program, unless it didn't change since its last upload to it.
 	 *
 	 * @param program The program to upload to
+	 * @see Program#upload(Uniform)
 	 */
-	public abstract void upload(Program program);
+	public void upload(Program program) {
+		program.upload(this);
+	}
+
+	/**
+	 * Uploads the value of this uniform to the handle in the program, whether or not it changed.
+	 *
+	 * @param program The program to upload to
+	 * @param handle The handle of the uniform in the program
+	 */
+	public abstract void upload(Program program, int handle);
+
+	/**
+	 * Packs the value of this uniform with the std140 layout, for uniform buffers.
+	 *
+	 * @param packer The packer to pack the value with
+	 */
+	public abstract void pack(Std140Packer packer);
+
+	/**
+	 * Returns the handle of this uniform in the program. It's only looked up by name if the program isn't the same as the last call, or was created again since.
+	 *
+	 * @param program The program
+	 * @return The handle, or -1 if the uniform isn't active in the program
+	 */
+	public int getHandle(Program program) {
+		if (program != handleProgram || program.getGeneration() != handleGeneration) {
+			handle = program.getUniformHandle(name);
+			handleProgram = program;
+			handleGeneration = program.getGeneration();
+		}
+		return handle;
+	}
 
 	/**
 	 * Returns the name of the uniform.
@@ -60,6 +100,15 @@ public abstract class Uniform {
 		return name;
 	}
 
+	/**
+	 * Returns the version of the value, incremented each time it's set.
+	 *
+	 * @return The version
+	 */
+	public int getVersion() {
+		return version;
+	}
+
 	/**
 	 * Represents a uniform with a boolean value.
 	 */
@@ -78,8 +127,13 @@ public abstract class Uniform {
 		}
 
 		@Override
-		public void upload(Program program) {
-			program.setUniform(name, value);
+		public void upload(Program program, int handle) {
+			program.setUniform(handle, value);
+		}
+
+		@Override
+		public void pack(Std140Packer packer) {
+			packer.pack(value);
 		}
 
 		/**
@@ -98,6 +152,7 @@ public abstract class Uniform {
 		 */
 		public void set(boolean value) {
 			this.value = value;
+			version++;
 		}
 	}
 
@@ -119,8 +174,13 @@ public abstract class Uniform {
 		}
 
 		@Override
-		public void upload(Program program) {
-			program.setUniform(name, value);
+		public void upload(Program program, int handle) {
+			program.setUniform(handle, value);
+		}
+
+		@Override
+		public void pack(Std140Packer packer) {
+			packer.pack(value);
 		}
 
 		/**
@@ -139,6 +199,7 @@ public abstract class Uniform {
 		 */
 		public void set(int value) {
 			this.value = value;
+			version++;
 		}
 	}
 
@@ -160,8 +221,13 @@ public abstract class Uniform {
 		}
 
 		@Override
-		public void upload(Program program) {
-			program.setUniform(name, value);
+		public void upload(Program program, int handle) {
+			program.setUniform(handle, value);
+		}
+
+		@Override
+		public void pack(Std140Packer packer) {
+			packer.pack(value);
 		}
 
 		/**
@@ -180,6 +246,7 @@ public abstract class Uniform {
 		 */
 		public void set(float value) {
 			this.value = value;
+			version++;
 		}
 	}
 
@@ -201,8 +268,13 @@ public abstract class Uniform {
 		}
 
 		@Override
-		public void upload(Program program) {
-			program.setUniform(name, value);
+		public void upload(Program program, int handle) {
+			program.setUniform(handle, value);
+		}
+
+		@Override
+		public void pack(Std140Packer packer) {
+			packer.pack(value);
 		}
 
 		/**
@@ -221,6 +293,7 @@ public abstract class Uniform {
 		 */
 		public void set(Vector2f value) {
 			this.value = value;
+			version++;
 		}
 	}
 
@@ -243,12 +316,17 @@ public abstract class Uniform {
 		}
 
 		@Override
-		public void upload(Program program) {
-			program.setUniform(name, value);
+		public void upload(Program program, int handle) {
+			program.setUniform(handle, value);
+		}
+
+		@Override
+		public void pack(Std140Packer packer) {
+			packer.pack(value);
 		}
 
 		/**
-		 * Returns the value of the uniform.
+		 * Returns the value of the uniform. Changes to the array aren't tracked, use {@link #set(Vector2f[])} instead.
 		 *
 		 * @return The value
 		 */
@@ -264,6 +342,7 @@ public abstract class Uniform {
 		public void set(Vector2f[] value) {
 			this.value = new Vector2f[value.length];
 			System.arraycopy(value, 0, this.value, 0, value.length);
+			version++;
 		}
 	}
 
@@ -285,8 +364,13 @@ public abstract class Uniform {
 		}
 
 		@Override
-		public void upload(Program program) {
-			program.setUniform(name, value);
+		public void upload(Program program, int handle) {
+			program.setUniform(handle, value);
+		}
+
+		@Override
+		public void pack(Std140Packer packer) {
+			packer.pack(value);
 		}
 
 		/**
@@ -305,6 +389,7 @@ public abstract class Uniform {
 		 */
 		public void set(Vector3f value) {
 			this.value = value;
+			version++;
 		}
 	}
 
@@ -327,12 +412,17 @@ public abstract class Uniform {
 		}
 
 		@Override
-		public void upload(Program program) {
-			program.setUniform(name, value);
+		public void upload(Program program, int handle) {
+			program.setUniform(handle, value);
+		}
+
+		@Override
+		public void pack(Std140Packer packer) {
+			packer.pack(value);
 		}
 
 		/**
-		 * Returns the value of the uniform.
+		 * Returns the value of the uniform. Changes to the array aren't tracked, use {@link #set(Vector3f[])} instead.
 		 *
 		 * @return The value
 		 */
@@ -348,6 +438,7 @@ public abstract class Uniform {
 		public void set(Vector3f[] value) {
 			this.value = new Vector3f[value.length];
 			System.arraycopy(value, 0, this.value, 0, value.length);
+			version++;
 		}
 	}
 
@@ -369,8 +460,13 @@ public abstract class Uniform {
 		}
 
 		@Override
-		public void upload(Program program) {
-			program.setUniform(name, value);
+		public void upload(Program program, int handle) {
+			program.setUniform(handle, value);
+		}
+
+		@Override
+		public void pack(Std140Packer packer) {
+			packer.pack(value);
 		}
 
 		/**
@@ -389,6 +485,7 @@ public abstract class Uniform {
 		 */
 		public void set(Vector4f value) {
 			this.value = value;
+			version++;
 		}
 	}
 
@@ -410,8 +507,13 @@ public abstract class Uniform {
 		}
 
 		@Override
-		public void upload(Program program) {
-			program.setUniform(name, value);
+		public void upload(Program program, int handle) {
+			program.setUniform(handle, value);
+		}
+
+		@Override
+		public void pack(Std140Packer packer) {
+			packer.pack(value);
 		}
 
 		/**
@@ -430,6 +532,7 @@ public abstract class Uniform {
 		 */
 		public void set(Matrix2f value) {
 			this.value = value;
+			version++;
 		}
 	}
 
@@ -451,8 +554,13 @@ public abstract class Uniform {
 		}
 
 		@Override
-		public void upload(Program program) {
-			program.setUniform(name, value);
+		public void upload(Program program, int handle) {
+			program.setUniform(handle, value);
+		}
+
+		@Override
+		public void pack(Std140Packer packer) {
+			packer.pack(value);
 		}
 
 		/**
@@ -471,6 +579,7 @@ public abstract class Uniform {
 		 */
 		public void set(Matrix3f value) {
 			this.value = value;
+			version++;
 		}
 	}
 
@@ -492,8 +601,13 @@ public abstract class Uniform {
 		}
 
 		@Override
-		public void upload(Program program) {
-			program.setUniform(name, value);
+		public void upload(Program program, int handle) {
+			program.setUniform(handle, value);
+		}
+
+		@Override
+		public void pack(Std140Packer packer) {
+			packer.pack(value);
 		}
 
 		/**
@@ -512,6 +626,7 @@ public abstract class Uniform {
 		 */
 		public void set(Matrix4f value) {
 			this.value = value;
+			version++;
 		}
 	}
 
@@ -533,8 +648,13 @@ public abstract class Uniform {
 		}
 
 		@Override
-		public void upload(Program program) {
-			program.setUniform(name, value);
+		public void upload(Program program, int handle) {
+			program.setUniform(handle, value);
+		}
+
+		@Override
+		public void pack(Std140Packer packer) {
+			packer.pack(value);
 		}
 
 		/**
@@ -553,6 +673,7 @@ public abstract class Uniform {
 		 */
 		public void set(Color value) {
 			this.value = value;
+			version++;
 		}
 	}
 }
@@ -26,8 +26,11 @@
  */
 package org.spout.renderer.data;
 
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.Iterator;
+import java.util.List;
 import java.util.Map;
 
 import org.spout.renderer.data.Uniform.BooleanUniform;
@@ -42,10 +45,13 @@ import org.spout.renderer.data.Uniform.Vector3Uniform;
 import org.spout.renderer.data.Uniform.Vector4Uniform;
 
 /**
- * Represents a set of uniforms held by an object. Uniforms can be added, removed and modified.
+ * Represents a set of uniforms held by an object. Uniforms can be added, removed and modified. The uniforms are iterated in the order they were first added, which is the order they are packed in for
+ * uniform blocks. They can also be accessed by index, which doesn't allocate an iterator.
  */
 public class UniformHolder implements Iterable<Uniform> {
 	private final Map<String, Uniform> uniforms = new HashMap<>();
+	// The uniforms in the order they were first added
+	private final List<Uniform> orderedUniforms = new ArrayList<>();
 
 	/**
 	 * Adds a uniform to the holder.
@@ -53,7 +59,12 @@ public class UniformHolder implements Iterable<Uniform> {
 	 * @param uniform The uniform to add
 	 */
 	public void add(Uniform uniform) {
-		uniforms.put(uniform.name, uniform);
+		final Uniform previous = uniforms.put(uniform.name, uniform);
+		if (previous != null) {
+			orderedUniforms.set(orderedUniforms.indexOf(previous), uniform);
+		} else {
+			orderedUniforms.add(uniform);
+		}
 	}
 
 	/**
@@ -67,6 +78,25 @@ public class UniformHolder implements Iterable<Uniform> {
 		}
 	}
 
+	/**
+	 * Returns the number of uniforms in the holder.
+	 *
+	 * @return The uniform count
+	 */
+	public int size() {
+		return orderedUniforms.size();
+	}
+
+	/**
+	 * Returns the uniform at the index, in the order the uniforms were first added.
+	 *
+	 * @param index The index of the uniform
+	 * @return The uniform
+	 */
+	public Uniform get(int index) {
+		return orderedUniforms.get(index);
+	}
+
 	/**
 	 * Returns true if the holder has a uniform with the provided name
 	 *
@@ -242,7 +272,10 @@ public class UniformHolder implements Iterable<Uniform> {
 	 * @param name The name of the uniform to remove
 	 */
 	public void remove(String name) {
-		uniforms.remove(name);
+		final Uniform removed = uniforms.remove(name);
+		if (removed != null) {
+			orderedUniforms.remove(removed);
+		}
 	}
 
 	/**
@@ -250,10 +283,11 @@ public class UniformHolder implements Iterable<Uniform> {
 	 */
 	public void clear() {
 		uniforms.clear();
+		orderedUniforms.clear();
 	}
 
 	@Override
 	public Iterator<Uniform> iterator() {
-		return uniforms.values().iterator();
+		return Collections.unmodifiableList(orderedUniforms).iterator();
 	}
 }
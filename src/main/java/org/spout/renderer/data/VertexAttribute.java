@@ -27,6 +27,8 @@
 package org.spout.renderer.data;
 
 import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import gnu.trove.iterator.TDoubleIterator;
 import gnu.trove.iterator.TFloatIterator;
@@ -41,14 +43,16 @@ import gnu.trove.list.TShortList;
 import org.spout.renderer.util.CausticUtil;
 
 /**
- * Represents a vertex attribute. It has a name, a data type, a size (the number of components) and data.
+ * Represents a vertex attribute. It has a name, a data type, a size (the number of components) and data. <p/> The data is never copied when read: {@link #getData()} returns a read-only view of it.
+ * Cloning an attribute shares the data between the clone and the original, and the data is only copied when one of them requests to write to it with {@link #getWritableData()} (copy-on-write).
+ * Ownership of an existing buffer can be given to an attribute without copying through {@link #transferData(java.nio.ByteBuffer)}.
  */
 public class VertexAttribute implements Cloneable {
 	protected final String name;
 	protected final DataType type;
 	protected final int size;
 	protected final UploadMode uploadMode;
-	private ByteBuffer buffer;
+	private SharedBuffer data;
 
 	/**
 	 * Creates a new vertex attribute from the name, the data type and the size. The upload mode will be {@link UploadMode#TO_FLOAT}.
@@ -113,30 +117,79 @@ public class VertexAttribute implements Cloneable {
 	}
 
 	/**
-	 * Returns a new byte buffer filled and ready to read, containing the attribute data. This method will {@link java.nio.ByteBuffer#flip()} the buffer before returning it.
+	 * Returns a read-only view of the attribute data, ready to read. The data is not copied, so this is cheap, but the view shouldn't be kept after the data has been replaced.
 	 *
 	 * @return The buffer
 	 */
 	public ByteBuffer getData() {
-		if (this.buffer == null) {
-			throw new IllegalStateException("ByteBuffer must have data before it is ready for use.");
+		checkData();
+		return data.view().asReadOnlyBuffer().order(ByteOrder.nativeOrder());
+	}
+
+	/**
+	 * Returns a writable view of the attribute data, ready to read. If the data is shared with clones of this attribute, it is first copied so that writes will only affect this attribute. Read-only
+	 * data, such as a transferred read-only buffer, is also copied first.
+	 *
+	 * @return The buffer
+	 */
+	public ByteBuffer getWritableData() {
+		checkData();
+		if (data.isShared() || data.buffer.isReadOnly()) {
+			final ByteBuffer copy = CausticUtil.createByteBuffer(data.buffer.capacity());
+			copy.put(data.view());
+			replaceData(new SharedBuffer(copy));
 		}
-		final ByteBuffer copy = CausticUtil.createByteBuffer(buffer.capacity());
-		buffer.rewind();
-		copy.put(buffer);
-		copy.flip();
-		return copy;
+		return data.view();
+	}
+
+	/**
+	 * Returns true if the attribute has data.
+	 *
+	 * @return Whether or not the attribute has data
+	 */
+	public boolean hasData() {
+		return data != null;
+	}
+
+	/**
+	 * Returns true if the attribute data is shared with clones of this attribute, which includes clones that were dropped without clearing their data. Shared data is copied on the first write
+	 * through {@link #getWritableData()}.
+	 *
+	 * @return Whether or not the data is shared
+	 */
+	public boolean isDataShared() {
+		return data != null && data.isShared();
 	}
 
 	/**
-	 * Replaces the current buffer data with a copy of the given {@link ByteBuffer} This method arbitrarily creates data for the ByteBuffer regardless of the data type of the vertex attribute.
+	 * Replaces the current buffer data with a copy of the given {@link ByteBuffer}, from its start to its limit. This method arbitrarily creates data for the ByteBuffer regardless of the data type of
+	 * the vertex attribute.
 	 *
 	 * @param buffer to set
 	 */
 	public void setData(ByteBuffer buffer) {
-		buffer.rewind();
-		this.buffer = CausticUtil.createByteBuffer(buffer.capacity());
-		this.buffer.put(buffer);
+		final ByteBuffer source = buffer.duplicate();
+		source.rewind();
+		final ByteBuffer copy = CausticUtil.createByteBuffer(source.remaining());
+		copy.put(source);
+		replaceData(new SharedBuffer(copy));
+	}
+
+	/**
+	 * Replaces the current buffer data with the given {@link ByteBuffer}, from its start to its limit, without copying it. The attribute takes ownership of the buffer: it must not be modified by the
+	 * caller afterwards. The buffer must be direct so it can be uploaded to OpenGL. It can be read-only, like a mapped file, in which case it is copied on the first write through {@link
+	 * #getWritableData()}.
+	 *
+	 * @param buffer The direct buffer to take ownership of
+	 * @throws IllegalArgumentException If the buffer isn't direct
+	 */
+	public void transferData(ByteBuffer buffer) {
+		if (!buffer.isDirect()) {
+			throw new IllegalArgumentException("Buffer must be direct");
+		}
+		final ByteBuffer source = buffer.duplicate();
+		source.rewind();
+		replaceData(new SharedBuffer(source.slice().order(ByteOrder.nativeOrder())));
 	}
 
 	/**
@@ -145,8 +198,9 @@ public class VertexAttribute implements Cloneable {
 	 * @param list to set
 	 */
 	public void setData(TByteList list) {
-		this.buffer = CausticUtil.createByteBuffer(list.size());
-		this.buffer.put(list.toArray());
+		final ByteBuffer buffer = CausticUtil.createByteBuffer(list.size());
+		buffer.put(list.toArray());
+		replaceData(new SharedBuffer(buffer));
 	}
 
 	/**
@@ -155,11 +209,12 @@ public class VertexAttribute implements Cloneable {
 	 * @param list to set
 	 */
 	public void setData(TShortList list) {
-		this.buffer = CausticUtil.createByteBuffer(list.size() * DataType.SHORT.getByteSize());
+		final ByteBuffer buffer = CausticUtil.createByteBuffer(list.size() * DataType.SHORT.getByteSize());
 		final TShortIterator iterator = list.iterator();
 		while (iterator.hasNext()) {
 			buffer.putShort(iterator.next());
 		}
+		replaceData(new SharedBuffer(buffer));
 	}
 
 	/**
@@ -168,11 +223,12 @@ public class VertexAttribute implements Cloneable {
 	 * @param list to set
 	 */
 	public void setData(TIntList list) {
-		this.buffer = CausticUtil.createByteBuffer(list.size() * DataType.INT.getByteSize());
+		final ByteBuffer buffer = CausticUtil.createByteBuffer(list.size() * DataType.INT.getByteSize());
 		final TIntIterator iterator = list.iterator();
 		while (iterator.hasNext()) {
 			buffer.putInt(iterator.next());
 		}
+		replaceData(new SharedBuffer(buffer));
 	}
 
 	/**
@@ -181,11 +237,12 @@ public class VertexAttribute implements Cloneable {
 	 * @param list to set
 	 */
 	public void setData(TFloatList list) {
-		this.buffer = CausticUtil.createByteBuffer(list.size() * DataType.FLOAT.getByteSize());
+		final ByteBuffer buffer = CausticUtil.createByteBuffer(list.size() * DataType.FLOAT.getByteSize());
 		final TFloatIterator iterator = list.iterator();
 		while (iterator.hasNext()) {
 			buffer.putFloat(iterator.next());
 		}
+		replaceData(new SharedBuffer(buffer));
 	}
 
 	/**
@@ -195,29 +252,70 @@ public class VertexAttribute implements Cloneable {
 	 * @param list to set
 	 */
 	public void setData(TDoubleList list) {
-		this.buffer = CausticUtil.createByteBuffer(list.size() * DataType.DOUBLE.getByteSize());
+		final ByteBuffer buffer = CausticUtil.createByteBuffer(list.size() * DataType.DOUBLE.getByteSize());
 		final TDoubleIterator iterator = list.iterator();
 		while (iterator.hasNext()) {
 			buffer.putDouble(iterator.next());
 		}
+		replaceData(new SharedBuffer(buffer));
 	}
 
 	/**
-	 * Clears all of the buffer data.
+	 * Clears all of the buffer data. The data must be set again before the attribute can be used.
 	 */
 	public void clearData() {
-		if (buffer != null) {
-			buffer.clear();
-		}
+		replaceData(null);
 	}
 
+	/**
+	 * Returns a clone of this attribute. The data is shared with the clone until either of them writes to it, or clears or replaces its data. The clone only stops sharing the data that way: a clone
+	 * that is simply dropped still counts as sharing it, so the next write to this attribute makes a needless copy. Call {@link #clearData()} on clones that aren't needed anymore.
+	 *
+	 * @return The clone
+	 */
 	@Override
 	public VertexAttribute clone() {
 		final VertexAttribute clone = new VertexAttribute(name, type, size, uploadMode);
-		clone.setData(this.buffer);
+		if (data != null) {
+			data.references.incrementAndGet();
+			clone.data = data;
+		}
 		return clone;
 	}
 
+	private void checkData() {
+		if (data == null) {
+			throw new IllegalStateException("ByteBuffer must have data before it is ready for use.");
+		}
+	}
+
+	private void replaceData(SharedBuffer replacement) {
+		if (data != null) {
+			data.references.decrementAndGet();
+		}
+		data = replacement;
+	}
+
+	// Attribute data with a count of the attributes referencing it
+	private static class SharedBuffer {
+		private final ByteBuffer buffer;
+		private final AtomicInteger references = new AtomicInteger(1);
+
+		private SharedBuffer(ByteBuffer buffer) {
+			this.buffer = buffer;
+		}
+
+		private boolean isShared() {
+			return references.get() > 1;
+		}
+
+		private ByteBuffer view() {
+			final ByteBuffer view = buffer.duplicate().order(ByteOrder.nativeOrder());
+			view.clear();
+			return view;
+		}
+	}
+
 	/**
 	 * Represents an attribute data type.
 	 */
@@ -27,6 +27,7 @@
 package org.spout.renderer.data;
 
 import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
 import java.util.Collections;
 import java.util.Set;
 
@@ -49,6 +50,9 @@ import org.spout.renderer.util.CausticUtil;
 public class VertexData {
 	// Rendering indices
 	private final TIntList indices = new TIntArrayList();
+	// Indices already encoded in a read-only buffer, decoded into the list on first access
+	private ByteBuffer encodedIndices;
+	private DataType encodedIndicesType;
 	// Attributes by index
 	private final TIntObjectMap<VertexAttribute> attributes = new TIntObjectHashMap<>();
 	// Index from name lookup
@@ -60,6 +64,7 @@ public class VertexData {
 	 * @return The indices list
 	 */
 	public TIntList getIndices() {
+		decodeIndices();
 		return indices;
 	}
 
@@ -69,23 +74,178 @@ public class VertexData {
 	 * @return The number of indices
 	 */
 	public int getIndicesCount() {
+		if (encodedIndices != null) {
+			return encodedIndices.capacity() / encodedIndicesType.getByteSize();
+		}
 		return indices.size();
 	}
 
 	/**
-	 * Returns a byte buffer containing all the current indices.
+	 * Returns the narrowest unsigned integer type that can hold all the current indices: {@link DataType#UNSIGNED_BYTE}, {@link DataType#UNSIGNED_SHORT} or {@link DataType#UNSIGNED_INT}. Indices are
+	 * treated as unsigned.
+	 *
+	 * @return The indices type
+	 */
+	public DataType getIndicesType() {
+		if (encodedIndices != null) {
+			return encodedIndicesType;
+		}
+		// The highest set bit of all the indices is the one of the largest
+		int bits = 0;
+		for (int i = 0; i < indices.size(); i++) {
+			bits |= indices.get(i);
+		}
+		return getIndicesType(bits);
+	}
+
+	/**
+	 * Returns a byte buffer containing all the current indices, encoded with the narrowest type, as given by {@link #getIndicesType()}. The buffer should be released with {@link
+	 * #releaseIndicesBuffer(java.nio.ByteBuffer)} once the indices have been read.
 	 *
 	 * @return A buffer of the indices
 	 */
 	public ByteBuffer getIndicesBuffer() {
-		final ByteBuffer buffer = CausticUtil.createByteBuffer(indices.size() * DataType.INT.getByteSize());
-		for (int i = 0; i < indices.size(); i++) {
-			buffer.putInt(indices.get(i));
+		return getIndicesBuffer(getIndicesType());
+	}
+
+	/**
+	 * Returns a byte buffer containing all the current indices, encoded with the desired type. The buffer should be released with {@link #releaseIndicesBuffer(java.nio.ByteBuffer)} once the indices
+	 * have been read.
+	 *
+	 * @param type The indices type, either {@link DataType#UNSIGNED_BYTE}, {@link DataType#UNSIGNED_SHORT} or {@link DataType#UNSIGNED_INT}
+	 * @return A buffer of the indices
+	 * @throws IllegalArgumentException If the type isn't an unsigned integer type, or if an index doesn't fit in the type
+	 */
+	public ByteBuffer getIndicesBuffer(DataType type) {
+		return getIndicesBuffer(type, 0, getIndicesCount());
+	}
+
+	/**
+	 * Returns a byte buffer containing a range of the current indices, encoded with the desired type. This is used to update part of an indices buffer. If the indices were set already encoded with
+	 * the type, through {@link #setIndicesBuffer(java.nio.ByteBuffer, DataType)}, a read-only view of them is returned. Else the buffer is acquired from the {@link
+	 * org.spout.renderer.util.CausticUtil#getBufferPool()}. In both cases, it should be released with {@link #releaseIndicesBuffer(java.nio.ByteBuffer)} once the indices have been read.
+	 *
+	 * @param type The indices type, either {@link DataType#UNSIGNED_BYTE}, {@link DataType#UNSIGNED_SHORT} or {@link DataType#UNSIGNED_INT}
+	 * @param offset The index of the first index in the range
+	 * @param count The number of indices in the range
+	 * @return A buffer of the indices in the range
+	 * @throws IllegalArgumentException If the type isn't an unsigned integer type, if the range is out of bounds, or if an index doesn't fit in the type
+	 */
+	public ByteBuffer getIndicesBuffer(DataType type, int offset, int count) {
+		if (type != DataType.UNSIGNED_BYTE && type != DataType.UNSIGNED_SHORT && type != DataType.UNSIGNED_INT) {
+			throw new IllegalArgumentException("Indices type must be an unsigned integer type, got " + type);
+		}
+		final int indicesCount = getIndicesCount();
+		if (offset < 0 || count < 0 || offset + count > indicesCount) {
+			throw new IllegalArgumentException("Indices range [" + offset + ", " + (offset + count) + ") is out of bounds for " + indicesCount + " indices");
+		}
+		if (encodedIndices != null && type == encodedIndicesType) {
+			// Already encoded, no need to copy
+			final ByteBuffer view = encodedIndices.duplicate();
+			view.limit((offset + count) * type.getByteSize()).position(offset * type.getByteSize());
+			return view.slice().order(ByteOrder.nativeOrder());
+		}
+		final int end = offset + count;
+		final ByteBuffer buffer = CausticUtil.getBufferPool().acquire(count * type.getByteSize());
+		switch (type) {
+			case UNSIGNED_BYTE:
+				for (int i = offset; i < end; i++) {
+					buffer.put((byte) checkIndexFits(i, type));
+				}
+				break;
+			case UNSIGNED_SHORT:
+				for (int i = offset; i < end; i++) {
+					buffer.putShort((short) checkIndexFits(i, type));
+				}
+				break;
+			default:
+				for (int i = offset; i < end; i++) {
+					buffer.putInt(getIndex(i));
+				}
 		}
 		buffer.flip();
 		return buffer;
 	}
 
+	private int checkIndexFits(int i, DataType type) {
+		final int index = getIndex(i);
+		if (getIndicesType(index).getByteSize() > type.getByteSize()) {
+			throw new IllegalArgumentException("Index " + (index & 0xffffffffL) + " at position " + i + " doesn't fit in " + type);
+		}
+		return index;
+	}
+
+	private int getIndex(int i) {
+		if (encodedIndices == null) {
+			return indices.get(i);
+		}
+		switch (encodedIndicesType) {
+			case UNSIGNED_BYTE:
+				return encodedIndices.get(i) & 0xff;
+			case UNSIGNED_SHORT:
+				return encodedIndices.getShort(i << 1) & 0xffff;
+			default:
+				return encodedIndices.getInt(i << 2);
+		}
+	}
+
+	/**
+	 * Releases a buffer returned by {@link #getIndicesBuffer(DataType, int, int)} or one of its overloads. Buffers acquired from the pool are released to it, views of encoded indices are dropped.
+	 *
+	 * @param buffer The buffer to release
+	 */
+	public void releaseIndicesBuffer(ByteBuffer buffer) {
+		if (!buffer.isReadOnly()) {
+			CausticUtil.getBufferPool().release(buffer);
+		}
+	}
+
+	/**
+	 * Replaces the indices by ones already encoded in a direct buffer, from its position to its limit, such as a slice of a memory mapped file. The buffer isn't copied: it is uploaded as is when the
+	 * type matches the one requested by the vertex array, and must not be modified afterwards. It is only decoded into the indices list on the first call to {@link #getIndices()}.
+	 *
+	 * @param buffer The direct buffer holding the indices, in native byte order
+	 * @param type The indices type, either {@link DataType#UNSIGNED_BYTE}, {@link DataType#UNSIGNED_SHORT} or {@link DataType#UNSIGNED_INT}
+	 * @throws IllegalArgumentException If the buffer isn't direct, if the type isn't an unsigned integer type, or if the buffer size isn't a multiple of the type size
+	 */
+	public void setIndicesBuffer(ByteBuffer buffer, DataType type) {
+		if (!buffer.isDirect()) {
+			throw new IllegalArgumentException("Buffer must be direct");
+		}
+		if (type != DataType.UNSIGNED_BYTE && type != DataType.UNSIGNED_SHORT && type != DataType.UNSIGNED_INT) {
+			throw new IllegalArgumentException("Indices type must be an unsigned integer type, got " + type);
+		}
+		if (buffer.remaining() % type.getByteSize() != 0) {
+			throw new IllegalArgumentException("Buffer size isn't a multiple of the indices type size");
+		}
+		indices.clear();
+		encodedIndices = buffer.slice().asReadOnlyBuffer().order(ByteOrder.nativeOrder());
+		encodedIndicesType = type;
+	}
+
+	private void decodeIndices() {
+		if (encodedIndices == null) {
+			return;
+		}
+		final int count = getIndicesCount();
+		indices.clear();
+		for (int i = 0; i < count; i++) {
+			indices.add(getIndex(i));
+		}
+		encodedIndices = null;
+		encodedIndicesType = null;
+	}
+
+	private static DataType getIndicesType(int bits) {
+		if ((bits & ~0xff) == 0) {
+			return DataType.UNSIGNED_BYTE;
+		}
+		if ((bits & ~0xffff) == 0) {
+			return DataType.UNSIGNED_SHORT;
+		}
+		return DataType.UNSIGNED_INT;
+	}
+
 	/**
 	 * Adds an attribute.
 	 *
@@ -246,20 +406,20 @@ public class VertexData {
 	}
 
 	/**
-	 * Returns the buffer for the attribute associated to the provided name, or null if none can be found. The buffer is returned filled and ready for reading.
+	 * Returns the buffer for the attribute associated to the provided name, or null if none can be found. The buffer is a read-only view of the attribute data, ready for reading.
 	 *
 	 * @param name The name to lookup
-	 * @return The attribute buffer, filled and flipped
+	 * @return The attribute buffer, as a read-only view
 	 */
 	public ByteBuffer getAttributeBuffer(String name) {
 		return getAttributeBuffer(getAttributeIndex(name));
 	}
 
 	/**
-	 * Returns the buffer for the attribute at the provided index, or null if none can be found. The buffer is returned filled and ready for reading.
+	 * Returns the buffer for the attribute at the provided index, or null if none can be found. The buffer is a read-only view of the attribute data, ready for reading.
 	 *
 	 * @param index The index to lookup
-	 * @return The attribute buffer, filled and flipped
+	 * @return The attribute buffer, as a read-only view
 	 */
 	public ByteBuffer getAttributeBuffer(int index) {
 		final VertexAttribute attribute = getAttribute(index);
@@ -274,18 +434,24 @@ public class VertexData {
 	 */
 	public void clear() {
 		indices.clear();
+		encodedIndices = null;
+		encodedIndicesType = null;
 		attributes.clear();
 		nameToIndex.clear();
 	}
 
 	/**
-	 * Replaces the contents of this vertex data by the provided one. This is a deep copy. The vertex attribute are each individually cloned.
+	 * Replaces the contents of this vertex data by the provided one. The vertex attribute are each individually cloned, which shares their data with the provided vertex data until either one
+	 * writes to it (copy-on-write), so copying doesn't allocate any buffer.
 	 *
 	 * @param data The data to copy.
 	 */
 	public void copy(VertexData data) {
 		clear();
 		indices.addAll(data.indices);
+		// Encoded indices are read-only, so they can be shared
+		encodedIndices = data.encodedIndices;
+		encodedIndicesType = data.encodedIndicesType;
 		final TIntObjectIterator<VertexAttribute> iterator = data.attributes.iterator();
 		while (iterator.hasNext()) {
 			iterator.advance();
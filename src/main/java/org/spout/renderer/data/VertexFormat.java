@@ -0,0 +1,254 @@
+/*
+ * This file is part of Caustic.
+ *
+ * Copyright (c) 2013 Spout LLC <http://www.spout.org/>
+ * Caustic is licensed under the Spout License Version 1.
+ *
+ * Caustic is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the Free
+ * Software Foundation, either version 3 of the License, or (at your option)
+ * any later version.
+ *
+ * In addition, 180 days after any changes are published, you can use the
+ * software, incorporating those changes, under the terms of the MIT license,
+ * as described in the Spout License Version 1.
+ *
+ * Caustic is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE.  See the GNU Lesser General Public License for
+ * more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License,
+ * the MIT license and the Spout License Version 1 along with this program.
+ * If not, see <http://www.gnu.org/licenses/> for the GNU Lesser General Public
+ * License and see <http://spout.in/licensev1> for the full license, including
+ * the MIT license.
+ */
+package org.spout.renderer.data;
+
+import java.nio.ByteBuffer;
+
+import org.spout.renderer.data.VertexAttribute.DataType;
+import org.spout.renderer.data.VertexAttribute.UploadMode;
+import org.spout.renderer.util.CausticUtil;
+
+/**
+ * Represents the layout of the attributes of a {@link VertexData} in a single interleaved buffer. Each vertex occupies {@link #getStride()} bytes, and each attribute sits at its own byte offset in
+ * the vertex. Offsets and the stride are aligned on 4 bytes, as recommended by OpenGL for attribute fetching. Use {@link #interleave(VertexData)} to pack the separate attribute buffers of the
+ * vertex data into one buffer of this format.
+ */
+public class VertexFormat {
+	private static final int ALIGNMENT = 4;
+	private final DataType[] types;
+	private final int[] sizes;
+	private final UploadMode[] uploadModes;
+	private final int[] offsets;
+	private final int stride;
+
+	/**
+	 * Creates a new vertex format from the attributes of the vertex data. The attributes are placed in the vertex in the order of their indices, which must go from zero to the attribute count
+	 * minus one.
+	 *
+	 * @param data The vertex data to create the format for
+	 */
+	public VertexFormat(VertexData data) {
+		final int attributeCount = data.getAttributeCount();
+		types = new DataType[attributeCount];
+		sizes = new int[attributeCount];
+		uploadModes = new UploadMode[attributeCount];
+		offsets = new int[attributeCount];
+		int offset = 0;
+		for (int i = 0; i < attributeCount; i++) {
+			final VertexAttribute attribute = data.getAttribute(i);
+			if (attribute == null) {
+				throw new IllegalArgumentException("Missing attribute at index " + i + ", attribute indices must be contiguous");
+			}
+			types[i] = attribute.getType();
+			sizes[i] = attribute.getSize();
+			uploadModes[i] = attribute.getUploadMode();
+			offsets[i] = offset;
+			offset = align(offset + getAttributeByteSize(i));
+		}
+		stride = offset;
+	}
+
+	/**
+	 * Returns the number of attributes in the format.
+	 *
+	 * @return The attribute count
+	 */
+	public int getAttributeCount() {
+		return offsets.length;
+	}
+
+	/**
+	 * Returns the data type of the attribute at the index.
+	 *
+	 * @param index The attribute index
+	 * @return The data type
+	 */
+	public DataType getType(int index) {
+		return types[index];
+	}
+
+	/**
+	 * Returns the number of components of the attribute at the index.
+	 *
+	 * @param index The attribute index
+	 * @return The component count
+	 */
+	public int getSize(int index) {
+		return sizes[index];
+	}
+
+	/**
+	 * Returns the upload mode of the attribute at the index.
+	 *
+	 * @param index The attribute index
+	 * @return The upload mode
+	 */
+	public UploadMode getUploadMode(int index) {
+		return uploadModes[index];
+	}
+
+	/**
+	 * Returns the offset in bytes of the attribute at the index, from the start of the vertex.
+	 *
+	 * @param index The attribute index
+	 * @return The offset in bytes
+	 */
+	public int getOffset(int index) {
+		return offsets[index];
+	}
+
+	/**
+	 * Returns the number of bytes used by one value of the attribute at the index, without alignment padding.
+	 *
+	 * @param index The attribute index
+	 * @return The size in bytes
+	 */
+	public int getAttributeByteSize(int index) {
+		return sizes[index] * types[index].getByteSize();
+	}
+
+	/**
+	 * Returns the size of a vertex in bytes, which is the distance between two consecutive vertices in the interleaved buffer.
+	 *
+	 * @return The stride in bytes
+	 */
+	public int getStride() {
+		return stride;
+	}
+
+	/**
+	 * Returns the number of vertices in the vertex data, which is deduced from the size of the attribute buffers. All attributes must hold the same number of vertices.
+	 *
+	 * @param data The vertex data
+	 * @return The number of vertices
+	 * @throws IllegalArgumentException If the data doesn't match the format, or if the attributes don't have the same number of vertices
+	 */
+	public int getVertexCount(VertexData data) {
+		checkMatches(data);
+		int vertexCount = -1;
+		for (int i = 0; i < offsets.length; i++) {
+			final ByteBuffer buffer = data.getAttribute(i).getData();
+			final int byteSize = getAttributeByteSize(i);
+			if (buffer.remaining() % byteSize != 0) {
+				throw new IllegalArgumentException("Attribute at index " + i + " has an incomplete vertex");
+			}
+			final int count = buffer.remaining() / byteSize;
+			if (vertexCount == -1) {
+				vertexCount = count;
+			} else if (vertexCount != count) {
+				throw new IllegalArgumentException("Attribute at index " + i + " has " + count + " vertices, expected " + vertexCount);
+			}
+		}
+		return Math.max(vertexCount, 0);
+	}
+
+	/**
+	 * Packs the attribute buffers of the vertex data into a single buffer with this format. The returned buffer is filled and ready for reading. Alignment padding bytes are zero. The buffer is acquired
+	 * from the {@link org.spout.renderer.util.CausticUtil#getBufferPool()}, and should be released to it once the data has been read.
+	 *
+	 * @param data The vertex data to interleave
+	 * @return The interleaved buffer
+	 * @throws IllegalArgumentException If the data doesn't match the format, or if the attributes don't have the same number of vertices
+	 */
+	public ByteBuffer interleave(VertexData data) {
+		return interleave(data, 0, getVertexCount(data));
+	}
+
+	/**
+	 * Packs a range of vertices from the attribute buffers of the vertex data into a single buffer with this format. This is used to update part of an interleaved buffer. The returned buffer is filled
+	 * and ready for reading. Alignment padding bytes are zero. The buffer is acquired from the {@link org.spout.renderer.util.CausticUtil#getBufferPool()}, and should be released to it once the data
+	 * has been read.
+	 *
+	 * @param data The vertex data to interleave
+	 * @param firstVertex The index of the first vertex in the range
+	 * @param vertexCount The number of vertices in the range
+	 * @return The interleaved buffer for the range
+	 * @throws IllegalArgumentException If the data doesn't match the format, if the attributes don't have the same number of vertices, or if the range is out of bounds
+	 */
+	public ByteBuffer interleave(VertexData data, int firstVertex, int vertexCount) {
+		final int totalCount = getVertexCount(data);
+		if (firstVertex < 0 || vertexCount < 0 || firstVertex + vertexCount > totalCount) {
+			throw new IllegalArgumentException("Vertex range [" + firstVertex + ", " + (firstVertex + vertexCount) + ") is out of bounds for " + totalCount + " vertices");
+		}
+		final ByteBuffer interleaved = CausticUtil.getBufferPool().acquire(vertexCount * stride);
+		// Pooled buffers aren't cleared, so zero the padding bytes first
+		for (int p = 0; p < stride; p++) {
+			if (isPadding(p)) {
+				for (int v = 0; v < vertexCount; v++) {
+					interleaved.put(v * stride + p, (byte) 0);
+				}
+			}
+		}
+		for (int i = 0; i < offsets.length; i++) {
+			final ByteBuffer source = data.getAttribute(i).getData();
+			final int byteSize = getAttributeByteSize(i);
+			final int offset = offsets[i];
+			if (byteSize == stride) {
+				// A single attribute without padding, the range is copied at once
+				source.limit((firstVertex + vertexCount) * byteSize);
+				source.position(firstVertex * byteSize);
+				interleaved.put(source);
+				continue;
+			}
+			// Copy the attribute value of each vertex to its position in the interleaved vertex, the limit is set first as the range only moves forward
+			for (int v = 0; v < vertexCount; v++) {
+				final int sourcePosition = (firstVertex + v) * byteSize;
+				source.limit(sourcePosition + byteSize);
+				source.position(sourcePosition);
+				interleaved.position(v * stride + offset);
+				interleaved.put(source);
+			}
+		}
+		interleaved.rewind();
+		return interleaved;
+	}
+
+	private boolean isPadding(int position) {
+		for (int i = 0; i < offsets.length; i++) {
+			if (position >= offsets[i] && position < offsets[i] + getAttributeByteSize(i)) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	private void checkMatches(VertexData data) {
+		if (data.getAttributeCount() != offsets.length) {
+			throw new IllegalArgumentException("Expected " + offsets.length + " attributes, got " + data.getAttributeCount());
+		}
+		for (int i = 0; i < offsets.length; i++) {
+			final VertexAttribute attribute = data.getAttribute(i);
+			if (attribute == null || attribute.getType() != types[i] || attribute.getSize() != sizes[i]) {
+				throw new IllegalArgumentException("Attribute at index " + i + " doesn't match the format");
+			}
+		}
+	}
+
+	private static int align(int offset) {
+		return (offset + ALIGNMENT - 1) / ALIGNMENT * ALIGNMENT;
+	}
+}
@@ -39,11 +39,18 @@ import org.spout.renderer.data.UniformHolder;
 import org.spout.renderer.gl.Texture.Format;
 import org.spout.renderer.util.CausticUtil;
 import org.spout.renderer.util.Rectangle;
+import org.spout.renderer.util.Std140Packer;
 
 /**
- * Represents an OpenGL context. Creating context must be done before any other OpenGL object.
+ * Represents an OpenGL context. Creating context must be done before any other OpenGL object. <p/> The camera matrices and context uniforms are uploaded to each program individually, unless a {@link
+ * UniformBuffer} is set with {@link #setUniformBuffer(UniformBuffer)}. They are then packed in the buffer once per frame, and the programs declaring the {@link #UNIFORM_BLOCK_NAME} block read them
+ * from it. The block must declare the "projectionMatrix" and "viewMatrix" matrices, followed by the context uniforms in the order they were added, with the std140 layout.
  */
 public abstract class Context extends Creatable implements GLVersioned {
+	/**
+	 * The name of the uniform block holding the camera matrices and context uniforms.
+	 */
+	public static final String UNIFORM_BLOCK_NAME = "Context";
 	// Window title
 	protected String windowTitle = "Caustic";
 	// Window size
@@ -54,8 +61,32 @@ public abstract class Context extends Creatable implements GLVersioned {
 	protected final Set<Capability> capabilities = EnumSet.noneOf(Capability.class);
 	// Context uniforms
 	protected final UniformHolder uniforms = new UniformHolder();
+	// Uniform buffer for the camera matrices and context uniforms, optional
+	protected UniformBuffer uniformBuffer;
+	private final Std140Packer uniformPacker = new Std140Packer();
 	// Camera
 	protected Camera camera;
+	// Shadow of the OpenGL state
+	protected final StateCache stateCache;
+
+	/**
+	 * Constructs a new context with its own state cache.
+	 */
+	protected Context() {
+		this(new StateCache());
+	}
+
+	/**
+	 * Constructs a new context using the state cache, which should be shared with the objects rendering in it.
+	 *
+	 * @param stateCache The state cache
+	 */
+	protected Context(StateCache stateCache) {
+		if (stateCache == null) {
+			throw new IllegalArgumentException("State cache cannot be null");
+		}
+		this.stateCache = stateCache;
+	}
 
 	@Override
 	public void destroy() {
@@ -64,6 +95,15 @@ public abstract class Context extends Creatable implements GLVersioned {
 		super.destroy();
 	}
 
+	/**
+	 * Returns the shadow of the OpenGL state used to skip redundant calls, including the count of skipped calls.
+	 *
+	 * @return The state cache
+	 */
+	public StateCache getStateCache() {
+		return stateCache;
+	}
+
 	/**
 	 * Updates the display with the current front (screen) buffer.
 	 */
@@ -118,9 +158,57 @@ public abstract class Context extends Creatable implements GLVersioned {
 	 */
 	public void uploadUniforms(Program program) {
 		CausticUtil.checkVersion(this, program);
+		if (uniformBuffer != null) {
+			// Programs with the block ignore the individual uploads, as its members aren't active uniforms
+			program.setUniformBlockBinding(UNIFORM_BLOCK_NAME, uniformBuffer.getBindingPoint());
+		}
 		program.upload(uniforms);
 	}
 
+	/**
+	 * Sets the uniform buffer in which the camera matrices and context uniforms are packed, to be shared by the programs declaring the {@link #UNIFORM_BLOCK_NAME} block. The buffer must have been
+	 * created. Set to null to only upload them individually.
+	 *
+	 * @param uniformBuffer The uniform buffer, or null for none
+	 */
+	public void setUniformBuffer(UniformBuffer uniformBuffer) {
+		if (uniformBuffer != null) {
+			CausticUtil.checkVersion(this, uniformBuffer);
+			uniformBuffer.checkCreated();
+		}
+		this.uniformBuffer = uniformBuffer;
+	}
+
+	/**
+	 * Returns the uniform buffer in which the camera matrices and context uniforms are packed, if any.
+	 *
+	 * @return The uniform buffer, or null if none has been set
+	 */
+	public UniformBuffer getUniformBuffer() {
+		return uniformBuffer;
+	}
+
+	/**
+	 * Packs the projection and view matrices of the camera, followed by the context uniforms, into the uniform buffer and binds it. Only the bytes that changed since the last update are uploaded. Does
+	 * nothing if no uniform buffer is set.
+	 *
+	 * @throws IllegalStateException If the camera hasn't been set
+	 */
+	public void updateUniformBuffer() {
+		if (uniformBuffer == null) {
+			return;
+		}
+		if (camera == null) {
+			throw new IllegalStateException("Camera has not been set");
+		}
+		uniformPacker.reset();
+		uniformPacker.pack(camera.getProjectionMatrix());
+		uniformPacker.pack(camera.getViewMatrix());
+		uniformPacker.pack(uniforms);
+		uniformBuffer.setData(uniformPacker.getBuffer());
+		uniformBuffer.bind();
+	}
+
 	/**
 	 * Sets the render camera. Will be use for all subsequent render calls, until changed again.
 	 *
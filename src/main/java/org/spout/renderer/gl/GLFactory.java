@@ -74,6 +74,14 @@ public interface GLFactory extends GLVersioned {
 	 */
 	Texture createTexture();
 
+	/**
+	 * Creates a new uniform buffer.
+	 *
+	 * @return A new uniform buffer
+	 * @throws UnsupportedOperationException If the OpenGL version doesn't support uniform buffers
+	 */
+	UniformBuffer createUniformBuffer();
+
 	/**
 	 * Creates a new vertex array.
 	 *
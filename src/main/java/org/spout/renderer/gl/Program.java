@@ -26,14 +26,21 @@
  */
 package org.spout.renderer.gl;
 
+import java.nio.FloatBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.EnumMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
 
+import gnu.trove.impl.Constants;
+import gnu.trove.map.TIntIntMap;
 import gnu.trove.map.TIntObjectMap;
 import gnu.trove.map.TObjectIntMap;
+import gnu.trove.map.hash.TIntIntHashMap;
 import gnu.trove.map.hash.TIntObjectHashMap;
 import gnu.trove.map.hash.TObjectIntHashMap;
 
@@ -49,6 +56,7 @@ import org.spout.renderer.data.Color;
 import org.spout.renderer.data.Uniform;
 import org.spout.renderer.data.UniformHolder;
 import org.spout.renderer.gl.Shader.ShaderType;
+import org.spout.renderer.util.CausticUtil;
 
 /**
  * Represents an OpenGL program. A program holds the necessary shaders for the rendering pipeline. This requires at least that the {@link org.spout.renderer.gl.Shader.ShaderType#VERTEX} and {@link
@@ -56,7 +64,11 @@ import org.spout.renderer.gl.Shader.ShaderType;
  * program with {@link #addAttributeLayout(String, int)}, which must be done before creation. The layout allows for association between the attribute index in the vertex data and the name in the
  * shaders. For GL30, it is recommended to do so in the shaders instead, using the "layout" keyword. Failing to do so might result in partial, wrong or missing rendering, and affects models using
  * multiple attributes. The texture layout should also be setup using {@link #addTextureLayout(String, int)} if textures are used in the shaders. This one can be done after creation, but is necessary
- * for assigning texture units to sampler uniforms.
+ * for assigning texture units to sampler uniforms. <p/> The active uniforms are resolved on creation to handles, which can be obtained with {@link #getUniformHandle(String)} and used to set the
+ * uniforms without any lookup. Setting a uniform which isn't active, with a name or the handle -1, does nothing. <p/> The program remembers the last value uploaded to each uniform, and skips
+ * uploading the same value again. Uniforms uploaded from a {@link Uniform} are skipped without comparing the values if their version didn't change since. <p/> The active uniform blocks are also
+ * found on creation, on versions supporting them. Each block is linked to the binding point of a {@link UniformBuffer} with {@link #setUniformBlockBinding(String, int)}. The members of blocks aren't
+ * active uniforms, so setting them individually does nothing.
  */
 public abstract class Program extends Creatable implements GLVersioned {
 	protected int id;
@@ -66,10 +78,24 @@ public abstract class Program extends Creatable implements GLVersioned {
 	protected TObjectIntMap<String> attributeLayouts;
 	// Map of the texture units to their names. Only necessary if textures are used
 	protected TIntObjectMap<String> textureLayouts;
+	// The active uniforms by handle, and the handles by name
+	private final List<ActiveUniform> uniforms = new ArrayList<>();
+	private final TObjectIntMap<String> uniformHandles = new TObjectIntHashMap<>(Constants.DEFAULT_CAPACITY, Constants.DEFAULT_LOAD_FACTOR, -1);
+	// The active uniform blocks by name, with their index, and the binding point of each block index
+	private final TObjectIntMap<String> uniformBlocks = new TObjectIntHashMap<>(Constants.DEFAULT_CAPACITY, Constants.DEFAULT_LOAD_FACTOR, -1);
+	private final TIntIntMap uniformBlockBindings = new TIntIntHashMap(Constants.DEFAULT_CAPACITY, Constants.DEFAULT_LOAD_FACTOR, -1, -1);
+	// Incremented on each creation, as the handles change
+	private int generation = 0;
+	// Upload counters
+	private long uploadCount = 0;
+	private long skippedUploadCount = 0;
+	// Reused buffer for the uniform values passed to OpenGL
+	private FloatBuffer scratchBuffer;
 
 	@Override
 	public void create() {
 		attributeLayouts = null;
+		generation++;
 		super.create();
 	}
 
@@ -77,6 +103,10 @@ public abstract class Program extends Creatable implements GLVersioned {
 	public void destroy() {
 		shaders.clear();
 		textureLayouts = null;
+		uniforms.clear();
+		uniformHandles.clear();
+		uniformBlocks.clear();
+		uniformBlockBindings.clear();
 		id = 0;
 		super.destroy();
 	}
@@ -100,18 +130,38 @@ public abstract class Program extends Creatable implements GLVersioned {
 	public abstract void bindTextureUniform(int unit);
 
 	/**
-	 * Uploads the uniform to this program.
+	 * Uploads the uniform to this program. Nothing is done if the same uniform was the last uploaded to its name, and its version didn't change since.
 	 *
 	 * @param uniform The uniform to upload
 	 */
-	public abstract void upload(Uniform uniform);
+	public void upload(Uniform uniform) {
+		checkCreated();
+		final int handle = uniform.getHandle(this);
+		if (handle == -1) {
+			return;
+		}
+		final ActiveUniform active = uniforms.get(handle);
+		if (active.source == uniform && active.sourceVersion == uniform.getVersion()) {
+			skippedUploadCount++;
+			return;
+		}
+		uniform.upload(this, handle);
+		// Remember where the value came from
+		active.source = uniform;
+		active.sourceVersion = uniform.getVersion();
+	}
 
 	/**
-	 * Uploads the uniforms to this program.
+	 * Uploads the uniforms to this program. Unchanged uniforms are skipped, see {@link #upload(Uniform)}.
 	 *
 	 * @param uniforms The uniforms to upload
 	 */
-	public abstract void upload(UniformHolder uniforms);
+	public void upload(UniformHolder uniforms) {
+		// Indexed to avoid creating an iterator each frame
+		for (int i = 0, size = uniforms.size(); i < size; i++) {
+			upload(uniforms.get(i));
+		}
+	}
 
 	/**
 	 * Sets a uniform boolean in the shader to the desired value.
@@ -119,7 +169,17 @@ public abstract class Program extends Creatable implements GLVersioned {
 	 * @param name The name of the uniform to set
 	 * @param b The boolean value
 	 */
-	public abstract void setUniform(String name, boolean b);
+	public void setUniform(String name, boolean b) {
+		setUniform(getUniformHandle(name), b);
+	}
+
+	/**
+	 * Sets a uniform boolean in the shader to the desired value.
+	 *
+	 * @param handle The handle of the uniform to set, or -1 to do nothing
+	 * @param b The boolean value
+	 */
+	public abstract void setUniform(int handle, boolean b);
 
 	/**
 	 * Sets a uniform integer in the shader to the desired value.
@@ -127,7 +187,17 @@ public abstract class Program extends Creatable implements GLVersioned {
 	 * @param name The name of the uniform to set
 	 * @param i The integer value
 	 */
-	public abstract void setUniform(String name, int i);
+	public void setUniform(String name, int i) {
+		setUniform(getUniformHandle(name), i);
+	}
+
+	/**
+	 * Sets a uniform integer in the shader to the desired value.
+	 *
+	 * @param handle The handle of the uniform to set, or -1 to do nothing
+	 * @param i The integer value
+	 */
+	public abstract void setUniform(int handle, int i);
 
 	/**
 	 * Sets a uniform float in the shader to the desired value.
@@ -135,7 +205,17 @@ public abstract class Program extends Creatable implements GLVersioned {
 	 * @param name The name of the uniform to set
 	 * @param f The float value
 	 */
-	public abstract void setUniform(String name, float f);
+	public void setUniform(String name, float f) {
+		setUniform(getUniformHandle(name), f);
+	}
+
+	/**
+	 * Sets a uniform float in the shader to the desired value.
+	 *
+	 * @param handle The handle of the uniform to set, or -1 to do nothing
+	 * @param f The float value
+	 */
+	public abstract void setUniform(int handle, float f);
 
 	/**
 	 * Sets a uniform {@link org.spout.math.vector.Vector2f} in the shader to the desired value.
@@ -143,7 +223,17 @@ public abstract class Program extends Creatable implements GLVersioned {
 	 * @param name The name of the uniform to set
 	 * @param v The vector value
 	 */
-	public abstract void setUniform(String name, Vector2f v);
+	public void setUniform(String name, Vector2f v) {
+		setUniform(getUniformHandle(name), v);
+	}
+
+	/**
+	 * Sets a uniform {@link org.spout.math.vector.Vector2f} in the shader to the desired value.
+	 *
+	 * @param handle The handle of the uniform to set, or -1 to do nothing
+	 * @param v The vector value
+	 */
+	public abstract void setUniform(int handle, Vector2f v);
 
 	/**
 	 * Sets a uniform {@link org.spout.math.vector.Vector2f} array in the shader to the desired value.
@@ -151,7 +241,17 @@ public abstract class Program extends Creatable implements GLVersioned {
 	 * @param name The name of the uniform to set
 	 * @param vs The vector array value
 	 */
-	public abstract void setUniform(String name, Vector2f[] vs);
+	public void setUniform(String name, Vector2f[] vs) {
+		setUniform(getUniformHandle(name), vs);
+	}
+
+	/**
+	 * Sets a uniform {@link org.spout.math.vector.Vector2f} array in the shader to the desired value.
+	 *
+	 * @param handle The handle of the uniform to set, or -1 to do nothing
+	 * @param vs The vector array value
+	 */
+	public abstract void setUniform(int handle, Vector2f[] vs);
 
 	/**
 	 * Sets a uniform {@link org.spout.math.vector.Vector3f} in the shader to the desired value.
@@ -159,7 +259,17 @@ public abstract class Program extends Creatable implements GLVersioned {
 	 * @param name The name of the uniform to set
 	 * @param v The vector value
 	 */
-	public abstract void setUniform(String name, Vector3f v);
+	public void setUniform(String name, Vector3f v) {
+		setUniform(getUniformHandle(name), v);
+	}
+
+	/**
+	 * Sets a uniform {@link org.spout.math.vector.Vector3f} in the shader to the desired value.
+	 *
+	 * @param handle The handle of the uniform to set, or -1 to do nothing
+	 * @param v The vector value
+	 */
+	public abstract void setUniform(int handle, Vector3f v);
 
 	/**
 	 * Sets a uniform {@link org.spout.math.vector.Vector3f} array in the shader to the desired value.
@@ -167,7 +277,17 @@ public abstract class Program extends Creatable implements GLVersioned {
 	 * @param name The name of the uniform to set
 	 * @param vs The vector array value
 	 */
-	public abstract void setUniform(String name, Vector3f[] vs);
+	public void setUniform(String name, Vector3f[] vs) {
+		setUniform(getUniformHandle(name), vs);
+	}
+
+	/**
+	 * Sets a uniform {@link org.spout.math.vector.Vector3f} array in the shader to the desired value.
+	 *
+	 * @param handle The handle of the uniform to set, or -1 to do nothing
+	 * @param vs The vector array value
+	 */
+	public abstract void setUniform(int handle, Vector3f[] vs);
 
 	/**
 	 * Sets a uniform {@link org.spout.math.vector.Vector4f} in the shader to the desired value.
@@ -175,7 +295,17 @@ public abstract class Program extends Creatable implements GLVersioned {
 	 * @param name The name of the uniform to set
 	 * @param v The vector value
 	 */
-	public abstract void setUniform(String name, Vector4f v);
+	public void setUniform(String name, Vector4f v) {
+		setUniform(getUniformHandle(name), v);
+	}
+
+	/**
+	 * Sets a uniform {@link org.spout.math.vector.Vector4f} in the shader to the desired value.
+	 *
+	 * @param handle The handle of the uniform to set, or -1 to do nothing
+	 * @param v The vector value
+	 */
+	public abstract void setUniform(int handle, Vector4f v);
 
 	/**
 	 * Sets a uniform {@link org.spout.math.matrix.Matrix4f} in the shader to the desired value.
@@ -183,7 +313,17 @@ public abstract class Program extends Creatable implements GLVersioned {
 	 * @param name The name of the uniform to set
 	 * @param m The matrix value
 	 */
-	public abstract void setUniform(String name, Matrix2f m);
+	public void setUniform(String name, Matrix2f m) {
+		setUniform(getUniformHandle(name), m);
+	}
+
+	/**
+	 * Sets a uniform {@link org.spout.math.matrix.Matrix4f} in the shader to the desired value.
+	 *
+	 * @param handle The handle of the uniform to set, or -1 to do nothing
+	 * @param m The matrix value
+	 */
+	public abstract void setUniform(int handle, Matrix2f m);
 
 	/**
 	 * Sets a uniform {@link org.spout.math.matrix.Matrix4f} in the shader to the desired value.
@@ -191,7 +331,17 @@ public abstract class Program extends Creatable implements GLVersioned {
 	 * @param name The name of the uniform to set
 	 * @param m The matrix value
 	 */
-	public abstract void setUniform(String name, Matrix3f m);
+	public void setUniform(String name, Matrix3f m) {
+		setUniform(getUniformHandle(name), m);
+	}
+
+	/**
+	 * Sets a uniform {@link org.spout.math.matrix.Matrix4f} in the shader to the desired value.
+	 *
+	 * @param handle The handle of the uniform to set, or -1 to do nothing
+	 * @param m The matrix value
+	 */
+	public abstract void setUniform(int handle, Matrix3f m);
 
 	/**
 	 * Sets a uniform {@link org.spout.math.matrix.Matrix4f} in the shader to the desired value.
@@ -199,7 +349,36 @@ public abstract class Program extends Creatable implements GLVersioned {
 	 * @param name The name of the uniform to set
 	 * @param m The matrix value
 	 */
-	public abstract void setUniform(String name, Matrix4f m);
+	public void setUniform(String name, Matrix4f m) {
+		setUniform(getUniformHandle(name), m);
+	}
+
+	/**
+	 * Sets a uniform {@link org.spout.math.matrix.Matrix4f} in the shader to the desired value.
+	 *
+	 * @param handle The handle of the uniform to set, or -1 to do nothing
+	 * @param m The matrix value
+	 */
+	public abstract void setUniform(int handle, Matrix4f m);
+
+	/**
+	 * Sets a uniform 4x4 matrix in the shader to the values in the buffer, from its position to its limit, in column major order. This avoids creating a {@link org.spout.math.matrix.Matrix4f} for
+	 * matrices computed each frame, see {@link org.spout.renderer.util.MatrixUtil}. The position of the buffer is unchanged.
+	 *
+	 * @param name The name of the uniform to set
+	 * @param columnMajor The matrix values
+	 */
+	public void setUniformMatrix4(String name, FloatBuffer columnMajor) {
+		setUniformMatrix4(getUniformHandle(name), columnMajor);
+	}
+
+	/**
+	 * Sets a uniform 4x4 matrix in the shader to the values in the buffer, from its position to its limit, in column major order. The position of the buffer is unchanged.
+	 *
+	 * @param handle The handle of the uniform to set, or -1 to do nothing
+	 * @param columnMajor The matrix values
+	 */
+	public abstract void setUniformMatrix4(int handle, FloatBuffer columnMajor);
 
 	/**
 	 * Sets a uniform {@link java.awt.Color} in the shader to the desired value.
@@ -208,7 +387,17 @@ public abstract class Program extends Creatable implements GLVersioned {
 	 * @param c The color value
 	 */
 	public void setUniform(String name, Color c) {
-		setUniform(name, (Vector4f) c.normalize());
+		setUniform(getUniformHandle(name), c);
+	}
+
+	/**
+	 * Sets a uniform {@link java.awt.Color} in the shader to the desired value.
+	 *
+	 * @param handle The handle of the uniform to set, or -1 to do nothing
+	 * @param c The color value
+	 */
+	public void setUniform(int handle, Color c) {
+		setUniform(handle, (Vector4f) c.normalize());
 	}
 
 	/**
@@ -216,7 +405,289 @@ public abstract class Program extends Creatable implements GLVersioned {
 	 *
 	 * @return A set of all the uniform names
 	 */
-	public abstract Set<String> getUniformNames();
+	public Set<String> getUniformNames() {
+		return Collections.unmodifiableSet(uniformHandles.keySet());
+	}
+
+	/**
+	 * Returns the handle of the active uniform, to use with the setUniform methods instead of the name.
+	 *
+	 * @param name The name of the uniform
+	 * @return The handle, or -1 if the uniform isn't active in the program
+	 */
+	public int getUniformHandle(String name) {
+		return uniformHandles.get(name);
+	}
+
+	/**
+	 * Returns the name of the active uniform.
+	 *
+	 * @param handle The handle of the uniform
+	 * @return The name
+	 */
+	public String getUniformName(int handle) {
+		return uniforms.get(handle).name;
+	}
+
+	/**
+	 * Returns the OpenGL type constant of the active uniform, as reported when the program was linked.
+	 *
+	 * @param handle The handle of the uniform
+	 * @return The type
+	 */
+	public int getUniformType(int handle) {
+		return uniforms.get(handle).type;
+	}
+
+	/**
+	 * Returns the array size of the active uniform, one for non array uniforms.
+	 *
+	 * @param handle The handle of the uniform
+	 * @return The array size
+	 */
+	public int getUniformSize(int handle) {
+		return uniforms.get(handle).size;
+	}
+
+	/**
+	 * Returns the generation of the program, incremented each time it's created. Handles are only valid for the generation they were obtained in.
+	 *
+	 * @return The generation
+	 */
+	public int getGeneration() {
+		return generation;
+	}
+
+	/**
+	 * Adds an active uniform, used by the implementations when creating the program.
+	 *
+	 * @param name The name of the uniform, without the array brackets
+	 * @param location The location of the uniform in the program
+	 * @param type The OpenGL type constant
+	 * @param size The array size, one for non array uniforms
+	 * @return The handle of the uniform
+	 */
+	protected int addUniform(String name, int location, int type, int size) {
+		final int handle = uniforms.size();
+		uniforms.add(new ActiveUniform(name, location, type, size));
+		uniformHandles.put(name, handle);
+		return handle;
+	}
+
+	/**
+	 * Returns the location of the active uniform, used by the implementations.
+	 *
+	 * @param handle The handle of the uniform
+	 * @return The location
+	 */
+	protected int getUniformLocation(int handle) {
+		return uniforms.get(handle).location;
+	}
+
+	/**
+	 * Links the uniform block to the binding point, so that it reads its values from the {@link UniformBuffer} bound to that point. Blocks that aren't active are ignored. The binding is only changed
+	 * if it's different from the last one set.
+	 *
+	 * @param name The name of the block
+	 * @param bindingPoint The binding point
+	 */
+	public void setUniformBlockBinding(String name, int bindingPoint) {
+		checkCreated();
+		final int index = uniformBlocks.get(name);
+		if (index == -1 || uniformBlockBindings.get(index) == bindingPoint) {
+			return;
+		}
+		uniformBlockBindings.put(index, bindingPoint);
+		bindUniformBlock(index, bindingPoint);
+	}
+
+	/**
+	 * Returns the binding point of the uniform block, as last set with {@link #setUniformBlockBinding(String, int)}.
+	 *
+	 * @param name The name of the block
+	 * @return The binding point, or -1 if the block isn't active or hasn't been linked
+	 */
+	public int getUniformBlockBinding(String name) {
+		final int index = uniformBlocks.get(name);
+		return index == -1 ? -1 : uniformBlockBindings.get(index);
+	}
+
+	/**
+	 * Returns the names of the active uniform blocks of the program.
+	 *
+	 * @return The uniform block names
+	 */
+	public Set<String> getUniformBlockNames() {
+		return Collections.unmodifiableSet(uniformBlocks.keySet());
+	}
+
+	/**
+	 * Adds an active uniform block, used by the implementations when creating the program.
+	 *
+	 * @param name The name of the block
+	 * @param index The index of the block in the program
+	 */
+	protected void addUniformBlock(String name, int index) {
+		uniformBlocks.put(name, index);
+	}
+
+	/**
+	 * Links the uniform block at the index to the binding point, used by {@link #setUniformBlockBinding(String, int)}. Implementations without uniform blocks never have active blocks, so this isn't
+	 * called for them.
+	 *
+	 * @param index The index of the block in the program
+	 * @param bindingPoint The binding point
+	 */
+	protected void bindUniformBlock(int index, int bindingPoint) {
+		throw new UnsupportedOperationException("Uniform blocks are not supported by this program");
+	}
+
+	/**
+	 * Returns the number of uniform values uploaded to OpenGL since the last reset.
+	 *
+	 * @return The upload count
+	 */
+	public long getUploadCount() {
+		return uploadCount;
+	}
+
+	/**
+	 * Returns the number of uniform uploads skipped since the last reset, because the value didn't change.
+	 *
+	 * @return The skipped upload count
+	 */
+	public long getSkippedUploadCount() {
+		return skippedUploadCount;
+	}
+
+	/**
+	 * Resets the upload and skipped upload counts to zero.
+	 */
+	public void resetUploadCounts() {
+		uploadCount = 0;
+		skippedUploadCount = 0;
+	}
+
+	/**
+	 * Updates the last value uploaded to the uniform, and returns true if it changed and must be uploaded. Used by the implementations for int, boolean and float values, as raw bits.
+	 *
+	 * @param handle The handle of the uniform, or -1
+	 * @param bits The bits of the value
+	 * @return Whether or not the value must be uploaded, always false for the handle -1
+	 */
+	protected boolean updateValue(int handle, int bits) {
+		if (handle == -1) {
+			return false;
+		}
+		final ActiveUniform uploaded = uniforms.get(handle);
+		if (uploaded.known && uploaded.bits == bits) {
+			skippedUploadCount++;
+			return false;
+		}
+		uploaded.bits = bits;
+		return updated(uploaded);
+	}
+
+	/**
+	 * Updates the last value uploaded to the uniform, and returns true if it changed and must be uploaded. Used by the implementations for immutable values, compared with {@link
+	 * Object#equals(Object)}.
+	 *
+	 * @param handle The handle of the uniform, or -1
+	 * @param value The value
+	 * @return Whether or not the value must be uploaded, always false for the handle -1
+	 */
+	protected boolean updateValue(int handle, Object value) {
+		if (handle == -1) {
+			return false;
+		}
+		final ActiveUniform uploaded = uniforms.get(handle);
+		if (uploaded.known && (uploaded.value == value || value.equals(uploaded.value))) {
+			skippedUploadCount++;
+			return false;
+		}
+		uploaded.value = value;
+		return updated(uploaded);
+	}
+
+	/**
+	 * Updates the last value uploaded to the uniform, and returns true if it changed and must be uploaded. Used by the implementations for arrays of immutable values, which are copied.
+	 *
+	 * @param handle The handle of the uniform, or -1
+	 * @param values The values
+	 * @return Whether or not the values must be uploaded, always false for the handle -1
+	 */
+	protected boolean updateValue(int handle, Object[] values) {
+		if (handle == -1) {
+			return false;
+		}
+		final ActiveUniform uploaded = uniforms.get(handle);
+		if (uploaded.known && uploaded.value instanceof Object[] && Arrays.equals((Object[]) uploaded.value, values)) {
+			skippedUploadCount++;
+			return false;
+		}
+		uploaded.value = values.clone();
+		return updated(uploaded);
+	}
+
+	/**
+	 * Updates the last value uploaded to the uniform, and returns true if it changed and must be uploaded. Used by the implementations for float buffers, from their position to their limit. The
+	 * values are copied into an array which is reused while the count doesn't change.
+	 *
+	 * @param handle The handle of the uniform, or -1
+	 * @param values The values
+	 * @return Whether or not the values must be uploaded, always false for the handle -1
+	 */
+	protected boolean updateValue(int handle, FloatBuffer values) {
+		if (handle == -1) {
+			return false;
+		}
+		final ActiveUniform uploaded = uniforms.get(handle);
+		final int position = values.position();
+		final int count = values.remaining();
+		float[] last = uploaded.value instanceof float[] ? (float[]) uploaded.value : null;
+		if (uploaded.known && last != null && last.length == count) {
+			int i = 0;
+			while (i < count && Float.floatToRawIntBits(last[i]) == Float.floatToRawIntBits(values.get(position + i))) {
+				i++;
+			}
+			if (i == count) {
+				skippedUploadCount++;
+				return false;
+			}
+		}
+		if (last == null || last.length != count) {
+			last = new float[count];
+			uploaded.value = last;
+		}
+		for (int i = 0; i < count; i++) {
+			last[i] = values.get(position + i);
+		}
+		return updated(uploaded);
+	}
+
+	/**
+	 * Returns a float buffer of the desired capacity, for the implementations to pass uniform values to OpenGL. The buffer is reused by the next calls, and only replaced by a larger one when needed,
+	 * so it's only valid until then. Its position is zero and its limit is the capacity.
+	 *
+	 * @param capacity The capacity in floats
+	 * @return The buffer
+	 */
+	protected FloatBuffer getScratchBuffer(int capacity) {
+		if (scratchBuffer == null || scratchBuffer.capacity() < capacity) {
+			scratchBuffer = CausticUtil.createFloatBuffer(Math.max(capacity, 16));
+		}
+		scratchBuffer.clear();
+		scratchBuffer.limit(capacity);
+		return scratchBuffer;
+	}
+
+	private boolean updated(ActiveUniform uploaded) {
+		uploaded.known = true;
+		// The value doesn't come from the last uniform anymore
+		uploaded.source = null;
+		uploadCount++;
+		return true;
+	}
 
 	/**
 	 * Gets the ID for this program as assigned by OpenGL.
@@ -335,4 +806,25 @@ public abstract class Program extends Creatable implements GLVersioned {
 			}
 		}
 	}
+
+	private static class ActiveUniform {
+		private final String name;
+		private final int location;
+		private final int type;
+		private final int size;
+		// The last uploaded value, as bits or an object
+		private boolean known = false;
+		private int bits;
+		private Object value;
+		// The uniform the value was uploaded from, if any, and its version then
+		private Uniform source;
+		private int sourceVersion;
+
+		private ActiveUniform(String name, int location, int type, int size) {
+			this.name = name;
+			this.location = location;
+			this.type = type;
+			this.size = size;
+		}
+	}
 }
@@ -0,0 +1,472 @@
+/*
+ * This file is part of Caustic.
+ *
+ * Copyright (c) 2013 Spout LLC <http://www.spout.org/>
+ * Caustic is licensed under the Spout License Version 1.
+ *
+ * Caustic is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the Free
+ * Software Foundation, either version 3 of the License, or (at your option)
+ * any later version.
+ *
+ * In addition, 180 days after any changes are published, you can use the
+ * software, incorporating those changes, under the terms of the MIT license,
+ * as described in the Spout License Version 1.
+ *
+ * Caustic is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE.  See the GNU Lesser General Public License for
+ * more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License,
+ * the MIT license and the Spout License Version 1 along with this program.
+ * If not, see <http://www.gnu.org/licenses/> for the GNU Lesser General Public
+ * License and see <http://spout.in/licensev1> for the full license, including
+ * the MIT license.
+ */
+package org.spout.renderer.gl;
+
+import java.util.EnumSet;
+import java.util.Set;
+
+import gnu.trove.impl.Constants;
+import gnu.trove.map.TIntIntMap;
+import gnu.trove.map.hash.TIntIntHashMap;
+
+import org.spout.renderer.gl.Context.Capability;
+
+/**
+ * A shadow of the OpenGL state of a context, used by the implementations to skip the calls that wouldn't change it. It tracks the current program, vertex array, buffer bindings, active texture unit,
+ * the texture bound to each unit, frame and render buffers, capabilities, view port and clear color. <p/> Each setter returns true if the state changed and the OpenGL call must be made, or false if
+ * it can be skipped, in which case the skipped count is incremented. The state starts unknown, so the first call always goes through. If OpenGL is called directly, outside of the implementation,
+ * {@link #invalidate()} must be called. <p/> Like the context, the cache isn't thread safe. It's shared by the context and all the objects of the same {@link GLFactory}.
+ */
+public class StateCache {
+	private static final int UNKNOWN = -1;
+	private static final int ARRAY_BUFFER = 0x8892;
+	private static final int ELEMENT_ARRAY_BUFFER = 0x8893;
+	private static final int UNIFORM_BUFFER = 0x8A11;
+	private int program;
+	private int vertexArray;
+	private int arrayBuffer;
+	private int elementArrayBuffer;
+	private int uniformBuffer;
+	private final TIntIntMap uniformBufferBindings = new TIntIntHashMap(Constants.DEFAULT_CAPACITY, Constants.DEFAULT_LOAD_FACTOR, UNKNOWN, UNKNOWN);
+	private int vertexAttributesOwner;
+	private long knownVertexAttributes;
+	private long enabledVertexAttributes;
+	private int activeTextureUnit;
+	private final TIntIntMap textures = new TIntIntHashMap(Constants.DEFAULT_CAPACITY, Constants.DEFAULT_LOAD_FACTOR, UNKNOWN, UNKNOWN);
+	private int frameBuffer;
+	private int renderBuffer;
+	private final Set<Capability> enabledCapabilities = EnumSet.noneOf(Capability.class);
+	private final Set<Capability> knownCapabilities = EnumSet.noneOf(Capability.class);
+	private final int[] viewPort = new int[4];
+	private boolean viewPortKnown;
+	private final float[] clearColor = new float[4];
+	private boolean clearColorKnown;
+	private long skippedCount = 0;
+
+	/**
+	 * Constructs a new state cache, with an unknown state.
+	 */
+	public StateCache() {
+		invalidate();
+	}
+
+	/**
+	 * Forgets the whole state, so that the next calls aren't skipped. This should be called when the context is created, or when the state was modified outside of the implementation. The skipped count
+	 * is kept.
+	 */
+	public void invalidate() {
+		program = UNKNOWN;
+		vertexArray = UNKNOWN;
+		arrayBuffer = UNKNOWN;
+		elementArrayBuffer = UNKNOWN;
+		uniformBuffer = UNKNOWN;
+		uniformBufferBindings.clear();
+		vertexAttributesOwner = UNKNOWN;
+		knownVertexAttributes = 0;
+		activeTextureUnit = UNKNOWN;
+		textures.clear();
+		frameBuffer = UNKNOWN;
+		renderBuffer = UNKNOWN;
+		knownCapabilities.clear();
+		viewPortKnown = false;
+		clearColorKnown = false;
+	}
+
+	/**
+	 * Sets the current program.
+	 *
+	 * @param id The program ID, or zero for none
+	 * @return Whether or not the program must be bound
+	 */
+	public boolean useProgram(int id) {
+		if (program == id) {
+			return skip();
+		}
+		program = id;
+		return true;
+	}
+
+	/**
+	 * Sets the bound vertex array. The element array buffer and vertex attributes are part of the vertex array state, so they become unknown when it changes.
+	 *
+	 * @param id The vertex array ID, or zero for none
+	 * @return Whether or not the vertex array must be bound
+	 */
+	public boolean bindVertexArray(int id) {
+		if (vertexArray == id) {
+			return skip();
+		}
+		vertexArray = id;
+		elementArrayBuffer = UNKNOWN;
+		vertexAttributesOwner = UNKNOWN;
+		knownVertexAttributes = 0;
+		return true;
+	}
+
+	/**
+	 * Sets the buffer bound to the target. Only the array, element array and uniform buffer targets are tracked, the call is never skipped for others.
+	 *
+	 * @param target The OpenGL constant of the target
+	 * @param id The buffer ID, or zero for none
+	 * @return Whether or not the buffer must be bound
+	 */
+	public boolean bindBuffer(int target, int id) {
+		switch (target) {
+			case ARRAY_BUFFER:
+				if (arrayBuffer == id) {
+					return skip();
+				}
+				arrayBuffer = id;
+				return true;
+			case ELEMENT_ARRAY_BUFFER:
+				if (elementArrayBuffer == id) {
+					return skip();
+				}
+				elementArrayBuffer = id;
+				return true;
+			case UNIFORM_BUFFER:
+				if (uniformBuffer == id) {
+					return skip();
+				}
+				uniformBuffer = id;
+				return true;
+			default:
+				return true;
+		}
+	}
+
+	/**
+	 * Sets the uniform buffer bound to the indexed binding point. Like in OpenGL, this also binds the buffer to the uniform buffer target.
+	 *
+	 * @param bindingPoint The index of the binding point
+	 * @param id The buffer ID, or zero for none
+	 * @return Whether or not the buffer must be bound
+	 */
+	public boolean bindUniformBufferBase(int bindingPoint, int id) {
+		if (uniformBufferBindings.get(bindingPoint) == id) {
+			return skip();
+		}
+		uniformBufferBindings.put(bindingPoint, id);
+		uniformBuffer = id;
+		return true;
+	}
+
+	/**
+	 * Sets the owner of the vertex attribute pointers, for implementations without vertex array objects, where the pointers have to be defined again before drawing another vertex array.
+	 *
+	 * @param id A unique ID for the vertex array defining the pointers
+	 * @return Whether or not the pointers must be defined
+	 */
+	public boolean setVertexAttributesOwner(int id) {
+		if (vertexAttributesOwner == id) {
+			return skip();
+		}
+		vertexAttributesOwner = id;
+		return true;
+	}
+
+	/**
+	 * Sets the vertex attribute arrays at the index to enabled.
+	 *
+	 * @param index The attribute index, smaller than 64
+	 * @return Whether or not the attribute array must be enabled
+	 */
+	public boolean enableVertexAttribute(int index) {
+		return setVertexAttribute(index, true);
+	}
+
+	/**
+	 * Sets the vertex attribute arrays at the index to disabled.
+	 *
+	 * @param index The attribute index, smaller than 64
+	 * @return Whether or not the attribute array must be disabled
+	 */
+	public boolean disableVertexAttribute(int index) {
+		return setVertexAttribute(index, false);
+	}
+
+	private boolean setVertexAttribute(int index, boolean enabled) {
+		final long bit = 1L << index;
+		if ((knownVertexAttributes & bit) != 0 && ((enabledVertexAttributes & bit) != 0) == enabled) {
+			return skip();
+		}
+		knownVertexAttributes |= bit;
+		if (enabled) {
+			enabledVertexAttributes |= bit;
+		} else {
+			enabledVertexAttributes &= ~bit;
+		}
+		return true;
+	}
+
+	/**
+	 * Returns the indices of the vertex attributes arrays known to be enabled, as a bit set. The attributes with an unknown state are excluded.
+	 *
+	 * @return The enabled vertex attribute arrays
+	 */
+	public long getEnabledVertexAttributes() {
+		return enabledVertexAttributes & knownVertexAttributes;
+	}
+
+	/**
+	 * Sets the active texture unit.
+	 *
+	 * @param unit The unit
+	 * @return Whether or not the unit must be activated
+	 */
+	public boolean activeTexture(int unit) {
+		if (activeTextureUnit == unit) {
+			return skip();
+		}
+		activeTextureUnit = unit;
+		return true;
+	}
+
+	/**
+	 * Sets the texture bound to the active unit.
+	 *
+	 * @param id The texture ID, or zero for none
+	 * @return Whether or not the texture must be bound
+	 */
+	public boolean bindTexture(int id) {
+		if (activeTextureUnit == UNKNOWN) {
+			// The binding can't be tracked if the unit isn't known
+			return true;
+		}
+		if (textures.get(activeTextureUnit) == id) {
+			return skip();
+		}
+		textures.put(activeTextureUnit, id);
+		return true;
+	}
+
+	/**
+	 * Sets the bound frame buffer.
+	 *
+	 * @param id The frame buffer ID, or zero for the default one
+	 * @return Whether or not the frame buffer must be bound
+	 */
+	public boolean bindFrameBuffer(int id) {
+		if (frameBuffer == id) {
+			return skip();
+		}
+		frameBuffer = id;
+		return true;
+	}
+
+	/**
+	 * Sets the bound render buffer.
+	 *
+	 * @param id The render buffer ID, or zero for none
+	 * @return Whether or not the render buffer must be bound
+	 */
+	public boolean bindRenderBuffer(int id) {
+		if (renderBuffer == id) {
+			return skip();
+		}
+		renderBuffer = id;
+		return true;
+	}
+
+	/**
+	 * Sets the capability to enabled.
+	 *
+	 * @param capability The capability
+	 * @return Whether or not the capability must be enabled
+	 */
+	public boolean enableCapability(Capability capability) {
+		return setCapability(capability, true);
+	}
+
+	/**
+	 * Sets the capability to disabled.
+	 *
+	 * @param capability The capability
+	 * @return Whether or not the capability must be disabled
+	 */
+	public boolean disableCapability(Capability capability) {
+		return setCapability(capability, false);
+	}
+
+	private boolean setCapability(Capability capability, boolean enabled) {
+		if (knownCapabilities.contains(capability) && enabledCapabilities.contains(capability) == enabled) {
+			return skip();
+		}
+		knownCapabilities.add(capability);
+		if (enabled) {
+			enabledCapabilities.add(capability);
+		} else {
+			enabledCapabilities.remove(capability);
+		}
+		return true;
+	}
+
+	/**
+	 * Sets the view port.
+	 *
+	 * @param x The x coordinate of the lower left corner
+	 * @param y The y coordinate of the lower left corner
+	 * @param width The width
+	 * @param height The height
+	 * @return Whether or not the view port must be set
+	 */
+	public boolean setViewPort(int x, int y, int width, int height) {
+		if (viewPortKnown && viewPort[0] == x && viewPort[1] == y && viewPort[2] == width && viewPort[3] == height) {
+			return skip();
+		}
+		viewPort[0] = x;
+		viewPort[1] = y;
+		viewPort[2] = width;
+		viewPort[3] = height;
+		viewPortKnown = true;
+		return true;
+	}
+
+	/**
+	 * Sets the clear color, from normalized components.
+	 *
+	 * @param red The red component
+	 * @param green The green component
+	 * @param blue The blue component
+	 * @param alpha The alpha component
+	 * @return Whether or not the clear color must be set
+	 */
+	public boolean setClearColor(float red, float green, float blue, float alpha) {
+		if (clearColorKnown && clearColor[0] == red && clearColor[1] == green && clearColor[2] == blue && clearColor[3] == alpha) {
+			return skip();
+		}
+		clearColor[0] = red;
+		clearColor[1] = green;
+		clearColor[2] = blue;
+		clearColor[3] = alpha;
+		clearColorKnown = true;
+		return true;
+	}
+
+	/**
+	 * Forgets the program if it's current, as deleting it makes it so once unbound.
+	 *
+	 * @param id The deleted program ID
+	 */
+	public void deleteProgram(int id) {
+		if (program == id) {
+			program = UNKNOWN;
+		}
+	}
+
+	/**
+	 * Unbinds the vertex array if it's bound, as deleting it does.
+	 *
+	 * @param id The deleted vertex array ID
+	 */
+	public void deleteVertexArray(int id) {
+		if (vertexArray == id) {
+			bindVertexArray(0);
+		}
+	}
+
+	/**
+	 * Unbinds the buffer from the targets it's bound to, as deleting it does.
+	 *
+	 * @param id The deleted buffer ID
+	 */
+	public void deleteBuffer(int id) {
+		if (arrayBuffer == id) {
+			arrayBuffer = 0;
+		}
+		if (elementArrayBuffer == id) {
+			elementArrayBuffer = 0;
+		}
+		if (uniformBuffer == id) {
+			uniformBuffer = 0;
+		}
+		for (int bindingPoint : uniformBufferBindings.keys()) {
+			if (uniformBufferBindings.get(bindingPoint) == id) {
+				uniformBufferBindings.put(bindingPoint, 0);
+			}
+		}
+		if (vertexAttributesOwner == id) {
+			vertexAttributesOwner = UNKNOWN;
+		}
+	}
+
+	/**
+	 * Unbinds the texture from the units it's bound to, as deleting it does.
+	 *
+	 * @param id The deleted texture ID
+	 */
+	public void deleteTexture(int id) {
+		for (int unit : textures.keys()) {
+			if (textures.get(unit) == id) {
+				textures.put(unit, 0);
+			}
+		}
+	}
+
+	/**
+	 * Unbinds the frame buffer if it's bound, as deleting it does.
+	 *
+	 * @param id The deleted frame buffer ID
+	 */
+	public void deleteFrameBuffer(int id) {
+		if (frameBuffer == id) {
+			frameBuffer = 0;
+		}
+	}
+
+	/**
+	 * Unbinds the render buffer if it's bound, as deleting it does.
+	 *
+	 * @param id The deleted render buffer ID
+	 */
+	public void deleteRenderBuffer(int id) {
+		if (renderBuffer == id) {
+			renderBuffer = 0;
+		}
+	}
+
+	/**
+	 * Returns the number of calls that were skipped because they wouldn't have changed the state.
+	 *
+	 * @return The skipped call count
+	 */
+	public long getSkippedCount() {
+		return skippedCount;
+	}
+
+	/**
+	 * Resets the skipped call count to zero.
+	 */
+	public void resetSkippedCount() {
+		skippedCount = 0;
+	}
+
+	private boolean skip() {
+		skippedCount++;
+		return false;
+	}
+}
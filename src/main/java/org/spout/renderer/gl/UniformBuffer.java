@@ -0,0 +1,198 @@
+/*
+ * This file is part of Caustic.
+ *
+ * Copyright (c) 2013 Spout LLC <http://www.spout.org/>
+ * Caustic is licensed under the Spout License Version 1.
+ *
+ * Caustic is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the Free
+ * Software Foundation, either version 3 of the License, or (at your option)
+ * any later version.
+ *
+ * In addition, 180 days after any changes are published, you can use the
+ * software, incorporating those changes, under the terms of the MIT license,
+ * as described in the Spout License Version 1.
+ *
+ * Caustic is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE.  See the GNU Lesser General Public License for
+ * more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License,
+ * the MIT license and the Spout License Version 1 along with this program.
+ * If not, see <http://www.gnu.org/licenses/> for the GNU Lesser General Public
+ * License and see <http://spout.in/licensev1> for the full license, including
+ * the MIT license.
+ */
+package org.spout.renderer.gl;
+
+import java.nio.ByteBuffer;
+
+import org.spout.renderer.Creatable;
+import org.spout.renderer.GLVersioned;
+import org.spout.renderer.util.CausticUtil;
+
+/**
+ * Represents an OpenGL uniform buffer, which holds the values of a uniform block shared by many programs. The data is packed on the CPU, usually with {@link
+ * org.spout.renderer.util.Std140Packer}, and set with {@link #setData(ByteBuffer)}. A copy of the last data is kept, so that only the bytes which changed are uploaded. The buffer is made available
+ * to the programs by binding it to its binding point with {@link #bind()}, and linking the block of each program to the same point with {@link Program#setUniformBlockBinding(String, int)}.
+ */
+public abstract class UniformBuffer extends Creatable implements GLVersioned {
+	protected int id;
+	protected int bindingPoint = 0;
+	// The last data uploaded, and the size of the storage
+	private ByteBuffer data;
+	private int size = 0;
+	// Upload counters
+	private long uploadedBytes = 0;
+	private long skippedUploadCount = 0;
+
+	@Override
+	public void destroy() {
+		id = 0;
+		data = null;
+		size = 0;
+		super.destroy();
+	}
+
+	/**
+	 * Sets the data of the buffer, from its position to its limit. If the size changed the storage is reallocated, otherwise only the range of bytes which differ from the last data is uploaded, and
+	 * nothing if the data is the same. The buffer doesn't need to be bound. The position of the data is unchanged.
+	 *
+	 * @param data The data
+	 */
+	public void setData(ByteBuffer data) {
+		checkCreated();
+		final int position = data.position();
+		final int newSize = data.remaining();
+		if (newSize != size) {
+			bindBuffer(id);
+			bufferData(data, VertexArray.UsageHint.DYNAMIC.getGLConstant());
+			this.data = CausticUtil.createByteBuffer(newSize);
+			this.data.put(data).flip();
+			data.position(position);
+			size = newSize;
+			uploadedBytes += newSize;
+			return;
+		}
+		// Find the range of bytes which changed
+		int start = 0;
+		while (start < size && this.data.get(start) == data.get(position + start)) {
+			start++;
+		}
+		if (start == size) {
+			skippedUploadCount++;
+			return;
+		}
+		int end = size;
+		while (this.data.get(end - 1) == data.get(position + end - 1)) {
+			end--;
+		}
+		for (int i = start; i < end; i++) {
+			this.data.put(i, data.get(position + i));
+		}
+		data.limit(position + end).position(position + start);
+		bindBuffer(id);
+		bufferSubData(start, data);
+		data.limit(position + size).position(position);
+		uploadedBytes += end - start;
+	}
+
+	/**
+	 * Binds the buffer to its binding point, making it available to the uniform blocks linked to that point.
+	 */
+	public abstract void bind();
+
+	/**
+	 * Unbinds the buffer from its binding point.
+	 */
+	public abstract void unbind();
+
+	/**
+	 * Binds the buffer to the uniform buffer target, used by {@link #setData(ByteBuffer)}.
+	 *
+	 * @param bufferID The ID of the buffer to bind
+	 */
+	protected abstract void bindBuffer(int bufferID);
+
+	/**
+	 * Reallocates the storage of the bound buffer and fills it with the data, used by {@link #setData(ByteBuffer)}.
+	 *
+	 * @param data The data to upload, from its position to its limit
+	 * @param usage The OpenGL usage constant
+	 */
+	protected abstract void bufferData(ByteBuffer data, int usage);
+
+	/**
+	 * Replaces part of the storage of the bound buffer with the data, used by {@link #setData(ByteBuffer)}.
+	 *
+	 * @param offset The offset in bytes in the buffer
+	 * @param data The data to upload, from its position to its limit
+	 */
+	protected abstract void bufferSubData(int offset, ByteBuffer data);
+
+	/**
+	 * Sets the index of the binding point the buffer is bound to. The default is zero.
+	 *
+	 * @param bindingPoint The binding point, cannot be negative
+	 */
+	public void setBindingPoint(int bindingPoint) {
+		if (bindingPoint < 0) {
+			throw new IllegalArgumentException("Binding point cannot be negative");
+		}
+		this.bindingPoint = bindingPoint;
+	}
+
+	/**
+	 * Returns the index of the binding point the buffer is bound to.
+	 *
+	 * @return The binding point
+	 */
+	public int getBindingPoint() {
+		return bindingPoint;
+	}
+
+	/**
+	 * Returns the size of the storage of the buffer, in bytes.
+	 *
+	 * @return The size
+	 */
+	public int getSize() {
+		return size;
+	}
+
+	/**
+	 * Returns the number of bytes uploaded since the last reset.
+	 *
+	 * @return The uploaded byte count
+	 */
+	public long getUploadedBytes() {
+		return uploadedBytes;
+	}
+
+	/**
+	 * Returns the number of calls to {@link #setData(ByteBuffer)} skipped since the last reset, because the data didn't change.
+	 *
+	 * @return The skipped upload count
+	 */
+	public long getSkippedUploadCount() {
+		return skippedUploadCount;
+	}
+
+	/**
+	 * Resets the upload counters.
+	 */
+	public void resetUploadCounts() {
+		uploadedBytes = 0;
+		skippedUploadCount = 0;
+	}
+
+	/**
+	 * Gets the ID for this uniform buffer as assigned by OpenGL.
+	 *
+	 * @return The ID
+	 */
+	public int getID() {
+		return id;
+	}
+}
@@ -26,18 +26,41 @@
  */
 package org.spout.renderer.gl;
 
+import java.nio.ByteBuffer;
+
 import org.spout.renderer.Creatable;
 import org.spout.renderer.GLVersioned;
+import org.spout.renderer.data.Bounds;
+import org.spout.renderer.data.VertexAttribute;
+import org.spout.renderer.data.VertexAttribute.DataType;
 import org.spout.renderer.data.VertexData;
+import org.spout.renderer.data.VertexFormat;
+import org.spout.renderer.util.CausticUtil;
+import org.spout.renderer.util.DirtyRanges;
 
 /**
- * Represent an OpenGL vertex array. The vertex data must be set with {@link #setData(org.spout.renderer.data.VertexData)} before it can be created.
+ * Represent an OpenGL vertex array. The vertex data must be set with {@link #setData(org.spout.renderer.data.VertexData)} before it can be created. By default, each attribute is stored in its own
+ * buffer. Use {@link #setLayoutMode(LayoutMode)} before creation to store all attributes in a single interleaved buffer instead. <p/> By default, the vertex data is uploaded once and released on
+ * creation. Use {@link #setUsageHint(UsageHint)} before creation to keep it instead, so that it can be modified and uploaded again with {@link #update()}. Only the ranges marked as dirty are
+ * uploaded, unless the buffers need to grow, in which case they are reallocated.
  */
 public abstract class VertexArray extends Creatable implements GLVersioned {
+	/**
+	 * The OpenGL target for attribute buffers, GL15.GL_ARRAY_BUFFER.
+	 */
+	protected static final int ARRAY_BUFFER = 0x8892;
+	/**
+	 * The OpenGL target for indices buffers, GL15.GL_ELEMENT_ARRAY_BUFFER.
+	 */
+	protected static final int ELEMENT_ARRAY_BUFFER = 0x8893;
 	protected int id = 0;
 	// Buffers IDs
 	protected int indicesBufferID = 0;
 	protected int[] attributeBufferIDs;
+	// Amount of attributes
+	protected int attributeCount = 0;
+	// Type of the indices in the buffer
+	protected DataType indicesType = DataType.UNSIGNED_INT;
 	// Amount of indices to render
 	protected int indicesCountCache;
 	protected int indicesCount = 0;
@@ -47,10 +70,45 @@ public abstract class VertexArray extends Creatable implements GLVersioned {
 	protected VertexData vertexData;
 	// Drawing mode
 	protected DrawingMode drawingMode = DrawingMode.TRIANGLES;
+	// Buffer layout mode
+	protected LayoutMode layoutMode = LayoutMode.SEPARATE;
+	// Buffer usage hint
+	protected UsageHint usageHint = UsageHint.STATIC;
+	// Dynamic update state: buffer sizes in bytes, dirty ranges in bytes for the attributes and in indices for the indices
+	protected int indicesBufferSize = 0;
+	protected int[] attributeBufferSizes;
+	private VertexFormat vertexFormat;
+	private DirtyRanges dirtyIndices;
+	private DirtyRanges[] dirtyAttributes;
+	private DirtyRanges dirtyVertices;
+	// Bounds of the positions, in model space, whether or not they were set instead of computed, and the size in bytes of the positions they were computed for
+	private Bounds bounds;
+	private boolean explicitBounds = false;
+	private int boundsDataSize = -1;
 
 	@Override
 	public void create() {
-		vertexData = null;
+		if (usageHint == UsageHint.STATIC) {
+			vertexData = null;
+		} else {
+			// Keep the data for updates, and save the initial buffer sizes
+			indicesBufferSize = indicesCountCache * indicesType.getByteSize();
+			dirtyIndices = new DirtyRanges();
+			dirtyAttributes = new DirtyRanges[attributeCount];
+			for (int i = 0; i < attributeCount; i++) {
+				dirtyAttributes[i] = new DirtyRanges();
+			}
+			if (layoutMode == LayoutMode.INTERLEAVED) {
+				vertexFormat = new VertexFormat(vertexData);
+				dirtyVertices = new DirtyRanges();
+				attributeBufferSizes = new int[]{vertexFormat.getVertexCount(vertexData) * vertexFormat.getStride()};
+			} else {
+				attributeBufferSizes = new int[attributeCount];
+				for (int i = 0; i < attributeCount; i++) {
+					attributeBufferSizes[i] = vertexData.getAttribute(i).getData().remaining();
+				}
+			}
+		}
 		super.create();
 	}
 
@@ -59,8 +117,20 @@ public abstract class VertexArray extends Creatable implements GLVersioned {
 		id = 0;
 		indicesCountCache = 0;
 		indicesBufferID = 0;
+		indicesType = DataType.UNSIGNED_INT;
 		attributeBufferIDs = null;
+		attributeCount = 0;
 		resetIndicesCountAndOffset();
+		vertexData = null;
+		indicesBufferSize = 0;
+		attributeBufferSizes = null;
+		vertexFormat = null;
+		dirtyIndices = null;
+		dirtyAttributes = null;
+		dirtyVertices = null;
+		bounds = null;
+		explicitBounds = false;
+		boundsDataSize = -1;
 		super.destroy();
 	}
 
@@ -70,12 +140,273 @@ public abstract class VertexArray extends Creatable implements GLVersioned {
 	public abstract void draw();
 
 	/**
-	 * Sets the vertex data source to use.
+	 * Uploads the dirty ranges of the vertex data kept since creation. The usage hint must not be {@link UsageHint#STATIC}. Ranges are uploaded in place, unless a buffer needs to grow, the indices
+	 * type needs to be widened, or the usage hint is {@link UsageHint#STREAM}: the buffer is then uploaded in full, which lets the driver orphan the old storage instead of waiting for pending draws to
+	 * complete. The indices count is reset if it changed.
+	 *
+	 * @throws IllegalStateException If the vertex array hasn't been created, or if it is static
+	 */
+	public void update() {
+		checkDynamic();
+		if (vertexData.getAttributeCount() != attributeCount) {
+			throw new IllegalStateException("The attribute count cannot change after creation");
+		}
+		updateIndices();
+		// Before the dirty ranges are cleared
+		if (!explicitBounds && arePositionsChanged()) {
+			computeBounds();
+		}
+		if (layoutMode == LayoutMode.INTERLEAVED) {
+			updateInterleavedAttributes();
+		} else {
+			updateSeparateAttributes();
+		}
+		// Unbind the last buffers
+		bindBuffer(ARRAY_BUFFER, 0);
+		bindBuffer(ELEMENT_ARRAY_BUFFER, 0);
+	}
+
+	private boolean arePositionsChanged() {
+		final int index = Bounds.getPositionsIndex(vertexData);
+		if (index < 0 || index >= attributeCount) {
+			return false;
+		}
+		final VertexAttribute positions = vertexData.getAttribute(index);
+		final int size = positions != null && positions.hasData() ? positions.getData().remaining() : -1;
+		// Stream updates don't need to mark the dirty ranges, as everything is uploaded
+		return !dirtyAttributes[index].isEmpty() || size != boundsDataSize || usageHint == UsageHint.STREAM;
+	}
+
+	private void computeBounds() {
+		bounds = Bounds.fromVertexData(vertexData);
+		final VertexAttribute positions = vertexData.getAttribute(Bounds.getPositionsIndex(vertexData));
+		boundsDataSize = positions != null && positions.hasData() ? positions.getData().remaining() : -1;
+	}
+
+	private void updateIndices() {
+		final int count = vertexData.getIndicesCount();
+		// Only ever widen the type, narrowing would require uploading everything again
+		final DataType dataType = vertexData.getIndicesType();
+		final DataType type = dataType.getByteSize() > indicesType.getByteSize() ? dataType : indicesType;
+		final int size = count * type.getByteSize();
+		if (type != indicesType || size > indicesBufferSize || usageHint == UsageHint.STREAM) {
+			bindBuffer(ELEMENT_ARRAY_BUFFER, indicesBufferID);
+			final ByteBuffer buffer = vertexData.getIndicesBuffer(type);
+			bufferData(ELEMENT_ARRAY_BUFFER, buffer, usageHint.getGLConstant());
+			vertexData.releaseIndicesBuffer(buffer);
+			indicesType = type;
+			indicesBufferSize = size;
+		} else if (!dirtyIndices.isEmpty()) {
+			bindBuffer(ELEMENT_ARRAY_BUFFER, indicesBufferID);
+			for (int i = 0; i < dirtyIndices.getCount(); i++) {
+				final int start = dirtyIndices.getStart(i);
+				final int end = Math.min(dirtyIndices.getEnd(i), count);
+				if (start >= end) {
+					break;
+				}
+				final ByteBuffer buffer = vertexData.getIndicesBuffer(type, start, end - start);
+				bufferSubData(ELEMENT_ARRAY_BUFFER, start * type.getByteSize(), buffer);
+				vertexData.releaseIndicesBuffer(buffer);
+			}
+		}
+		dirtyIndices.clear();
+		if (count != indicesCountCache) {
+			indicesCountCache = count;
+			resetIndicesCountAndOffset();
+		}
+	}
+
+	private void updateSeparateAttributes() {
+		for (int i = 0; i < attributeCount; i++) {
+			final DirtyRanges dirty = dirtyAttributes[i];
+			final ByteBuffer data = vertexData.getAttribute(i).getData();
+			final int size = data.remaining();
+			if (size > attributeBufferSizes[i] || usageHint == UsageHint.STREAM) {
+				bindBuffer(ARRAY_BUFFER, attributeBufferIDs[i]);
+				bufferData(ARRAY_BUFFER, data, usageHint.getGLConstant());
+				attributeBufferSizes[i] = size;
+			} else if (!dirty.isEmpty()) {
+				bindBuffer(ARRAY_BUFFER, attributeBufferIDs[i]);
+				for (int r = 0; r < dirty.getCount(); r++) {
+					final int start = dirty.getStart(r);
+					final int end = Math.min(dirty.getEnd(r), size);
+					if (start >= end) {
+						break;
+					}
+					data.limit(end).position(start);
+					bufferSubData(ARRAY_BUFFER, start, data.slice());
+				}
+			}
+			dirty.clear();
+		}
+	}
+
+	private void updateInterleavedAttributes() {
+		final int vertexCount = vertexFormat.getVertexCount(vertexData);
+		final int stride = vertexFormat.getStride();
+		final int size = vertexCount * stride;
+		if (size > attributeBufferSizes[0] || usageHint == UsageHint.STREAM) {
+			bindBuffer(ARRAY_BUFFER, attributeBufferIDs[0]);
+			final ByteBuffer buffer = vertexFormat.interleave(vertexData);
+			bufferData(ARRAY_BUFFER, buffer, usageHint.getGLConstant());
+			CausticUtil.getBufferPool().release(buffer);
+			attributeBufferSizes[0] = size;
+		} else {
+			// Convert the dirty byte ranges of each attribute to vertex ranges, merged across attributes
+			for (int i = 0; i < attributeCount; i++) {
+				final DirtyRanges dirty = dirtyAttributes[i];
+				final int byteSize = vertexFormat.getAttributeByteSize(i);
+				for (int r = 0; r < dirty.getCount(); r++) {
+					final int start = dirty.getStart(r) / byteSize;
+					final int end = Math.min((int) (((long) dirty.getEnd(r) + byteSize - 1) / byteSize), vertexCount);
+					if (start >= end) {
+						break;
+					}
+					dirtyVertices.add(start, end);
+				}
+			}
+			if (!dirtyVertices.isEmpty()) {
+				bindBuffer(ARRAY_BUFFER, attributeBufferIDs[0]);
+				for (int r = 0; r < dirtyVertices.getCount(); r++) {
+					final int start = dirtyVertices.getStart(r);
+					final ByteBuffer buffer = vertexFormat.interleave(vertexData, start, dirtyVertices.getEnd(r) - start);
+					bufferSubData(ARRAY_BUFFER, start * stride, buffer);
+					CausticUtil.getBufferPool().release(buffer);
+				}
+			}
+			dirtyVertices.clear();
+		}
+		for (DirtyRanges dirty : dirtyAttributes) {
+			dirty.clear();
+		}
+	}
+
+	/**
+	 * Binds the buffer to the target, used by {@link #update()}.
+	 *
+	 * @param target The buffer target, either {@link #ARRAY_BUFFER} or {@link #ELEMENT_ARRAY_BUFFER}
+	 * @param bufferID The ID of the buffer to bind, or zero to unbind
+	 */
+	protected abstract void bindBuffer(int target, int bufferID);
+
+	/**
+	 * Reallocates the storage of the buffer bound to the target and fills it with the data, used by {@link #update()}.
+	 *
+	 * @param target The buffer target, either {@link #ARRAY_BUFFER} or {@link #ELEMENT_ARRAY_BUFFER}
+	 * @param data The data to upload, from its position to its limit
+	 * @param usage The OpenGL usage constant
+	 */
+	protected abstract void bufferData(int target, ByteBuffer data, int usage);
+
+	/**
+	 * Replaces part of the storage of the buffer bound to the target with the data, used by {@link #update()}.
+	 *
+	 * @param target The buffer target, either {@link #ARRAY_BUFFER} or {@link #ELEMENT_ARRAY_BUFFER}
+	 * @param offset The offset in bytes in the buffer
+	 * @param data The data to upload, from its position to its limit
+	 */
+	protected abstract void bufferSubData(int target, int offset, ByteBuffer data);
+
+	/**
+	 * Marks a range of bytes of the attribute data as dirty, to be uploaded on the next {@link #update()}.
+	 *
+	 * @param index The index of the attribute
+	 * @param start The first byte of the range, inclusive
+	 * @param end The last byte of the range, exclusive
+	 * @throws IllegalStateException If the vertex array hasn't been created, or if it is static
+	 */
+	public void markAttributeDirty(int index, int start, int end) {
+		checkDynamic();
+		if (index < 0 || index >= attributeCount) {
+			throw new IllegalArgumentException("Attribute index " + index + " is out of bounds");
+		}
+		dirtyAttributes[index].add(start, end);
+	}
+
+	/**
+	 * Marks all the data of the attribute as dirty, to be uploaded on the next {@link #update()}.
+	 *
+	 * @param index The index of the attribute
+	 * @throws IllegalStateException If the vertex array hasn't been created, or if it is static
+	 */
+	public void markAttributeDirty(int index) {
+		markAttributeDirty(index, 0, Integer.MAX_VALUE);
+	}
+
+	/**
+	 * Marks a range of the indices as dirty, to be uploaded on the next {@link #update()}. The range is in indices, not bytes.
+	 *
+	 * @param start The first index of the range, inclusive
+	 * @param end The last index of the range, exclusive
+	 * @throws IllegalStateException If the vertex array hasn't been created, or if it is static
+	 */
+	public void markIndicesDirty(int start, int end) {
+		checkDynamic();
+		dirtyIndices.add(start, end);
+	}
+
+	/**
+	 * Marks all the indices as dirty, to be uploaded on the next {@link #update()}.
+	 *
+	 * @throws IllegalStateException If the vertex array hasn't been created, or if it is static
+	 */
+	public void markIndicesDirty() {
+		markIndicesDirty(0, Integer.MAX_VALUE);
+	}
+
+	private void checkDynamic() {
+		checkCreated();
+		if (usageHint == UsageHint.STATIC) {
+			throw new IllegalStateException("Static vertex arrays cannot be updated");
+		}
+	}
+
+	/**
+	 * Sets the vertex data source to use. The bounds are computed from the positions of the data, see {@link Bounds#fromVertexData(VertexData)}, unless they were set with {@link
+	 * #setBounds(Bounds)}.
 	 *
 	 * @param vertexData The vertex data source
 	 */
 	public void setData(VertexData vertexData) {
 		this.vertexData = vertexData;
+		if (explicitBounds) {
+			return;
+		}
+		if (vertexData != null) {
+			computeBounds();
+		} else {
+			bounds = null;
+			boundsDataSize = -1;
+		}
+	}
+
+	/**
+	 * Returns the bounds of the positions, in model space. Unless they were set, they're computed when the data is set, and again on {@link #update()} if the positions were marked as dirty or changed
+	 * size.
+	 *
+	 * @return The bounds, or null if unknown
+	 */
+	public Bounds getBounds() {
+		return bounds;
+	}
+
+	/**
+	 * Sets the bounds of the positions, in model space, replacing the computed ones. This is necessary if the shaders move the vertices outside of them. The bounds aren't computed anymore until
+	 * {@link #resetBounds()} is called.
+	 *
+	 * @param bounds The bounds, or null if unknown
+	 */
+	public void setBounds(Bounds bounds) {
+		this.bounds = bounds;
+		explicitBounds = true;
+	}
+
+	/**
+	 * Discards the bounds set with {@link #setBounds(Bounds)}, and computes them from the positions of the data again, if any.
+	 */
+	public void resetBounds() {
+		explicitBounds = false;
+		setData(vertexData);
 	}
 
 	/**
@@ -96,6 +427,60 @@ public abstract class VertexArray extends Creatable implements GLVersioned {
 		this.drawingMode = mode;
 	}
 
+	/**
+	 * Sets the layout of the attribute data in the buffers. This must be done before creation.
+	 *
+	 * @param mode The layout mode to use
+	 */
+	public void setLayoutMode(LayoutMode mode) {
+		if (mode == null) {
+			throw new IllegalArgumentException("Layout mode cannot be null");
+		}
+		this.layoutMode = mode;
+	}
+
+	/**
+	 * Returns the layout of the attribute data in the buffers.
+	 *
+	 * @return The layout mode
+	 */
+	public LayoutMode getLayoutMode() {
+		return layoutMode;
+	}
+
+	/**
+	 * Sets the expected usage of the buffers. This must be done before creation. Any hint other than {@link UsageHint#STATIC} keeps the vertex data after creation, so it can be updated.
+	 *
+	 * @param hint The usage hint to use
+	 */
+	public void setUsageHint(UsageHint hint) {
+		if (hint == null) {
+			throw new IllegalArgumentException("Usage hint cannot be null");
+		}
+		if (isCreated()) {
+			throw new IllegalStateException("The usage hint must be set before creation");
+		}
+		this.usageHint = hint;
+	}
+
+	/**
+	 * Returns the expected usage of the buffers.
+	 *
+	 * @return The usage hint
+	 */
+	public UsageHint getUsageHint() {
+		return usageHint;
+	}
+
+	/**
+	 * Returns the type of the indices in the buffer. This is chosen on creation as the narrowest type that can hold all the indices, see {@link org.spout.renderer.data.VertexData#getIndicesType()}.
+	 *
+	 * @return The indices type
+	 */
+	public DataType getIndicesType() {
+		return indicesType;
+	}
+
 	/**
 	 * Sets the number of indices to render during each draw call.
 	 *
@@ -106,7 +491,7 @@ public abstract class VertexArray extends Creatable implements GLVersioned {
 	}
 
 	/**
-	 * Sets the offset in the indices buffer to start at when rendering.
+	 * Sets the offset in the indices buffer to start at when rendering. The offset is in indices, not bytes, regardless of the indices type.
 	 *
 	 * @param offset The offset in the indices buffer
 	 */
@@ -122,6 +507,53 @@ public abstract class VertexArray extends Creatable implements GLVersioned {
 		indicesOffset = 0;
 	}
 
+	/**
+	 * Represents the different layouts of the attribute data in the buffers.
+	 */
+	public static enum LayoutMode {
+		/**
+		 * Each attribute is stored in its own buffer.
+		 */
+		SEPARATE,
+		/**
+		 * All attributes are stored in a single buffer, one vertex after the other, as described by a {@link org.spout.renderer.data.VertexFormat}. This reduces buffer binds and improves the
+		 * locality of the vertex fetches.
+		 */
+		INTERLEAVED
+	}
+
+	/**
+	 * Represents the expected usage of the buffers, which lets the driver choose where to store them.
+	 */
+	public static enum UsageHint {
+		/**
+		 * The data is uploaded once and drawn many times. It can't be updated.
+		 */
+		STATIC(0x88E4), // GL15.GL_STATIC_DRAW
+		/**
+		 * The data is updated repeatedly and drawn many times. Only the dirty ranges are uploaded.
+		 */
+		DYNAMIC(0x88E8), // GL15.GL_DYNAMIC_DRAW
+		/**
+		 * The data is updated about every time it is drawn. Buffers are uploaded in full and orphaned on each update.
+		 */
+		STREAM(0x88E0); // GL15.GL_STREAM_DRAW
+		private final int glConstant;
+
+		private UsageHint(int constant) {
+			this.glConstant = constant;
+		}
+
+		/**
+		 * Returns the OpenGL constant associated to the usage hint
+		 *
+		 * @return The OpenGL constant
+		 */
+		public int getGLConstant() {
+			return glConstant;
+		}
+	}
+
 	/**
 	 * Represents the different drawing modes for the model
 	 */
@@ -0,0 +1,425 @@
+/*
+ * This file is part of Caustic.
+ *
+ * Copyright (c) 2013 Spout LLC <http://www.spout.org/>
+ * Caustic is licensed under the Spout License Version 1.
+ *
+ * Caustic is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the Free
+ * Software Foundation, either version 3 of the License, or (at your option)
+ * any later version.
+ *
+ * In addition, 180 days after any changes are published, you can use the
+ * software, incorporating those changes, under the terms of the MIT license,
+ * as described in the Spout License Version 1.
+ *
+ * Caustic is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE.  See the GNU Lesser General Public License for
+ * more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License,
+ * the MIT license and the Spout License Version 1 along with this program.
+ * If not, see <http://www.gnu.org/licenses/> for the GNU Lesser General Public
+ * License and see <http://spout.in/licensev1> for the full license, including
+ * the MIT license.
+ */
+package org.spout.renderer.headless;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import gnu.trove.impl.Constants;
+import gnu.trove.map.TIntIntMap;
+import gnu.trove.map.TObjectIntMap;
+import gnu.trove.map.hash.TIntIntHashMap;
+import gnu.trove.map.hash.TObjectIntHashMap;
+
+/**
+ * A compact, in-memory log of the OpenGL level operations performed by the headless objects of a {@link HeadlessGLFactory}. Each command is stored as four integers: the command, the target, the ID
+ * of the object it applies to and an argument. The meaning of the argument depends on the command:
+ * <ul>
+ * <li>{@link Command#BIND}: the texture unit for textures, one plus the binding point for indexed uniform buffer bindings, zero otherwise</li>
+ * <li>{@link Command#BUFFER_DATA}, {@link Command#BUFFER_SUB_DATA}, {@link Command#TEXTURE_DATA} and {@link Command#READ_FRAME}: the byte count</li>
+ * <li>{@link Command#UNIFORM}: the name index, see {@link #getUniformName(int)}</li>
+ * <li>{@link Command#UNIFORM_BLOCK_BINDING}: the binding point</li>
+ * <li>{@link Command#DRAW}: the indices count</li>
+ * <li>{@link Command#SET_CLEAR_COLOR}: the color as ARGB</li>
+ * <li>{@link Command#ENABLE_CAPABILITY} and {@link Command#DISABLE_CAPABILITY}: the OpenGL constant of the capability</li>
+ * <li>zero for all others</li>
+ * </ul>
+ * <p/> Binding an object ID of zero unbinds the target, as in OpenGL. A bind is redundant when the object is already bound to the target (and unit, for textures), and a uniform upload is redundant
+ * when the value is the same as the last one uploaded to the program. <p/> The counters are always updated, the commands are only stored when recording is enabled, which it is by default. Like an
+ * OpenGL context, the log is not thread safe.
+ */
+public class CommandLog {
+	private static final Command[] COMMANDS = Command.values();
+	private static final Target[] TARGETS = Target.values();
+	private static final int ENTRY_SIZE = 4;
+	private static final int INITIAL_CAPACITY = 256;
+	// The commands, as entries of four ints
+	private int[] entries = new int[INITIAL_CAPACITY * ENTRY_SIZE];
+	private int size = 0;
+	private boolean recording = true;
+	// The uniform names, by index
+	private final TObjectIntMap<String> nameIndices = new TObjectIntHashMap<>(Constants.DEFAULT_CAPACITY, Constants.DEFAULT_LOAD_FACTOR, -1);
+	private final List<String> names = new ArrayList<>();
+	// The next object ID, zero is reserved for unbinding
+	private int nextID = 1;
+	// The bound object IDs, by binding point
+	private final TIntIntMap bindings = new TIntIntHashMap();
+	private int activeTextureUnit = 0;
+	// Counters
+	private long commandCount = 0;
+	private long drawCount = 0;
+	private long bindCount = 0;
+	private long redundantBindCount = 0;
+	private long uniformCount = 0;
+	private long redundantUniformCount = 0;
+	private long uploadedBytes = 0;
+
+	/**
+	 * Returns the number of commands stored, which is less than {@link #getCommandCount()} if recording has been disabled.
+	 *
+	 * @return The number of stored commands
+	 */
+	public int size() {
+		return size;
+	}
+
+	/**
+	 * Returns the command at the index.
+	 *
+	 * @param index The index of the command
+	 * @return The command
+	 */
+	public Command getCommand(int index) {
+		return COMMANDS[entries[entry(index)]];
+	}
+
+	/**
+	 * Returns the target of the command at the index.
+	 *
+	 * @param index The index of the command
+	 * @return The target
+	 */
+	public Target getTarget(int index) {
+		return TARGETS[entries[entry(index) + 1]];
+	}
+
+	/**
+	 * Returns the ID of the object for the command at the index. For binds, zero means that the target was unbound.
+	 *
+	 * @param index The index of the command
+	 * @return The object ID
+	 */
+	public int getObjectID(int index) {
+		return entries[entry(index) + 2];
+	}
+
+	/**
+	 * Returns the argument of the command at the index. See the class documentation for its meaning.
+	 *
+	 * @param index The index of the command
+	 * @return The argument
+	 */
+	public int getArgument(int index) {
+		return entries[entry(index) + 3];
+	}
+
+	/**
+	 * Returns the uniform name for the {@link Command#UNIFORM} command at the index.
+	 *
+	 * @param index The index of the command
+	 * @return The uniform name
+	 * @throws IllegalArgumentException If the command isn't a uniform upload
+	 */
+	public String getUniformName(int index) {
+		if (getCommand(index) != Command.UNIFORM) {
+			throw new IllegalArgumentException("Not a uniform command: " + getCommand(index));
+		}
+		return names.get(getArgument(index));
+	}
+
+	/**
+	 * Counts the stored commands of the type.
+	 *
+	 * @param command The command to count
+	 * @return The number of stored commands of that type
+	 */
+	public int count(Command command) {
+		int count = 0;
+		for (int i = 0; i < size * ENTRY_SIZE; i += ENTRY_SIZE) {
+			if (entries[i] == command.ordinal()) {
+				count++;
+			}
+		}
+		return count;
+	}
+
+	/**
+	 * Returns the total number of commands, recorded or not.
+	 *
+	 * @return The command count
+	 */
+	public long getCommandCount() {
+		return commandCount;
+	}
+
+	/**
+	 * Returns the number of draw calls.
+	 *
+	 * @return The draw count
+	 */
+	public long getDrawCount() {
+		return drawCount;
+	}
+
+	/**
+	 * Returns the number of binds, including unbinds.
+	 *
+	 * @return The bind count
+	 */
+	public long getBindCount() {
+		return bindCount;
+	}
+
+	/**
+	 * Returns the number of binds of an object that was already bound to the target.
+	 *
+	 * @return The redundant bind count
+	 */
+	public long getRedundantBindCount() {
+		return redundantBindCount;
+	}
+
+	/**
+	 * Returns the number of uniforms uploaded. Uniforms missing from the program aren't counted.
+	 *
+	 * @return The uniform count
+	 */
+	public long getUniformCount() {
+		return uniformCount;
+	}
+
+	/**
+	 * Returns the number of uniforms uploaded with the same value as the previous upload to the program.
+	 *
+	 * @return The redundant uniform count
+	 */
+	public long getRedundantUniformCount() {
+		return redundantUniformCount;
+	}
+
+	/**
+	 * Returns the number of bytes uploaded to buffers and textures.
+	 *
+	 * @return The uploaded byte count
+	 */
+	public long getUploadedBytes() {
+		return uploadedBytes;
+	}
+
+	/**
+	 * Returns true if the commands are being stored, false if only the counters are updated.
+	 *
+	 * @return Whether or not the commands are recorded
+	 */
+	public boolean isRecording() {
+		return recording;
+	}
+
+	/**
+	 * Sets whether or not the commands should be stored. Disabling recording keeps the memory use constant for long runs, the counters are still updated.
+	 *
+	 * @param recording Whether or not to record the commands
+	 */
+	public void setRecording(boolean recording) {
+		this.recording = recording;
+	}
+
+	/**
+	 * Clears the stored commands and resets the counters. The bound objects are kept, as they are part of the OpenGL state.
+	 */
+	public void clear() {
+		size = 0;
+		commandCount = 0;
+		drawCount = 0;
+		bindCount = 0;
+		redundantBindCount = 0;
+		uniformCount = 0;
+		redundantUniformCount = 0;
+		uploadedBytes = 0;
+	}
+
+	int generateID() {
+		return nextID++;
+	}
+
+	void create(Target target, int id) {
+		record(Command.CREATE, target, id, 0);
+	}
+
+	void destroy(Target target, int id) {
+		record(Command.DESTROY, target, id, 0);
+		// Deleting a bound object unbinds it
+		if (target == Target.TEXTURE) {
+			final int key = bindingKey(target, activeTextureUnit);
+			if (bindings.get(key) == id) {
+				bindings.remove(key);
+			}
+		} else if (target == Target.UNIFORM_BUFFER) {
+			// Also unbind it from the indexed binding points
+			for (int key : bindings.keys()) {
+				if (key % TARGETS.length == target.ordinal() && bindings.get(key) == id) {
+					bindings.remove(key);
+				}
+			}
+		} else if (bindings.get(bindingKey(target, 0)) == id) {
+			bindings.remove(bindingKey(target, 0));
+		}
+	}
+
+	void bind(Target target, int id) {
+		bind(target, 0, id);
+	}
+
+	void bindUniformBuffer(int bindingPoint, int id) {
+		bind(Target.UNIFORM_BUFFER, bindingPoint + 1, id);
+		// Binding to an indexed point also binds to the generic target
+		bindings.put(bindingKey(Target.UNIFORM_BUFFER, 0), id);
+	}
+
+	void activeTexture(int unit) {
+		activeTextureUnit = unit;
+	}
+
+	void bindTexture(int unit, int id) {
+		if (unit != -1) {
+			activeTextureUnit = unit;
+		}
+		bind(Target.TEXTURE, activeTextureUnit, id);
+	}
+
+	private void bind(Target target, int unit, int id) {
+		record(Command.BIND, target, id, unit);
+		bindCount++;
+		final int key = bindingKey(target, unit);
+		// Zero is both "unbound" and the no entry value of the map
+		if (bindings.get(key) == id) {
+			redundantBindCount++;
+		} else {
+			bindings.put(key, id);
+		}
+	}
+
+	int getBinding(Target target) {
+		return bindings.get(bindingKey(target, target == Target.TEXTURE ? activeTextureUnit : 0));
+	}
+
+	void upload(Command command, Target target, int id, int bytes) {
+		record(command, target, id, bytes);
+		uploadedBytes += bytes;
+	}
+
+	void uniform(int programID, String name, boolean redundant) {
+		int index = nameIndices.get(name);
+		if (index == -1) {
+			index = names.size();
+			names.add(name);
+			nameIndices.put(name, index);
+		}
+		record(Command.UNIFORM, Target.PROGRAM, programID, index);
+		uniformCount++;
+		if (redundant) {
+			redundantUniformCount++;
+		}
+	}
+
+	void uniformBlockBinding(int programID, int bindingPoint) {
+		record(Command.UNIFORM_BLOCK_BINDING, Target.PROGRAM, programID, bindingPoint);
+	}
+
+	void draw(int vertexArrayID, int indicesCount) {
+		record(Command.DRAW, Target.VERTEX_ARRAY, vertexArrayID, indicesCount);
+		drawCount++;
+	}
+
+	void record(Command command, Target target, int id, int argument) {
+		commandCount++;
+		if (!recording) {
+			return;
+		}
+		if (entries.length < (size + 1) * ENTRY_SIZE) {
+			entries = Arrays.copyOf(entries, entries.length * 2);
+		}
+		final int entry = size * ENTRY_SIZE;
+		entries[entry] = command.ordinal();
+		entries[entry + 1] = target.ordinal();
+		entries[entry + 2] = id;
+		entries[entry + 3] = argument;
+		size++;
+	}
+
+	private int entry(int index) {
+		if (index < 0 || index >= size) {
+			throw new IndexOutOfBoundsException("Index: " + index + ", size: " + size);
+		}
+		return index * ENTRY_SIZE;
+	}
+
+	private static int bindingKey(Target target, int unit) {
+		return unit * TARGETS.length + target.ordinal();
+	}
+
+	@Override
+	public String toString() {
+		final StringBuilder builder = new StringBuilder("[");
+		for (int i = 0; i < size; i++) {
+			if (i > 0) {
+				builder.append(", ");
+			}
+			builder.append(getCommand(i)).append(' ').append(getTarget(i)).append(' ').append(getObjectID(i)).append(' ').append(getArgument(i));
+		}
+		return builder.append(']').toString();
+	}
+
+	/**
+	 * The OpenGL level operations.
+	 */
+	public static enum Command {
+		CREATE,
+		DESTROY,
+		BIND,
+		BUFFER_DATA,
+		BUFFER_SUB_DATA,
+		TEXTURE_DATA,
+		UNIFORM,
+		UNIFORM_BLOCK_BINDING,
+		DRAW,
+		CLEAR,
+		SET_CLEAR_COLOR,
+		ENABLE_CAPABILITY,
+		DISABLE_CAPABILITY,
+		SET_VIEW_PORT,
+		READ_FRAME,
+		UPDATE_DISPLAY
+	}
+
+	/**
+	 * The kinds of objects the commands apply to. Buffers are split by their binding target.
+	 */
+	public static enum Target {
+		CONTEXT,
+		PROGRAM,
+		SHADER,
+		TEXTURE,
+		VERTEX_ARRAY,
+		ARRAY_BUFFER,
+		ELEMENT_ARRAY_BUFFER,
+		UNIFORM_BUFFER,
+		FRAME_BUFFER,
+		RENDER_BUFFER
+	}
+}
@@ -0,0 +1,135 @@
+/*
+ * This file is part of Caustic.
+ *
+ * Copyright (c) 2013 Spout LLC <http://www.spout.org/>
+ * Caustic is licensed under the Spout License Version 1.
+ *
+ * Caustic is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the Free
+ * Software Foundation, either version 3 of the License, or (at your option)
+ * any later version.
+ *
+ * In addition, 180 days after any changes are published, you can use the
+ * software, incorporating those changes, under the terms of the MIT license,
+ * as described in the Spout License Version 1.
+ *
+ * Caustic is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE.  See the GNU Lesser General Public License for
+ * more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License,
+ * the MIT license and the Spout License Version 1 along with this program.
+ * If not, see <http://www.gnu.org/licenses/> for the GNU Lesser General Public
+ * License and see <http://spout.in/licensev1> for the full license, including
+ * the MIT license.
+ */
+package org.spout.renderer.headless;
+
+import java.nio.ByteBuffer;
+
+import org.spout.renderer.data.Color;
+import org.spout.renderer.gl.Context;
+import org.spout.renderer.gl.StateCache;
+import org.spout.renderer.gl.Texture.Format;
+import org.spout.renderer.headless.CommandLog.Command;
+import org.spout.renderer.headless.CommandLog.Target;
+import org.spout.renderer.util.CausticUtil;
+import org.spout.renderer.util.Rectangle;
+
+/**
+ * A headless implementation of {@link org.spout.renderer.gl.Context}. No display is opened, frames read are blank.
+ *
+ * @see org.spout.renderer.gl.Context
+ */
+public class HeadlessContext extends Context {
+	private final CommandLog log;
+	private int id;
+
+	protected HeadlessContext(CommandLog log, StateCache stateCache) {
+		super(stateCache);
+		this.log = log;
+	}
+
+	@Override
+	public void create() {
+		if (isCreated()) {
+			throw new IllegalStateException("Context has already been created");
+		}
+		id = log.generateID();
+		log.create(Target.CONTEXT, id);
+		// The new context has its own state
+		stateCache.invalidate();
+		// Set the default view port
+		setViewPort(new Rectangle(0, 0, windowSize.getFloorX(), windowSize.getFloorY()));
+		// Update the state
+		super.create();
+	}
+
+	@Override
+	public void destroy() {
+		checkCreated();
+		log.destroy(Target.CONTEXT, id);
+		stateCache.invalidate();
+		super.destroy();
+	}
+
+	@Override
+	public void updateDisplay() {
+		checkCreated();
+		log.record(Command.UPDATE_DISPLAY, Target.CONTEXT, id, 0);
+		// The frame is over, so are the temporary buffers
+		CausticUtil.getBufferPool().getFrameArena().reset();
+	}
+
+	@Override
+	public void setClearColor(Color color) {
+		final Color normC = color.normalize();
+		if (!stateCache.setClearColor(normC.getRed(), normC.getGreen(), normC.getBlue(), normC.getAlpha())) {
+			return;
+		}
+		final int argb = Math.round(normC.getAlpha() * 255) << 24 | Math.round(normC.getRed() * 255) << 16 | Math.round(normC.getGreen() * 255) << 8 | Math.round(normC.getBlue() * 255);
+		log.record(Command.SET_CLEAR_COLOR, Target.CONTEXT, id, argb);
+	}
+
+	@Override
+	public void clearCurrentBuffer() {
+		log.record(Command.CLEAR, Target.CONTEXT, id, 0);
+	}
+
+	@Override
+	public void enableCapability(Capability capability) {
+		if (!stateCache.enableCapability(capability)) {
+			return;
+		}
+		log.record(Command.ENABLE_CAPABILITY, Target.CONTEXT, id, capability.getGLConstant());
+	}
+
+	@Override
+	public void disableCapability(Capability capability) {
+		if (!stateCache.disableCapability(capability)) {
+			return;
+		}
+		log.record(Command.DISABLE_CAPABILITY, Target.CONTEXT, id, capability.getGLConstant());
+	}
+
+	@Override
+	public void setViewPort(Rectangle viewPort) {
+		if (!stateCache.setViewPort(viewPort.getX(), viewPort.getY(), viewPort.getWidth(), viewPort.getHeight())) {
+			return;
+		}
+		log.record(Command.SET_VIEW_PORT, Target.CONTEXT, id, 0);
+	}
+
+	@Override
+	public ByteBuffer readCurrentFrame(Rectangle size, Format format) {
+		final int bytes = size.getArea() * format.getComponentCount();
+		log.record(Command.READ_FRAME, Target.CONTEXT, id, bytes);
+		return CausticUtil.createByteBuffer(bytes);
+	}
+
+	@Override
+	public GLVersion getGLVersion() {
+		return GLVersion.HEADLESS;
+	}
+}
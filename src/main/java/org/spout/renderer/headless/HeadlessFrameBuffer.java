@@ -0,0 +1,110 @@
+/*
+ * This file is part of Caustic.
+ *
+ * Copyright (c) 2013 Spout LLC <http://www.spout.org/>
+ * Caustic is licensed under the Spout License Version 1.
+ *
+ * Caustic is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the Free
+ * Software Foundation, either version 3 of the License, or (at your option)
+ * any later version.
+ *
+ * In addition, 180 days after any changes are published, you can use the
+ * software, incorporating those changes, under the terms of the MIT license,
+ * as described in the Spout License Version 1.
+ *
+ * Caustic is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE.  See the GNU Lesser General Public License for
+ * more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License,
+ * the MIT license and the Spout License Version 1 along with this program.
+ * If not, see <http://www.gnu.org/licenses/> for the GNU Lesser General Public
+ * License and see <http://spout.in/licensev1> for the full license, including
+ * the MIT license.
+ */
+package org.spout.renderer.headless;
+
+import org.spout.renderer.gl.FrameBuffer;
+import org.spout.renderer.gl.RenderBuffer;
+import org.spout.renderer.gl.StateCache;
+import org.spout.renderer.gl.Texture;
+import org.spout.renderer.headless.CommandLog.Target;
+
+/**
+ * A headless implementation of {@link FrameBuffer}.
+ *
+ * @see FrameBuffer
+ */
+public class HeadlessFrameBuffer extends FrameBuffer {
+	private final CommandLog log;
+	// Shadow of the OpenGL state
+	private final StateCache stateCache;
+
+	protected HeadlessFrameBuffer(CommandLog log, StateCache stateCache) {
+		this.log = log;
+		this.stateCache = stateCache;
+	}
+
+	@Override
+	public void create() {
+		if (isCreated()) {
+			throw new IllegalStateException("Frame buffer has already been created");
+		}
+		// The attachments must exist
+		for (Texture texture : textures.values()) {
+			texture.checkCreated();
+		}
+		for (RenderBuffer buffer : buffers.values()) {
+			buffer.checkCreated();
+		}
+		// Generate, bind then unbind the frame buffer
+		id = log.generateID();
+		log.create(Target.FRAME_BUFFER, id);
+		if (stateCache.bindFrameBuffer(id)) {
+			log.bind(Target.FRAME_BUFFER, id);
+		}
+		if (stateCache.bindFrameBuffer(0)) {
+			log.bind(Target.FRAME_BUFFER, 0);
+		}
+		// Update the state
+		super.create();
+	}
+
+	@Override
+	public void destroy() {
+		checkCreated();
+		if (stateCache.bindFrameBuffer(0)) {
+			log.bind(Target.FRAME_BUFFER, 0);
+		}
+		log.destroy(Target.FRAME_BUFFER, id);
+		stateCache.deleteFrameBuffer(id);
+		// Release some resources
+		textures.clear();
+		buffers.clear();
+		// Update the state
+		super.destroy();
+	}
+
+	@Override
+	public void bind() {
+		checkCreated();
+		if (stateCache.bindFrameBuffer(id)) {
+			log.bind(Target.FRAME_BUFFER, id);
+		}
+	}
+
+	@Override
+	public void unbind() {
+		checkCreated();
+		if (stateCache.bindFrameBuffer(0)) {
+			log.bind(Target.FRAME_BUFFER, 0);
+		}
+	}
+
+	@Override
+	public GLVersion getGLVersion() {
+		return GLVersion.HEADLESS;
+	}
+}
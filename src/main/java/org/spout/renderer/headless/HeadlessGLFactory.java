@@ -0,0 +1,116 @@
+/*
+ * This file is part of Caustic.
+ *
+ * Copyright (c) 2013 Spout LLC <http://www.spout.org/>
+ * Caustic is licensed under the Spout License Version 1.
+ *
+ * Caustic is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the Free
+ * Software Foundation, either version 3 of the License, or (at your option)
+ * any later version.
+ *
+ * In addition, 180 days after any changes are published, you can use the
+ * software, incorporating those changes, under the terms of the MIT license,
+ * as described in the Spout License Version 1.
+ *
+ * Caustic is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE.  See the GNU Lesser General Public License for
+ * more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License,
+ * the MIT license and the Spout License Version 1 along with this program.
+ * If not, see <http://www.gnu.org/licenses/> for the GNU Lesser General Public
+ * License and see <http://spout.in/licensev1> for the full license, including
+ * the MIT license.
+ */
+package org.spout.renderer.headless;
+
+import org.spout.renderer.GLImplementation;
+import org.spout.renderer.gl.Context;
+import org.spout.renderer.gl.FrameBuffer;
+import org.spout.renderer.gl.GLFactory;
+import org.spout.renderer.gl.Program;
+import org.spout.renderer.gl.RenderBuffer;
+import org.spout.renderer.gl.Shader;
+import org.spout.renderer.gl.StateCache;
+import org.spout.renderer.gl.Texture;
+import org.spout.renderer.gl.UniformBuffer;
+import org.spout.renderer.gl.VertexArray;
+
+/**
+ * A headless implementation of {@link GLFactory}. The objects don't call OpenGL and don't need a display, instead they record their operations in the {@link CommandLog} of the factory. This can be
+ * used to measure the CPU cost and count the OpenGL calls of rendering on machines without a GPU. Like the other implementations, the objects use a {@link StateCache}, so the calls it skips aren't
+ * recorded. <p/> The registered factory is shared, other factories can be constructed to get separate logs.
+ *
+ * @see GLFactory
+ */
+public class HeadlessGLFactory implements GLFactory {
+	static {
+		GLImplementation.register(GLVersion.HEADLESS, new HeadlessGLFactory());
+	}
+
+	private final CommandLog log = new CommandLog();
+	// Shared by the context and objects, as they use the same OpenGL state
+	private final StateCache stateCache = new StateCache();
+
+	/**
+	 * Constructs a new headless factory with its own command log.
+	 */
+	public HeadlessGLFactory() {
+	}
+
+	/**
+	 * Returns the command log shared by all the objects created by this factory.
+	 *
+	 * @return The command log
+	 */
+	public CommandLog getCommandLog() {
+		return log;
+	}
+
+	@Override
+	public FrameBuffer createFrameBuffer() {
+		return new HeadlessFrameBuffer(log, stateCache);
+	}
+
+	@Override
+	public Program createProgram() {
+		return new HeadlessProgram(log, stateCache);
+	}
+
+	@Override
+	public RenderBuffer createRenderBuffer() {
+		return new HeadlessRenderBuffer(log, stateCache);
+	}
+
+	@Override
+	public Context createContext() {
+		return new HeadlessContext(log, stateCache);
+	}
+
+	@Override
+	public Shader createShader() {
+		return new HeadlessShader(log);
+	}
+
+	@Override
+	public Texture createTexture() {
+		return new HeadlessTexture(log, stateCache);
+	}
+
+	@Override
+	public UniformBuffer createUniformBuffer() {
+		return new HeadlessUniformBuffer(log, stateCache);
+	}
+
+	@Override
+	public VertexArray createVertexArray() {
+		return new HeadlessVertexArray(log, stateCache);
+	}
+
+	@Override
+	public GLVersion getGLVersion() {
+		return GLVersion.HEADLESS;
+	}
+}
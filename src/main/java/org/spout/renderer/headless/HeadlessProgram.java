@@ -0,0 +1,255 @@
+/*
+ * This file is part of Caustic.
+ *
+ * Copyright (c) 2013 Spout LLC <http://www.spout.org/>
+ * Caustic is licensed under the Spout License Version 1.
+ *
+ * Caustic is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the Free
+ * Software Foundation, either version 3 of the License, or (at your option)
+ * any later version.
+ *
+ * In addition, 180 days after any changes are published, you can use the
+ * software, incorporating those changes, under the terms of the MIT license,
+ * as described in the Spout License Version 1.
+ *
+ * Caustic is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE.  See the GNU Lesser General Public License for
+ * more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License,
+ * the MIT license and the Spout License Version 1 along with this program.
+ * If not, see <http://www.gnu.org/licenses/> for the GNU Lesser General Public
+ * License and see <http://spout.in/licensev1> for the full license, including
+ * the MIT license.
+ */
+package org.spout.renderer.headless;
+
+import java.nio.FloatBuffer;
+import java.util.Arrays;
+
+import org.spout.math.matrix.Matrix2f;
+import org.spout.math.matrix.Matrix3f;
+import org.spout.math.matrix.Matrix4f;
+import org.spout.math.vector.Vector2f;
+import org.spout.math.vector.Vector3f;
+import org.spout.math.vector.Vector4f;
+import org.spout.renderer.gl.Program;
+import org.spout.renderer.gl.Shader;
+import org.spout.renderer.gl.Shader.ShaderType;
+import org.spout.renderer.gl.StateCache;
+import org.spout.renderer.headless.CommandLog.Target;
+import org.spout.renderer.util.CausticUtil;
+
+/**
+ * A headless implementation of {@link Program}. The active uniforms are those declared in the shader sources, uploads of other uniforms are ignored like in OpenGL. The last value uploaded for each
+ * uniform is kept to detect redundant uploads. The uniform blocks declared in the shader sources are active.
+ *
+ * @see Program
+ */
+public class HeadlessProgram extends Program {
+	private final CommandLog log;
+	// Shadow of the OpenGL state
+	private final StateCache stateCache;
+	// The last value of each active uniform received by OpenGL by handle, null if never uploaded, to detect redundant uploads getting through
+	private Object[] uniformValues = new Object[0];
+
+	protected HeadlessProgram(CommandLog log, StateCache stateCache) {
+		this.log = log;
+		this.stateCache = stateCache;
+	}
+
+	@Override
+	public void create() {
+		if (isCreated()) {
+			throw new IllegalStateException("Program has already been created");
+		}
+		if (!shaders.containsKey(ShaderType.VERTEX)) {
+			throw new IllegalStateException("No source set for vertex shader");
+		}
+		if (!shaders.containsKey(ShaderType.FRAGMENT)) {
+			throw new IllegalStateException("No source set for fragment shader");
+		}
+		// Load uniforms
+		int location = 0;
+		int blockIndex = 0;
+		for (Shader shader : shaders.values()) {
+			shader.checkCreated();
+			CausticUtil.checkVersion(this, shader);
+			final HeadlessShader headlessShader = (HeadlessShader) shader;
+			for (String name : headlessShader.getUniformNames()) {
+				if (getUniformHandle(name) == -1) {
+					addUniform(name, location++, headlessShader.getUniformType(name), headlessShader.getUniformSize(name));
+				}
+			}
+			for (String name : headlessShader.getUniformBlockNames()) {
+				if (!getUniformBlockNames().contains(name)) {
+					addUniformBlock(name, blockIndex++);
+				}
+			}
+		}
+		uniformValues = new Object[location];
+		id = log.generateID();
+		log.create(Target.PROGRAM, id);
+		super.create();
+	}
+
+	@Override
+	public void destroy() {
+		checkCreated();
+		log.destroy(Target.PROGRAM, id);
+		stateCache.deleteProgram(id);
+		uniformValues = new Object[0];
+		super.destroy();
+	}
+
+	@Override
+	public void bind() {
+		checkCreated();
+		if (stateCache.useProgram(id)) {
+			log.bind(Target.PROGRAM, id);
+		}
+	}
+
+	@Override
+	public void unbind() {
+		checkCreated();
+		if (stateCache.useProgram(0)) {
+			log.bind(Target.PROGRAM, 0);
+		}
+	}
+
+	@Override
+	public void bindTextureUniform(int unit) {
+		if (textureLayouts == null || !textureLayouts.containsKey(unit)) {
+			throw new IllegalArgumentException("No texture layout has been set for the unit: " + unit);
+		}
+		setUniform(textureLayouts.get(unit), unit);
+	}
+
+	@Override
+	public void setUniform(int handle, boolean b) {
+		checkCreated();
+		// Only box changed values, to not allocate for redundant uploads
+		if (updateValue(handle, b ? 1 : 0)) {
+			uploaded(handle, b);
+		}
+	}
+
+	@Override
+	public void setUniform(int handle, int i) {
+		checkCreated();
+		if (updateValue(handle, i)) {
+			uploaded(handle, i);
+		}
+	}
+
+	@Override
+	public void setUniform(int handle, float f) {
+		checkCreated();
+		if (updateValue(handle, Float.floatToRawIntBits(f))) {
+			uploaded(handle, f);
+		}
+	}
+
+	@Override
+	public void setUniform(int handle, Vector2f v) {
+		setUniformValue(handle, v);
+	}
+
+	@Override
+	public void setUniform(int handle, Vector2f[] vs) {
+		setUniformArray(handle, vs);
+	}
+
+	@Override
+	public void setUniform(int handle, Vector3f v) {
+		setUniformValue(handle, v);
+	}
+
+	@Override
+	public void setUniform(int handle, Vector3f[] vs) {
+		setUniformArray(handle, vs);
+	}
+
+	@Override
+	public void setUniform(int handle, Vector4f v) {
+		setUniformValue(handle, v);
+	}
+
+	@Override
+	public void setUniform(int handle, Matrix2f m) {
+		setUniformValue(handle, m);
+	}
+
+	@Override
+	public void setUniform(int handle, Matrix3f m) {
+		setUniformValue(handle, m);
+	}
+
+	@Override
+	public void setUniform(int handle, Matrix4f m) {
+		setUniformValue(handle, m);
+	}
+
+	@Override
+	public void setUniformMatrix4(int handle, FloatBuffer columnMajor) {
+		checkCreated();
+		if (!updateValue(handle, columnMajor)) {
+			return;
+		}
+		final int location = getUniformLocation(handle);
+		final int position = columnMajor.position();
+		final int count = columnMajor.remaining();
+		// Reuse the last array if possible, to not allocate when the matrix changes each frame
+		float[] values = uniformValues[location] instanceof float[] ? (float[]) uniformValues[location] : null;
+		boolean redundant = values != null && values.length == count;
+		if (!redundant) {
+			values = new float[count];
+			uniformValues[location] = values;
+		}
+		for (int i = 0; i < count; i++) {
+			final float value = columnMajor.get(position + i);
+			redundant &= Float.floatToRawIntBits(values[i]) == Float.floatToRawIntBits(value);
+			values[i] = value;
+		}
+		log.uniform(id, getUniformName(handle), redundant);
+	}
+
+	@Override
+	protected void bindUniformBlock(int index, int bindingPoint) {
+		log.uniformBlockBinding(id, bindingPoint);
+	}
+
+	private void setUniformValue(int handle, Object value) {
+		checkCreated();
+		if (updateValue(handle, value)) {
+			uploaded(handle, value);
+		}
+	}
+
+	private void uploaded(int handle, Object value) {
+		final int location = getUniformLocation(handle);
+		final boolean redundant = value.equals(uniformValues[location]);
+		uniformValues[location] = value;
+		log.uniform(id, getUniformName(handle), redundant);
+	}
+
+	private void setUniformArray(int handle, Object[] values) {
+		checkCreated();
+		if (!updateValue(handle, values)) {
+			return;
+		}
+		final int location = getUniformLocation(handle);
+		final boolean redundant = Arrays.equals(values, (Object[]) uniformValues[location]);
+		// Copy the array, as the caller could modify it
+		uniformValues[location] = values.clone();
+		log.uniform(id, getUniformName(handle), redundant);
+	}
+
+	@Override
+	public GLVersion getGLVersion() {
+		return GLVersion.HEADLESS;
+	}
+}
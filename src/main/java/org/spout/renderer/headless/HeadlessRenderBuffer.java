@@ -0,0 +1,104 @@
+/*
+ * This file is part of Caustic.
+ *
+ * Copyright (c) 2013 Spout LLC <http://www.spout.org/>
+ * Caustic is licensed under the Spout License Version 1.
+ *
+ * Caustic is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the Free
+ * Software Foundation, either version 3 of the License, or (at your option)
+ * any later version.
+ *
+ * In addition, 180 days after any changes are published, you can use the
+ * software, incorporating those changes, under the terms of the MIT license,
+ * as described in the Spout License Version 1.
+ *
+ * Caustic is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE.  See the GNU Lesser General Public License for
+ * more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License,
+ * the MIT license and the Spout License Version 1 along with this program.
+ * If not, see <http://www.gnu.org/licenses/> for the GNU Lesser General Public
+ * License and see <http://spout.in/licensev1> for the full license, including
+ * the MIT license.
+ */
+package org.spout.renderer.headless;
+
+import org.spout.renderer.gl.RenderBuffer;
+import org.spout.renderer.gl.StateCache;
+import org.spout.renderer.headless.CommandLog.Target;
+
+/**
+ * A headless implementation of {@link RenderBuffer}.
+ *
+ * @see RenderBuffer
+ */
+public class HeadlessRenderBuffer extends RenderBuffer {
+	private final CommandLog log;
+	// Shadow of the OpenGL state
+	private final StateCache stateCache;
+
+	protected HeadlessRenderBuffer(CommandLog log, StateCache stateCache) {
+		this.log = log;
+		this.stateCache = stateCache;
+	}
+
+	@Override
+	public void create() {
+		if (format == null) {
+			throw new IllegalStateException("Format has not been set");
+		}
+		if (width == -1) {
+			throw new IllegalStateException("Width has not been set");
+		}
+		if (height == -1) {
+			throw new IllegalStateException("Height has not been set");
+		}
+		// Generate, bind then unbind the render buffer
+		id = log.generateID();
+		log.create(Target.RENDER_BUFFER, id);
+		if (stateCache.bindRenderBuffer(id)) {
+			log.bind(Target.RENDER_BUFFER, id);
+		}
+		if (stateCache.bindRenderBuffer(0)) {
+			log.bind(Target.RENDER_BUFFER, 0);
+		}
+		// Update the state
+		super.create();
+	}
+
+	@Override
+	public void destroy() {
+		checkCreated();
+		if (stateCache.bindRenderBuffer(0)) {
+			log.bind(Target.RENDER_BUFFER, 0);
+		}
+		log.destroy(Target.RENDER_BUFFER, id);
+		stateCache.deleteRenderBuffer(id);
+		// Update state
+		super.destroy();
+	}
+
+	@Override
+	public void bind() {
+		checkCreated();
+		if (stateCache.bindRenderBuffer(id)) {
+			log.bind(Target.RENDER_BUFFER, id);
+		}
+	}
+
+	@Override
+	public void unbind() {
+		checkCreated();
+		if (stateCache.bindRenderBuffer(0)) {
+			log.bind(Target.RENDER_BUFFER, 0);
+		}
+	}
+
+	@Override
+	public GLVersion getGLVersion() {
+		return GLVersion.HEADLESS;
+	}
+}
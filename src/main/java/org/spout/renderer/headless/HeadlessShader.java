@@ -0,0 +1,174 @@
+/*
+ * This file is part of Caustic.
+ *
+ * Copyright (c) 2013 Spout LLC <http://www.spout.org/>
+ * Caustic is licensed under the Spout License Version 1.
+ *
+ * Caustic is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the Free
+ * Software Foundation, either version 3 of the License, or (at your option)
+ * any later version.
+ *
+ * In addition, 180 days after any changes are published, you can use the
+ * software, incorporating those changes, under the terms of the MIT license,
+ * as described in the Spout License Version 1.
+ *
+ * Caustic is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE.  See the GNU Lesser General Public License for
+ * more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License,
+ * the MIT license and the Spout License Version 1 along with this program.
+ * If not, see <http://www.gnu.org/licenses/> for the GNU Lesser General Public
+ * License and see <http://spout.in/licensev1> for the full license, including
+ * the MIT license.
+ */
+package org.spout.renderer.headless;
+
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import gnu.trove.impl.Constants;
+import gnu.trove.map.TObjectIntMap;
+import gnu.trove.map.hash.TObjectIntHashMap;
+
+import org.spout.renderer.gl.Shader;
+import org.spout.renderer.headless.CommandLog.Target;
+
+/**
+ * A headless implementation of {@link Shader}. The source isn't compiled, but the uniform declarations are parsed so that the program knows which uniforms are active, along with their type and
+ * array size, and which uniform blocks are declared.
+ *
+ * @see Shader
+ */
+public class HeadlessShader extends Shader {
+	// Matches the uniform declarations, excluding blocks, with the type and the list of names as the groups
+	private static final Pattern UNIFORM_PATTERN = Pattern.compile("\\buniform\\s+(?:(?:lowp|mediump|highp)\\s+)?(\\w+)\\s+([^;{]+);");
+	// Matches the uniform block declarations, with the block name as the group
+	private static final Pattern UNIFORM_BLOCK_PATTERN = Pattern.compile("\\buniform\\s+(\\w+)\\s*\\{");
+	// Matches the array size of a uniform name
+	private static final Pattern ARRAY_PATTERN = Pattern.compile("\\[\\s*(\\d+)\\s*\\]");
+	// The OpenGL type constants of the GLSL types
+	private static final TObjectIntMap<String> TYPES = new TObjectIntHashMap<>(Constants.DEFAULT_CAPACITY, Constants.DEFAULT_LOAD_FACTOR, 0);
+	private final CommandLog log;
+	// Maps of the uniform names to their types and array sizes
+	private final TObjectIntMap<String> uniformTypes = new TObjectIntHashMap<>();
+	private final TObjectIntMap<String> uniformSizes = new TObjectIntHashMap<>();
+	private final Set<String> uniformBlockNames = new HashSet<>();
+
+	static {
+		TYPES.put("float", 0x1406);
+		TYPES.put("vec2", 0x8B50);
+		TYPES.put("vec3", 0x8B51);
+		TYPES.put("vec4", 0x8B52);
+		TYPES.put("int", 0x1404);
+		TYPES.put("ivec2", 0x8B53);
+		TYPES.put("ivec3", 0x8B54);
+		TYPES.put("ivec4", 0x8B55);
+		TYPES.put("bool", 0x8B56);
+		TYPES.put("bvec2", 0x8B57);
+		TYPES.put("bvec3", 0x8B58);
+		TYPES.put("bvec4", 0x8B59);
+		TYPES.put("mat2", 0x8B5A);
+		TYPES.put("mat3", 0x8B5B);
+		TYPES.put("mat4", 0x8B5C);
+		TYPES.put("sampler2D", 0x8B5E);
+		TYPES.put("sampler3D", 0x8B5F);
+		TYPES.put("samplerCube", 0x8B60);
+	}
+
+	protected HeadlessShader(CommandLog log) {
+		this.log = log;
+	}
+
+	@Override
+	public void create() {
+		if (isCreated()) {
+			throw new IllegalStateException("Shader has already been created");
+		}
+		if (source == null) {
+			throw new IllegalStateException("Shader source has not been set");
+		}
+		if (type == null) {
+			throw new IllegalStateException("Shader type has not been set");
+		}
+		final Matcher matcher = UNIFORM_PATTERN.matcher(source);
+		while (matcher.find()) {
+			final int uniformType = TYPES.get(matcher.group(1));
+			for (String name : matcher.group(2).split(",")) {
+				final Matcher arrayMatcher = ARRAY_PATTERN.matcher(name);
+				final int size = arrayMatcher.find() ? Integer.parseInt(arrayMatcher.group(1)) : 1;
+				// Simplify array names
+				name = name.replaceFirst("\\[.*\\]", "").trim();
+				uniformTypes.put(name, uniformType);
+				uniformSizes.put(name, size);
+			}
+		}
+		final Matcher blockMatcher = UNIFORM_BLOCK_PATTERN.matcher(source);
+		while (blockMatcher.find()) {
+			uniformBlockNames.add(blockMatcher.group(1));
+		}
+		id = log.generateID();
+		log.create(Target.SHADER, id);
+		super.create();
+	}
+
+	@Override
+	public void destroy() {
+		if (!isCreated()) {
+			throw new IllegalStateException("Shader has not been created yet");
+		}
+		log.destroy(Target.SHADER, id);
+		uniformTypes.clear();
+		uniformSizes.clear();
+		uniformBlockNames.clear();
+		super.destroy();
+	}
+
+	/**
+	 * Returns the names of the uniforms declared in the source.
+	 *
+	 * @return The uniform names
+	 */
+	public Set<String> getUniformNames() {
+		return Collections.unmodifiableSet(uniformTypes.keySet());
+	}
+
+	/**
+	 * Returns the OpenGL type constant of the uniform declared in the source, or 0 if the type isn't known.
+	 *
+	 * @param name The name of the uniform
+	 * @return The type constant
+	 */
+	public int getUniformType(String name) {
+		return uniformTypes.get(name);
+	}
+
+	/**
+	 * Returns the array size of the uniform declared in the source, 1 if it isn't an array.
+	 *
+	 * @param name The name of the uniform
+	 * @return The array size
+	 */
+	public int getUniformSize(String name) {
+		return uniformSizes.get(name);
+	}
+
+	/**
+	 * Returns the names of the uniform blocks declared in the source.
+	 *
+	 * @return The uniform block names
+	 */
+	public Set<String> getUniformBlockNames() {
+		return Collections.unmodifiableSet(uniformBlockNames);
+	}
+
+	@Override
+	public GLVersion getGLVersion() {
+		return GLVersion.HEADLESS;
+	}
+}
@@ -0,0 +1,100 @@
+/*
+ * This file is part of Caustic.
+ *
+ * Copyright (c) 2013 Spout LLC <http://www.spout.org/>
+ * Caustic is licensed under the Spout License Version 1.
+ *
+ * Caustic is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the Free
+ * Software Foundation, either version 3 of the License, or (at your option)
+ * any later version.
+ *
+ * In addition, 180 days after any changes are published, you can use the
+ * software, incorporating those changes, under the terms of the MIT license,
+ * as described in the Spout License Version 1.
+ *
+ * Caustic is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE.  See the GNU Lesser General Public License for
+ * more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License,
+ * the MIT license and the Spout License Version 1 along with this program.
+ * If not, see <http://www.gnu.org/licenses/> for the GNU Lesser General Public
+ * License and see <http://spout.in/licensev1> for the full license, including
+ * the MIT license.
+ */
+package org.spout.renderer.headless;
+
+import org.spout.renderer.gl.StateCache;
+import org.spout.renderer.gl.Texture;
+import org.spout.renderer.headless.CommandLog.Command;
+import org.spout.renderer.headless.CommandLog.Target;
+
+/**
+ * A headless implementation of {@link Texture}. The image data size is recorded as uploaded bytes, mipmaps aren't accounted for.
+ *
+ * @see Texture
+ */
+public class HeadlessTexture extends Texture {
+	private final CommandLog log;
+	// Shadow of the OpenGL state
+	private final StateCache stateCache;
+
+	protected HeadlessTexture(CommandLog log, StateCache stateCache) {
+		this.log = log;
+		this.stateCache = stateCache;
+	}
+
+	@Override
+	public void create() {
+		if (isCreated()) {
+			throw new IllegalStateException("Texture has already been created");
+		}
+		// Generate and bind the texture in the unit
+		id = log.generateID();
+		log.create(Target.TEXTURE, id);
+		bindTexture(id);
+		// Upload the texture
+		log.upload(Command.TEXTURE_DATA, Target.TEXTURE, id, imageData != null ? imageData.remaining() : 0);
+		// Unbind the texture
+		bindTexture(0);
+		// Update the state
+		super.create();
+	}
+
+	@Override
+	public void destroy() {
+		checkCreated();
+		bindTexture(0);
+		log.destroy(Target.TEXTURE, id);
+		stateCache.deleteTexture(id);
+		super.destroy();
+	}
+
+	@Override
+	public void bind(int unit) {
+		checkCreated();
+		if (unit != -1 && stateCache.activeTexture(unit)) {
+			log.activeTexture(unit);
+		}
+		bindTexture(id);
+	}
+
+	@Override
+	public void unbind() {
+		checkCreated();
+		bindTexture(0);
+	}
+
+	private void bindTexture(int id) {
+		if (stateCache.bindTexture(id)) {
+			log.bindTexture(-1, id);
+		}
+	}
+
+	@Override
+	public GLVersion getGLVersion() {
+		return GLVersion.HEADLESS;
+	}
+}
@@ -0,0 +1,108 @@
+/*
+ * This file is part of Caustic.
+ *
+ * Copyright (c) 2013 Spout LLC <http://www.spout.org/>
+ * Caustic is licensed under the Spout License Version 1.
+ *
+ * Caustic is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the Free
+ * Software Foundation, either version 3 of the License, or (at your option)
+ * any later version.
+ *
+ * In addition, 180 days after any changes are published, you can use the
+ * software, incorporating those changes, under the terms of the MIT license,
+ * as described in the Spout License Version 1.
+ *
+ * Caustic is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE.  See the GNU Lesser General Public License for
+ * more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License,
+ * the MIT license and the Spout License Version 1 along with this program.
+ * If not, see <http://www.gnu.org/licenses/> for the GNU Lesser General Public
+ * License and see <http://spout.in/licensev1> for the full license, including
+ * the MIT license.
+ */
+package org.spout.renderer.headless;
+
+import java.nio.ByteBuffer;
+
+import org.spout.renderer.gl.StateCache;
+import org.spout.renderer.gl.UniformBuffer;
+import org.spout.renderer.headless.CommandLog.Command;
+import org.spout.renderer.headless.CommandLog.Target;
+
+/**
+ * A headless implementation of {@link UniformBuffer}.
+ *
+ * @see UniformBuffer
+ */
+public class HeadlessUniformBuffer extends UniformBuffer {
+	// The OpenGL constant of the uniform buffer target
+	private static final int UNIFORM_BUFFER = 0x8A11;
+	private final CommandLog log;
+	// Shadow of the OpenGL state
+	private final StateCache stateCache;
+
+	protected HeadlessUniformBuffer(CommandLog log, StateCache stateCache) {
+		this.log = log;
+		this.stateCache = stateCache;
+	}
+
+	@Override
+	public void create() {
+		if (isCreated()) {
+			throw new IllegalStateException("Uniform buffer has already been created");
+		}
+		id = log.generateID();
+		log.create(Target.UNIFORM_BUFFER, id);
+		super.create();
+	}
+
+	@Override
+	public void destroy() {
+		checkCreated();
+		log.destroy(Target.UNIFORM_BUFFER, id);
+		stateCache.deleteBuffer(id);
+		super.destroy();
+	}
+
+	@Override
+	public void bind() {
+		checkCreated();
+		if (stateCache.bindUniformBufferBase(bindingPoint, id)) {
+			log.bindUniformBuffer(bindingPoint, id);
+		}
+	}
+
+	@Override
+	public void unbind() {
+		checkCreated();
+		if (stateCache.bindUniformBufferBase(bindingPoint, 0)) {
+			log.bindUniformBuffer(bindingPoint, 0);
+		}
+	}
+
+	@Override
+	protected void bindBuffer(int bufferID) {
+		if (stateCache.bindBuffer(UNIFORM_BUFFER, bufferID)) {
+			log.bind(Target.UNIFORM_BUFFER, bufferID);
+		}
+	}
+
+	@Override
+	protected void bufferData(ByteBuffer data, int usage) {
+		log.upload(Command.BUFFER_DATA, Target.UNIFORM_BUFFER, log.getBinding(Target.UNIFORM_BUFFER), data.remaining());
+	}
+
+	@Override
+	protected void bufferSubData(int offset, ByteBuffer data) {
+		log.upload(Command.BUFFER_SUB_DATA, Target.UNIFORM_BUFFER, log.getBinding(Target.UNIFORM_BUFFER), data.remaining());
+	}
+
+	@Override
+	public GLVersion getGLVersion() {
+		return GLVersion.HEADLESS;
+	}
+}
@@ -0,0 +1,175 @@
+/*
+ * This file is part of Caustic.
+ *
+ * Copyright (c) 2013 Spout LLC <http://www.spout.org/>
+ * Caustic is licensed under the Spout License Version 1.
+ *
+ * Caustic is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the Free
+ * Software Foundation, either version 3 of the License, or (at your option)
+ * any later version.
+ *
+ * In addition, 180 days after any changes are published, you can use the
+ * software, incorporating those changes, under the terms of the MIT license,
+ * as described in the Spout License Version 1.
+ *
+ * Caustic is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE.  See the GNU Lesser General Public License for
+ * more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License,
+ * the MIT license and the Spout License Version 1 along with this program.
+ * If not, see <http://www.gnu.org/licenses/> for the GNU Lesser General Public
+ * License and see <http://spout.in/licensev1> for the full license, including
+ * the MIT license.
+ */
+package org.spout.renderer.headless;
+
+import java.nio.ByteBuffer;
+
+import org.spout.renderer.data.VertexFormat;
+import org.spout.renderer.gl.StateCache;
+import org.spout.renderer.gl.VertexArray;
+import org.spout.renderer.headless.CommandLog.Command;
+import org.spout.renderer.headless.CommandLog.Target;
+import org.spout.renderer.util.CausticUtil;
+
+/**
+ * A headless implementation of {@link VertexArray}. It behaves like a vertex array object: the buffers are created and filled as in OpenGL, the indices buffer stays bound to the vertex array, and
+ * each draw binds the vertex array, unless it's already bound.
+ *
+ * @see VertexArray
+ */
+public class HeadlessVertexArray extends VertexArray {
+	private final CommandLog log;
+	// Shadow of the OpenGL state
+	private final StateCache stateCache;
+
+	protected HeadlessVertexArray(CommandLog log, StateCache stateCache) {
+		this.log = log;
+		this.stateCache = stateCache;
+	}
+
+	@Override
+	public void create() {
+		if (isCreated()) {
+			throw new IllegalStateException("Vertex array has already been created");
+		}
+		if (vertexData == null) {
+			throw new IllegalStateException("Vertex data has not been set");
+		}
+		// Generate and bind the vao
+		id = log.generateID();
+		log.create(Target.VERTEX_ARRAY, id);
+		bindVertexArray();
+		// Generate, bind and fill the indices vbo, which stays bound to the vao
+		indicesBufferID = log.generateID();
+		log.create(Target.ELEMENT_ARRAY_BUFFER, indicesBufferID);
+		bindBuffer(ELEMENT_ARRAY_BUFFER, indicesBufferID);
+		indicesType = vertexData.getIndicesType();
+		final ByteBuffer indicesBuffer = vertexData.getIndicesBuffer(indicesType);
+		bufferData(ELEMENT_ARRAY_BUFFER, indicesBuffer, usageHint.getGLConstant());
+		vertexData.releaseIndicesBuffer(indicesBuffer);
+		// Save the count of indices to draw
+		indicesCountCache = vertexData.getIndicesCount();
+		resetIndicesCountAndOffset();
+		// Save the count of attributes
+		attributeCount = vertexData.getAttributeCount();
+		if (layoutMode == LayoutMode.INTERLEAVED) {
+			// Generate, bind and fill the single vbo holding all the attributes
+			final VertexFormat format = new VertexFormat(vertexData);
+			final int bufferID = log.generateID();
+			log.create(Target.ARRAY_BUFFER, bufferID);
+			bindBuffer(ARRAY_BUFFER, bufferID);
+			final ByteBuffer interleaved = format.interleave(vertexData);
+			bufferData(ARRAY_BUFFER, interleaved, usageHint.getGLConstant());
+			CausticUtil.getBufferPool().release(interleaved);
+			attributeBufferIDs = new int[]{bufferID};
+		} else {
+			// For each attribute, generate, bind and fill the vbo
+			attributeBufferIDs = new int[attributeCount];
+			for (int i = 0; i < attributeCount; i++) {
+				final int bufferID = log.generateID();
+				log.create(Target.ARRAY_BUFFER, bufferID);
+				bindBuffer(ARRAY_BUFFER, bufferID);
+				bufferData(ARRAY_BUFFER, vertexData.getAttribute(i).getData(), usageHint.getGLConstant());
+				attributeBufferIDs[i] = bufferID;
+			}
+		}
+		// Update state
+		super.create();
+	}
+
+	@Override
+	public void destroy() {
+		checkCreated();
+		log.destroy(Target.ELEMENT_ARRAY_BUFFER, indicesBufferID);
+		stateCache.deleteBuffer(indicesBufferID);
+		for (int bufferID : attributeBufferIDs) {
+			log.destroy(Target.ARRAY_BUFFER, bufferID);
+			stateCache.deleteBuffer(bufferID);
+		}
+		log.destroy(Target.VERTEX_ARRAY, id);
+		stateCache.deleteVertexArray(id);
+		super.destroy();
+	}
+
+	@Override
+	protected void bindBuffer(int target, int bufferID) {
+		// The state is tracked, so there's no need to unbind
+		if (bufferID == 0) {
+			return;
+		}
+		if (target == ELEMENT_ARRAY_BUFFER) {
+			// The indices buffer binding belongs to the vao, so make sure it's ours
+			bindVertexArray();
+		}
+		if (stateCache.bindBuffer(target, bufferID)) {
+			log.bind(getTarget(target), bufferID);
+		}
+	}
+
+	@Override
+	protected void bufferData(int target, ByteBuffer data, int usage) {
+		final Target bufferTarget = getTarget(target);
+		log.upload(Command.BUFFER_DATA, bufferTarget, log.getBinding(bufferTarget), data.remaining());
+	}
+
+	@Override
+	protected void bufferSubData(int target, int offset, ByteBuffer data) {
+		final Target bufferTarget = getTarget(target);
+		log.upload(Command.BUFFER_SUB_DATA, bufferTarget, log.getBinding(bufferTarget), data.remaining());
+	}
+
+	@Override
+	public void draw() {
+		checkCreated();
+		// Bind the vao, which holds the indices buffer
+		bindVertexArray();
+		// Draw all indices
+		log.draw(id, indicesCount);
+	}
+
+	private void bindVertexArray() {
+		if (stateCache.bindVertexArray(id)) {
+			log.bind(Target.VERTEX_ARRAY, id);
+		}
+	}
+
+	private static Target getTarget(int target) {
+		switch (target) {
+			case ARRAY_BUFFER:
+				return Target.ARRAY_BUFFER;
+			case ELEMENT_ARRAY_BUFFER:
+				return Target.ELEMENT_ARRAY_BUFFER;
+			default:
+				throw new IllegalArgumentException("Unknown buffer target: " + target);
+		}
+	}
+
+	@Override
+	public GLVersion getGLVersion() {
+		return GLVersion.HEADLESS;
+	}
+}
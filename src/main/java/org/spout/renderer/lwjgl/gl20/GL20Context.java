@@ -37,6 +37,7 @@ import org.lwjgl.opengl.PixelFormat;
 
 import org.spout.renderer.data.Color;
 import org.spout.renderer.gl.Context;
+import org.spout.renderer.gl.StateCache;
 import org.spout.renderer.gl.Texture.Format;
 import org.spout.renderer.lwjgl.LWJGLUtil;
 import org.spout.renderer.util.CausticUtil;
@@ -48,7 +49,8 @@ import org.spout.renderer.util.Rectangle;
  * @see org.spout.renderer.gl.Context
  */
 public class GL20Context extends Context {
-	protected GL20Context() {
+	protected GL20Context(StateCache stateCache) {
+		super(stateCache);
 	}
 
 	@Override
@@ -65,8 +67,10 @@ public class GL20Context extends Context {
 		}
 		// Set the title
 		Display.setTitle(this.windowTitle);
+		// The new context has its own state
+		stateCache.invalidate();
 		// Set the default view port
-		GL11.glViewport(0, 0, windowSize.getFloorX(), windowSize.getFloorY());
+		setViewPort(new Rectangle(0, 0, windowSize.getFloorX(), windowSize.getFloorY()));
 		// Set the alpha blending function for transparency
 		GL11.glBlendFunc(GL11.GL_SRC_ALPHA, GL11.GL_ONE_MINUS_SRC_ALPHA);
 		// Check for errors
@@ -90,6 +94,7 @@ public class GL20Context extends Context {
 		// Display goes after else there's no context in which to check for an error
 		LWJGLUtil.checkForGLError();
 		Display.destroy();
+		stateCache.invalidate();
 		super.destroy();
 	}
 
@@ -97,11 +102,16 @@ public class GL20Context extends Context {
 	public void updateDisplay() {
 		checkCreated();
 		Display.update();
+		// The frame is over, so are the temporary buffers
+		CausticUtil.getBufferPool().getFrameArena().reset();
 	}
 
 	@Override
 	public void setClearColor(Color color) {
-		Color normC = color.normalize();
+		final Color normC = color.normalize();
+		if (!stateCache.setClearColor(normC.getRed(), normC.getGreen(), normC.getBlue(), normC.getAlpha())) {
+			return;
+		}
 		GL11.glClearColor(normC.getRed(), normC.getGreen(), normC.getBlue(), normC.getAlpha());
 		// Check for errors
 		LWJGLUtil.checkForGLError();
@@ -116,6 +126,9 @@ public class GL20Context extends Context {
 
 	@Override
 	public void enableCapability(Capability capability) {
+		if (!stateCache.enableCapability(capability)) {
+			return;
+		}
 		GL11.glEnable(capability.getGLConstant());
 		// Check for errors
 		LWJGLUtil.checkForGLError();
@@ -123,6 +136,9 @@ public class GL20Context extends Context {
 
 	@Override
 	public void setViewPort(Rectangle viewPort) {
+		if (!stateCache.setViewPort(viewPort.getX(), viewPort.getY(), viewPort.getWidth(), viewPort.getHeight())) {
+			return;
+		}
 		GL11.glViewport(viewPort.getX(), viewPort.getY(), viewPort.getWidth(), viewPort.getHeight());
 		// Check for errors
 		LWJGLUtil.checkForGLError();
@@ -138,6 +154,9 @@ public class GL20Context extends Context {
 
 	@Override
 	public void disableCapability(Capability capability) {
+		if (!stateCache.disableCapability(capability)) {
+			return;
+		}
 		GL11.glDisable(capability.getGLConstant());
 		// Check for errors
 		LWJGLUtil.checkForGLError();
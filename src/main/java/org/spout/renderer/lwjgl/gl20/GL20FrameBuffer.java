@@ -40,6 +40,7 @@ import org.lwjgl.opengl.GLContext;
 
 import org.spout.renderer.gl.FrameBuffer;
 import org.spout.renderer.gl.RenderBuffer;
+import org.spout.renderer.gl.StateCache;
 import org.spout.renderer.gl.Texture;
 import org.spout.renderer.lwjgl.LWJGLUtil;
 import org.spout.renderer.util.CausticUtil;
@@ -51,12 +52,17 @@ import org.spout.renderer.util.CausticUtil;
  */
 public class GL20FrameBuffer extends FrameBuffer {
 
+	// Shadow of the OpenGL state
+	private final StateCache stateCache;
+
 	/**
 	 * Constructs a new frame buffer for OpenGL 2.0. If no EXT extension for frame buffers is available, an exception is thrown.
 	 *
+	 * @param stateCache The state cache
 	 * @throws UnsupportedOperationException If the hardware doesn't support EXT frame buffers
 	 */
-	protected GL20FrameBuffer() {
+	protected GL20FrameBuffer(StateCache stateCache) {
+		this.stateCache = stateCache;
 		if (!GLContext.getCapabilities().GL_EXT_framebuffer_object) {
 			throw new UnsupportedOperationException("Frame buffers are not supported by this hardware");
 		}
@@ -66,7 +72,9 @@ public class GL20FrameBuffer extends FrameBuffer {
 	public void create() {
 		// Generate and bind the frame buffer
 		id = EXTFramebufferObject.glGenFramebuffersEXT();
-		EXTFramebufferObject.glBindFramebufferEXT(EXTFramebufferObject.GL_FRAMEBUFFER_EXT, id);
+		if (stateCache.bindFrameBuffer(id)) {
+			EXTFramebufferObject.glBindFramebufferEXT(EXTFramebufferObject.GL_FRAMEBUFFER_EXT, id);
+		}
 		// Track the color attachments to output for later use
 		final TIntSet outputBuffers = new TIntHashSet();
 		// Attach the textures
@@ -95,7 +103,7 @@ public class GL20FrameBuffer extends FrameBuffer {
 			GL20.glDrawBuffers(GL11.GL_NONE);
 		} else {
 			// Keep track of the buffers to output
-			final IntBuffer buffer = CausticUtil.createIntBuffer(outputBuffers.size());
+			final IntBuffer buffer = CausticUtil.getBufferPool().getFrameArena().allocateInt(outputBuffers.size());
 			final int[] outputBuffersArray = outputBuffers.toArray();
 			// Sorting the array ensures that attachments are in order n, n + 1, n + 2...
 			// This is important!
@@ -112,7 +120,9 @@ public class GL20FrameBuffer extends FrameBuffer {
 			throw new IllegalStateException("Failed to create the frame buffer");
 		}
 		// Unbind the frame buffer
-		EXTFramebufferObject.glBindFramebufferEXT(EXTFramebufferObject.GL_FRAMEBUFFER_EXT, 0);
+		if (stateCache.bindFrameBuffer(0)) {
+			EXTFramebufferObject.glBindFramebufferEXT(EXTFramebufferObject.GL_FRAMEBUFFER_EXT, 0);
+		}
 		// Update the state
 		super.create();
 		// Check for errors
@@ -123,8 +133,11 @@ public class GL20FrameBuffer extends FrameBuffer {
 	public void destroy() {
 		checkCreated();
 		// Unbind and delete the frame buffer
-		EXTFramebufferObject.glBindFramebufferEXT(EXTFramebufferObject.GL_FRAMEBUFFER_EXT, 0);
+		if (stateCache.bindFrameBuffer(0)) {
+			EXTFramebufferObject.glBindFramebufferEXT(EXTFramebufferObject.GL_FRAMEBUFFER_EXT, 0);
+		}
 		EXTFramebufferObject.glDeleteFramebuffersEXT(id);
+		stateCache.deleteFrameBuffer(id);
 		// Release some resources
 		textures.clear();
 		buffers.clear();
@@ -138,7 +151,9 @@ public class GL20FrameBuffer extends FrameBuffer {
 	public void bind() {
 		checkCreated();
 		// Bind the frame buffer
-		EXTFramebufferObject.glBindFramebufferEXT(EXTFramebufferObject.GL_FRAMEBUFFER_EXT, id);
+		if (stateCache.bindFrameBuffer(id)) {
+			EXTFramebufferObject.glBindFramebufferEXT(EXTFramebufferObject.GL_FRAMEBUFFER_EXT, id);
+		}
 		// Check for errors
 		LWJGLUtil.checkForGLError();
 	}
@@ -146,7 +161,9 @@ public class GL20FrameBuffer extends FrameBuffer {
 	@Override
 	public void unbind() {
 		checkCreated();
-		EXTFramebufferObject.glBindFramebufferEXT(EXTFramebufferObject.GL_FRAMEBUFFER_EXT, 0);
+		if (stateCache.bindFrameBuffer(0)) {
+			EXTFramebufferObject.glBindFramebufferEXT(EXTFramebufferObject.GL_FRAMEBUFFER_EXT, 0);
+		}
 		// Check for errors
 		LWJGLUtil.checkForGLError();
 	}
@@ -33,7 +33,9 @@ import org.spout.renderer.gl.Program;
 import org.spout.renderer.gl.RenderBuffer;
 import org.spout.renderer.gl.Context;
 import org.spout.renderer.gl.Shader;
+import org.spout.renderer.gl.StateCache;
 import org.spout.renderer.gl.Texture;
+import org.spout.renderer.gl.UniformBuffer;
 import org.spout.renderer.gl.VertexArray;
 
 /**
@@ -46,27 +48,30 @@ public class GL20GLFactory implements GLFactory {
 		GLImplementation.register(GLVersion.GL20, new GL20GLFactory());
 	}
 
+	// Shared by the context and objects, as they use the same OpenGL state
+	private final StateCache stateCache = new StateCache();
+
 	private GL20GLFactory() {
 	}
 
 	@Override
 	public FrameBuffer createFrameBuffer() {
-		return new GL20FrameBuffer();
+		return new GL20FrameBuffer(stateCache);
 	}
 
 	@Override
 	public Program createProgram() {
-		return new GL20Program();
+		return new GL20Program(stateCache);
 	}
 
 	@Override
 	public RenderBuffer createRenderBuffer() {
-		return new GL20RenderBuffer();
+		return new GL20RenderBuffer(stateCache);
 	}
 
 	@Override
 	public Context createContext() {
-		return new GL20Context();
+		return new GL20Context(stateCache);
 	}
 
 	@Override
@@ -76,12 +81,17 @@ public class GL20GLFactory implements GLFactory {
 
 	@Override
 	public Texture createTexture() {
-		return new GL20Texture();
+		return new GL20Texture(stateCache);
+	}
+
+	@Override
+	public UniformBuffer createUniformBuffer() {
+		throw new UnsupportedOperationException("Uniform buffers are not supported by OpenGL 2.0");
 	}
 
 	@Override
 	public VertexArray createVertexArray() {
-		return new GL20VertexArray();
+		return new GL20VertexArray(stateCache);
 	}
 
 	@Override
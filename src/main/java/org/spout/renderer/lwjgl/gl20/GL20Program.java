@@ -28,13 +28,9 @@ package org.spout.renderer.lwjgl.gl20;
 
 import java.nio.ByteBuffer;
 import java.nio.FloatBuffer;
-import java.util.Collections;
-import java.util.Set;
+import java.nio.IntBuffer;
 
-import gnu.trove.impl.Constants;
 import gnu.trove.iterator.TObjectIntIterator;
-import gnu.trove.map.TObjectIntMap;
-import gnu.trove.map.hash.TObjectIntHashMap;
 
 import org.lwjgl.opengl.GL11;
 import org.lwjgl.opengl.GL20;
@@ -45,12 +41,13 @@ import org.spout.math.matrix.Matrix4f;
 import org.spout.math.vector.Vector2f;
 import org.spout.math.vector.Vector3f;
 import org.spout.math.vector.Vector4f;
-import org.spout.renderer.data.Uniform;
-import org.spout.renderer.data.UniformHolder;
 import org.spout.renderer.gl.Program;
 import org.spout.renderer.gl.Shader.ShaderType;
+import org.spout.renderer.gl.StateCache;
 import org.spout.renderer.lwjgl.LWJGLUtil;
 import org.spout.renderer.util.CausticUtil;
+import org.spout.renderer.util.MatrixUtil;
+import org.spout.renderer.util.ScratchArena;
 
 /**
  * An OpenGL 2.0 implementation of {@link Program}.
@@ -58,10 +55,11 @@ import org.spout.renderer.util.CausticUtil;
  * @see Program
  */
 public class GL20Program extends Program {
-	// Map of the uniform names to their locations
-	private final TObjectIntMap<String> uniforms = new TObjectIntHashMap<>(Constants.DEFAULT_CAPACITY, Constants.DEFAULT_LOAD_FACTOR, -1);
+	// Shadow of the OpenGL state
+	protected final StateCache stateCache;
 
-	protected GL20Program() {
+	protected GL20Program(StateCache stateCache) {
+		this.stateCache = stateCache;
 	}
 
 	@Override
@@ -100,15 +98,24 @@ public class GL20Program extends Program {
 		GL20.glValidateProgram(id);
 		// Load uniforms
 		final int uniformCount = GL20.glGetProgrami(id, GL20.GL_ACTIVE_UNIFORMS);
+		final ScratchArena arena = CausticUtil.getBufferPool().getFrameArena();
+		final IntBuffer lengthBuffer = arena.allocateInt(1);
+		final IntBuffer sizeBuffer = arena.allocateInt(1);
+		final IntBuffer typeBuffer = arena.allocateInt(1);
+		final ByteBuffer nameBuffer = arena.allocate(256);
+		final byte[] nameBytes = new byte[256];
 		for (int i = 0; i < uniformCount; i++) {
-			final ByteBuffer nameBuffer = CausticUtil.createByteBuffer(256);
-			GL20.glGetActiveUniform(id, i, CausticUtil.createIntBuffer(1), CausticUtil.createIntBuffer(1), CausticUtil.createIntBuffer(1), nameBuffer);
-			nameBuffer.rewind();
-			final byte[] nameBytes = new byte[256];
-			nameBuffer.get(nameBytes);
+			nameBuffer.clear();
+			GL20.glGetActiveUniform(id, i, lengthBuffer, sizeBuffer, typeBuffer, nameBuffer);
+			final int length = lengthBuffer.get(0);
+			nameBuffer.get(nameBytes, 0, length);
 			// Simplify array names
-			final String name = new String(nameBytes).trim().replaceFirst("\\[\\d+\\]", "");
-			uniforms.put(name, GL20.glGetUniformLocation(id, name));
+			final String name = new String(nameBytes, 0, length).trim().replaceFirst("\\[\\d+\\]", "");
+			// Members of uniform blocks and built-in uniforms have no location
+			final int location = GL20.glGetUniformLocation(id, name);
+			if (location != -1) {
+				addUniform(name, location, typeBuffer.get(0), sizeBuffer.get(0));
+			}
 		}
 		super.create();
 		LWJGLUtil.checkForGLError();
@@ -118,7 +125,7 @@ public class GL20Program extends Program {
 	public void destroy() {
 		checkCreated();
 		GL20.glDeleteProgram(id);
-		uniforms.clear();
+		stateCache.deleteProgram(id);
 		super.destroy();
 		LWJGLUtil.checkForGLError();
 	}
@@ -126,14 +133,18 @@ public class GL20Program extends Program {
 	@Override
 	public void bind() {
 		checkCreated();
-		GL20.glUseProgram(id);
-		LWJGLUtil.checkForGLError();
+		if (stateCache.useProgram(id)) {
+			GL20.glUseProgram(id);
+			LWJGLUtil.checkForGLError();
+		}
 	}
 
 	@Override
 	public void unbind() {
 		checkCreated();
-		GL20.glUseProgram(0);
+		if (stateCache.useProgram(0)) {
+			GL20.glUseProgram(0);
+		}
 	}
 
 	@Override
@@ -144,157 +155,148 @@ public class GL20Program extends Program {
 		setUniform(textureLayouts.get(unit), unit);
 	}
 
-	@Override
-	public void upload(Uniform uniform) {
-		checkCreated();
-		uniform.upload(this);
-	}
-
-	@Override
-	public void upload(UniformHolder uniforms) {
-		checkCreated();
-		for (Uniform uniform : uniforms) {
-			uniform.upload(this);
-		}
-	}
-
 	// TODO: Support int and boolean vectors
 
 	@Override
-	public void setUniform(String name, boolean b) {
+	public void setUniform(int handle, boolean b) {
 		checkCreated();
-		if (!uniforms.containsKey(name)) {
+		if (!updateValue(handle, b ? 1 : 0)) {
 			return;
 		}
-		GL20.glUniform1i(uniforms.get(name), b ? 1 : 0);
+		GL20.glUniform1i(getUniformLocation(handle), b ? 1 : 0);
 		LWJGLUtil.checkForGLError();
 	}
 
 	@Override
-	public void setUniform(String name, int i) {
+	public void setUniform(int handle, int i) {
 		checkCreated();
-		if (!uniforms.containsKey(name)) {
+		if (!updateValue(handle, i)) {
 			return;
 		}
-		GL20.glUniform1i(uniforms.get(name), i);
+		GL20.glUniform1i(getUniformLocation(handle), i);
 		LWJGLUtil.checkForGLError();
 	}
 
 	@Override
-	public void setUniform(String name, float f) {
+	public void setUniform(int handle, float f) {
 		checkCreated();
-		if (!uniforms.containsKey(name)) {
+		if (!updateValue(handle, Float.floatToRawIntBits(f))) {
 			return;
 		}
-		GL20.glUniform1f(uniforms.get(name), f);
+		GL20.glUniform1f(getUniformLocation(handle), f);
 		LWJGLUtil.checkForGLError();
 	}
 
 	@Override
-	public void setUniform(String name, Vector2f v) {
+	public void setUniform(int handle, Vector2f v) {
 		checkCreated();
-		if (!uniforms.containsKey(name)) {
+		if (!updateValue(handle, v)) {
 			return;
 		}
-		GL20.glUniform2f(uniforms.get(name), v.getX(), v.getY());
+		GL20.glUniform2f(getUniformLocation(handle), v.getX(), v.getY());
 		LWJGLUtil.checkForGLError();
 	}
 
 	@Override
-	public void setUniform(String name, Vector2f[] vs) {
+	public void setUniform(int handle, Vector2f[] vs) {
 		checkCreated();
-		if (!uniforms.containsKey(name)) {
+		if (!updateValue(handle, vs)) {
 			return;
 		}
-		final FloatBuffer vectorBuffer = CausticUtil.createFloatBuffer(vs.length * 2);
+		final FloatBuffer vectorBuffer = getScratchBuffer(vs.length * 2);
 		for (Vector2f v : vs) {
 			vectorBuffer.put(v.getX());
 			vectorBuffer.put(v.getY());
 		}
 		vectorBuffer.flip();
-		GL20.glUniform2(uniforms.get(name), vectorBuffer);
+		GL20.glUniform2(getUniformLocation(handle), vectorBuffer);
 		LWJGLUtil.checkForGLError();
 	}
 
 	@Override
-	public void setUniform(String name, Vector3f v) {
+	public void setUniform(int handle, Vector3f v) {
 		checkCreated();
-		if (!uniforms.containsKey(name)) {
+		if (!updateValue(handle, v)) {
 			return;
 		}
-		GL20.glUniform3f(uniforms.get(name), v.getX(), v.getY(), v.getZ());
+		GL20.glUniform3f(getUniformLocation(handle), v.getX(), v.getY(), v.getZ());
 		LWJGLUtil.checkForGLError();
 	}
 
 	@Override
-	public void setUniform(String name, Vector3f[] vs) {
+	public void setUniform(int handle, Vector3f[] vs) {
 		checkCreated();
-		if (!uniforms.containsKey(name)) {
+		if (!updateValue(handle, vs)) {
 			return;
 		}
-		final FloatBuffer vectorBuffer = CausticUtil.createFloatBuffer(vs.length * 3);
+		final FloatBuffer vectorBuffer = getScratchBuffer(vs.length * 3);
 		for (Vector3f v : vs) {
 			vectorBuffer.put(v.getX());
 			vectorBuffer.put(v.getY());
 			vectorBuffer.put(v.getZ());
 		}
 		vectorBuffer.flip();
-		GL20.glUniform3(uniforms.get(name), vectorBuffer);
+		GL20.glUniform3(getUniformLocation(handle), vectorBuffer);
 		LWJGLUtil.checkForGLError();
 	}
 
 	@Override
-	public void setUniform(String name, Vector4f v) {
+	public void setUniform(int handle, Vector4f v) {
 		checkCreated();
-		if (!uniforms.containsKey(name)) {
+		if (!updateValue(handle, v)) {
 			return;
 		}
-		GL20.glUniform4f(uniforms.get(name), v.getX(), v.getY(), v.getZ(), v.getW());
+		GL20.glUniform4f(getUniformLocation(handle), v.getX(), v.getY(), v.getZ(), v.getW());
 		LWJGLUtil.checkForGLError();
 	}
 
 	@Override
-	public void setUniform(String name, Matrix2f m) {
+	public void setUniform(int handle, Matrix2f m) {
 		checkCreated();
-		if (!uniforms.containsKey(name)) {
+		if (!updateValue(handle, m)) {
 			return;
 		}
-		final FloatBuffer buffer = CausticUtil.createFloatBuffer(4);
-		buffer.put(m.toArray(true));
+		final FloatBuffer buffer = getScratchBuffer(4);
+		MatrixUtil.putColumnMajor(m, buffer);
 		buffer.flip();
-		GL20.glUniformMatrix2(uniforms.get(name), false, buffer);
+		GL20.glUniformMatrix2(getUniformLocation(handle), false, buffer);
 		LWJGLUtil.checkForGLError();
 	}
 
 	@Override
-	public void setUniform(String name, Matrix3f m) {
+	public void setUniform(int handle, Matrix3f m) {
 		checkCreated();
-		if (!uniforms.containsKey(name)) {
+		if (!updateValue(handle, m)) {
 			return;
 		}
-		final FloatBuffer buffer = CausticUtil.createFloatBuffer(9);
-		buffer.put(m.toArray(true));
+		final FloatBuffer buffer = getScratchBuffer(9);
+		MatrixUtil.putColumnMajor(m, buffer);
 		buffer.flip();
-		GL20.glUniformMatrix3(uniforms.get(name), false, buffer);
+		GL20.glUniformMatrix3(getUniformLocation(handle), false, buffer);
 		LWJGLUtil.checkForGLError();
 	}
 
 	@Override
-	public void setUniform(String name, Matrix4f m) {
+	public void setUniform(int handle, Matrix4f m) {
 		checkCreated();
-		if (!uniforms.containsKey(name)) {
+		if (!updateValue(handle, m)) {
 			return;
 		}
-		final FloatBuffer buffer = CausticUtil.createFloatBuffer(16);
-		buffer.put(m.toArray(true));
+		final FloatBuffer buffer = getScratchBuffer(16);
+		MatrixUtil.putColumnMajor(m, buffer);
 		buffer.flip();
-		GL20.glUniformMatrix4(uniforms.get(name), false, buffer);
+		GL20.glUniformMatrix4(getUniformLocation(handle), false, buffer);
 		LWJGLUtil.checkForGLError();
 	}
 
 	@Override
-	public Set<String> getUniformNames() {
-		return Collections.unmodifiableSet(uniforms.keySet());
+	public void setUniformMatrix4(int handle, FloatBuffer columnMajor) {
+		checkCreated();
+		if (!updateValue(handle, columnMajor)) {
+			return;
+		}
+		GL20.glUniformMatrix4(getUniformLocation(handle), false, columnMajor);
+		LWJGLUtil.checkForGLError();
 	}
 
 	@Override
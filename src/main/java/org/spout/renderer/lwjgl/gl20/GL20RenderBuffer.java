@@ -30,6 +30,7 @@ import org.lwjgl.opengl.EXTFramebufferObject;
 import org.lwjgl.opengl.GLContext;
 
 import org.spout.renderer.gl.RenderBuffer;
+import org.spout.renderer.gl.StateCache;
 import org.spout.renderer.lwjgl.LWJGLUtil;
 
 /**
@@ -38,12 +39,17 @@ import org.spout.renderer.lwjgl.LWJGLUtil;
  * @see RenderBuffer
  */
 public class GL20RenderBuffer extends RenderBuffer {
+	// Shadow of the OpenGL state
+	private final StateCache stateCache;
+
 	/**
 	 * Constructs a new render buffer for OpenGL 2.0. If no EXT extension for render buffers is available, an exception is thrown.
 	 *
+	 * @param stateCache The state cache
 	 * @throws UnsupportedOperationException If the hardware doesn't support EXT render buffers.
 	 */
-	protected GL20RenderBuffer() {
+	protected GL20RenderBuffer(StateCache stateCache) {
+		this.stateCache = stateCache;
 		if (!GLContext.getCapabilities().GL_EXT_framebuffer_object) {
 			throw new UnsupportedOperationException("Render buffers are not supported by this hardware");
 		}
@@ -62,11 +68,15 @@ public class GL20RenderBuffer extends RenderBuffer {
 		}
 		// Generate and bind the render buffer
 		id = EXTFramebufferObject.glGenRenderbuffersEXT();
-		EXTFramebufferObject.glBindRenderbufferEXT(EXTFramebufferObject.GL_RENDERBUFFER_EXT, id);
+		if (stateCache.bindRenderBuffer(id)) {
+			EXTFramebufferObject.glBindRenderbufferEXT(EXTFramebufferObject.GL_RENDERBUFFER_EXT, id);
+		}
 		// Set the storage format and size
 		EXTFramebufferObject.glRenderbufferStorageEXT(EXTFramebufferObject.GL_RENDERBUFFER_EXT, format.getGLConstant(), width, height);
 		// Unbind the render buffer
-		EXTFramebufferObject.glBindRenderbufferEXT(EXTFramebufferObject.GL_RENDERBUFFER_EXT, 0);
+		if (stateCache.bindRenderBuffer(0)) {
+			EXTFramebufferObject.glBindRenderbufferEXT(EXTFramebufferObject.GL_RENDERBUFFER_EXT, 0);
+		}
 		// Update the state
 		super.create();
 		// Check for errors
@@ -77,8 +87,11 @@ public class GL20RenderBuffer extends RenderBuffer {
 	public void destroy() {
 		checkCreated();
 		// Unbind and delete the render buffer
-		EXTFramebufferObject.glBindRenderbufferEXT(EXTFramebufferObject.GL_RENDERBUFFER_EXT, 0);
+		if (stateCache.bindRenderBuffer(0)) {
+			EXTFramebufferObject.glBindRenderbufferEXT(EXTFramebufferObject.GL_RENDERBUFFER_EXT, 0);
+		}
 		EXTFramebufferObject.glDeleteRenderbuffersEXT(id);
+		stateCache.deleteRenderBuffer(id);
 		// Update state
 		super.destroy();
 		// Check for errors
@@ -88,7 +101,9 @@ public class GL20RenderBuffer extends RenderBuffer {
 	@Override
 	public void bind() {
 		checkCreated();
-		EXTFramebufferObject.glBindRenderbufferEXT(EXTFramebufferObject.GL_RENDERBUFFER_EXT, id);
+		if (stateCache.bindRenderBuffer(id)) {
+			EXTFramebufferObject.glBindRenderbufferEXT(EXTFramebufferObject.GL_RENDERBUFFER_EXT, id);
+		}
 		// Check for errors
 		LWJGLUtil.checkForGLError();
 	}
@@ -96,7 +111,9 @@ public class GL20RenderBuffer extends RenderBuffer {
 	@Override
 	public void unbind() {
 		checkCreated();
-		EXTFramebufferObject.glBindRenderbufferEXT(EXTFramebufferObject.GL_RENDERBUFFER_EXT, 0);
+		if (stateCache.bindRenderBuffer(0)) {
+			EXTFramebufferObject.glBindRenderbufferEXT(EXTFramebufferObject.GL_RENDERBUFFER_EXT, 0);
+		}
 		// Check for errors
 		LWJGLUtil.checkForGLError();
 	}
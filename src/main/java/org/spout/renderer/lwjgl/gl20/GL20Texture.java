@@ -34,6 +34,7 @@ import org.lwjgl.opengl.GL13;
 import org.lwjgl.opengl.GL14;
 import org.lwjgl.util.glu.GLU;
 
+import org.spout.renderer.gl.StateCache;
 import org.spout.renderer.gl.Texture;
 import org.spout.renderer.lwjgl.LWJGLUtil;
 
@@ -43,7 +44,11 @@ import org.spout.renderer.lwjgl.LWJGLUtil;
  * @see Texture
  */
 public class GL20Texture extends Texture {
-	protected GL20Texture() {
+	// Shadow of the OpenGL state
+	protected final StateCache stateCache;
+
+	protected GL20Texture(StateCache stateCache) {
+		this.stateCache = stateCache;
 	}
 
 	@Override
@@ -55,7 +60,7 @@ public class GL20Texture extends Texture {
 		//}
 		// Generate and bind the texture in the unit
 		id = GL11.glGenTextures();
-		GL11.glBindTexture(GL11.GL_TEXTURE_2D, id);
+		bindTexture(id);
 		// Upload the texture to the GPU
 		uploadTexture(imageData, width, height);
 		// Set the vertical and horizontal texture wraps (in the texture parameters)
@@ -76,7 +81,7 @@ public class GL20Texture extends Texture {
 			GL11.glTexParameteri(GL11.GL_TEXTURE_2D, GL14.GL_TEXTURE_COMPARE_FUNC, compareMode.getGLConstant());
 		}
 		// Unbind the texture
-		GL11.glBindTexture(GL11.GL_TEXTURE_2D, 0);
+		bindTexture(0);
 		// Update the state
 		super.create();
 		// Check for errors
@@ -106,9 +111,10 @@ public class GL20Texture extends Texture {
 	public void destroy() {
 		checkCreated();
 		// Unbind the texture
-		GL11.glBindTexture(GL11.GL_TEXTURE_2D, 0);
+		bindTexture(0);
 		// Delete the texture
 		GL11.glDeleteTextures(id);
+		stateCache.deleteTexture(id);
 		// Reset the data
 		super.destroy();
 		// Check for errors
@@ -118,12 +124,12 @@ public class GL20Texture extends Texture {
 	@Override
 	public void bind(int unit) {
 		checkCreated();
-		if (unit != -1) {
+		if (unit != -1 && stateCache.activeTexture(unit)) {
 			// Activate the texture unit
 			GL13.glActiveTexture(GL13.GL_TEXTURE0 + unit);
 		}
 		// Bind the texture
-		GL11.glBindTexture(GL11.GL_TEXTURE_2D, id);
+		bindTexture(id);
 		// Check for errors
 		LWJGLUtil.checkForGLError();
 	}
@@ -132,11 +138,17 @@ public class GL20Texture extends Texture {
 	public void unbind() {
 		checkCreated();
 		// Unbind the texture
-		GL11.glBindTexture(GL11.GL_TEXTURE_2D, 0);
+		bindTexture(0);
 		// Check for errors
 		LWJGLUtil.checkForGLError();
 	}
 
+	private void bindTexture(int id) {
+		if (stateCache.bindTexture(id)) {
+			GL11.glBindTexture(GL11.GL_TEXTURE_2D, id);
+		}
+	}
+
 	@Override
 	public GLVersion getGLVersion() {
 		return GLVersion.GL20;
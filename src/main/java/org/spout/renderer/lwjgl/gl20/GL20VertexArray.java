@@ -26,6 +26,8 @@
  */
 package org.spout.renderer.lwjgl.gl20;
 
+import java.nio.ByteBuffer;
+
 import org.lwjgl.opengl.APPLEVertexArrayObject;
 import org.lwjgl.opengl.ARBVertexArrayObject;
 import org.lwjgl.opengl.ContextCapabilities;
@@ -35,23 +37,31 @@ import org.lwjgl.opengl.GL20;
 import org.lwjgl.opengl.GLContext;
 
 import org.spout.renderer.data.VertexAttribute;
-import org.spout.renderer.data.VertexAttribute.DataType;
+import org.spout.renderer.data.VertexFormat;
+import org.spout.renderer.gl.StateCache;
 import org.spout.renderer.gl.VertexArray;
 import org.spout.renderer.lwjgl.LWJGLUtil;
+import org.spout.renderer.util.CausticUtil;
 
 /**
  * An OpenGL 2.0 implementation of {@link VertexArray}. <p/> Vertex arrays will be used if the ARB or APPLE extension is supported by the hardware. Else, since core OpenGL doesn't support them until
- * 3.0, the vertex attributes will have to be redefined on each render call.
+ * 3.0, the vertex attributes will have to be redefined when rendering after another vertex array. <p/> With a vao, the indices buffer and the enabled attributes are part of its state, so they are set
+ * once on creation. Drawing leaves the vao or buffers bound.
  *
  * @see VertexArray
  */
 public class GL20VertexArray extends VertexArray {
+	// Shadow of the OpenGL state
+	private final StateCache stateCache;
 	private final VertexArrayExtension extension;
 	private int[] attributeSizes;
 	private int[] attributeTypes;
 	private boolean[] attributeNormalizing;
+	private int[] attributeOffsets;
+	private int attributeStride;
 
-	protected GL20VertexArray() {
+	protected GL20VertexArray(StateCache stateCache) {
+		this.stateCache = stateCache;
 		final ContextCapabilities capabilities = GLContext.getCapabilities();
 		if (capabilities.GL_ARB_vertex_array_object) {
 			extension = VertexArrayExtension.ARB;
@@ -73,45 +83,66 @@ public class GL20VertexArray extends VertexArray {
 		if (extension.has()) {
 			// Generate and bind the vao
 			id = extension.glGenVertexArrays();
+			stateCache.bindVertexArray(id);
 			extension.glBindVertexArray(id);
 		}
-		// Generate, bind and fill the indices vbo then unbind
+		// Generate, bind and fill the indices vbo, which stays bound to the vao if any
 		indicesBufferID = GL15.glGenBuffers();
+		stateCache.bindBuffer(GL15.GL_ELEMENT_ARRAY_BUFFER, indicesBufferID);
 		GL15.glBindBuffer(GL15.GL_ELEMENT_ARRAY_BUFFER, indicesBufferID);
-		GL15.glBufferData(GL15.GL_ELEMENT_ARRAY_BUFFER, vertexData.getIndicesBuffer(), GL15.GL_STATIC_DRAW);
-		GL15.glBindBuffer(GL15.GL_ELEMENT_ARRAY_BUFFER, 0);
+		indicesType = vertexData.getIndicesType();
+		final ByteBuffer indicesBuffer = vertexData.getIndicesBuffer(indicesType);
+		GL15.glBufferData(GL15.GL_ELEMENT_ARRAY_BUFFER, indicesBuffer, usageHint.getGLConstant());
+		vertexData.releaseIndicesBuffer(indicesBuffer);
 		// Save the count of indices to draw
 		indicesCountCache = vertexData.getIndicesCount();
 		resetIndicesCountAndOffset();
-		// Create the map for attribute index to buffer ID
-		final int attributeCount = vertexData.getAttributeCount();
-		attributeBufferIDs = new int[attributeCount];
+		// Save the count of attributes
+		attributeCount = vertexData.getAttributeCount();
 		if (!extension.has()) {
 			// If we don't have a vao, we have to save these manually
 			attributeSizes = new int[attributeCount];
 			attributeTypes = new int[attributeCount];
 			attributeNormalizing = new boolean[attributeCount];
+			attributeOffsets = new int[attributeCount];
 		}
-		// For each attribute, generate, bind and fill the vbo
-		// Setup the vao if available
-		for (int i = 0; i < attributeCount; i++) {
-			final VertexAttribute attribute = vertexData.getAttribute(i);
+		if (layoutMode == LayoutMode.INTERLEAVED) {
+			// Generate, bind and fill the single vbo holding all the attributes
+			final VertexFormat format = new VertexFormat(vertexData);
 			final int bufferID = GL15.glGenBuffers();
-			GL15.glBindBuffer(GL15.GL_ARRAY_BUFFER, bufferID);
-			GL15.glBufferData(GL15.GL_ARRAY_BUFFER, attribute.getData(), GL15.GL_STATIC_DRAW);
-			attributeBufferIDs[i] = bufferID;
-			if (extension.has()) {
-				// Or as a float, normalized or not
-				GL20.glVertexAttribPointer(i, attribute.getSize(), attribute.getType().getGLConstant(), attribute.getUploadMode().normalize(), 0, 0);
-			} else {
-				// We save the properties for rendering
-				attributeSizes[i] = attribute.getSize();
-				attributeTypes[i] = attribute.getType().getGLConstant();
-				attributeNormalizing[i] = attribute.getUploadMode().normalize();
+			bindBuffer(GL15.GL_ARRAY_BUFFER, bufferID);
+			final ByteBuffer interleaved = format.interleave(vertexData);
+			GL15.glBufferData(GL15.GL_ARRAY_BUFFER, interleaved, usageHint.getGLConstant());
+			CausticUtil.getBufferPool().release(interleaved);
+			attributeBufferIDs = new int[]{bufferID};
+			attributeStride = format.getStride();
+			// Setup each attribute at its offset in the vertex
+			for (int i = 0; i < attributeCount; i++) {
+				setupAttribute(i, format.getSize(i), format.getType(i).getGLConstant(), format.getUploadMode(i).normalize(), format.getOffset(i));
+			}
+		} else {
+			// Create the map for attribute index to buffer ID
+			attributeBufferIDs = new int[attributeCount];
+			attributeStride = 0;
+			// For each attribute, generate, bind and fill the vbo
+			// Setup the vao if available
+			for (int i = 0; i < attributeCount; i++) {
+				final VertexAttribute attribute = vertexData.getAttribute(i);
+				final int bufferID = GL15.glGenBuffers();
+				bindBuffer(GL15.GL_ARRAY_BUFFER, bufferID);
+				GL15.glBufferData(GL15.GL_ARRAY_BUFFER, attribute.getData(), usageHint.getGLConstant());
+				attributeBufferIDs[i] = bufferID;
+				setupAttribute(i, attribute.getSize(), attribute.getType().getGLConstant(), attribute.getUploadMode().normalize(), 0);
+			}
+		}
+		if (extension.has()) {
+			// Enable the attributes in the vao
+			for (int i = 0; i < attributeCount; i++) {
+				if (stateCache.enableVertexAttribute(i)) {
+					GL20.glEnableVertexAttribArray(i);
+				}
 			}
 		}
-		// Unbind the last vbo
-		GL15.glBindBuffer(GL15.GL_ARRAY_BUFFER, 0);
 		// Update state
 		super.create();
 		// Check for errors
@@ -121,74 +152,118 @@ public class GL20VertexArray extends VertexArray {
 	@Override
 	public void destroy() {
 		checkCreated();
-		// Unbind any bound buffer
-		GL15.glBindBuffer(GL15.GL_ARRAY_BUFFER, 0);
-		// Unbind and delete indices buffer
-		GL15.glBindBuffer(GL15.GL_ELEMENT_ARRAY_BUFFER, 0);
+		// Delete the indices and attribute buffers, which unbinds them
 		GL15.glDeleteBuffers(indicesBufferID);
-		if (extension.has()) {
-			// Bind the vao for deletion
-			extension.glBindVertexArray(id);
-		}
-		// Delete the attribute buffers
-		for (int i = 0; i < attributeBufferIDs.length; i++) {
-			if (extension.has()) {
-				// Disable the attribute
-				GL20.glDisableVertexAttribArray(i);
-			}
-			GL15.glDeleteBuffers(attributeBufferIDs[i]);
+		stateCache.deleteBuffer(indicesBufferID);
+		for (int bufferID : attributeBufferIDs) {
+			GL15.glDeleteBuffers(bufferID);
+			stateCache.deleteBuffer(bufferID);
 		}
 		if (extension.has()) {
-			// Unbind the vao and delete it
-			extension.glBindVertexArray(0);
+			// Delete the vao, which unbinds it
 			extension.glDeleteVertexArrays(id);
+			stateCache.deleteVertexArray(id);
 		} else {
 			// Delete the attribute properties
 			attributeSizes = null;
 			attributeTypes = null;
 			attributeNormalizing = null;
+			attributeOffsets = null;
 		}
 		super.destroy();
 		// Check for errors
 		LWJGLUtil.checkForGLError();
 	}
 
+	@Override
+	public void update() {
+		super.update();
+		// Check for errors
+		LWJGLUtil.checkForGLError();
+	}
+
+	@Override
+	protected void bindBuffer(int target, int bufferID) {
+		// The state is tracked, so there's no need to unbind
+		if (bufferID == 0) {
+			return;
+		}
+		if (extension.has() && target == GL15.GL_ELEMENT_ARRAY_BUFFER) {
+			// The indices buffer binding belongs to the vao, so make sure it's ours
+			if (stateCache.bindVertexArray(id)) {
+				extension.glBindVertexArray(id);
+			}
+		}
+		if (stateCache.bindBuffer(target, bufferID)) {
+			GL15.glBindBuffer(target, bufferID);
+		}
+	}
+
+	@Override
+	protected void bufferData(int target, ByteBuffer data, int usage) {
+		GL15.glBufferData(target, data, usage);
+	}
+
+	@Override
+	protected void bufferSubData(int target, int offset, ByteBuffer data) {
+		GL15.glBufferSubData(target, offset, data);
+	}
+
 	@Override
 	public void draw() {
 		checkCreated();
 		if (extension.has()) {
-			// Bind the vao and enable all attributes
-			extension.glBindVertexArray(id);
-		}
-		// Enable the vertex attributes
-		for (int i = 0; i < attributeBufferIDs.length; i++) {
-			if (!extension.has()) {
-				// Bind the buffer
-				GL15.glBindBuffer(GL15.GL_ARRAY_BUFFER, attributeBufferIDs[i]);
-				// Define the attribute
-				GL20.glVertexAttribPointer(i, attributeSizes[i], attributeTypes[i], attributeNormalizing[i], 0, 0);
+			// Bind the vao, which holds the indices buffer and enabled attributes
+			if (stateCache.bindVertexArray(id)) {
+				extension.glBindVertexArray(id);
 			}
-			// Enable it
-			GL20.glEnableVertexAttribArray(i);
-		}
-		if (!extension.has()) {
-			// Unbind the last buffer
-			GL15.glBindBuffer(GL15.GL_ARRAY_BUFFER, 0);
+		} else {
+			// Define the attributes again only if another vertex array did since
+			if (stateCache.setVertexAttributesOwner(indicesBufferID)) {
+				defineAttributes();
+			}
+			// Bind the indices buffer
+			bindBuffer(GL15.GL_ELEMENT_ARRAY_BUFFER, indicesBufferID);
 		}
-		// Bind the indices buffer
-		GL15.glBindBuffer(GL15.GL_ELEMENT_ARRAY_BUFFER, indicesBufferID);
 		// Draw all indices with the provided mode
-		GL11.glDrawElements(drawingMode.getGLConstant(), indicesCount, GL11.GL_UNSIGNED_INT, indicesOffset * DataType.INT.getByteSize());
-		// Unbind the indices buffer
-		GL15.glBindBuffer(GL15.GL_ELEMENT_ARRAY_BUFFER, 0);
-		// Disable all attributes
-		for (int i = 0; i < attributeBufferIDs.length; i++) {
-			GL20.glDisableVertexAttribArray(i);
-		}
+		GL11.glDrawElements(drawingMode.getGLConstant(), indicesCount, indicesType.getGLConstant(), indicesOffset * indicesType.getByteSize());
 		// Check for errors
 		LWJGLUtil.checkForGLError();
 	}
 
+	private void defineAttributes() {
+		for (int i = 0; i < attributeCount; i++) {
+			// Bind the buffer, only once if the attributes are interleaved
+			bindBuffer(GL15.GL_ARRAY_BUFFER, attributeBufferIDs[layoutMode == LayoutMode.INTERLEAVED ? 0 : i]);
+			// Define the attribute and enable it
+			GL20.glVertexAttribPointer(i, attributeSizes[i], attributeTypes[i], attributeNormalizing[i], attributeStride, attributeOffsets[i]);
+			if (stateCache.enableVertexAttribute(i)) {
+				GL20.glEnableVertexAttribArray(i);
+			}
+		}
+		// Disable the attributes left enabled by a vertex array with more of them
+		long extra = stateCache.getEnabledVertexAttributes() & -(1L << attributeCount);
+		while (extra != 0) {
+			final int i = Long.numberOfTrailingZeros(extra);
+			extra &= extra - 1;
+			stateCache.disableVertexAttribute(i);
+			GL20.glDisableVertexAttribArray(i);
+		}
+	}
+
+	private void setupAttribute(int index, int size, int type, boolean normalize, int offset) {
+		if (extension.has()) {
+			// Define the attribute in the vao, as a float, normalized or not
+			GL20.glVertexAttribPointer(index, size, type, normalize, attributeStride, offset);
+		} else {
+			// We save the properties for rendering
+			attributeSizes[index] = size;
+			attributeTypes[index] = type;
+			attributeNormalizing[index] = normalize;
+			attributeOffsets[index] = offset;
+		}
+	}
+
 	@Override
 	public GLVersion getGLVersion() {
 		return GLVersion.GL20;
@@ -28,6 +28,7 @@ package org.spout.renderer.lwjgl.gl30;
 
 import org.lwjgl.opengl.ContextAttribs;
 
+import org.spout.renderer.gl.StateCache;
 import org.spout.renderer.lwjgl.gl20.GL20Context;
 
 /**
@@ -36,7 +37,8 @@ import org.spout.renderer.lwjgl.gl20.GL20Context;
  * {@see Context}
  */
 public class GL30Context extends GL20Context {
-	protected GL30Context() {
+	protected GL30Context(StateCache stateCache) {
+		super(stateCache);
 	}
 
 	@Override
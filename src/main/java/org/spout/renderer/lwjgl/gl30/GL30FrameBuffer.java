@@ -40,6 +40,7 @@ import org.lwjgl.opengl.GL32;
 
 import org.spout.renderer.gl.FrameBuffer;
 import org.spout.renderer.gl.RenderBuffer;
+import org.spout.renderer.gl.StateCache;
 import org.spout.renderer.gl.Texture;
 import org.spout.renderer.lwjgl.LWJGLUtil;
 import org.spout.renderer.util.CausticUtil;
@@ -50,14 +51,20 @@ import org.spout.renderer.util.CausticUtil;
  * @see FrameBuffer
  */
 public class GL30FrameBuffer extends FrameBuffer {
-	protected GL30FrameBuffer() {
+	// Shadow of the OpenGL state
+	private final StateCache stateCache;
+
+	protected GL30FrameBuffer(StateCache stateCache) {
+		this.stateCache = stateCache;
 	}
 
 	@Override
 	public void create() {
 		// Generate and bind the frame buffer
 		id = GL30.glGenFramebuffers();
-		GL30.glBindFramebuffer(GL30.GL_FRAMEBUFFER, id);
+		if (stateCache.bindFrameBuffer(id)) {
+			GL30.glBindFramebuffer(GL30.GL_FRAMEBUFFER, id);
+		}
 		// Track the color attachments to output for later use
 		final TIntSet outputBuffers = new TIntHashSet();
 		// Attach the textures
@@ -86,7 +93,7 @@ public class GL30FrameBuffer extends FrameBuffer {
 			GL20.glDrawBuffers(GL11.GL_NONE);
 		} else {
 			// Keep track of the buffers to output
-			final IntBuffer buffer = CausticUtil.createIntBuffer(outputBuffers.size());
+			final IntBuffer buffer = CausticUtil.getBufferPool().getFrameArena().allocateInt(outputBuffers.size());
 			final int[] outputBuffersArray = outputBuffers.toArray();
 			// Sorting the array ensures that attachments are in order n, n + 1, n + 2...
 			// This is important!
@@ -102,7 +109,9 @@ public class GL30FrameBuffer extends FrameBuffer {
 			throw new IllegalStateException("Failed to create the frame buffer");
 		}
 		// Unbind the frame buffer
-		GL30.glBindFramebuffer(GL30.GL_FRAMEBUFFER, 0);
+		if (stateCache.bindFrameBuffer(0)) {
+			GL30.glBindFramebuffer(GL30.GL_FRAMEBUFFER, 0);
+		}
 		// Update the state
 		super.create();
 		// Check for errors
@@ -113,8 +122,11 @@ public class GL30FrameBuffer extends FrameBuffer {
 	public void destroy() {
 		checkCreated();
 		// Unbind and delete the frame buffer
-		GL30.glBindFramebuffer(GL30.GL_FRAMEBUFFER, 0);
+		if (stateCache.bindFrameBuffer(0)) {
+			GL30.glBindFramebuffer(GL30.GL_FRAMEBUFFER, 0);
+		}
 		GL30.glDeleteFramebuffers(id);
+		stateCache.deleteFrameBuffer(id);
 		// Release some resources
 		textures.clear();
 		buffers.clear();
@@ -127,7 +139,9 @@ public class GL30FrameBuffer extends FrameBuffer {
 	@Override
 	public void bind() {
 		checkCreated();
-		GL30.glBindFramebuffer(GL30.GL_FRAMEBUFFER, id);
+		if (stateCache.bindFrameBuffer(id)) {
+			GL30.glBindFramebuffer(GL30.GL_FRAMEBUFFER, id);
+		}
 		// Check for errors
 		LWJGLUtil.checkForGLError();
 	}
@@ -136,7 +150,9 @@ public class GL30FrameBuffer extends FrameBuffer {
 	public void unbind() {
 		checkCreated();
 		// Bind the frame buffer
-		GL30.glBindFramebuffer(GL30.GL_FRAMEBUFFER, 0);
+		if (stateCache.bindFrameBuffer(0)) {
+			GL30.glBindFramebuffer(GL30.GL_FRAMEBUFFER, 0);
+		}
 		// Check for errors
 		LWJGLUtil.checkForGLError();
 	}
@@ -33,7 +33,9 @@ import org.spout.renderer.gl.Program;
 import org.spout.renderer.gl.RenderBuffer;
 import org.spout.renderer.gl.Context;
 import org.spout.renderer.gl.Shader;
+import org.spout.renderer.gl.StateCache;
 import org.spout.renderer.gl.Texture;
+import org.spout.renderer.gl.UniformBuffer;
 import org.spout.renderer.gl.VertexArray;
 
 /**
@@ -46,27 +48,30 @@ public class GL30GLFactory implements GLFactory {
 		GLImplementation.register(GLVersion.GL30, new GL30GLFactory());
 	}
 
+	// Shared by the context and objects, as they use the same OpenGL state
+	private final StateCache stateCache = new StateCache();
+
 	private GL30GLFactory() {
 	}
 
 	@Override
 	public FrameBuffer createFrameBuffer() {
-		return new GL30FrameBuffer();
+		return new GL30FrameBuffer(stateCache);
 	}
 
 	@Override
 	public Program createProgram() {
-		return new GL30Program();
+		return new GL30Program(stateCache);
 	}
 
 	@Override
 	public RenderBuffer createRenderBuffer() {
-		return new GL30RenderBuffer();
+		return new GL30RenderBuffer(stateCache);
 	}
 
 	@Override
 	public Context createContext() {
-		return new GL30Context();
+		return new GL30Context(stateCache);
 	}
 
 	@Override
@@ -76,12 +81,17 @@ public class GL30GLFactory implements GLFactory {
 
 	@Override
 	public Texture createTexture() {
-		return new GL30Texture();
+		return new GL30Texture(stateCache);
+	}
+
+	@Override
+	public UniformBuffer createUniformBuffer() {
+		return new GL30UniformBuffer(stateCache);
 	}
 
 	@Override
 	public VertexArray createVertexArray() {
-		return new GL30VertexArray();
+		return new GL30VertexArray(stateCache);
 	}
 
 	@Override
@@ -26,17 +26,40 @@
  */
 package org.spout.renderer.lwjgl.gl30;
 
+import org.lwjgl.opengl.GL20;
+import org.lwjgl.opengl.GL31;
+
+import org.spout.renderer.gl.StateCache;
+import org.spout.renderer.lwjgl.LWJGLUtil;
 import org.spout.renderer.lwjgl.gl20.GL20Program;
 
 /**
- * An OpenGL 3.0 implementation of {@link org.spout.renderer.gl.Program}.
+ * An OpenGL 3.0 implementation of {@link org.spout.renderer.gl.Program}. Uniform blocks, from OpenGL 3.1, are supported.
  *
  * @see org.spout.renderer.gl.Program
  */
 public class GL30Program extends GL20Program {
 	// TODO: Support unsigned int scalars and vectors
 
-	protected GL30Program() {
+	protected GL30Program(StateCache stateCache) {
+		super(stateCache);
+	}
+
+	@Override
+	public void create() {
+		super.create();
+		// Load uniform blocks
+		final int blockCount = GL20.glGetProgrami(id, GL31.GL_ACTIVE_UNIFORM_BLOCKS);
+		for (int i = 0; i < blockCount; i++) {
+			addUniformBlock(GL31.glGetActiveUniformBlockName(id, i, 256), i);
+		}
+		LWJGLUtil.checkForGLError();
+	}
+
+	@Override
+	protected void bindUniformBlock(int index, int bindingPoint) {
+		GL31.glUniformBlockBinding(id, index, bindingPoint);
+		LWJGLUtil.checkForGLError();
 	}
 
 	@Override
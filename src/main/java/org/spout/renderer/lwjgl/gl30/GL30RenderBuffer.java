@@ -29,6 +29,7 @@ package org.spout.renderer.lwjgl.gl30;
 import org.lwjgl.opengl.GL30;
 
 import org.spout.renderer.gl.RenderBuffer;
+import org.spout.renderer.gl.StateCache;
 import org.spout.renderer.lwjgl.LWJGLUtil;
 
 /**
@@ -37,7 +38,11 @@ import org.spout.renderer.lwjgl.LWJGLUtil;
  * @see RenderBuffer
  */
 public class GL30RenderBuffer extends RenderBuffer {
-	protected GL30RenderBuffer() {
+	// Shadow of the OpenGL state
+	private final StateCache stateCache;
+
+	protected GL30RenderBuffer(StateCache stateCache) {
+		this.stateCache = stateCache;
 	}
 
 	@Override
@@ -53,11 +58,15 @@ public class GL30RenderBuffer extends RenderBuffer {
 		}
 		// Generate and bind the render buffer
 		id = GL30.glGenRenderbuffers();
-		GL30.glBindRenderbuffer(GL30.GL_RENDERBUFFER, id);
+		if (stateCache.bindRenderBuffer(id)) {
+			GL30.glBindRenderbuffer(GL30.GL_RENDERBUFFER, id);
+		}
 		// Set the storage format and size
 		GL30.glRenderbufferStorage(GL30.GL_RENDERBUFFER, format.getGLConstant(), width, height);
 		// Unbind the render buffer
-		GL30.glBindRenderbuffer(GL30.GL_RENDERBUFFER, 0);
+		if (stateCache.bindRenderBuffer(0)) {
+			GL30.glBindRenderbuffer(GL30.GL_RENDERBUFFER, 0);
+		}
 		// Update the state
 		super.create();
 		// Check for errors
@@ -68,8 +77,11 @@ public class GL30RenderBuffer extends RenderBuffer {
 	public void destroy() {
 		checkCreated();
 		// Unbind and delete the render buffer
-		GL30.glBindRenderbuffer(GL30.GL_RENDERBUFFER, 0);
+		if (stateCache.bindRenderBuffer(0)) {
+			GL30.glBindRenderbuffer(GL30.GL_RENDERBUFFER, 0);
+		}
 		GL30.glDeleteRenderbuffers(id);
+		stateCache.deleteRenderBuffer(id);
 		// Update state
 		super.destroy();
 		// Check for errors
@@ -79,7 +91,9 @@ public class GL30RenderBuffer extends RenderBuffer {
 	@Override
 	public void bind() {
 		checkCreated();
-		GL30.glBindRenderbuffer(GL30.GL_RENDERBUFFER, id);
+		if (stateCache.bindRenderBuffer(id)) {
+			GL30.glBindRenderbuffer(GL30.GL_RENDERBUFFER, id);
+		}
 		// Check for errors
 		LWJGLUtil.checkForGLError();
 	}
@@ -87,7 +101,9 @@ public class GL30RenderBuffer extends RenderBuffer {
 	@Override
 	public void unbind() {
 		checkCreated();
-		GL30.glBindRenderbuffer(GL30.GL_RENDERBUFFER, 0);
+		if (stateCache.bindRenderBuffer(0)) {
+			GL30.glBindRenderbuffer(GL30.GL_RENDERBUFFER, 0);
+		}
 		// Check for errors
 		LWJGLUtil.checkForGLError();
 	}
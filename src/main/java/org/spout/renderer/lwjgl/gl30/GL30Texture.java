@@ -31,6 +31,7 @@ import java.nio.ByteBuffer;
 import org.lwjgl.opengl.GL11;
 import org.lwjgl.opengl.GL30;
 
+import org.spout.renderer.gl.StateCache;
 import org.spout.renderer.lwjgl.LWJGLUtil;
 import org.spout.renderer.lwjgl.gl20.GL20Texture;
 
@@ -40,7 +41,8 @@ import org.spout.renderer.lwjgl.gl20.GL20Texture;
  * @see org.spout.renderer.gl.Texture
  */
 public class GL30Texture extends GL20Texture {
-	protected GL30Texture() {
+	protected GL30Texture(StateCache stateCache) {
+		super(stateCache);
 	}
 
 	@Override
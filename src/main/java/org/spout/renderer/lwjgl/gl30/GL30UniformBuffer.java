@@ -0,0 +1,118 @@
+/*
+ * This file is part of Caustic.
+ *
+ * Copyright (c) 2013 Spout LLC <http://www.spout.org/>
+ * Caustic is licensed under the Spout License Version 1.
+ *
+ * Caustic is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the Free
+ * Software Foundation, either version 3 of the License, or (at your option)
+ * any later version.
+ *
+ * In addition, 180 days after any changes are published, you can use the
+ * software, incorporating those changes, under the terms of the MIT license,
+ * as described in the Spout License Version 1.
+ *
+ * Caustic is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE.  See the GNU Lesser General Public License for
+ * more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License,
+ * the MIT license and the Spout License Version 1 along with this program.
+ * If not, see <http://www.gnu.org/licenses/> for the GNU Lesser General Public
+ * License and see <http://spout.in/licensev1> for the full license, including
+ * the MIT license.
+ */
+package org.spout.renderer.lwjgl.gl30;
+
+import java.nio.ByteBuffer;
+
+import org.lwjgl.opengl.GL15;
+import org.lwjgl.opengl.GL30;
+import org.lwjgl.opengl.GL31;
+
+import org.spout.renderer.gl.StateCache;
+import org.spout.renderer.gl.UniformBuffer;
+import org.spout.renderer.lwjgl.LWJGLUtil;
+
+/**
+ * An OpenGL 3.0 implementation of {@link UniformBuffer}. Uniform buffers are part of OpenGL 3.1, which the core context requested by the OpenGL 3.0 implementation provides.
+ *
+ * @see UniformBuffer
+ */
+public class GL30UniformBuffer extends UniformBuffer {
+	// Shadow of the OpenGL state
+	private final StateCache stateCache;
+
+	protected GL30UniformBuffer(StateCache stateCache) {
+		this.stateCache = stateCache;
+	}
+
+	@Override
+	public void create() {
+		if (isCreated()) {
+			throw new IllegalStateException("Uniform buffer has already been created");
+		}
+		// Generate the buffer, the storage is allocated when the data is first set
+		id = GL15.glGenBuffers();
+		// Update the state
+		super.create();
+		// Check for errors
+		LWJGLUtil.checkForGLError();
+	}
+
+	@Override
+	public void destroy() {
+		checkCreated();
+		// Delete the buffer, which unbinds it
+		GL15.glDeleteBuffers(id);
+		stateCache.deleteBuffer(id);
+		// Update the state
+		super.destroy();
+		// Check for errors
+		LWJGLUtil.checkForGLError();
+	}
+
+	@Override
+	public void bind() {
+		checkCreated();
+		if (stateCache.bindUniformBufferBase(bindingPoint, id)) {
+			GL30.glBindBufferBase(GL31.GL_UNIFORM_BUFFER, bindingPoint, id);
+		}
+		// Check for errors
+		LWJGLUtil.checkForGLError();
+	}
+
+	@Override
+	public void unbind() {
+		checkCreated();
+		if (stateCache.bindUniformBufferBase(bindingPoint, 0)) {
+			GL30.glBindBufferBase(GL31.GL_UNIFORM_BUFFER, bindingPoint, 0);
+		}
+		// Check for errors
+		LWJGLUtil.checkForGLError();
+	}
+
+	@Override
+	protected void bindBuffer(int bufferID) {
+		if (stateCache.bindBuffer(GL31.GL_UNIFORM_BUFFER, bufferID)) {
+			GL15.glBindBuffer(GL31.GL_UNIFORM_BUFFER, bufferID);
+		}
+	}
+
+	@Override
+	protected void bufferData(ByteBuffer data, int usage) {
+		GL15.glBufferData(GL31.GL_UNIFORM_BUFFER, data, usage);
+	}
+
+	@Override
+	protected void bufferSubData(int offset, ByteBuffer data) {
+		GL15.glBufferSubData(GL31.GL_UNIFORM_BUFFER, offset, data);
+	}
+
+	@Override
+	public GLVersion getGLVersion() {
+		return GLVersion.GL30;
+	}
+}
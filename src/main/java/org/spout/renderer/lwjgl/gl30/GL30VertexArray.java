@@ -26,6 +26,8 @@
  */
 package org.spout.renderer.lwjgl.gl30;
 
+import java.nio.ByteBuffer;
+
 import org.lwjgl.opengl.GL11;
 import org.lwjgl.opengl.GL15;
 import org.lwjgl.opengl.GL20;
@@ -34,16 +36,24 @@ import org.lwjgl.opengl.GL30;
 import org.spout.renderer.data.VertexAttribute;
 import org.spout.renderer.data.VertexAttribute.DataType;
 import org.spout.renderer.data.VertexAttribute.UploadMode;
+import org.spout.renderer.data.VertexFormat;
+import org.spout.renderer.gl.StateCache;
 import org.spout.renderer.gl.VertexArray;
 import org.spout.renderer.lwjgl.LWJGLUtil;
+import org.spout.renderer.util.CausticUtil;
 
 /**
- * An OpenGL 3.0 implementation of {@link VertexArray}.
+ * An OpenGL 3.0 implementation of {@link VertexArray}. <p/> The indices buffer and the enabled attributes are part of the vao state, so they are set once on creation. Drawing only binds the vao, and
+ * leaves it bound.
  *
  * @see VertexArray
  */
 public class GL30VertexArray extends VertexArray {
-	protected GL30VertexArray() {
+	// Shadow of the OpenGL state
+	private final StateCache stateCache;
+
+	protected GL30VertexArray(StateCache stateCache) {
+		this.stateCache = stateCache;
 	}
 
 	@Override
@@ -56,36 +66,53 @@ public class GL30VertexArray extends VertexArray {
 		}
 		// Generate and bind the vao
 		id = GL30.glGenVertexArrays();
+		stateCache.bindVertexArray(id);
 		GL30.glBindVertexArray(id);
-		// Generate, bind and fill the indices vbo then unbind
+		// Generate, bind and fill the indices vbo, which stays bound to the vao
 		indicesBufferID = GL15.glGenBuffers();
+		stateCache.bindBuffer(GL15.GL_ELEMENT_ARRAY_BUFFER, indicesBufferID);
 		GL15.glBindBuffer(GL15.GL_ELEMENT_ARRAY_BUFFER, indicesBufferID);
-		GL15.glBufferData(GL15.GL_ELEMENT_ARRAY_BUFFER, vertexData.getIndicesBuffer(), GL15.GL_STATIC_DRAW);
-		GL15.glBindBuffer(GL15.GL_ELEMENT_ARRAY_BUFFER, 0);
+		indicesType = vertexData.getIndicesType();
+		final ByteBuffer indicesBuffer = vertexData.getIndicesBuffer(indicesType);
+		GL15.glBufferData(GL15.GL_ELEMENT_ARRAY_BUFFER, indicesBuffer, usageHint.getGLConstant());
+		vertexData.releaseIndicesBuffer(indicesBuffer);
 		// Save the count of indices to draw
 		indicesCountCache = vertexData.getIndicesCount();
 		resetIndicesCountAndOffset();
-		// Create the map for attribute index to buffer ID
-		attributeBufferIDs = new int[vertexData.getAttributeCount()];
-		// For each attribute, generate, bind and fill the vbo, then setup the attribute in the vao and save the buffer ID for the index
-		for (int i = 0; i < vertexData.getAttributeCount(); i++) {
-			final VertexAttribute attribute = vertexData.getAttribute(i);
+		// Save the count of attributes
+		attributeCount = vertexData.getAttributeCount();
+		if (layoutMode == LayoutMode.INTERLEAVED) {
+			// Generate, bind and fill the single vbo holding all the attributes
+			final VertexFormat format = new VertexFormat(vertexData);
 			final int bufferID = GL15.glGenBuffers();
-			GL15.glBindBuffer(GL15.GL_ARRAY_BUFFER, bufferID);
-			GL15.glBufferData(GL15.GL_ARRAY_BUFFER, attribute.getData(), GL15.GL_STATIC_DRAW);
-			attributeBufferIDs[i] = bufferID;
-			// Three ways to interpret integer data
-			if (attribute.getType().isInteger() && attribute.getUploadMode() == UploadMode.KEEP_INT) {
-				// Directly as an int
-				GL30.glVertexAttribIPointer(i, attribute.getSize(), attribute.getType().getGLConstant(), 0, 0);
-			} else {
-				// Or as a float, normalized or not
-				GL20.glVertexAttribPointer(i, attribute.getSize(), attribute.getType().getGLConstant(), attribute.getUploadMode().normalize(), 0, 0);
+			bindBuffer(GL15.GL_ARRAY_BUFFER, bufferID);
+			final ByteBuffer interleaved = format.interleave(vertexData);
+			GL15.glBufferData(GL15.GL_ARRAY_BUFFER, interleaved, usageHint.getGLConstant());
+			CausticUtil.getBufferPool().release(interleaved);
+			attributeBufferIDs = new int[]{bufferID};
+			// Setup each attribute in the vao at its offset in the vertex
+			for (int i = 0; i < attributeCount; i++) {
+				setupAttribute(i, format.getSize(i), format.getType(i), format.getUploadMode(i), format.getStride(), format.getOffset(i));
+			}
+		} else {
+			// Create the map for attribute index to buffer ID
+			attributeBufferIDs = new int[attributeCount];
+			// For each attribute, generate, bind and fill the vbo, then setup the attribute in the vao and save the buffer ID for the index
+			for (int i = 0; i < attributeCount; i++) {
+				final VertexAttribute attribute = vertexData.getAttribute(i);
+				final int bufferID = GL15.glGenBuffers();
+				bindBuffer(GL15.GL_ARRAY_BUFFER, bufferID);
+				GL15.glBufferData(GL15.GL_ARRAY_BUFFER, attribute.getData(), usageHint.getGLConstant());
+				attributeBufferIDs[i] = bufferID;
+				setupAttribute(i, attribute.getSize(), attribute.getType(), attribute.getUploadMode(), 0, 0);
+			}
+		}
+		// Enable the attributes in the vao
+		for (int i = 0; i < attributeCount; i++) {
+			if (stateCache.enableVertexAttribute(i)) {
+				GL20.glEnableVertexAttribArray(i);
 			}
 		}
-		// Unbind the vbo and vao
-		GL15.glBindBuffer(GL15.GL_ARRAY_BUFFER, 0);
-		GL30.glBindVertexArray(0);
 		// Update state
 		super.create();
 		// Check for errors
@@ -95,49 +122,79 @@ public class GL30VertexArray extends VertexArray {
 	@Override
 	public void destroy() {
 		checkCreated();
-		// Unbind any bound buffer
-		GL15.glBindBuffer(GL15.GL_ARRAY_BUFFER, 0);
-		// Unbind and delete the indices buffer
-		GL15.glBindBuffer(GL15.GL_ELEMENT_ARRAY_BUFFER, 0);
+		// Delete the indices and attribute buffers, which unbinds them
 		GL15.glDeleteBuffers(indicesBufferID);
-		// Bind the vao for deletion
-		GL30.glBindVertexArray(id);
-		// Disable each attribute and delete its buffer
-		for (int i = 0; i < attributeBufferIDs.length; i++) {
-			GL20.glDisableVertexAttribArray(i);
-			GL15.glDeleteBuffers(attributeBufferIDs[i]);
+		stateCache.deleteBuffer(indicesBufferID);
+		for (int bufferID : attributeBufferIDs) {
+			GL15.glDeleteBuffers(bufferID);
+			stateCache.deleteBuffer(bufferID);
 		}
-		// Unbind the vao and delete it
-		GL30.glBindVertexArray(0);
+		// Delete the vao, which unbinds it
 		GL30.glDeleteVertexArrays(id);
+		stateCache.deleteVertexArray(id);
 		super.destroy();
 		// Check for errors
 		LWJGLUtil.checkForGLError();
 	}
 
+	@Override
+	public void update() {
+		super.update();
+		// Check for errors
+		LWJGLUtil.checkForGLError();
+	}
+
+	@Override
+	protected void bindBuffer(int target, int bufferID) {
+		// The state is tracked, so there's no need to unbind
+		if (bufferID == 0) {
+			return;
+		}
+		if (target == GL15.GL_ELEMENT_ARRAY_BUFFER) {
+			// The indices buffer binding belongs to the vao, so make sure it's ours
+			if (stateCache.bindVertexArray(id)) {
+				GL30.glBindVertexArray(id);
+			}
+		}
+		if (stateCache.bindBuffer(target, bufferID)) {
+			GL15.glBindBuffer(target, bufferID);
+		}
+	}
+
+	@Override
+	protected void bufferData(int target, ByteBuffer data, int usage) {
+		GL15.glBufferData(target, data, usage);
+	}
+
+	@Override
+	protected void bufferSubData(int target, int offset, ByteBuffer data) {
+		GL15.glBufferSubData(target, offset, data);
+	}
+
 	@Override
 	public void draw() {
 		checkCreated();
-		// Bind the vao and enable all attributes
-		GL30.glBindVertexArray(id);
-		for (int i = 0; i < attributeBufferIDs.length; i++) {
-			GL20.glEnableVertexAttribArray(i);
+		// Bind the vao, which holds the indices buffer and enabled attributes
+		if (stateCache.bindVertexArray(id)) {
+			GL30.glBindVertexArray(id);
 		}
-		// Bind the indices buffer
-		GL15.glBindBuffer(GL15.GL_ELEMENT_ARRAY_BUFFER, indicesBufferID);
 		// Draw all indices with the provided mode
-		GL11.glDrawElements(drawingMode.getGLConstant(), indicesCount, GL11.GL_UNSIGNED_INT, indicesOffset * DataType.INT.getByteSize());
-		// Unbind the indices buffer
-		GL15.glBindBuffer(GL15.GL_ELEMENT_ARRAY_BUFFER, 0);
-		// Disable all attributes and unbind the vao
-		for (int i = 0; i < attributeBufferIDs.length; i++) {
-			GL20.glDisableVertexAttribArray(i);
-		}
-		GL30.glBindVertexArray(0);
+		GL11.glDrawElements(drawingMode.getGLConstant(), indicesCount, indicesType.getGLConstant(), indicesOffset * indicesType.getByteSize());
 		// Check for errors
 		LWJGLUtil.checkForGLError();
 	}
 
+	private static void setupAttribute(int index, int size, DataType type, UploadMode uploadMode, int stride, int offset) {
+		// Three ways to interpret integer data
+		if (type.isInteger() && uploadMode == UploadMode.KEEP_INT) {
+			// Directly as an int
+			GL30.glVertexAttribIPointer(index, size, type.getGLConstant(), stride, offset);
+		} else {
+			// Or as a float, normalized or not
+			GL20.glVertexAttribPointer(index, size, type.getGLConstant(), uploadMode.normalize(), stride, offset);
+		}
+	}
+
 	@Override
 	public GLVersion getGLVersion() {
 		return GLVersion.GL30;
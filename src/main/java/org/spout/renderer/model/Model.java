@@ -26,16 +26,27 @@
  */
 package org.spout.renderer.model;
 
+import java.nio.FloatBuffer;
+
 import org.spout.math.imaginary.Quaternionf;
 import org.spout.math.matrix.Matrix4f;
 import org.spout.math.vector.Vector3f;
+import org.spout.renderer.Camera;
 import org.spout.renderer.Material;
+import org.spout.renderer.data.Bounds;
 import org.spout.renderer.data.UniformHolder;
 import org.spout.renderer.gl.VertexArray;
+import org.spout.renderer.util.CausticUtil;
+import org.spout.renderer.util.MatrixUtil;
 
 /**
  * Represents a model. Each model has it's own position and rotation and set of uniforms. The vertex array provides the vertex data (mesh), while the material provides uniforms and textures for the
  * shader.
+ * <p/>
+ * The model has a version, incremented each time its transformation changes. The model view and normal matrices for a camera are cached, and only computed again when the model or camera version
+ * changes, as most models are static.
+ * <p/>
+ * A model can be added to a {@link SpatialIndex}, which is notified when its transformation or bounds change.
  */
 public class Model implements Comparable<Model> {
 	// Vertex array
@@ -48,6 +59,25 @@ public class Model implements Comparable<Model> {
 	private Quaternionf rotation = new Quaternionf();
 	private Matrix4f matrix = new Matrix4f();
 	private boolean updateMatrix = true;
+	private int version = 0;
+	// The model view and normal matrices in column major order, for the camera and versions they were computed for
+	private FloatBuffer modelViewMatrix;
+	private FloatBuffer normalMatrix;
+	private Camera viewCamera;
+	private int viewCameraVersion;
+	private int viewVersion;
+	// Scratch arrays for computing the view matrices in row major order
+	private float[] modelView;
+	private float[] inverse;
+	// Bounds in model space replacing those of the vertex array, if any, and in world space for the local bounds and version they were computed for
+	private Bounds localBounds;
+	private Bounds worldBounds;
+	private Bounds worldBoundsSource;
+	private int worldBoundsVersion;
+	// The spatial index the model is in, if any, its leaf in the tree, and whether or not its place needs updating
+	SpatialIndex spatialIndex;
+	int spatialProxy = -1;
+	boolean spatialMoved = false;
 	// Model uniforms
 	private final UniformHolder uniforms = new UniformHolder();
 
@@ -123,6 +153,7 @@ public class Model implements Comparable<Model> {
 		}
 		vertexArray.checkCreated();
 		this.vertexArray = vertexArray;
+		moved();
 	}
 
 	/**
@@ -153,12 +184,120 @@ public class Model implements Comparable<Model> {
 	 */
 	public Matrix4f getMatrix() {
 		if (updateMatrix) {
-			matrix = Matrix4f.createScaling(scale.toVector4(1)).rotate(rotation).translate(position);
+			matrix = createTransform(position, rotation, scale);
 			updateMatrix = false;
 		}
 		return matrix;
 	}
 
+	/**
+	 * Returns the version of the transformation, incremented each time the position, rotation or scale is set.
+	 *
+	 * @return The version
+	 */
+	public int getVersion() {
+		return version;
+	}
+
+	/**
+	 * Returns the model view matrix for the camera, the product of its view matrix and the model matrix, in column major order. It's cached until the model or the camera changes. The buffer is reused
+	 * by the next calls, and must not be modified.
+	 *
+	 * @param camera The camera
+	 * @return The model view matrix, in a buffer with the position zero and the limit 16
+	 */
+	public FloatBuffer getModelViewMatrix(Camera camera) {
+		updateViewMatrices(camera);
+		return modelViewMatrix;
+	}
+
+	/**
+	 * Returns the normal matrix for the camera, the transposed inverse of the model view matrix, in column major order. It's cached until the model or the camera changes. The buffer is reused by the
+	 * next calls, and must not be modified.
+	 *
+	 * @param camera The camera
+	 * @return The normal matrix, in a buffer with the position zero and the limit 16
+	 * @throws ArithmeticException If the model view matrix can't be inverted, because of a zero scale
+	 */
+	public FloatBuffer getNormalMatrix(Camera camera) {
+		updateViewMatrices(camera);
+		return normalMatrix;
+	}
+
+	/**
+	 * Returns the bounds of the model in model space, those set with {@link #setLocalBounds(Bounds)} or else those of the vertex array.
+	 *
+	 * @return The local bounds, or null if unknown
+	 */
+	public Bounds getLocalBounds() {
+		if (localBounds != null) {
+			return localBounds;
+		}
+		return vertexArray != null ? vertexArray.getBounds() : null;
+	}
+
+	/**
+	 * Sets the bounds of the model in model space, replacing those of the vertex array. This is necessary if the shaders move the vertices outside of them.
+	 *
+	 * @param bounds The bounds, or null to use those of the vertex array
+	 */
+	public void setLocalBounds(Bounds bounds) {
+		localBounds = bounds;
+		moved();
+	}
+
+	/**
+	 * Returns the bounds of the model in world space, the local bounds transformed by the model matrix. They're cached until the model or its local bounds change, and then updated in place, so the
+	 * same bounds are always returned. Don't keep them to compare with later ones.
+	 *
+	 * @return The world bounds, or null if unknown
+	 */
+	public Bounds getBounds() {
+		final Bounds local = getLocalBounds();
+		if (local == null) {
+			return null;
+		}
+		if (local != worldBoundsSource || version != worldBoundsVersion) {
+			if (worldBounds == null) {
+				worldBounds = new Bounds();
+			}
+			local.transform(getMatrix(), worldBounds);
+			worldBoundsSource = local;
+			worldBoundsVersion = version;
+		}
+		return worldBounds;
+	}
+
+	private void updateViewMatrices(Camera camera) {
+		if (modelViewMatrix != null && camera == viewCamera && camera.getVersion() == viewCameraVersion && version == viewVersion) {
+			return;
+		}
+		if (modelViewMatrix == null) {
+			modelViewMatrix = CausticUtil.createFloatBuffer(16);
+			normalMatrix = CausticUtil.createFloatBuffer(16);
+			modelView = new float[16];
+			inverse = new float[16];
+		}
+		// Forget the cache first, in case the inversion fails
+		viewCamera = null;
+		MatrixUtil.mul(camera.getViewMatrix(), getMatrix(), modelView);
+		modelViewMatrix.clear();
+		MatrixUtil.putColumnMajor(modelView, modelViewMatrix);
+		modelViewMatrix.flip();
+		// The view matrix is rigid, so with a uniform scale the model view matrix only rotates and scales uniformly
+		if (scale.getX() == scale.getY() && scale.getY() == scale.getZ()) {
+			MatrixUtil.invertUniformScaled(modelView, inverse);
+		} else {
+			MatrixUtil.invert(modelView, inverse);
+		}
+		// The transposed inverse in column major order is the inverse in row major order
+		normalMatrix.clear();
+		normalMatrix.put(inverse).flip();
+		viewCamera = camera;
+		viewCameraVersion = camera.getVersion();
+		viewVersion = version;
+	}
+
 	/**
 	 * Gets the model position.
 	 *
@@ -176,6 +315,8 @@ public class Model implements Comparable<Model> {
 	public void setPosition(Vector3f position) {
 		this.position = position;
 		updateMatrix = true;
+		version++;
+		moved();
 	}
 
 	/**
@@ -195,6 +336,8 @@ public class Model implements Comparable<Model> {
 	public void setRotation(Quaternionf rotation) {
 		this.rotation = rotation;
 		updateMatrix = true;
+		version++;
+		moved();
 	}
 
 	/**
@@ -214,6 +357,8 @@ public class Model implements Comparable<Model> {
 	public void setScale(Vector3f scale) {
 		this.scale = scale;
 		updateMatrix = true;
+		version++;
+		moved();
 	}
 
 	/**
@@ -234,6 +379,31 @@ public class Model implements Comparable<Model> {
 		return uniforms;
 	}
 
+	private void moved() {
+		if (spatialIndex != null) {
+			spatialIndex.update(this);
+		}
+	}
+
+	// Same as Matrix4f.createScaling(scale.toVector4(1)).rotate(rotation).translate(position), without the intermediate matrices
+	private static Matrix4f createTransform(Vector3f position, Quaternionf rotation, Vector3f scale) {
+		final float x = rotation.getX();
+		final float y = rotation.getY();
+		final float z = rotation.getZ();
+		final float w = rotation.getW();
+		// Dividing by the squared length normalizes the rotation
+		final float lengthSquared = x * x + y * y + z * z + w * w;
+		final float s = lengthSquared == 0 ? 0 : 2 / lengthSquared;
+		final float sx = scale.getX();
+		final float sy = scale.getY();
+		final float sz = scale.getZ();
+		return new Matrix4f(
+				(1 - s * (y * y + z * z)) * sx, s * (x * y - w * z) * sy, s * (x * z + w * y) * sz, position.getX(),
+				s * (x * y + w * z) * sx, (1 - s * (x * x + z * z)) * sy, s * (y * z - w * x) * sz, position.getY(),
+				s * (x * z - w * y) * sx, s * (y * z + w * x) * sy, (1 - s * (x * x + y * y)) * sz, position.getZ(),
+				0, 0, 0, 1);
+	}
+
 	@Override
 	public int compareTo(Model that) {
 		return material.compareTo(that.material);
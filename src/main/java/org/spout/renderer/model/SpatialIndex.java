@@ -0,0 +1,763 @@
+/*
+ * This file is part of Caustic.
+ *
+ * Copyright (c) 2013 Spout LLC <http://www.spout.org/>
+ * Caustic is licensed under the Spout License Version 1.
+ *
+ * Caustic is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the Free
+ * Software Foundation, either version 3 of the License, or (at your option)
+ * any later version.
+ *
+ * In addition, 180 days after any changes are published, you can use the
+ * software, incorporating those changes, under the terms of the MIT license,
+ * as described in the Spout License Version 1.
+ *
+ * Caustic is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE.  See the GNU Lesser General Public License for
+ * more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License,
+ * the MIT license and the Spout License Version 1 along with this program.
+ * If not, see <http://www.gnu.org/licenses/> for the GNU Lesser General Public
+ * License and see <http://spout.in/licensev1> for the full license, including
+ * the MIT license.
+ */
+package org.spout.renderer.model;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.spout.math.vector.Vector3f;
+import org.spout.renderer.Frustum;
+import org.spout.renderer.data.Bounds;
+
+/**
+ * A spatial index of models, as a dynamic bounding volume hierarchy: a binary tree of axis aligned boxes, with the models in the leaves. It answers frustum, sphere, box and ray queries in about
+ * logarithmic time instead of testing every model.
+ * <p/>
+ * Models register with at most one index. When their position, rotation, scale, vertex array or local bounds change, they're marked as moved, and the index is updated on the next query. The leaf
+ * boxes are the world bounds of the models enlarged by a margin, so that small moves don't change the tree. When a model leaves its box, it's removed and inserted again, and the tree is balanced
+ * with rotations on the way up. Changing the vertex data of a model doesn't mark it as moved, {@link #update(Model)} must be called instead.
+ * <p/>
+ * Models without bounds can't be placed in the tree. They're always returned by frustum queries, so they aren't culled, but never by the other queries.
+ * <p/>
+ * The index isn't thread safe, and queries update it, so it must only be used from one thread at a time.
+ */
+public class SpatialIndex {
+	private static final int NULL_NODE = -1;
+	// Proxy of the models in the index but not in the tree, because they have no bounds
+	private static final int UNBOUNDED = -2;
+	// Fraction of the largest extent of the bounds added on each side of the leaf boxes
+	private static final float MARGIN = 0.1f;
+	// The min x, y, z, and max x, y, z of the boxes, six per node
+	private float[] boxes;
+	// Tree links, the parent is the next free node for free nodes, and leaves have no children
+	private int[] parents;
+	private int[] children1;
+	private int[] children2;
+	// Height of the subtree, zero for leaves
+	private int[] heights;
+	private Model[] models;
+	private int capacity;
+	private int root = NULL_NODE;
+	private int freeList = NULL_NODE;
+	// Models in the index without bounds
+	private final List<Model> unbounded = new ArrayList<>();
+	// Models to update before the next query
+	private Model[] moved = new Model[16];
+	private int movedCount = 0;
+	private int size = 0;
+	// Traversal stack, reused between the queries
+	private int[] stack = new int[64];
+
+	/**
+	 * Constructs a new empty spatial index.
+	 */
+	public SpatialIndex() {
+		this(16);
+	}
+
+	/**
+	 * Constructs a new empty spatial index, with space for the expected model count.
+	 *
+	 * @param expectedSize The expected model count
+	 */
+	public SpatialIndex(int expectedSize) {
+		if (expectedSize < 0) {
+			throw new IllegalArgumentException("Expected size cannot be negative");
+		}
+		allocate(Math.max(16, expectedSize * 2));
+	}
+
+	/**
+	 * Adds the model to the index. It's placed in the tree on the next query.
+	 *
+	 * @param model The model to add
+	 * @throws IllegalStateException If the model is already in a spatial index
+	 */
+	public void add(Model model) {
+		if (model == null) {
+			throw new IllegalArgumentException("Model cannot be null");
+		}
+		if (model.spatialIndex != null) {
+			throw new IllegalStateException("Model is already in a spatial index");
+		}
+		model.spatialIndex = this;
+		model.spatialProxy = NULL_NODE;
+		size++;
+		update(model);
+	}
+
+	/**
+	 * Removes the model from the index, if present.
+	 *
+	 * @param model The model to remove
+	 * @return Whether or not the model was in the index
+	 */
+	public boolean remove(Model model) {
+		if (model == null || model.spatialIndex != this) {
+			return false;
+		}
+		if (model.spatialProxy == UNBOUNDED) {
+			unbounded.remove(model);
+		} else if (model.spatialProxy != NULL_NODE) {
+			removeLeaf(model.spatialProxy);
+			freeNode(model.spatialProxy);
+		}
+		if (model.spatialMoved) {
+			for (int i = 0; i < movedCount; i++) {
+				if (moved[i] == model) {
+					moved[i] = moved[--movedCount];
+					moved[movedCount] = null;
+					break;
+				}
+			}
+			model.spatialMoved = false;
+		}
+		model.spatialIndex = null;
+		model.spatialProxy = NULL_NODE;
+		size--;
+		return true;
+	}
+
+	/**
+	 * Returns true if the model is in the index.
+	 *
+	 * @param model The model to check
+	 * @return Whether or not the model is in the index
+	 */
+	public boolean contains(Model model) {
+		return model != null && model.spatialIndex == this;
+	}
+
+	/**
+	 * Removes all the models from the index.
+	 */
+	public void clear() {
+		for (int i = 0; i < capacity; i++) {
+			final Model model = models[i];
+			if (model != null) {
+				release(model);
+				models[i] = null;
+			}
+		}
+		for (Model model : unbounded) {
+			release(model);
+		}
+		unbounded.clear();
+		for (int i = 0; i < movedCount; i++) {
+			release(moved[i]);
+			moved[i] = null;
+		}
+		movedCount = 0;
+		root = NULL_NODE;
+		size = 0;
+		// Chain all the nodes in the free list
+		for (int i = 0; i < capacity - 1; i++) {
+			parents[i] = i + 1;
+		}
+		parents[capacity - 1] = NULL_NODE;
+		freeList = 0;
+	}
+
+	/**
+	 * Marks the model as moved, so its place in the tree is updated on the next query. This is done automatically when the transformation, vertex array or local bounds of the model change, but not
+	 * when the data of its vertex array does.
+	 *
+	 * @param model The model to update
+	 * @throws IllegalArgumentException If the model isn't in this index
+	 */
+	public void update(Model model) {
+		if (model == null || model.spatialIndex != this) {
+			throw new IllegalArgumentException("Model is not in this index");
+		}
+		if (model.spatialMoved) {
+			return;
+		}
+		model.spatialMoved = true;
+		if (movedCount == moved.length) {
+			moved = Arrays.copyOf(moved, movedCount * 2);
+		}
+		moved[movedCount++] = model;
+	}
+
+	/**
+	 * Returns the number of models in the index.
+	 *
+	 * @return The model count
+	 */
+	public int size() {
+		return size;
+	}
+
+	/**
+	 * Returns the height of the tree, after updating the moved models. A leaf has a height of zero, and an empty tree of minus one.
+	 *
+	 * @return The tree height
+	 */
+	public int getHeight() {
+		flush();
+		return root == NULL_NODE ? -1 : heights[root];
+	}
+
+	/**
+	 * Adds the models that are at least partially inside the frustum to the list, as well as all the models without bounds. Like {@link Frustum#intersects(Bounds)}, this is conservative. The models
+	 * are added in no particular order.
+	 *
+	 * @param frustum The frustum to test
+	 * @param results The list to add the models to
+	 */
+	public void queryFrustum(Frustum frustum, List<Model> results) {
+		if (frustum == null) {
+			throw new IllegalArgumentException("Frustum cannot be null");
+		}
+		flush();
+		results.addAll(unbounded);
+		if (root == NULL_NODE) {
+			return;
+		}
+		int top = 0;
+		stack[top++] = root;
+		while (top > 0) {
+			final int entry = stack[--top];
+			if (entry < 0) {
+				// The complement of a node inside the frustum, everything below is inside too
+				final int node = ~entry;
+				if (isLeaf(node)) {
+					results.add(models[node]);
+				} else {
+					top = push(top, ~children1[node]);
+					top = push(top, ~children2[node]);
+				}
+				continue;
+			}
+			final int b = entry * 6;
+			if (!frustum.intersects(boxes[b], boxes[b + 1], boxes[b + 2], boxes[b + 3], boxes[b + 4], boxes[b + 5])) {
+				continue;
+			}
+			if (isLeaf(entry)) {
+				final Bounds bounds = models[entry].getBounds();
+				if (bounds == null || frustum.intersects(bounds)) {
+					results.add(models[entry]);
+				}
+			} else if (frustum.contains(boxes[b], boxes[b + 1], boxes[b + 2], boxes[b + 3], boxes[b + 4], boxes[b + 5])) {
+				top = push(top, ~children1[entry]);
+				top = push(top, ~children2[entry]);
+			} else {
+				top = push(top, children1[entry]);
+				top = push(top, children2[entry]);
+			}
+		}
+	}
+
+	/**
+	 * Adds the models whose box intersects the sphere to the list. The models are added in no particular order.
+	 *
+	 * @param center The center of the sphere
+	 * @param radius The radius of the sphere
+	 * @param results The list to add the models to
+	 */
+	public void querySphere(Vector3f center, float radius, List<Model> results) {
+		if (center == null) {
+			throw new IllegalArgumentException("Center cannot be null");
+		}
+		if (radius < 0) {
+			throw new IllegalArgumentException("Radius cannot be negative");
+		}
+		flush();
+		if (root == NULL_NODE) {
+			return;
+		}
+		final float x = center.getX();
+		final float y = center.getY();
+		final float z = center.getZ();
+		final float radius2 = radius * radius;
+		int top = 0;
+		stack[top++] = root;
+		while (top > 0) {
+			final int node = stack[--top];
+			final int b = node * 6;
+			if (distanceSquared(x, y, z, boxes[b], boxes[b + 1], boxes[b + 2], boxes[b + 3], boxes[b + 4], boxes[b + 5]) > radius2) {
+				continue;
+			}
+			if (isLeaf(node)) {
+				final Bounds bounds = models[node].getBounds();
+				if (bounds == null) {
+					// The vertex array bounds were cleared since the last update, the box is all there is
+					results.add(models[node]);
+					continue;
+				}
+				if (distanceSquared(x, y, z, bounds.getMinX(), bounds.getMinY(), bounds.getMinZ(), bounds.getMaxX(), bounds.getMaxY(), bounds.getMaxZ()) <= radius2) {
+					results.add(models[node]);
+				}
+			} else {
+				top = push(top, children1[node]);
+				top = push(top, children2[node]);
+			}
+		}
+	}
+
+	/**
+	 * Adds the models whose box intersects the box to the list. The models are added in no particular order.
+	 *
+	 * @param min The minimum corner of the box
+	 * @param max The maximum corner of the box
+	 * @param results The list to add the models to
+	 */
+	public void queryBox(Vector3f min, Vector3f max, List<Model> results) {
+		if (min == null || max == null) {
+			throw new IllegalArgumentException("Box corners cannot be null");
+		}
+		flush();
+		if (root == NULL_NODE) {
+			return;
+		}
+		final float minX = min.getX(), minY = min.getY(), minZ = min.getZ();
+		final float maxX = max.getX(), maxY = max.getY(), maxZ = max.getZ();
+		int top = 0;
+		stack[top++] = root;
+		while (top > 0) {
+			final int node = stack[--top];
+			final int b = node * 6;
+			if (boxes[b] > maxX || boxes[b + 1] > maxY || boxes[b + 2] > maxZ || boxes[b + 3] < minX || boxes[b + 4] < minY || boxes[b + 5] < minZ) {
+				continue;
+			}
+			if (isLeaf(node)) {
+				final Bounds bounds = models[node].getBounds();
+				if (bounds == null) {
+					results.add(models[node]);
+					continue;
+				}
+				if (bounds.getMinX() <= maxX && bounds.getMinY() <= maxY && bounds.getMinZ() <= maxZ && bounds.getMaxX() >= minX && bounds.getMaxY() >= minY && bounds.getMaxZ() >= minZ) {
+					results.add(models[node]);
+				}
+			} else {
+				top = push(top, children1[node]);
+				top = push(top, children2[node]);
+			}
+		}
+	}
+
+	/**
+	 * Adds the models whose box is hit by the ray to the list. The models are added in no particular order, not sorted by distance.
+	 *
+	 * @param origin The origin of the ray
+	 * @param direction The direction of the ray, doesn't need to be normalized
+	 * @param maxDistance The length of the ray, in multiples of the direction length
+	 * @param results The list to add the models to
+	 */
+	public void queryRay(Vector3f origin, Vector3f direction, float maxDistance, List<Model> results) {
+		if (origin == null || direction == null) {
+			throw new IllegalArgumentException("Origin and direction cannot be null");
+		}
+		if (maxDistance < 0) {
+			throw new IllegalArgumentException("Max distance cannot be negative");
+		}
+		flush();
+		if (root == NULL_NODE) {
+			return;
+		}
+		final float x = origin.getX();
+		final float y = origin.getY();
+		final float z = origin.getZ();
+		final float invX = 1 / direction.getX();
+		final float invY = 1 / direction.getY();
+		final float invZ = 1 / direction.getZ();
+		int top = 0;
+		stack[top++] = root;
+		while (top > 0) {
+			final int node = stack[--top];
+			final int b = node * 6;
+			if (!intersectsRay(x, y, z, invX, invY, invZ, maxDistance, boxes[b], boxes[b + 1], boxes[b + 2], boxes[b + 3], boxes[b + 4], boxes[b + 5])) {
+				continue;
+			}
+			if (isLeaf(node)) {
+				final Bounds bounds = models[node].getBounds();
+				if (bounds == null) {
+					results.add(models[node]);
+					continue;
+				}
+				if (intersectsRay(x, y, z, invX, invY, invZ, maxDistance, bounds.getMinX(), bounds.getMinY(), bounds.getMinZ(), bounds.getMaxX(), bounds.getMaxY(), bounds.getMaxZ())) {
+					results.add(models[node]);
+				}
+			} else {
+				top = push(top, children1[node]);
+				top = push(top, children2[node]);
+			}
+		}
+	}
+
+	// Updates the place of the moved models in the tree
+	private void flush() {
+		for (int i = 0; i < movedCount; i++) {
+			final Model model = moved[i];
+			moved[i] = null;
+			model.spatialMoved = false;
+			final Bounds bounds = model.getBounds();
+			int proxy = model.spatialProxy;
+			if (bounds == null) {
+				if (proxy != UNBOUNDED) {
+					if (proxy != NULL_NODE) {
+						removeLeaf(proxy);
+						freeNode(proxy);
+					}
+					unbounded.add(model);
+					model.spatialProxy = UNBOUNDED;
+				}
+				continue;
+			}
+			if (proxy == UNBOUNDED) {
+				unbounded.remove(model);
+				proxy = NULL_NODE;
+			}
+			final float minX = bounds.getMinX(), minY = bounds.getMinY(), minZ = bounds.getMinZ();
+			final float maxX = bounds.getMaxX(), maxY = bounds.getMaxY(), maxZ = bounds.getMaxZ();
+			if (proxy == NULL_NODE) {
+				proxy = allocateNode();
+				models[proxy] = model;
+				model.spatialProxy = proxy;
+			} else {
+				final int b = proxy * 6;
+				if (boxes[b] <= minX && boxes[b + 1] <= minY && boxes[b + 2] <= minZ && boxes[b + 3] >= maxX && boxes[b + 4] >= maxY && boxes[b + 5] >= maxZ) {
+					// Still inside its enlarged box
+					continue;
+				}
+				removeLeaf(proxy);
+			}
+			final float margin = MARGIN * Math.max(maxX - minX, Math.max(maxY - minY, maxZ - minZ));
+			final int b = proxy * 6;
+			boxes[b] = minX - margin;
+			boxes[b + 1] = minY - margin;
+			boxes[b + 2] = minZ - margin;
+			boxes[b + 3] = maxX + margin;
+			boxes[b + 4] = maxY + margin;
+			boxes[b + 5] = maxZ + margin;
+			insertLeaf(proxy);
+		}
+		movedCount = 0;
+	}
+
+	private void insertLeaf(int leaf) {
+		if (root == NULL_NODE) {
+			root = leaf;
+			parents[leaf] = NULL_NODE;
+			return;
+		}
+		final int l = leaf * 6;
+		// Find the best sibling, by the surface area heuristic
+		int node = root;
+		while (!isLeaf(node)) {
+			final int n = node * 6;
+			final float area = area(node);
+			final float combinedArea = unionArea(n, l);
+			// Cost of making a new parent for this node and the leaf
+			final float cost = 2 * combinedArea;
+			// Minimum cost of pushing the leaf further down the tree
+			final float inheritanceCost = 2 * (combinedArea - area);
+			final float cost1 = descendCost(children1[node], l) + inheritanceCost;
+			final float cost2 = descendCost(children2[node], l) + inheritanceCost;
+			if (cost < cost1 && cost < cost2) {
+				break;
+			}
+			node = cost1 < cost2 ? children1[node] : children2[node];
+		}
+		final int sibling = node;
+		final int oldParent = parents[sibling];
+		final int newParent = allocateNode();
+		parents[newParent] = oldParent;
+		union(newParent, leaf, sibling);
+		heights[newParent] = heights[sibling] + 1;
+		if (oldParent != NULL_NODE) {
+			if (children1[oldParent] == sibling) {
+				children1[oldParent] = newParent;
+			} else {
+				children2[oldParent] = newParent;
+			}
+		} else {
+			root = newParent;
+		}
+		children1[newParent] = sibling;
+		children2[newParent] = leaf;
+		parents[sibling] = newParent;
+		parents[leaf] = newParent;
+		refit(parents[leaf]);
+	}
+
+	private void removeLeaf(int leaf) {
+		if (leaf == root) {
+			root = NULL_NODE;
+			return;
+		}
+		final int parent = parents[leaf];
+		final int grandParent = parents[parent];
+		final int sibling = children1[parent] == leaf ? children2[parent] : children1[parent];
+		freeNode(parent);
+		if (grandParent != NULL_NODE) {
+			// Replace the parent by the sibling
+			if (children1[grandParent] == parent) {
+				children1[grandParent] = sibling;
+			} else {
+				children2[grandParent] = sibling;
+			}
+			parents[sibling] = grandParent;
+			refit(grandParent);
+		} else {
+			root = sibling;
+			parents[sibling] = NULL_NODE;
+		}
+	}
+
+	// Balances the ancestors starting from the node, and fixes their boxes and heights
+	private void refit(int node) {
+		while (node != NULL_NODE) {
+			node = balance(node);
+			final int child1 = children1[node];
+			final int child2 = children2[node];
+			heights[node] = 1 + Math.max(heights[child1], heights[child2]);
+			union(node, child1, child2);
+			node = parents[node];
+		}
+	}
+
+	// Rotates the child with the highest subtree up if the node is imbalanced, returns the new root of the subtree
+	private int balance(int a) {
+		if (isLeaf(a) || heights[a] < 2) {
+			return a;
+		}
+		final int b = children1[a];
+		final int c = children2[a];
+		final int balance = heights[c] - heights[b];
+		if (balance > 1) {
+			// Rotate c up
+			final int f = children1[c];
+			final int g = children2[c];
+			children1[c] = a;
+			replaceChild(parents[a], a, c);
+			parents[a] = c;
+			if (heights[f] > heights[g]) {
+				children2[c] = f;
+				children2[a] = g;
+				parents[g] = a;
+				union(a, b, g);
+				union(c, a, f);
+				heights[a] = 1 + Math.max(heights[b], heights[g]);
+				heights[c] = 1 + Math.max(heights[a], heights[f]);
+			} else {
+				children2[c] = g;
+				children2[a] = f;
+				parents[f] = a;
+				union(a, b, f);
+				union(c, a, g);
+				heights[a] = 1 + Math.max(heights[b], heights[f]);
+				heights[c] = 1 + Math.max(heights[a], heights[g]);
+			}
+			return c;
+		}
+		if (balance < -1) {
+			// Rotate b up
+			final int d = children1[b];
+			final int e = children2[b];
+			children1[b] = a;
+			replaceChild(parents[a], a, b);
+			parents[a] = b;
+			if (heights[d] > heights[e]) {
+				children2[b] = d;
+				children1[a] = e;
+				parents[e] = a;
+				union(a, c, e);
+				union(b, a, d);
+				heights[a] = 1 + Math.max(heights[c], heights[e]);
+				heights[b] = 1 + Math.max(heights[a], heights[d]);
+			} else {
+				children2[b] = e;
+				children1[a] = d;
+				parents[d] = a;
+				union(a, c, d);
+				union(b, a, e);
+				heights[a] = 1 + Math.max(heights[c], heights[d]);
+				heights[b] = 1 + Math.max(heights[a], heights[e]);
+			}
+			return b;
+		}
+		return a;
+	}
+
+	// Makes the new child take the place of the old one under the parent, or at the root if there's no parent
+	private void replaceChild(int parent, int oldChild, int newChild) {
+		parents[newChild] = parent;
+		if (parent == NULL_NODE) {
+			root = newChild;
+		} else if (children1[parent] == oldChild) {
+			children1[parent] = newChild;
+		} else {
+			children2[parent] = newChild;
+		}
+	}
+
+	// Cost of descending into the child to insert the leaf
+	private float descendCost(int child, int l) {
+		final float combinedArea = unionArea(child * 6, l);
+		return isLeaf(child) ? combinedArea : combinedArea - area(child);
+	}
+
+	private int push(int top, int node) {
+		if (top == stack.length) {
+			stack = Arrays.copyOf(stack, top * 2);
+		}
+		stack[top] = node;
+		return top + 1;
+	}
+
+	private boolean isLeaf(int node) {
+		return children1[node] == NULL_NODE;
+	}
+
+	// Half of the surface area of the box of the node
+	private float area(int node) {
+		final int n = node * 6;
+		final float x = boxes[n + 3] - boxes[n];
+		final float y = boxes[n + 4] - boxes[n + 1];
+		final float z = boxes[n + 5] - boxes[n + 2];
+		return x * y + y * z + z * x;
+	}
+
+	// Half of the surface area of the union of the boxes at the offsets
+	private float unionArea(int b1, int b2) {
+		final float x = Math.max(boxes[b1 + 3], boxes[b2 + 3]) - Math.min(boxes[b1], boxes[b2]);
+		final float y = Math.max(boxes[b1 + 4], boxes[b2 + 4]) - Math.min(boxes[b1 + 1], boxes[b2 + 1]);
+		final float z = Math.max(boxes[b1 + 5], boxes[b2 + 5]) - Math.min(boxes[b1 + 2], boxes[b2 + 2]);
+		return x * y + y * z + z * x;
+	}
+
+	// Sets the box of the node to the union of the boxes of the two others
+	private void union(int node, int node1, int node2) {
+		final int n = node * 6;
+		final int n1 = node1 * 6;
+		final int n2 = node2 * 6;
+		for (int i = 0; i < 3; i++) {
+			boxes[n + i] = Math.min(boxes[n1 + i], boxes[n2 + i]);
+			boxes[n + i + 3] = Math.max(boxes[n1 + i + 3], boxes[n2 + i + 3]);
+		}
+	}
+
+	private int allocateNode() {
+		if (freeList == NULL_NODE) {
+			allocate(capacity * 2);
+		}
+		final int node = freeList;
+		freeList = parents[node];
+		parents[node] = NULL_NODE;
+		children1[node] = NULL_NODE;
+		children2[node] = NULL_NODE;
+		heights[node] = 0;
+		return node;
+	}
+
+	private void freeNode(int node) {
+		models[node] = null;
+		children1[node] = NULL_NODE;
+		parents[node] = freeList;
+		freeList = node;
+	}
+
+	// Grows the node arrays to the new capacity, and chains the new nodes in the free list
+	private void allocate(int newCapacity) {
+		final int oldCapacity = capacity;
+		if (boxes == null) {
+			boxes = new float[newCapacity * 6];
+			parents = new int[newCapacity];
+			children1 = new int[newCapacity];
+			children2 = new int[newCapacity];
+			heights = new int[newCapacity];
+			models = new Model[newCapacity];
+		} else {
+			boxes = Arrays.copyOf(boxes, newCapacity * 6);
+			parents = Arrays.copyOf(parents, newCapacity);
+			children1 = Arrays.copyOf(children1, newCapacity);
+			children2 = Arrays.copyOf(children2, newCapacity);
+			heights = Arrays.copyOf(heights, newCapacity);
+			models = Arrays.copyOf(models, newCapacity);
+		}
+		capacity = newCapacity;
+		for (int i = oldCapacity; i < newCapacity - 1; i++) {
+			parents[i] = i + 1;
+		}
+		parents[newCapacity - 1] = freeList;
+		freeList = oldCapacity;
+	}
+
+	private static void release(Model model) {
+		model.spatialIndex = null;
+		model.spatialProxy = NULL_NODE;
+		model.spatialMoved = false;
+	}
+
+	// Squared distance from the point to the box, zero if inside
+	private static float distanceSquared(float x, float y, float z, float minX, float minY, float minZ, float maxX, float maxY, float maxZ) {
+		final float dx = Math.max(0, Math.max(minX - x, x - maxX));
+		final float dy = Math.max(0, Math.max(minY - y, y - maxY));
+		final float dz = Math.max(0, Math.max(minZ - z, z - maxZ));
+		return dx * dx + dy * dy + dz * dz;
+	}
+
+	// Slab test of the ray against the box
+	private static boolean intersectsRay(float x, float y, float z, float invX, float invY, float invZ, float maxDistance, float minX, float minY, float minZ, float maxX, float maxY, float maxZ) {
+		float near = 0;
+		float far = maxDistance;
+		// For the axes the ray is parallel to, the origin must be between the slab planes
+		if (Float.isInfinite(invX)) {
+			if (x < minX || x > maxX) {
+				return false;
+			}
+		} else {
+			final float t1 = (minX - x) * invX;
+			final float t2 = (maxX - x) * invX;
+			near = Math.max(near, Math.min(t1, t2));
+			far = Math.min(far, Math.max(t1, t2));
+		}
+		if (Float.isInfinite(invY)) {
+			if (y < minY || y > maxY) {
+				return false;
+			}
+		} else {
+			final float t1 = (minY - y) * invY;
+			final float t2 = (maxY - y) * invY;
+			near = Math.max(near, Math.min(t1, t2));
+			far = Math.min(far, Math.max(t1, t2));
+		}
+		if (Float.isInfinite(invZ)) {
+			if (z < minZ || z > maxZ) {
+				return false;
+			}
+		} else {
+			final float t1 = (minZ - z) * invZ;
+			final float t2 = (maxZ - z) * invZ;
+			near = Math.max(near, Math.min(t1, t2));
+			far = Math.min(far, Math.max(t1, t2));
+		}
+		return near <= far;
+	}
+}
@@ -82,6 +82,8 @@ public class StringModel extends Model {
 	private final float worldLineHeight;
 	private String rawString;
 	private String string;
+	// The offset of each glyph of the string, computed when it's set
+	private Vector2f[] offsets;
 	private final TIntObjectMap<Color> colorIndices = new TIntObjectHashMap<>();
 
 	/**
@@ -160,6 +162,8 @@ public class StringModel extends Model {
 		final VertexArray vertexArray = generateMesh(factory, glyphs, windowWidth, widths, width, height);
 		// Only render one glyph per render call
 		vertexArray.setIndicesCount(GLYPH_INDEX_COUNT);
+		// The glyphs are moved by the shader, so the bounds of the mesh don't apply
+		vertexArray.setBounds(null);
 		// Set the vertex array
 		setVertexArray(vertexArray);
 	}
@@ -167,23 +171,22 @@ public class StringModel extends Model {
 	@Override
 	public void render() {
 		final Program program = getMaterial().getProgram();
-		program.setUniform("fontColor", Color.WHITE);
+		// Resolve the uniform handles once for all the glyphs
+		final int fontColorHandle = program.getUniformHandle("fontColor");
+		final int glyphOffsetHandle = program.getUniformHandle("glyphOffset");
+		program.setUniform(fontColorHandle, Color.WHITE);
 		final VertexArray vertexArray = getVertexArray();
-		// Remove the padding for the first glyph
-		Vector2f offset = new Vector2f(-worldGlyphPadding, 0);
-		final char[] glyphs = string.toCharArray();
-		for (int i = 0; i < glyphs.length; i++) {
-			final char glyph = glyphs[i];
-			// Move the glyph offset to the next line for the new line character
+		for (int i = 0; i < offsets.length; i++) {
+			final char glyph = string.charAt(i);
+			// Nothing to render for the new line character
 			if (glyph == '\n') {
-				offset = new Vector2f(-worldGlyphPadding, offset.getY() - worldLineHeight);
 				continue;
 			}
 			// Look for a color code
 			final Color color = colorIndices.get(i);
 			if (color != null) {
 				// Upload the color
-				program.setUniform("fontColor", color);
+				program.setUniform(fontColorHandle, color);
 			}
 			// Get the glyph start index
 			final int glyphIndex = glyphIndexes.get(glyph);
@@ -194,9 +197,7 @@ public class StringModel extends Model {
 			// Set rendering indices offset for the glyph
 			vertexArray.setIndicesOffset(glyphIndex);
 			// Offset the glyph in the string
-			program.setUniform("glyphOffset", offset);
-			// Offset for the next glyph
-			offset = offset.add(glyphOffsets.get(glyph), 0);
+			program.setUniform(glyphOffsetHandle, offsets[i]);
 			// Render the model
 			vertexArray.draw();
 		}
@@ -232,6 +233,21 @@ public class StringModel extends Model {
 		}
 		// Color code free string
 		this.string = stringBuilder.toString();
+		// Compute the glyph offsets once, instead of on each render
+		offsets = new Vector2f[this.string.length()];
+		// Remove the padding for the first glyph
+		Vector2f offset = new Vector2f(-worldGlyphPadding, 0);
+		for (int i = 0; i < offsets.length; i++) {
+			final char glyph = this.string.charAt(i);
+			offsets[i] = offset;
+			// Move the glyph offset to the next line for the new line character
+			if (glyph == '\n') {
+				offset = new Vector2f(-worldGlyphPadding, offset.getY() - worldLineHeight);
+			} else if (glyphIndexes.containsKey(glyph)) {
+				// Offset for the next glyph, glyphs missing in the texture are skipped
+				offset = offset.add(glyphOffsets.get(glyph), 0);
+			}
+		}
 	}
 
 	/**
@@ -0,0 +1,264 @@
+/*
+ * This file is part of Caustic.
+ *
+ * Copyright (c) 2013 Spout LLC <http://www.spout.org/>
+ * Caustic is licensed under the Spout License Version 1.
+ *
+ * Caustic is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the Free
+ * Software Foundation, either version 3 of the License, or (at your option)
+ * any later version.
+ *
+ * In addition, 180 days after any changes are published, you can use the
+ * software, incorporating those changes, under the terms of the MIT license,
+ * as described in the Spout License Version 1.
+ *
+ * Caustic is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE.  See the GNU Lesser General Public License for
+ * more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License,
+ * the MIT license and the Spout License Version 1 along with this program.
+ * If not, see <http://www.gnu.org/licenses/> for the GNU Lesser General Public
+ * License and see <http://spout.in/licensev1> for the full license, including
+ * the MIT license.
+ */
+package org.spout.renderer.util;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A pool of direct byte buffers, for temporary buffers that are used for a short time and then released, such as those used to upload data to the GPU. Direct buffers are slow to allocate and are only
+ * freed when the garbage collector runs, so reusing them is a lot cheaper than allocating new ones.
+ * <p/>
+ * Requests are rounded up to a power of two size class, from {@link #MIN_CLASS_SIZE} to {@link #MAX_CLASS_SIZE}. Small classes are carved out of larger slabs to reduce the number of direct
+ * allocations. Each thread keeps a few released buffers per class for itself, which are reused before the buffers shared between threads. Requests larger than the biggest class are allocated
+ * exactly and aren't pooled.
+ * <p/>
+ * Acquired buffers are in native order, with a position of zero and a limit equal to the requested size. Their capacity can be larger. Their content is undefined. A buffer must not be used after it
+ * has been released, and must be released at most once.
+ * <p/>
+ * Each thread also has a {@link ScratchArena} for buffers that only live until the end of the frame, see {@link #getFrameArena()}.
+ */
+public class BufferPool {
+	/**
+	 * The smallest size class, in bytes.
+	 */
+	public static final int MIN_CLASS_SIZE = 64;
+	/**
+	 * The largest size class, in bytes. Bigger requests aren't pooled.
+	 */
+	public static final int MAX_CLASS_SIZE = 1 << 20;
+	private static final int MIN_CLASS_SHIFT = Integer.numberOfTrailingZeros(MIN_CLASS_SIZE);
+	private static final int CLASS_COUNT = Integer.numberOfTrailingZeros(MAX_CLASS_SIZE) - MIN_CLASS_SHIFT + 1;
+	private static final int SLAB_SIZE = 64 * 1024;
+	private static final int LOCAL_CACHE_SIZE = 4;
+	private final Queue<ByteBuffer>[] shared;
+	private final ThreadLocal<LocalCache> localCaches = new ThreadLocal<LocalCache>() {
+		@Override
+		protected LocalCache initialValue() {
+			return new LocalCache();
+		}
+	};
+	private final ThreadLocal<ScratchArena> frameArenas = new ThreadLocal<ScratchArena>() {
+		@Override
+		protected ScratchArena initialValue() {
+			return new ScratchArena(BufferPool.this);
+		}
+	};
+	private final AtomicLong hits = new AtomicLong();
+	private final AtomicLong misses = new AtomicLong();
+	private final AtomicLong bytesOutstanding = new AtomicLong();
+	private final AtomicLong highWaterMark = new AtomicLong();
+
+	/**
+	 * Constructs a new empty pool.
+	 */
+	@SuppressWarnings({"unchecked", "rawtypes"})
+	public BufferPool() {
+		shared = new Queue[CLASS_COUNT];
+		for (int i = 0; i < CLASS_COUNT; i++) {
+			shared[i] = new ConcurrentLinkedQueue<>();
+		}
+	}
+
+	/**
+	 * Acquires a buffer of at least the desired size from the pool. The buffer should be released with {@link #release(java.nio.ByteBuffer)} when it isn't needed anymore.
+	 *
+	 * @param size The size in bytes
+	 * @return The buffer, with the limit set to the size
+	 */
+	public ByteBuffer acquire(int size) {
+		if (size < 0) {
+			throw new IllegalArgumentException("Size cannot be negative");
+		}
+		final ByteBuffer buffer;
+		if (size > MAX_CLASS_SIZE) {
+			misses.incrementAndGet();
+			buffer = ByteBuffer.allocateDirect(size);
+		} else {
+			final int sizeClass = getSizeClass(size);
+			final ByteBuffer pooled = poll(sizeClass);
+			if (pooled != null) {
+				hits.incrementAndGet();
+				buffer = pooled;
+			} else {
+				misses.incrementAndGet();
+				buffer = allocate(sizeClass);
+			}
+		}
+		addOutstanding(buffer.capacity());
+		buffer.clear();
+		buffer.limit(size);
+		return buffer.order(ByteOrder.nativeOrder());
+	}
+
+	/**
+	 * Releases a buffer acquired from this pool, making it available to the next acquisitions. The pool doesn't keep track of the buffers it handed out, so only buffers that can't have come from a
+	 * pool are detected. Other buffers are adopted by the pool, and must not be used by the caller anymore either.
+	 *
+	 * @param buffer The buffer to release
+	 * @throws IllegalArgumentException If the buffer isn't direct, or its capacity isn't one of the size classes while not being larger than the biggest one
+	 */
+	public void release(ByteBuffer buffer) {
+		if (buffer == null) {
+			throw new IllegalArgumentException("Buffer cannot be null");
+		}
+		final int capacity = buffer.capacity();
+		if (!buffer.isDirect() || capacity <= MAX_CLASS_SIZE && (capacity < MIN_CLASS_SIZE || Integer.bitCount(capacity) != 1)) {
+			throw new IllegalArgumentException("Buffer wasn't acquired from a pool");
+		}
+		addOutstanding(-capacity);
+		if (capacity > MAX_CLASS_SIZE) {
+			// Not pooled, let the GC free it
+			return;
+		}
+		final int sizeClass = getSizeClass(capacity);
+		if (!localCaches.get().offer(sizeClass, buffer)) {
+			shared[sizeClass].offer(buffer);
+		}
+	}
+
+	/**
+	 * Returns the scratch arena of the current thread. Buffers allocated from it are valid until the arena is reset, which the contexts do when updating the display.
+	 *
+	 * @return The frame arena for the current thread
+	 */
+	public ScratchArena getFrameArena() {
+		return frameArenas.get();
+	}
+
+	/**
+	 * Returns the number of acquisitions that reused a pooled buffer.
+	 *
+	 * @return The number of hits
+	 */
+	public long getHits() {
+		return hits.get();
+	}
+
+	/**
+	 * Returns the number of acquisitions that required a new allocation.
+	 *
+	 * @return The number of misses
+	 */
+	public long getMisses() {
+		return misses.get();
+	}
+
+	/**
+	 * Returns the total capacity in bytes of the buffers that have been acquired and not yet released.
+	 *
+	 * @return The outstanding bytes
+	 */
+	public long getBytesOutstanding() {
+		return bytesOutstanding.get();
+	}
+
+	/**
+	 * Returns the highest value the outstanding bytes have reached since the pool was created, or since the statistics were last reset.
+	 *
+	 * @return The high-water mark in bytes
+	 */
+	public long getHighWaterMark() {
+		return highWaterMark.get();
+	}
+
+	/**
+	 * Resets the hit and miss counts to zero, and the high-water mark to the current outstanding bytes.
+	 */
+	public void resetStatistics() {
+		hits.set(0);
+		misses.set(0);
+		highWaterMark.set(bytesOutstanding.get());
+	}
+
+	private ByteBuffer poll(int sizeClass) {
+		final ByteBuffer buffer = localCaches.get().poll(sizeClass);
+		if (buffer != null) {
+			return buffer;
+		}
+		return shared[sizeClass].poll();
+	}
+
+	private ByteBuffer allocate(int sizeClass) {
+		final int classSize = MIN_CLASS_SIZE << sizeClass;
+		if (classSize >= SLAB_SIZE) {
+			return ByteBuffer.allocateDirect(classSize);
+		}
+		// Carve a slab into buffers of the class size, keep the first and share the others
+		final ByteBuffer slab = ByteBuffer.allocateDirect(SLAB_SIZE);
+		final Queue<ByteBuffer> queue = shared[sizeClass];
+		for (int position = classSize; position < SLAB_SIZE; position += classSize) {
+			slab.limit(position + classSize).position(position);
+			queue.offer(slab.slice());
+		}
+		slab.clear().limit(classSize);
+		return slab.slice();
+	}
+
+	private void addOutstanding(long bytes) {
+		final long outstanding = bytesOutstanding.addAndGet(bytes);
+		long high;
+		while (outstanding > (high = highWaterMark.get()) && !highWaterMark.compareAndSet(high, outstanding)) {
+		}
+	}
+
+	private static int getSizeClass(int size) {
+		if (size <= MIN_CLASS_SIZE) {
+			return 0;
+		}
+		return 32 - Integer.numberOfLeadingZeros(size - 1) - MIN_CLASS_SHIFT;
+	}
+
+	private static class LocalCache {
+		private final ByteBuffer[][] buffers = new ByteBuffer[CLASS_COUNT][LOCAL_CACHE_SIZE];
+		private final int[] counts = new int[CLASS_COUNT];
+
+		private ByteBuffer poll(int sizeClass) {
+			final int count = counts[sizeClass];
+			if (count == 0) {
+				return null;
+			}
+			final ByteBuffer buffer = buffers[sizeClass][count - 1];
+			buffers[sizeClass][count - 1] = null;
+			counts[sizeClass] = count - 1;
+			return buffer;
+		}
+
+		private boolean offer(int sizeClass, ByteBuffer buffer) {
+			final int count = counts[sizeClass];
+			if (count == LOCAL_CACHE_SIZE) {
+				return false;
+			}
+			buffers[sizeClass][count] = buffer;
+			counts[sizeClass] = count + 1;
+			return true;
+		}
+	}
+}
@@ -35,6 +35,7 @@ import java.nio.DoubleBuffer;
 import java.nio.FloatBuffer;
 import java.nio.IntBuffer;
 import java.nio.ShortBuffer;
+import java.util.concurrent.ForkJoinPool;
 
 import gnu.trove.list.TFloatList;
 import gnu.trove.list.TIntList;
@@ -49,9 +50,29 @@ import org.spout.renderer.gl.Texture.Format;
  * Utility methods for rendering.
  */
 public final class CausticUtil {
+	private static final BufferPool BUFFER_POOL = new BufferPool();
+
 	private CausticUtil() {
 	}
 
+	/**
+	 * Returns the shared pool for temporary direct buffers. Buffers acquired from it should be released to it once they aren't needed anymore.
+	 *
+	 * @return The buffer pool
+	 */
+	public static BufferPool getBufferPool() {
+		return BUFFER_POOL;
+	}
+
+	/**
+	 * Returns the shared fork-join pool used by the utilities that split their work across threads. It is created on first use, with one thread per available processor.
+	 *
+	 * @return The fork-join pool
+	 */
+	public static ForkJoinPool getForkJoinPool() {
+		return PoolHolder.POOL;
+	}
+
 	/**
 	 * Checks if two OpenGL versioned object have the same version. Throws an exception if that's not the case.
 	 *
@@ -143,7 +164,8 @@ public final class CausticUtil {
 	}
 
 	/**
-	 * Creates a byte buffer of the desired capacity.
+	 * Creates a byte buffer of the desired capacity. The buffer isn't pooled and belongs to the caller, use this for buffers that are kept around. Temporary buffers should come from {@link
+	 * #getBufferPool()} instead.
 	 *
 	 * @param capacity The capacity
 	 * @return The byte buffer
@@ -208,7 +230,7 @@ public final class CausticUtil {
 
 	/**
 	 * Generate the normals for the positions, according to the indices. This assumes that the positions have 3 components, in the x, y, z order. The normals are stored as a 3 component vector, in the x,
-	 * y, z order.
+	 * y, z order. For large meshes, see {@link NormalGenerator}, which works on arrays and buffers in parallel.
 	 *
 	 * @param positions The position components
 	 * @param indices The indices
@@ -301,7 +323,7 @@ public final class CausticUtil {
 	/**
 	 * Generate the tangents for the positions, normals and texture coords, according to the indices. This assumes that the positions and normals have 3 components, in the x, y, z order, and that the
 	 * texture coords have 2, in the u, v (or s, t) order. The tangents are stored as a 4 component vector, in the x, y, z, w order. The w component represents the handedness for the bi-tangent
-	 * computation, which must be computed with B = T_w * (N x T).
+	 * computation, which must be computed with B = T_w * (N x T). For large meshes, see {@link NormalGenerator}, which works on arrays and buffers in parallel.
 	 *
 	 * @param positions The position components
 	 * @param normals The normal components
@@ -444,4 +466,8 @@ public final class CausticUtil {
 			tangents.set(tan + 3, h);
 		}
 	}
+
+	private static final class PoolHolder {
+		private static final ForkJoinPool POOL = new ForkJoinPool();
+	}
 }
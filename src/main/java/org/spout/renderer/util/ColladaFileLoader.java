@@ -28,13 +28,23 @@ package org.spout.renderer.util;
 
 import java.io.IOException;
 import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
 import javax.xml.parsers.DocumentBuilder;
 import javax.xml.parsers.DocumentBuilderFactory;
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
 import javax.xml.xpath.XPath;
 import javax.xml.xpath.XPathConstants;
 import javax.xml.xpath.XPathExpression;
@@ -53,11 +63,15 @@ import org.w3c.dom.NodeList;
 import org.xml.sax.SAXException;
 
 import org.spout.math.vector.Vector3f;
+import org.spout.renderer.data.VertexData;
 
 /**
  * A static loading class for the COLLADA file format (.dae). This class has the capability to load mesh data such as positions, texture coordinates, and normals.
  * All models should be triangulated. Apart from geometry, the COLLADA file format also allows for joint descriptions as well as animation descriptions. COLLADA
  * also allows for physical properties to be assigned to a model which can be loaded by this class as well.
+ * <p/>
+ * {@link #loadMesh(java.io.InputStream, gnu.trove.list.TFloatList, gnu.trove.list.TFloatList, gnu.trove.list.TFloatList, gnu.trove.list.TIntList)} builds a DOM of the whole file and only loads
+ * the first mesh. {@link #loadGeometries(java.io.InputStream)} streams the file instead, keeping only the number arrays of the current mesh, and loads all the meshes.
  */
 public final class ColladaFileLoader {
 	private static final Logger logger = Logger.getLogger("Caustic");
@@ -67,12 +81,24 @@ public final class ColladaFileLoader {
 	public static final String SEMANTIC_POSITION = "POSITION";
 	public static final String ELEMENT_MESH = "mesh";
 	public static final String ELEMENT_TRIANGLES = "triangles";
+	public static final String ELEMENT_POLYLIST = "polylist";
+	public static final String ELEMENT_VERTEX_COUNTS = "vcount";
+	public static final String ELEMENT_GEOMETRY = "geometry";
+	public static final String ELEMENT_SOURCE = "source";
+	public static final String ELEMENT_ACCESSOR = "accessor";
+	public static final String ELEMENT_VERTICES = "vertices";
 	public static final String ELEMENT_INDICES = "p";
 	public static final String ELEMENT_INPUT = "input";
 	public static final String ELEMENT_FLOAT_ARRAY = "float_array";
 	public static final String ATTRIBUTE_SEMANTIC = "semantic";
 	public static final String ATTRIBUTE_SOURCE = "source";
 	public static final String ATTRIBUTE_OFFSET = "offset";
+	public static final String ATTRIBUTE_ID = "id";
+	public static final String ATTRIBUTE_NAME = "name";
+	public static final String ATTRIBUTE_COUNT = "count";
+	public static final String ATTRIBUTE_STRIDE = "stride";
+	public static final String ATTRIBUTE_SET = "set";
+	public static final String ATTRIBUTE_MATERIAL = "material";
 	public static final String ARRAY_SEPARATOR = " ";
 	public static final int STEP_TEXCOORD = 2;
 	public static final int STEP_NORMAL = 3;
@@ -264,6 +290,564 @@ public final class ColladaFileLoader {
 		}
 	}
 
+	/**
+	 * Loads all the meshes of the .dae file, streaming it with StAX. Sources are indexed by ID as they are read, and the number arrays are parsed directly from the characters of the document into
+	 * primitive arrays. Only the arrays of the mesh being read are kept, so the memory used stays close to the size of the output. The input stream is closed after loading. <p/> Each mesh becomes a
+	 * {@link Geometry} with a unique vertex for each combination of position, normal and texture coord indices. The vertex data has a float attribute named "positions" at index 0, followed by
+	 * "normals" and then "textureCoords" if the mesh has any, at the next indices. Both "triangles" and "polylist" primitives are supported, the polygons of the latter are triangulated as fans. Each
+	 * primitive is described by a range of the indices. Only the first texture coord set is loaded.
+	 *
+	 * @param in The input stream to load the data from
+	 * @return The geometries, in document order
+	 * @throws MalformedColladaFileException If the file isn't valid XML, or if a mesh is invalid
+	 */
+	public static List<Geometry> loadGeometries(InputStream in) {
+		try (InputStream input = in) {
+			final XMLInputFactory factory = XMLInputFactory.newInstance();
+			factory.setProperty(XMLInputFactory.SUPPORT_DTD, false);
+			final XMLStreamReader reader = factory.createXMLStreamReader(input);
+			try {
+				return new GeometryReader().read(reader);
+			} finally {
+				reader.close();
+			}
+		} catch (XMLStreamException ex) {
+			throw new MalformedColladaFileException("The specified Collada file is not valid XML.", ex);
+		} catch (IOException ex) {
+			throw new MalformedColladaFileException("Error reading from input stream.", ex);
+		}
+	}
+
+	/**
+	 * Reads the geometries from the stream, keeping the state of the current mesh.
+	 */
+	private static final class GeometryReader {
+		private final List<Geometry> geometries = new ArrayList<>();
+		private final NumberReader numbers = new NumberReader();
+		// State of the current mesh
+		private final Map<String, float[]> arrays = new HashMap<>();
+		private final Map<String, Source> sources = new HashMap<>();
+		private final Map<String, List<Input>> vertices = new HashMap<>();
+		private final List<Primitive> primitives = new ArrayList<>();
+		private String geometryID;
+		private String geometryName;
+		private boolean inMesh = false;
+		private Source currentSource;
+		private List<Input> currentVertices;
+		private Primitive currentPrimitive;
+		private String currentArrayID;
+		private String readingElement;
+
+		private List<Geometry> read(XMLStreamReader reader) throws XMLStreamException {
+			while (reader.hasNext()) {
+				switch (reader.next()) {
+					case XMLStreamConstants.START_ELEMENT:
+						startElement(reader);
+						break;
+					case XMLStreamConstants.CHARACTERS:
+					case XMLStreamConstants.CDATA:
+						if (readingElement != null) {
+							numbers.read(reader.getTextCharacters(), reader.getTextStart(), reader.getTextLength());
+						}
+						break;
+					case XMLStreamConstants.END_ELEMENT:
+						endElement(reader.getLocalName());
+						break;
+				}
+			}
+			return geometries;
+		}
+
+		private void startElement(XMLStreamReader reader) {
+			final String element = reader.getLocalName();
+			if (element.equals(ELEMENT_GEOMETRY)) {
+				geometryID = reader.getAttributeValue(null, ATTRIBUTE_ID);
+				geometryName = reader.getAttributeValue(null, ATTRIBUTE_NAME);
+			} else if (element.equals(ELEMENT_MESH)) {
+				inMesh = true;
+			} else if (!inMesh) {
+				return;
+			} else if (element.equals(ELEMENT_SOURCE)) {
+				currentSource = new Source();
+				sources.put(reader.getAttributeValue(null, ATTRIBUTE_ID), currentSource);
+			} else if (element.equals(ELEMENT_FLOAT_ARRAY)) {
+				currentArrayID = reader.getAttributeValue(null, ATTRIBUTE_ID);
+				startNumbers(element, true, reader.getAttributeValue(null, ATTRIBUTE_COUNT));
+			} else if (element.equals(ELEMENT_ACCESSOR) && currentSource != null) {
+				currentSource.arrayID = stripReference(reader.getAttributeValue(null, ATTRIBUTE_SOURCE));
+				final String stride = reader.getAttributeValue(null, ATTRIBUTE_STRIDE);
+				currentSource.stride = stride == null ? 1 : Integer.parseInt(stride);
+			} else if (element.equals(ELEMENT_VERTICES)) {
+				currentVertices = new ArrayList<>();
+				vertices.put(reader.getAttributeValue(null, ATTRIBUTE_ID), currentVertices);
+			} else if (element.equals(ELEMENT_TRIANGLES) || element.equals(ELEMENT_POLYLIST)) {
+				currentPrimitive = new Primitive(reader.getAttributeValue(null, ATTRIBUTE_MATERIAL), element.equals(ELEMENT_POLYLIST));
+			} else if (element.equals(ELEMENT_INPUT)) {
+				final String offset = reader.getAttributeValue(null, ATTRIBUTE_OFFSET);
+				final String set = reader.getAttributeValue(null, ATTRIBUTE_SET);
+				final Input input = new Input(reader.getAttributeValue(null, ATTRIBUTE_SEMANTIC), stripReference(reader.getAttributeValue(null, ATTRIBUTE_SOURCE)),
+						offset == null ? 0 : Integer.parseInt(offset), set == null ? 0 : Integer.parseInt(set));
+				if (currentPrimitive != null) {
+					currentPrimitive.inputs.add(input);
+				} else if (currentVertices != null) {
+					currentVertices.add(input);
+				}
+			} else if (currentPrimitive != null && (element.equals(ELEMENT_INDICES) || element.equals(ELEMENT_VERTEX_COUNTS))) {
+				startNumbers(element, false, currentPrimitive.polylist ? null : reader.getAttributeValue(null, ATTRIBUTE_COUNT));
+			}
+		}
+
+		private void startNumbers(String element, boolean floats, String count) {
+			readingElement = element;
+			int capacity = 1024;
+			if (count != null) {
+				capacity = Integer.parseInt(count);
+				if (!floats) {
+					// The triangle count, indices are given for each input and corner
+					capacity *= 3 * Math.max(1, currentPrimitive.inputs.size());
+				}
+			}
+			numbers.start(floats, capacity);
+		}
+
+		private void endElement(String element) {
+			if (element.equals(readingElement)) {
+				readingElement = null;
+				if (element.equals(ELEMENT_FLOAT_ARRAY)) {
+					arrays.put(currentArrayID, numbers.toFloats());
+				} else if (element.equals(ELEMENT_INDICES)) {
+					currentPrimitive.indices = numbers.toInts();
+				} else {
+					currentPrimitive.vertexCounts = numbers.toInts();
+				}
+			} else if (element.equals(ELEMENT_SOURCE)) {
+				currentSource = null;
+			} else if (element.equals(ELEMENT_VERTICES)) {
+				currentVertices = null;
+			} else if (element.equals(ELEMENT_TRIANGLES) || element.equals(ELEMENT_POLYLIST)) {
+				if (currentPrimitive.indices != null) {
+					primitives.add(currentPrimitive);
+				}
+				currentPrimitive = null;
+			} else if (element.equals(ELEMENT_MESH)) {
+				geometries.add(buildGeometry());
+				// Only keep the output
+				arrays.clear();
+				sources.clear();
+				vertices.clear();
+				primitives.clear();
+				inMesh = false;
+			}
+		}
+
+		private Geometry buildGeometry() {
+			final VertexData data = new VertexData();
+			final TIntList indices = data.getIndices();
+			final List<Geometry.Range> ranges = new ArrayList<>();
+			VertexTable table = null;
+			String positionsSource = null;
+			String normalsSource = null;
+			String textureCoordsSource = null;
+			for (Primitive primitive : primitives) {
+				// Find the offsets of the inputs in the indices, the position, and maybe others, come from the vertices
+				int vertexOffset = -1;
+				int normalOffset = -1;
+				int textureCoordOffset = -1;
+				int textureCoordSet = Integer.MAX_VALUE;
+				int stride = 0;
+				String primitivePositions = null;
+				String primitiveNormals = null;
+				String primitiveTextureCoords = null;
+				for (Input input : primitive.inputs) {
+					stride = Math.max(stride, input.offset + 1);
+					switch (input.semantic) {
+						case SEMANTIC_VERTEX:
+							vertexOffset = input.offset;
+							final List<Input> vertexInputs = vertices.get(input.source);
+							if (vertexInputs == null) {
+								throw new MalformedColladaFileException("Missing vertices \"" + input.source + "\"");
+							}
+							for (Input vertexInput : vertexInputs) {
+								switch (vertexInput.semantic) {
+									case SEMANTIC_POSITION:
+										primitivePositions = vertexInput.source;
+										break;
+									case SEMANTIC_NORMAL:
+										primitiveNormals = vertexInput.source;
+										break;
+									case SEMANTIC_TEXCOORD:
+										primitiveTextureCoords = vertexInput.source;
+										break;
+								}
+							}
+							break;
+						case SEMANTIC_NORMAL:
+							normalOffset = input.offset;
+							primitiveNormals = input.source;
+							break;
+						case SEMANTIC_TEXCOORD:
+							if (input.set < textureCoordSet) {
+								textureCoordSet = input.set;
+								textureCoordOffset = input.offset;
+								primitiveTextureCoords = input.source;
+							}
+							break;
+					}
+				}
+				if (vertexOffset == -1 || primitivePositions == null) {
+					throw new MalformedColladaFileException("Collada file is missing position data.");
+				}
+				if (table == null) {
+					positionsSource = primitivePositions;
+					normalsSource = primitiveNormals;
+					textureCoordsSource = primitiveTextureCoords;
+					table = new VertexTable(primitive.indices.length / stride / 2);
+				} else if (!primitivePositions.equals(positionsSource) || !equals(primitiveNormals, normalsSource) || !equals(primitiveTextureCoords, textureCoordsSource)) {
+					throw new MalformedColladaFileException("The primitives of a mesh must share the same sources");
+				}
+				final int positionCount = getElementCount(positionsSource);
+				final int normalCount = getElementCount(normalsSource);
+				final int textureCoordCount = getElementCount(textureCoordsSource);
+				// Triangulate the polygons as fans
+				final int firstIndex = indices.size();
+				final int[] rawIndices = primitive.indices;
+				final int cornerCount = rawIndices.length / stride;
+				int corner = 0;
+				int polygon = 0;
+				while (corner < cornerCount) {
+					final int polygonSize = primitive.polylist ? getVertexCount(primitive, polygon++) : 3;
+					if (corner + polygonSize > cornerCount) {
+						throw new MalformedColladaFileException("Primitive has fewer indices than its polygons need");
+					}
+					final int first = addVertex(table, rawIndices, corner * stride, vertexOffset, normalOffset, textureCoordOffset, normalsSource != null && normalOffset == -1,
+							textureCoordsSource != null && textureCoordOffset == -1, positionCount, normalCount, textureCoordCount);
+					int previous = addVertex(table, rawIndices, (corner + 1) * stride, vertexOffset, normalOffset, textureCoordOffset, normalsSource != null && normalOffset == -1,
+							textureCoordsSource != null && textureCoordOffset == -1, positionCount, normalCount, textureCoordCount);
+					for (int i = 2; i < polygonSize; i++) {
+						final int current = addVertex(table, rawIndices, (corner + i) * stride, vertexOffset, normalOffset, textureCoordOffset, normalsSource != null && normalOffset == -1,
+								textureCoordsSource != null && textureCoordOffset == -1, positionCount, normalCount, textureCoordCount);
+						indices.add(first);
+						indices.add(previous);
+						indices.add(current);
+						previous = current;
+					}
+					corner += polygonSize;
+				}
+				ranges.add(new Geometry.Range(primitive.material, firstIndex, indices.size() - firstIndex));
+			}
+			if (table != null) {
+				int attributeIndex = 0;
+				data.addAttribute(attributeIndex++, table.createAttribute("positions", getArray(positionsSource), getStride(positionsSource), VertexTable.POSITIONS));
+				if (normalsSource != null) {
+					data.addAttribute(attributeIndex++, table.createAttribute("normals", getArray(normalsSource), getStride(normalsSource), VertexTable.NORMALS));
+				}
+				if (textureCoordsSource != null) {
+					data.addAttribute(attributeIndex, table.createAttribute("textureCoords", getArray(textureCoordsSource), getStride(textureCoordsSource), VertexTable.TEXTURE_COORDS));
+				}
+			}
+			return new Geometry(geometryID, geometryName, data, ranges);
+		}
+
+		private static int getVertexCount(Primitive primitive, int polygon) {
+			if (primitive.vertexCounts == null || polygon >= primitive.vertexCounts.length) {
+				throw new MalformedColladaFileException("Polylist is missing vertex counts");
+			}
+			final int count = primitive.vertexCounts[polygon];
+			if (count < 3) {
+				throw new MalformedColladaFileException("Polygons must have at least 3 vertices");
+			}
+			return count;
+		}
+
+		private static int addVertex(VertexTable table, int[] rawIndices, int start, int vertexOffset, int normalOffset, int textureCoordOffset, boolean normalFromVertex,
+				boolean textureCoordFromVertex, int positionCount, int normalCount, int textureCoordCount) {
+			final int position = rawIndices[start + vertexOffset];
+			final int normal = normalOffset != -1 ? rawIndices[start + normalOffset] : normalFromVertex ? position : -1;
+			final int textureCoord = textureCoordOffset != -1 ? rawIndices[start + textureCoordOffset] : textureCoordFromVertex ? position : -1;
+			if (position < 0 || position >= positionCount || normal < -1 || normal >= normalCount || textureCoord < -1 || textureCoord >= textureCoordCount) {
+				throw new MalformedColladaFileException("Index out of the source bounds");
+			}
+			return table.add(position, textureCoord, normal);
+		}
+
+		private int getElementCount(String sourceID) {
+			if (sourceID == null) {
+				return 0;
+			}
+			return getArray(sourceID).length / getStride(sourceID);
+		}
+
+		private float[] getArray(String sourceID) {
+			final Source source = getSource(sourceID);
+			final float[] array = arrays.get(source.arrayID);
+			if (array == null) {
+				throw new MalformedColladaFileException("Missing float array \"" + source.arrayID + "\"");
+			}
+			return array;
+		}
+
+		private int getStride(String sourceID) {
+			return getSource(sourceID).stride;
+		}
+
+		private Source getSource(String sourceID) {
+			final Source source = sources.get(sourceID);
+			if (source == null || source.arrayID == null) {
+				throw new MalformedColladaFileException("Missing source \"" + sourceID + "\"");
+			}
+			return source;
+		}
+
+		private static boolean equals(String a, String b) {
+			return a == null ? b == null : a.equals(b);
+		}
+
+		private static String stripReference(String reference) {
+			return reference != null && reference.startsWith("#") ? reference.substring(1) : reference;
+		}
+	}
+
+	private static final class Source {
+		private String arrayID;
+		private int stride = 1;
+	}
+
+	private static final class Input {
+		private final String semantic;
+		private final String source;
+		private final int offset;
+		private final int set;
+
+		private Input(String semantic, String source, int offset, int set) {
+			this.semantic = semantic;
+			this.source = source;
+			this.offset = offset;
+			this.set = set;
+		}
+	}
+
+	private static final class Primitive {
+		private final String material;
+		private final boolean polylist;
+		private final List<Input> inputs = new ArrayList<>();
+		private int[] indices;
+		private int[] vertexCounts;
+
+		private Primitive(String material, boolean polylist) {
+			this.material = material;
+			this.polylist = polylist;
+		}
+	}
+
+	/**
+	 * Parses whitespace separated numbers from chunks of characters, without creating strings. Numbers can be split across chunks.
+	 */
+	private static final class NumberReader {
+		private static final Charset US_ASCII = Charset.forName("US-ASCII");
+		private final byte[] token = new byte[64];
+		private final ByteBuffer tokenBuffer = ByteBuffer.wrap(token);
+		private final DecimalParser decimals = new DecimalParser();
+		private int tokenLength = 0;
+		private boolean floats;
+		private float[] floatValues;
+		private int[] intValues;
+		private int size;
+
+		private void start(boolean floats, int capacity) {
+			this.floats = floats;
+			capacity = Math.max(capacity, 16);
+			if (floats) {
+				floatValues = new float[capacity];
+			} else {
+				intValues = new int[capacity];
+			}
+			size = 0;
+			tokenLength = 0;
+		}
+
+		private void read(char[] characters, int start, int length) {
+			final int end = start + length;
+			for (int i = start; i < end; i++) {
+				final char c = characters[i];
+				if (c == ' ' || c == '\n' || c == '\t' || c == '\r') {
+					finishToken();
+				} else if (c > 0x7F) {
+					throw new MalformedColladaFileException("Invalid character in number");
+				} else if (tokenLength < token.length) {
+					token[tokenLength++] = (byte) c;
+				} else {
+					throw new MalformedColladaFileException("Number is too long");
+				}
+			}
+		}
+
+		private float[] toFloats() {
+			finishToken();
+			final float[] values = size == floatValues.length ? floatValues : Arrays.copyOf(floatValues, size);
+			floatValues = null;
+			return values;
+		}
+
+		private int[] toInts() {
+			finishToken();
+			final int[] values = size == intValues.length ? intValues : Arrays.copyOf(intValues, size);
+			intValues = null;
+			return values;
+		}
+
+		private void finishToken() {
+			if (tokenLength == 0) {
+				return;
+			}
+			if (floats) {
+				if (size == floatValues.length) {
+					floatValues = Arrays.copyOf(floatValues, size * 2);
+				}
+				floatValues[size++] = parseFloat();
+			} else {
+				if (size == intValues.length) {
+					intValues = Arrays.copyOf(intValues, size * 2);
+				}
+				intValues[size++] = parseInt();
+			}
+			tokenLength = 0;
+		}
+
+		private int parseInt() {
+			int i = 0;
+			final boolean negative = token[0] == '-';
+			if (negative || token[0] == '+') {
+				i++;
+			}
+			if (i == tokenLength || tokenLength - i > 10) {
+				return Integer.parseInt(getToken());
+			}
+			long value = 0;
+			for (; i < tokenLength; i++) {
+				final byte b = token[i];
+				if (b < '0' || b > '9') {
+					throw new MalformedColladaFileException("Invalid integer \"" + getToken() + "\"");
+				}
+				value = value * 10 + b - '0';
+			}
+			if (negative) {
+				value = -value;
+			}
+			if (value < Integer.MIN_VALUE || value > Integer.MAX_VALUE) {
+				throw new MalformedColladaFileException("Integer out of range \"" + getToken() + "\"");
+			}
+			return (int) value;
+		}
+
+		private float parseFloat() {
+			try {
+				return decimals.parseFloat(tokenBuffer, 0, tokenLength);
+			} catch (NumberFormatException ex) {
+				throw new MalformedColladaFileException("Invalid float \"" + getToken() + "\"", ex);
+			}
+		}
+
+		private String getToken() {
+			return new String(token, 0, tokenLength, US_ASCII);
+		}
+	}
+
+	/**
+	 * A mesh loaded by {@link #loadGeometries(java.io.InputStream)}, with a unique vertex for each combination of position, normal and texture coord indices.
+	 */
+	public static class Geometry {
+		private final String id;
+		private final String name;
+		private final VertexData vertexData;
+		private final List<Range> ranges;
+
+		private Geometry(String id, String name, VertexData vertexData, List<Range> ranges) {
+			this.id = id;
+			this.name = name;
+			this.vertexData = vertexData;
+			this.ranges = Collections.unmodifiableList(ranges);
+		}
+
+		/**
+		 * Returns the ID of the geometry element, or null if it has none.
+		 *
+		 * @return The ID
+		 */
+		public String getID() {
+			return id;
+		}
+
+		/**
+		 * Returns the name of the geometry element, or null if it has none.
+		 *
+		 * @return The name
+		 */
+		public String getName() {
+			return name;
+		}
+
+		/**
+		 * Returns the vertex data of the whole mesh. Polygons are triangulated.
+		 *
+		 * @return The vertex data
+		 */
+		public VertexData getVertexData() {
+			return vertexData;
+		}
+
+		/**
+		 * Returns the ranges of the indices for each primitive of the mesh, in document order.
+		 *
+		 * @return The primitive ranges
+		 */
+		public List<Range> getRanges() {
+			return ranges;
+		}
+
+		/**
+		 * The range of the indices of a "triangles" or "polylist" primitive. Use {@link org.spout.renderer.gl.VertexArray#setIndicesOffset(int)} and {@link
+		 * org.spout.renderer.gl.VertexArray#setIndicesCount(int)} to draw only this range.
+		 */
+		public static class Range {
+			private final String material;
+			private final int firstIndex;
+			private final int indicesCount;
+
+			private Range(String material, int firstIndex, int indicesCount) {
+				this.material = material;
+				this.firstIndex = firstIndex;
+				this.indicesCount = indicesCount;
+			}
+
+			/**
+			 * Returns the material symbol of the primitive, or null if it has none.
+			 *
+			 * @return The material
+			 */
+			public String getMaterial() {
+				return material;
+			}
+
+			/**
+			 * Returns the index of the first index of the range.
+			 *
+			 * @return The first index
+			 */
+			public int getFirstIndex() {
+				return firstIndex;
+			}
+
+			/**
+			 * Returns the number of indices in the range.
+			 *
+			 * @return The indices count
+			 */
+			public int getIndicesCount() {
+				return indicesCount;
+			}
+		}
+	}
+
 	public static class MalformedColladaFileException extends RuntimeException {
 		public MalformedColladaFileException(String msg) {
 			super(msg);
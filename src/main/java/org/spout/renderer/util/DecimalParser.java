@@ -0,0 +1,157 @@
+/*
+ * This file is part of Caustic.
+ *
+ * Copyright (c) 2013 Spout LLC <http://www.spout.org/>
+ * Caustic is licensed under the Spout License Version 1.
+ *
+ * Caustic is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the Free
+ * Software Foundation, either version 3 of the License, or (at your option)
+ * any later version.
+ *
+ * In addition, 180 days after any changes are published, you can use the
+ * software, incorporating those changes, under the terms of the MIT license,
+ * as described in the Spout License Version 1.
+ *
+ * Caustic is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE.  See the GNU Lesser General Public License for
+ * more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License,
+ * the MIT license and the Spout License Version 1 along with this program.
+ * If not, see <http://www.gnu.org/licenses/> for the GNU Lesser General Public
+ * License and see <http://spout.in/licensev1> for the full license, including
+ * the MIT license.
+ */
+package org.spout.renderer.util;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+
+/**
+ * Parses decimal floats from ASCII bytes without creating strings, for the loaders. A number is parsed directly when its value can be computed from a mantissa of up to 18 digits and a power of ten
+ * of up to 22, which are both exact doubles so the result is correctly rounded. Rare cases such as "NaN" or very long mantissas fall back to {@link Float#parseFloat(String)}.
+ */
+final class DecimalParser {
+	private static final Charset US_ASCII = Charset.forName("US-ASCII");
+	private static final double[] POWERS_OF_TEN = new double[23];
+	private int end;
+
+	static {
+		POWERS_OF_TEN[0] = 1;
+		for (int i = 1; i < POWERS_OF_TEN.length; i++) {
+			POWERS_OF_TEN[i] = POWERS_OF_TEN[i - 1] * 10;
+		}
+	}
+
+	/**
+	 * Parses the float at the start position of the source. The number ends at the first whitespace or at the limit, and its end is then returned by {@link #getEnd()}.
+	 *
+	 * @param source The source bytes, read with absolute positions
+	 * @param start The position of the first character of the number
+	 * @param limit The position past which nothing is read
+	 * @return The parsed float
+	 * @throws NumberFormatException If the number is malformed
+	 */
+	float parseFloat(ByteBuffer source, int start, int limit) {
+		int p = start;
+		boolean negative = false;
+		byte b = source.get(p);
+		if (b == '-' || b == '+') {
+			negative = b == '-';
+			p++;
+		}
+		long mantissa = 0;
+		int significantDigits = 0;
+		int exponent = 0;
+		boolean hasDigits = false;
+		// Integer part, digits past what a long holds only scale the value
+		while (p < limit && (b = source.get(p)) >= '0' && b <= '9') {
+			if (significantDigits < 18) {
+				mantissa = mantissa * 10 + b - '0';
+				if (mantissa != 0) {
+					significantDigits++;
+				}
+			} else {
+				exponent++;
+			}
+			hasDigits = true;
+			p++;
+		}
+		// Fractional part
+		if (p < limit && source.get(p) == '.') {
+			p++;
+			while (p < limit && (b = source.get(p)) >= '0' && b <= '9') {
+				if (significantDigits < 18) {
+					mantissa = mantissa * 10 + b - '0';
+					if (mantissa != 0) {
+						significantDigits++;
+					}
+					exponent--;
+				}
+				hasDigits = true;
+				p++;
+			}
+		}
+		// Exponent part
+		if (hasDigits && p < limit && ((b = source.get(p)) == 'e' || b == 'E')) {
+			p++;
+			boolean negativeExponent = false;
+			if (p < limit && ((b = source.get(p)) == '-' || b == '+')) {
+				negativeExponent = b == '-';
+				p++;
+			}
+			int explicitExponent = 0;
+			boolean hasExponentDigits = false;
+			while (p < limit && (b = source.get(p)) >= '0' && b <= '9') {
+				explicitExponent = Math.min(explicitExponent * 10 + b - '0', 1000);
+				hasExponentDigits = true;
+				p++;
+			}
+			if (!hasExponentDigits) {
+				return parseFloatSlow(source, start, limit);
+			}
+			exponent += negativeExponent ? -explicitExponent : explicitExponent;
+		}
+		if (!hasDigits || p < limit && !isWhitespace(source.get(p))) {
+			return parseFloatSlow(source, start, limit);
+		}
+		final double value;
+		if (mantissa == 0) {
+			value = 0;
+		} else if (exponent >= -22 && exponent <= 22 && mantissa < 1L << 53) {
+			value = exponent < 0 ? mantissa / POWERS_OF_TEN[-exponent] : mantissa * POWERS_OF_TEN[exponent];
+		} else {
+			return parseFloatSlow(source, start, limit);
+		}
+		end = p;
+		return (float) (negative ? -value : value);
+	}
+
+	/**
+	 * Returns the end of the last number parsed by {@link #parseFloat(ByteBuffer, int, int)}, the position of the whitespace after it or the limit.
+	 *
+	 * @return The end of the last number
+	 */
+	int getEnd() {
+		return end;
+	}
+
+	private float parseFloatSlow(ByteBuffer source, int start, int limit) {
+		int tokenEnd = start;
+		while (tokenEnd < limit && !isWhitespace(source.get(tokenEnd))) {
+			tokenEnd++;
+		}
+		final byte[] token = new byte[tokenEnd - start];
+		for (int i = 0; i < token.length; i++) {
+			token[i] = source.get(start + i);
+		}
+		end = tokenEnd;
+		return Float.parseFloat(new String(token, US_ASCII));
+	}
+
+	private static boolean isWhitespace(byte b) {
+		return b == ' ' || b == '\t' || b == '\r' || b == '\n';
+	}
+}
@@ -0,0 +1,176 @@
+/*
+ * This file is part of Caustic.
+ *
+ * Copyright (c) 2013 Spout LLC <http://www.spout.org/>
+ * Caustic is licensed under the Spout License Version 1.
+ *
+ * Caustic is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the Free
+ * Software Foundation, either version 3 of the License, or (at your option)
+ * any later version.
+ *
+ * In addition, 180 days after any changes are published, you can use the
+ * software, incorporating those changes, under the terms of the MIT license,
+ * as described in the Spout License Version 1.
+ *
+ * Caustic is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE.  See the GNU Lesser General Public License for
+ * more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License,
+ * the MIT license and the Spout License Version 1 along with this program.
+ * If not, see <http://www.gnu.org/licenses/> for the GNU Lesser General Public
+ * License and see <http://spout.in/licensev1> for the full license, including
+ * the MIT license.
+ */
+package org.spout.renderer.util;
+
+import java.util.Arrays;
+
+/**
+ * A sorted set of disjoint ranges, used to track the parts of a buffer that need to be uploaded again. Added ranges are coalesced with the overlapping and adjacent ones, and also with those closer
+ * than the merge gap, since uploading a few extra bytes is cheaper than an extra call.
+ */
+public class DirtyRanges {
+	private final int mergeGap;
+	private int[] starts = new int[4];
+	private int[] ends = new int[4];
+	private int count = 0;
+
+	/**
+	 * Constructs new empty dirty ranges that only coalesce overlapping and adjacent ranges.
+	 */
+	public DirtyRanges() {
+		this(0);
+	}
+
+	/**
+	 * Constructs new empty dirty ranges that coalesce ranges closer than the merge gap.
+	 *
+	 * @param mergeGap The largest gap between two ranges for them to be coalesced
+	 */
+	public DirtyRanges(int mergeGap) {
+		if (mergeGap < 0) {
+			throw new IllegalArgumentException("Merge gap cannot be negative");
+		}
+		this.mergeGap = mergeGap;
+	}
+
+	/**
+	 * Adds a range, coalescing it with the existing ones it overlaps or is close to. Empty ranges are ignored.
+	 *
+	 * @param start The start of the range, inclusive
+	 * @param end The end of the range, exclusive
+	 */
+	public void add(int start, int end) {
+		if (start < 0 || end < start) {
+			throw new IllegalArgumentException("Invalid range: [" + start + ", " + end + ")");
+		}
+		if (start == end) {
+			return;
+		}
+		// Find the first range that ends close enough to the start to be merged, or that comes after
+		int first = 0;
+		int last = count;
+		while (first < last) {
+			final int middle = first + last >>> 1;
+			if ((long) ends[middle] + mergeGap < start) {
+				first = middle + 1;
+			} else {
+				last = middle;
+			}
+		}
+		// Find the ranges that start close enough to the end to be merged
+		last = first;
+		while (last < count && starts[last] <= (long) end + mergeGap) {
+			last++;
+		}
+		if (first == last) {
+			// Nothing to merge, insert
+			if (count == starts.length) {
+				starts = Arrays.copyOf(starts, count * 2);
+				ends = Arrays.copyOf(ends, count * 2);
+			}
+			System.arraycopy(starts, first, starts, first + 1, count - first);
+			System.arraycopy(ends, first, ends, first + 1, count - first);
+			starts[first] = start;
+			ends[first] = end;
+			count++;
+			return;
+		}
+		// Replace the merged ranges by their union
+		starts[first] = Math.min(start, starts[first]);
+		ends[first] = Math.max(end, ends[last - 1]);
+		final int removed = last - first - 1;
+		System.arraycopy(starts, last, starts, first + 1, count - last);
+		System.arraycopy(ends, last, ends, first + 1, count - last);
+		count -= removed;
+	}
+
+	/**
+	 * Returns the number of disjoint ranges.
+	 *
+	 * @return The range count
+	 */
+	public int getCount() {
+		return count;
+	}
+
+	/**
+	 * Returns true if there are no ranges.
+	 *
+	 * @return Whether or not the ranges are empty
+	 */
+	public boolean isEmpty() {
+		return count == 0;
+	}
+
+	/**
+	 * Returns the start of the range at the index, ranges are sorted by start.
+	 *
+	 * @param index The index of the range
+	 * @return The start of the range, inclusive
+	 */
+	public int getStart(int index) {
+		checkIndex(index);
+		return starts[index];
+	}
+
+	/**
+	 * Returns the end of the range at the index, ranges are sorted by start.
+	 *
+	 * @param index The index of the range
+	 * @return The end of the range, exclusive
+	 */
+	public int getEnd(int index) {
+		checkIndex(index);
+		return ends[index];
+	}
+
+	/**
+	 * Returns the sum of the lengths of the ranges.
+	 *
+	 * @return The total length
+	 */
+	public long getTotalLength() {
+		long length = 0;
+		for (int i = 0; i < count; i++) {
+			length += ends[i] - starts[i];
+		}
+		return length;
+	}
+
+	/**
+	 * Removes all the ranges.
+	 */
+	public void clear() {
+		count = 0;
+	}
+
+	private void checkIndex(int index) {
+		if (index < 0 || index >= count) {
+			throw new IndexOutOfBoundsException("Range index " + index + " out of bounds for " + count + " ranges");
+		}
+	}
+}
@@ -0,0 +1,193 @@
+/*
+ * This file is part of Caustic.
+ *
+ * Copyright (c) 2013 Spout LLC <http://www.spout.org/>
+ * Caustic is licensed under the Spout License Version 1.
+ *
+ * Caustic is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the Free
+ * Software Foundation, either version 3 of the License, or (at your option)
+ * any later version.
+ *
+ * In addition, 180 days after any changes are published, you can use the
+ * software, incorporating those changes, under the terms of the MIT license,
+ * as described in the Spout License Version 1.
+ *
+ * Caustic is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE.  See the GNU Lesser General Public License for
+ * more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License,
+ * the MIT license and the Spout License Version 1 along with this program.
+ * If not, see <http://www.gnu.org/licenses/> for the GNU Lesser General Public
+ * License and see <http://spout.in/licensev1> for the full license, including
+ * the MIT license.
+ */
+package org.spout.renderer.util;
+
+import java.nio.FloatBuffer;
+
+import org.spout.math.matrix.Matrix2f;
+import org.spout.math.matrix.Matrix3f;
+import org.spout.math.matrix.Matrix4f;
+
+/**
+ * Static methods for matrix operations that write their results in place, into float arrays and buffers, instead of creating new matrices. This keeps the per frame uniform uploads free of
+ * allocations. Arrays hold the matrices in row major order, like {@link Matrix4f#get(int, int)}, and buffers in column major order, as expected by OpenGL.
+ */
+public final class MatrixUtil {
+	private MatrixUtil() {
+	}
+
+	/**
+	 * Puts the matrix in column major order into the buffer, at its position, which is advanced.
+	 *
+	 * @param m The matrix
+	 * @param dest The buffer to write to
+	 */
+	public static void putColumnMajor(Matrix2f m, FloatBuffer dest) {
+		for (int col = 0; col < 2; col++) {
+			dest.put(m.get(0, col));
+			dest.put(m.get(1, col));
+		}
+	}
+
+	/**
+	 * Puts the matrix in column major order into the buffer, at its position, which is advanced.
+	 *
+	 * @param m The matrix
+	 * @param dest The buffer to write to
+	 */
+	public static void putColumnMajor(Matrix3f m, FloatBuffer dest) {
+		for (int col = 0; col < 3; col++) {
+			dest.put(m.get(0, col));
+			dest.put(m.get(1, col));
+			dest.put(m.get(2, col));
+		}
+	}
+
+	/**
+	 * Puts the matrix in column major order into the buffer, at its position, which is advanced.
+	 *
+	 * @param m The matrix
+	 * @param dest The buffer to write to
+	 */
+	public static void putColumnMajor(Matrix4f m, FloatBuffer dest) {
+		for (int col = 0; col < 4; col++) {
+			dest.put(m.get(0, col));
+			dest.put(m.get(1, col));
+			dest.put(m.get(2, col));
+			dest.put(m.get(3, col));
+		}
+	}
+
+	/**
+	 * Puts the 4x4 matrix from the array in row major order into the buffer in column major order, at its position, which is advanced.
+	 *
+	 * @param m The array of 16 floats in row major order
+	 * @param dest The buffer to write to
+	 */
+	public static void putColumnMajor(float[] m, FloatBuffer dest) {
+		for (int col = 0; col < 4; col++) {
+			dest.put(m[col]);
+			dest.put(m[4 + col]);
+			dest.put(m[8 + col]);
+			dest.put(m[12 + col]);
+		}
+	}
+
+	/**
+	 * Multiplies the two matrices, as in {@code a.mul(b)}, and writes the product in row major order into the array.
+	 *
+	 * @param a The left matrix
+	 * @param b The right matrix
+	 * @param dest The array of at least 16 floats to write to
+	 */
+	public static void mul(Matrix4f a, Matrix4f b, float[] dest) {
+		for (int row = 0; row < 4; row++) {
+			final float a0 = a.get(row, 0);
+			final float a1 = a.get(row, 1);
+			final float a2 = a.get(row, 2);
+			final float a3 = a.get(row, 3);
+			for (int col = 0; col < 4; col++) {
+				dest[row * 4 + col] = a0 * b.get(0, col) + a1 * b.get(1, col) + a2 * b.get(2, col) + a3 * b.get(3, col);
+			}
+		}
+	}
+
+	/**
+	 * Inverts the 4x4 matrix, using its cofactors, and writes the inverse into the destination. Both are in row major order, and can't be the same array.
+	 *
+	 * @param m The array of 16 floats to invert
+	 * @param dest The array of at least 16 floats to write to
+	 * @throws ArithmeticException If the matrix has a zero determinant
+	 */
+	public static void invert(float[] m, float[] dest) {
+		// 2x2 determinants of the top two and bottom two rows
+		final float s0 = m[0] * m[5] - m[1] * m[4];
+		final float s1 = m[0] * m[6] - m[2] * m[4];
+		final float s2 = m[0] * m[7] - m[3] * m[4];
+		final float s3 = m[1] * m[6] - m[2] * m[5];
+		final float s4 = m[1] * m[7] - m[3] * m[5];
+		final float s5 = m[2] * m[7] - m[3] * m[6];
+		final float c5 = m[10] * m[15] - m[11] * m[14];
+		final float c4 = m[9] * m[15] - m[11] * m[13];
+		final float c3 = m[9] * m[14] - m[10] * m[13];
+		final float c2 = m[8] * m[15] - m[11] * m[12];
+		final float c1 = m[8] * m[14] - m[10] * m[12];
+		final float c0 = m[8] * m[13] - m[9] * m[12];
+		final float det = s0 * c5 - s1 * c4 + s2 * c3 + s3 * c2 - s4 * c1 + s5 * c0;
+		if (det == 0) {
+			throw new ArithmeticException("Cannot inverse a matrix with a zero determinant");
+		}
+		final float invDet = 1 / det;
+		dest[0] = (m[5] * c5 - m[6] * c4 + m[7] * c3) * invDet;
+		dest[1] = (-m[1] * c5 + m[2] * c4 - m[3] * c3) * invDet;
+		dest[2] = (m[13] * s5 - m[14] * s4 + m[15] * s3) * invDet;
+		dest[3] = (-m[9] * s5 + m[10] * s4 - m[11] * s3) * invDet;
+		dest[4] = (-m[4] * c5 + m[6] * c2 - m[7] * c1) * invDet;
+		dest[5] = (m[0] * c5 - m[2] * c2 + m[3] * c1) * invDet;
+		dest[6] = (-m[12] * s5 + m[14] * s2 - m[15] * s1) * invDet;
+		dest[7] = (m[8] * s5 - m[10] * s2 + m[11] * s1) * invDet;
+		dest[8] = (m[4] * c4 - m[5] * c2 + m[7] * c0) * invDet;
+		dest[9] = (-m[0] * c4 + m[1] * c2 - m[3] * c0) * invDet;
+		dest[10] = (m[12] * s4 - m[13] * s2 + m[15] * s0) * invDet;
+		dest[11] = (-m[8] * s4 + m[9] * s2 - m[11] * s0) * invDet;
+		dest[12] = (-m[4] * c3 + m[5] * c1 - m[6] * c0) * invDet;
+		dest[13] = (m[0] * c3 - m[1] * c1 + m[2] * c0) * invDet;
+		dest[14] = (-m[12] * s3 + m[13] * s1 - m[14] * s0) * invDet;
+		dest[15] = (m[8] * s3 - m[9] * s1 + m[10] * s0) * invDet;
+	}
+
+	/**
+	 * Inverts the affine 4x4 matrix whose upper 3x3 part is a rotation with a uniform scale, such as a model view matrix for a model with the same scale on all axes. This is much cheaper than
+	 * {@link #invert(float[], float[])}: the inverse of the upper part is its transpose divided by the squared scale, and the translation is rotated back by it. Both arrays are in row major order,
+	 * and can't be the same array. The result is undefined for other matrices.
+	 *
+	 * @param m The array of 16 floats to invert
+	 * @param dest The array of at least 16 floats to write to
+	 * @throws ArithmeticException If the scale is zero
+	 */
+	public static void invertUniformScaled(float[] m, float[] dest) {
+		// The squared scale is the squared length of any column
+		final float scale2 = m[0] * m[0] + m[4] * m[4] + m[8] * m[8];
+		if (scale2 == 0) {
+			throw new ArithmeticException("Cannot inverse a matrix with a zero determinant");
+		}
+		final float invScale2 = 1 / scale2;
+		for (int row = 0; row < 3; row++) {
+			final float r0 = m[row] * invScale2;
+			final float r1 = m[4 + row] * invScale2;
+			final float r2 = m[8 + row] * invScale2;
+			dest[row * 4] = r0;
+			dest[row * 4 + 1] = r1;
+			dest[row * 4 + 2] = r2;
+			dest[row * 4 + 3] = -(r0 * m[3] + r1 * m[7] + r2 * m[11]);
+		}
+		dest[12] = 0;
+		dest[13] = 0;
+		dest[14] = 0;
+		dest[15] = 1;
+	}
+}
@@ -0,0 +1,373 @@
+/*
+ * This file is part of Caustic.
+ *
+ * Copyright (c) 2013 Spout LLC <http://www.spout.org/>
+ * Caustic is licensed under the Spout License Version 1.
+ *
+ * Caustic is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the Free
+ * Software Foundation, either version 3 of the License, or (at your option)
+ * any later version.
+ *
+ * In addition, 180 days after any changes are published, you can use the
+ * software, incorporating those changes, under the terms of the MIT license,
+ * as described in the Spout License Version 1.
+ *
+ * Caustic is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE.  See the GNU Lesser General Public License for
+ * more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License,
+ * the MIT license and the Spout License Version 1 along with this program.
+ * If not, see <http://www.gnu.org/licenses/> for the GNU Lesser General Public
+ * License and see <http://spout.in/licensev1> for the full license, including
+ * the MIT license.
+ */
+package org.spout.renderer.util;
+
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+import org.spout.math.vector.Vector3f;
+import org.spout.renderer.data.VertexAttribute;
+import org.spout.renderer.data.VertexAttribute.DataType;
+import org.spout.renderer.data.VertexAttribute.UploadMode;
+import org.spout.renderer.data.VertexData;
+import org.spout.renderer.data.VertexFormat;
+
+/**
+ * A compact binary mesh format that can be loaded without parsing. The file holds a header, the attribute descriptions, the attribute data and the indices, already encoded with the narrowest type,
+ * and the bounds of the positions. Loading memory maps the file and hands the mapped slices directly to the {@link org.spout.renderer.data.VertexAttribute}s and the indices of the {@link
+ * org.spout.renderer.data.VertexData}, so nothing is copied until the data is uploaded. <p/> The header and the attribute table are little endian. The data blobs are in the byte order of the
+ * machine that wrote the file, as given by a header flag, and are only converted when loaded on a machine with a different order. Each blob is aligned on 16 bytes.
+ */
+public class MeshFile {
+	private static final int MAGIC = 0x4853454D; // "MESH" in little endian
+	private static final int VERSION = 1;
+	private static final int FLAG_BOUNDS = 1;
+	private static final int FLAG_BIG_ENDIAN = 1 << 1;
+	private static final int HEADER_SIZE = 56;
+	private static final int BLOB_ALIGNMENT = 16;
+	private static final Charset UTF_8 = Charset.forName("UTF-8");
+	private final VertexData vertexData;
+	private final int vertexCount;
+	private final Vector3f boundsMin;
+	private final Vector3f boundsMax;
+
+	private MeshFile(VertexData vertexData, int vertexCount, Vector3f boundsMin, Vector3f boundsMax) {
+		this.vertexData = vertexData;
+		this.vertexCount = vertexCount;
+		this.boundsMin = boundsMin;
+		this.boundsMax = boundsMax;
+	}
+
+	/**
+	 * Returns the loaded vertex data. The attribute data and the indices are views of the mapped file.
+	 *
+	 * @return The vertex data
+	 */
+	public VertexData getVertexData() {
+		return vertexData;
+	}
+
+	/**
+	 * Returns the number of vertices in the mesh.
+	 *
+	 * @return The vertex count
+	 */
+	public int getVertexCount() {
+		return vertexCount;
+	}
+
+	/**
+	 * Returns true if the file has the bounds of the positions. Bounds are only written when a positions attribute is given to the writer.
+	 *
+	 * @return Whether or not the bounds are known
+	 */
+	public boolean hasBounds() {
+		return boundsMin != null;
+	}
+
+	/**
+	 * Returns the minimum corner of the box bounding the positions, or null if there are no bounds.
+	 *
+	 * @return The minimum bound
+	 */
+	public Vector3f getBoundsMin() {
+		return boundsMin;
+	}
+
+	/**
+	 * Returns the maximum corner of the box bounding the positions, or null if there are no bounds.
+	 *
+	 * @return The maximum bound
+	 */
+	public Vector3f getBoundsMax() {
+		return boundsMax;
+	}
+
+	/**
+	 * Writes the vertex data to the file, replacing it if it exists. The attributes must be at consecutive indices starting at zero and have the same number of vertices. The bounds are computed from
+	 * the float positions at the index, if it isn't negative.
+	 *
+	 * @param data The vertex data to write
+	 * @param positionsIndex The index of the positions attribute used for the bounds, or a negative value for no bounds
+	 * @param path The path of the file to write
+	 * @throws IOException If the file can't be written
+	 * @throws IllegalArgumentException If the data doesn't meet the requirements above, or if the positions attribute isn't a float attribute with at least two components
+	 */
+	public static void write(VertexData data, int positionsIndex, Path path) throws IOException {
+		final int attributeCount = data.getAttributeCount();
+		final VertexFormat format = new VertexFormat(data);
+		final int vertexCount = format.getVertexCount(data);
+		final DataType indicesType = data.getIndicesType();
+		// Lay out the file: header, attribute table, then the aligned blobs
+		final byte[][] names = new byte[attributeCount][];
+		int tableSize = 0;
+		for (int i = 0; i < attributeCount; i++) {
+			names[i] = data.getAttribute(i).getName().getBytes(UTF_8);
+			tableSize += align(26 + names[i].length, 4);
+		}
+		final int[] blobOffsets = new int[attributeCount + 1];
+		long offset = HEADER_SIZE + tableSize;
+		for (int i = 0; i < attributeCount; i++) {
+			offset = align(offset, BLOB_ALIGNMENT);
+			blobOffsets[i] = checkOffset(offset);
+			offset += data.getAttribute(i).getData().remaining();
+		}
+		offset = align(offset, BLOB_ALIGNMENT);
+		blobOffsets[attributeCount] = checkOffset(offset);
+		checkOffset(offset + (long) data.getIndicesCount() * indicesType.getByteSize());
+		// Write the header and attribute table
+		final ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE + tableSize).order(ByteOrder.LITTLE_ENDIAN);
+		header.putInt(MAGIC);
+		header.putInt(VERSION);
+		int flags = ByteOrder.nativeOrder() == ByteOrder.BIG_ENDIAN ? FLAG_BIG_ENDIAN : 0;
+		if (positionsIndex >= 0) {
+			flags |= FLAG_BOUNDS;
+		}
+		header.putInt(flags);
+		header.putInt(attributeCount);
+		header.putInt(vertexCount);
+		header.putInt(indicesType.getGLConstant());
+		header.putInt(data.getIndicesCount());
+		header.putInt(blobOffsets[attributeCount]);
+		if (positionsIndex >= 0) {
+			putBounds(header, data.getAttribute(positionsIndex), vertexCount);
+		} else {
+			for (int i = 0; i < 6; i++) {
+				header.putFloat(0);
+			}
+		}
+		for (int i = 0; i < attributeCount; i++) {
+			final VertexAttribute attribute = data.getAttribute(i);
+			final int start = header.position();
+			header.putInt(attribute.getType().getGLConstant());
+			header.putInt(attribute.getSize());
+			header.putInt(attribute.getUploadMode().ordinal());
+			header.putInt(blobOffsets[i]);
+			header.putInt(attribute.getData().remaining());
+			header.putShort((short) names[i].length);
+			header.put(names[i]);
+			header.position(start + align(26 + names[i].length, 4));
+		}
+		header.flip();
+		try (FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+			writeFully(channel, header, 0);
+			// The attribute buffers are written as they are, without copying
+			for (int i = 0; i < attributeCount; i++) {
+				writeFully(channel, data.getAttribute(i).getData(), blobOffsets[i]);
+			}
+			final ByteBuffer indices = data.getIndicesBuffer(indicesType);
+			try {
+				writeFully(channel, indices, blobOffsets[attributeCount]);
+			} finally {
+				data.releaseIndicesBuffer(indices);
+			}
+		}
+	}
+
+	/**
+	 * Loads a mesh file by memory mapping it. The mapping stays valid for as long as the vertex data, or buffers taken from it, are reachable.
+	 *
+	 * @param path The path of the file to load
+	 * @return The loaded mesh file
+	 * @throws IOException If the file can't be read
+	 * @throws MalformedMeshFileException If the file isn't a valid mesh file
+	 */
+	public static MeshFile load(Path path) throws IOException {
+		final MappedByteBuffer mapped;
+		try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+			if (channel.size() > Integer.MAX_VALUE) {
+				throw new MalformedMeshFileException("File is too large");
+			}
+			mapped = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+		}
+		try {
+			return load(mapped);
+		} catch (IndexOutOfBoundsException | BufferUnderflowException ex) {
+			throw new MalformedMeshFileException("File is truncated", ex);
+		}
+	}
+
+	private static MeshFile load(ByteBuffer file) {
+		final ByteBuffer header = file.duplicate().order(ByteOrder.LITTLE_ENDIAN);
+		if (header.getInt() != MAGIC) {
+			throw new MalformedMeshFileException("Not a mesh file");
+		}
+		final int version = header.getInt();
+		if (version != VERSION) {
+			throw new MalformedMeshFileException("Unsupported version " + version);
+		}
+		final int flags = header.getInt();
+		final int attributeCount = header.getInt();
+		final int vertexCount = header.getInt();
+		final DataType indicesType = getDataType(header.getInt());
+		final int indicesCount = header.getInt();
+		final int indicesOffset = header.getInt();
+		final Vector3f boundsMin = new Vector3f(header.getFloat(), header.getFloat(), header.getFloat());
+		final Vector3f boundsMax = new Vector3f(header.getFloat(), header.getFloat(), header.getFloat());
+		final ByteOrder order = (flags & FLAG_BIG_ENDIAN) != 0 ? ByteOrder.BIG_ENDIAN : ByteOrder.LITTLE_ENDIAN;
+		final VertexData data = new VertexData();
+		for (int i = 0; i < attributeCount; i++) {
+			final int start = header.position();
+			final DataType type = getDataType(header.getInt());
+			final int size = header.getInt();
+			final int uploadMode = header.getInt();
+			final int offset = header.getInt();
+			final int length = header.getInt();
+			final byte[] name = new byte[header.getShort() & 0xffff];
+			header.get(name);
+			header.position(start + align(26 + name.length, 4));
+			if (uploadMode < 0 || uploadMode >= UploadMode.values().length) {
+				throw new MalformedMeshFileException("Invalid upload mode " + uploadMode + " for attribute " + i);
+			}
+			if (length != vertexCount * size * type.getByteSize()) {
+				throw new MalformedMeshFileException("Attribute " + i + " doesn't have " + vertexCount + " vertices");
+			}
+			final VertexAttribute attribute = new VertexAttribute(new String(name, UTF_8), type, size, UploadMode.values()[uploadMode]);
+			attribute.transferData(getBlob(file, offset, length, type, order));
+			data.addAttribute(i, attribute);
+		}
+		data.setIndicesBuffer(getBlob(file, indicesOffset, indicesCount * indicesType.getByteSize(), indicesType, order), indicesType);
+		if ((flags & FLAG_BOUNDS) == 0) {
+			return new MeshFile(data, vertexCount, null, null);
+		}
+		return new MeshFile(data, vertexCount, boundsMin, boundsMax);
+	}
+
+	private static ByteBuffer getBlob(ByteBuffer file, int offset, int length, DataType type, ByteOrder order) {
+		if (offset < 0 || length < 0 || (long) offset + length > file.capacity()) {
+			throw new MalformedMeshFileException("Data is out of the file bounds");
+		}
+		final ByteBuffer blob = file.duplicate();
+		blob.limit(offset + length).position(offset);
+		if (order == ByteOrder.nativeOrder() || type.getByteSize() == 1) {
+			return blob.slice().order(ByteOrder.nativeOrder());
+		}
+		// Written on a machine with another byte order, swap into a new buffer
+		final ByteBuffer swapped = CausticUtil.createByteBuffer(length);
+		final int byteSize = type.getByteSize();
+		for (int i = 0; i < length; i += byteSize) {
+			for (int b = 0; b < byteSize; b++) {
+				swapped.put(i + b, blob.get(offset + i + byteSize - 1 - b));
+			}
+		}
+		return swapped;
+	}
+
+	private static void putBounds(ByteBuffer header, VertexAttribute positions, int vertexCount) {
+		if (positions == null) {
+			throw new IllegalArgumentException("No positions attribute at the given index");
+		}
+		if (positions.getType() != DataType.FLOAT || positions.getSize() < 2) {
+			throw new IllegalArgumentException("Positions must be floats with at least two components");
+		}
+		final ByteBuffer data = positions.getData();
+		final int size = positions.getSize();
+		final float[] min = {Float.POSITIVE_INFINITY, Float.POSITIVE_INFINITY, Float.POSITIVE_INFINITY};
+		final float[] max = {Float.NEGATIVE_INFINITY, Float.NEGATIVE_INFINITY, Float.NEGATIVE_INFINITY};
+		for (int v = 0; v < vertexCount; v++) {
+			for (int c = 0; c < 3; c++) {
+				final float value = c < size ? data.getFloat((v * size + c) * 4) : 0;
+				min[c] = Math.min(min[c], value);
+				max[c] = Math.max(max[c], value);
+			}
+		}
+		if (vertexCount == 0) {
+			for (int c = 0; c < 3; c++) {
+				min[c] = 0;
+				max[c] = 0;
+			}
+		}
+		for (int c = 0; c < 3; c++) {
+			header.putFloat(min[c]);
+		}
+		for (int c = 0; c < 3; c++) {
+			header.putFloat(max[c]);
+		}
+	}
+
+	private static void writeFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+		final ByteBuffer source = buffer.duplicate();
+		while (source.hasRemaining()) {
+			position += channel.write(source, position);
+		}
+	}
+
+	private static DataType getDataType(int glConstant) {
+		for (DataType type : DataType.values()) {
+			if (type.getGLConstant() == glConstant) {
+				return type;
+			}
+		}
+		throw new MalformedMeshFileException("Unknown data type 0x" + Integer.toHexString(glConstant));
+	}
+
+	private static long align(long offset, int alignment) {
+		return (offset + alignment - 1) / alignment * alignment;
+	}
+
+	private static int align(int offset, int alignment) {
+		return (offset + alignment - 1) / alignment * alignment;
+	}
+
+	private static int checkOffset(long offset) {
+		if (offset > Integer.MAX_VALUE) {
+			throw new IllegalArgumentException("Mesh is too large for a mesh file");
+		}
+		return (int) offset;
+	}
+
+	/**
+	 * An exception throw by the {@link MeshFile} during loading if the file isn't a valid mesh file.
+	 */
+	public static class MalformedMeshFileException extends RuntimeException {
+		/**
+		 * Creates a new exception from the message.
+		 *
+		 * @param message The reason why the file is invalid
+		 */
+		public MalformedMeshFileException(String message) {
+			super(message);
+		}
+
+		/**
+		 * Creates a new exception from the message and the cause.
+		 *
+		 * @param message The reason why the file is invalid
+		 * @param cause The original exception
+		 */
+		public MalformedMeshFileException(String message, Throwable cause) {
+			super(message, cause);
+		}
+	}
+}
@@ -0,0 +1,549 @@
+/*
+ * This file is part of Caustic.
+ *
+ * Copyright (c) 2013 Spout LLC <http://www.spout.org/>
+ * Caustic is licensed under the Spout License Version 1.
+ *
+ * Caustic is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the Free
+ * Software Foundation, either version 3 of the License, or (at your option)
+ * any later version.
+ *
+ * In addition, 180 days after any changes are published, you can use the
+ * software, incorporating those changes, under the terms of the MIT license,
+ * as described in the Spout License Version 1.
+ *
+ * Caustic is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE.  See the GNU Lesser General Public License for
+ * more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License,
+ * the MIT license and the Spout License Version 1 along with this program.
+ * If not, see <http://www.gnu.org/licenses/> for the GNU Lesser General Public
+ * License and see <http://spout.in/licensev1> for the full license, including
+ * the MIT license.
+ */
+package org.spout.renderer.util;
+
+import java.nio.ByteBuffer;
+import java.nio.FloatBuffer;
+import java.util.Arrays;
+import java.util.Comparator;
+
+import gnu.trove.list.TIntList;
+import gnu.trove.list.array.TIntArrayList;
+
+import org.spout.renderer.data.VertexAttribute;
+import org.spout.renderer.data.VertexAttribute.DataType;
+import org.spout.renderer.data.VertexData;
+
+/**
+ * Static methods to reorder the triangles and vertices of a {@link VertexData} for faster rendering. The indices must describe a triangle list. Only the order changes, the rendered mesh is the same.
+ * <p/>
+ * The passes are, in the order they should be applied:
+ * <ol>
+ * <li>{@link #optimizeVertexCache(VertexData, int)}: reorders the triangles so that vertices are reused while still in the post-transform cache, using Tom Forsyth's linear-speed algorithm.</li>
+ * <li>{@link #optimizeOverdraw(VertexData, int, int)}: reorders clusters of triangles so that those facing outwards are drawn first, which reduces overdraw, while keeping the cache order inside the
+ * clusters.</li>
+ * <li>{@link #optimizeVertexFetch(VertexData)}: reorders the vertices in the order they are first used, and remaps every attribute to match, which improves the memory locality of the vertex
+ * fetches.</li>
+ * </ol>
+ * {@link #optimize(VertexData, int, int)} applies all of them and reports the ACMR (average cache miss ratio, the transformed vertices per triangle) and ATVR (average transformed vertex ratio, the
+ * transformed vertices per vertex) before and after.
+ */
+public final class MeshOptimizer {
+	/**
+	 * A common post-transform cache size, in vertices.
+	 */
+	public static final int DEFAULT_CACHE_SIZE = 16;
+	private static final float CACHE_DECAY_POWER = 1.5f;
+	private static final float LAST_TRIANGLE_SCORE = 0.75f;
+	private static final float VALENCE_BOOST_SCALE = 2;
+	private static final float VALENCE_BOOST_POWER = 0.5f;
+
+	private MeshOptimizer() {
+	}
+
+	/**
+	 * Applies all the optimization passes to the vertex data, without the overdraw pass if the position attribute index is negative.
+	 *
+	 * @param data The vertex data to optimize
+	 * @param positionsIndex The index of the position attribute, or -1 to skip the overdraw optimization
+	 * @param cacheSize The size of the post-transform cache, in vertices
+	 * @return The report of the cache efficiency before and after optimization
+	 */
+	public static Report optimize(VertexData data, int positionsIndex, int cacheSize) {
+		final TIntList indices = data.getIndices();
+		final float acmrBefore = getACMR(indices, cacheSize);
+		final float atvrBefore = getATVR(indices, cacheSize);
+		optimizeVertexCache(data, cacheSize);
+		if (positionsIndex >= 0) {
+			optimizeOverdraw(data, positionsIndex, cacheSize);
+		}
+		optimizeVertexFetch(data);
+		return new Report(acmrBefore, getACMR(indices, cacheSize), atvrBefore, getATVR(indices, cacheSize));
+	}
+
+	/**
+	 * Reorders the triangles to improve the reuse of the transformed vertices in the post-transform cache. The cache size is used to score the vertices, the result is good for any cache of about this
+	 * size or larger.
+	 *
+	 * @param data The vertex data to optimize
+	 * @param cacheSize The size of the post-transform cache, in vertices
+	 */
+	public static void optimizeVertexCache(VertexData data, int cacheSize) {
+		if (cacheSize <= 3) {
+			throw new IllegalArgumentException("Cache size must be larger than 3");
+		}
+		final TIntList indexList = data.getIndices();
+		final int[] indices = indexList.toArray();
+		checkTriangles(indices);
+		indexList.set(0, reorderForVertexCache(indices, getVertexCount(indices), cacheSize));
+	}
+
+	/**
+	 * Reorders clusters of triangles so that the ones facing outwards of the mesh are drawn first, as they are the most likely to occlude the others. Clusters are split where the post-transform cache
+	 * is fully missed, so the vertex cache efficiency is mostly kept. This should be applied after {@link #optimizeVertexCache(VertexData, int)}.
+	 *
+	 * @param data The vertex data to optimize
+	 * @param positionsIndex The index of the position attribute, which must be of type float with at least 3 components
+	 * @param cacheSize The size of the post-transform cache, in vertices
+	 */
+	public static void optimizeOverdraw(VertexData data, int positionsIndex, int cacheSize) {
+		final VertexAttribute attribute = data.getAttribute(positionsIndex);
+		if (attribute == null) {
+			throw new IllegalArgumentException("No attribute at index " + positionsIndex);
+		}
+		if (attribute.getType() != DataType.FLOAT || attribute.getSize() < 3) {
+			throw new IllegalArgumentException("Positions must be floats with at least 3 components");
+		}
+		final TIntList indexList = data.getIndices();
+		final int[] indices = indexList.toArray();
+		checkTriangles(indices);
+		final int triangleCount = indices.length / 3;
+		if (triangleCount == 0) {
+			return;
+		}
+		final FloatBuffer positions = attribute.getData().asFloatBuffer();
+		final int stride = attribute.getSize();
+		if (getVertexCount(indices) * stride > positions.limit()) {
+			throw new IllegalArgumentException("Indices reference missing positions");
+		}
+		// Split into clusters where the cache is fully missed
+		final TIntList clusterStarts = new TIntArrayList();
+		final int[] insertionTimes = new int[getVertexCount(indices)];
+		Arrays.fill(insertionTimes, -cacheSize);
+		int misses = 0;
+		for (int t = 0; t < triangleCount; t++) {
+			int triangleMisses = 0;
+			for (int k = 0; k < 3; k++) {
+				final int vertex = indices[t * 3 + k];
+				if (misses - insertionTimes[vertex] >= cacheSize) {
+					insertionTimes[vertex] = misses++;
+					triangleMisses++;
+				}
+			}
+			if (t == 0 || triangleMisses == 3) {
+				clusterStarts.add(t);
+			}
+		}
+		final int clusterCount = clusterStarts.size();
+		clusterStarts.add(triangleCount);
+		// Compute the area weighted centroid and normal of each cluster, and the centroid of the mesh
+		final float[] clusterData = new float[clusterCount * 6];
+		final float[] meshCentroid = new float[3];
+		float meshArea = 0;
+		for (int c = 0; c < clusterCount; c++) {
+			float clusterArea = 0;
+			for (int t = clusterStarts.get(c); t < clusterStarts.get(c + 1); t++) {
+				final int a = indices[t * 3] * stride, b = indices[t * 3 + 1] * stride, d = indices[t * 3 + 2] * stride;
+				final float abX = positions.get(b) - positions.get(a), abY = positions.get(b + 1) - positions.get(a + 1), abZ = positions.get(b + 2) - positions.get(a + 2);
+				final float adX = positions.get(d) - positions.get(a), adY = positions.get(d + 1) - positions.get(a + 1), adZ = positions.get(d + 2) - positions.get(a + 2);
+				final float normalX = abY * adZ - abZ * adY, normalY = abZ * adX - abX * adZ, normalZ = abX * adY - abY * adX;
+				final float area = (float) Math.sqrt(normalX * normalX + normalY * normalY + normalZ * normalZ);
+				for (int i = 0; i < 3; i++) {
+					final float centroid = (positions.get(a + i) + positions.get(b + i) + positions.get(d + i)) / 3;
+					clusterData[c * 6 + i] += centroid * area;
+					meshCentroid[i] += centroid * area;
+				}
+				clusterData[c * 6 + 3] += normalX;
+				clusterData[c * 6 + 4] += normalY;
+				clusterData[c * 6 + 5] += normalZ;
+				clusterArea += area;
+			}
+			if (clusterArea > 0) {
+				for (int i = 0; i < 3; i++) {
+					clusterData[c * 6 + i] /= clusterArea;
+				}
+			}
+			meshArea += clusterArea;
+		}
+		if (meshArea > 0) {
+			for (int i = 0; i < 3; i++) {
+				meshCentroid[i] /= meshArea;
+			}
+		}
+		// Sort the clusters by how much they face outwards, from the center of the mesh
+		final float[] sortKeys = new float[clusterCount];
+		final Integer[] order = new Integer[clusterCount];
+		for (int c = 0; c < clusterCount; c++) {
+			final float normalX = clusterData[c * 6 + 3], normalY = clusterData[c * 6 + 4], normalZ = clusterData[c * 6 + 5];
+			final float length = (float) Math.sqrt(normalX * normalX + normalY * normalY + normalZ * normalZ);
+			if (length > 0) {
+				sortKeys[c] = ((clusterData[c * 6] - meshCentroid[0]) * normalX + (clusterData[c * 6 + 1] - meshCentroid[1]) * normalY + (clusterData[c * 6 + 2] - meshCentroid[2]) * normalZ) / length;
+			}
+			order[c] = c;
+		}
+		Arrays.sort(order, new Comparator<Integer>() {
+			@Override
+			public int compare(Integer first, Integer second) {
+				return Float.compare(sortKeys[second], sortKeys[first]);
+			}
+		});
+		final int[] sorted = new int[indices.length];
+		int position = 0;
+		for (int c : order) {
+			final int start = clusterStarts.get(c) * 3;
+			final int length = clusterStarts.get(c + 1) * 3 - start;
+			System.arraycopy(indices, start, sorted, position, length);
+			position += length;
+		}
+		indexList.set(0, sorted);
+	}
+
+	/**
+	 * Reorders the vertices in the order they are first referenced by the indices, and remaps the indices and every attribute to match. Unreferenced vertices are moved to the end. All the attributes
+	 * must have the same number of vertices.
+	 *
+	 * @param data The vertex data to optimize
+	 */
+	public static void optimizeVertexFetch(VertexData data) {
+		final TIntList indexList = data.getIndices();
+		final int[] indices = indexList.toArray();
+		int vertexCount = getVertexCount(indices);
+		final int attributeCount = data.getAttributeCount();
+		final VertexAttribute[] attributes = new VertexAttribute[attributeCount];
+		final ByteBuffer[] sources = new ByteBuffer[attributeCount];
+		int attributeVertexCount = -1;
+		for (int i = 0; i < attributeCount; i++) {
+			final VertexAttribute attribute = data.getAttribute(i);
+			if (attribute == null) {
+				throw new IllegalArgumentException("Attribute indices must be contiguous from 0, missing index " + i);
+			}
+			final ByteBuffer source = attribute.getData();
+			final int count = source.limit() / (attribute.getSize() * attribute.getType().getByteSize());
+			if (attributeVertexCount == -1) {
+				attributeVertexCount = count;
+			} else if (attributeVertexCount != count) {
+				throw new IllegalArgumentException("Attribute at index " + i + " has " + count + " vertices, expected " + attributeVertexCount);
+			}
+			attributes[i] = attribute;
+			sources[i] = source;
+		}
+		if (attributeVertexCount != -1) {
+			if (vertexCount > attributeVertexCount) {
+				throw new IllegalArgumentException("Indices reference missing vertices");
+			}
+			vertexCount = attributeVertexCount;
+		}
+		// Assign the new vertex indices in the order of first use
+		final int[] remap = new int[vertexCount];
+		Arrays.fill(remap, -1);
+		int next = 0;
+		for (int i = 0; i < indices.length; i++) {
+			final int vertex = indices[i];
+			if (remap[vertex] == -1) {
+				remap[vertex] = next++;
+			}
+			indices[i] = remap[vertex];
+		}
+		// The old index of each new vertex
+		final int[] order = new int[vertexCount];
+		for (int v = 0; v < vertexCount; v++) {
+			if (remap[v] == -1) {
+				remap[v] = next++;
+			}
+			order[remap[v]] = v;
+		}
+		indexList.set(0, indices);
+		// Move the attribute data to match
+		for (int i = 0; i < attributeCount; i++) {
+			final VertexAttribute attribute = attributes[i];
+			attribute.transferData(VertexUtil.gather(sources[i], attribute.getSize() * attribute.getType().getByteSize(), order, vertexCount));
+		}
+	}
+
+	/**
+	 * Returns the average cache miss ratio of the indices: the number of vertices transformed per triangle with a FIFO post-transform cache of the given size. It ranges from 3 (no reuse) to about 0.5
+	 * for a regular grid.
+	 *
+	 * @param indices The triangle list indices
+	 * @param cacheSize The size of the post-transform cache, in vertices
+	 * @return The ACMR, or zero if there are no triangles
+	 */
+	public static float getACMR(TIntList indices, int cacheSize) {
+		final int triangleCount = indices.size() / 3;
+		if (triangleCount == 0) {
+			return 0;
+		}
+		return (float) countCacheMisses(indices.toArray(), cacheSize) / triangleCount;
+	}
+
+	/**
+	 * Returns the average transformed vertex ratio of the indices: the number of vertices transformed per referenced vertex with a FIFO post-transform cache of the given size. It is 1 at best, when
+	 * each vertex is transformed once.
+	 *
+	 * @param indices The triangle list indices
+	 * @param cacheSize The size of the post-transform cache, in vertices
+	 * @return The ATVR, or zero if there are no indices
+	 */
+	public static float getATVR(TIntList indices, int cacheSize) {
+		final int[] array = indices.toArray();
+		final boolean[] referenced = new boolean[getVertexCount(array)];
+		int vertexCount = 0;
+		for (int index : array) {
+			if (!referenced[index]) {
+				referenced[index] = true;
+				vertexCount++;
+			}
+		}
+		if (vertexCount == 0) {
+			return 0;
+		}
+		return (float) countCacheMisses(array, cacheSize) / vertexCount;
+	}
+
+	private static int countCacheMisses(int[] indices, int cacheSize) {
+		if (cacheSize <= 0) {
+			throw new IllegalArgumentException("Cache size must be positive");
+		}
+		// A vertex is still in the FIFO if less than the cache size misses happened since it was inserted
+		final int[] insertionTimes = new int[getVertexCount(indices)];
+		Arrays.fill(insertionTimes, -cacheSize);
+		int misses = 0;
+		for (int index : indices) {
+			if (misses - insertionTimes[index] >= cacheSize) {
+				insertionTimes[index] = misses++;
+			}
+		}
+		return misses;
+	}
+
+	private static int[] reorderForVertexCache(int[] indices, int vertexCount, int cacheSize) {
+		final int triangleCount = indices.length / 3;
+		// Build the lists of triangles using each vertex, the first "valence" entries of each list are the triangles not yet emitted
+		final int[] valences = new int[vertexCount];
+		for (int index : indices) {
+			valences[index]++;
+		}
+		final int[] adjacencyOffsets = new int[vertexCount + 1];
+		for (int v = 0; v < vertexCount; v++) {
+			adjacencyOffsets[v + 1] = adjacencyOffsets[v] + valences[v];
+		}
+		final int[] adjacency = new int[indices.length];
+		final int[] adjacencyFill = Arrays.copyOf(adjacencyOffsets, vertexCount);
+		for (int i = 0; i < indices.length; i++) {
+			adjacency[adjacencyFill[indices[i]]++] = i / 3;
+		}
+		// Initial scores, no vertex is in the cache
+		final int[] cachePositions = new int[vertexCount];
+		Arrays.fill(cachePositions, -1);
+		final float[] vertexScores = new float[vertexCount];
+		for (int v = 0; v < vertexCount; v++) {
+			vertexScores[v] = scoreVertex(-1, valences[v], cacheSize);
+		}
+		final float[] triangleScores = new float[triangleCount];
+		int best = -1;
+		for (int t = 0; t < triangleCount; t++) {
+			triangleScores[t] = vertexScores[indices[t * 3]] + vertexScores[indices[t * 3 + 1]] + vertexScores[indices[t * 3 + 2]];
+			if (best == -1 || triangleScores[t] > triangleScores[best]) {
+				best = t;
+			}
+		}
+		final boolean[] emitted = new boolean[triangleCount];
+		// The cache holds 3 extra entries so the vertices pushed out by the last triangle are still rescored
+		int[] cache = new int[cacheSize + 3];
+		int[] nextCache = new int[cacheSize + 3];
+		int cacheCount = 0;
+		int cursor = 0;
+		final int[] reordered = new int[indices.length];
+		for (int out = 0; out < triangleCount; out++) {
+			if (best == -1) {
+				// Dead end, continue from the next triangle in the original order
+				while (emitted[cursor]) {
+					cursor++;
+				}
+				best = cursor;
+			}
+			emitted[best] = true;
+			final int a = indices[best * 3], b = indices[best * 3 + 1], c = indices[best * 3 + 2];
+			reordered[out * 3] = a;
+			reordered[out * 3 + 1] = b;
+			reordered[out * 3 + 2] = c;
+			// Remove the triangle from the remaining triangles of its vertices
+			for (int k = 0; k < 3; k++) {
+				final int vertex = indices[best * 3 + k];
+				final int start = adjacencyOffsets[vertex];
+				final int end = start + valences[vertex];
+				for (int i = start; i < end; i++) {
+					if (adjacency[i] == best) {
+						adjacency[i] = adjacency[end - 1];
+						adjacency[end - 1] = best;
+						valences[vertex]--;
+						break;
+					}
+				}
+			}
+			// Move the triangle vertices to the front of the cache
+			int nextCount = 0;
+			nextCache[nextCount++] = a;
+			if (b != a) {
+				nextCache[nextCount++] = b;
+			}
+			if (c != a && c != b) {
+				nextCache[nextCount++] = c;
+			}
+			for (int i = 0; i < cacheCount; i++) {
+				final int vertex = cache[i];
+				cachePositions[vertex] = -1;
+				if (vertex != a && vertex != b && vertex != c && nextCount < nextCache.length) {
+					nextCache[nextCount++] = vertex;
+				}
+			}
+			for (int i = 0; i < nextCount; i++) {
+				cachePositions[nextCache[i]] = i < cacheSize ? i : -1;
+			}
+			// Rescore the vertices that moved or dropped out, and their remaining triangles
+			for (int i = 0; i < cacheCount; i++) {
+				updateScore(cache[i], cachePositions, valences, vertexScores, adjacencyOffsets, adjacency, triangleScores, cacheSize);
+			}
+			for (int i = 0; i < nextCount; i++) {
+				updateScore(nextCache[i], cachePositions, valences, vertexScores, adjacencyOffsets, adjacency, triangleScores, cacheSize);
+			}
+			final int[] swap = cache;
+			cache = nextCache;
+			nextCache = swap;
+			cacheCount = nextCount;
+			// Pick the best remaining triangle using a vertex in the cache
+			best = -1;
+			for (int i = 0; i < cacheCount; i++) {
+				final int vertex = cache[i];
+				final int start = adjacencyOffsets[vertex];
+				for (int j = start; j < start + valences[vertex]; j++) {
+					final int triangle = adjacency[j];
+					if (best == -1 || triangleScores[triangle] > triangleScores[best]) {
+						best = triangle;
+					}
+				}
+			}
+		}
+		return reordered;
+	}
+
+	private static void updateScore(int vertex, int[] cachePositions, int[] valences, float[] vertexScores, int[] adjacencyOffsets, int[] adjacency, float[] triangleScores, int cacheSize) {
+		final float score = scoreVertex(cachePositions[vertex], valences[vertex], cacheSize);
+		final float delta = score - vertexScores[vertex];
+		if (delta == 0) {
+			return;
+		}
+		vertexScores[vertex] = score;
+		final int start = adjacencyOffsets[vertex];
+		for (int i = start; i < start + valences[vertex]; i++) {
+			triangleScores[adjacency[i]] += delta;
+		}
+	}
+
+	private static float scoreVertex(int cachePosition, int remainingValence, int cacheSize) {
+		if (remainingValence == 0) {
+			// No triangle left to use it
+			return -1;
+		}
+		float score = 0;
+		if (cachePosition >= 0) {
+			if (cachePosition < 3) {
+				// Used by the last triangle, a fixed score avoids favoring strips too much
+				score = LAST_TRIANGLE_SCORE;
+			} else {
+				score = (float) Math.pow(1 - (float) (cachePosition - 3) / (cacheSize - 3), CACHE_DECAY_POWER);
+			}
+		}
+		// Boost the vertices with few triangles left, to finish them and avoid leaving lone triangles
+		return score + VALENCE_BOOST_SCALE * (float) Math.pow(remainingValence, -VALENCE_BOOST_POWER);
+	}
+
+	private static void checkTriangles(int[] indices) {
+		if (indices.length % 3 != 0) {
+			throw new IllegalArgumentException("Indices must describe a triangle list, got " + indices.length + " indices");
+		}
+	}
+
+	private static int getVertexCount(int[] indices) {
+		int max = -1;
+		for (int index : indices) {
+			if (index < 0) {
+				throw new IllegalArgumentException("Indices cannot be negative");
+			}
+			max = Math.max(max, index);
+		}
+		return max + 1;
+	}
+
+	/**
+	 * The cache efficiency of a mesh before and after optimization.
+	 */
+	public static class Report {
+		private final float acmrBefore;
+		private final float acmrAfter;
+		private final float atvrBefore;
+		private final float atvrAfter;
+
+		private Report(float acmrBefore, float acmrAfter, float atvrBefore, float atvrAfter) {
+			this.acmrBefore = acmrBefore;
+			this.acmrAfter = acmrAfter;
+			this.atvrBefore = atvrBefore;
+			this.atvrAfter = atvrAfter;
+		}
+
+		/**
+		 * Returns the average cache miss ratio before optimization.
+		 *
+		 * @return The ACMR before
+		 */
+		public float getACMRBefore() {
+			return acmrBefore;
+		}
+
+		/**
+		 * Returns the average cache miss ratio after optimization.
+		 *
+		 * @return The ACMR after
+		 */
+		public float getACMRAfter() {
+			return acmrAfter;
+		}
+
+		/**
+		 * Returns the average transformed vertex ratio before optimization.
+		 *
+		 * @return The ATVR before
+		 */
+		public float getATVRBefore() {
+			return atvrBefore;
+		}
+
+		/**
+		 * Returns the average transformed vertex ratio after optimization.
+		 *
+		 * @return The ATVR after
+		 */
+		public float getATVRAfter() {
+			return atvrAfter;
+		}
+
+		@Override
+		public String toString() {
+			return String.format("ACMR: %.3f -> %.3f, ATVR: %.3f -> %.3f", acmrBefore, acmrAfter, atvrBefore, atvrAfter);
+		}
+	}
+}
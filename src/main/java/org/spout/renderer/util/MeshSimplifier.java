@@ -0,0 +1,557 @@
+/*
+ * This file is part of Caustic.
+ *
+ * Copyright (c) 2013 Spout LLC <http://www.spout.org/>
+ * Caustic is licensed under the Spout License Version 1.
+ *
+ * Caustic is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the Free
+ * Software Foundation, either version 3 of the License, or (at your option)
+ * any later version.
+ *
+ * In addition, 180 days after any changes are published, you can use the
+ * software, incorporating those changes, under the terms of the MIT license,
+ * as described in the Spout License Version 1.
+ *
+ * Caustic is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE.  See the GNU Lesser General Public License for
+ * more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License,
+ * the MIT license and the Spout License Version 1 along with this program.
+ * If not, see <http://www.gnu.org/licenses/> for the GNU Lesser General Public
+ * License and see <http://spout.in/licensev1> for the full license, including
+ * the MIT license.
+ */
+package org.spout.renderer.util;
+
+import java.nio.ByteBuffer;
+import java.nio.FloatBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import gnu.trove.list.TIntList;
+import gnu.trove.list.array.TIntArrayList;
+
+import org.spout.renderer.data.VertexAttribute;
+import org.spout.renderer.data.VertexAttribute.DataType;
+import org.spout.renderer.data.VertexData;
+
+/**
+ * Simplifies triangle meshes using quadric error metrics, to generate levels of detail. Vertices are collapsed into one of their neighbours (half-edge collapses), so the remaining vertices keep their
+ * positions and all their attributes, such as normals and texture coordinates. Each vertex accumulates the planes of the triangles around it, and the cost of a collapse is the sum of the squared
+ * distances from the new position to these planes.
+ * <p/>
+ * Borders and seams are preserved: vertices that share their position with other vertices (seams, where normals or texture coordinates are split) are never collapsed, and border vertices are only
+ * collapsed along the border. Meshes should be welded first, see {@link VertexWelder}, so that only real seams remain. Collapses that would flip a triangle or make the mesh non-manifold are rejected.
+ */
+public final class MeshSimplifier {
+	private static final int QUADRIC_SIZE = 10;
+
+	private MeshSimplifier() {
+	}
+
+	/**
+	 * Simplifies the vertex data to each target ratio of its triangle count, in decreasing order. Each level continues the simplification of the previous one. The levels are new vertex data with the
+	 * same attributes, compacted to the vertices they use. A level can have more triangles than its target if the borders, seams or mesh topology prevent further simplification.
+	 *
+	 * @param data The vertex data to simplify, a triangle list
+	 * @param positionsIndex The index of the position attribute, which must be of type float with at least 3 components
+	 * @param ratios The target ratios of the triangle count, in decreasing order, between 0 and 1
+	 * @return The levels of detail, in the same order as the ratios
+	 */
+	public static List<Level> simplify(VertexData data, int positionsIndex, float... ratios) {
+		final VertexAttribute positionsAttribute = data.getAttribute(positionsIndex);
+		if (positionsAttribute == null) {
+			throw new IllegalArgumentException("No attribute at index " + positionsIndex);
+		}
+		if (positionsAttribute.getType() != DataType.FLOAT || positionsAttribute.getSize() < 3) {
+			throw new IllegalArgumentException("Positions must be floats with at least 3 components");
+		}
+		for (int i = 0; i < ratios.length; i++) {
+			if (!(ratios[i] > 0 && ratios[i] <= 1) || i > 0 && ratios[i] > ratios[i - 1]) {
+				throw new IllegalArgumentException("Ratios must be in decreasing order, between 0 and 1");
+			}
+		}
+		final TIntList indexList = data.getIndices();
+		if (indexList.size() % 3 != 0) {
+			throw new IllegalArgumentException("Indices must describe a triangle list, got " + indexList.size() + " indices");
+		}
+		final FloatBuffer positionsBuffer = positionsAttribute.getData().asFloatBuffer();
+		final int stride = positionsAttribute.getSize();
+		final int vertexCount = positionsBuffer.limit() / stride;
+		final double[] positions = new double[vertexCount * 3];
+		for (int v = 0; v < vertexCount; v++) {
+			for (int c = 0; c < 3; c++) {
+				positions[v * 3 + c] = positionsBuffer.get(v * stride + c);
+			}
+		}
+		final int[] triangles = indexList.toArray();
+		for (int index : triangles) {
+			if (index < 0 || index >= vertexCount) {
+				throw new IllegalArgumentException("Index " + index + " references a missing vertex");
+			}
+		}
+		final Simplifier simplifier = new Simplifier(positions, triangles);
+		final int originalTriangleCount = triangles.length / 3;
+		final List<Level> levels = new ArrayList<>(ratios.length);
+		for (float ratio : ratios) {
+			simplifier.simplify((int) (originalTriangleCount * ratio));
+			levels.add(new Level(createLevelData(data, simplifier.getTriangles()), (float) Math.sqrt(simplifier.getMaxCost()), ratio));
+		}
+		return Collections.unmodifiableList(levels);
+	}
+
+	private static VertexData createLevelData(VertexData data, int[] triangles) {
+		final int attributeCount = data.getAttributeCount();
+		int vertexCount = Integer.MAX_VALUE;
+		for (int i = 0; i < attributeCount; i++) {
+			final VertexAttribute attribute = data.getAttribute(i);
+			if (attribute == null) {
+				throw new IllegalArgumentException("Attribute indices must be contiguous from 0, missing index " + i);
+			}
+			vertexCount = Math.min(vertexCount, attribute.getData().limit() / (attribute.getSize() * attribute.getType().getByteSize()));
+		}
+		// Keep only the used vertices, in the order of first use
+		final int[] remap = new int[vertexCount];
+		Arrays.fill(remap, -1);
+		final int[] used = new int[vertexCount];
+		int usedCount = 0;
+		final VertexData level = new VertexData();
+		final TIntList indices = level.getIndices();
+		for (int index : triangles) {
+			if (remap[index] == -1) {
+				remap[index] = usedCount;
+				used[usedCount++] = index;
+			}
+			indices.add(remap[index]);
+		}
+		for (int i = 0; i < attributeCount; i++) {
+			final VertexAttribute attribute = data.getAttribute(i);
+			final int vertexSize = attribute.getSize() * attribute.getType().getByteSize();
+			final ByteBuffer destination = VertexUtil.gather(attribute.getData(), vertexSize, used, usedCount);
+			final VertexAttribute levelAttribute = new VertexAttribute(attribute.getName(), attribute.getType(), attribute.getSize(), attribute.getUploadMode());
+			levelAttribute.transferData(destination);
+			level.addAttribute(i, levelAttribute);
+		}
+		return level;
+	}
+
+	private static class Simplifier {
+		private final double[] positions;
+		private final double[] quadrics;
+		private final boolean[] locked;
+		private int[] triangles;
+		private double maxCost = 0;
+
+		private Simplifier(double[] positions, int[] triangles) {
+			this.positions = positions;
+			this.triangles = triangles;
+			final int vertexCount = positions.length / 3;
+			quadrics = new double[vertexCount * QUADRIC_SIZE];
+			locked = new boolean[vertexCount];
+			findSeams();
+			computeQuadrics();
+		}
+
+		private int[] getTriangles() {
+			return triangles;
+		}
+
+		private double getMaxCost() {
+			return maxCost;
+		}
+
+		// Locks the vertices that share their position with another vertex
+		private void findSeams() {
+			final int vertexCount = positions.length / 3;
+			final int[] table = new int[Integer.highestOneBit(Math.max(vertexCount, 2) - 1) << 2];
+			Arrays.fill(table, -1);
+			final int mask = table.length - 1;
+			for (int v = 0; v < vertexCount; v++) {
+				long hash = 0;
+				for (int c = 0; c < 3; c++) {
+					hash = hash * 31 + Double.doubleToLongBits(positions[v * 3 + c] + 0.0);
+				}
+				int slot = (int) (hash ^ hash >>> 29) & mask;
+				while (true) {
+					final int entry = table[slot];
+					if (entry == -1) {
+						table[slot] = v;
+						break;
+					}
+					if (positions[entry * 3] == positions[v * 3] && positions[entry * 3 + 1] == positions[v * 3 + 1] && positions[entry * 3 + 2] == positions[v * 3 + 2]) {
+						locked[entry] = true;
+						locked[v] = true;
+						break;
+					}
+					slot = slot + 1 & mask;
+				}
+			}
+		}
+
+		private void computeQuadrics() {
+			final double[] normal = new double[3];
+			for (int t = 0; t < triangles.length; t += 3) {
+				final int a = triangles[t], b = triangles[t + 1], c = triangles[t + 2];
+				if (!computeNormal(a, b, c, normal)) {
+					continue;
+				}
+				final double d = -dot(normal, a);
+				addQuadric(a, normal[0], normal[1], normal[2], d);
+				addQuadric(b, normal[0], normal[1], normal[2], d);
+				addQuadric(c, normal[0], normal[1], normal[2], d);
+			}
+			// Add planes perpendicular to the border edges, so that borders keep their shape
+			final EdgeCounts edges = countEdges();
+			for (int t = 0; t < triangles.length; t += 3) {
+				if (!computeNormal(triangles[t], triangles[t + 1], triangles[t + 2], normal)) {
+					continue;
+				}
+				for (int k = 0; k < 3; k++) {
+					final int a = triangles[t + k], b = triangles[t + (k + 1) % 3];
+					if (edges.get(edgeKey(a, b)) != 1) {
+						continue;
+					}
+					final double edgeX = positions[b * 3] - positions[a * 3], edgeY = positions[b * 3 + 1] - positions[a * 3 + 1], edgeZ = positions[b * 3 + 2] - positions[a * 3 + 2];
+					double planeX = edgeY * normal[2] - edgeZ * normal[1], planeY = edgeZ * normal[0] - edgeX * normal[2], planeZ = edgeX * normal[1] - edgeY * normal[0];
+					final double length = Math.sqrt(planeX * planeX + planeY * planeY + planeZ * planeZ);
+					if (length == 0) {
+						continue;
+					}
+					planeX /= length;
+					planeY /= length;
+					planeZ /= length;
+					final double d = -(planeX * positions[a * 3] + planeY * positions[a * 3 + 1] + planeZ * positions[a * 3 + 2]);
+					addQuadric(a, planeX, planeY, planeZ, d);
+					addQuadric(b, planeX, planeY, planeZ, d);
+				}
+			}
+		}
+
+		private void simplify(int targetTriangleCount) {
+			int triangleCount = triangles.length / 3;
+			while (triangleCount > targetTriangleCount) {
+				final int collapsed = collapsePass(triangleCount - targetTriangleCount);
+				if (collapsed == 0) {
+					// Nothing left that can be collapsed
+					return;
+				}
+				triangleCount = triangles.length / 3;
+			}
+		}
+
+		// Collapses the cheapest independent edges, and returns the number of triangles removed
+		private int collapsePass(int maxRemoved) {
+			final int vertexCount = positions.length / 3;
+			// Build the lists of triangles using each vertex
+			final int[] adjacencyOffsets = new int[vertexCount + 1];
+			for (int index : triangles) {
+				adjacencyOffsets[index + 1]++;
+			}
+			for (int v = 0; v < vertexCount; v++) {
+				adjacencyOffsets[v + 1] += adjacencyOffsets[v];
+			}
+			final int[] adjacency = new int[triangles.length];
+			final int[] fill = Arrays.copyOf(adjacencyOffsets, vertexCount);
+			for (int i = 0; i < triangles.length; i++) {
+				adjacency[fill[triangles[i]]++] = i / 3;
+			}
+			final EdgeCounts edges = countEdges();
+			final boolean[] border = new boolean[vertexCount];
+			for (int t = 0; t < triangles.length; t += 3) {
+				for (int k = 0; k < 3; k++) {
+					final int a = triangles[t + k], b = triangles[t + (k + 1) % 3];
+					if (edges.get(edgeKey(a, b)) == 1) {
+						border[a] = true;
+						border[b] = true;
+					}
+				}
+			}
+			// Find the cheapest collapse for each vertex
+			final int[] targets = new int[vertexCount];
+			final double[] costs = new double[vertexCount];
+			final TIntList candidates = new TIntArrayList();
+			final double[] quadric = new double[QUADRIC_SIZE];
+			for (int v = 0; v < vertexCount; v++) {
+				if (locked[v] || adjacencyOffsets[v] == adjacencyOffsets[v + 1]) {
+					continue;
+				}
+				int best = -1;
+				double bestCost = Double.POSITIVE_INFINITY;
+				for (int i = adjacencyOffsets[v]; i < adjacencyOffsets[v + 1]; i++) {
+					final int t = adjacency[i] * 3;
+					for (int k = 0; k < 3; k++) {
+						final int u = triangles[t + k];
+						if (u == v || border[v] && edges.get(edgeKey(v, u)) != 1) {
+							continue;
+						}
+						for (int q = 0; q < QUADRIC_SIZE; q++) {
+							quadric[q] = quadrics[v * QUADRIC_SIZE + q] + quadrics[u * QUADRIC_SIZE + q];
+						}
+						final double cost = evaluate(quadric, u);
+						if (cost < bestCost) {
+							bestCost = cost;
+							best = u;
+						}
+					}
+				}
+				if (best != -1) {
+					targets[v] = best;
+					costs[v] = bestCost;
+					candidates.add(v);
+				}
+			}
+			if (candidates.isEmpty()) {
+				return 0;
+			}
+			// Sort the candidates by cost, packed with their vertex in primitive longs (positive float bits sort like ints)
+			final long[] sorted = new long[candidates.size()];
+			for (int i = 0; i < sorted.length; i++) {
+				final int v = candidates.get(i);
+				sorted[i] = (long) Float.floatToIntBits((float) costs[v]) << 32 | v;
+			}
+			Arrays.sort(sorted);
+			// Only collapse the cheaper half in a pass, so that the expensive ones are reconsidered after the cheap ones
+			final double costLimit = costs[(int) sorted[(sorted.length - 1) / 2]];
+			final boolean[] touched = new boolean[vertexCount];
+			final int[] remap = new int[vertexCount];
+			for (int v = 0; v < vertexCount; v++) {
+				remap[v] = v;
+			}
+			final int[] stamps = new int[vertexCount];
+			int removed = 0;
+			for (long entry : sorted) {
+				final int v = (int) entry;
+				final int u = targets[v];
+				if (removed >= maxRemoved || costs[v] > costLimit) {
+					break;
+				}
+				if (touched[v] || touched[u]) {
+					continue;
+				}
+				final boolean borderEdge = edges.get(edgeKey(v, u)) == 1;
+				if (!checkLink(v, u, borderEdge ? 1 : 2, adjacencyOffsets, adjacency, stamps) || flips(v, u, adjacencyOffsets, adjacency)) {
+					continue;
+				}
+				// Collapse v into u
+				remap[v] = u;
+				for (int q = 0; q < QUADRIC_SIZE; q++) {
+					quadrics[u * QUADRIC_SIZE + q] += quadrics[v * QUADRIC_SIZE + q];
+				}
+				maxCost = Math.max(maxCost, costs[v]);
+				for (int i = adjacencyOffsets[v]; i < adjacencyOffsets[v + 1]; i++) {
+					final int t = adjacency[i] * 3;
+					for (int k = 0; k < 3; k++) {
+						touched[triangles[t + k]] = true;
+						if (triangles[t + k] == u) {
+							removed++;
+						}
+					}
+				}
+			}
+			// Apply the collapses and drop the degenerate triangles
+			final TIntList remaining = new TIntArrayList(triangles.length);
+			for (int t = 0; t < triangles.length; t += 3) {
+				final int a = remap[triangles[t]], b = remap[triangles[t + 1]], c = remap[triangles[t + 2]];
+				if (a != b && b != c && c != a) {
+					remaining.add(a);
+					remaining.add(b);
+					remaining.add(c);
+				}
+			}
+			final int before = triangles.length / 3;
+			triangles = remaining.toArray();
+			return before - triangles.length / 3;
+		}
+
+		// Checks that the vertices share exactly the expected number of neighbours, otherwise the collapse would make the mesh non-manifold
+		private boolean checkLink(int v, int u, int expected, int[] adjacencyOffsets, int[] adjacency, int[] stamps) {
+			// Mark the neighbours of v with v + 1, then the common ones with -(v + 1) so they are only counted once
+			final int mark = v + 1;
+			for (int i = adjacencyOffsets[v]; i < adjacencyOffsets[v + 1]; i++) {
+				final int t = adjacency[i] * 3;
+				for (int k = 0; k < 3; k++) {
+					stamps[triangles[t + k]] = mark;
+				}
+			}
+			int common = 0;
+			for (int i = adjacencyOffsets[u]; i < adjacencyOffsets[u + 1]; i++) {
+				final int t = adjacency[i] * 3;
+				for (int k = 0; k < 3; k++) {
+					final int w = triangles[t + k];
+					if (w != v && w != u && stamps[w] == mark) {
+						stamps[w] = -mark;
+						common++;
+					}
+				}
+			}
+			return common == expected;
+		}
+
+		// Checks if moving v to u would flip or degenerate a triangle that doesn't contain u
+		private boolean flips(int v, int u, int[] adjacencyOffsets, int[] adjacency) {
+			final double[] before = new double[3];
+			final double[] after = new double[3];
+			for (int i = adjacencyOffsets[v]; i < adjacencyOffsets[v + 1]; i++) {
+				final int t = adjacency[i] * 3;
+				final int a = triangles[t], b = triangles[t + 1], c = triangles[t + 2];
+				if (a == u || b == u || c == u) {
+					continue;
+				}
+				if (!computeNormal(a, b, c, before)) {
+					continue;
+				}
+				if (!computeNormal(a == v ? u : a, b == v ? u : b, c == v ? u : c, after) || before[0] * after[0] + before[1] * after[1] + before[2] * after[2] <= 0) {
+					return true;
+				}
+			}
+			return false;
+		}
+
+		private EdgeCounts countEdges() {
+			final EdgeCounts edges = new EdgeCounts(triangles.length);
+			for (int t = 0; t < triangles.length; t += 3) {
+				for (int k = 0; k < 3; k++) {
+					edges.increment(edgeKey(triangles[t + k], triangles[t + (k + 1) % 3]));
+				}
+			}
+			return edges;
+		}
+
+		private boolean computeNormal(int a, int b, int c, double[] normal) {
+			final double abX = positions[b * 3] - positions[a * 3], abY = positions[b * 3 + 1] - positions[a * 3 + 1], abZ = positions[b * 3 + 2] - positions[a * 3 + 2];
+			final double acX = positions[c * 3] - positions[a * 3], acY = positions[c * 3 + 1] - positions[a * 3 + 1], acZ = positions[c * 3 + 2] - positions[a * 3 + 2];
+			normal[0] = abY * acZ - abZ * acY;
+			normal[1] = abZ * acX - abX * acZ;
+			normal[2] = abX * acY - abY * acX;
+			final double length = Math.sqrt(normal[0] * normal[0] + normal[1] * normal[1] + normal[2] * normal[2]);
+			if (length == 0) {
+				return false;
+			}
+			normal[0] /= length;
+			normal[1] /= length;
+			normal[2] /= length;
+			return true;
+		}
+
+		private double dot(double[] normal, int vertex) {
+			return normal[0] * positions[vertex * 3] + normal[1] * positions[vertex * 3 + 1] + normal[2] * positions[vertex * 3 + 2];
+		}
+
+		// The quadric is stored as the upper triangle of the symmetric 4x4 matrix of the plane equation
+		private void addQuadric(int vertex, double a, double b, double c, double d) {
+			final int q = vertex * QUADRIC_SIZE;
+			quadrics[q] += a * a;
+			quadrics[q + 1] += a * b;
+			quadrics[q + 2] += a * c;
+			quadrics[q + 3] += a * d;
+			quadrics[q + 4] += b * b;
+			quadrics[q + 5] += b * c;
+			quadrics[q + 6] += b * d;
+			quadrics[q + 7] += c * c;
+			quadrics[q + 8] += c * d;
+			quadrics[q + 9] += d * d;
+		}
+
+		private double evaluate(double[] q, int vertex) {
+			final double x = positions[vertex * 3], y = positions[vertex * 3 + 1], z = positions[vertex * 3 + 2];
+			final double cost = q[0] * x * x + 2 * q[1] * x * y + 2 * q[2] * x * z + 2 * q[3] * x
+					+ q[4] * y * y + 2 * q[5] * y * z + 2 * q[6] * y
+					+ q[7] * z * z + 2 * q[8] * z
+					+ q[9];
+			return Math.max(cost, 0);
+		}
+
+		private static long edgeKey(int a, int b) {
+			return a < b ? (long) a << 32 | b : (long) b << 32 | a;
+		}
+	}
+
+	// Counts the triangles using each edge, in a primitive open addressing table. The keys are mixed, since packed vertex pairs hash poorly by themselves
+	private static class EdgeCounts {
+		private final long[] keys;
+		private final int[] counts;
+		private final int mask;
+
+		private EdgeCounts(int maxEdges) {
+			final int capacity = Integer.highestOneBit(Math.max(maxEdges, 2) - 1) << 2;
+			keys = new long[capacity];
+			counts = new int[capacity];
+			mask = capacity - 1;
+		}
+
+		private void increment(long key) {
+			final int slot = find(key);
+			keys[slot] = key;
+			counts[slot]++;
+		}
+
+		private int get(long key) {
+			return counts[find(key)];
+		}
+
+		private int find(long key) {
+			int slot = (int) VertexUtil.mix(key) & mask;
+			while (counts[slot] != 0 && keys[slot] != key) {
+				slot = slot + 1 & mask;
+			}
+			return slot;
+		}
+	}
+
+	/**
+	 * A level of detail produced by the simplifier.
+	 */
+	public static class Level {
+		private final VertexData data;
+		private final float error;
+		private final float ratio;
+
+		private Level(VertexData data, float error, float ratio) {
+			this.data = data;
+			this.error = error;
+			this.ratio = ratio;
+		}
+
+		/**
+		 * Returns the simplified vertex data.
+		 *
+		 * @return The vertex data
+		 */
+		public VertexData getData() {
+			return data;
+		}
+
+		/**
+		 * Returns the geometric error of the level, in the units of the positions. This is the square root of the largest collapse cost, which bounds the distance of the moved vertices to the planes
+		 * of the original triangles around them.
+		 *
+		 * @return The geometric error
+		 */
+		public float getError() {
+			return error;
+		}
+
+		/**
+		 * Returns the target ratio of the triangle count for this level.
+		 *
+		 * @return The target ratio
+		 */
+		public float getRatio() {
+			return ratio;
+		}
+
+		/**
+		 * Returns the number of triangles in the level.
+		 *
+		 * @return The triangle count
+		 */
+		public int getTriangleCount() {
+			return data.getIndicesCount() / 3;
+		}
+	}
+}
@@ -0,0 +1,562 @@
+/*
+ * This file is part of Caustic.
+ *
+ * Copyright (c) 2013 Spout LLC <http://www.spout.org/>
+ * Caustic is licensed under the Spout License Version 1.
+ *
+ * Caustic is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the Free
+ * Software Foundation, either version 3 of the License, or (at your option)
+ * any later version.
+ *
+ * In addition, 180 days after any changes are published, you can use the
+ * software, incorporating those changes, under the terms of the MIT license,
+ * as described in the Spout License Version 1.
+ *
+ * Caustic is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE.  See the GNU Lesser General Public License for
+ * more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License,
+ * the MIT license and the Spout License Version 1 along with this program.
+ * If not, see <http://www.gnu.org/licenses/> for the GNU Lesser General Public
+ * License and see <http://spout.in/licensev1> for the full license, including
+ * the MIT license.
+ */
+package org.spout.renderer.util;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+import java.nio.IntBuffer;
+import java.util.Arrays;
+import java.util.concurrent.RecursiveAction;
+
+import gnu.trove.list.TIntList;
+
+import org.spout.renderer.data.VertexAttribute;
+import org.spout.renderer.data.VertexAttribute.DataType;
+
+/**
+ * Static methods to generate normals and tangents from primitive arrays and buffers. The vectors are computed the same way as {@link CausticUtil#generateNormals(gnu.trove.list.TFloatList,
+ * gnu.trove.list.TIntList, gnu.trove.list.TFloatList)} and {@link CausticUtil#generateTangents(gnu.trove.list.TFloatList, gnu.trove.list.TFloatList, gnu.trove.list.TFloatList,
+ * gnu.trove.list.TIntList, gnu.trove.list.TFloatList)}, but large meshes are processed in parallel on {@link CausticUtil#getForkJoinPool()}, and each vertex is normalized exactly once.
+ * <p/>
+ * The parallel work is done in passes, without locks or writes to shared locations. First the vectors of each triangle are computed. Then each vertex sums the vectors of the triangles referencing
+ * it, found with an adjacency table built from the indices, and normalizes the sum. The sums are made in the order of the indices, so the results don't depend on the number of threads. Small meshes,
+ * or a pool with a single thread, skip the adjacency table and add the triangle vectors to their vertices directly.
+ */
+public final class NormalGenerator {
+	// The number of triangles or vertices below which a range isn't split further
+	private static final int GRAIN = 4096;
+
+	private NormalGenerator() {
+	}
+
+	/**
+	 * Generates the normals for the positions, according to the indices. The positions and normals have 3 components, in the x, y, z order. Vertices not referenced by any triangle get a zero normal.
+	 *
+	 * @param positions The position components
+	 * @param indices The indices, 3 per triangle
+	 * @param normals The array in which to store the normals, at least as long as the positions
+	 */
+	public static void generateNormals(float[] positions, int[] indices, final float[] normals) {
+		final int vertexCount = getVertexCount(positions.length, 3);
+		checkLength(normals.length, vertexCount * 3, "normals");
+		final int triangleCount = getTriangleCount(indices, vertexCount);
+		// Sum in the normals array directly, then normalize in place
+		Arrays.fill(normals, 0, vertexCount * 3, 0);
+		sum(indices, vertexCount, triangleCount, new FaceNormal(positions, indices), normals, null);
+		forEach(vertexCount, new RangeJob() {
+			@Override
+			public void run(int start, int end) {
+				for (int v = start; v < end; v++) {
+					final int normal = v * 3;
+					float nx = normals[normal];
+					float ny = normals[normal + 1];
+					float nz = normals[normal + 2];
+					final float l = (float) Math.sqrt(nx * nx + ny * ny + nz * nz);
+					if (l > 0) {
+						nx /= l;
+						ny /= l;
+						nz /= l;
+					}
+					normals[normal] = nx;
+					normals[normal + 1] = ny;
+					normals[normal + 2] = nz;
+				}
+			}
+		});
+	}
+
+	/**
+	 * Generates the normals for the positions, according to the indices. The positions and normals have 3 components, in the x, y, z order. The buffers are read and written from their position,
+	 * which isn't modified.
+	 *
+	 * @param positions The position components
+	 * @param indices The indices, 3 per triangle
+	 * @param normals The buffer in which to store the normals, with at least as many remaining components as the positions
+	 */
+	public static void generateNormals(FloatBuffer positions, IntBuffer indices, FloatBuffer normals) {
+		final float[] normalArray = new float[positions.remaining()];
+		checkLength(normals.remaining(), normalArray.length, "normals");
+		generateNormals(toArray(positions), toArray(indices), normalArray);
+		normals.duplicate().put(normalArray);
+	}
+
+	/**
+	 * Generates the normals for the positions attribute, according to the indices, and writes them to the normals attribute. If the normals attribute already has data of the right size, it's written
+	 * in place, else new data is created for it.
+	 *
+	 * @param positions The float positions attribute, with 3 components
+	 * @param indices The indices, 3 per triangle
+	 * @param normals The float normals attribute, with 3 components
+	 */
+	public static void generateNormals(VertexAttribute positions, TIntList indices, VertexAttribute normals) {
+		checkAttribute(positions, 3, "Positions");
+		checkAttribute(normals, 3, "Normals");
+		final float[] positionArray = toArray(positions.getData().asFloatBuffer());
+		final float[] normalArray = new float[positionArray.length];
+		generateNormals(positionArray, indices.toArray(), normalArray);
+		getOutput(normals, normalArray.length).put(normalArray);
+	}
+
+	/**
+	 * Generates the tangents for the positions, normals and texture coords, according to the indices. The positions and normals have 3 components, in the x, y, z order, and the texture coords have 2,
+	 * in the u, v order. The tangents have 4 components, in the x, y, z, w order, where w is the handedness for the bi-tangent computation: B = T_w * (N x T). Vertices not referenced by any triangle
+	 * get a zero tangent.
+	 *
+	 * @param positions The position components
+	 * @param normals The normal components
+	 * @param textureCoords The texture coord components
+	 * @param indices The indices, 3 per triangle
+	 * @param tangents The array in which to store the tangents, with 4 components per vertex
+	 */
+	public static void generateTangents(float[] positions, final float[] normals, float[] textureCoords, int[] indices, final float[] tangents) {
+		// Adapted from: http://www.terathon.com/code/tangent.html
+		final int vertexCount = getVertexCount(positions.length, 3);
+		checkLength(normals.length, vertexCount * 3, "normals");
+		checkLength(textureCoords.length, vertexCount * 2, "texture coords");
+		checkLength(tangents.length, vertexCount * 4, "tangents");
+		final int triangleCount = getTriangleCount(indices, vertexCount);
+		// The sums of the derivatives in respect to u and v
+		final float[] sums = new float[vertexCount * 6];
+		final boolean[] referenced = new boolean[vertexCount];
+		sum(indices, vertexCount, triangleCount, new FaceDerivatives(positions, textureCoords, indices), sums, referenced);
+		forEach(vertexCount, new RangeJob() {
+			@Override
+			public void run(int start, int end) {
+				for (int v = start; v < end; v++) {
+					final int tangent = v * 4;
+					if (!referenced[v]) {
+						tangents[tangent] = 0;
+						tangents[tangent + 1] = 0;
+						tangents[tangent + 2] = 0;
+						tangents[tangent + 3] = 0;
+						continue;
+					}
+					final int sum = v * 6;
+					final float dux = sums[sum];
+					final float duy = sums[sum + 1];
+					final float duz = sums[sum + 2];
+					final float dvx = sums[sum + 3];
+					final float dvy = sums[sum + 4];
+					final float dvz = sums[sum + 5];
+					final float nx = normals[v * 3];
+					final float ny = normals[v * 3 + 1];
+					final float nz = normals[v * 3 + 2];
+					// Calculate the tangent using Gram-Schmidt
+					final float d = nx * dux + ny * duy + nz * duz;
+					float tx = dux - nx * d;
+					float ty = duy - ny * d;
+					float tz = duz - nz * d;
+					final float l = (float) Math.sqrt(tx * tx + ty * ty + tz * tz);
+					if (l > 0) {
+						tx /= l;
+						ty /= l;
+						tz /= l;
+					}
+					tangents[tangent] = tx;
+					tangents[tangent + 1] = ty;
+					tangents[tangent + 2] = tz;
+					// The handedness is the sign of the dot of the normal cross the derivative in respect to u, with the derivative in respect to v
+					final float cx = ny * duz - nz * duy;
+					final float cy = nz * dux - nx * duz;
+					final float cz = nx * duy - ny * dux;
+					tangents[tangent + 3] = cx * dvx + cy * dvy + cz * dvz < 0 ? -1 : 1;
+				}
+			}
+		});
+	}
+
+	/**
+	 * Generates the tangents for the positions, normals and texture coords, according to the indices. The positions and normals have 3 components, in the x, y, z order, and the texture coords have 2,
+	 * in the u, v order. The tangents have 4 components, in the x, y, z, w order, where w is the handedness for the bi-tangent computation: B = T_w * (N x T). The buffers are read and written from
+	 * their position, which isn't modified.
+	 *
+	 * @param positions The position components
+	 * @param normals The normal components
+	 * @param textureCoords The texture coord components
+	 * @param indices The indices, 3 per triangle
+	 * @param tangents The buffer in which to store the tangents, with at least 4 remaining components per vertex
+	 */
+	public static void generateTangents(FloatBuffer positions, FloatBuffer normals, FloatBuffer textureCoords, IntBuffer indices, FloatBuffer tangents) {
+		final float[] tangentArray = new float[positions.remaining() / 3 * 4];
+		checkLength(tangents.remaining(), tangentArray.length, "tangents");
+		generateTangents(toArray(positions), toArray(normals), toArray(textureCoords), toArray(indices), tangentArray);
+		tangents.duplicate().put(tangentArray);
+	}
+
+	/**
+	 * Generates the tangents for the positions, normals and texture coords attributes, according to the indices, and writes them to the tangents attribute. If the tangents attribute already has data
+	 * of the right size, it's written in place, else new data is created for it.
+	 *
+	 * @param positions The float positions attribute, with 3 components
+	 * @param normals The float normals attribute, with 3 components
+	 * @param textureCoords The float texture coords attribute, with 2 components
+	 * @param indices The indices, 3 per triangle
+	 * @param tangents The float tangents attribute, with 4 components
+	 */
+	public static void generateTangents(VertexAttribute positions, VertexAttribute normals, VertexAttribute textureCoords, TIntList indices, VertexAttribute tangents) {
+		checkAttribute(positions, 3, "Positions");
+		checkAttribute(normals, 3, "Normals");
+		checkAttribute(textureCoords, 2, "Texture coords");
+		checkAttribute(tangents, 4, "Tangents");
+		final float[] positionArray = toArray(positions.getData().asFloatBuffer());
+		final float[] tangentArray = new float[positionArray.length / 3 * 4];
+		generateTangents(positionArray, toArray(normals.getData().asFloatBuffer()), toArray(textureCoords.getData().asFloatBuffer()), indices.toArray(), tangentArray);
+		getOutput(tangents, tangentArray.length).put(tangentArray);
+	}
+
+	// Sums the triangle vectors for each vertex, in the order of the indices
+	private static void sum(int[] indices, int vertexCount, int triangleCount, final FaceFunction function, final float[] sums, final boolean[] referenced) {
+		if (!isParallel(triangleCount)) {
+			// Add each triangle to its vertices directly, this is faster on a single thread
+			function.add(0, triangleCount, sums);
+			if (referenced != null) {
+				for (int i = 0; i < triangleCount * 3; i++) {
+					referenced[indices[i]] = true;
+				}
+			}
+			return;
+		}
+		// Compute the triangles, then gather them for each vertex, so that the threads write to separate locations
+		final int components = function.components;
+		final float[] faces = new float[triangleCount * components];
+		forEach(triangleCount, new RangeJob() {
+			@Override
+			public void run(int start, int end) {
+				function.compute(start, end, faces);
+			}
+		});
+		final Adjacency adjacency = new Adjacency(indices, triangleCount * 3, vertexCount);
+		forEach(vertexCount, new RangeJob() {
+			@Override
+			public void run(int start, int end) {
+				final int[] offsets = adjacency.offsets;
+				final int[] triangles = adjacency.triangles;
+				for (int v = start; v < end; v++) {
+					final int sum = v * components;
+					for (int i = offsets[v]; i < offsets[v + 1]; i++) {
+						final int face = triangles[i] * components;
+						for (int c = 0; c < components; c++) {
+							sums[sum + c] += faces[face + c];
+						}
+					}
+					if (referenced != null) {
+						referenced[v] = offsets[v] != offsets[v + 1];
+					}
+				}
+			}
+		});
+	}
+
+	private static int getVertexCount(int length, int components) {
+		if (length % components != 0) {
+			throw new IllegalArgumentException("Positions must have " + components + " components per vertex");
+		}
+		return length / components;
+	}
+
+	private static int getTriangleCount(int[] indices, int vertexCount) {
+		if (indices.length % 3 != 0) {
+			throw new IllegalArgumentException("Indices count must be a multiple of 3");
+		}
+		for (int index : indices) {
+			if (index < 0 || index >= vertexCount) {
+				throw new IllegalArgumentException("Index " + index + " is out of bounds for " + vertexCount + " vertices");
+			}
+		}
+		return indices.length / 3;
+	}
+
+	private static void checkLength(int length, int required, String name) {
+		if (length < required) {
+			throw new IllegalArgumentException("Expected at least " + required + " " + name + " components, got " + length);
+		}
+	}
+
+	private static void checkAttribute(VertexAttribute attribute, int size, String name) {
+		if (attribute.getType() != DataType.FLOAT || attribute.getSize() != size) {
+			throw new IllegalArgumentException(name + " attribute must be of type float with " + size + " components");
+		}
+	}
+
+	private static float[] toArray(FloatBuffer buffer) {
+		final float[] array = new float[buffer.remaining()];
+		buffer.duplicate().get(array);
+		return array;
+	}
+
+	private static int[] toArray(IntBuffer buffer) {
+		final int[] array = new int[buffer.remaining()];
+		buffer.duplicate().get(array);
+		return array;
+	}
+
+	private static FloatBuffer getOutput(VertexAttribute attribute, int components) {
+		final int byteSize = components * DataType.FLOAT.getByteSize();
+		if (attribute.hasData()) {
+			final ByteBuffer data = attribute.getWritableData();
+			if (data.remaining() == byteSize) {
+				return data.order(ByteOrder.nativeOrder()).asFloatBuffer();
+			}
+		}
+		attribute.transferData(CausticUtil.createByteBuffer(byteSize));
+		return attribute.getWritableData().order(ByteOrder.nativeOrder()).asFloatBuffer();
+	}
+
+	private static boolean isParallel(int count) {
+		return count > GRAIN && CausticUtil.getForkJoinPool().getParallelism() > 1;
+	}
+
+	private static void forEach(int count, RangeJob job) {
+		if (!isParallel(count)) {
+			job.run(0, count);
+		} else {
+			CausticUtil.getForkJoinPool().invoke(new RangeTask(job, 0, count));
+		}
+	}
+
+	/**
+	 * Computes a vector for each triangle, to be summed for each of its vertices.
+	 */
+	private abstract static class FaceFunction {
+		private final int components;
+
+		protected FaceFunction(int components) {
+			this.components = components;
+		}
+
+		// Stores the vectors for the range of triangles, at the triangle index times the components
+		protected abstract void compute(int start, int end, float[] faces);
+
+		// Adds the vectors for the range of triangles to the sums of their vertices, at the vertex index times the components
+		protected abstract void add(int start, int end, float[] sums);
+	}
+
+	private static final class FaceNormal extends FaceFunction {
+		private final float[] positions;
+		private final int[] indices;
+
+		private FaceNormal(float[] positions, int[] indices) {
+			super(3);
+			this.positions = positions;
+			this.indices = indices;
+		}
+
+		@Override
+		protected void compute(int start, int end, float[] faces) {
+			for (int t = start; t < end; t++) {
+				final int pos0 = indices[t * 3] * 3;
+				final int pos1 = indices[t * 3 + 1] * 3;
+				final int pos2 = indices[t * 3 + 2] * 3;
+				final float x0 = positions[pos0];
+				final float y0 = positions[pos0 + 1];
+				final float z0 = positions[pos0 + 2];
+				// Edges from the first vertex
+				final float x10 = positions[pos1] - x0;
+				final float y10 = positions[pos1 + 1] - y0;
+				final float z10 = positions[pos1 + 2] - z0;
+				final float x20 = positions[pos2] - x0;
+				final float y20 = positions[pos2 + 1] - y0;
+				final float z20 = positions[pos2 + 2] - z0;
+				// Cross both edges, the length is proportional to the area, which weights the sum
+				faces[t * 3] = y10 * z20 - z10 * y20;
+				faces[t * 3 + 1] = z10 * x20 - x10 * z20;
+				faces[t * 3 + 2] = x10 * y20 - y10 * x20;
+			}
+		}
+
+		@Override
+		protected void add(int start, int end, float[] sums) {
+			// Same as compute, but the vectors are kept in registers
+			for (int t = start; t < end; t++) {
+				final int pos0 = indices[t * 3] * 3;
+				final int pos1 = indices[t * 3 + 1] * 3;
+				final int pos2 = indices[t * 3 + 2] * 3;
+				final float x0 = positions[pos0];
+				final float y0 = positions[pos0 + 1];
+				final float z0 = positions[pos0 + 2];
+				final float x10 = positions[pos1] - x0;
+				final float y10 = positions[pos1 + 1] - y0;
+				final float z10 = positions[pos1 + 2] - z0;
+				final float x20 = positions[pos2] - x0;
+				final float y20 = positions[pos2 + 1] - y0;
+				final float z20 = positions[pos2 + 2] - z0;
+				final float nx = y10 * z20 - z10 * y20;
+				final float ny = z10 * x20 - x10 * z20;
+				final float nz = x10 * y20 - y10 * x20;
+				sums[pos0] += nx;
+				sums[pos0 + 1] += ny;
+				sums[pos0 + 2] += nz;
+				sums[pos1] += nx;
+				sums[pos1 + 1] += ny;
+				sums[pos1 + 2] += nz;
+				sums[pos2] += nx;
+				sums[pos2 + 1] += ny;
+				sums[pos2 + 2] += nz;
+			}
+		}
+	}
+
+	private static final class FaceDerivatives extends FaceFunction {
+		private final float[] positions;
+		private final float[] textureCoords;
+		private final int[] indices;
+
+		private FaceDerivatives(float[] positions, float[] textureCoords, int[] indices) {
+			super(6);
+			this.positions = positions;
+			this.textureCoords = textureCoords;
+			this.indices = indices;
+		}
+
+		@Override
+		protected void compute(int start, int end, float[] faces) {
+			for (int t = start; t < end; t++) {
+				final int index0 = indices[t * 3];
+				final int index1 = indices[t * 3 + 1];
+				final int index2 = indices[t * 3 + 2];
+				final float x0 = positions[index0 * 3];
+				final float y0 = positions[index0 * 3 + 1];
+				final float z0 = positions[index0 * 3 + 2];
+				final float u0 = textureCoords[index0 * 2];
+				final float v0 = textureCoords[index0 * 2 + 1];
+				// Edges from the first vertex
+				final float x10 = positions[index1 * 3] - x0;
+				final float y10 = positions[index1 * 3 + 1] - y0;
+				final float z10 = positions[index1 * 3 + 2] - z0;
+				final float x20 = positions[index2 * 3] - x0;
+				final float y20 = positions[index2 * 3 + 1] - y0;
+				final float z20 = positions[index2 * 3 + 2] - z0;
+				final float u10 = textureCoords[index1 * 2] - u0;
+				final float v10 = textureCoords[index1 * 2 + 1] - v0;
+				final float u20 = textureCoords[index2 * 2] - u0;
+				final float v20 = textureCoords[index2 * 2 + 1] - v0;
+				final float r = 1 / (u10 * v20 - u20 * v10);
+				final int face = t * 6;
+				// Derivative in respect to u
+				faces[face] = (v20 * x10 - v10 * x20) * r;
+				faces[face + 1] = (v20 * y10 - v10 * y20) * r;
+				faces[face + 2] = (v20 * z10 - v10 * z20) * r;
+				// Derivative in respect to v
+				faces[face + 3] = (u10 * x20 - u20 * x10) * r;
+				faces[face + 4] = (u10 * y20 - u20 * y10) * r;
+				faces[face + 5] = (u10 * z20 - u20 * z10) * r;
+			}
+		}
+
+		@Override
+		protected void add(int start, int end, float[] sums) {
+			// Same as compute, but the vectors are kept in registers
+			for (int t = start; t < end; t++) {
+				final int index0 = indices[t * 3];
+				final int index1 = indices[t * 3 + 1];
+				final int index2 = indices[t * 3 + 2];
+				final float x0 = positions[index0 * 3];
+				final float y0 = positions[index0 * 3 + 1];
+				final float z0 = positions[index0 * 3 + 2];
+				final float u0 = textureCoords[index0 * 2];
+				final float v0 = textureCoords[index0 * 2 + 1];
+				final float x10 = positions[index1 * 3] - x0;
+				final float y10 = positions[index1 * 3 + 1] - y0;
+				final float z10 = positions[index1 * 3 + 2] - z0;
+				final float x20 = positions[index2 * 3] - x0;
+				final float y20 = positions[index2 * 3 + 1] - y0;
+				final float z20 = positions[index2 * 3 + 2] - z0;
+				final float u10 = textureCoords[index1 * 2] - u0;
+				final float v10 = textureCoords[index1 * 2 + 1] - v0;
+				final float u20 = textureCoords[index2 * 2] - u0;
+				final float v20 = textureCoords[index2 * 2 + 1] - v0;
+				final float r = 1 / (u10 * v20 - u20 * v10);
+				final float dux = (v20 * x10 - v10 * x20) * r;
+				final float duy = (v20 * y10 - v10 * y20) * r;
+				final float duz = (v20 * z10 - v10 * z20) * r;
+				final float dvx = (u10 * x20 - u20 * x10) * r;
+				final float dvy = (u10 * y20 - u20 * y10) * r;
+				final float dvz = (u10 * z20 - u20 * z10) * r;
+				for (int i = t * 3; i < t * 3 + 3; i++) {
+					final int sum = indices[i] * 6;
+					sums[sum] += dux;
+					sums[sum + 1] += duy;
+					sums[sum + 2] += duz;
+					sums[sum + 3] += dvx;
+					sums[sum + 4] += dvy;
+					sums[sum + 5] += dvz;
+				}
+			}
+		}
+	}
+
+	/**
+	 * The triangles referencing each vertex, in compressed rows: the triangles of vertex v are from offsets[v] inclusive to offsets[v + 1] exclusive, in index order.
+	 */
+	private static final class Adjacency {
+		private final int[] offsets;
+		private final int[] triangles;
+
+		private Adjacency(int[] indices, int indexCount, int vertexCount) {
+			offsets = new int[vertexCount + 1];
+			for (int i = 0; i < indexCount; i++) {
+				offsets[indices[i] + 1]++;
+			}
+			for (int v = 0; v < vertexCount; v++) {
+				offsets[v + 1] += offsets[v];
+			}
+			triangles = new int[indexCount];
+			final int[] cursors = Arrays.copyOf(offsets, vertexCount);
+			for (int i = 0; i < indexCount; i++) {
+				triangles[cursors[indices[i]]++] = i / 3;
+			}
+		}
+	}
+
+	private static interface RangeJob {
+		void run(int start, int end);
+	}
+
+	private static final class RangeTask extends RecursiveAction {
+		private static final long serialVersionUID = 1;
+		private final RangeJob job;
+		private final int start;
+		private final int end;
+
+		private RangeTask(RangeJob job, int start, int end) {
+			this.job = job;
+			this.start = start;
+			this.end = end;
+		}
+
+		@Override
+		protected void compute() {
+			if (end - start <= GRAIN) {
+				job.run(start, end);
+			} else {
+				final int middle = (start + end) >>> 1;
+				invokeAll(new RangeTask(job, start, middle), new RangeTask(job, middle, end));
+			}
+		}
+	}
+}
@@ -26,8 +26,21 @@
  */
 package org.spout.renderer.util;
 
+import java.io.FileInputStream;
+import java.io.IOException;
 import java.io.InputStream;
-import java.util.Scanner;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveAction;
 
 import gnu.trove.list.TFloatList;
 import gnu.trove.list.TIntList;
@@ -35,22 +48,30 @@ import gnu.trove.list.array.TFloatArrayList;
 import gnu.trove.list.array.TIntArrayList;
 
 import org.spout.math.vector.Vector3f;
+import org.spout.renderer.data.VertexData;
 
 /**
  * A static loading class for standard .obj model files. This class will load positions, normals can texture coordinates. Missing normals are not calculated. Normals are expected to be of unit length.
- * Models should be triangulated.
+ * Models should be triangulated. <p/> The file is parsed directly from its bytes, without creating strings. Large files are split in line aligned chunks which are parsed in parallel, then merged in
+ * order. <p/> The list based methods index the vertices by position only, so a position shared by faces with different texture coords or normals only keeps the last ones. The {@link
+ * #loadMesh(java.nio.ByteBuffer)} methods instead create a unique vertex for each combination of position, texture coord and normal, and keep the groups of the file.
  */
 public final class ObjFileLoader {
+	// Files smaller than this are parsed on the calling thread
+	private static final int PARALLEL_THRESHOLD = 1 << 22;
+	private static final int MIN_CHUNK_SIZE = 1 << 20;
+	private static final Charset US_ASCII = Charset.forName("US-ASCII");
+	private static final Charset UTF_8 = Charset.forName("UTF-8");
+	private static final int STATEMENT_POSITIONS = 0;
+	private static final int STATEMENT_TEXTURE_COORDS = 1;
+	private static final int STATEMENT_NORMALS = 2;
+	private static final int STATEMENT_OBJECT = 3;
+	private static final int STATEMENT_GROUP = 4;
+	private static final int STATEMENT_MATERIAL = 5;
+
 	private ObjFileLoader() {
 	}
 
-	private static final String COMPONENT_SEPARATOR = " ";
-	private static final String INDEX_SEPARATOR = "/";
-	private static final String POSITION_LIST_PREFIX = "v";
-	private static final String TEXTURE_LIST_PREFIX = "vt";
-	private static final String NORMAL_LIST_PREFIX = "vn";
-	private static final String INDEX_LIST_PREFIX = "f";
-
 	/**
 	 * Loads a .obj file, storing the data in the provided lists. After loading, the input stream will be closed.The number of components for each attribute is returned in a Vector3, x being the number
 	 * of position components, y the number of texture coord components and z the number of normal components. Note that normal and/or texture coord attributes might be missing from the .obj file. If
@@ -65,96 +86,621 @@ public final class ObjFileLoader {
 	 * @throws MalformedObjFileException If any errors occur during loading
 	 */
 	public static Vector3f load(InputStream stream, TFloatList positions, TFloatList textureCoords, TFloatList normals, TIntList indices) {
+		final ByteBuffer source;
+		try (InputStream input = stream) {
+			source = read(input);
+		} catch (IOException ex) {
+			throw new MalformedObjFileException(null, ex);
+		}
+		return load(source, positions, textureCoords, normals, indices);
+	}
+
+	/**
+	 * Loads a .obj file by memory mapping it, storing the data in the provided lists. See {@link #load(java.io.InputStream, gnu.trove.list.TFloatList, gnu.trove.list.TFloatList,
+	 * gnu.trove.list.TFloatList, gnu.trove.list.TIntList)} for the details.
+	 *
+	 * @param path The path of the .obj file
+	 * @param positions The list in which to store the positions
+	 * @param textureCoords The list in which to store the texture coords
+	 * @param normals The list in which to store the normals
+	 * @param indices The list in which to store the indices
+	 * @return A Vector3 containing, in order, the number of components for the positions, texture coords and normals
+	 * @throws IOException If the file can't be read
+	 * @throws MalformedObjFileException If any errors occur during loading
+	 */
+	public static Vector3f load(Path path, TFloatList positions, TFloatList textureCoords, TFloatList normals, TIntList indices) throws IOException {
+		try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+			return load(map(channel), positions, textureCoords, normals, indices);
+		}
+	}
+
+	/**
+	 * Loads a .obj file from the bytes of the buffer, from its position to its limit, storing the data in the provided lists. The buffer isn't modified. See {@link #load(java.io.InputStream,
+	 * gnu.trove.list.TFloatList, gnu.trove.list.TFloatList, gnu.trove.list.TFloatList, gnu.trove.list.TIntList)} for the details.
+	 *
+	 * @param source The buffer holding the .obj file
+	 * @param positions The list in which to store the positions
+	 * @param textureCoords The list in which to store the texture coords
+	 * @param normals The list in which to store the normals
+	 * @param indices The list in which to store the indices
+	 * @return A Vector3 containing, in order, the number of components for the positions, texture coords and normals
+	 * @throws MalformedObjFileException If any errors occur during loading
+	 */
+	public static Vector3f load(ByteBuffer source, TFloatList positions, TFloatList textureCoords, TFloatList normals, TIntList indices) {
+		final Chunk[] chunks = parse(source);
 		int positionSize = -1;
-		final TFloatList rawTextureCoords = new TFloatArrayList();
 		int textureCoordSize = -1;
-		final TFloatList rawNormalComponents = new TFloatArrayList();
 		int normalSize = -1;
-		final TIntList textureCoordIndices = new TIntArrayList();
-		final TIntList normalIndices = new TIntArrayList();
-		String line = null;
-		try (Scanner scanner = new Scanner(stream)) {
-			while (scanner.hasNextLine()) {
-				line = scanner.nextLine();
-				if (line.startsWith(POSITION_LIST_PREFIX + COMPONENT_SEPARATOR)) {
-					parseComponents(positions, line);
-					if (positionSize == -1) {
-						positionSize = positions.size();
+		int textureCoordCount = 0;
+		int normalCount = 0;
+		boolean hasTextureCoordIndices = false;
+		boolean hasNormalIndices = false;
+		for (Chunk chunk : chunks) {
+			if (positionSize == -1) {
+				positionSize = chunk.positionSize;
+			}
+			if (textureCoordSize == -1) {
+				textureCoordSize = chunk.textureCoordSize;
+			}
+			if (normalSize == -1) {
+				normalSize = chunk.normalSize;
+			}
+			positions.addAll(chunk.positions);
+			indices.addAll(chunk.positionIndices);
+			textureCoordCount += chunk.textureCoords.size();
+			normalCount += chunk.normals.size();
+			hasTextureCoordIndices |= chunk.hasTextureCoordIndices;
+			hasNormalIndices |= chunk.hasNormalIndices;
+		}
+		try {
+			// Texture coords and normals are stored per position, indexed like the positions
+			if (hasTextureCoordIndices && textureCoordCount > 0) {
+				final float[] rawTextureCoords = concatenate(chunks, textureCoordCount, STATEMENT_TEXTURE_COORDS);
+				textureCoords.fill(0, positions.size() / positionSize * textureCoordSize, 0);
+				for (Chunk chunk : chunks) {
+					assign(chunk.positionIndices, chunk.textureCoordIndices, rawTextureCoords, textureCoordSize, textureCoords);
+				}
+			}
+			if (hasNormalIndices && normalCount > 0) {
+				final float[] rawNormalComponents = concatenate(chunks, normalCount, STATEMENT_NORMALS);
+				normals.fill(0, positions.size() / positionSize * normalSize, 0);
+				for (Chunk chunk : chunks) {
+					assign(chunk.positionIndices, chunk.normalIndices, rawNormalComponents, normalSize, normals);
+				}
+			}
+		} catch (IndexOutOfBoundsException ex) {
+			throw new MalformedObjFileException(null, ex);
+		}
+		return new Vector3f(positionSize, textureCoordSize, normalSize).max(0, 0, 0);
+	}
+
+	/**
+	 * Loads a .obj file as a mesh with a unique vertex for each combination of position, texture coord and normal. After loading, the input stream will be closed. See {@link
+	 * #loadMesh(java.nio.ByteBuffer)} for the details.
+	 *
+	 * @param stream The input stream for the .obj file
+	 * @return The loaded mesh
+	 * @throws MalformedObjFileException If any errors occur during loading
+	 */
+	public static Mesh loadMesh(InputStream stream) {
+		final ByteBuffer source;
+		try (InputStream input = stream) {
+			source = read(input);
+		} catch (IOException ex) {
+			throw new MalformedObjFileException(null, ex);
+		}
+		return loadMesh(source);
+	}
+
+	/**
+	 * Loads a .obj file by memory mapping it, as a mesh with a unique vertex for each combination of position, texture coord and normal. See {@link #loadMesh(java.nio.ByteBuffer)} for the details.
+	 *
+	 * @param path The path of the .obj file
+	 * @return The loaded mesh
+	 * @throws IOException If the file can't be read
+	 * @throws MalformedObjFileException If any errors occur during loading
+	 */
+	public static Mesh loadMesh(Path path) throws IOException {
+		try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+			return loadMesh(map(channel));
+		}
+	}
+
+	/**
+	 * Loads a .obj file from the bytes of the buffer, from its position to its limit, as a mesh with a unique vertex for each combination of position, texture coord and normal. The buffer isn't
+	 * modified. <p/> The vertex data has a float attribute named "positions" at index 0, followed by "normals" and then "textureCoords" if the file has any, at the next indices. Vertices without
+	 * texture coords or normals in a file that has some get zeros. The attribute buffers are written directly, once the vertices are known. The indices follow the order of the faces, and each run of
+	 * faces sharing the same object, group and material is described by a {@link Group}.
+	 *
+	 * @param source The buffer holding the .obj file
+	 * @return The loaded mesh
+	 * @throws MalformedObjFileException If any errors occur during loading
+	 */
+	public static Mesh loadMesh(ByteBuffer source) {
+		final Chunk[] chunks = parse(source);
+		int positionSize = -1;
+		int textureCoordSize = -1;
+		int normalSize = -1;
+		int positionCount = 0;
+		int textureCoordCount = 0;
+		int normalCount = 0;
+		int cornerCount = 0;
+		for (Chunk chunk : chunks) {
+			if (positionSize == -1) {
+				positionSize = chunk.positionSize;
+			}
+			if (textureCoordSize == -1) {
+				textureCoordSize = chunk.textureCoordSize;
+			}
+			if (normalSize == -1) {
+				normalSize = chunk.normalSize;
+			}
+			positionCount += chunk.positions.size();
+			textureCoordCount += chunk.textureCoords.size();
+			normalCount += chunk.normals.size();
+			cornerCount += chunk.positionIndices.size();
+		}
+		final float[] rawPositions = concatenate(chunks, positionCount, STATEMENT_POSITIONS);
+		final float[] rawTextureCoords = concatenate(chunks, textureCoordCount, STATEMENT_TEXTURE_COORDS);
+		final float[] rawNormals = concatenate(chunks, normalCount, STATEMENT_NORMALS);
+		// Convert the counts of components to counts of elements
+		positionCount = positionSize > 0 ? positionCount / positionSize : 0;
+		textureCoordCount = textureCoordSize > 0 ? textureCoordCount / textureCoordSize : 0;
+		normalCount = normalSize > 0 ? normalCount / normalSize : 0;
+		// Assign a vertex to each unique triplet of indices, in order of first use, and split the indices in groups
+		final VertexData data = new VertexData();
+		final TIntList indices = data.getIndices();
+		final VertexTable vertices = new VertexTable(cornerCount / 4);
+		final List<Group> groups = new ArrayList<>();
+		String object = null;
+		String group = null;
+		String material = null;
+		int groupStart = 0;
+		for (Chunk chunk : chunks) {
+			int statement = 0;
+			final int chunkCorners = chunk.positionIndices.size();
+			for (int i = 0; i <= chunkCorners; i++) {
+				// Apply the statements preceding the corner, starting a new group if they change it and faces were added to the last one
+				while (statement < chunk.statements.size() && chunk.statements.get(statement).cornerIndex == i) {
+					final GroupStatement groupStatement = chunk.statements.get(statement++);
+					final String current = groupStatement.type == STATEMENT_OBJECT ? object : groupStatement.type == STATEMENT_GROUP ? group : material;
+					if (groupStatement.name.equals(current)) {
+						continue;
 					}
-				} else if (line.startsWith(TEXTURE_LIST_PREFIX + COMPONENT_SEPARATOR)) {
-					parseComponents(rawTextureCoords, line);
-					if (textureCoordSize == -1) {
-						textureCoordSize = rawTextureCoords.size();
+					if (indices.size() > groupStart) {
+						groups.add(new Group(object, group, material, groupStart, indices.size() - groupStart));
+						groupStart = indices.size();
 					}
-				} else if (line.startsWith(NORMAL_LIST_PREFIX + COMPONENT_SEPARATOR)) {
-					parseComponents(rawNormalComponents, line);
-					if (normalSize == -1) {
-						normalSize = rawNormalComponents.size();
+					switch (groupStatement.type) {
+						case STATEMENT_OBJECT:
+							object = groupStatement.name;
+							break;
+						case STATEMENT_GROUP:
+							group = groupStatement.name;
+							break;
+						default:
+							material = groupStatement.name;
 					}
-				} else if (line.startsWith(INDEX_LIST_PREFIX + COMPONENT_SEPARATOR)) {
-					parseIndices(indices, textureCoordIndices, normalIndices, line);
 				}
+				if (i == chunkCorners) {
+					break;
+				}
+				final int positionIndex = chunk.positionIndices.get(i);
+				final int textureCoordIndex = chunk.textureCoordIndices.get(i);
+				final int normalIndex = chunk.normalIndices.get(i);
+				if (positionIndex >= positionCount || textureCoordIndex >= textureCoordCount || normalIndex >= normalCount) {
+					throw new MalformedObjFileException(null, new IndexOutOfBoundsException("Face references a missing vertex"));
+				}
+				indices.add(vertices.add(positionIndex, textureCoordIndex, normalIndex));
 			}
-			line = null;
-			final boolean hasTextureCoords;
-			final boolean hasNormals;
-			if (!textureCoordIndices.isEmpty() && !rawTextureCoords.isEmpty()) {
-				textureCoords.fill(0, positions.size() / positionSize * textureCoordSize, 0);
-				hasTextureCoords = true;
-			} else {
-				hasTextureCoords = false;
+		}
+		if (indices.size() > groupStart) {
+			groups.add(new Group(object, group, material, groupStart, indices.size() - groupStart));
+		}
+		// Write the attributes directly into their buffers
+		int attributeIndex = 0;
+		data.addAttribute(attributeIndex++, vertices.createAttribute("positions", rawPositions, Math.max(positionSize, 0), VertexTable.POSITIONS));
+		if (normalCount > 0) {
+			data.addAttribute(attributeIndex++, vertices.createAttribute("normals", rawNormals, normalSize, VertexTable.NORMALS));
+		}
+		if (textureCoordCount > 0) {
+			data.addAttribute(attributeIndex, vertices.createAttribute("textureCoords", rawTextureCoords, textureCoordSize, VertexTable.TEXTURE_COORDS));
+		}
+		return new Mesh(data, groups);
+	}
+
+	private static float[] concatenate(Chunk[] chunks, int count, int components) {
+		final float[] concatenated = new float[count];
+		int offset = 0;
+		for (Chunk chunk : chunks) {
+			final TFloatList list = components == STATEMENT_POSITIONS ? chunk.positions : components == STATEMENT_TEXTURE_COORDS ? chunk.textureCoords : chunk.normals;
+			list.toArray(concatenated, 0, offset, list.size());
+			offset += list.size();
+		}
+		return concatenated;
+	}
+
+	private static void assign(TIntList positionIndices, TIntList sourceIndices, float[] source, int size, TFloatList destination) {
+		for (int i = 0; i < sourceIndices.size(); i++) {
+			final int sourceIndex = sourceIndices.get(i);
+			if (sourceIndex < 0) {
+				continue;
 			}
-			if (!normalIndices.isEmpty() && !rawNormalComponents.isEmpty()) {
-				normals.fill(0, positions.size() / positionSize * normalSize, 0);
-				hasNormals = true;
-			} else {
-				hasNormals = false;
-			}
-			if (hasTextureCoords) {
-				for (int i = 0; i < textureCoordIndices.size(); i++) {
-					final int textureCoordIndex = textureCoordIndices.get(i) * textureCoordSize;
-					final int positionIndex = indices.get(i) * textureCoordSize;
-					for (int ii = 0; ii < textureCoordSize; ii++) {
-						textureCoords.set(positionIndex + ii, rawTextureCoords.get(textureCoordIndex + ii));
+			final int destinationStart = positionIndices.get(i) * size;
+			final int sourceStart = sourceIndex * size;
+			for (int ii = 0; ii < size; ii++) {
+				destination.set(destinationStart + ii, source[sourceStart + ii]);
+			}
+		}
+	}
+
+	private static Chunk[] parse(ByteBuffer source) {
+		final int start = source.position();
+		final int end = source.limit();
+		final int length = end - start;
+		if (length < PARALLEL_THRESHOLD) {
+			final Chunk chunk = new Chunk(source, start, end);
+			chunk.parse();
+			return new Chunk[]{chunk};
+		}
+		// Split into line aligned chunks, a few per thread to balance the load
+		final ForkJoinPool pool = CausticUtil.getForkJoinPool();
+		final int chunkCount = Math.max(1, Math.min(pool.getParallelism() * 4, length / MIN_CHUNK_SIZE));
+		final Chunk[] chunks = new Chunk[chunkCount];
+		int chunkStart = start;
+		for (int i = 0; i < chunkCount; i++) {
+			int chunkEnd = i == chunkCount - 1 ? end : Math.max(chunkStart, start + (int) ((long) length * (i + 1) / chunkCount));
+			while (chunkEnd < end && source.get(chunkEnd) != '\n') {
+				chunkEnd++;
+			}
+			chunkEnd = Math.min(chunkEnd + 1, end);
+			chunks[i] = new Chunk(source, chunkStart, chunkEnd);
+			chunkStart = chunkEnd;
+		}
+		pool.invoke(new RecursiveAction() {
+			@Override
+			protected void compute() {
+				ForkJoinTask.invokeAll(chunks);
+			}
+		});
+		return chunks;
+	}
+
+	private static ByteBuffer read(InputStream input) throws IOException {
+		if (input instanceof FileInputStream) {
+			// Map the file instead of copying it
+			final FileChannel channel = ((FileInputStream) input).getChannel();
+			if (channel.position() == 0) {
+				return map(channel);
+			}
+		}
+		byte[] bytes = new byte[Math.max(input.available(), 8192)];
+		int length = 0;
+		int read;
+		while ((read = input.read(bytes, length, bytes.length - length)) != -1) {
+			length += read;
+			if (length == bytes.length) {
+				bytes = Arrays.copyOf(bytes, bytes.length * 2);
+			}
+		}
+		return ByteBuffer.wrap(bytes, 0, length);
+	}
+
+	private static ByteBuffer map(FileChannel channel) throws IOException {
+		final long size = channel.size();
+		if (size > Integer.MAX_VALUE) {
+			throw new IOException("File is too large to be mapped");
+		}
+		return channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+	}
+
+	private static boolean isWhitespace(byte b) {
+		return b == ' ' || b == '\t' || b == '\r';
+	}
+
+	private static final byte[] USE_MATERIAL = "usemtl".getBytes(US_ASCII);
+
+	/**
+	 * The data parsed from a line aligned range of the file. Indices are made zero based, missing texture coord and normal indices are -1.
+	 */
+	private static final class Chunk extends RecursiveAction {
+		private static final long serialVersionUID = 1;
+		private final ByteBuffer source;
+		private final int start;
+		private final int end;
+		private final TFloatList positions = new TFloatArrayList();
+		private final TFloatList textureCoords = new TFloatArrayList();
+		private final TFloatList normals = new TFloatArrayList();
+		private final TIntList positionIndices = new TIntArrayList();
+		private final TIntList textureCoordIndices = new TIntArrayList();
+		private final TIntList normalIndices = new TIntArrayList();
+		private int positionSize = -1;
+		private int textureCoordSize = -1;
+		private int normalSize = -1;
+		private boolean hasTextureCoordIndices = false;
+		private boolean hasNormalIndices = false;
+		private final List<GroupStatement> statements = new ArrayList<>();
+		private final DecimalParser decimals = new DecimalParser();
+		// Position of the parser in the line
+		private int cursor;
+
+		private Chunk(ByteBuffer source, int start, int end) {
+			this.source = source;
+			this.start = start;
+			this.end = end;
+		}
+
+		@Override
+		protected void compute() {
+			parse();
+		}
+
+		private void parse() {
+			int lineStart = start;
+			while (lineStart < end) {
+				int lineEnd = lineStart;
+				while (lineEnd < end && source.get(lineEnd) != '\n') {
+					lineEnd++;
+				}
+				try {
+					parseLine(lineStart, lineEnd);
+				} catch (RuntimeException ex) {
+					final byte[] line = new byte[lineEnd - lineStart];
+					for (int i = 0; i < line.length; i++) {
+						line[i] = source.get(lineStart + i);
 					}
+					throw new MalformedObjFileException(new String(line, US_ASCII).trim(), ex);
 				}
+				lineStart = lineEnd + 1;
+			}
+		}
+
+		private void parseLine(int lineStart, int lineEnd) {
+			cursor = lineStart;
+			skipWhitespace(lineEnd);
+			if (lineEnd - cursor < 2) {
+				return;
 			}
-			if (hasNormals) {
-				for (int i = 0; i < normalIndices.size(); i++) {
-					final int normalIndex = normalIndices.get(i) * normalSize;
-					final int positionIndex = indices.get(i) * normalSize;
-					for (int ii = 0; ii < normalSize; ii++) {
-						normals.set(positionIndex + ii, rawNormalComponents.get(normalIndex + ii));
+			final byte first = source.get(cursor);
+			final byte second = source.get(cursor + 1);
+			if (first == 'v') {
+				if (isWhitespace(second)) {
+					cursor += 2;
+					final int size = parseComponents(positions, lineEnd);
+					if (positionSize == -1) {
+						positionSize = size;
+					}
+				} else if (lineEnd - cursor > 2 && isWhitespace(source.get(cursor + 2))) {
+					if (second == 't') {
+						cursor += 3;
+						final int size = parseComponents(textureCoords, lineEnd);
+						if (textureCoordSize == -1) {
+							textureCoordSize = size;
+						}
+					} else if (second == 'n') {
+						cursor += 3;
+						final int size = parseComponents(normals, lineEnd);
+						if (normalSize == -1) {
+							normalSize = size;
+						}
 					}
 				}
+			} else if (first == 'f' && isWhitespace(second)) {
+				cursor += 2;
+				parseIndices(lineEnd);
+			} else if (first == 'o' && isWhitespace(second)) {
+				cursor += 2;
+				statements.add(new GroupStatement(positionIndices.size(), STATEMENT_OBJECT, parseName(lineEnd)));
+			} else if (first == 'g' && isWhitespace(second)) {
+				cursor += 2;
+				statements.add(new GroupStatement(positionIndices.size(), STATEMENT_GROUP, parseName(lineEnd)));
+			} else if (startsWith(USE_MATERIAL, lineEnd)) {
+				cursor += USE_MATERIAL.length;
+				statements.add(new GroupStatement(positionIndices.size(), STATEMENT_MATERIAL, parseName(lineEnd)));
 			}
-		} catch (Exception ex) {
-			throw new MalformedObjFileException(line, ex);
 		}
-		return new Vector3f(positionSize, textureCoordSize, normalSize).max(0, 0, 0);
-	}
 
-	private static void parseComponents(TFloatList destination, String line) {
-		final String[] components = line.split(COMPONENT_SEPARATOR);
-		for (int i = 1; i < components.length; i++) {
-			destination.add(Float.parseFloat(components[i]));
+		private boolean startsWith(byte[] keyword, int lineEnd) {
+			if (lineEnd - cursor <= keyword.length || !isWhitespace(source.get(cursor + keyword.length))) {
+				return false;
+			}
+			for (int i = 0; i < keyword.length; i++) {
+				if (source.get(cursor + i) != keyword[i]) {
+					return false;
+				}
+			}
+			return true;
+		}
+
+		private String parseName(int lineEnd) {
+			// The rest of the line, trimmed
+			skipWhitespace(lineEnd);
+			int nameEnd = lineEnd;
+			while (nameEnd > cursor && isWhitespace(source.get(nameEnd - 1))) {
+				nameEnd--;
+			}
+			final byte[] name = new byte[nameEnd - cursor];
+			for (int i = 0; i < name.length; i++) {
+				name[i] = source.get(cursor + i);
+			}
+			cursor = lineEnd;
+			return new String(name, UTF_8);
+		}
+
+		private int parseComponents(TFloatList destination, int lineEnd) {
+			int count = 0;
+			skipWhitespace(lineEnd);
+			while (cursor < lineEnd) {
+				destination.add(decimals.parseFloat(source, cursor, lineEnd));
+				cursor = decimals.getEnd();
+				count++;
+				skipWhitespace(lineEnd);
+			}
+			return count;
+		}
+
+		private void parseIndices(int lineEnd) {
+			skipWhitespace(lineEnd);
+			while (cursor < lineEnd) {
+				positionIndices.add(parseIndex(lineEnd));
+				int textureCoordIndex = -1;
+				int normalIndex = -1;
+				if (cursor < lineEnd && source.get(cursor) == '/') {
+					cursor++;
+					if (cursor < lineEnd && source.get(cursor) != '/') {
+						textureCoordIndex = parseIndex(lineEnd);
+						hasTextureCoordIndices = true;
+					}
+					if (cursor < lineEnd && source.get(cursor) == '/') {
+						cursor++;
+						normalIndex = parseIndex(lineEnd);
+						hasNormalIndices = true;
+					}
+				}
+				textureCoordIndices.add(textureCoordIndex);
+				normalIndices.add(normalIndex);
+				if (cursor < lineEnd && !isWhitespace(source.get(cursor))) {
+					throw new NumberFormatException("Unexpected character in face");
+				}
+				skipWhitespace(lineEnd);
+			}
 		}
-	}
 
-	private static void parseIndices(TIntList positions, TIntList textureCoords, TIntList normals, String line) {
-		final String[] indicesGroup = line.split(COMPONENT_SEPARATOR);
-		for (int i = 1; i < indicesGroup.length; i++) {
-			final String[] indices = indicesGroup[i].split(INDEX_SEPARATOR);
-			positions.add(Integer.parseInt(indices[0]) - 1);
-			if (indices.length > 1 && !indices[1].isEmpty()) {
-				textureCoords.add(Integer.parseInt(indices[1]) - 1);
+		private int parseIndex(int lineEnd) {
+			int value = 0;
+			int digits = 0;
+			byte b;
+			while (cursor < lineEnd && (b = source.get(cursor)) >= '0' && b <= '9') {
+				value = value * 10 + b - '0';
+				if (++digits > 9) {
+					throw new NumberFormatException("Index is too large");
+				}
+				cursor++;
+			}
+			if (digits == 0 || value == 0) {
+				throw new NumberFormatException("Expected a positive index, relative indices aren't supported");
 			}
-			if (indices.length > 2) {
-				normals.add(Integer.parseInt(indices[2]) - 1);
+			return value - 1;
+		}
+
+		private void skipWhitespace(int lineEnd) {
+			while (cursor < lineEnd && isWhitespace(source.get(cursor))) {
+				cursor++;
 			}
 		}
 	}
 
+	/**
+	 * An object, group or material statement, applying from the face corner at the index.
+	 */
+	private static final class GroupStatement {
+		private final int cornerIndex;
+		private final int type;
+		private final String name;
+
+		private GroupStatement(int cornerIndex, int type, String name) {
+			this.cornerIndex = cornerIndex;
+			this.type = type;
+			this.name = name;
+		}
+	}
+
+	/**
+	 * A mesh loaded with a unique vertex for each combination of position, texture coord and normal, and the groups of faces of the file.
+	 */
+	public static class Mesh {
+		private final VertexData vertexData;
+		private final List<Group> groups;
+
+		private Mesh(VertexData vertexData, List<Group> groups) {
+			this.vertexData = vertexData;
+			this.groups = Collections.unmodifiableList(groups);
+		}
+
+		/**
+		 * Returns the vertex data of the whole mesh.
+		 *
+		 * @return The vertex data
+		 */
+		public VertexData getVertexData() {
+			return vertexData;
+		}
+
+		/**
+		 * Returns the groups of faces, in file order. They cover all the indices without overlapping.
+		 *
+		 * @return The groups
+		 */
+		public List<Group> getGroups() {
+			return groups;
+		}
+	}
+
+	/**
+	 * A run of consecutive faces sharing the same object, group and material, as a range of the indices. Use {@link org.spout.renderer.gl.VertexArray#setIndicesOffset(int)} and {@link
+	 * org.spout.renderer.gl.VertexArray#setIndicesCount(int)} to draw only this range.
+	 */
+	public static class Group {
+		private final String object;
+		private final String name;
+		private final String material;
+		private final int firstIndex;
+		private final int indicesCount;
+
+		private Group(String object, String name, String material, int firstIndex, int indicesCount) {
+			this.object = object;
+			this.name = name;
+			this.material = material;
+			this.firstIndex = firstIndex;
+			this.indicesCount = indicesCount;
+		}
+
+		/**
+		 * Returns the name of the object, from the last "o" statement, or null if there was none.
+		 *
+		 * @return The object name
+		 */
+		public String getObject() {
+			return object;
+		}
+
+		/**
+		 * Returns the name of the group, from the last "g" statement, or null if there was none.
+		 *
+		 * @return The group name
+		 */
+		public String getName() {
+			return name;
+		}
+
+		/**
+		 * Returns the name of the material, from the last "usemtl" statement, or null if there was none.
+		 *
+		 * @return The material name
+		 */
+		public String getMaterial() {
+			return material;
+		}
+
+		/**
+		 * Returns the index of the first index of the range.
+		 *
+		 * @return The first index
+		 */
+		public int getFirstIndex() {
+			return firstIndex;
+		}
+
+		/**
+		 * Returns the number of indices in the range.
+		 *
+		 * @return The indices count
+		 */
+		public int getIndicesCount() {
+			return indicesCount;
+		}
+	}
+
 	/**
 	 * An exception throw by the {@link ObjFileLoader} during loading if any errors are encountered.
 	 */
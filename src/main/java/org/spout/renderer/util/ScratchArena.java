@@ -0,0 +1,141 @@
+/*
+ * This file is part of Caustic.
+ *
+ * Copyright (c) 2013 Spout LLC <http://www.spout.org/>
+ * Caustic is licensed under the Spout License Version 1.
+ *
+ * Caustic is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the Free
+ * Software Foundation, either version 3 of the License, or (at your option)
+ * any later version.
+ *
+ * In addition, 180 days after any changes are published, you can use the
+ * software, incorporating those changes, under the terms of the MIT license,
+ * as described in the Spout License Version 1.
+ *
+ * Caustic is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE.  See the GNU Lesser General Public License for
+ * more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License,
+ * the MIT license and the Spout License Version 1 along with this program.
+ * If not, see <http://www.gnu.org/licenses/> for the GNU Lesser General Public
+ * License and see <http://spout.in/licensev1> for the full license, including
+ * the MIT license.
+ */
+package org.spout.renderer.util;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+import java.nio.IntBuffer;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.spout.renderer.data.VertexAttribute.DataType;
+
+/**
+ * A bump allocator for temporary direct buffers, backed by blocks from a {@link BufferPool}. Allocation is only a few arithmetic operations. Buffers are valid until the arena is reset, after which
+ * their memory is reused by the next allocations. This is meant for buffers that are consumed right away, such as uniform data passed to GL calls. An arena isn't thread safe, use {@link
+ * BufferPool#getFrameArena()} to get the one for the current thread.
+ * <p/>
+ * When a block is full, a block twice as large is acquired. The previous blocks are kept until the reset, so that buffers allocated from them stay valid, then released back to the pool.
+ */
+public class ScratchArena {
+	private static final int INITIAL_CAPACITY = 4096;
+	private static final int ALIGNMENT = 8;
+	private final BufferPool pool;
+	private final List<ByteBuffer> retired = new ArrayList<>();
+	private ByteBuffer block;
+	private int position = 0;
+
+	/**
+	 * Constructs a new arena acquiring its blocks from the pool.
+	 *
+	 * @param pool The pool to acquire the blocks from
+	 */
+	public ScratchArena(BufferPool pool) {
+		if (pool == null) {
+			throw new IllegalArgumentException("Pool cannot be null");
+		}
+		this.pool = pool;
+	}
+
+	/**
+	 * Allocates a byte buffer of the desired size. The buffer is in native order, and its position is zero and limit and capacity are the size. The content is undefined.
+	 *
+	 * @param size The size in bytes
+	 * @return The buffer, valid until the next reset
+	 */
+	public ByteBuffer allocate(int size) {
+		if (size < 0) {
+			throw new IllegalArgumentException("Size cannot be negative");
+		}
+		int start = align(position);
+		if (block == null || start + size > block.capacity()) {
+			grow(size);
+			start = 0;
+		}
+		block.clear();
+		block.position(start);
+		block.limit(start + size);
+		position = start + size;
+		return block.slice().order(ByteOrder.nativeOrder());
+	}
+
+	/**
+	 * Allocates a float buffer of the desired capacity.
+	 *
+	 * @param capacity The capacity in floats
+	 * @return The buffer, valid until the next reset
+	 */
+	public FloatBuffer allocateFloat(int capacity) {
+		return allocate(capacity * DataType.FLOAT.getByteSize()).asFloatBuffer();
+	}
+
+	/**
+	 * Allocates an int buffer of the desired capacity.
+	 *
+	 * @param capacity The capacity in ints
+	 * @return The buffer, valid until the next reset
+	 */
+	public IntBuffer allocateInt(int capacity) {
+		return allocate(capacity * DataType.INT.getByteSize()).asIntBuffer();
+	}
+
+	/**
+	 * Returns the number of bytes allocated in the current block since the last reset.
+	 *
+	 * @return The used bytes
+	 */
+	public int getBytesUsed() {
+		return position;
+	}
+
+	/**
+	 * Resets the arena, invalidating all the buffers allocated since the last reset. The largest block is kept for the next allocations, the others are released.
+	 */
+	public void reset() {
+		// Indexed to avoid creating an iterator each frame
+		for (int i = 0, size = retired.size(); i < size; i++) {
+			pool.release(retired.get(i));
+		}
+		retired.clear();
+		position = 0;
+	}
+
+	private void grow(int size) {
+		int capacity = INITIAL_CAPACITY;
+		if (block != null) {
+			retired.add(block);
+			capacity = block.capacity() * 2;
+		}
+		block = pool.acquire(Math.max(capacity, size));
+		position = 0;
+	}
+
+	private static int align(int offset) {
+		return (offset + ALIGNMENT - 1) / ALIGNMENT * ALIGNMENT;
+	}
+}
@@ -0,0 +1,319 @@
+/*
+ * This file is part of Caustic.
+ *
+ * Copyright (c) 2013 Spout LLC <http://www.spout.org/>
+ * Caustic is licensed under the Spout License Version 1.
+ *
+ * Caustic is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the Free
+ * Software Foundation, either version 3 of the License, or (at your option)
+ * any later version.
+ *
+ * In addition, 180 days after any changes are published, you can use the
+ * software, incorporating those changes, under the terms of the MIT license,
+ * as described in the Spout License Version 1.
+ *
+ * Caustic is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE.  See the GNU Lesser General Public License for
+ * more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License,
+ * the MIT license and the Spout License Version 1 along with this program.
+ * If not, see <http://www.gnu.org/licenses/> for the GNU Lesser General Public
+ * License and see <http://spout.in/licensev1> for the full license, including
+ * the MIT license.
+ */
+package org.spout.renderer.util;
+
+import java.nio.ByteBuffer;
+
+import org.spout.math.matrix.Matrix2f;
+import org.spout.math.matrix.Matrix3f;
+import org.spout.math.matrix.Matrix4f;
+import org.spout.math.vector.Vector2f;
+import org.spout.math.vector.Vector3f;
+import org.spout.math.vector.Vector4f;
+import org.spout.renderer.data.Color;
+import org.spout.renderer.data.Uniform;
+import org.spout.renderer.data.UniformHolder;
+
+/**
+ * Packs uniform values into a buffer using the std140 layout of uniform blocks, so that the data of a {@link org.spout.renderer.gl.UniformBuffer} can be prepared on the CPU without querying the
+ * member offsets from OpenGL. The values must be packed in the order the members are declared in the block. <p/> Scalars are aligned to 4 bytes, two component vectors to 8 bytes and three and four
+ * component vectors to 16 bytes. The elements of arrays and the columns of matrices are aligned to 16 bytes each, and matrices are packed in column major order. Booleans are packed as integers. The
+ * size of the packed data is rounded up to 16 bytes. Padding is filled with zeros. <p/> The packer grows its buffer as needed and can be reused by calling {@link #reset()}, so packing the same
+ * layout again doesn't allocate.
+ */
+public class Std140Packer {
+	// The alignment of the elements of arrays and columns of matrices, and of the block size
+	private static final int VEC4_ALIGNMENT = 16;
+	private ByteBuffer buffer;
+	private int position = 0;
+
+	/**
+	 * Constructs a new packer with an initial capacity of 256 bytes.
+	 */
+	public Std140Packer() {
+		this(256);
+	}
+
+	/**
+	 * Constructs a new packer with the initial capacity, in bytes.
+	 *
+	 * @param capacity The initial capacity
+	 */
+	public Std140Packer(int capacity) {
+		if (capacity <= 0) {
+			throw new IllegalArgumentException("Capacity must be greater than zero");
+		}
+		buffer = CausticUtil.createByteBuffer(capacity);
+	}
+
+	/**
+	 * Resets the packer to pack a new block from the start.
+	 */
+	public void reset() {
+		position = 0;
+	}
+
+	/**
+	 * Returns the offset at which the next value will be packed, before its alignment.
+	 *
+	 * @return The current offset in bytes
+	 */
+	public int getPosition() {
+		return position;
+	}
+
+	/**
+	 * Returns the size of the packed data, rounded up to 16 bytes.
+	 *
+	 * @return The size in bytes
+	 */
+	public int getSize() {
+		return align(position, VEC4_ALIGNMENT);
+	}
+
+	/**
+	 * Returns the packed data, from the start to {@link #getSize()}. The buffer belongs to the packer and is only valid until the next call to the packer.
+	 *
+	 * @return The packed data
+	 */
+	public ByteBuffer getBuffer() {
+		final int size = getSize();
+		ensureCapacity(size);
+		// Zero the trailing padding without moving the position, so packing can continue
+		for (int i = position; i < size; i++) {
+			buffer.put(i, (byte) 0);
+		}
+		buffer.limit(size);
+		return buffer;
+	}
+
+	/**
+	 * Packs all the uniforms of the holder, in their insertion order.
+	 *
+	 * @param uniforms The uniforms to pack
+	 */
+	public void pack(UniformHolder uniforms) {
+		// Indexed to avoid creating an iterator each frame
+		for (int i = 0, size = uniforms.size(); i < size; i++) {
+			uniforms.get(i).pack(this);
+		}
+	}
+
+	/**
+	 * Packs all the uniforms, in their iteration order.
+	 *
+	 * @param uniforms The uniforms to pack
+	 */
+	public void pack(Iterable<Uniform> uniforms) {
+		for (Uniform uniform : uniforms) {
+			uniform.pack(this);
+		}
+	}
+
+	/**
+	 * Packs a boolean, as an integer.
+	 *
+	 * @param b The boolean
+	 */
+	public void pack(boolean b) {
+		pack(b ? 1 : 0);
+	}
+
+	/**
+	 * Packs an integer.
+	 *
+	 * @param i The integer
+	 */
+	public void pack(int i) {
+		start(4, 4);
+		buffer.putInt(position, i);
+		position += 4;
+	}
+
+	/**
+	 * Packs a float.
+	 *
+	 * @param f The float
+	 */
+	public void pack(float f) {
+		start(4, 4);
+		putFloat(f);
+	}
+
+	/**
+	 * Packs a two component vector.
+	 *
+	 * @param v The vector
+	 */
+	public void pack(Vector2f v) {
+		start(8, 8);
+		putFloat(v.getX());
+		putFloat(v.getY());
+	}
+
+	/**
+	 * Packs an array of two component vectors, each element taking 16 bytes.
+	 *
+	 * @param vs The vectors
+	 */
+	public void pack(Vector2f[] vs) {
+		start(VEC4_ALIGNMENT, vs.length * VEC4_ALIGNMENT);
+		for (Vector2f v : vs) {
+			putFloat(v.getX());
+			putFloat(v.getY());
+			pad(position + 8);
+		}
+	}
+
+	/**
+	 * Packs a three component vector. A following scalar can be packed in the remaining 4 bytes.
+	 *
+	 * @param v The vector
+	 */
+	public void pack(Vector3f v) {
+		start(VEC4_ALIGNMENT, 12);
+		putFloat(v.getX());
+		putFloat(v.getY());
+		putFloat(v.getZ());
+	}
+
+	/**
+	 * Packs an array of three component vectors, each element taking 16 bytes.
+	 *
+	 * @param vs The vectors
+	 */
+	public void pack(Vector3f[] vs) {
+		start(VEC4_ALIGNMENT, vs.length * VEC4_ALIGNMENT);
+		for (Vector3f v : vs) {
+			putFloat(v.getX());
+			putFloat(v.getY());
+			putFloat(v.getZ());
+			pad(position + 4);
+		}
+	}
+
+	/**
+	 * Packs a four component vector.
+	 *
+	 * @param v The vector
+	 */
+	public void pack(Vector4f v) {
+		start(VEC4_ALIGNMENT, 16);
+		putFloat(v.getX());
+		putFloat(v.getY());
+		putFloat(v.getZ());
+		putFloat(v.getW());
+	}
+
+	/**
+	 * Packs a color as a normalized four component vector, like {@link org.spout.renderer.gl.Program#setUniform(String, Color)}.
+	 *
+	 * @param c The color
+	 */
+	public void pack(Color c) {
+		pack((Vector4f) c.normalize());
+	}
+
+	/**
+	 * Packs a 2x2 matrix, as two columns of 16 bytes.
+	 *
+	 * @param m The matrix
+	 */
+	public void pack(Matrix2f m) {
+		start(VEC4_ALIGNMENT, 2 * VEC4_ALIGNMENT);
+		for (int col = 0; col < 2; col++) {
+			putFloat(m.get(0, col));
+			putFloat(m.get(1, col));
+			pad(position + 8);
+		}
+	}
+
+	/**
+	 * Packs a 3x3 matrix, as three columns of 16 bytes.
+	 *
+	 * @param m The matrix
+	 */
+	public void pack(Matrix3f m) {
+		start(VEC4_ALIGNMENT, 3 * VEC4_ALIGNMENT);
+		for (int col = 0; col < 3; col++) {
+			putFloat(m.get(0, col));
+			putFloat(m.get(1, col));
+			putFloat(m.get(2, col));
+			pad(position + 4);
+		}
+	}
+
+	/**
+	 * Packs a 4x4 matrix, as four columns of 16 bytes.
+	 *
+	 * @param m The matrix
+	 */
+	public void pack(Matrix4f m) {
+		start(VEC4_ALIGNMENT, 4 * VEC4_ALIGNMENT);
+		for (int col = 0; col < 4; col++) {
+			putFloat(m.get(0, col));
+			putFloat(m.get(1, col));
+			putFloat(m.get(2, col));
+			putFloat(m.get(3, col));
+		}
+	}
+
+	// Aligns the position, padding with zeros, and makes room for the value
+	private void start(int alignment, int size) {
+		final int start = align(position, alignment);
+		ensureCapacity(align(start + size, VEC4_ALIGNMENT));
+		pad(start);
+	}
+
+	private void putFloat(float f) {
+		buffer.putFloat(position, f);
+		position += 4;
+	}
+
+	private void pad(int end) {
+		ensureCapacity(end);
+		while (position < end) {
+			buffer.put(position++, (byte) 0);
+		}
+	}
+
+	// Grows the buffer if needed and resets its limit, as the values are written at absolute positions
+	private void ensureCapacity(int capacity) {
+		if (buffer.capacity() < capacity) {
+			final ByteBuffer grown = CausticUtil.createByteBuffer(Math.max(capacity, buffer.capacity() * 2));
+			buffer.limit(position);
+			buffer.position(0);
+			grown.put(buffer);
+			buffer = grown;
+		}
+		buffer.clear();
+	}
+
+	private static int align(int offset, int alignment) {
+		return (offset + alignment - 1) / alignment * alignment;
+	}
+}
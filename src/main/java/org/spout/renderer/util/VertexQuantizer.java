@@ -0,0 +1,333 @@
+/*
+ * This file is part of Caustic.
+ *
+ * Copyright (c) 2013 Spout LLC <http://www.spout.org/>
+ * Caustic is licensed under the Spout License Version 1.
+ *
+ * Caustic is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the Free
+ * Software Foundation, either version 3 of the License, or (at your option)
+ * any later version.
+ *
+ * In addition, 180 days after any changes are published, you can use the
+ * software, incorporating those changes, under the terms of the MIT license,
+ * as described in the Spout License Version 1.
+ *
+ * Caustic is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE.  See the GNU Lesser General Public License for
+ * more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License,
+ * the MIT license and the Spout License Version 1 along with this program.
+ * If not, see <http://www.gnu.org/licenses/> for the GNU Lesser General Public
+ * License and see <http://spout.in/licensev1> for the full license, including
+ * the MIT license.
+ */
+package org.spout.renderer.util;
+
+import java.nio.ByteBuffer;
+import java.nio.FloatBuffer;
+
+import org.spout.math.matrix.Matrix4f;
+import org.spout.math.vector.Vector3f;
+import org.spout.math.vector.Vector4f;
+import org.spout.renderer.data.VertexAttribute;
+import org.spout.renderer.data.VertexAttribute.DataType;
+import org.spout.renderer.data.VertexAttribute.UploadMode;
+
+/**
+ * Static methods to convert float vertex attributes to smaller types, to reduce vertex memory and bandwidth. Each transform returns a new attribute with the same name, which can replace the original
+ * one in the {@link org.spout.renderer.data.VertexData}. The original attribute isn't modified.
+ * <p/>
+ * Normalized types are converted back to float by OpenGL using the signed normalization of OpenGL 4.2 and ES 3.0: {@code max(c / (2^(b-1) - 1), -1)}.
+ */
+public final class VertexQuantizer {
+	private static final float SHORT_MAX = Short.MAX_VALUE;
+	private static final float BYTE_MAX = Byte.MAX_VALUE;
+	private static final float UNSIGNED_SHORT_MAX = 0xffff;
+
+	private VertexQuantizer() {
+	}
+
+	/**
+	 * Converts a float attribute to half floats, with the same number of components. Half floats have 11 bits of precision and a range of ±65504.
+	 *
+	 * @param attribute The float attribute to convert
+	 * @return The half float attribute
+	 */
+	public static VertexAttribute toHalfFloat(VertexAttribute attribute) {
+		final FloatBuffer source = getFloatData(attribute);
+		final ByteBuffer destination = CausticUtil.createByteBuffer(source.remaining() * DataType.HALF_FLOAT.getByteSize());
+		while (source.hasRemaining()) {
+			destination.putShort(floatToHalf(source.get()));
+		}
+		return createAttribute(attribute, DataType.HALF_FLOAT, attribute.getSize(), UploadMode.TO_FLOAT, destination);
+	}
+
+	/**
+	 * Quantizes positions to normalized signed shorts, relative to their bounding box. The returned matrix maps the normalized positions back to the original ones, and should be applied before the
+	 * model matrix, as in {@code modelMatrix.mul(dequantizationMatrix)}. The error on each component is at most half the box extent on that axis divided by 65534.
+	 *
+	 * @param positions The float positions to quantize, with 2 or 3 components
+	 * @return The quantized positions and their dequantization matrix
+	 */
+	public static QuantizedPositions quantizePositions(VertexAttribute positions) {
+		final FloatBuffer source = getFloatData(positions);
+		final int size = positions.getSize();
+		if (size != 2 && size != 3) {
+			throw new IllegalArgumentException("Positions must have 2 or 3 components, got " + size);
+		}
+		// Find the bounding box
+		final float[] min = {Float.POSITIVE_INFINITY, Float.POSITIVE_INFINITY, Float.POSITIVE_INFINITY};
+		final float[] max = {Float.NEGATIVE_INFINITY, Float.NEGATIVE_INFINITY, Float.NEGATIVE_INFINITY};
+		for (int i = 0; i < source.limit(); i++) {
+			final float value = source.get(i);
+			final int component = i % size;
+			min[component] = Math.min(min[component], value);
+			max[component] = Math.max(max[component], value);
+		}
+		final float[] center = new float[3];
+		final float[] halfExtent = {1, 1, 1};
+		for (int i = 0; i < size && source.limit() > 0; i++) {
+			center[i] = (min[i] + max[i]) / 2;
+			// A flat axis is kept at a scale of one so the matrix stays invertible
+			if (max[i] > min[i]) {
+				halfExtent[i] = (max[i] - min[i]) / 2;
+			}
+		}
+		final ByteBuffer destination = CausticUtil.createByteBuffer(source.limit() * DataType.SHORT.getByteSize());
+		for (int i = 0; i < source.limit(); i++) {
+			final int component = i % size;
+			destination.putShort(toSnorm16((source.get(i) - center[component]) / halfExtent[component]));
+		}
+		final Matrix4f dequantization = Matrix4f.createScaling(new Vector4f(halfExtent[0], halfExtent[1], halfExtent[2], 1)).translate(new Vector3f(center[0], center[1], center[2]));
+		return new QuantizedPositions(createAttribute(positions, DataType.SHORT, size, UploadMode.TO_FLOAT_NORMALIZE, destination), dequantization);
+	}
+
+	/**
+	 * Encodes unit vectors, such as normals and tangents, using the octahedral mapping, into two normalized signed bytes or shorts. Vectors with 4 components are considered as tangents with the
+	 * handedness in the last component, which is kept as a third component of -1 or 1. The vectors are decoded in a shader with:
+	 * <pre>
+	 * vec3 v = vec3(e.xy, 1 - abs(e.x) - abs(e.y));
+	 * if (v.z &lt; 0) v.xy = (1 - abs(v.yx)) * sign(v.xy);
+	 * v = normalize(v);
+	 * </pre>
+	 * with {@code sign} treating zero as positive. The angular error is under 1 degree for bytes and 0.005 degree for shorts.
+	 *
+	 * @param vectors The float unit vectors to encode, with 3 or 4 components
+	 * @param type The type to encode to, either {@link DataType#BYTE} or {@link DataType#SHORT}
+	 * @return The encoded vectors
+	 */
+	public static VertexAttribute encodeOctahedral(VertexAttribute vectors, DataType type) {
+		final FloatBuffer source = getFloatData(vectors);
+		final int size = vectors.getSize();
+		if (size != 3 && size != 4) {
+			throw new IllegalArgumentException("Vectors must have 3 or 4 components, got " + size);
+		}
+		if (type != DataType.BYTE && type != DataType.SHORT) {
+			throw new IllegalArgumentException("Type must be byte or short, got " + type);
+		}
+		final int encodedSize = size - 1;
+		final int count = source.limit() / size;
+		final ByteBuffer destination = CausticUtil.createByteBuffer(count * encodedSize * type.getByteSize());
+		final float[] encoded = new float[2];
+		for (int v = 0; v < count; v++) {
+			final int i = v * size;
+			encodeOctahedral(source.get(i), source.get(i + 1), source.get(i + 2), encoded);
+			if (type == DataType.BYTE) {
+				destination.put(toSnorm8(encoded[0]));
+				destination.put(toSnorm8(encoded[1]));
+				if (size == 4) {
+					destination.put(source.get(i + 3) < 0 ? (byte) -Byte.MAX_VALUE : Byte.MAX_VALUE);
+				}
+			} else {
+				destination.putShort(toSnorm16(encoded[0]));
+				destination.putShort(toSnorm16(encoded[1]));
+				if (size == 4) {
+					destination.putShort(source.get(i + 3) < 0 ? (short) -Short.MAX_VALUE : Short.MAX_VALUE);
+				}
+			}
+		}
+		return createAttribute(vectors, type, encodedSize, UploadMode.TO_FLOAT_NORMALIZE, destination);
+	}
+
+	/**
+	 * Quantizes texture coordinates to normalized unsigned shorts. The coordinates must be in the [0, 1] range, use {@link #toHalfFloat(VertexAttribute)} for repeating textures. The error is at most
+	 * 1 / 131070.
+	 *
+	 * @param textureCoords The float texture coordinates to quantize
+	 * @return The quantized texture coordinates
+	 * @throws IllegalArgumentException If a coordinate is outside of the [0, 1] range
+	 */
+	public static VertexAttribute quantizeTextureCoords(VertexAttribute textureCoords) {
+		final FloatBuffer source = getFloatData(textureCoords);
+		final ByteBuffer destination = CausticUtil.createByteBuffer(source.remaining() * DataType.UNSIGNED_SHORT.getByteSize());
+		while (source.hasRemaining()) {
+			final float value = source.get();
+			if (!(value >= 0 && value <= 1)) {
+				throw new IllegalArgumentException("Texture coordinate " + value + " is outside of the [0, 1] range");
+			}
+			destination.putShort((short) Math.round(value * UNSIGNED_SHORT_MAX));
+		}
+		return createAttribute(textureCoords, DataType.UNSIGNED_SHORT, textureCoords.getSize(), UploadMode.TO_FLOAT_NORMALIZE, destination);
+	}
+
+	/**
+	 * Converts a float to the bits of the nearest half float, rounding ties to even. Values too large become infinities, NaN is kept.
+	 *
+	 * @param value The float to convert
+	 * @return The half float bits
+	 */
+	public static short floatToHalf(float value) {
+		final int bits = Float.floatToIntBits(value);
+		final int sign = bits >>> 16 & 0x8000;
+		final int exponent = (bits >>> 23 & 0xff) - 127 + 15;
+		int mantissa = bits & 0x7fffff;
+		if ((bits & 0x7fffffff) >= 0x7f800000) {
+			// Infinity or NaN
+			return (short) (sign | 0x7c00 | (mantissa != 0 ? 0x200 : 0));
+		}
+		if (exponent >= 31) {
+			// Overflow
+			return (short) (sign | 0x7c00);
+		}
+		final int shift;
+		int half;
+		if (exponent <= 0) {
+			if (exponent < -10) {
+				// Underflow
+				return (short) sign;
+			}
+			// Sub-normal, the implicit leading one becomes explicit
+			mantissa |= 0x800000;
+			shift = 14 - exponent;
+			half = mantissa >> shift;
+		} else {
+			shift = 13;
+			half = exponent << 10 | mantissa >> shift;
+		}
+		// Round to nearest even, a carry into the exponent is correct
+		final int remainder = mantissa & (1 << shift) - 1;
+		final int halfway = 1 << shift - 1;
+		if (remainder > halfway || remainder == halfway && (half & 1) != 0) {
+			half++;
+		}
+		return (short) (sign | half);
+	}
+
+	/**
+	 * Converts the bits of a half float to a float. This is exact.
+	 *
+	 * @param half The half float bits
+	 * @return The float value
+	 */
+	public static float halfToFloat(short half) {
+		final int bits = half & 0xffff;
+		final int sign = (bits & 0x8000) << 16;
+		final int exponent = bits >>> 10 & 0x1f;
+		final int mantissa = bits & 0x3ff;
+		if (exponent == 0) {
+			// Zero or sub-normal
+			final float value = mantissa / (float) (1 << 24);
+			return sign == 0 ? value : -value;
+		}
+		if (exponent == 31) {
+			return Float.intBitsToFloat(sign | 0x7f800000 | mantissa << 13);
+		}
+		return Float.intBitsToFloat(sign | exponent - 15 + 127 << 23 | mantissa << 13);
+	}
+
+	/**
+	 * Decodes a vector encoded with the octahedral mapping, from the normalized components.
+	 *
+	 * @param x The first normalized component
+	 * @param y The second normalized component
+	 * @return The decoded unit vector
+	 */
+	public static Vector3f decodeOctahedral(float x, float y) {
+		final float z = 1 - Math.abs(x) - Math.abs(y);
+		if (z < 0) {
+			final float foldedX = (1 - Math.abs(y)) * sign(x);
+			y = (1 - Math.abs(x)) * sign(y);
+			x = foldedX;
+		}
+		return new Vector3f(x, y, z).normalize();
+	}
+
+	private static void encodeOctahedral(float x, float y, float z, float[] encoded) {
+		// Project on the octahedron, then fold the lower half over the upper one
+		final float norm = Math.abs(x) + Math.abs(y) + Math.abs(z);
+		if (norm == 0) {
+			encoded[0] = 0;
+			encoded[1] = 0;
+			return;
+		}
+		x /= norm;
+		y /= norm;
+		if (z < 0) {
+			final float foldedX = (1 - Math.abs(y)) * sign(x);
+			y = (1 - Math.abs(x)) * sign(y);
+			x = foldedX;
+		}
+		encoded[0] = x;
+		encoded[1] = y;
+	}
+
+	private static float sign(float value) {
+		return value < 0 ? -1 : 1;
+	}
+
+	private static short toSnorm16(float value) {
+		return (short) Math.round(Math.max(-1, Math.min(1, value)) * SHORT_MAX);
+	}
+
+	private static byte toSnorm8(float value) {
+		return (byte) Math.round(Math.max(-1, Math.min(1, value)) * BYTE_MAX);
+	}
+
+	private static FloatBuffer getFloatData(VertexAttribute attribute) {
+		if (attribute.getType() != DataType.FLOAT) {
+			throw new IllegalArgumentException("Attribute must be of type float, got " + attribute.getType());
+		}
+		return attribute.getData().asFloatBuffer();
+	}
+
+	private static VertexAttribute createAttribute(VertexAttribute original, DataType type, int size, UploadMode uploadMode, ByteBuffer data) {
+		final VertexAttribute attribute = new VertexAttribute(original.getName(), type, size, uploadMode);
+		data.flip();
+		attribute.transferData(data);
+		return attribute;
+	}
+
+	/**
+	 * Positions quantized by {@link #quantizePositions(VertexAttribute)}, with the matrix to convert them back.
+	 */
+	public static class QuantizedPositions {
+		private final VertexAttribute attribute;
+		private final Matrix4f dequantizationMatrix;
+
+		private QuantizedPositions(VertexAttribute attribute, Matrix4f dequantizationMatrix) {
+			this.attribute = attribute;
+			this.dequantizationMatrix = dequantizationMatrix;
+		}
+
+		/**
+		 * Returns the quantized positions attribute, as normalized signed shorts.
+		 *
+		 * @return The positions attribute
+		 */
+		public VertexAttribute getAttribute() {
+			return attribute;
+		}
+
+		/**
+		 * Returns the matrix that converts the normalized positions back to the original ones. It should be applied before the model matrix.
+		 *
+		 * @return The dequantization matrix
+		 */
+		public Matrix4f getDequantizationMatrix() {
+			return dequantizationMatrix;
+		}
+	}
+}
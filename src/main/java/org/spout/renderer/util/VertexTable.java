@@ -0,0 +1,135 @@
+/*
+ * This file is part of Caustic.
+ *
+ * Copyright (c) 2013 Spout LLC <http://www.spout.org/>
+ * Caustic is licensed under the Spout License Version 1.
+ *
+ * Caustic is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the Free
+ * Software Foundation, either version 3 of the License, or (at your option)
+ * any later version.
+ *
+ * In addition, 180 days after any changes are published, you can use the
+ * software, incorporating those changes, under the terms of the MIT license,
+ * as described in the Spout License Version 1.
+ *
+ * Caustic is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE.  See the GNU Lesser General Public License for
+ * more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License,
+ * the MIT license and the Spout License Version 1 along with this program.
+ * If not, see <http://www.gnu.org/licenses/> for the GNU Lesser General Public
+ * License and see <http://spout.in/licensev1> for the full license, including
+ * the MIT license.
+ */
+package org.spout.renderer.util;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+import org.spout.renderer.data.VertexAttribute;
+import org.spout.renderer.data.VertexAttribute.DataType;
+
+/**
+ * An open addressing hash table from triplets of position, texture coord and normal indices to vertex indices, used by the loaders to create a unique vertex for each combination. Vertices are
+ * numbered in order of insertion. A missing texture coord or normal is -1.
+ */
+final class VertexTable {
+	static final int POSITIONS = 0;
+	static final int TEXTURE_COORDS = 1;
+	static final int NORMALS = 2;
+	private int[] slots;
+	private int[] positionIndices;
+	private int[] textureCoordIndices;
+	private int[] normalIndices;
+	private int size = 0;
+
+	VertexTable(int expectedSize) {
+		expectedSize = Math.max(expectedSize, 16);
+		slots = new int[Integer.highestOneBit(expectedSize * 2 - 1) << 1];
+		Arrays.fill(slots, -1);
+		positionIndices = new int[expectedSize];
+		textureCoordIndices = new int[expectedSize];
+		normalIndices = new int[expectedSize];
+	}
+
+	int size() {
+		return size;
+	}
+
+	int add(int position, int textureCoord, int normal) {
+		final int mask = slots.length - 1;
+		int slot = hash(position, textureCoord, normal) & mask;
+		int vertex;
+		while ((vertex = slots[slot]) != -1) {
+			if (positionIndices[vertex] == position && textureCoordIndices[vertex] == textureCoord && normalIndices[vertex] == normal) {
+				return vertex;
+			}
+			slot = slot + 1 & mask;
+		}
+		vertex = size++;
+		if (vertex == positionIndices.length) {
+			positionIndices = Arrays.copyOf(positionIndices, vertex * 2);
+			textureCoordIndices = Arrays.copyOf(textureCoordIndices, vertex * 2);
+			normalIndices = Arrays.copyOf(normalIndices, vertex * 2);
+		}
+		positionIndices[vertex] = position;
+		textureCoordIndices[vertex] = textureCoord;
+		normalIndices[vertex] = normal;
+		slots[slot] = vertex;
+		// Keep the load factor under one half
+		if (size * 2 > slots.length) {
+			rehash();
+		}
+		return vertex;
+	}
+
+	/**
+	 * Creates a float attribute for the vertices, writing the values directly into its buffer. Vertices without an index for the component get zeros.
+	 *
+	 * @param name The name of the attribute
+	 * @param source The source values, indexed by the component indices
+	 * @param size The number of components per value
+	 * @param component The component to read the indices of: {@link #POSITIONS}, {@link #TEXTURE_COORDS} or {@link #NORMALS}
+	 * @return The attribute
+	 */
+	VertexAttribute createAttribute(String name, float[] source, int size, int component) {
+		final int[] sourceIndices = component == POSITIONS ? positionIndices : component == TEXTURE_COORDS ? textureCoordIndices : normalIndices;
+		final VertexAttribute attribute = new VertexAttribute(name, DataType.FLOAT, size);
+		final ByteBuffer buffer = CausticUtil.createByteBuffer(this.size * size * DataType.FLOAT.getByteSize());
+		for (int v = 0; v < this.size; v++) {
+			final int sourceStart = sourceIndices[v] * size;
+			for (int c = 0; c < size; c++) {
+				buffer.putFloat(sourceStart >= 0 ? source[sourceStart + c] : 0);
+			}
+		}
+		attribute.transferData(buffer);
+		return attribute;
+	}
+
+	private void rehash() {
+		slots = new int[slots.length * 2];
+		Arrays.fill(slots, -1);
+		final int mask = slots.length - 1;
+		for (int vertex = 0; vertex < size; vertex++) {
+			int slot = hash(positionIndices[vertex], textureCoordIndices[vertex], normalIndices[vertex]) & mask;
+			while (slots[slot] != -1) {
+				slot = slot + 1 & mask;
+			}
+			slots[slot] = vertex;
+		}
+	}
+
+	private static int hash(int position, int textureCoord, int normal) {
+		// Murmur3 finalizer on a combination of the three indices
+		int h = position * 0x9E3779B1 ^ textureCoord * 0x85EBCA77 ^ normal * 0xC2B2AE3D;
+		h ^= h >>> 16;
+		h *= 0x85EBCA6B;
+		h ^= h >>> 13;
+		h *= 0xC2B2AE35;
+		h ^= h >>> 16;
+		return h;
+	}
+}
@@ -0,0 +1,74 @@
+/*
+ * This file is part of Caustic.
+ *
+ * Copyright (c) 2013 Spout LLC <http://www.spout.org/>
+ * Caustic is licensed under the Spout License Version 1.
+ *
+ * Caustic is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the Free
+ * Software Foundation, either version 3 of the License, or (at your option)
+ * any later version.
+ *
+ * In addition, 180 days after any changes are published, you can use the
+ * software, incorporating those changes, under the terms of the MIT license,
+ * as described in the Spout License Version 1.
+ *
+ * Caustic is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE.  See the GNU Lesser General Public License for
+ * more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License,
+ * the MIT license and the Spout License Version 1 along with this program.
+ * If not, see <http://www.gnu.org/licenses/> for the GNU Lesser General Public
+ * License and see <http://spout.in/licensev1> for the full license, including
+ * the MIT license.
+ */
+package org.spout.renderer.util;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Vertex data helpers shared by the mesh processing classes of this package.
+ */
+final class VertexUtil {
+	private VertexUtil() {
+	}
+
+	/**
+	 * Copies the vertices of the source to a new direct buffer, in the given order. The source is read from its start and isn't modified.
+	 *
+	 * @param source The source vertex data
+	 * @param vertexSize The size of a vertex, in bytes
+	 * @param order The indices of the source vertices to copy, in their new order
+	 * @param count The number of vertices to copy, from the start of the order
+	 * @return The new buffer, ready to read
+	 */
+	static ByteBuffer gather(ByteBuffer source, int vertexSize, int[] order, int count) {
+		final ByteBuffer vertex = source.duplicate();
+		final ByteBuffer destination = CausticUtil.createByteBuffer(count * vertexSize);
+		for (int i = 0; i < count; i++) {
+			final int start = order[i] * vertexSize;
+			vertex.limit(start + vertexSize);
+			vertex.position(start);
+			destination.put(vertex);
+		}
+		destination.flip();
+		return destination;
+	}
+
+	/**
+	 * Mixes the bits of a hash with the finalizer of MurmurHash3, so that similar keys spread over a hash table.
+	 *
+	 * @param hash The hash to mix
+	 * @return The mixed hash
+	 */
+	static long mix(long hash) {
+		hash ^= hash >>> 33;
+		hash *= 0xff51afd7ed558ccdL;
+		hash ^= hash >>> 33;
+		hash *= 0xc4ceb9fe1a85ec53L;
+		hash ^= hash >>> 33;
+		return hash;
+	}
+}
@@ -0,0 +1,210 @@
+/*
+ * This file is part of Caustic.
+ *
+ * Copyright (c) 2013 Spout LLC <http://www.spout.org/>
+ * Caustic is licensed under the Spout License Version 1.
+ *
+ * Caustic is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the Free
+ * Software Foundation, either version 3 of the License, or (at your option)
+ * any later version.
+ *
+ * In addition, 180 days after any changes are published, you can use the
+ * software, incorporating those changes, under the terms of the MIT license,
+ * as described in the Spout License Version 1.
+ *
+ * Caustic is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE.  See the GNU Lesser General Public License for
+ * more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License,
+ * the MIT license and the Spout License Version 1 along with this program.
+ * If not, see <http://www.gnu.org/licenses/> for the GNU Lesser General Public
+ * License and see <http://spout.in/licensev1> for the full license, including
+ * the MIT license.
+ */
+package org.spout.renderer.util;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+import gnu.trove.list.TIntList;
+import gnu.trove.map.TIntFloatMap;
+
+import org.spout.renderer.data.VertexAttribute;
+import org.spout.renderer.data.VertexAttribute.DataType;
+import org.spout.renderer.data.VertexData;
+
+/**
+ * Static methods to merge duplicate vertices of a {@link VertexData}. Vertices are duplicates when all their attributes are equal. The duplicates are replaced by the first occurrence, the indices
+ * are rewritten to match and the attributes are compacted. The order of the remaining vertices is kept.
+ * <p/>
+ * Vertices are hashed in a primitive open addressing table, so no object is allocated per vertex.
+ */
+public final class VertexWelder {
+	private static final int EMPTY = -1;
+
+	private VertexWelder() {
+	}
+
+	/**
+	 * Merges the vertices with bit-identical attributes.
+	 *
+	 * @param data The vertex data to weld
+	 * @return The number of vertices after welding
+	 */
+	public static int weld(VertexData data) {
+		return weld(data, null);
+	}
+
+	/**
+	 * Merges the vertices with equal attributes. For float and double attributes with an epsilon, the components are compared after rounding to the nearest multiple of the epsilon, so merged values
+	 * differ by less than the epsilon. The other attributes must be bit-identical.
+	 *
+	 * @param data The vertex data to weld
+	 * @param epsilons The epsilon for each attribute index, can be null
+	 * @return The number of vertices after welding
+	 */
+	public static int weld(VertexData data, TIntFloatMap epsilons) {
+		final int attributeCount = data.getAttributeCount();
+		final ByteBuffer[] sources = new ByteBuffer[attributeCount];
+		final DataType[] types = new DataType[attributeCount];
+		final int[] vertexSizes = new int[attributeCount];
+		final float[] attributeEpsilons = new float[attributeCount];
+		int vertexCount = -1;
+		for (int i = 0; i < attributeCount; i++) {
+			final VertexAttribute attribute = data.getAttribute(i);
+			if (attribute == null) {
+				throw new IllegalArgumentException("Attribute indices must be contiguous from 0, missing index " + i);
+			}
+			types[i] = attribute.getType();
+			vertexSizes[i] = attribute.getSize() * types[i].getByteSize();
+			sources[i] = attribute.getData();
+			final int count = sources[i].limit() / vertexSizes[i];
+			if (vertexCount == -1) {
+				vertexCount = count;
+			} else if (vertexCount != count) {
+				throw new IllegalArgumentException("Attribute at index " + i + " has " + count + " vertices, expected " + vertexCount);
+			}
+			if (epsilons != null && epsilons.containsKey(i) && (types[i] == DataType.FLOAT || types[i] == DataType.DOUBLE)) {
+				final float epsilon = epsilons.get(i);
+				if (!(epsilon >= 0)) {
+					throw new IllegalArgumentException("Epsilon must be positive or zero, got " + epsilon);
+				}
+				attributeEpsilons[i] = epsilon;
+			}
+		}
+		if (vertexCount <= 0) {
+			return 0;
+		}
+		final Vertices vertices = new Vertices(sources, types, vertexSizes, attributeEpsilons);
+		// Find the first occurrence of each vertex, and assign the new indices in order
+		final int[] table = new int[Integer.highestOneBit(Math.max(vertexCount, 2) - 1) << 2];
+		Arrays.fill(table, EMPTY);
+		final int mask = table.length - 1;
+		final int[] remap = new int[vertexCount];
+		final int[] unique = new int[vertexCount];
+		int uniqueCount = 0;
+		for (int v = 0; v < vertexCount; v++) {
+			int slot = (int) vertices.hash(v) & mask;
+			while (true) {
+				final int entry = table[slot];
+				if (entry == EMPTY) {
+					table[slot] = v;
+					remap[v] = uniqueCount;
+					unique[uniqueCount++] = v;
+					break;
+				}
+				if (vertices.equal(entry, v)) {
+					remap[v] = remap[entry];
+					break;
+				}
+				// Linear probing
+				slot = slot + 1 & mask;
+			}
+		}
+		if (uniqueCount == vertexCount) {
+			return vertexCount;
+		}
+		// Rewrite the indices, after checking them so the data isn't left half modified
+		final TIntList indices = data.getIndices();
+		for (int i = 0; i < indices.size(); i++) {
+			final int index = indices.get(i);
+			if (index < 0 || index >= vertexCount) {
+				throw new IllegalArgumentException("Index " + index + " at position " + i + " references a missing vertex");
+			}
+		}
+		for (int i = 0; i < indices.size(); i++) {
+			indices.set(i, remap[indices.get(i)]);
+		}
+		// Compact the attributes, keeping the first occurrences
+		for (int i = 0; i < attributeCount; i++) {
+			data.getAttribute(i).transferData(VertexUtil.gather(sources[i], vertexSizes[i], unique, uniqueCount));
+		}
+		return uniqueCount;
+	}
+
+	private static class Vertices {
+		private final ByteBuffer[] sources;
+		private final DataType[] types;
+		private final int[] vertexSizes;
+		private final float[] epsilons;
+
+		private Vertices(ByteBuffer[] sources, DataType[] types, int[] vertexSizes, float[] epsilons) {
+			this.sources = sources;
+			this.types = types;
+			this.vertexSizes = vertexSizes;
+			this.epsilons = epsilons;
+		}
+
+		private long hash(int vertex) {
+			long hash = 0;
+			for (int i = 0; i < sources.length; i++) {
+				final ByteBuffer source = sources[i];
+				final int start = vertex * vertexSizes[i];
+				final int end = start + vertexSizes[i];
+				if (epsilons[i] > 0) {
+					final int step = types[i].getByteSize();
+					for (int p = start; p < end; p += step) {
+						hash = hash * 31 + round(source, p, i);
+					}
+				} else {
+					for (int p = start; p < end; p++) {
+						hash = hash * 31 + source.get(p);
+					}
+				}
+			}
+			return VertexUtil.mix(hash);
+		}
+
+		private boolean equal(int first, int second) {
+			for (int i = 0; i < sources.length; i++) {
+				final ByteBuffer source = sources[i];
+				final int vertexSize = vertexSizes[i];
+				final int firstStart = first * vertexSize;
+				final int secondStart = second * vertexSize;
+				if (epsilons[i] > 0) {
+					final int step = types[i].getByteSize();
+					for (int p = 0; p < vertexSize; p += step) {
+						if (round(source, firstStart + p, i) != round(source, secondStart + p, i)) {
+							return false;
+						}
+					}
+				} else {
+					for (int p = 0; p < vertexSize; p++) {
+						if (source.get(firstStart + p) != source.get(secondStart + p)) {
+							return false;
+						}
+					}
+				}
+			}
+			return true;
+		}
+
+		private long round(ByteBuffer source, int position, int attribute) {
+			final double value = types[attribute] == DataType.FLOAT ? source.getFloat(position) : source.getDouble(position);
+			return Math.round(value / epsilons[attribute]);
+		}
+	}
+}
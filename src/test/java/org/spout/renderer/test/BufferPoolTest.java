@@ -0,0 +1,158 @@
+/*
+ * This file is part of Caustic.
+ *
+ * Copyright (c) 2013 Spout LLC <http://www.spout.org/>
+ * Caustic is licensed under the Spout License Version 1.
+ *
+ * Caustic is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the Free
+ * Software Foundation, either version 3 of the License, or (at your option)
+ * any later version.
+ *
+ * In addition, 180 days after any changes are published, you can use the
+ * software, incorporating those changes, under the terms of the MIT license,
+ * as described in the Spout License Version 1.
+ *
+ * Caustic is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE.  See the GNU Lesser General Public License for
+ * more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License,
+ * the MIT license and the Spout License Version 1 along with this program.
+ * If not, see <http://www.gnu.org/licenses/> for the GNU Lesser General Public
+ * License and see <http://spout.in/licensev1> for the full license, including
+ * the MIT license.
+ */
+package org.spout.renderer.test;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import org.spout.renderer.util.BufferPool;
+import org.spout.renderer.util.ScratchArena;
+
+public class BufferPoolTest {
+	@Test
+	public void testSizeClasses() {
+		final BufferPool pool = new BufferPool();
+		final ByteBuffer small = pool.acquire(1);
+		Assert.assertEquals(BufferPool.MIN_CLASS_SIZE, small.capacity());
+		Assert.assertEquals(1, small.limit());
+		Assert.assertEquals(0, small.position());
+		Assert.assertTrue(small.isDirect());
+		Assert.assertEquals(ByteOrder.nativeOrder(), small.order());
+		Assert.assertEquals(128, pool.acquire(65).capacity());
+		Assert.assertEquals(4096, pool.acquire(4096).capacity());
+		final int large = BufferPool.MAX_CLASS_SIZE + 1;
+		Assert.assertEquals(large, pool.acquire(large).capacity());
+	}
+
+	@Test
+	public void testReuse() {
+		final BufferPool pool = new BufferPool();
+		final ByteBuffer first = pool.acquire(100);
+		Assert.assertEquals(0, pool.getHits());
+		Assert.assertEquals(1, pool.getMisses());
+		// The rest of the slab is shared, so this is a hit
+		final ByteBuffer second = pool.acquire(100);
+		Assert.assertNotSame(first, second);
+		Assert.assertEquals(1, pool.getHits());
+		// Released buffers come back on the same thread first
+		pool.release(first);
+		Assert.assertSame(first, pool.acquire(120));
+		Assert.assertEquals(2, pool.getHits());
+		Assert.assertEquals(1, pool.getMisses());
+		// Pooled slices must not overlap
+		first.put(0, (byte) 1);
+		second.put(0, (byte) 2);
+		Assert.assertEquals(1, first.get(0));
+	}
+
+	@Test
+	public void testSharedBetweenThreads() throws InterruptedException {
+		final BufferPool pool = new BufferPool();
+		final ByteBuffer[] buffers = new ByteBuffer[5];
+		for (int i = 0; i < buffers.length; i++) {
+			buffers[i] = pool.acquire(BufferPool.MAX_CLASS_SIZE);
+		}
+		// The local cache of this thread overflows into the shared pool
+		for (ByteBuffer buffer : buffers) {
+			pool.release(buffer);
+		}
+		final AtomicReference<ByteBuffer> acquired = new AtomicReference<>();
+		final Thread thread = new Thread() {
+			@Override
+			public void run() {
+				acquired.set(pool.acquire(BufferPool.MAX_CLASS_SIZE));
+			}
+		};
+		thread.start();
+		thread.join();
+		Assert.assertSame(buffers[4], acquired.get());
+		Assert.assertEquals(1, pool.getHits());
+	}
+
+	@Test
+	public void testStatistics() {
+		final BufferPool pool = new BufferPool();
+		final ByteBuffer a = pool.acquire(1000);
+		final ByteBuffer b = pool.acquire(3000);
+		Assert.assertEquals(1024 + 4096, pool.getBytesOutstanding());
+		pool.release(b);
+		Assert.assertEquals(1024, pool.getBytesOutstanding());
+		Assert.assertEquals(1024 + 4096, pool.getHighWaterMark());
+		pool.resetStatistics();
+		Assert.assertEquals(0, pool.getHits());
+		Assert.assertEquals(0, pool.getMisses());
+		Assert.assertEquals(1024, pool.getHighWaterMark());
+		pool.release(a);
+		Assert.assertEquals(0, pool.getBytesOutstanding());
+		final ByteBuffer large = pool.acquire(BufferPool.MAX_CLASS_SIZE * 2);
+		Assert.assertEquals(BufferPool.MAX_CLASS_SIZE * 2, pool.getBytesOutstanding());
+		pool.release(large);
+		Assert.assertEquals(0, pool.getBytesOutstanding());
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testReleaseForeignBuffer() {
+		new BufferPool().release(ByteBuffer.allocateDirect(100));
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testReleaseHeapBuffer() {
+		new BufferPool().release(ByteBuffer.allocate(128));
+	}
+
+	@Test
+	public void testScratchArena() {
+		final BufferPool pool = new BufferPool();
+		final ScratchArena arena = new ScratchArena(pool);
+		final ByteBuffer a = arena.allocate(3);
+		final ByteBuffer b = arena.allocate(16);
+		Assert.assertEquals(3, a.capacity());
+		Assert.assertEquals(16, b.remaining());
+		Assert.assertEquals(ByteOrder.nativeOrder(), b.order());
+		Assert.assertEquals(24, arena.getBytesUsed());
+		Assert.assertEquals(4, arena.allocateFloat(4).remaining());
+		// Overflow into a new block, the old one stays valid until the reset
+		a.put(0, (byte) 7);
+		final ByteBuffer big = arena.allocate(10000);
+		Assert.assertEquals(10000, big.capacity());
+		Assert.assertEquals(7, a.get(0));
+		final long outstanding = pool.getBytesOutstanding();
+		arena.reset();
+		Assert.assertEquals(0, arena.getBytesUsed());
+		Assert.assertTrue(pool.getBytesOutstanding() < outstanding);
+		// The larger block is kept, so no new acquisition is needed
+		final long misses = pool.getMisses();
+		final long hits = pool.getHits();
+		arena.allocate(10000);
+		Assert.assertEquals(misses, pool.getMisses());
+		Assert.assertEquals(hits, pool.getHits());
+	}
+}
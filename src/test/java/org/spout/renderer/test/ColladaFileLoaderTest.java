@@ -0,0 +1,152 @@
+/*
+ * This file is part of Caustic.
+ *
+ * Copyright (c) 2013 Spout LLC <http://www.spout.org/>
+ * Caustic is licensed under the Spout License Version 1.
+ *
+ * Caustic is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the Free
+ * Software Foundation, either version 3 of the License, or (at your option)
+ * any later version.
+ *
+ * In addition, 180 days after any changes are published, you can use the
+ * software, incorporating those changes, under the terms of the MIT license,
+ * as described in the Spout License Version 1.
+ *
+ * Caustic is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE.  See the GNU Lesser General Public License for
+ * more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License,
+ * the MIT license and the Spout License Version 1 along with this program.
+ * If not, see <http://www.gnu.org/licenses/> for the GNU Lesser General Public
+ * License and see <http://spout.in/licensev1> for the full license, including
+ * the MIT license.
+ */
+package org.spout.renderer.test;
+
+import java.io.ByteArrayInputStream;
+import java.nio.FloatBuffer;
+import java.util.List;
+
+import gnu.trove.list.TFloatList;
+import gnu.trove.list.TIntList;
+import gnu.trove.list.array.TFloatArrayList;
+import gnu.trove.list.array.TIntArrayList;
+import org.junit.Assert;
+import org.junit.Test;
+
+import org.spout.math.vector.Vector3f;
+import org.spout.renderer.data.VertexData;
+import org.spout.renderer.util.ColladaFileLoader;
+import org.spout.renderer.util.ColladaFileLoader.Geometry;
+import org.spout.renderer.util.ColladaFileLoader.MalformedColladaFileException;
+
+public class ColladaFileLoaderTest {
+	@Test
+	public void testMatchesDOMLoader() {
+		final int size = 12;
+		final byte[] dae = TestColladaFiles.createGrid(size, 1, false);
+		final TFloatList expectedPositions = new TFloatArrayList();
+		final TFloatList expectedTextureCoords = new TFloatArrayList();
+		final TFloatList expectedNormals = new TFloatArrayList();
+		final TIntList expectedIndices = new TIntArrayList();
+		final Vector3f sizes = ColladaFileLoader.loadMesh(new ByteArrayInputStream(dae), expectedPositions, expectedTextureCoords, expectedNormals, expectedIndices);
+		Assert.assertEquals(new Vector3f(3, 2, 3), sizes);
+
+		final List<Geometry> geometries = ColladaFileLoader.loadGeometries(new ByteArrayInputStream(dae));
+		Assert.assertEquals(1, geometries.size());
+		final Geometry geometry = geometries.get(0);
+		Assert.assertEquals("grid0", geometry.getID());
+		Assert.assertEquals("Grid0", geometry.getName());
+		final VertexData data = geometry.getVertexData();
+		Assert.assertEquals("positions", data.getAttribute(0).getName());
+		Assert.assertEquals("normals", data.getAttribute(1).getName());
+		Assert.assertEquals("textureCoords", data.getAttribute(2).getName());
+		Assert.assertEquals(3, data.getAttribute(0).getSize());
+		Assert.assertEquals(3, data.getAttribute(1).getSize());
+		Assert.assertEquals(2, data.getAttribute(2).getSize());
+		// Same triangles, compared corner by corner
+		final TIntList indices = data.getIndices();
+		Assert.assertEquals(expectedIndices.size(), indices.size());
+		final FloatBuffer positions = data.getAttribute("positions").getData().asFloatBuffer();
+		final FloatBuffer normals = data.getAttribute("normals").getData().asFloatBuffer();
+		final FloatBuffer textureCoords = data.getAttribute("textureCoords").getData().asFloatBuffer();
+		for (int i = 0; i < indices.size(); i++) {
+			final int expected = expectedIndices.get(i);
+			final int actual = indices.get(i);
+			for (int c = 0; c < 3; c++) {
+				Assert.assertEquals(expectedPositions.get(expected * 3 + c), positions.get(actual * 3 + c), 0);
+				Assert.assertEquals(expectedNormals.get(expected * 3 + c), normals.get(actual * 3 + c), 0);
+			}
+			for (int c = 0; c < 2; c++) {
+				Assert.assertEquals(expectedTextureCoords.get(expected * 2 + c), textureCoords.get(actual * 2 + c), 0);
+			}
+		}
+		// Each position has a single normal and texture coord, so no vertex is duplicated
+		Assert.assertEquals(expectedPositions.size(), positions.remaining());
+		Assert.assertEquals(1, geometry.getRanges().size());
+		Assert.assertEquals("material0", geometry.getRanges().get(0).getMaterial());
+		Assert.assertEquals(0, geometry.getRanges().get(0).getFirstIndex());
+		Assert.assertEquals(indices.size(), geometry.getRanges().get(0).getIndicesCount());
+	}
+
+	@Test
+	public void testPolylist() {
+		final int size = 5;
+		final VertexData triangles = ColladaFileLoader.loadGeometries(new ByteArrayInputStream(TestColladaFiles.createGrid(size, 1, false))).get(0).getVertexData();
+		final VertexData polygons = ColladaFileLoader.loadGeometries(new ByteArrayInputStream(TestColladaFiles.createGrid(size, 1, true))).get(0).getVertexData();
+		// The quads are split along the same diagonal as the triangles
+		Assert.assertArrayEquals(triangles.getIndices().toArray(), polygons.getIndices().toArray());
+		Assert.assertEquals(triangles.getAttribute("positions").getData(), polygons.getAttribute("positions").getData());
+	}
+
+	@Test
+	public void testMultipleGeometries() {
+		final List<Geometry> geometries = ColladaFileLoader.loadGeometries(new ByteArrayInputStream(TestColladaFiles.createGrid(2, 3, false)));
+		Assert.assertEquals(3, geometries.size());
+		for (int i = 0; i < geometries.size(); i++) {
+			final Geometry geometry = geometries.get(i);
+			Assert.assertEquals("grid" + i, geometry.getID());
+			Assert.assertEquals("material" + i, geometry.getRanges().get(0).getMaterial());
+			Assert.assertEquals(2 * 2 * 6, geometry.getVertexData().getIndicesCount());
+			Assert.assertEquals(3 * 3, geometry.getVertexData().getAttribute("positions").getData().remaining() / 4 / 3);
+		}
+		// The geometries are loaded from their own sources
+		final FloatBuffer first = geometries.get(0).getVertexData().getAttribute("positions").getData().asFloatBuffer();
+		final FloatBuffer second = geometries.get(1).getVertexData().getAttribute("positions").getData().asFloatBuffer();
+		Assert.assertEquals(0, first.get(2), 0);
+		Assert.assertEquals(0.01f, second.get(2), 0);
+	}
+
+	@Test
+	public void testMultiplePrimitives() {
+		final String dae = "<COLLADA><library_geometries><geometry id=\"quad\"><mesh>"
+				+ "<source id=\"p\"><float_array id=\"pa\" count=\"12\">0 0 0\n1 0 0\n1 1 0\n0 1 0</float_array>"
+				+ "<technique_common><accessor source=\"#pa\" count=\"4\" stride=\"3\"/></technique_common></source>"
+				+ "<vertices id=\"v\"><input semantic=\"POSITION\" source=\"#p\"/></vertices>"
+				+ "<triangles material=\"a\" count=\"1\"><input semantic=\"VERTEX\" source=\"#v\" offset=\"0\"/><p>0 1 2</p></triangles>"
+				+ "<polylist material=\"b\" count=\"1\"><input semantic=\"VERTEX\" source=\"#v\" offset=\"0\"/><vcount>4</vcount><p>0 1 2 3</p></polylist>"
+				+ "</mesh></geometry></library_geometries></COLLADA>";
+		final Geometry geometry = ColladaFileLoader.loadGeometries(new ByteArrayInputStream(dae.getBytes())).get(0);
+		final VertexData data = geometry.getVertexData();
+		Assert.assertEquals(1, data.getAttributeCount());
+		Assert.assertArrayEquals(new int[]{0, 1, 2, 0, 1, 2, 0, 2, 3}, data.getIndices().toArray());
+		Assert.assertEquals(2, geometry.getRanges().size());
+		Assert.assertEquals("b", geometry.getRanges().get(1).getMaterial());
+		Assert.assertEquals(3, geometry.getRanges().get(1).getFirstIndex());
+		Assert.assertEquals(6, geometry.getRanges().get(1).getIndicesCount());
+	}
+
+	@Test(expected = MalformedColladaFileException.class)
+	public void testOutOfBoundsIndex() {
+		final String dae = "<COLLADA><geometry><mesh>"
+				+ "<source id=\"p\"><float_array id=\"pa\" count=\"9\">0 0 0 1 0 0 1 1 0</float_array>"
+				+ "<technique_common><accessor source=\"#pa\" count=\"3\" stride=\"3\"/></technique_common></source>"
+				+ "<vertices id=\"v\"><input semantic=\"POSITION\" source=\"#p\"/></vertices>"
+				+ "<triangles count=\"1\"><input semantic=\"VERTEX\" source=\"#v\" offset=\"0\"/><p>0 1 3</p></triangles>"
+				+ "</mesh></geometry></COLLADA>";
+		ColladaFileLoader.loadGeometries(new ByteArrayInputStream(dae.getBytes()));
+	}
+}
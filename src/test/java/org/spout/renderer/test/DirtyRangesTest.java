@@ -0,0 +1,107 @@
+/*
+ * This file is part of Caustic.
+ *
+ * Copyright (c) 2013 Spout LLC <http://www.spout.org/>
+ * Caustic is licensed under the Spout License Version 1.
+ *
+ * Caustic is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the Free
+ * Software Foundation, either version 3 of the License, or (at your option)
+ * any later version.
+ *
+ * In addition, 180 days after any changes are published, you can use the
+ * software, incorporating those changes, under the terms of the MIT license,
+ * as described in the Spout License Version 1.
+ *
+ * Caustic is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE.  See the GNU Lesser General Public License for
+ * more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License,
+ * the MIT license and the Spout License Version 1 along with this program.
+ * If not, see <http://www.gnu.org/licenses/> for the GNU Lesser General Public
+ * License and see <http://spout.in/licensev1> for the full license, including
+ * the MIT license.
+ */
+package org.spout.renderer.test;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import org.spout.renderer.util.DirtyRanges;
+
+public class DirtyRangesTest {
+	@Test
+	public void testDisjoint() {
+		final DirtyRanges ranges = new DirtyRanges();
+		Assert.assertTrue(ranges.isEmpty());
+		ranges.add(20, 30);
+		ranges.add(0, 5);
+		ranges.add(10, 15);
+		ranges.add(7, 7);
+		assertRanges(ranges, 0, 5, 10, 15, 20, 30);
+		Assert.assertEquals(20, ranges.getTotalLength());
+	}
+
+	@Test
+	public void testCoalesce() {
+		final DirtyRanges ranges = new DirtyRanges();
+		ranges.add(0, 5);
+		ranges.add(10, 15);
+		ranges.add(20, 30);
+		// Adjacent ranges merge
+		ranges.add(5, 6);
+		assertRanges(ranges, 0, 6, 10, 15, 20, 30);
+		// A range overlapping several merges them all
+		ranges.add(12, 22);
+		assertRanges(ranges, 0, 6, 10, 30);
+		// A contained range changes nothing
+		ranges.add(11, 13);
+		assertRanges(ranges, 0, 6, 10, 30);
+		// A range containing everything replaces it
+		ranges.add(0, 40);
+		assertRanges(ranges, 0, 40);
+		ranges.clear();
+		Assert.assertTrue(ranges.isEmpty());
+	}
+
+	@Test
+	public void testMergeGap() {
+		final DirtyRanges ranges = new DirtyRanges(4);
+		ranges.add(0, 10);
+		ranges.add(14, 20);
+		ranges.add(30, 40);
+		assertRanges(ranges, 0, 20, 30, 40);
+		ranges.add(23, 27);
+		assertRanges(ranges, 0, 40);
+	}
+
+	@Test
+	public void testMany() {
+		final DirtyRanges ranges = new DirtyRanges();
+		// Every other slot, inserted backwards to exercise the insertion at the front
+		for (int i = 99; i >= 0; i--) {
+			ranges.add(i * 2, i * 2 + 1);
+		}
+		Assert.assertEquals(100, ranges.getCount());
+		// Fill the gaps
+		for (int i = 0; i < 100; i++) {
+			ranges.add(i * 2 + 1, i * 2 + 2);
+		}
+		assertRanges(ranges, 0, 200);
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testInvalidRange() {
+		new DirtyRanges().add(5, 4);
+	}
+
+	private static void assertRanges(DirtyRanges ranges, int... bounds) {
+		Assert.assertEquals(bounds.length / 2, ranges.getCount());
+		for (int i = 0; i < bounds.length / 2; i++) {
+			Assert.assertEquals(bounds[i * 2], ranges.getStart(i));
+			Assert.assertEquals(bounds[i * 2 + 1], ranges.getEnd(i));
+		}
+	}
+}
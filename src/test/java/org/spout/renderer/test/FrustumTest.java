@@ -0,0 +1,128 @@
+/*
+ * This file is part of Caustic.
+ *
+ * Copyright (c) 2013 Spout LLC <http://www.spout.org/>
+ * Caustic is licensed under the Spout License Version 1.
+ *
+ * Caustic is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the Free
+ * Software Foundation, either version 3 of the License, or (at your option)
+ * any later version.
+ *
+ * In addition, 180 days after any changes are published, you can use the
+ * software, incorporating those changes, under the terms of the MIT license,
+ * as described in the Spout License Version 1.
+ *
+ * Caustic is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE.  See the GNU Lesser General Public License for
+ * more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License,
+ * the MIT license and the Spout License Version 1 along with this program.
+ * If not, see <http://www.gnu.org/licenses/> for the GNU Lesser General Public
+ * License and see <http://spout.in/licensev1> for the full license, including
+ * the MIT license.
+ */
+package org.spout.renderer.test;
+
+import gnu.trove.list.array.TFloatArrayList;
+import org.junit.Assert;
+import org.junit.Test;
+
+import org.spout.math.imaginary.Quaternionf;
+import org.spout.math.matrix.Matrix4f;
+import org.spout.math.vector.Vector3f;
+import org.spout.renderer.Camera;
+import org.spout.renderer.Frustum;
+import org.spout.renderer.data.Bounds;
+import org.spout.renderer.data.VertexAttribute;
+import org.spout.renderer.data.VertexAttribute.DataType;
+import org.spout.renderer.data.VertexData;
+
+public class FrustumTest {
+	private static final float EPSILON = 1e-4f;
+
+	@Test
+	public void testBoundsFromVertexData() {
+		final VertexData data = new VertexData();
+		final float[] vertices = {-1, 0, 2, 3, -2, 4, 1, 2, 0};
+		final VertexAttribute positions = new VertexAttribute("positions", DataType.FLOAT, 3);
+		positions.setData(new TFloatArrayList(vertices));
+		data.addAttribute(0, positions);
+		final Bounds bounds = Bounds.fromVertexData(data);
+		assertEquals(new Vector3f(-1, -2, 0), bounds.getMin());
+		assertEquals(new Vector3f(3, 2, 4), bounds.getMax());
+		assertEquals(new Vector3f(1, 0, 2), bounds.getCenter());
+		// Every vertex is in the sphere
+		for (int i = 0; i < 9; i += 3) {
+			final Vector3f vertex = new Vector3f(vertices[i], vertices[i + 1], vertices[i + 2]);
+			Assert.assertTrue(vertex.distance(bounds.getCenter()) <= bounds.getRadius() + EPSILON);
+		}
+		// No positions
+		Assert.assertNull(Bounds.fromVertexData(new VertexData()));
+	}
+
+	@Test
+	public void testBoundsTransform() {
+		final Bounds bounds = new Bounds(new Vector3f(-1, -1, -1), new Vector3f(1, 1, 1));
+		final Matrix4f translation = Matrix4f.createTranslation(new Vector3f(5, 0, -3));
+		final Bounds translated = bounds.transform(translation);
+		assertEquals(new Vector3f(4, -1, -4), translated.getMin());
+		assertEquals(new Vector3f(6, 1, -2), translated.getMax());
+		assertEquals(new Vector3f(5, 0, -3), translated.getCenter());
+		Assert.assertEquals(bounds.getRadius(), translated.getRadius(), EPSILON);
+		// Transforming in place gives the same result
+		final Bounds destination = new Bounds();
+		Assert.assertSame(destination, bounds.transform(translation, destination));
+		assertEquals(translated.getMin(), destination.getMin());
+		assertEquals(translated.getMax(), destination.getMax());
+		assertEquals(translated.getCenter(), destination.getCenter());
+		// A rotated box still contains the rotated corners, and the radius grows with the scale
+		final Matrix4f rotation = Matrix4f.createRotation(Quaternionf.fromAngleDegAxis(45, 0, 1, 0));
+		final Bounds rotated = bounds.transform(rotation);
+		Assert.assertEquals(Math.sqrt(2), rotated.getMax().getX(), EPSILON);
+		Assert.assertEquals(-Math.sqrt(2), rotated.getMin().getZ(), EPSILON);
+		final Bounds scaled = bounds.transform(Matrix4f.createScaling(new Vector3f(1, 3, 2).toVector4(1)));
+		Assert.assertEquals(bounds.getRadius() * 3, scaled.getRadius(), EPSILON);
+		assertEquals(new Vector3f(1, 3, 2), scaled.getMax());
+	}
+
+	@Test
+	public void testFrustum() {
+		final Camera camera = Camera.createPerspective(90, 100, 100, 1, 100);
+		final Frustum frustum = camera.getFrustum();
+		// The camera looks down the negative Z axis
+		Assert.assertTrue(frustum.contains(new Vector3f(0, 0, -10)));
+		Assert.assertTrue(frustum.contains(new Vector3f(9, -9, -10)));
+		Assert.assertFalse(frustum.contains(new Vector3f(11, 0, -10)));
+		Assert.assertFalse(frustum.contains(new Vector3f(0, 0, 10)));
+		Assert.assertFalse(frustum.contains(new Vector3f(0, 0, -0.5f)));
+		Assert.assertFalse(frustum.contains(new Vector3f(0, 0, -101)));
+		final Vector3f one = new Vector3f(1, 1, 1);
+		// Inside, crossing a plane, and outside
+		Assert.assertTrue(frustum.intersects(box(new Vector3f(0, 0, -10), one)));
+		Assert.assertTrue(frustum.intersects(box(new Vector3f(10.5f, 0, -10), one)));
+		Assert.assertFalse(frustum.intersects(box(new Vector3f(13, 0, -10), one)));
+		Assert.assertFalse(frustum.intersects(box(new Vector3f(0, 0, 10), one)));
+		// The sphere of this long box crosses the right plane, but the box itself is outside
+		Assert.assertFalse(frustum.intersects(box(new Vector3f(11.5f, 0, -10), new Vector3f(0.5f, 50, 0.5f))));
+		// Moving and turning the camera updates the planes
+		camera.setPosition(new Vector3f(0, 0, 20));
+		Assert.assertFalse(camera.getFrustum().contains(new Vector3f(0, 0, -90)));
+		Assert.assertTrue(camera.getFrustum().contains(new Vector3f(0, 0, 0)));
+		camera.setRotation(Quaternionf.fromAngleDegAxis(180, 0, 1, 0));
+		Assert.assertFalse(camera.getFrustum().contains(new Vector3f(0, 0, 0)));
+		Assert.assertTrue(camera.getFrustum().contains(new Vector3f(0, 0, 40)));
+	}
+
+	private static Bounds box(Vector3f center, Vector3f halfSize) {
+		return new Bounds(center.sub(halfSize), center.add(halfSize));
+	}
+
+	private static void assertEquals(Vector3f expected, Vector3f actual) {
+		Assert.assertEquals(expected.getX(), actual.getX(), EPSILON);
+		Assert.assertEquals(expected.getY(), actual.getY(), EPSILON);
+		Assert.assertEquals(expected.getZ(), actual.getZ(), EPSILON);
+	}
+}
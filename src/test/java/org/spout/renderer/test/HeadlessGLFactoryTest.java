@@ -0,0 +1,430 @@
+/*
+ * This file is part of Caustic.
+ *
+ * Copyright (c) 2013 Spout LLC <http://www.spout.org/>
+ * Caustic is licensed under the Spout License Version 1.
+ *
+ * Caustic is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the Free
+ * Software Foundation, either version 3 of the License, or (at your option)
+ * any later version.
+ *
+ * In addition, 180 days after any changes are published, you can use the
+ * software, incorporating those changes, under the terms of the MIT license,
+ * as described in the Spout License Version 1.
+ *
+ * Caustic is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE.  See the GNU Lesser General Public License for
+ * more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License,
+ * the MIT license and the Spout License Version 1 along with this program.
+ * If not, see <http://www.gnu.org/licenses/> for the GNU Lesser General Public
+ * License and see <http://spout.in/licensev1> for the full license, including
+ * the MIT license.
+ */
+package org.spout.renderer.test;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+
+import com.sun.management.ThreadMXBean;
+import gnu.trove.list.array.TFloatArrayList;
+import org.junit.Assert;
+import org.junit.Assume;
+import org.junit.Test;
+
+import org.spout.math.vector.Vector3f;
+import org.spout.renderer.Camera;
+import org.spout.renderer.GLImplementation;
+import org.spout.renderer.GLVersioned.GLVersion;
+import org.spout.renderer.Material;
+import org.spout.renderer.Pipeline;
+import org.spout.renderer.Pipeline.PipelineBuilder;
+import org.spout.renderer.data.Color;
+import org.spout.renderer.data.Uniform.ColorUniform;
+import org.spout.renderer.data.Uniform.FloatUniform;
+import org.spout.renderer.data.Uniform.Vector3Uniform;
+import org.spout.renderer.data.VertexAttribute;
+import org.spout.renderer.data.VertexAttribute.DataType;
+import org.spout.renderer.data.VertexData;
+import org.spout.renderer.gl.Context;
+import org.spout.renderer.gl.GLFactory;
+import org.spout.renderer.gl.Program;
+import org.spout.renderer.gl.Shader;
+import org.spout.renderer.gl.Texture;
+import org.spout.renderer.gl.UniformBuffer;
+import org.spout.renderer.gl.VertexArray;
+import org.spout.renderer.headless.CommandLog;
+import org.spout.renderer.headless.CommandLog.Command;
+import org.spout.renderer.headless.CommandLog.Target;
+import org.spout.renderer.headless.HeadlessGLFactory;
+import org.spout.renderer.model.Model;
+
+public class HeadlessGLFactoryTest {
+	private static final String VERTEX_SOURCE = "$shader_type: vertex\n"
+			+ "uniform mat4 modelMatrix;\n"
+			+ "uniform mat4 viewMatrix, projectionMatrix;\n"
+			+ "uniform mat4 normalMatrix;\n"
+			+ "void main() {}\n";
+	private static final String BLOCK_VERTEX_SOURCE = "$shader_type: vertex\n"
+			+ "layout(std140) uniform Context {\n"
+			+ "	mat4 projectionMatrix;\n"
+			+ "	mat4 viewMatrix;\n"
+			+ "	float time;\n"
+			+ "};\n"
+			+ "uniform mat4 modelMatrix;\n"
+			+ "uniform mat4 normalMatrix;\n"
+			+ "void main() {}\n";
+	private static final String FRAGMENT_SOURCE = "$shader_type: fragment\n"
+			+ "$texture_layout: diffuse = 0\n"
+			+ "uniform sampler2D diffuse;\n"
+			+ "uniform lowp vec3 modelColor;\n"
+			+ "void main() {}\n";
+
+	@Test
+	public void testRegistered() {
+		Assert.assertTrue(GLImplementation.get(GLVersion.HEADLESS) instanceof HeadlessGLFactory);
+	}
+
+	@Test
+	public void testCreate() {
+		final HeadlessGLFactory factory = new HeadlessGLFactory();
+		final CommandLog log = factory.getCommandLog();
+		final Program program = createProgram(factory);
+		Assert.assertEquals(new HashSet<>(Arrays.asList("modelMatrix", "viewMatrix", "projectionMatrix", "normalMatrix", "diffuse", "modelColor")), program.getUniformNames());
+		log.clear();
+		createVertexArray(factory);
+		// Indices as bytes, then the 9 floats of the positions
+		Assert.assertEquals(3 + 9 * 4, log.getUploadedBytes());
+		Assert.assertEquals(2, log.count(Command.BUFFER_DATA));
+		Assert.assertEquals(Target.ELEMENT_ARRAY_BUFFER, log.getTarget(3));
+		Assert.assertEquals(3, log.getArgument(4));
+		Assert.assertEquals(log.getObjectID(2), log.getObjectID(4));
+	}
+
+	@Test
+	public void testPipeline() {
+		final HeadlessGLFactory factory = new HeadlessGLFactory();
+		final CommandLog log = factory.getCommandLog();
+		final Context context = factory.createContext();
+		context.setWindowSize(640, 480);
+		context.create();
+		final Program program = createProgram(factory);
+		final Texture texture = factory.createTexture();
+		texture.setImageData(null, 4, 4);
+		texture.create();
+		final Material material = new Material(program);
+		material.addTexture(0, texture);
+		final VertexArray vertexArray = createVertexArray(factory);
+		final List<Model> models = new ArrayList<>();
+		for (int i = 0; i < 3; i++) {
+			final Model model = new Model(vertexArray, material);
+			model.getUniforms().add(new Vector3Uniform("modelColor", new Vector3f(1, 0, 0)));
+			model.getUniforms().add(new Vector3Uniform("missing", Vector3f.ZERO));
+			models.add(model);
+		}
+		final Pipeline pipeline = new PipelineBuilder()
+				.useClearColor(Color.DARK_GRAY)
+				.clearBuffer()
+				.useCamera(Camera.createPerspective(60, 640, 480, 0.1f, 100))
+				.renderModels(models)
+				.updateDisplay()
+				.build();
+		log.clear();
+		pipeline.run(context);
+		Assert.assertEquals(3, log.getDrawCount());
+		Assert.assertEquals(1, log.count(Command.CLEAR));
+		Assert.assertEquals(1, log.count(Command.UPDATE_DISPLAY));
+		// Camera matrices and the sampler once, then model, normal matrix and color once since the three models share them, the missing uniform is ignored
+		Assert.assertEquals(3 + 3, log.getUniformCount());
+		Assert.assertEquals(0, log.getRedundantUniformCount());
+		Assert.assertEquals(2 * 3, program.getSkippedUploadCount());
+		Assert.assertEquals("diffuse", log.getUniformName(indexOf(log, Command.UNIFORM)));
+		Assert.assertEquals(0, log.getUploadedBytes());
+		// All uniforms are skipped on the second frame, the state cache skips the binds of the material left bound, the vertex array and the clear color
+		final long skipped = context.getStateCache().getSkippedCount();
+		log.clear();
+		pipeline.run(context);
+		Assert.assertEquals(3, log.getDrawCount());
+		Assert.assertEquals(0, log.getUniformCount());
+		Assert.assertEquals(0, log.getBindCount());
+		Assert.assertEquals(0, log.count(Command.SET_CLEAR_COLOR));
+		Assert.assertTrue(context.getStateCache().getSkippedCount() > skipped);
+		// Binding the material again without unbinding it is skipped
+		log.clear();
+		material.unbind();
+		material.bind();
+		material.bind();
+		Assert.assertEquals(4, log.getBindCount());
+		Assert.assertEquals(0, log.getRedundantBindCount());
+	}
+
+	@Test
+	public void testUniformBuffer() {
+		final HeadlessGLFactory factory = new HeadlessGLFactory();
+		final CommandLog log = factory.getCommandLog();
+		final Context context = factory.createContext();
+		context.setWindowSize(640, 480);
+		context.create();
+		context.getUniforms().add(new FloatUniform("time", 0));
+		final UniformBuffer buffer = factory.createUniformBuffer();
+		buffer.setBindingPoint(1);
+		buffer.create();
+		context.setUniformBuffer(buffer);
+		// The camera matrices are members of the block, so they aren't active uniforms
+		final Program program = createProgram(factory, BLOCK_VERTEX_SOURCE, FRAGMENT_SOURCE);
+		Assert.assertEquals(Collections.singleton(Context.UNIFORM_BLOCK_NAME), program.getUniformBlockNames());
+		Assert.assertEquals(-1, program.getUniformHandle("viewMatrix"));
+		final Model model = new Model(createVertexArray(factory), new Material(program));
+		final Camera camera = Camera.createPerspective(60, 640, 480, 0.1f, 100);
+		final Pipeline pipeline = new PipelineBuilder().useCamera(camera).renderModels(Arrays.asList(model)).build();
+		log.clear();
+		pipeline.run(context);
+		// Two matrices and the float, rounded up to 16 bytes
+		Assert.assertEquals(144, buffer.getSize());
+		Assert.assertEquals(1, log.count(Command.BUFFER_DATA));
+		Assert.assertEquals(144, log.getUploadedBytes());
+		Assert.assertEquals(1, log.count(Command.UNIFORM_BLOCK_BINDING));
+		Assert.assertEquals(1, log.getArgument(indexOf(log, Command.UNIFORM_BLOCK_BINDING)));
+		Assert.assertEquals(1, program.getUniformBlockBinding(Context.UNIFORM_BLOCK_NAME));
+		// Only the model and normal matrices are uploaded individually
+		Assert.assertEquals(2, log.getUniformCount());
+		// Nothing is uploaded or bound again when nothing changed
+		log.clear();
+		pipeline.run(context);
+		Assert.assertEquals(0, log.getUploadedBytes());
+		Assert.assertEquals(0, log.count(Command.UNIFORM_BLOCK_BINDING));
+		Assert.assertEquals(0, log.getBindCount());
+		Assert.assertEquals(1, buffer.getSkippedUploadCount());
+		// Only the changed bytes are uploaded
+		context.getUniforms().getFloat("time").set(1);
+		log.clear();
+		pipeline.run(context);
+		Assert.assertEquals(1, log.count(Command.BUFFER_SUB_DATA));
+		Assert.assertTrue(log.getUploadedBytes() <= 4);
+		Assert.assertEquals(0, log.getUniformCount());
+	}
+
+	@Test
+	public void testSteadyStateAllocations() {
+		final ThreadMXBean threads = (ThreadMXBean) ManagementFactory.getThreadMXBean();
+		Assume.assumeTrue(threads.isThreadAllocatedMemorySupported() && threads.isThreadAllocatedMemoryEnabled());
+		final HeadlessGLFactory factory = new HeadlessGLFactory();
+		factory.getCommandLog().setRecording(false);
+		final Context context = factory.createContext();
+		context.setWindowSize(640, 480);
+		context.create();
+		final FloatUniform time = new FloatUniform("time", 0);
+		context.getUniforms().add(time);
+		final UniformBuffer buffer = factory.createUniformBuffer();
+		buffer.create();
+		context.setUniformBuffer(buffer);
+		final Texture texture = factory.createTexture();
+		texture.setImageData(null, 4, 4);
+		texture.create();
+		// One material with the uniform block, one with individual uniforms
+		final Material blockMaterial = new Material(createProgram(factory, BLOCK_VERTEX_SOURCE, FRAGMENT_SOURCE));
+		blockMaterial.addTexture(0, texture);
+		final Material material = new Material(createProgram(factory));
+		material.getUniforms().add(new ColorUniform("modelColor", Color.DARK_GRAY));
+		final VertexArray vertexArray = createVertexArray(factory);
+		final List<Model> models = new ArrayList<>();
+		for (int i = 0; i < 10; i++) {
+			final Model model = new Model(vertexArray, i % 2 == 0 ? blockMaterial : material);
+			model.setPosition(new Vector3f(i, 0, -i));
+			model.getUniforms().add(new Vector3Uniform("modelColor", new Vector3f(i, 0, 0)));
+			models.add(model);
+		}
+		final Pipeline pipeline = new PipelineBuilder()
+				.useClearColor(Color.DARK_GRAY)
+				.clearBuffer()
+				.useCamera(Camera.createPerspective(60, 640, 480, 0.1f, 100))
+				.renderModels(models)
+				.updateDisplay()
+				.build();
+		// Let the lazy state be created and the code be compiled
+		for (int i = 0; i < 2000; i++) {
+			time.set(i);
+			pipeline.run(context);
+		}
+		final long threadID = Thread.currentThread().getId();
+		// Measuring can allocate, so subtract the cost of an empty measure
+		final long emptyStart = threads.getThreadAllocatedBytes(threadID);
+		final long emptyEnd = threads.getThreadAllocatedBytes(threadID);
+		// The JIT compiler can rarely allocate on the thread when recompiling, so a few attempts are allowed
+		long allocated = -1;
+		for (int attempt = 0; attempt < 10 && allocated != 0; attempt++) {
+			final long start = threads.getThreadAllocatedBytes(threadID);
+			for (int i = 0; i < 100; i++) {
+				// Changing uniforms are uploaded each frame
+				time.set(i);
+				pipeline.run(context);
+			}
+			final long end = threads.getThreadAllocatedBytes(threadID);
+			allocated = end - start - (emptyEnd - emptyStart);
+		}
+		Assert.assertEquals(0, allocated);
+		Assert.assertTrue(buffer.getUploadedBytes() > 0);
+	}
+
+	@Test
+	public void testUploadCaching() {
+		final HeadlessGLFactory factory = new HeadlessGLFactory();
+		final CommandLog log = factory.getCommandLog();
+		final Program program = createProgram(factory);
+		log.clear();
+		// Typed uploads are compared to the last value
+		program.setUniform("modelColor", new Vector3f(1, 0, 0));
+		program.setUniform("modelColor", new Vector3f(1, 0, 0));
+		program.setUniform("modelColor", Vector3f.ZERO);
+		program.setUniform("diffuse", 0);
+		program.setUniform("diffuse", 0);
+		Assert.assertEquals(3, program.getUploadCount());
+		Assert.assertEquals(2, program.getSkippedUploadCount());
+		Assert.assertEquals(3, log.getUniformCount());
+		program.resetUploadCounts();
+		// Uniforms are skipped until their version changes
+		final Vector3Uniform color = new Vector3Uniform("modelColor", new Vector3f(0, 1, 0));
+		program.upload(color);
+		program.upload(color);
+		color.set(new Vector3f(0, 0, 1));
+		Assert.assertEquals(1, color.getVersion());
+		program.upload(color);
+		Assert.assertEquals(2, program.getUploadCount());
+		Assert.assertEquals(1, program.getSkippedUploadCount());
+		// A typed upload in between changes the value, so the uniform must be uploaded again
+		program.setUniform("modelColor", Vector3f.ZERO);
+		program.upload(color);
+		Assert.assertEquals(4, program.getUploadCount());
+		// Missing uniforms are neither uploaded nor skipped
+		program.upload(new Vector3Uniform("missing", Vector3f.ZERO));
+		Assert.assertEquals(4, program.getUploadCount());
+		Assert.assertEquals(1, program.getSkippedUploadCount());
+		Assert.assertEquals(0, log.getRedundantUniformCount());
+	}
+
+	@Test
+	public void testUniformHandles() {
+		final HeadlessGLFactory factory = new HeadlessGLFactory();
+		final CommandLog log = factory.getCommandLog();
+		final Program program = createProgram(factory);
+		final int modelColor = program.getUniformHandle("modelColor");
+		Assert.assertNotEquals(-1, modelColor);
+		Assert.assertEquals(-1, program.getUniformHandle("missing"));
+		Assert.assertEquals("modelColor", program.getUniformName(modelColor));
+		// GL_FLOAT_VEC3, GL_FLOAT_MAT4 and GL_SAMPLER_2D
+		Assert.assertEquals(0x8B51, program.getUniformType(modelColor));
+		Assert.assertEquals(0x8B5C, program.getUniformType(program.getUniformHandle("normalMatrix")));
+		Assert.assertEquals(0x8B5E, program.getUniformType(program.getUniformHandle("diffuse")));
+		Assert.assertEquals(1, program.getUniformSize(modelColor));
+		log.clear();
+		// Handle and name uploads share the last value, the handle -1 does nothing
+		program.setUniform(modelColor, Vector3f.ONE);
+		program.setUniform("modelColor", Vector3f.ONE);
+		program.setUniform(-1, Vector3f.ONE);
+		Assert.assertEquals(1, program.getUploadCount());
+		Assert.assertEquals(1, log.getUniformCount());
+		// Uniforms resolve their handle again for each program
+		final Vector3Uniform color = new Vector3Uniform("modelColor", Vector3f.ZERO);
+		Assert.assertEquals(modelColor, color.getHandle(program));
+		// Array sizes are parsed from the declarations
+		final Program arrays = factory.createProgram();
+		for (String source : new String[]{VERTEX_SOURCE, "$shader_type: fragment\nuniform vec2 offsets[4];\nvoid main() {}\n"}) {
+			final Shader shader = factory.createShader();
+			shader.setSource(source);
+			shader.create();
+			arrays.addShader(shader);
+		}
+		arrays.create();
+		final int offsets = arrays.getUniformHandle("offsets");
+		Assert.assertEquals(0x8B50, arrays.getUniformType(offsets));
+		Assert.assertEquals(4, arrays.getUniformSize(offsets));
+		Assert.assertEquals(-1, color.getHandle(arrays));
+	}
+
+	@Test
+	public void testRecording() {
+		final HeadlessGLFactory factory = new HeadlessGLFactory();
+		final CommandLog log = factory.getCommandLog();
+		final VertexArray vertexArray = createVertexArray(factory);
+		final VertexArray other = createVertexArray(factory);
+		log.clear();
+		log.setRecording(false);
+		for (int i = 0; i < 10; i++) {
+			vertexArray.draw();
+		}
+		Assert.assertEquals(0, log.size());
+		Assert.assertEquals(10, log.getDrawCount());
+		// The vertex array is only bound for the first draw
+		Assert.assertEquals(1 + 10, log.getCommandCount());
+		log.setRecording(true);
+		other.draw();
+		Assert.assertEquals(2, log.size());
+		Assert.assertEquals(Command.BIND, log.getCommand(0));
+		Assert.assertEquals(Command.DRAW, log.getCommand(1));
+		Assert.assertEquals(3, log.getArgument(1));
+	}
+
+	@Test(expected = IllegalStateException.class)
+	public void testVersionMismatch() {
+		final HeadlessGLFactory factory = new HeadlessGLFactory();
+		final Program program = factory.createProgram();
+		final Shader shader = new Shader() {
+			@Override
+			public GLVersion getGLVersion() {
+				return GLVersion.GL20;
+			}
+		};
+		shader.setSource(VERTEX_SOURCE);
+		shader.create();
+		program.addShader(shader);
+		final Shader fragment = factory.createShader();
+		fragment.setSource(FRAGMENT_SOURCE);
+		fragment.create();
+		program.addShader(fragment);
+		program.create();
+	}
+
+	private static Program createProgram(GLFactory factory) {
+		return createProgram(factory, VERTEX_SOURCE, FRAGMENT_SOURCE);
+	}
+
+	private static Program createProgram(GLFactory factory, String... sources) {
+		final Program program = factory.createProgram();
+		for (String source : sources) {
+			final Shader shader = factory.createShader();
+			shader.setSource(source);
+			shader.create();
+			program.addShader(shader);
+		}
+		program.create();
+		return program;
+	}
+
+	private static VertexArray createVertexArray(GLFactory factory) {
+		final VertexData data = new VertexData();
+		final VertexAttribute positions = new VertexAttribute("positions", DataType.FLOAT, 3);
+		positions.setData(new TFloatArrayList(new float[]{0, 0, 0, 1, 0, 0, 0, 1, 0}));
+		data.addAttribute(0, positions);
+		data.getIndices().add(new int[]{0, 1, 2});
+		final VertexArray vertexArray = factory.createVertexArray();
+		vertexArray.setData(data);
+		vertexArray.create();
+		return vertexArray;
+	}
+
+	private static int indexOf(CommandLog log, Command command) {
+		for (int i = 0; i < log.size(); i++) {
+			if (log.getCommand(i) == command) {
+				return i;
+			}
+		}
+		return -1;
+	}
+}
@@ -0,0 +1,89 @@
+/*
+ * This file is part of Caustic.
+ *
+ * Copyright (c) 2013 Spout LLC <http://www.spout.org/>
+ * Caustic is licensed under the Spout License Version 1.
+ *
+ * Caustic is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the Free
+ * Software Foundation, either version 3 of the License, or (at your option)
+ * any later version.
+ *
+ * In addition, 180 days after any changes are published, you can use the
+ * software, incorporating those changes, under the terms of the MIT license,
+ * as described in the Spout License Version 1.
+ *
+ * Caustic is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE.  See the GNU Lesser General Public License for
+ * more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License,
+ * the MIT license and the Spout License Version 1 along with this program.
+ * If not, see <http://www.gnu.org/licenses/> for the GNU Lesser General Public
+ * License and see <http://spout.in/licensev1> for the full license, including
+ * the MIT license.
+ */
+package org.spout.renderer.test;
+
+import java.nio.FloatBuffer;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import org.spout.math.imaginary.Quaternionf;
+import org.spout.math.matrix.Matrix4f;
+import org.spout.math.vector.Vector3f;
+import org.spout.math.vector.Vector4f;
+import org.spout.renderer.util.CausticUtil;
+import org.spout.renderer.util.MatrixUtil;
+
+public class MatrixUtilTest {
+	private static final float EPSILON = 1e-4f;
+
+	@Test
+	public void testPutColumnMajor() {
+		final Matrix4f m = createTransform();
+		final FloatBuffer buffer = CausticUtil.createFloatBuffer(16);
+		MatrixUtil.putColumnMajor(m, buffer);
+		Assert.assertEquals(16, buffer.position());
+		buffer.flip();
+		final float[] values = new float[16];
+		buffer.get(values);
+		Assert.assertArrayEquals(m.toArray(true), values, 0);
+	}
+
+	@Test
+	public void testMul() {
+		final Matrix4f a = Matrix4f.createPerspective(60, 4 / 3f, 0.1f, 100);
+		final Matrix4f b = createTransform();
+		final float[] product = new float[16];
+		MatrixUtil.mul(a, b, product);
+		Assert.assertArrayEquals(a.mul(b).toArray(false), product, EPSILON);
+	}
+
+	@Test
+	public void testInvert() {
+		final Matrix4f m = createTransform();
+		final float[] inverse = new float[16];
+		MatrixUtil.invert(m.toArray(false), inverse);
+		Assert.assertArrayEquals(m.invert().toArray(false), inverse, EPSILON);
+	}
+
+	@Test
+	public void testInvertUniformScaled() {
+		final Matrix4f m = Matrix4f.createScaling(new Vector4f(3, 3, 3, 1)).rotate(Quaternionf.fromAngleDegAxis(30, 1, 2, 3)).translate(new Vector3f(4, -5, 6));
+		final float[] inverse = new float[16];
+		MatrixUtil.invertUniformScaled(m.toArray(false), inverse);
+		Assert.assertArrayEquals(m.invert().toArray(false), inverse, EPSILON);
+	}
+
+	@Test(expected = ArithmeticException.class)
+	public void testInvertSingular() {
+		MatrixUtil.invert(Matrix4f.createScaling(new Vector4f(1, 0, 1, 1)).toArray(false), new float[16]);
+	}
+
+	private static Matrix4f createTransform() {
+		return Matrix4f.createScaling(new Vector4f(2, 3, 0.5f, 1)).rotate(Quaternionf.fromAngleDegAxis(30, 1, 2, 3)).translate(new Vector3f(4, -5, 6));
+	}
+}
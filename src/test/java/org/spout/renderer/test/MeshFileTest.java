@@ -0,0 +1,130 @@
+/*
+ * This file is part of Caustic.
+ *
+ * Copyright (c) 2013 Spout LLC <http://www.spout.org/>
+ * Caustic is licensed under the Spout License Version 1.
+ *
+ * Caustic is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the Free
+ * Software Foundation, either version 3 of the License, or (at your option)
+ * any later version.
+ *
+ * In addition, 180 days after any changes are published, you can use the
+ * software, incorporating those changes, under the terms of the MIT license,
+ * as described in the Spout License Version 1.
+ *
+ * Caustic is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE.  See the GNU Lesser General Public License for
+ * more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License,
+ * the MIT license and the Spout License Version 1 along with this program.
+ * If not, see <http://www.gnu.org/licenses/> for the GNU Lesser General Public
+ * License and see <http://spout.in/licensev1> for the full license, including
+ * the MIT license.
+ */
+package org.spout.renderer.test;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import org.spout.renderer.data.VertexAttribute;
+import org.spout.renderer.data.VertexAttribute.DataType;
+import org.spout.renderer.data.VertexData;
+import org.spout.renderer.util.MeshFile;
+import org.spout.renderer.util.MeshFile.MalformedMeshFileException;
+
+public class MeshFileTest {
+	@Rule
+	public final TemporaryFolder folder = new TemporaryFolder();
+
+	@Test
+	public void testRoundTrip() throws IOException {
+		final VertexData data = TestObjFiles.load(TestObjFiles.createGrid(20));
+		final File file = folder.newFile("grid.mesh");
+		MeshFile.write(data, 0, file.toPath());
+		final MeshFile meshFile = MeshFile.load(file.toPath());
+		Assert.assertEquals(21 * 21, meshFile.getVertexCount());
+		final VertexData loaded = meshFile.getVertexData();
+		Assert.assertEquals(data.getAttributeCount(), loaded.getAttributeCount());
+		for (int i = 0; i < data.getAttributeCount(); i++) {
+			final VertexAttribute expected = data.getAttribute(i);
+			final VertexAttribute actual = loaded.getAttribute(i);
+			Assert.assertEquals(expected.getName(), actual.getName());
+			Assert.assertEquals(expected.getType(), actual.getType());
+			Assert.assertEquals(expected.getSize(), actual.getSize());
+			Assert.assertEquals(expected.getUploadMode(), actual.getUploadMode());
+			Assert.assertEquals(expected.getData(), actual.getData());
+			Assert.assertEquals(i, loaded.getAttributeIndex(expected.getName()));
+		}
+		// 441 vertices need short indices, which are uploaded straight from the file
+		Assert.assertEquals(DataType.UNSIGNED_SHORT, loaded.getIndicesType());
+		Assert.assertEquals(data.getIndicesCount(), loaded.getIndicesCount());
+		final ByteBuffer indicesBuffer = loaded.getIndicesBuffer();
+		Assert.assertTrue(indicesBuffer.isReadOnly());
+		final ByteBuffer expectedIndices = data.getIndicesBuffer();
+		Assert.assertEquals(expectedIndices, indicesBuffer);
+		data.releaseIndicesBuffer(expectedIndices);
+		loaded.releaseIndicesBuffer(indicesBuffer);
+		Assert.assertEquals(data.getIndices(), loaded.getIndices());
+		// Bounds of the grid, with the height going up to 0.04
+		Assert.assertTrue(meshFile.hasBounds());
+		Assert.assertEquals(0, meshFile.getBoundsMin().getX(), 0);
+		Assert.assertEquals(0, meshFile.getBoundsMin().getZ(), 0);
+		Assert.assertEquals(1, meshFile.getBoundsMax().getY(), 0);
+		Assert.assertEquals(0.04f, meshFile.getBoundsMax().getZ(), 0);
+	}
+
+	@Test
+	public void testNoBounds() throws IOException {
+		final VertexData data = TestObjFiles.load(TestObjFiles.createGrid(2));
+		final File file = folder.newFile("small.mesh");
+		MeshFile.write(data, -1, file.toPath());
+		final MeshFile meshFile = MeshFile.load(file.toPath());
+		Assert.assertFalse(meshFile.hasBounds());
+		Assert.assertEquals(DataType.UNSIGNED_BYTE, meshFile.getVertexData().getIndicesType());
+	}
+
+	@Test
+	public void testWriteLoaded() throws IOException {
+		final VertexData data = TestObjFiles.load(TestObjFiles.createGrid(4));
+		final File file = folder.newFile("writable.mesh");
+		MeshFile.write(data, 0, file.toPath());
+		final VertexAttribute positions = MeshFile.load(file.toPath()).getVertexData().getAttribute(0);
+		// The loaded data is read-only, so it is copied before the write
+		final ByteBuffer writable = positions.getWritableData();
+		Assert.assertFalse(writable.isReadOnly());
+		writable.putFloat(0, 1);
+		Assert.assertEquals(1, positions.getData().getFloat(0), 0);
+		// The file is left unchanged
+		Assert.assertEquals(data.getAttribute(0).getData(), MeshFile.load(file.toPath()).getVertexData().getAttribute(0).getData());
+	}
+
+	@Test(expected = MalformedMeshFileException.class)
+	public void testTruncated() throws IOException {
+		final VertexData data = TestObjFiles.load(TestObjFiles.createGrid(4));
+		final File file = folder.newFile("truncated.mesh");
+		MeshFile.write(data, 0, file.toPath());
+		try (RandomAccessFile access = new RandomAccessFile(file, "rw")) {
+			access.setLength(access.length() - 8);
+		}
+		MeshFile.load(file.toPath());
+	}
+
+	@Test(expected = MalformedMeshFileException.class)
+	public void testNotAMeshFile() throws IOException {
+		final File file = folder.newFile("garbage.mesh");
+		try (RandomAccessFile access = new RandomAccessFile(file, "rw")) {
+			access.write(new byte[64]);
+		}
+		MeshFile.load(file.toPath());
+	}
+}
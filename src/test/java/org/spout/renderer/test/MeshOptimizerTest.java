@@ -0,0 +1,169 @@
+/*
+ * This file is part of Caustic.
+ *
+ * Copyright (c) 2013 Spout LLC <http://www.spout.org/>
+ * Caustic is licensed under the Spout License Version 1.
+ *
+ * Caustic is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the Free
+ * Software Foundation, either version 3 of the License, or (at your option)
+ * any later version.
+ *
+ * In addition, 180 days after any changes are published, you can use the
+ * software, incorporating those changes, under the terms of the MIT license,
+ * as described in the Spout License Version 1.
+ *
+ * Caustic is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE.  See the GNU Lesser General Public License for
+ * more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License,
+ * the MIT license and the Spout License Version 1 along with this program.
+ * If not, see <http://www.gnu.org/licenses/> for the GNU Lesser General Public
+ * License and see <http://spout.in/licensev1> for the full license, including
+ * the MIT license.
+ */
+package org.spout.renderer.test;
+
+import java.nio.IntBuffer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import gnu.trove.list.TFloatList;
+import gnu.trove.list.TIntList;
+import gnu.trove.list.array.TFloatArrayList;
+import gnu.trove.list.array.TIntArrayList;
+import org.junit.Assert;
+import org.junit.Test;
+
+import org.spout.renderer.data.VertexAttribute;
+import org.spout.renderer.data.VertexAttribute.DataType;
+import org.spout.renderer.data.VertexData;
+import org.spout.renderer.util.MeshOptimizer;
+import org.spout.renderer.util.MeshOptimizer.Report;
+
+public class MeshOptimizerTest {
+	private static final int GRID_SIZE = 64;
+
+	@Test
+	public void testCacheStatistics() {
+		final TIntList indices = new TIntArrayList(new int[]{0, 1, 2});
+		Assert.assertEquals(3, MeshOptimizer.getACMR(indices, 16), 0);
+		Assert.assertEquals(1, MeshOptimizer.getATVR(indices, 16), 0);
+		indices.add(new int[]{2, 1, 3});
+		Assert.assertEquals(2, MeshOptimizer.getACMR(indices, 16), 0);
+		Assert.assertEquals(1, MeshOptimizer.getATVR(indices, 16), 0);
+		// With a cache of 3, vertex 1 is evicted by vertex 3 before it's used again
+		indices.add(new int[]{3, 4, 1});
+		Assert.assertEquals(2, MeshOptimizer.getACMR(indices, 3), 0);
+		Assert.assertEquals(0, MeshOptimizer.getACMR(new TIntArrayList(), 16), 0);
+	}
+
+	@Test
+	public void testOptimize() {
+		final VertexData data = createShuffledGrid();
+		final List<String> triangles = getTriangles(data);
+		final Report report = MeshOptimizer.optimize(data, 0, MeshOptimizer.DEFAULT_CACHE_SIZE);
+		Assert.assertTrue(report.toString(), report.getACMRAfter() < report.getACMRBefore());
+		Assert.assertTrue(report.toString(), report.getACMRAfter() < 0.8f);
+		Assert.assertTrue(report.toString(), report.getATVRAfter() < report.getATVRBefore());
+		Assert.assertEquals(report.getACMRAfter(), MeshOptimizer.getACMR(data.getIndices(), MeshOptimizer.DEFAULT_CACHE_SIZE), 0);
+		// The same triangles are drawn, with the same winding
+		Assert.assertEquals(triangles, getTriangles(data));
+		// The vertices are in the order of first use
+		final TIntList indices = data.getIndices();
+		int next = 0;
+		for (int i = 0; i < indices.size(); i++) {
+			Assert.assertTrue(indices.get(i) <= next);
+			if (indices.get(i) == next) {
+				next++;
+			}
+		}
+		Assert.assertEquals((GRID_SIZE + 1) * (GRID_SIZE + 1), next);
+	}
+
+	@Test
+	public void testVertexFetchRemapsAttributes() {
+		final VertexData data = createShuffledGrid();
+		final List<String> triangles = getTriangles(data);
+		final TFloatList positions = new TFloatArrayList();
+		final TIntList indices = data.getIndices();
+		for (int i = 0; i < indices.size(); i++) {
+			positions.add(data.getAttribute(0).getData().asFloatBuffer().get(indices.get(i) * 3));
+		}
+		MeshOptimizer.optimizeVertexFetch(data);
+		Assert.assertEquals(triangles, getTriangles(data));
+		for (int i = 0; i < indices.size(); i++) {
+			Assert.assertEquals(positions.get(i), data.getAttribute(0).getData().asFloatBuffer().get(indices.get(i) * 3), 0);
+		}
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testNotTriangles() {
+		final VertexData data = new VertexData();
+		data.getIndices().add(new int[]{0, 1, 2, 3});
+		MeshOptimizer.optimizeVertexCache(data, MeshOptimizer.DEFAULT_CACHE_SIZE);
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testMismatchedAttributes() {
+		final VertexData data = createShuffledGrid();
+		final VertexAttribute attribute = new VertexAttribute("short", DataType.FLOAT, 1);
+		attribute.setData(new TFloatArrayList(new float[]{1, 2, 3}));
+		data.addAttribute(2, attribute);
+		MeshOptimizer.optimizeVertexFetch(data);
+	}
+
+	private static VertexData createShuffledGrid() {
+		final TFloatList positions = new TFloatArrayList();
+		final TIntList ids = new TIntArrayList();
+		for (int y = 0; y <= GRID_SIZE; y++) {
+			for (int x = 0; x <= GRID_SIZE; x++) {
+				positions.add(new float[]{x, y, 0});
+				ids.add(ids.size());
+			}
+		}
+		final List<int[]> triangles = new ArrayList<>();
+		for (int y = 0; y < GRID_SIZE; y++) {
+			for (int x = 0; x < GRID_SIZE; x++) {
+				final int i = y * (GRID_SIZE + 1) + x;
+				triangles.add(new int[]{i, i + 1, i + GRID_SIZE + 1});
+				triangles.add(new int[]{i + 1, i + GRID_SIZE + 2, i + GRID_SIZE + 1});
+			}
+		}
+		Collections.shuffle(triangles, new Random(42));
+		final VertexData data = new VertexData();
+		for (int[] triangle : triangles) {
+			data.getIndices().add(triangle);
+		}
+		final VertexAttribute positionsAttribute = new VertexAttribute("positions", DataType.FLOAT, 3);
+		positionsAttribute.setData(positions);
+		data.addAttribute(0, positionsAttribute);
+		final VertexAttribute idsAttribute = new VertexAttribute("ids", DataType.INT, 1);
+		idsAttribute.setData(ids);
+		data.addAttribute(1, idsAttribute);
+		return data;
+	}
+
+	// Returns the sorted triangles as the original vertex IDs, starting from the smallest to keep the winding
+	private static List<String> getTriangles(VertexData data) {
+		final IntBuffer ids = data.getAttribute(1).getData().asIntBuffer();
+		final TIntList indices = data.getIndices();
+		final List<String> triangles = new ArrayList<>();
+		for (int i = 0; i < indices.size(); i += 3) {
+			final int[] triangle = {ids.get(indices.get(i)), ids.get(indices.get(i + 1)), ids.get(indices.get(i + 2))};
+			int first = 0;
+			for (int k = 1; k < 3; k++) {
+				if (triangle[k] < triangle[first]) {
+					first = k;
+				}
+			}
+			triangles.add(triangle[first] + " " + triangle[(first + 1) % 3] + " " + triangle[(first + 2) % 3]);
+		}
+		Collections.sort(triangles);
+		return triangles;
+	}
+}
@@ -0,0 +1,203 @@
+/*
+ * This file is part of Caustic.
+ *
+ * Copyright (c) 2013 Spout LLC <http://www.spout.org/>
+ * Caustic is licensed under the Spout License Version 1.
+ *
+ * Caustic is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the Free
+ * Software Foundation, either version 3 of the License, or (at your option)
+ * any later version.
+ *
+ * In addition, 180 days after any changes are published, you can use the
+ * software, incorporating those changes, under the terms of the MIT license,
+ * as described in the Spout License Version 1.
+ *
+ * Caustic is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE.  See the GNU Lesser General Public License for
+ * more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License,
+ * the MIT license and the Spout License Version 1 along with this program.
+ * If not, see <http://www.gnu.org/licenses/> for the GNU Lesser General Public
+ * License and see <http://spout.in/licensev1> for the full license, including
+ * the MIT license.
+ */
+package org.spout.renderer.test;
+
+import java.nio.FloatBuffer;
+import java.util.List;
+
+import gnu.trove.list.TFloatList;
+import gnu.trove.list.TIntList;
+import gnu.trove.list.array.TFloatArrayList;
+import org.junit.Assert;
+import org.junit.Test;
+
+import org.spout.renderer.data.VertexAttribute;
+import org.spout.renderer.data.VertexAttribute.DataType;
+import org.spout.renderer.data.VertexData;
+import org.spout.renderer.util.MeshSimplifier;
+import org.spout.renderer.util.MeshSimplifier.Level;
+
+public class MeshSimplifierTest {
+	@Test
+	public void testFlatGrid() {
+		final int size = 32;
+		final VertexData data = createGrid(size, false);
+		final List<Level> levels = MeshSimplifier.simplify(data, 0, 0.5f, 0.1f);
+		Assert.assertEquals(2, levels.size());
+		for (Level level : levels) {
+			Assert.assertTrue(level.getTriangleCount() <= (int) (size * size * 2 * level.getRatio()));
+			// A flat grid simplifies without error, keeping its area and its corners
+			Assert.assertEquals(0, level.getError(), 1e-4f);
+			Assert.assertEquals(1, getArea(level.getData()), 1e-4f);
+			checkAttributes(level.getData());
+		}
+	}
+
+	@Test
+	public void testSphere() {
+		final VertexData data = createSphere(32, 64);
+		final int triangleCount = data.getIndicesCount() / 3;
+		final List<Level> levels = MeshSimplifier.simplify(data, 0, 0.5f, 0.25f, 0.1f);
+		float previousError = 0;
+		int previousCount = triangleCount;
+		for (Level level : levels) {
+			Assert.assertTrue(level.getTriangleCount() <= (int) (triangleCount * level.getRatio()));
+			Assert.assertTrue(level.getTriangleCount() < previousCount);
+			Assert.assertTrue(level.getError() >= previousError);
+			Assert.assertTrue(level.getError() < 0.25f);
+			previousError = level.getError();
+			previousCount = level.getTriangleCount();
+			// The remaining vertices are original ones, so they stay on the sphere
+			final FloatBuffer positions = level.getData().getAttribute(0).getData().asFloatBuffer();
+			for (int i = 0; i < positions.limit(); i += 3) {
+				Assert.assertEquals(1, Math.sqrt(positions.get(i) * positions.get(i) + positions.get(i + 1) * positions.get(i + 1) + positions.get(i + 2) * positions.get(i + 2)), 1e-5);
+			}
+			// The mesh is still closed, so the volume is close to the sphere's
+			Assert.assertEquals(4 / 3d * Math.PI, getVolume(level.getData()), 0.4);
+		}
+	}
+
+	@Test
+	public void testSeamsAreKept() {
+		final int size = 16;
+		final VertexData data = createGrid(size, true);
+		final List<Level> levels = MeshSimplifier.simplify(data, 0, 0.2f);
+		final VertexData level = levels.get(0).getData();
+		// Both sides of the seam are still there, at every row
+		final FloatBuffer positions = level.getAttribute(0).getData().asFloatBuffer();
+		int seamVertices = 0;
+		for (int i = 0; i < positions.limit(); i += 3) {
+			if (positions.get(i) == 0.5f) {
+				seamVertices++;
+			}
+		}
+		Assert.assertEquals((size + 1) * 2, seamVertices);
+		Assert.assertEquals(1, getArea(level), 1e-4f);
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testIncreasingRatios() {
+		MeshSimplifier.simplify(createGrid(4, false), 0, 0.25f, 0.5f);
+	}
+
+	// A unit grid in the xy plane, optionally with a texture seam splitting the vertices at x = 0.5
+	private static VertexData createGrid(int size, boolean seam) {
+		final TFloatList positions = new TFloatArrayList();
+		final TFloatList textureCoords = new TFloatArrayList();
+		final int columns = seam ? size + 2 : size + 1;
+		for (int y = 0; y <= size; y++) {
+			for (int column = 0; column < columns; column++) {
+				final int x = seam && column > size / 2 ? column - 1 : column;
+				positions.add(new float[]{x / (float) size, y / (float) size, 0});
+				textureCoords.add(new float[]{seam && column > size / 2 ? 1 : 0, y / (float) size});
+			}
+		}
+		final VertexData data = new VertexData();
+		final TIntList indices = data.getIndices();
+		for (int y = 0; y < size; y++) {
+			for (int x = 0; x < size; x++) {
+				final int column = seam && x >= size / 2 ? x + 1 : x;
+				final int i = y * columns + column;
+				indices.add(new int[]{i, i + 1, i + columns, i + 1, i + columns + 1, i + columns});
+			}
+		}
+		addAttribute(data, 0, "positions", 3, positions);
+		addAttribute(data, 1, "textureCoords", 2, textureCoords);
+		return data;
+	}
+
+	// A closed unit sphere, with single vertices at the poles and no seam
+	private static VertexData createSphere(int rings, int segments) {
+		final TFloatList positions = new TFloatArrayList();
+		positions.add(new float[]{0, 1, 0});
+		for (int r = 1; r < rings; r++) {
+			final double theta = Math.PI * r / rings;
+			for (int s = 0; s < segments; s++) {
+				final double phi = 2 * Math.PI * s / segments;
+				positions.add(new float[]{(float) (Math.sin(theta) * Math.cos(phi)), (float) Math.cos(theta), (float) (Math.sin(theta) * Math.sin(phi))});
+			}
+		}
+		positions.add(new float[]{0, -1, 0});
+		final int bottom = positions.size() / 3 - 1;
+		final VertexData data = new VertexData();
+		final TIntList indices = data.getIndices();
+		for (int s = 0; s < segments; s++) {
+			final int next = (s + 1) % segments;
+			indices.add(new int[]{0, 1 + next, 1 + s});
+			final int last = 1 + (rings - 2) * segments;
+			indices.add(new int[]{bottom, last + s, last + next});
+			for (int r = 0; r < rings - 2; r++) {
+				final int a = 1 + r * segments + s, b = 1 + r * segments + next;
+				final int c = a + segments, d = b + segments;
+				indices.add(new int[]{a, b, d, a, d, c});
+			}
+		}
+		addAttribute(data, 0, "positions", 3, positions);
+		return data;
+	}
+
+	private static void addAttribute(VertexData data, int index, String name, int size, TFloatList values) {
+		final VertexAttribute attribute = new VertexAttribute(name, DataType.FLOAT, size);
+		attribute.setData(values);
+		data.addAttribute(index, attribute);
+	}
+
+	private static void checkAttributes(VertexData data) {
+		final int vertexCount = data.getAttribute(0).getData().remaining() / 12;
+		Assert.assertEquals(vertexCount * 8, data.getAttribute(1).getData().remaining());
+		final TIntList indices = data.getIndices();
+		for (int i = 0; i < indices.size(); i++) {
+			Assert.assertTrue(indices.get(i) < vertexCount);
+		}
+	}
+
+	private static double getArea(VertexData data) {
+		final FloatBuffer positions = data.getAttribute(0).getData().asFloatBuffer();
+		final TIntList indices = data.getIndices();
+		double area = 0;
+		for (int i = 0; i < indices.size(); i += 3) {
+			final int a = indices.get(i) * 3, b = indices.get(i + 1) * 3, c = indices.get(i + 2) * 3;
+			// The z component of the cross product, all triangles face the same way
+			area += ((positions.get(b) - positions.get(a)) * (positions.get(c + 1) - positions.get(a + 1)) - (positions.get(b + 1) - positions.get(a + 1)) * (positions.get(c) - positions.get(a))) / 2;
+		}
+		return area;
+	}
+
+	private static double getVolume(VertexData data) {
+		final FloatBuffer p = data.getAttribute(0).getData().asFloatBuffer();
+		final TIntList indices = data.getIndices();
+		double volume = 0;
+		for (int i = 0; i < indices.size(); i += 3) {
+			final int a = indices.get(i) * 3, b = indices.get(i + 1) * 3, c = indices.get(i + 2) * 3;
+			// Signed volume of the tetrahedron with the origin
+			volume += (p.get(a) * (p.get(b + 1) * p.get(c + 2) - p.get(b + 2) * p.get(c + 1))
+					- p.get(a + 1) * (p.get(b) * p.get(c + 2) - p.get(b + 2) * p.get(c))
+					+ p.get(a + 2) * (p.get(b) * p.get(c + 1) - p.get(b + 1) * p.get(c))) / 6;
+		}
+		return Math.abs(volume);
+	}
+}
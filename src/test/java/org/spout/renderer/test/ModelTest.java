@@ -0,0 +1,130 @@
+/*
+ * This file is part of Caustic.
+ *
+ * Copyright (c) 2013 Spout LLC <http://www.spout.org/>
+ * Caustic is licensed under the Spout License Version 1.
+ *
+ * Caustic is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the Free
+ * Software Foundation, either version 3 of the License, or (at your option)
+ * any later version.
+ *
+ * In addition, 180 days after any changes are published, you can use the
+ * software, incorporating those changes, under the terms of the MIT license,
+ * as described in the Spout License Version 1.
+ *
+ * Caustic is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE.  See the GNU Lesser General Public License for
+ * more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License,
+ * the MIT license and the Spout License Version 1 along with this program.
+ * If not, see <http://www.gnu.org/licenses/> for the GNU Lesser General Public
+ * License and see <http://spout.in/licensev1> for the full license, including
+ * the MIT license.
+ */
+package org.spout.renderer.test;
+
+import java.nio.FloatBuffer;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import org.spout.math.imaginary.Quaternionf;
+import org.spout.math.matrix.Matrix4f;
+import org.spout.math.vector.Vector3f;
+import org.spout.renderer.Camera;
+import org.spout.renderer.data.Bounds;
+import org.spout.renderer.model.Model;
+
+public class ModelTest {
+	private static final float EPSILON = 1e-4f;
+
+	@Test
+	public void testMatrix() {
+		final Model model = new Model() {
+		};
+		final Vector3f position = new Vector3f(4, -5, 6);
+		final Quaternionf rotation = Quaternionf.fromAngleDegAxis(30, 1, 2, 3);
+		final Vector3f scale = new Vector3f(2, 3, 0.5f);
+		model.setPosition(position);
+		model.setRotation(rotation);
+		model.setScale(scale);
+		final Matrix4f expected = Matrix4f.createScaling(scale.toVector4(1)).rotate(rotation).translate(position);
+		Assert.assertArrayEquals(expected.toArray(false), model.getMatrix().toArray(false), EPSILON);
+	}
+
+	@Test
+	public void testVersions() {
+		final Model model = new Model() {
+		};
+		final Camera camera = Camera.createPerspective(60, 640, 480, 0.1f, 100);
+		model.setPosition(new Vector3f(1, 2, 3));
+		model.setScale(new Vector3f(2, 2, 2));
+		Assert.assertEquals(2, model.getVersion());
+		camera.setRotation(Quaternionf.fromAngleDegAxis(45, 0, 1, 0));
+		Assert.assertEquals(1, camera.getVersion());
+	}
+
+	@Test
+	public void testViewMatrices() {
+		final Model model = new Model() {
+		};
+		final Camera camera = Camera.createPerspective(60, 640, 480, 0.1f, 100);
+		camera.setPosition(new Vector3f(0, 2, 10));
+		camera.setRotation(Quaternionf.fromAngleDegAxis(20, 1, 1, 0));
+		model.setPosition(new Vector3f(4, -5, 6));
+		model.setRotation(Quaternionf.fromAngleDegAxis(30, 1, 2, 3));
+		// Uniform scale, using the cheaper inverse
+		model.setScale(new Vector3f(3, 3, 3));
+		assertViewMatrices(model, camera);
+		// The cached matrices are returned while nothing changed
+		Assert.assertSame(model.getNormalMatrix(camera), model.getNormalMatrix(camera));
+		// Moving the camera or the model updates them
+		camera.setPosition(new Vector3f(-3, 1, 5));
+		assertViewMatrices(model, camera);
+		model.setScale(new Vector3f(1, 2, 0.5f));
+		assertViewMatrices(model, camera);
+		// Changing the camera too
+		final Camera other = Camera.createPerspective(60, 640, 480, 0.1f, 100);
+		assertViewMatrices(model, other);
+	}
+
+	@Test
+	public void testBounds() {
+		final Model model = new Model() {
+		};
+		Assert.assertNull(model.getBounds());
+		model.setLocalBounds(new Bounds(new Vector3f(-1, -1, -1), new Vector3f(1, 1, 1)));
+		model.setPosition(new Vector3f(10, 0, 0));
+		final Bounds bounds = model.getBounds();
+		Assert.assertEquals(9, bounds.getMinX(), EPSILON);
+		Assert.assertEquals(10, bounds.getCenterX(), EPSILON);
+		// Moving updates the same bounds in place
+		model.setPosition(new Vector3f(0, 20, 0));
+		Assert.assertSame(bounds, model.getBounds());
+		Assert.assertEquals(21, bounds.getMaxY(), EPSILON);
+		Assert.assertEquals(1, bounds.getMaxX(), EPSILON);
+	}
+
+	@Test(expected = ArithmeticException.class)
+	public void testZeroScale() {
+		final Model model = new Model() {
+		};
+		model.setScale(Vector3f.ZERO);
+		model.getNormalMatrix(Camera.createPerspective(60, 640, 480, 0.1f, 100));
+	}
+
+	private static void assertViewMatrices(Model model, Camera camera) {
+		final Matrix4f modelView = camera.getViewMatrix().mul(model.getMatrix());
+		Assert.assertArrayEquals(modelView.toArray(true), toArray(model.getModelViewMatrix(camera)), EPSILON);
+		Assert.assertArrayEquals(modelView.invert().transpose().toArray(true), toArray(model.getNormalMatrix(camera)), EPSILON);
+	}
+
+	private static float[] toArray(FloatBuffer buffer) {
+		final float[] values = new float[buffer.remaining()];
+		buffer.duplicate().get(values);
+		return values;
+	}
+}
@@ -0,0 +1,155 @@
+/*
+ * This file is part of Caustic.
+ *
+ * Copyright (c) 2013 Spout LLC <http://www.spout.org/>
+ * Caustic is licensed under the Spout License Version 1.
+ *
+ * Caustic is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the Free
+ * Software Foundation, either version 3 of the License, or (at your option)
+ * any later version.
+ *
+ * In addition, 180 days after any changes are published, you can use the
+ * software, incorporating those changes, under the terms of the MIT license,
+ * as described in the Spout License Version 1.
+ *
+ * Caustic is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE.  See the GNU Lesser General Public License for
+ * more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License,
+ * the MIT license and the Spout License Version 1 along with this program.
+ * If not, see <http://www.gnu.org/licenses/> for the GNU Lesser General Public
+ * License and see <http://spout.in/licensev1> for the full license, including
+ * the MIT license.
+ */
+package org.spout.renderer.test;
+
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+import java.nio.IntBuffer;
+import java.util.Random;
+
+import gnu.trove.list.TFloatList;
+import gnu.trove.list.TIntList;
+import gnu.trove.list.array.TFloatArrayList;
+import gnu.trove.list.array.TIntArrayList;
+import org.junit.Assert;
+import org.junit.Test;
+
+import org.spout.renderer.data.VertexAttribute;
+import org.spout.renderer.data.VertexAttribute.DataType;
+import org.spout.renderer.util.CausticUtil;
+import org.spout.renderer.util.NormalGenerator;
+
+public class NormalGeneratorTest {
+	@Test
+	public void testNormals() {
+		// Large enough to be split across threads
+		final Grid grid = new Grid(100);
+		final TFloatList expected = CausticUtil.generateNormals(grid.positions, grid.indices);
+		final float[] normals = new float[grid.positions.size()];
+		NormalGenerator.generateNormals(grid.positions.toArray(), grid.indices.toArray(), normals);
+		Assert.assertArrayEquals(expected.toArray(), normals, 1e-6f);
+	}
+
+	@Test
+	public void testTangents() {
+		final Grid grid = new Grid(100);
+		final TFloatList normals = CausticUtil.generateNormals(grid.positions, grid.indices);
+		final TFloatList expected = CausticUtil.generateTangents(grid.positions, normals, grid.textureCoords, grid.indices);
+		final float[] tangents = new float[grid.positions.size() / 3 * 4];
+		NormalGenerator.generateTangents(grid.positions.toArray(), normals.toArray(), grid.textureCoords.toArray(), grid.indices.toArray(), tangents);
+		Assert.assertArrayEquals(expected.toArray(), tangents, 1e-6f);
+	}
+
+	@Test
+	public void testBuffers() {
+		final Grid grid = new Grid(4);
+		final FloatBuffer positions = CausticUtil.createFloatBuffer(grid.positions.size() + 1);
+		// Offset by one to check that the buffer positions are respected
+		positions.put(Float.NaN);
+		positions.put(grid.positions.toArray());
+		positions.position(1);
+		final FloatBuffer normals = CausticUtil.createFloatBuffer(grid.positions.size());
+		NormalGenerator.generateNormals(positions, CausticUtil.createIntBuffer(0).slice(), normals);
+		Assert.assertEquals(1, positions.position());
+		// No triangles, so no normals
+		for (int i = 0; i < normals.capacity(); i++) {
+			Assert.assertEquals(0, normals.get(i), 0);
+		}
+		final IntBuffer indices = CausticUtil.createIntBuffer(grid.indices.size());
+		indices.put(grid.indices.toArray());
+		indices.flip();
+		NormalGenerator.generateNormals(positions, indices, normals);
+		final float[] actual = new float[normals.capacity()];
+		normals.get(actual);
+		Assert.assertArrayEquals(CausticUtil.generateNormals(grid.positions, grid.indices).toArray(), actual, 1e-6f);
+	}
+
+	@Test
+	public void testAttributes() {
+		final Grid grid = new Grid(8);
+		final VertexAttribute positions = new VertexAttribute("positions", DataType.FLOAT, 3);
+		positions.setData(grid.positions);
+		final VertexAttribute textureCoords = new VertexAttribute("textureCoords", DataType.FLOAT, 2);
+		textureCoords.setData(grid.textureCoords);
+		final VertexAttribute normals = new VertexAttribute("normals", DataType.FLOAT, 3);
+		NormalGenerator.generateNormals(positions, grid.indices, normals);
+		final TFloatList expectedNormals = CausticUtil.generateNormals(grid.positions, grid.indices);
+		Assert.assertArrayEquals(expectedNormals.toArray(), toArray(normals), 1e-6f);
+		final VertexAttribute tangents = new VertexAttribute("tangents", DataType.FLOAT, 4);
+		NormalGenerator.generateTangents(positions, normals, textureCoords, grid.indices, tangents);
+		Assert.assertArrayEquals(CausticUtil.generateTangents(grid.positions, expectedNormals, grid.textureCoords, grid.indices).toArray(), toArray(tangents), 1e-6f);
+		// Data of the right size is written in place
+		final FloatBuffer data = normals.getWritableData().order(ByteOrder.nativeOrder()).asFloatBuffer();
+		data.put(0, 1234);
+		NormalGenerator.generateNormals(positions, grid.indices, normals);
+		Assert.assertEquals(expectedNormals.get(0), data.get(0), 1e-6f);
+		Assert.assertArrayEquals(expectedNormals.toArray(), toArray(normals), 1e-6f);
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testIndexOutOfBounds() {
+		NormalGenerator.generateNormals(new float[9], new int[]{0, 1, 3}, new float[9]);
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testWrongAttributeType() {
+		final VertexAttribute positions = new VertexAttribute("positions", DataType.SHORT, 3);
+		NormalGenerator.generateNormals(positions, new TIntArrayList(), new VertexAttribute("normals", DataType.FLOAT, 3));
+	}
+
+	private static float[] toArray(VertexAttribute attribute) {
+		final FloatBuffer buffer = attribute.getData().asFloatBuffer();
+		final float[] array = new float[buffer.remaining()];
+		buffer.get(array);
+		return array;
+	}
+
+	private static final class Grid {
+		private final TFloatList positions = new TFloatArrayList();
+		private final TFloatList textureCoords = new TFloatArrayList();
+		private final TIntList indices = new TIntArrayList();
+
+		private Grid(int size) {
+			final Random random = new Random(size);
+			for (int y = 0; y <= size; y++) {
+				for (int x = 0; x <= size; x++) {
+					positions.add(x);
+					positions.add(random.nextFloat());
+					positions.add(y);
+					textureCoords.add(x / (float) size + random.nextFloat() * 0.1f / size);
+					textureCoords.add(y / (float) size);
+				}
+			}
+			for (int y = 0; y < size; y++) {
+				for (int x = 0; x < size; x++) {
+					final int i = y * (size + 1) + x;
+					indices.add(new int[]{i, i + size + 1, i + 1, i + 1, i + size + 1, i + size + 2});
+				}
+			}
+		}
+	}
+}
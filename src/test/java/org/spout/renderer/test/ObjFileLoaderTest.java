@@ -0,0 +1,213 @@
+/*
+ * This file is part of Caustic.
+ *
+ * Copyright (c) 2013 Spout LLC <http://www.spout.org/>
+ * Caustic is licensed under the Spout License Version 1.
+ *
+ * Caustic is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the Free
+ * Software Foundation, either version 3 of the License, or (at your option)
+ * any later version.
+ *
+ * In addition, 180 days after any changes are published, you can use the
+ * software, incorporating those changes, under the terms of the MIT license,
+ * as described in the Spout License Version 1.
+ *
+ * Caustic is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE.  See the GNU Lesser General Public License for
+ * more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License,
+ * the MIT license and the Spout License Version 1 along with this program.
+ * If not, see <http://www.gnu.org/licenses/> for the GNU Lesser General Public
+ * License and see <http://spout.in/licensev1> for the full license, including
+ * the MIT license.
+ */
+package org.spout.renderer.test;
+
+import java.io.ByteArrayInputStream;
+import java.nio.ByteBuffer;
+import java.nio.FloatBuffer;
+import java.util.List;
+import java.util.Random;
+
+import gnu.trove.list.TFloatList;
+import gnu.trove.list.TIntList;
+import gnu.trove.list.array.TFloatArrayList;
+import gnu.trove.list.array.TIntArrayList;
+import org.junit.Assert;
+import org.junit.Test;
+
+import org.spout.math.vector.Vector3f;
+import org.spout.renderer.data.VertexData;
+import org.spout.renderer.util.ObjFileLoader;
+import org.spout.renderer.util.ObjFileLoader.Group;
+import org.spout.renderer.util.ObjFileLoader.MalformedObjFileException;
+
+public class ObjFileLoaderTest {
+	@Test
+	public void testFormatting() {
+		final String obj = "# comment\r\n"
+				+ "v 1 -2.5 3e2\r\n"
+				+ "v\t+0.125  1E-3 -0\r\n"
+				+ "  v 1.5e+1 .5 7.\r\n"
+				+ "vt 0.25 0.75\n"
+				+ "vt 1 0\n"
+				+ "vn 0 0 1\n"
+				+ "g group\n"
+				+ "f 1/2/1 2/1/1 3//1\n";
+		final TFloatList positions = new TFloatArrayList();
+		final TFloatList textureCoords = new TFloatArrayList();
+		final TFloatList normals = new TFloatArrayList();
+		final TIntList indices = new TIntArrayList();
+		final Vector3f sizes = ObjFileLoader.load(new ByteArrayInputStream(obj.getBytes()), positions, textureCoords, normals, indices);
+		Assert.assertEquals(new Vector3f(3, 2, 3), sizes);
+		Assert.assertArrayEquals(new float[]{1, -2.5f, 300, 0.125f, 0.001f, -0f, 15, 0.5f, 7}, positions.toArray(), 0);
+		Assert.assertArrayEquals(new int[]{0, 1, 2}, indices.toArray());
+		// Texture coords are stored per position, the third position has none
+		Assert.assertArrayEquals(new float[]{1, 0, 0.25f, 0.75f, 0, 0}, textureCoords.toArray(), 0);
+		Assert.assertArrayEquals(new float[]{0, 0, 1, 0, 0, 1, 0, 0, 1}, normals.toArray(), 0);
+	}
+
+	@Test
+	public void testPrecision() {
+		// The fast float parsing must agree with the standard one
+		final StringBuilder builder = new StringBuilder();
+		final Random random = new Random(42);
+		final float[] expected = new float[3000];
+		for (int i = 0; i < expected.length; i += 3) {
+			builder.append('v');
+			for (int c = 0; c < 3; c++) {
+				final String value = Float.toString((random.nextFloat() - 0.5f) * (float) Math.pow(10, random.nextInt(12) - 6));
+				expected[i + c] = Float.parseFloat(value);
+				builder.append(' ').append(value);
+			}
+			builder.append('\n');
+		}
+		final TFloatList positions = new TFloatArrayList();
+		ObjFileLoader.load(ByteBuffer.wrap(builder.toString().getBytes()), positions, new TFloatArrayList(), new TFloatArrayList(), new TIntArrayList());
+		Assert.assertArrayEquals(expected, positions.toArray(), 0);
+	}
+
+	@Test
+	public void testParallel() {
+		// Large enough to be split in chunks
+		final int size = 300;
+		final byte[] obj = TestObjFiles.createGrid(size);
+		Assert.assertTrue(obj.length > 1 << 22);
+		final TFloatList positions = new TFloatArrayList();
+		final TFloatList textureCoords = new TFloatArrayList();
+		final TFloatList normals = new TFloatArrayList();
+		final TIntList indices = new TIntArrayList();
+		ObjFileLoader.load(ByteBuffer.wrap(obj), positions, textureCoords, normals, indices);
+		Assert.assertEquals((size + 1) * (size + 1) * 3, positions.size());
+		Assert.assertEquals(size * size * 6, indices.size());
+		for (int y = 0, i = 0; y <= size; y++) {
+			for (int x = 0; x <= size; x++, i++) {
+				Assert.assertEquals(x / (float) size, positions.get(i * 3), 0);
+				Assert.assertEquals(y / (float) size, positions.get(i * 3 + 1), 0);
+				Assert.assertEquals((x * 7 + y * 3) % 5 / 100f, positions.get(i * 3 + 2), 0);
+				Assert.assertEquals(x / (float) size, textureCoords.get(i * 2), 0);
+				Assert.assertEquals(1, normals.get(i * 3 + 2), 0);
+			}
+		}
+		for (int q = 0; q < size * size; q++) {
+			final int i = q / size * (size + 1) + q % size;
+			Assert.assertEquals(i, indices.get(q * 6));
+			Assert.assertEquals(i + size + 1, indices.get(q * 6 + 5));
+		}
+	}
+
+	@Test
+	public void testMeshUniqueVertices() {
+		// A cube with flat normals: 8 positions, 6 normals, 24 vertices
+		final StringBuilder builder = new StringBuilder();
+		for (int i = 0; i < 8; i++) {
+			builder.append("v ").append(i & 1).append(' ').append(i >> 1 & 1).append(' ').append(i >> 2 & 1).append('\n');
+		}
+		builder.append("vn -1 0 0\nvn 1 0 0\nvn 0 -1 0\nvn 0 1 0\nvn 0 0 -1\nvn 0 0 1\n");
+		builder.append("o cube\nusemtl red\n");
+		builder.append("f 1//1 3//1 7//1\nf 1//1 7//1 5//1\n");
+		builder.append("f 2//2 6//2 8//2\nf 2//2 8//2 4//2\n");
+		builder.append("usemtl red\n");
+		builder.append("f 1//3 5//3 6//3\nf 1//3 6//3 2//3\n");
+		builder.append("usemtl blue\ng top\n");
+		builder.append("f 3//4 4//4 8//4\nf 3//4 8//4 7//4\n");
+		builder.append("g sides\n");
+		builder.append("f 1//5 2//5 4//5\nf 1//5 4//5 3//5\n");
+		builder.append("f 5//6 7//6 8//6\nf 5//6 8//6 6//6\n");
+		final ObjFileLoader.Mesh mesh = ObjFileLoader.loadMesh(new ByteArrayInputStream(builder.toString().getBytes()));
+		final VertexData data = mesh.getVertexData();
+		Assert.assertEquals(2, data.getAttributeCount());
+		Assert.assertEquals(0, data.getAttributeIndex("positions"));
+		Assert.assertEquals(1, data.getAttributeIndex("normals"));
+		Assert.assertEquals(36, data.getIndicesCount());
+		final FloatBuffer positions = data.getAttribute(0).getData().asFloatBuffer();
+		final FloatBuffer normals = data.getAttribute(1).getData().asFloatBuffer();
+		Assert.assertEquals(24 * 3, positions.limit());
+		Assert.assertEquals(24 * 3, normals.limit());
+		// Every vertex of a face lies on the plane given by its normal
+		final TIntList indices = data.getIndices();
+		for (int i = 0; i < indices.size(); i++) {
+			final int vertex = indices.get(i);
+			for (int c = 0; c < 3; c++) {
+				final float normal = normals.get(vertex * 3 + c);
+				if (normal != 0) {
+					Assert.assertEquals(normal > 0 ? 1 : 0, positions.get(vertex * 3 + c), 0);
+				}
+			}
+		}
+		// The repeated material doesn't split the first group
+		final List<Group> groups = mesh.getGroups();
+		Assert.assertEquals(3, groups.size());
+		assertGroup(groups.get(0), "cube", null, "red", 0, 18);
+		assertGroup(groups.get(1), "cube", "top", "blue", 18, 6);
+		assertGroup(groups.get(2), "cube", "sides", "blue", 24, 12);
+	}
+
+	@Test
+	public void testMeshParallel() {
+		final int size = 300;
+		final byte[] obj = TestObjFiles.createGrid(size);
+		final VertexData expected = TestObjFiles.load(obj);
+		final ObjFileLoader.Mesh mesh = ObjFileLoader.loadMesh(ByteBuffer.wrap(obj));
+		final VertexData data = mesh.getVertexData();
+		Assert.assertEquals(1, mesh.getGroups().size());
+		Assert.assertEquals(expected.getIndicesCount(), data.getIndicesCount());
+		// The grid shares the same index for all three attributes, so nothing is split
+		Assert.assertEquals((size + 1) * (size + 1) * 3, data.getAttribute("positions").getData().remaining() / 4);
+		final FloatBuffer expectedPositions = expected.getAttribute("positions").getData().asFloatBuffer();
+		final FloatBuffer expectedTextureCoords = expected.getAttribute("textureCoords").getData().asFloatBuffer();
+		final FloatBuffer positions = data.getAttribute("positions").getData().asFloatBuffer();
+		final FloatBuffer textureCoords = data.getAttribute("textureCoords").getData().asFloatBuffer();
+		for (int i = 0; i < data.getIndicesCount(); i++) {
+			final int expectedVertex = expected.getIndices().get(i);
+			final int vertex = data.getIndices().get(i);
+			for (int c = 0; c < 3; c++) {
+				Assert.assertEquals(expectedPositions.get(expectedVertex * 3 + c), positions.get(vertex * 3 + c), 0);
+			}
+			for (int c = 0; c < 2; c++) {
+				Assert.assertEquals(expectedTextureCoords.get(expectedVertex * 2 + c), textureCoords.get(vertex * 2 + c), 0);
+			}
+		}
+	}
+
+	private static void assertGroup(Group group, String object, String name, String material, int firstIndex, int indicesCount) {
+		Assert.assertEquals(object, group.getObject());
+		Assert.assertEquals(name, group.getName());
+		Assert.assertEquals(material, group.getMaterial());
+		Assert.assertEquals(firstIndex, group.getFirstIndex());
+		Assert.assertEquals(indicesCount, group.getIndicesCount());
+	}
+
+	@Test
+	public void testMalformed() {
+		try {
+			ObjFileLoader.load(new ByteArrayInputStream("v 1 2 3\nv 1 x 3\n".getBytes()), new TFloatArrayList(), new TFloatArrayList(), new TFloatArrayList(), new TIntArrayList());
+			Assert.fail();
+		} catch (MalformedObjFileException ex) {
+			Assert.assertEquals("for line \"v 1 x 3\"", ex.getMessage());
+		}
+	}
+}
@@ -0,0 +1,323 @@
+/*
+ * This file is part of Caustic.
+ *
+ * Copyright (c) 2013 Spout LLC <http://www.spout.org/>
+ * Caustic is licensed under the Spout License Version 1.
+ *
+ * Caustic is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the Free
+ * Software Foundation, either version 3 of the License, or (at your option)
+ * any later version.
+ *
+ * In addition, 180 days after any changes are published, you can use the
+ * software, incorporating those changes, under the terms of the MIT license,
+ * as described in the Spout License Version 1.
+ *
+ * Caustic is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE.  See the GNU Lesser General Public License for
+ * more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License,
+ * the MIT license and the Spout License Version 1 along with this program.
+ * If not, see <http://www.gnu.org/licenses/> for the GNU Lesser General Public
+ * License and see <http://spout.in/licensev1> for the full license, including
+ * the MIT license.
+ */
+package org.spout.renderer.test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import gnu.trove.list.array.TFloatArrayList;
+import org.junit.Assert;
+import org.junit.Test;
+
+import org.spout.math.imaginary.Quaternionf;
+import org.spout.math.vector.Vector3f;
+import org.spout.renderer.Camera;
+import org.spout.renderer.Material;
+import org.spout.renderer.Pipeline;
+import org.spout.renderer.Pipeline.PipelineBuilder;
+import org.spout.renderer.RenderQueue;
+import org.spout.renderer.data.VertexAttribute;
+import org.spout.renderer.data.VertexAttribute.DataType;
+import org.spout.renderer.data.VertexData;
+import org.spout.renderer.gl.Context;
+import org.spout.renderer.gl.GLFactory;
+import org.spout.renderer.gl.Program;
+import org.spout.renderer.gl.Shader;
+import org.spout.renderer.gl.Texture;
+import org.spout.renderer.gl.VertexArray;
+import org.spout.renderer.headless.HeadlessGLFactory;
+import org.spout.renderer.model.Model;
+
+public class RenderQueueTest {
+	private static final String VERTEX_SOURCE = "$shader_type: vertex\n"
+			+ "uniform mat4 modelMatrix;\n"
+			+ "void main() {}\n";
+	private static final String FRAGMENT_SOURCE = "$shader_type: fragment\n"
+			+ "void main() {}\n";
+	private final GLFactory factory = new HeadlessGLFactory();
+	private final Camera camera = Camera.createPerspective(60, 640, 480, 0.1f, 100);
+
+	@Test
+	public void testOrder() {
+		final Program program1 = createProgram();
+		final Program program2 = createProgram();
+		final Texture texture = createTexture();
+		final Material material1 = new Material(program1);
+		final Material material2 = new Material(program2);
+		final Material material3 = new Material(program1);
+		material3.addTexture(0, texture);
+		final Material material4 = new Material(program1);
+		material4.addTexture(0, texture);
+		final VertexArray vertexArray1 = createVertexArray();
+		final VertexArray vertexArray2 = createVertexArray();
+		final Random random = new Random(42);
+		final Material[] materials = {material1, material2, material3, material4};
+		final VertexArray[] vertexArrays = {vertexArray1, vertexArray2};
+		final RenderQueue queue = new RenderQueue();
+		for (int i = 0; i < 200; i++) {
+			final Model model = new Model(vertexArrays[random.nextInt(2)], materials[random.nextInt(4)]);
+			model.setPosition(new Vector3f(random.nextFloat() * 20 - 10, random.nextFloat() * 20 - 10, -random.nextFloat() * 50));
+			queue.add(model);
+		}
+		queue.update(camera);
+		Assert.assertEquals(200, queue.size());
+		Assert.assertEquals(1, queue.getFullSortCount());
+		// Each program, material, and vertex array for a material, is one contiguous group
+		final List<Object> groups = new ArrayList<>();
+		for (int i = 0; i < queue.size(); i++) {
+			final Model model = queue.get(i);
+			if (i > 0) {
+				Assert.assertTrue(queue.getKey(i - 1) <= queue.getKey(i));
+				final Model previous = queue.get(i - 1);
+				if (previous.getMaterial() == model.getMaterial() && previous.getVertexArray() == model.getVertexArray()) {
+					// Front to back within the same state, up to the depth precision
+					Assert.assertTrue(previous.getPosition().getZ() >= model.getPosition().getZ() * 1.05f);
+					continue;
+				}
+			}
+			final List<Object> group = Arrays.<Object>asList(model.getMaterial(), model.getVertexArray());
+			Assert.assertFalse(groups.contains(group));
+			groups.add(group);
+		}
+		Assert.assertEquals(8, groups.size());
+		// The materials sharing a program and textures are next to each other
+		final List<Material> materialOrder = new ArrayList<>();
+		for (Object group : groups) {
+			final Material material = (Material) ((List<?>) group).get(0);
+			if (!materialOrder.contains(material)) {
+				materialOrder.add(material);
+			}
+		}
+		Assert.assertEquals(1, Math.abs(materialOrder.indexOf(material3) - materialOrder.indexOf(material4)));
+		Assert.assertTrue(materialOrder.indexOf(material2) == 0 || materialOrder.indexOf(material2) == 3);
+	}
+
+	@Test
+	public void testIncrementalUpdates() {
+		final Material material = new Material(createProgram());
+		final VertexArray vertexArray = createVertexArray();
+		final RenderQueue queue = new RenderQueue();
+		final List<Model> models = new ArrayList<>();
+		for (int i = 0; i < 100; i++) {
+			final Model model = new Model(vertexArray, material);
+			model.setPosition(new Vector3f(0, 0, -i - 1));
+			models.add(model);
+			queue.add(model);
+		}
+		queue.update(camera);
+		Assert.assertEquals(1, queue.getFullSortCount());
+		Assert.assertSame(models.get(0), queue.get(0));
+		// Nothing changed, nothing is sorted
+		queue.update(camera);
+		Assert.assertEquals(1, queue.getFullSortCount());
+		Assert.assertEquals(0, queue.getIncrementalSortCount());
+		// One model moved to the front
+		models.get(99).setPosition(new Vector3f(0, 0, -0.5f));
+		queue.update(camera);
+		Assert.assertEquals(1, queue.getIncrementalSortCount());
+		Assert.assertSame(models.get(99), queue.get(0));
+		// A new material
+		models.get(50).setMaterial(new Material(createProgram()));
+		queue.update(camera);
+		Assert.assertEquals(2, queue.getIncrementalSortCount());
+		Assert.assertSame(models.get(50), queue.get(99));
+		// Removing keeps the order
+		Assert.assertTrue(queue.remove(models.get(99)));
+		Assert.assertFalse(queue.remove(models.get(99)));
+		Assert.assertSame(models.get(0), queue.get(0));
+		queue.update(camera);
+		Assert.assertEquals(2, queue.getIncrementalSortCount());
+		// Moving the camera updates all the depths, and reverses the order
+		camera.setPosition(new Vector3f(0, 0, -200));
+		camera.setRotation(Quaternionf.fromAngleDegAxis(180, 0, 1, 0));
+		queue.update(camera);
+		Assert.assertEquals(2, queue.getFullSortCount());
+		Assert.assertSame(models.get(98), queue.get(0));
+	}
+
+	@Test
+	public void testSetModels() {
+		final Material material = new Material(createProgram());
+		final VertexArray vertexArray = createVertexArray();
+		final RenderQueue queue = new RenderQueue();
+		final List<Model> models = new ArrayList<>();
+		for (int i = 0; i < 10; i++) {
+			final Model model = new Model(vertexArray, material);
+			model.setPosition(new Vector3f(0, 0, -i - 1));
+			models.add(model);
+		}
+		queue.setModels(models);
+		queue.update(camera);
+		Assert.assertEquals(10, queue.size());
+		final Model removed = models.remove(3);
+		final Model added = new Model(vertexArray, material);
+		models.add(added);
+		// Duplicates are only queued once
+		models.add(added);
+		queue.setModels(models);
+		Assert.assertEquals(10, queue.size());
+		queue.update(camera);
+		for (int i = 0; i < queue.size(); i++) {
+			Assert.assertNotSame(removed, queue.get(i));
+		}
+		queue.clear();
+		Assert.assertEquals(0, queue.size());
+	}
+
+	@Test
+	public void testListNotModified() {
+		final HeadlessGLFactory headlessFactory = (HeadlessGLFactory) factory;
+		final Context context = headlessFactory.createContext();
+		context.setWindowSize(640, 480);
+		context.create();
+		final Material material1 = new Material(createProgram());
+		final Material material2 = new Material(createProgram());
+		final VertexArray vertexArray = createVertexArray();
+		final List<Model> models = Arrays.asList(new Model(vertexArray, material2), new Model(vertexArray, material1), new Model(vertexArray, material2));
+		final List<Model> copy = new ArrayList<>(models);
+		final Pipeline pipeline = new PipelineBuilder().useCamera(camera).renderModels(models).build();
+		pipeline.run(context);
+		Assert.assertEquals(copy, models);
+		Assert.assertEquals(3, headlessFactory.getCommandLog().getDrawCount());
+	}
+
+	@Test
+	public void testRankRecycling() {
+		final VertexArray vertexArray = createVertexArray();
+		final RenderQueue queue = new RenderQueue();
+		// More programs over time than the ranks that fit, but only one at a time
+		for (int i = 0; i < 2100; i++) {
+			final Model model = new Model(vertexArray, new Material(createProgram()));
+			queue.setModels(Collections.singletonList(model));
+			queue.update(camera);
+			Assert.assertEquals(0, queue.getSharedStateCount());
+		}
+		// More programs at once than the ranks that fit
+		final List<Model> models = new ArrayList<>();
+		for (int i = 0; i < 2100; i++) {
+			models.add(new Model(vertexArray, new Material(createProgram())));
+		}
+		queue.setModels(models);
+		queue.update(camera);
+		Assert.assertEquals(2100 - 2048, queue.getSharedStateCount());
+		queue.setModels(models.subList(0, 2000));
+		queue.update(camera);
+		Assert.assertEquals(0, queue.getSharedStateCount());
+	}
+
+	@Test(expected = IllegalStateException.class)
+	public void testNullMaterial() {
+		final RenderQueue queue = new RenderQueue();
+		queue.add(new Model() {
+		});
+		queue.update(camera);
+	}
+
+	@Test
+	public void testCulling() {
+		final Material material = new Material(createProgram());
+		final VertexArray vertexArray = createVertexArray();
+		final RenderQueue queue = new RenderQueue();
+		final Random random = new Random(42);
+		int expectedVisible = 0;
+		for (int i = 0; i < 1000; i++) {
+			final Model model = new Model(vertexArray, material);
+			// In front or behind the camera, the triangle is always fully on one side
+			final boolean visible = random.nextBoolean();
+			model.setPosition(new Vector3f(random.nextFloat() - 0.5f, random.nextFloat() - 0.5f, visible ? -2 - random.nextFloat() * 50 : 2 + random.nextFloat() * 50));
+			if (visible) {
+				expectedVisible++;
+			}
+			queue.add(model);
+		}
+		queue.update(camera);
+		// Disabled by default
+		queue.cull(camera);
+		Assert.assertEquals(1000, queue.getVisibleCount());
+		Assert.assertEquals(0, queue.getCulledCount());
+		queue.setCullingEnabled(true);
+		queue.cull(camera);
+		Assert.assertEquals(expectedVisible, queue.getVisibleCount());
+		Assert.assertEquals(1000 - expectedVisible, queue.getCulledCount());
+		final boolean[] visible = new boolean[queue.size()];
+		for (int i = 0; i < queue.size(); i++) {
+			visible[i] = queue.isVisible(i);
+			Assert.assertEquals(queue.get(i).getPosition().getZ() < 0, visible[i]);
+		}
+		// Culling in parallel gives the same result
+		queue.setParallelCullingThreshold(1);
+		queue.cull(camera);
+		Assert.assertEquals(expectedVisible, queue.getVisibleCount());
+		for (int i = 0; i < queue.size(); i++) {
+			Assert.assertEquals(visible[i], queue.isVisible(i));
+		}
+		// Turning the camera around swaps the visible models
+		camera.setRotation(Quaternionf.fromAngleDegAxis(180, 0, 1, 0));
+		queue.update(camera);
+		queue.cull(camera);
+		Assert.assertEquals(1000 - expectedVisible, queue.getVisibleCount());
+		// Models without bounds are never culled
+		queue.get(0).setLocalBounds(null);
+		vertexArray.setBounds(null);
+		queue.cull(camera);
+		Assert.assertEquals(1000, queue.getVisibleCount());
+	}
+
+	private Program createProgram() {
+		final Program program = factory.createProgram();
+		for (String source : new String[]{VERTEX_SOURCE, FRAGMENT_SOURCE}) {
+			final Shader shader = factory.createShader();
+			shader.setSource(source);
+			shader.create();
+			program.addShader(shader);
+		}
+		program.create();
+		return program;
+	}
+
+	private Texture createTexture() {
+		final Texture texture = factory.createTexture();
+		texture.setImageData(null, 4, 4);
+		texture.create();
+		return texture;
+	}
+
+	private VertexArray createVertexArray() {
+		final VertexData data = new VertexData();
+		final VertexAttribute positions = new VertexAttribute("positions", DataType.FLOAT, 3);
+		positions.setData(new TFloatArrayList(new float[]{0, 0, 0, 1, 0, 0, 0, 1, 0}));
+		data.addAttribute(0, positions);
+		data.getIndices().add(new int[]{0, 1, 2});
+		final VertexArray vertexArray = factory.createVertexArray();
+		vertexArray.setData(data);
+		vertexArray.create();
+		return vertexArray;
+	}
+}
@@ -0,0 +1,324 @@
+/*
+ * This file is part of Caustic.
+ *
+ * Copyright (c) 2013 Spout LLC <http://www.spout.org/>
+ * Caustic is licensed under the Spout License Version 1.
+ *
+ * Caustic is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the Free
+ * Software Foundation, either version 3 of the License, or (at your option)
+ * any later version.
+ *
+ * In addition, 180 days after any changes are published, you can use the
+ * software, incorporating those changes, under the terms of the MIT license,
+ * as described in the Spout License Version 1.
+ *
+ * Caustic is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE.  See the GNU Lesser General Public License for
+ * more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License,
+ * the MIT license and the Spout License Version 1 along with this program.
+ * If not, see <http://www.gnu.org/licenses/> for the GNU Lesser General Public
+ * License and see <http://spout.in/licensev1> for the full license, including
+ * the MIT license.
+ */
+package org.spout.renderer.test;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+import gnu.trove.list.array.TFloatArrayList;
+import org.junit.Assert;
+import org.junit.Test;
+
+import org.spout.math.imaginary.Quaternionf;
+import org.spout.math.vector.Vector3f;
+import org.spout.renderer.Camera;
+import org.spout.renderer.Frustum;
+import org.spout.renderer.Material;
+import org.spout.renderer.Pipeline;
+import org.spout.renderer.Pipeline.PipelineBuilder;
+import org.spout.renderer.data.Bounds;
+import org.spout.renderer.data.VertexAttribute;
+import org.spout.renderer.data.VertexAttribute.DataType;
+import org.spout.renderer.data.VertexData;
+import org.spout.renderer.gl.Context;
+import org.spout.renderer.gl.GLFactory;
+import org.spout.renderer.gl.Program;
+import org.spout.renderer.gl.Shader;
+import org.spout.renderer.gl.VertexArray;
+import org.spout.renderer.headless.HeadlessGLFactory;
+import org.spout.renderer.model.Model;
+import org.spout.renderer.model.SpatialIndex;
+
+public class SpatialIndexTest {
+	private static final String VERTEX_SOURCE = "$shader_type: vertex\n"
+			+ "uniform mat4 modelMatrix;\n"
+			+ "void main() {}\n";
+	private static final String FRAGMENT_SOURCE = "$shader_type: fragment\n"
+			+ "void main() {}\n";
+	private final GLFactory factory = new HeadlessGLFactory();
+
+	@Test
+	public void testQueries() {
+		final Random random = new Random(42);
+		final List<Model> models = createModels(2000, random);
+		final SpatialIndex index = new SpatialIndex();
+		for (Model model : models) {
+			index.add(model);
+		}
+		Assert.assertEquals(2000, index.size());
+		checkQueries(index, models, random);
+		// The tree stays balanced
+		Assert.assertTrue(index.getHeight() <= 2 * 11);
+		// Move some models a little, some a lot, and rotate and scale others
+		for (int i = 0; i < 1000; i++) {
+			final Model model = models.get(random.nextInt(models.size()));
+			switch (random.nextInt(4)) {
+				case 0:
+					model.setPosition(model.getPosition().add(random.nextFloat() * 0.1f, 0, 0));
+					break;
+				case 1:
+					model.setPosition(randomPosition(random));
+					break;
+				case 2:
+					model.setRotation(Quaternionf.fromAngleDegAxis(random.nextFloat() * 360, 0, 1, 0));
+					break;
+				default:
+					model.setScale(new Vector3f(1, 1 + random.nextFloat() * 4, 1));
+			}
+		}
+		checkQueries(index, models, random);
+		// Remove half of the models
+		for (int i = 0; i < 1000; i++) {
+			final Model model = models.remove(random.nextInt(models.size()));
+			Assert.assertTrue(index.remove(model));
+			Assert.assertFalse(index.contains(model));
+		}
+		Assert.assertEquals(1000, index.size());
+		checkQueries(index, models, random);
+		Assert.assertTrue(index.getHeight() <= 2 * 10);
+		// Models can be moved to another index once removed
+		final SpatialIndex other = new SpatialIndex();
+		index.clear();
+		Assert.assertEquals(0, index.size());
+		Assert.assertEquals(-1, index.getHeight());
+		for (Model model : models) {
+			other.add(model);
+		}
+		checkQueries(other, models, random);
+	}
+
+	@Test
+	public void testUnbounded() {
+		final Random random = new Random(42);
+		final List<Model> models = createModels(10, random);
+		final SpatialIndex index = new SpatialIndex();
+		for (Model model : models) {
+			index.add(model);
+		}
+		final Model model = models.get(0);
+		model.setPosition(new Vector3f(1000, 1000, 1000));
+		model.getVertexArray().setBounds(null);
+		model.setLocalBounds(null);
+		final Camera camera = Camera.createPerspective(60, 640, 480, 0.1f, 100);
+		final List<Model> results = new ArrayList<>();
+		index.queryFrustum(camera.getFrustum(), results);
+		// Not culled, but not in the other queries
+		Assert.assertTrue(results.contains(model));
+		results.clear();
+		index.queryBox(new Vector3f(-1e6f, -1e6f, -1e6f), new Vector3f(1e6f, 1e6f, 1e6f), results);
+		Assert.assertFalse(results.contains(model));
+		Assert.assertEquals(9, results.size());
+		// Back in the tree when it has bounds again
+		model.setLocalBounds(new Bounds(new Vector3f(0, 0, 0), new Vector3f(1, 1, 1)));
+		results.clear();
+		index.querySphere(new Vector3f(1000, 1000, 1000), 0.5f, results);
+		Assert.assertEquals(1, results.size());
+		Assert.assertSame(model, results.get(0));
+	}
+
+	@Test
+	public void testRenderModels() {
+		final HeadlessGLFactory headlessFactory = (HeadlessGLFactory) factory;
+		final Context context = headlessFactory.createContext();
+		context.setWindowSize(640, 480);
+		context.create();
+		final List<Model> models = createModels(100, new Random(42));
+		final SpatialIndex index = new SpatialIndex();
+		for (int i = 0; i < models.size(); i++) {
+			// Every other model behind the camera
+			models.get(i).setPosition(new Vector3f(0, 0, i % 2 == 0 ? -10 : 10));
+			index.add(models.get(i));
+		}
+		final Camera camera = Camera.createPerspective(60, 640, 480, 0.1f, 100);
+		final Pipeline pipeline = new PipelineBuilder().useCamera(camera).renderModels(index).build();
+		pipeline.run(context);
+		Assert.assertEquals(50, headlessFactory.getCommandLog().getDrawCount());
+		// Moving the models updates the index
+		for (Model model : models) {
+			model.setPosition(new Vector3f(0, 0, -10));
+		}
+		pipeline.run(context);
+		Assert.assertEquals(150, headlessFactory.getCommandLog().getDrawCount());
+	}
+
+	@Test(expected = IllegalStateException.class)
+	public void testTwoIndices() {
+		final Model model = createModels(1, new Random(42)).get(0);
+		new SpatialIndex().add(model);
+		new SpatialIndex().add(model);
+	}
+
+	@Test
+	public void testRay() {
+		final Random random = new Random(42);
+		final List<Model> models = createModels(5, random);
+		final SpatialIndex index = new SpatialIndex();
+		for (int i = 0; i < models.size(); i++) {
+			models.get(i).setPosition(new Vector3f(i * 10, 0, 0));
+			index.add(models.get(i));
+		}
+		final List<Model> results = new ArrayList<>();
+		// Along the edge of the triangles, parallel to two axes
+		index.queryRay(new Vector3f(-5, 0, 0), new Vector3f(1, 0, 0), 100, results);
+		Assert.assertEquals(5, results.size());
+		results.clear();
+		index.queryRay(new Vector3f(-5, 0, 0), new Vector3f(1, 0, 0), 20, results);
+		Assert.assertEquals(2, results.size());
+		results.clear();
+		index.queryRay(new Vector3f(20.5f, 10, 0), new Vector3f(0, -1, 0), 100, results);
+		Assert.assertEquals(1, results.size());
+		Assert.assertSame(models.get(2), results.get(0));
+		results.clear();
+		index.queryRay(new Vector3f(20.5f, 10, 0), new Vector3f(0, 1, 0), 100, results);
+		Assert.assertTrue(results.isEmpty());
+	}
+
+	private void checkQueries(SpatialIndex index, List<Model> models, Random random) {
+		final List<Model> results = new ArrayList<>();
+		for (int i = 0; i < 20; i++) {
+			// Frustum
+			final Camera camera = Camera.createPerspective(60, 640, 480, 0.1f, 50);
+			camera.setPosition(randomPosition(random));
+			camera.setRotation(Quaternionf.fromAngleDegAxis(random.nextFloat() * 360, 0, 1, 0));
+			final Frustum frustum = camera.getFrustum();
+			final Set<Model> expected = new HashSet<>();
+			for (Model model : models) {
+				if (frustum.intersects(model.getBounds())) {
+					expected.add(model);
+				}
+			}
+			results.clear();
+			index.queryFrustum(frustum, results);
+			Assert.assertEquals(expected.size(), results.size());
+			Assert.assertEquals(expected, new HashSet<>(results));
+			// Sphere
+			final Vector3f center = randomPosition(random);
+			final float radius = random.nextFloat() * 20;
+			expected.clear();
+			for (Model model : models) {
+				final Vector3f min = model.getBounds().getMin();
+				final Vector3f max = model.getBounds().getMax();
+				final Vector3f closest = new Vector3f(clamp(center.getX(), min.getX(), max.getX()), clamp(center.getY(), min.getY(), max.getY()), clamp(center.getZ(), min.getZ(), max.getZ()));
+				if (closest.distance(center) <= radius) {
+					expected.add(model);
+				}
+			}
+			results.clear();
+			index.querySphere(center, radius, results);
+			Assert.assertEquals(expected, new HashSet<>(results));
+			// Box
+			final Vector3f boxMin = randomPosition(random);
+			final Vector3f boxMax = boxMin.add(random.nextFloat() * 20, random.nextFloat() * 20, random.nextFloat() * 20);
+			expected.clear();
+			for (Model model : models) {
+				final Vector3f min = model.getBounds().getMin();
+				final Vector3f max = model.getBounds().getMax();
+				if (min.getX() <= boxMax.getX() && min.getY() <= boxMax.getY() && min.getZ() <= boxMax.getZ()
+						&& max.getX() >= boxMin.getX() && max.getY() >= boxMin.getY() && max.getZ() >= boxMin.getZ()) {
+					expected.add(model);
+				}
+			}
+			results.clear();
+			index.queryBox(boxMin, boxMax, results);
+			Assert.assertEquals(expected, new HashSet<>(results));
+			// Ray
+			final Vector3f origin = randomPosition(random);
+			final Vector3f direction = new Vector3f(random.nextFloat() - 0.5f, random.nextFloat() - 0.5f, random.nextFloat() - 0.5f);
+			expected.clear();
+			for (Model model : models) {
+				if (hits(origin, direction, 50, model.getBounds())) {
+					expected.add(model);
+				}
+			}
+			results.clear();
+			index.queryRay(origin, direction, 50, results);
+			Assert.assertEquals(expected, new HashSet<>(results));
+		}
+	}
+
+	// Reference ray test, intersecting the ray segment with the slabs of the box one axis at a time
+	private static boolean hits(Vector3f origin, Vector3f direction, float maxDistance, Bounds bounds) {
+		final float[] o = {origin.getX(), origin.getY(), origin.getZ()};
+		final float[] d = {direction.getX(), direction.getY(), direction.getZ()};
+		final float[] min = {bounds.getMin().getX(), bounds.getMin().getY(), bounds.getMin().getZ()};
+		final float[] max = {bounds.getMax().getX(), bounds.getMax().getY(), bounds.getMax().getZ()};
+		double near = 0;
+		double far = maxDistance;
+		for (int i = 0; i < 3; i++) {
+			if (d[i] == 0) {
+				if (o[i] < min[i] || o[i] > max[i]) {
+					return false;
+				}
+				continue;
+			}
+			final double t1 = (min[i] - o[i]) / (double) d[i];
+			final double t2 = (max[i] - o[i]) / (double) d[i];
+			near = Math.max(near, Math.min(t1, t2));
+			far = Math.min(far, Math.max(t1, t2));
+		}
+		return near <= far;
+	}
+
+	private static float clamp(float value, float min, float max) {
+		return Math.max(min, Math.min(max, value));
+	}
+
+	private static Vector3f randomPosition(Random random) {
+		return new Vector3f(random.nextFloat() * 200 - 100, random.nextFloat() * 200 - 100, random.nextFloat() * 200 - 100);
+	}
+
+	private List<Model> createModels(int count, Random random) {
+		final Program program = factory.createProgram();
+		for (String source : new String[]{VERTEX_SOURCE, FRAGMENT_SOURCE}) {
+			final Shader shader = factory.createShader();
+			shader.setSource(source);
+			shader.create();
+			program.addShader(shader);
+		}
+		program.create();
+		final Material material = new Material(program);
+		final List<Model> models = new ArrayList<>();
+		for (int i = 0; i < count; i++) {
+			// Each model has its own vertex array, so that their bounds can be cleared separately
+			final VertexData data = new VertexData();
+			final VertexAttribute positions = new VertexAttribute("positions", DataType.FLOAT, 3);
+			positions.setData(new TFloatArrayList(new float[]{0, 0, 0, 1, 0, 0, 0, 1, 0}));
+			data.addAttribute(0, positions);
+			data.getIndices().add(new int[]{0, 1, 2});
+			final VertexArray vertexArray = factory.createVertexArray();
+			vertexArray.setData(data);
+			vertexArray.create();
+			final Model model = new Model(vertexArray, material);
+			model.setPosition(randomPosition(random));
+			models.add(model);
+		}
+		return models;
+	}
+}
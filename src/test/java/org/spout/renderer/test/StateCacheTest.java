@@ -0,0 +1,155 @@
+/*
+ * This file is part of Caustic.
+ *
+ * Copyright (c) 2013 Spout LLC <http://www.spout.org/>
+ * Caustic is licensed under the Spout License Version 1.
+ *
+ * Caustic is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the Free
+ * Software Foundation, either version 3 of the License, or (at your option)
+ * any later version.
+ *
+ * In addition, 180 days after any changes are published, you can use the
+ * software, incorporating those changes, under the terms of the MIT license,
+ * as described in the Spout License Version 1.
+ *
+ * Caustic is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE.  See the GNU Lesser General Public License for
+ * more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License,
+ * the MIT license and the Spout License Version 1 along with this program.
+ * If not, see <http://www.gnu.org/licenses/> for the GNU Lesser General Public
+ * License and see <http://spout.in/licensev1> for the full license, including
+ * the MIT license.
+ */
+package org.spout.renderer.test;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import org.spout.renderer.gl.Context.Capability;
+import org.spout.renderer.gl.StateCache;
+
+public class StateCacheTest {
+	private static final int ARRAY_BUFFER = 0x8892;
+	private static final int ELEMENT_ARRAY_BUFFER = 0x8893;
+	private static final int UNIFORM_BUFFER = 0x8A11;
+
+	@Test
+	public void testBindings() {
+		final StateCache cache = new StateCache();
+		// The state starts unknown
+		Assert.assertTrue(cache.useProgram(0));
+		Assert.assertTrue(cache.useProgram(1));
+		Assert.assertFalse(cache.useProgram(1));
+		Assert.assertTrue(cache.bindFrameBuffer(2));
+		Assert.assertFalse(cache.bindFrameBuffer(2));
+		Assert.assertTrue(cache.bindFrameBuffer(0));
+		Assert.assertEquals(2, cache.getSkippedCount());
+		// Other buffer targets aren't tracked
+		Assert.assertTrue(cache.bindBuffer(ARRAY_BUFFER, 3));
+		Assert.assertFalse(cache.bindBuffer(ARRAY_BUFFER, 3));
+		Assert.assertTrue(cache.bindBuffer(0x88EB, 3));
+		Assert.assertTrue(cache.bindBuffer(0x88EB, 3));
+		// Deleting unbinds
+		cache.deleteProgram(1);
+		Assert.assertTrue(cache.useProgram(1));
+		cache.deleteBuffer(3);
+		Assert.assertFalse(cache.bindBuffer(ARRAY_BUFFER, 0));
+		cache.resetSkippedCount();
+		Assert.assertEquals(0, cache.getSkippedCount());
+		cache.invalidate();
+		Assert.assertTrue(cache.useProgram(1));
+		Assert.assertTrue(cache.bindBuffer(ARRAY_BUFFER, 0));
+	}
+
+	@Test
+	public void testUniformBuffers() {
+		final StateCache cache = new StateCache();
+		Assert.assertTrue(cache.bindUniformBufferBase(0, 1));
+		Assert.assertFalse(cache.bindUniformBufferBase(0, 1));
+		Assert.assertTrue(cache.bindUniformBufferBase(1, 1));
+		// Binding to an indexed point also binds the generic target
+		Assert.assertFalse(cache.bindBuffer(UNIFORM_BUFFER, 1));
+		Assert.assertTrue(cache.bindBuffer(UNIFORM_BUFFER, 2));
+		Assert.assertFalse(cache.bindUniformBufferBase(0, 1));
+		// Deleting unbinds from all the points
+		cache.deleteBuffer(1);
+		Assert.assertFalse(cache.bindUniformBufferBase(0, 0));
+		Assert.assertFalse(cache.bindUniformBufferBase(1, 0));
+		Assert.assertTrue(cache.bindUniformBufferBase(1, 2));
+		cache.invalidate();
+		Assert.assertTrue(cache.bindUniformBufferBase(1, 2));
+	}
+
+	@Test
+	public void testVertexArray() {
+		final StateCache cache = new StateCache();
+		Assert.assertTrue(cache.bindVertexArray(1));
+		Assert.assertTrue(cache.bindBuffer(ELEMENT_ARRAY_BUFFER, 2));
+		Assert.assertTrue(cache.enableVertexAttribute(0));
+		Assert.assertTrue(cache.enableVertexAttribute(3));
+		Assert.assertFalse(cache.enableVertexAttribute(3));
+		Assert.assertEquals(0b1001, cache.getEnabledVertexAttributes());
+		// The indices buffer and the attributes belong to the vertex array
+		Assert.assertTrue(cache.bindVertexArray(4));
+		Assert.assertEquals(0, cache.getEnabledVertexAttributes());
+		Assert.assertTrue(cache.bindBuffer(ELEMENT_ARRAY_BUFFER, 2));
+		Assert.assertFalse(cache.bindBuffer(ELEMENT_ARRAY_BUFFER, 2));
+		// But not the array buffer
+		Assert.assertTrue(cache.bindBuffer(ARRAY_BUFFER, 5));
+		Assert.assertFalse(cache.bindVertexArray(4));
+		Assert.assertTrue(cache.bindVertexArray(1));
+		Assert.assertFalse(cache.bindBuffer(ARRAY_BUFFER, 5));
+		cache.deleteVertexArray(1);
+		Assert.assertFalse(cache.bindVertexArray(0));
+		// The pointers owner is forgotten with its buffer
+		Assert.assertTrue(cache.setVertexAttributesOwner(6));
+		Assert.assertFalse(cache.setVertexAttributesOwner(6));
+		cache.deleteBuffer(6);
+		Assert.assertTrue(cache.setVertexAttributesOwner(6));
+	}
+
+	@Test
+	public void testTextures() {
+		final StateCache cache = new StateCache();
+		// Bindings can't be tracked until the unit is known
+		Assert.assertTrue(cache.bindTexture(1));
+		Assert.assertTrue(cache.bindTexture(1));
+		Assert.assertTrue(cache.activeTexture(0));
+		Assert.assertTrue(cache.bindTexture(1));
+		Assert.assertFalse(cache.bindTexture(1));
+		Assert.assertTrue(cache.activeTexture(1));
+		Assert.assertTrue(cache.bindTexture(1));
+		Assert.assertTrue(cache.bindTexture(2));
+		Assert.assertFalse(cache.activeTexture(1));
+		// Deleting unbinds from all the units
+		cache.deleteTexture(1);
+		Assert.assertFalse(cache.bindTexture(2));
+		Assert.assertTrue(cache.activeTexture(0));
+		Assert.assertFalse(cache.bindTexture(0));
+	}
+
+	@Test
+	public void testContextState() {
+		final StateCache cache = new StateCache();
+		Assert.assertTrue(cache.disableCapability(Capability.BLEND));
+		Assert.assertFalse(cache.disableCapability(Capability.BLEND));
+		Assert.assertTrue(cache.enableCapability(Capability.BLEND));
+		Assert.assertTrue(cache.enableCapability(Capability.DEPTH_TEST));
+		Assert.assertFalse(cache.enableCapability(Capability.BLEND));
+		Assert.assertTrue(cache.setViewPort(0, 0, 640, 480));
+		Assert.assertFalse(cache.setViewPort(0, 0, 640, 480));
+		Assert.assertTrue(cache.setViewPort(0, 0, 320, 240));
+		Assert.assertTrue(cache.setClearColor(0, 0, 0, 1));
+		Assert.assertFalse(cache.setClearColor(0, 0, 0, 1));
+		Assert.assertTrue(cache.setClearColor(0.5f, 0, 0, 1));
+		Assert.assertEquals(4, cache.getSkippedCount());
+		cache.invalidate();
+		Assert.assertTrue(cache.enableCapability(Capability.BLEND));
+		Assert.assertTrue(cache.setViewPort(0, 0, 320, 240));
+		Assert.assertTrue(cache.setClearColor(0.5f, 0, 0, 1));
+	}
+}
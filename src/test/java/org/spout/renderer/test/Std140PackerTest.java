@@ -0,0 +1,185 @@
+/*
+ * This file is part of Caustic.
+ *
+ * Copyright (c) 2013 Spout LLC <http://www.spout.org/>
+ * Caustic is licensed under the Spout License Version 1.
+ *
+ * Caustic is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the Free
+ * Software Foundation, either version 3 of the License, or (at your option)
+ * any later version.
+ *
+ * In addition, 180 days after any changes are published, you can use the
+ * software, incorporating those changes, under the terms of the MIT license,
+ * as described in the Spout License Version 1.
+ *
+ * Caustic is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE.  See the GNU Lesser General Public License for
+ * more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License,
+ * the MIT license and the Spout License Version 1 along with this program.
+ * If not, see <http://www.gnu.org/licenses/> for the GNU Lesser General Public
+ * License and see <http://spout.in/licensev1> for the full license, including
+ * the MIT license.
+ */
+package org.spout.renderer.test;
+
+import java.nio.ByteBuffer;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import org.spout.math.matrix.Matrix2f;
+import org.spout.math.matrix.Matrix3f;
+import org.spout.math.matrix.Matrix4f;
+import org.spout.math.vector.Vector2f;
+import org.spout.math.vector.Vector3f;
+import org.spout.math.vector.Vector4f;
+import org.spout.renderer.data.Color;
+import org.spout.renderer.data.Uniform.BooleanUniform;
+import org.spout.renderer.data.Uniform.ColorUniform;
+import org.spout.renderer.data.Uniform.FloatUniform;
+import org.spout.renderer.data.Uniform.Matrix4Uniform;
+import org.spout.renderer.data.Uniform.Vector3Uniform;
+import org.spout.renderer.data.UniformHolder;
+import org.spout.renderer.util.Std140Packer;
+
+public class Std140PackerTest {
+	@Test
+	public void testScalarsAndVectors() {
+		final Std140Packer packer = new Std140Packer();
+		packer.pack(1f);
+		Assert.assertEquals(4, packer.getPosition());
+		// Two component vectors are aligned to 8 bytes
+		packer.pack(new Vector2f(2, 3));
+		Assert.assertEquals(16, packer.getPosition());
+		packer.pack(true);
+		// Three component vectors are aligned to 16 bytes, and leave room for a scalar
+		packer.pack(new Vector3f(4, 5, 6));
+		Assert.assertEquals(44, packer.getPosition());
+		packer.pack(7);
+		Assert.assertEquals(48, packer.getPosition());
+		packer.pack(new Vector4f(8, 9, 10, 11));
+		packer.pack(new Vector2f(12, 13));
+		Assert.assertEquals(72, packer.getPosition());
+		// The size is rounded up to 16 bytes
+		Assert.assertEquals(80, packer.getSize());
+		final ByteBuffer buffer = packer.getBuffer();
+		Assert.assertEquals(0, buffer.position());
+		Assert.assertEquals(80, buffer.limit());
+		Assert.assertEquals(1, buffer.getFloat(0), 0);
+		Assert.assertEquals(2, buffer.getFloat(8), 0);
+		Assert.assertEquals(3, buffer.getFloat(12), 0);
+		Assert.assertEquals(1, buffer.getInt(16));
+		// Padding is zeroed
+		Assert.assertEquals(0, buffer.getInt(20));
+		Assert.assertEquals(4, buffer.getFloat(32), 0);
+		Assert.assertEquals(6, buffer.getFloat(40), 0);
+		Assert.assertEquals(7, buffer.getInt(44));
+		Assert.assertEquals(8, buffer.getFloat(48), 0);
+		Assert.assertEquals(11, buffer.getFloat(60), 0);
+		Assert.assertEquals(12, buffer.getFloat(64), 0);
+		Assert.assertEquals(0, buffer.getInt(76));
+	}
+
+	@Test
+	public void testArrays() {
+		final Std140Packer packer = new Std140Packer();
+		packer.pack(1f);
+		// Arrays are aligned to 16 bytes and each element takes 16 bytes
+		packer.pack(new Vector2f[]{new Vector2f(2, 3), new Vector2f(4, 5)});
+		Assert.assertEquals(48, packer.getPosition());
+		packer.pack(new Vector3f[]{new Vector3f(6, 7, 8), new Vector3f(9, 10, 11)});
+		Assert.assertEquals(80, packer.getPosition());
+		final ByteBuffer buffer = packer.getBuffer();
+		Assert.assertEquals(2, buffer.getFloat(16), 0);
+		Assert.assertEquals(3, buffer.getFloat(20), 0);
+		Assert.assertEquals(0, buffer.getInt(24));
+		Assert.assertEquals(4, buffer.getFloat(32), 0);
+		Assert.assertEquals(6, buffer.getFloat(48), 0);
+		Assert.assertEquals(8, buffer.getFloat(56), 0);
+		Assert.assertEquals(0, buffer.getInt(60));
+		Assert.assertEquals(9, buffer.getFloat(64), 0);
+	}
+
+	@Test
+	public void testMatrices() {
+		final Std140Packer packer = new Std140Packer();
+		packer.pack(1f);
+		// Matrices are aligned to 16 bytes, packed by column, each column taking 16 bytes
+		packer.pack(new Matrix2f(2, 3, 4, 5));
+		Assert.assertEquals(48, packer.getPosition());
+		packer.pack(new Matrix3f(6, 7, 8, 9, 10, 11, 12, 13, 14));
+		Assert.assertEquals(96, packer.getPosition());
+		final Matrix4f matrix4 = Matrix4f.createTranslation(new Vector3f(15, 16, 17));
+		packer.pack(matrix4);
+		Assert.assertEquals(160, packer.getPosition());
+		final ByteBuffer buffer = packer.getBuffer();
+		// First column of the 2x2 matrix, then the second
+		Assert.assertEquals(2, buffer.getFloat(16), 0);
+		Assert.assertEquals(4, buffer.getFloat(20), 0);
+		Assert.assertEquals(0, buffer.getInt(24));
+		Assert.assertEquals(3, buffer.getFloat(32), 0);
+		Assert.assertEquals(5, buffer.getFloat(36), 0);
+		// First and last columns of the 3x3 matrix
+		Assert.assertEquals(6, buffer.getFloat(48), 0);
+		Assert.assertEquals(9, buffer.getFloat(52), 0);
+		Assert.assertEquals(12, buffer.getFloat(56), 0);
+		Assert.assertEquals(0, buffer.getInt(60));
+		Assert.assertEquals(8, buffer.getFloat(80), 0);
+		Assert.assertEquals(14, buffer.getFloat(88), 0);
+		// The translation is in the last column of the 4x4 matrix
+		final float[] columnMajor = matrix4.toArray(true);
+		for (int i = 0; i < 16; i++) {
+			Assert.assertEquals(columnMajor[i], buffer.getFloat(96 + i * 4), 0);
+		}
+		Assert.assertEquals(15, buffer.getFloat(96 + 48), 0);
+	}
+
+	@Test
+	public void testUniforms() {
+		final UniformHolder uniforms = new UniformHolder();
+		uniforms.add(new Matrix4Uniform("matrix", new Matrix4f()));
+		uniforms.add(new Vector3Uniform("position", new Vector3f(1, 2, 3)));
+		uniforms.add(new FloatUniform("scale", 4));
+		uniforms.add(new BooleanUniform("enabled", true));
+		uniforms.add(new ColorUniform("color", Color.WHITE));
+		final Std140Packer packer = new Std140Packer();
+		packer.pack(uniforms);
+		// The uniforms are packed in the order they were added
+		final ByteBuffer buffer = packer.getBuffer();
+		Assert.assertEquals(112, buffer.remaining());
+		Assert.assertEquals(1, buffer.getFloat(0), 0);
+		Assert.assertEquals(1, buffer.getFloat(64), 0);
+		Assert.assertEquals(4, buffer.getFloat(76), 0);
+		Assert.assertEquals(1, buffer.getInt(80));
+		// Colors are normalized
+		Assert.assertEquals(1, buffer.getFloat(96), 0);
+		Assert.assertEquals(1, buffer.getFloat(108), 0);
+		// Packing again after a reset gives the same data
+		final byte[] packed = new byte[buffer.remaining()];
+		buffer.get(packed);
+		packer.reset();
+		packer.pack(uniforms);
+		final byte[] repacked = new byte[packed.length];
+		packer.getBuffer().get(repacked);
+		Assert.assertArrayEquals(packed, repacked);
+	}
+
+	@Test
+	public void testGrowth() {
+		final Std140Packer packer = new Std140Packer(16);
+		for (int i = 0; i < 10; i++) {
+			packer.pack(new Vector4f(i, i, i, i));
+		}
+		packer.pack(10f);
+		final ByteBuffer buffer = packer.getBuffer();
+		Assert.assertEquals(176, buffer.remaining());
+		for (int i = 0; i < 10; i++) {
+			Assert.assertEquals(i, buffer.getFloat(i * 16 + 12), 0);
+		}
+		Assert.assertEquals(10, buffer.getFloat(160), 0);
+	}
+}
@@ -0,0 +1,134 @@
+/*
+ * This file is part of Caustic.
+ *
+ * Copyright (c) 2013 Spout LLC <http://www.spout.org/>
+ * Caustic is licensed under the Spout License Version 1.
+ *
+ * Caustic is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the Free
+ * Software Foundation, either version 3 of the License, or (at your option)
+ * any later version.
+ *
+ * In addition, 180 days after any changes are published, you can use the
+ * software, incorporating those changes, under the terms of the MIT license,
+ * as described in the Spout License Version 1.
+ *
+ * Caustic is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE.  See the GNU Lesser General Public License for
+ * more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License,
+ * the MIT license and the Spout License Version 1 along with this program.
+ * If not, see <http://www.gnu.org/licenses/> for the GNU Lesser General Public
+ * License and see <http://spout.in/licensev1> for the full license, including
+ * the MIT license.
+ */
+package org.spout.renderer.test;
+
+/**
+ * Generates Collada files for the tests.
+ */
+final class TestColladaFiles {
+	private TestColladaFiles() {
+	}
+
+	/**
+	 * Creates a document with grids of quads over the unit square, with a height variation, texture coords and normals. Each vertex uses the same index for all three sources. Number arrays are
+	 * separated by single spaces, as expected by {@link org.spout.renderer.util.ColladaFileLoader#loadMesh(java.io.InputStream, gnu.trove.list.TFloatList, gnu.trove.list.TFloatList,
+	 * gnu.trove.list.TFloatList, gnu.trove.list.TIntList)}.
+	 *
+	 * @param size The number of quads on each side
+	 * @param geometries The number of grid geometries
+	 * @param polylist Whether to use a "polylist" of quads instead of "triangles"
+	 * @return The document
+	 */
+	static byte[] createGrid(int size, int geometries, boolean polylist) {
+		final int vertexCount = (size + 1) * (size + 1);
+		final StringBuilder builder = new StringBuilder();
+		builder.append("<?xml version=\"1.0\" encoding=\"utf-8\"?>\n");
+		builder.append("<COLLADA xmlns=\"http://www.collada.org/2005/11/COLLADASchema\" version=\"1.4.1\">\n");
+		builder.append("<library_geometries>\n");
+		for (int g = 0; g < geometries; g++) {
+			final String id = "grid" + g;
+			builder.append("<geometry id=\"").append(id).append("\" name=\"Grid").append(g).append("\">\n<mesh>\n");
+			// Positions
+			builder.append("<source id=\"").append(id).append("-positions\">\n<float_array id=\"").append(id).append("-positions-array\" count=\"").append(vertexCount * 3).append("\">");
+			for (int y = 0; y <= size; y++) {
+				for (int x = 0; x <= size; x++) {
+					appendSeparator(builder, x, y);
+					builder.append(x / (float) size).append(' ').append(y / (float) size).append(' ').append((x * 7 + y * 3 + g) % 5 / 100f);
+				}
+			}
+			builder.append("</float_array>\n");
+			appendAccessor(builder, id + "-positions-array", vertexCount, 3);
+			// Normals, varying per vertex
+			builder.append("<source id=\"").append(id).append("-normals\">\n<float_array id=\"").append(id).append("-normals-array\" count=\"").append(vertexCount * 3).append("\">");
+			for (int y = 0; y <= size; y++) {
+				for (int x = 0; x <= size; x++) {
+					appendSeparator(builder, x, y);
+					builder.append((x % 3 - 1) / 10f).append(' ').append((y % 3 - 1) / 10f).append(" 1");
+				}
+			}
+			builder.append("</float_array>\n");
+			appendAccessor(builder, id + "-normals-array", vertexCount, 3);
+			// Texture coords
+			builder.append("<source id=\"").append(id).append("-map\">\n<float_array id=\"").append(id).append("-map-array\" count=\"").append(vertexCount * 2).append("\">");
+			for (int y = 0; y <= size; y++) {
+				for (int x = 0; x <= size; x++) {
+					appendSeparator(builder, x, y);
+					builder.append(x / (float) size).append(' ').append(y / (float) size);
+				}
+			}
+			builder.append("</float_array>\n");
+			appendAccessor(builder, id + "-map-array", vertexCount, 2);
+			builder.append("<vertices id=\"").append(id).append("-vertices\">\n<input semantic=\"POSITION\" source=\"#").append(id).append("-positions\"/>\n</vertices>\n");
+			// Primitive
+			final int quadCount = size * size;
+			builder.append(polylist ? "<polylist" : "<triangles").append(" material=\"material").append(g).append("\" count=\"").append(polylist ? quadCount : quadCount * 2).append("\">\n");
+			builder.append("<input semantic=\"VERTEX\" source=\"#").append(id).append("-vertices\" offset=\"0\"/>\n");
+			builder.append("<input semantic=\"NORMAL\" source=\"#").append(id).append("-normals\" offset=\"1\"/>\n");
+			builder.append("<input semantic=\"TEXCOORD\" source=\"#").append(id).append("-map\" offset=\"2\" set=\"0\"/>\n");
+			if (polylist) {
+				builder.append("<vcount>");
+				for (int i = 0; i < quadCount; i++) {
+					builder.append(i == 0 ? "4" : " 4");
+				}
+				builder.append("</vcount>\n");
+			}
+			builder.append("<p>");
+			for (int y = 0; y < size; y++) {
+				for (int x = 0; x < size; x++) {
+					final int i = y * (size + 1) + x;
+					final int[] corners = polylist ? new int[]{i, i + 1, i + size + 2, i + size + 1} : new int[]{i, i + 1, i + size + 2, i, i + size + 2, i + size + 1};
+					for (int c = 0; c < corners.length; c++) {
+						if (x != 0 || y != 0 || c != 0) {
+							builder.append(' ');
+						}
+						builder.append(corners[c]).append(' ').append(corners[c]).append(' ').append(corners[c]);
+					}
+				}
+			}
+			builder.append("</p>\n");
+			builder.append(polylist ? "</polylist>\n" : "</triangles>\n");
+			builder.append("</mesh>\n</geometry>\n");
+		}
+		builder.append("</library_geometries>\n");
+		builder.append("</COLLADA>\n");
+		return builder.toString().getBytes();
+	}
+
+	private static void appendSeparator(StringBuilder builder, int x, int y) {
+		if (x != 0 || y != 0) {
+			builder.append(' ');
+		}
+	}
+
+	private static void appendAccessor(StringBuilder builder, String arrayID, int count, int stride) {
+		builder.append("<technique_common>\n<accessor source=\"#").append(arrayID).append("\" count=\"").append(count).append("\" stride=\"").append(stride).append("\">\n");
+		for (int i = 0; i < stride; i++) {
+			builder.append("<param name=\"").append("XYZ".charAt(i)).append("\" type=\"float\"/>\n");
+		}
+		builder.append("</accessor>\n</technique_common>\n</source>\n");
+	}
+}
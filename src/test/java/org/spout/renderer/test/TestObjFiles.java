@@ -0,0 +1,116 @@
+/*
+ * This file is part of Caustic.
+ *
+ * Copyright (c) 2013 Spout LLC <http://www.spout.org/>
+ * Caustic is licensed under the Spout License Version 1.
+ *
+ * Caustic is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the Free
+ * Software Foundation, either version 3 of the License, or (at your option)
+ * any later version.
+ *
+ * In addition, 180 days after any changes are published, you can use the
+ * software, incorporating those changes, under the terms of the MIT license,
+ * as described in the Spout License Version 1.
+ *
+ * Caustic is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE.  See the GNU Lesser General Public License for
+ * more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License,
+ * the MIT license and the Spout License Version 1 along with this program.
+ * If not, see <http://www.gnu.org/licenses/> for the GNU Lesser General Public
+ * License and see <http://spout.in/licensev1> for the full license, including
+ * the MIT license.
+ */
+package org.spout.renderer.test;
+
+import java.io.ByteArrayInputStream;
+
+import gnu.trove.list.TFloatList;
+import gnu.trove.list.TIntList;
+import gnu.trove.list.array.TFloatArrayList;
+import gnu.trove.list.array.TIntArrayList;
+
+import org.spout.math.vector.Vector3f;
+import org.spout.renderer.data.VertexAttribute;
+import org.spout.renderer.data.VertexAttribute.DataType;
+import org.spout.renderer.data.VertexData;
+import org.spout.renderer.util.ObjFileLoader;
+
+/**
+ * Generates .obj files for the tests.
+ */
+final class TestObjFiles {
+	private TestObjFiles() {
+	}
+
+	/**
+	 * Creates a triangulated grid of quads over the unit square, with a slight height variation, texture coords and normals. Each vertex uses the same index for all three attributes.
+	 *
+	 * @param size The number of quads on each side
+	 * @return The .obj file contents
+	 */
+	static byte[] createGrid(int size) {
+		final StringBuilder builder = new StringBuilder();
+		builder.append("# Test grid\n");
+		for (int y = 0; y <= size; y++) {
+			for (int x = 0; x <= size; x++) {
+				builder.append("v ").append(x / (float) size).append(' ').append(y / (float) size).append(' ').append((x * 7 + y * 3) % 5 / 100f).append('\n');
+			}
+		}
+		for (int y = 0; y <= size; y++) {
+			for (int x = 0; x <= size; x++) {
+				builder.append("vt ").append(x / (float) size).append(' ').append(y / (float) size).append('\n');
+			}
+		}
+		for (int y = 0; y <= size; y++) {
+			for (int x = 0; x <= size; x++) {
+				builder.append("vn 0 0 1\n");
+			}
+		}
+		for (int y = 0; y < size; y++) {
+			for (int x = 0; x < size; x++) {
+				final int i = y * (size + 1) + x + 1;
+				appendFace(builder, i, i + 1, i + size + 2);
+				appendFace(builder, i, i + size + 2, i + size + 1);
+			}
+		}
+		return builder.toString().getBytes();
+	}
+
+	private static void appendFace(StringBuilder builder, int a, int b, int c) {
+		builder.append('f');
+		for (int i : new int[]{a, b, c}) {
+			builder.append(' ').append(i).append('/').append(i).append('/').append(i);
+		}
+		builder.append('\n');
+	}
+
+	/**
+	 * Loads the .obj file contents with the {@link ObjFileLoader} into vertex data, with the positions at index 0, the texture coords at 1 and the normals at 2.
+	 *
+	 * @param obj The .obj file contents
+	 * @return The loaded vertex data
+	 */
+	static VertexData load(byte[] obj) {
+		final TFloatList positions = new TFloatArrayList();
+		final TFloatList textureCoords = new TFloatArrayList();
+		final TFloatList normals = new TFloatArrayList();
+		final TIntList indices = new TIntArrayList();
+		final Vector3f sizes = ObjFileLoader.load(new ByteArrayInputStream(obj), positions, textureCoords, normals, indices);
+		final VertexData data = new VertexData();
+		final VertexAttribute positionsAttribute = new VertexAttribute("positions", DataType.FLOAT, (int) sizes.getX());
+		positionsAttribute.setData(positions);
+		data.addAttribute(0, positionsAttribute);
+		final VertexAttribute textureCoordsAttribute = new VertexAttribute("textureCoords", DataType.FLOAT, (int) sizes.getY());
+		textureCoordsAttribute.setData(textureCoords);
+		data.addAttribute(1, textureCoordsAttribute);
+		final VertexAttribute normalsAttribute = new VertexAttribute("normals", DataType.FLOAT, (int) sizes.getZ());
+		normalsAttribute.setData(normals);
+		data.addAttribute(2, normalsAttribute);
+		data.getIndices().addAll(indices);
+		return data;
+	}
+}
@@ -0,0 +1,204 @@
+/*
+ * This file is part of Caustic.
+ *
+ * Copyright (c) 2013 Spout LLC <http://www.spout.org/>
+ * Caustic is licensed under the Spout License Version 1.
+ *
+ * Caustic is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the Free
+ * Software Foundation, either version 3 of the License, or (at your option)
+ * any later version.
+ *
+ * In addition, 180 days after any changes are published, you can use the
+ * software, incorporating those changes, under the terms of the MIT license,
+ * as described in the Spout License Version 1.
+ *
+ * Caustic is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE.  See the GNU Lesser General Public License for
+ * more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License,
+ * the MIT license and the Spout License Version 1 along with this program.
+ * If not, see <http://www.gnu.org/licenses/> for the GNU Lesser General Public
+ * License and see <http://spout.in/licensev1> for the full license, including
+ * the MIT license.
+ */
+package org.spout.renderer.test;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+
+import gnu.trove.list.array.TFloatArrayList;
+import org.junit.Assert;
+import org.junit.Test;
+
+import org.spout.math.vector.Vector3f;
+import org.spout.renderer.data.Bounds;
+import org.spout.renderer.data.VertexAttribute;
+import org.spout.renderer.data.VertexAttribute.DataType;
+import org.spout.renderer.data.VertexData;
+import org.spout.renderer.gl.VertexArray;
+import org.spout.renderer.gl.VertexArray.LayoutMode;
+import org.spout.renderer.gl.VertexArray.UsageHint;
+
+public class VertexArrayTest {
+	@Test
+	public void testPartialUpdate() {
+		final VertexData data = createData(8);
+		final RecordingVertexArray vertexArray = new RecordingVertexArray();
+		vertexArray.setData(data);
+		vertexArray.setUsageHint(UsageHint.DYNAMIC);
+		vertexArray.create();
+		// The indices are uploaded first, then the two attribute ranges separately
+		data.getAttribute(0).getWritableData().putFloat(4, 42);
+		vertexArray.markAttributeDirty(0, 4, 8);
+		vertexArray.markAttributeDirty(0, 16, 24);
+		vertexArray.markIndicesDirty(1, 3);
+		vertexArray.update();
+		Assert.assertEquals("[sub 34963 1 2, sub 34962 4 4, sub 34962 16 8]", vertexArray.calls.toString());
+		// Nothing dirty, nothing uploaded
+		vertexArray.calls.clear();
+		vertexArray.update();
+		Assert.assertTrue(vertexArray.calls.isEmpty());
+		// Growing the data reallocates the buffer
+		data.getAttribute(0).setData(new TFloatArrayList(new float[16]));
+		vertexArray.update();
+		Assert.assertEquals("[data 34962 64]", vertexArray.calls.toString());
+	}
+
+	@Test
+	public void testInterleavedUpdate() {
+		final VertexData data = createData(8);
+		final RecordingVertexArray vertexArray = new RecordingVertexArray();
+		vertexArray.setData(data);
+		vertexArray.setLayoutMode(LayoutMode.INTERLEAVED);
+		vertexArray.setUsageHint(UsageHint.DYNAMIC);
+		vertexArray.create();
+		// Bytes 5 to 9 touch vertices 1 and 2, which are 4 bytes each, and merge with vertex 3
+		vertexArray.markAttributeDirty(0, 5, 9);
+		vertexArray.markAttributeDirty(0, 12, 16);
+		vertexArray.update();
+		Assert.assertEquals("[sub 34962 4 12]", vertexArray.calls.toString());
+	}
+
+	@Test
+	public void testStreamUpdate() {
+		final VertexData data = createData(8);
+		final RecordingVertexArray vertexArray = new RecordingVertexArray();
+		vertexArray.setData(data);
+		vertexArray.setUsageHint(UsageHint.STREAM);
+		vertexArray.create();
+		vertexArray.markAttributeDirty(0, 0, 4);
+		vertexArray.update();
+		// Everything is orphaned and uploaded again
+		Assert.assertEquals("[data 34963 3, data 34962 32]", vertexArray.calls.toString());
+	}
+
+	@Test
+	public void testIndicesWidening() {
+		final VertexData data = createData(8);
+		final RecordingVertexArray vertexArray = new RecordingVertexArray();
+		vertexArray.setData(data);
+		vertexArray.setUsageHint(UsageHint.DYNAMIC);
+		vertexArray.create();
+		Assert.assertEquals(DataType.UNSIGNED_BYTE, vertexArray.getIndicesType());
+		data.getIndices().set(0, 1000);
+		vertexArray.markIndicesDirty(0, 1);
+		vertexArray.update();
+		Assert.assertEquals(DataType.UNSIGNED_SHORT, vertexArray.getIndicesType());
+		Assert.assertEquals("[data 34963 6]", vertexArray.calls.toString());
+	}
+
+	@Test
+	public void testBounds() {
+		final VertexData data = new VertexData();
+		final VertexAttribute positions = new VertexAttribute("positions", DataType.FLOAT, 3);
+		positions.setData(new TFloatArrayList(new float[]{0, 0, 0, 1, 0, 0, 0, 1, 0}));
+		data.addAttribute(0, positions);
+		final VertexAttribute colors = new VertexAttribute("colors", DataType.FLOAT, 3);
+		colors.setData(new TFloatArrayList(new float[9]));
+		data.addAttribute(1, colors);
+		data.getIndices().add(new int[]{0, 1, 2});
+		final RecordingVertexArray vertexArray = new RecordingVertexArray();
+		vertexArray.setData(data);
+		vertexArray.setUsageHint(UsageHint.DYNAMIC);
+		vertexArray.create();
+		final Bounds bounds = vertexArray.getBounds();
+		Assert.assertEquals(1, bounds.getMaxX(), 0);
+		// Only the other attribute and the indices changed, the bounds are kept
+		vertexArray.markAttributeDirty(1);
+		vertexArray.markIndicesDirty();
+		vertexArray.update();
+		Assert.assertSame(bounds, vertexArray.getBounds());
+		// The positions changed
+		positions.getWritableData().putFloat(0, 5);
+		vertexArray.markAttributeDirty(0, 0, 4);
+		vertexArray.update();
+		Assert.assertEquals(5, vertexArray.getBounds().getMaxX(), 0);
+		// Set bounds aren't replaced by computed ones
+		final Bounds explicit = new Bounds(new Vector3f(-10, -10, -10), new Vector3f(10, 10, 10));
+		vertexArray.setBounds(explicit);
+		vertexArray.markAttributeDirty(0);
+		vertexArray.update();
+		Assert.assertSame(explicit, vertexArray.getBounds());
+		vertexArray.resetBounds();
+		Assert.assertEquals(5, vertexArray.getBounds().getMaxX(), 0);
+	}
+
+	@Test(expected = IllegalStateException.class)
+	public void testStaticUpdate() {
+		final RecordingVertexArray vertexArray = new RecordingVertexArray();
+		vertexArray.setData(createData(8));
+		vertexArray.create();
+		vertexArray.update();
+	}
+
+	private static VertexData createData(int floatCount) {
+		final VertexData data = new VertexData();
+		final VertexAttribute attribute = new VertexAttribute("values", DataType.FLOAT, 1);
+		attribute.setData(new TFloatArrayList(new float[floatCount]));
+		data.addAttribute(0, attribute);
+		data.getIndices().add(new int[]{0, 1, 2});
+		return data;
+	}
+
+	private static class RecordingVertexArray extends VertexArray {
+		private final List<String> calls = new ArrayList<>();
+
+		@Override
+		public void create() {
+			indicesType = vertexData.getIndicesType();
+			indicesCountCache = vertexData.getIndicesCount();
+			resetIndicesCountAndOffset();
+			attributeCount = vertexData.getAttributeCount();
+			attributeBufferIDs = new int[layoutMode == LayoutMode.INTERLEAVED ? 1 : attributeCount];
+			super.create();
+		}
+
+		@Override
+		public void draw() {
+		}
+
+		@Override
+		protected void bindBuffer(int target, int bufferID) {
+		}
+
+		@Override
+		protected void bufferData(int target, ByteBuffer data, int usage) {
+			calls.add("data " + target + " " + data.remaining());
+		}
+
+		@Override
+		protected void bufferSubData(int target, int offset, ByteBuffer data) {
+			final int byteSize = target == ELEMENT_ARRAY_BUFFER ? getIndicesType().getByteSize() : 1;
+			calls.add("sub " + target + " " + offset / byteSize + " " + data.remaining() / byteSize);
+		}
+
+		@Override
+		public GLVersion getGLVersion() {
+			return GLVersion.GL30;
+		}
+	}
+}
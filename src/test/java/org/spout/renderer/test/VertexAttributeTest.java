@@ -0,0 +1,168 @@
+/*
+ * This file is part of Caustic.
+ *
+ * Copyright (c) 2013 Spout LLC <http://www.spout.org/>
+ * Caustic is licensed under the Spout License Version 1.
+ *
+ * Caustic is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the Free
+ * Software Foundation, either version 3 of the License, or (at your option)
+ * any later version.
+ *
+ * In addition, 180 days after any changes are published, you can use the
+ * software, incorporating those changes, under the terms of the MIT license,
+ * as described in the Spout License Version 1.
+ *
+ * Caustic is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE.  See the GNU Lesser General Public License for
+ * more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License,
+ * the MIT license and the Spout License Version 1 along with this program.
+ * If not, see <http://www.gnu.org/licenses/> for the GNU Lesser General Public
+ * License and see <http://spout.in/licensev1> for the full license, including
+ * the MIT license.
+ */
+package org.spout.renderer.test;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import org.spout.renderer.data.VertexAttribute;
+import org.spout.renderer.data.VertexAttribute.DataType;
+import org.spout.renderer.data.VertexData;
+
+public class VertexAttributeTest {
+	private static final int SIZE = 1 << 20;
+
+	@Test
+	public void testGetDataDoesNotCopy() {
+		final ByteBuffer buffer = createBuffer();
+		final VertexAttribute attribute = new VertexAttribute("positions", DataType.FLOAT, 3);
+		attribute.transferData(buffer);
+		for (int i = 0; i < 10; i++) {
+			final ByteBuffer data = attribute.getData();
+			Assert.assertTrue(data.isReadOnly());
+			Assert.assertEquals(0, data.position());
+			Assert.assertEquals(SIZE, data.remaining());
+			Assert.assertEquals(ByteOrder.nativeOrder(), data.order());
+			Assert.assertEquals(3, data.getFloat(12), 0);
+		}
+		// The views share the storage of the transferred buffer
+		buffer.putFloat(0, -5);
+		Assert.assertEquals(-5, attribute.getData().getFloat(0), 0);
+	}
+
+	@Test
+	public void testSetDataCopiesOnce() {
+		final ByteBuffer buffer = createBuffer();
+		final VertexAttribute attribute = new VertexAttribute("positions", DataType.FLOAT, 3);
+		attribute.setData(buffer);
+		// The attribute has its own copy
+		buffer.putFloat(0, -1);
+		Assert.assertEquals(0, attribute.getData().getFloat(0), 0);
+		// Which is written in place, as it isn't shared
+		final ByteBuffer writable = attribute.getWritableData();
+		writable.putFloat(0, 42);
+		attribute.getWritableData().putFloat(4, 43);
+		Assert.assertEquals(43, writable.getFloat(4), 0);
+		Assert.assertEquals(42, attribute.getData().getFloat(0), 0);
+	}
+
+	@Test
+	public void testTransferDataDoesNotCopy() {
+		final ByteBuffer buffer = createBuffer();
+		final VertexAttribute attribute = new VertexAttribute("positions", DataType.FLOAT, 3);
+		attribute.transferData(buffer);
+		Assert.assertEquals(SIZE, attribute.getData().remaining());
+		Assert.assertEquals(3, attribute.getData().getFloat(12), 0);
+		// Writes to the attribute go to the transferred buffer
+		attribute.getWritableData().putFloat(0, 42);
+		Assert.assertEquals(42, buffer.getFloat(0), 0);
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testTransferDataRequiresDirect() {
+		new VertexAttribute("positions", DataType.FLOAT, 3).transferData(ByteBuffer.allocate(16));
+	}
+
+	@Test
+	public void testCloneCopiesOnWrite() {
+		final ByteBuffer buffer = createBuffer();
+		final VertexAttribute attribute = new VertexAttribute("positions", DataType.FLOAT, 3);
+		attribute.transferData(buffer);
+		final VertexAttribute clone = attribute.clone();
+		Assert.assertTrue(attribute.isDataShared());
+		Assert.assertTrue(clone.isDataShared());
+		// The clone shares the storage
+		buffer.putFloat(8, -5);
+		Assert.assertEquals(-5, clone.getData().getFloat(8), 0);
+		// Writing to the clone copies the data once
+		final ByteBuffer writable = clone.getWritableData();
+		writable.putFloat(0, 42);
+		clone.getWritableData().putFloat(4, 43);
+		Assert.assertEquals(43, writable.getFloat(4), 0);
+		Assert.assertFalse(attribute.isDataShared());
+		Assert.assertFalse(clone.isDataShared());
+		Assert.assertEquals(42, clone.getData().getFloat(0), 0);
+		Assert.assertEquals(43, clone.getData().getFloat(4), 0);
+		Assert.assertEquals(0, attribute.getData().getFloat(0), 0);
+		Assert.assertEquals(1, attribute.getData().getFloat(4), 0);
+		Assert.assertEquals(0, buffer.getFloat(0), 0);
+		// The original still uses the transferred buffer
+		attribute.getWritableData().putFloat(0, 7);
+		Assert.assertEquals(7, buffer.getFloat(0), 0);
+		Assert.assertEquals(42, clone.getData().getFloat(0), 0);
+	}
+
+	@Test
+	public void testClearedCloneReleasesData() {
+		final ByteBuffer buffer = createBuffer();
+		final VertexAttribute attribute = new VertexAttribute("positions", DataType.FLOAT, 3);
+		attribute.transferData(buffer);
+		final VertexAttribute clone = attribute.clone();
+		clone.clearData();
+		Assert.assertFalse(attribute.isDataShared());
+		// Not copied anymore
+		attribute.getWritableData().putFloat(0, 42);
+		Assert.assertEquals(42, buffer.getFloat(0), 0);
+	}
+
+	@Test
+	public void testVertexDataCopyDoesNotCopyAttributes() {
+		final ByteBuffer buffer = createBuffer();
+		final VertexAttribute attribute = new VertexAttribute("positions", DataType.FLOAT, 3);
+		attribute.transferData(buffer);
+		final VertexData data = new VertexData();
+		data.addAttribute(0, attribute);
+		data.getIndices().add(new int[]{0, 1, 2});
+		final VertexData copy = new VertexData();
+		copy.copy(data);
+		Assert.assertEquals(SIZE, copy.getAttributeBuffer(0).remaining());
+		Assert.assertEquals(3, copy.getIndicesCount());
+		// The copy shares the storage
+		buffer.putFloat(0, -5);
+		Assert.assertEquals(-5, copy.getAttributeBuffer(0).getFloat(0), 0);
+	}
+
+	@Test(expected = IllegalStateException.class)
+	public void testClearData() {
+		final VertexAttribute attribute = new VertexAttribute("positions", DataType.FLOAT, 3);
+		attribute.transferData(createBuffer());
+		attribute.clearData();
+		attribute.getData();
+	}
+
+	private static ByteBuffer createBuffer() {
+		final ByteBuffer buffer = ByteBuffer.allocateDirect(SIZE).order(ByteOrder.nativeOrder());
+		for (int i = 0; i < SIZE / 4; i++) {
+			buffer.putFloat(i);
+		}
+		buffer.flip();
+		return buffer;
+	}
+}
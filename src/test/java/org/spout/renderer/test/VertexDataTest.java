@@ -26,6 +26,7 @@
  */
 package org.spout.renderer.test;
 
+import java.nio.ByteBuffer;
 import java.util.Arrays;
 import java.util.HashSet;
 import java.util.Set;
@@ -38,6 +39,7 @@ import org.spout.renderer.data.VertexAttribute;
 import org.spout.renderer.data.VertexAttribute.DataType;
 import org.spout.renderer.data.VertexAttribute.UploadMode;
 import org.spout.renderer.data.VertexData;
+import org.spout.renderer.util.CausticUtil;
 
 public class VertexDataTest {
 	@Test
@@ -195,4 +197,77 @@ public class VertexDataTest {
 		count = vertexData.getAttributeCount();
 		Assert.assertEquals(0, count);
 	}
+
+	@Test
+	public void testIndicesType() {
+		final VertexData vertexData = new VertexData();
+		Assert.assertEquals(DataType.UNSIGNED_BYTE, vertexData.getIndicesType());
+		vertexData.getIndices().add(new int[]{0, 1, 255});
+		Assert.assertEquals(DataType.UNSIGNED_BYTE, vertexData.getIndicesType());
+		vertexData.getIndices().add(256);
+		Assert.assertEquals(DataType.UNSIGNED_SHORT, vertexData.getIndicesType());
+		vertexData.getIndices().add(65535);
+		Assert.assertEquals(DataType.UNSIGNED_SHORT, vertexData.getIndicesType());
+		vertexData.getIndices().add(65536);
+		Assert.assertEquals(DataType.UNSIGNED_INT, vertexData.getIndicesType());
+	}
+
+	@Test
+	public void testIndicesBuffer() {
+		final VertexData vertexData = new VertexData();
+		final TIntList indices = vertexData.getIndices();
+		indices.add(new int[]{0, 200, 17, 255});
+		ByteBuffer buffer = vertexData.getIndicesBuffer();
+		Assert.assertEquals(4, buffer.remaining());
+		Assert.assertEquals(200, buffer.get(1) & 0xff);
+		Assert.assertEquals(255, buffer.get(3) & 0xff);
+		CausticUtil.getBufferPool().release(buffer);
+		indices.add(40000);
+		buffer = vertexData.getIndicesBuffer();
+		Assert.assertEquals(10, buffer.remaining());
+		Assert.assertEquals(17, buffer.getShort(4) & 0xffff);
+		Assert.assertEquals(40000, buffer.getShort(8) & 0xffff);
+		CausticUtil.getBufferPool().release(buffer);
+		indices.add(70000);
+		buffer = vertexData.getIndicesBuffer();
+		Assert.assertEquals(24, buffer.remaining());
+		Assert.assertEquals(40000, buffer.getInt(16));
+		Assert.assertEquals(70000, buffer.getInt(20));
+		CausticUtil.getBufferPool().release(buffer);
+		// A wider type than needed can still be requested
+		buffer = vertexData.getIndicesBuffer(DataType.UNSIGNED_INT);
+		Assert.assertEquals(200, buffer.getInt(4));
+		CausticUtil.getBufferPool().release(buffer);
+	}
+
+	@Test
+	public void testIndicesBufferRange() {
+		final VertexData vertexData = new VertexData();
+		vertexData.getIndices().add(new int[]{0, 1, 2, 300, 4, 5});
+		final ByteBuffer buffer = vertexData.getIndicesBuffer(DataType.UNSIGNED_SHORT, 2, 3);
+		Assert.assertEquals(6, buffer.remaining());
+		Assert.assertEquals(2, buffer.getShort(0));
+		Assert.assertEquals(300, buffer.getShort(2));
+		Assert.assertEquals(4, buffer.getShort(4));
+		CausticUtil.getBufferPool().release(buffer);
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testIndicesBufferRangeOutOfBounds() {
+		final VertexData vertexData = new VertexData();
+		vertexData.getIndices().add(new int[]{0, 1, 2});
+		vertexData.getIndicesBuffer(DataType.UNSIGNED_BYTE, 2, 2);
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testIndicesBufferTooNarrow() {
+		final VertexData vertexData = new VertexData();
+		vertexData.getIndices().add(new int[]{0, 1, 256});
+		vertexData.getIndicesBuffer(DataType.UNSIGNED_BYTE);
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testIndicesBufferInvalidType() {
+		new VertexData().getIndicesBuffer(DataType.FLOAT);
+	}
 }
@@ -0,0 +1,128 @@
+/*
+ * This file is part of Caustic.
+ *
+ * Copyright (c) 2013 Spout LLC <http://www.spout.org/>
+ * Caustic is licensed under the Spout License Version 1.
+ *
+ * Caustic is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the Free
+ * Software Foundation, either version 3 of the License, or (at your option)
+ * any later version.
+ *
+ * In addition, 180 days after any changes are published, you can use the
+ * software, incorporating those changes, under the terms of the MIT license,
+ * as described in the Spout License Version 1.
+ *
+ * Caustic is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE.  See the GNU Lesser General Public License for
+ * more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License,
+ * the MIT license and the Spout License Version 1 along with this program.
+ * If not, see <http://www.gnu.org/licenses/> for the GNU Lesser General Public
+ * License and see <http://spout.in/licensev1> for the full license, including
+ * the MIT license.
+ */
+package org.spout.renderer.test;
+
+import java.nio.ByteBuffer;
+
+import gnu.trove.list.TByteList;
+import gnu.trove.list.TFloatList;
+import gnu.trove.list.array.TByteArrayList;
+import gnu.trove.list.array.TFloatArrayList;
+import org.junit.Assert;
+import org.junit.Test;
+
+import org.spout.renderer.data.VertexAttribute;
+import org.spout.renderer.data.VertexAttribute.DataType;
+import org.spout.renderer.data.VertexAttribute.UploadMode;
+import org.spout.renderer.data.VertexData;
+import org.spout.renderer.data.VertexFormat;
+
+public class VertexFormatTest {
+	@Test
+	public void testLayout() {
+		final VertexData vertexData = new VertexData();
+		vertexData.addAttribute(0, new VertexAttribute("positions", DataType.FLOAT, 3));
+		vertexData.addAttribute(1, new VertexAttribute("normals", DataType.FLOAT, 3));
+		vertexData.addAttribute(2, new VertexAttribute("textureCoords", DataType.FLOAT, 2));
+		vertexData.addAttribute(3, new VertexAttribute("colors", DataType.UNSIGNED_BYTE, 4, UploadMode.TO_FLOAT_NORMALIZE));
+		final VertexFormat format = new VertexFormat(vertexData);
+		Assert.assertEquals(4, format.getAttributeCount());
+		Assert.assertEquals(0, format.getOffset(0));
+		Assert.assertEquals(12, format.getOffset(1));
+		Assert.assertEquals(24, format.getOffset(2));
+		Assert.assertEquals(32, format.getOffset(3));
+		Assert.assertEquals(36, format.getStride());
+		Assert.assertEquals(DataType.UNSIGNED_BYTE, format.getType(3));
+		Assert.assertEquals(UploadMode.TO_FLOAT_NORMALIZE, format.getUploadMode(3));
+	}
+
+	@Test
+	public void testAlignment() {
+		final VertexData vertexData = new VertexData();
+		vertexData.addAttribute(0, new VertexAttribute("flags", DataType.BYTE, 1));
+		vertexData.addAttribute(1, new VertexAttribute("positions", DataType.FLOAT, 3));
+		vertexData.addAttribute(2, new VertexAttribute("weights", DataType.SHORT, 3));
+		final VertexFormat format = new VertexFormat(vertexData);
+		Assert.assertEquals(0, format.getOffset(0));
+		Assert.assertEquals(4, format.getOffset(1));
+		Assert.assertEquals(16, format.getOffset(2));
+		Assert.assertEquals(24, format.getStride());
+	}
+
+	@Test
+	public void testInterleave() {
+		final VertexData vertexData = new VertexData();
+		final VertexAttribute positionsAttribute = new VertexAttribute("positions", DataType.FLOAT, 3);
+		final TFloatList positions = new TFloatArrayList(new float[]{0, 1, 2, 3, 4, 5, 6, 7, 8});
+		positionsAttribute.setData(positions);
+		vertexData.addAttribute(0, positionsAttribute);
+		final VertexAttribute colorsAttribute = new VertexAttribute("colors", DataType.UNSIGNED_BYTE, 3);
+		final TByteList colors = new TByteArrayList(new byte[]{10, 11, 12, 20, 21, 22, 30, 31, 32});
+		colorsAttribute.setData(colors);
+		vertexData.addAttribute(1, colorsAttribute);
+		final VertexFormat format = new VertexFormat(vertexData);
+		Assert.assertEquals(16, format.getStride());
+		Assert.assertEquals(3, format.getVertexCount(vertexData));
+		final ByteBuffer interleaved = format.interleave(vertexData);
+		Assert.assertEquals(0, interleaved.position());
+		Assert.assertEquals(3 * 16, interleaved.remaining());
+		for (int v = 0; v < 3; v++) {
+			final int vertex = v * format.getStride();
+			for (int c = 0; c < 3; c++) {
+				Assert.assertEquals(v * 3 + c, interleaved.getFloat(vertex + format.getOffset(0) + c * 4), 0);
+				Assert.assertEquals((v + 1) * 10 + c, interleaved.get(vertex + format.getOffset(1) + c));
+			}
+			// Padding is zeroed
+			Assert.assertEquals(0, interleaved.get(vertex + format.getOffset(1) + 3));
+		}
+	}
+
+	@Test
+	public void testInterleaveRange() {
+		final VertexData vertexData = new VertexData();
+		final VertexAttribute positionsAttribute = new VertexAttribute("positions", DataType.FLOAT, 2);
+		positionsAttribute.setData(new TFloatArrayList(new float[]{0, 1, 2, 3, 4, 5, 6, 7}));
+		vertexData.addAttribute(0, positionsAttribute);
+		final VertexFormat format = new VertexFormat(vertexData);
+		final ByteBuffer interleaved = format.interleave(vertexData, 1, 2);
+		Assert.assertEquals(2 * format.getStride(), interleaved.remaining());
+		Assert.assertEquals(2, interleaved.getFloat(0), 0);
+		Assert.assertEquals(5, interleaved.getFloat(format.getStride() + 4), 0);
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testMismatchedVertexCounts() {
+		final VertexData vertexData = new VertexData();
+		final VertexAttribute positionsAttribute = new VertexAttribute("positions", DataType.FLOAT, 3);
+		positionsAttribute.setData(new TFloatArrayList(new float[]{0, 1, 2, 3, 4, 5}));
+		vertexData.addAttribute(0, positionsAttribute);
+		final VertexAttribute textureCoordsAttribute = new VertexAttribute("textureCoords", DataType.FLOAT, 2);
+		textureCoordsAttribute.setData(new TFloatArrayList(new float[]{0, 1}));
+		vertexData.addAttribute(1, textureCoordsAttribute);
+		new VertexFormat(vertexData).interleave(vertexData);
+	}
+}
@@ -0,0 +1,238 @@
+/*
+ * This file is part of Caustic.
+ *
+ * Copyright (c) 2013 Spout LLC <http://www.spout.org/>
+ * Caustic is licensed under the Spout License Version 1.
+ *
+ * Caustic is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the Free
+ * Software Foundation, either version 3 of the License, or (at your option)
+ * any later version.
+ *
+ * In addition, 180 days after any changes are published, you can use the
+ * software, incorporating those changes, under the terms of the MIT license,
+ * as described in the Spout License Version 1.
+ *
+ * Caustic is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE.  See the GNU Lesser General Public License for
+ * more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License,
+ * the MIT license and the Spout License Version 1 along with this program.
+ * If not, see <http://www.gnu.org/licenses/> for the GNU Lesser General Public
+ * License and see <http://spout.in/licensev1> for the full license, including
+ * the MIT license.
+ */
+package org.spout.renderer.test;
+
+import java.nio.ByteBuffer;
+import java.util.Random;
+
+import gnu.trove.list.TFloatList;
+import gnu.trove.list.array.TFloatArrayList;
+import org.junit.Assert;
+import org.junit.Test;
+
+import org.spout.math.vector.Vector3f;
+import org.spout.math.vector.Vector4f;
+import org.spout.renderer.data.VertexAttribute;
+import org.spout.renderer.data.VertexAttribute.DataType;
+import org.spout.renderer.data.VertexAttribute.UploadMode;
+import org.spout.renderer.util.VertexQuantizer;
+import org.spout.renderer.util.VertexQuantizer.QuantizedPositions;
+
+public class VertexQuantizerTest {
+	private static final int COUNT = 10000;
+	private final Random random = new Random(42);
+
+	@Test
+	public void testHalfFloatConversion() {
+		Assert.assertEquals(0, VertexQuantizer.floatToHalf(0));
+		Assert.assertEquals((short) 0x3c00, VertexQuantizer.floatToHalf(1));
+		Assert.assertEquals((short) 0xc000, VertexQuantizer.floatToHalf(-2));
+		Assert.assertEquals((short) 0x7bff, VertexQuantizer.floatToHalf(65504));
+		Assert.assertEquals((short) 0x7c00, VertexQuantizer.floatToHalf(65520));
+		Assert.assertEquals((short) 0xfc00, VertexQuantizer.floatToHalf(Float.NEGATIVE_INFINITY));
+		Assert.assertTrue(Float.isNaN(VertexQuantizer.halfToFloat(VertexQuantizer.floatToHalf(Float.NaN))));
+		// Smallest sub-normal
+		Assert.assertEquals(1, VertexQuantizer.floatToHalf(5.9604645e-8f));
+		Assert.assertEquals(5.9604645e-8f, VertexQuantizer.halfToFloat((short) 1), 0);
+		// Ties round to even
+		Assert.assertEquals((short) 0x3c00, VertexQuantizer.floatToHalf(1 + 1 / 2048f));
+		Assert.assertEquals((short) 0x3c02, VertexQuantizer.floatToHalf(1 + 3 / 2048f));
+		// Every half float converts back to itself
+		for (int bits = 0; bits < 0x10000; bits++) {
+			if ((bits & 0x7c00) == 0x7c00 && (bits & 0x3ff) != 0) {
+				continue;
+			}
+			Assert.assertEquals((short) bits, VertexQuantizer.floatToHalf(VertexQuantizer.halfToFloat((short) bits)));
+		}
+	}
+
+	@Test
+	public void testHalfFloatAttribute() {
+		final TFloatList values = new TFloatArrayList();
+		for (int i = 0; i < COUNT * 3; i++) {
+			values.add((random.nextFloat() - 0.5f) * 2000);
+		}
+		final VertexAttribute attribute = createAttribute(3, values);
+		final VertexAttribute half = VertexQuantizer.toHalfFloat(attribute);
+		Assert.assertEquals(DataType.HALF_FLOAT, half.getType());
+		Assert.assertEquals(3, half.getSize());
+		final ByteBuffer data = half.getData();
+		Assert.assertEquals(values.size() * 2, data.remaining());
+		for (int i = 0; i < values.size(); i++) {
+			final float value = values.get(i);
+			// 11 bits of precision, so a relative error of at most 2^-11
+			Assert.assertEquals(value, VertexQuantizer.halfToFloat(data.getShort(i * 2)), Math.abs(value) / 2048);
+		}
+	}
+
+	@Test
+	public void testPositionQuantization() {
+		final TFloatList values = new TFloatArrayList();
+		final float[] extents = {100, 0.5f, 3000};
+		for (int i = 0; i < COUNT; i++) {
+			for (int c = 0; c < 3; c++) {
+				values.add(random.nextFloat() * extents[c] - 20);
+			}
+		}
+		final QuantizedPositions quantized = VertexQuantizer.quantizePositions(createAttribute(3, values));
+		final VertexAttribute attribute = quantized.getAttribute();
+		Assert.assertEquals(DataType.SHORT, attribute.getType());
+		Assert.assertEquals(UploadMode.TO_FLOAT_NORMALIZE, attribute.getUploadMode());
+		final ByteBuffer data = attribute.getData();
+		Assert.assertEquals(values.size() * 2, data.remaining());
+		for (int i = 0; i < COUNT; i++) {
+			final Vector4f normalized = new Vector4f(snorm16(data.getShort(i * 6)), snorm16(data.getShort(i * 6 + 2)), snorm16(data.getShort(i * 6 + 4)), 1);
+			final Vector4f position = quantized.getDequantizationMatrix().transform(normalized);
+			final float[] expected = {values.get(i * 3), values.get(i * 3 + 1), values.get(i * 3 + 2)};
+			final float[] actual = {position.getX(), position.getY(), position.getZ()};
+			for (int c = 0; c < 3; c++) {
+				// Half the step of the extent, with some room for float rounding
+				Assert.assertEquals(expected[c], actual[c], extents[c] / 65534 * 1.01f);
+			}
+		}
+	}
+
+	@Test
+	public void testFlatPositions() {
+		final QuantizedPositions quantized = VertexQuantizer.quantizePositions(createAttribute(2, new TFloatArrayList(new float[]{5, 1, 5, 3})));
+		final ByteBuffer data = quantized.getAttribute().getData();
+		final Vector4f first = quantized.getDequantizationMatrix().transform(new Vector4f(snorm16(data.getShort(0)), snorm16(data.getShort(2)), 0, 1));
+		Assert.assertEquals(5, first.getX(), 0);
+		Assert.assertEquals(1, first.getY(), 0.0001f);
+	}
+
+	@Test
+	public void testOctahedralNormals() {
+		final TFloatList values = new TFloatArrayList();
+		for (int i = 0; i < COUNT; i++) {
+			final Vector3f normal = new Vector3f(random.nextGaussian(), random.nextGaussian(), random.nextGaussian()).normalize();
+			values.add(new float[]{normal.getX(), normal.getY(), normal.getZ()});
+		}
+		// Axis aligned vectors are the edge cases of the folding
+		values.add(new float[]{0, 0, -1, 0, 0, 1, -1, 0, 0, 0, -1, 0});
+		final VertexAttribute attribute = createAttribute(3, values);
+		final VertexAttribute bytes = VertexQuantizer.encodeOctahedral(attribute, DataType.BYTE);
+		Assert.assertEquals(2, bytes.getSize());
+		Assert.assertEquals(UploadMode.TO_FLOAT_NORMALIZE, bytes.getUploadMode());
+		final VertexAttribute shorts = VertexQuantizer.encodeOctahedral(attribute, DataType.SHORT);
+		final ByteBuffer byteData = bytes.getData();
+		final ByteBuffer shortData = shorts.getData();
+		final int count = values.size() / 3;
+		Assert.assertEquals(count * 2, byteData.remaining());
+		Assert.assertEquals(count * 4, shortData.remaining());
+		float maxByteError = 0;
+		float maxShortError = 0;
+		for (int i = 0; i < count; i++) {
+			final Vector3f expected = new Vector3f(values.get(i * 3), values.get(i * 3 + 1), values.get(i * 3 + 2));
+			final Vector3f byteDecoded = VertexQuantizer.decodeOctahedral(snorm8(byteData.get(i * 2)), snorm8(byteData.get(i * 2 + 1)));
+			final Vector3f shortDecoded = VertexQuantizer.decodeOctahedral(snorm16(shortData.getShort(i * 4)), snorm16(shortData.getShort(i * 4 + 2)));
+			maxByteError = Math.max(maxByteError, angle(expected, byteDecoded));
+			maxShortError = Math.max(maxShortError, angle(expected, shortDecoded));
+		}
+		Assert.assertTrue("Byte error of " + maxByteError + " degrees", maxByteError < 1);
+		Assert.assertTrue("Short error of " + maxShortError + " degrees", maxShortError < 0.005f);
+	}
+
+	@Test
+	public void testOctahedralTangents() {
+		final VertexAttribute tangents = createAttribute(4, new TFloatArrayList(new float[]{1, 0, 0, 1, 0, 0, -1, -1}));
+		final VertexAttribute encoded = VertexQuantizer.encodeOctahedral(tangents, DataType.SHORT);
+		Assert.assertEquals(3, encoded.getSize());
+		final ByteBuffer data = encoded.getData();
+		Assert.assertEquals(12, data.remaining());
+		Assert.assertEquals(1, snorm16(data.getShort(4)), 0);
+		Assert.assertEquals(-1, snorm16(data.getShort(10)), 0);
+		final Vector3f second = VertexQuantizer.decodeOctahedral(snorm16(data.getShort(6)), snorm16(data.getShort(8)));
+		Assert.assertEquals(-1, second.getZ(), 0.0001f);
+	}
+
+	@Test
+	public void testTextureCoordQuantization() {
+		final TFloatList values = new TFloatArrayList();
+		for (int i = 0; i < COUNT * 2; i++) {
+			values.add(random.nextFloat());
+		}
+		values.add(new float[]{0, 1});
+		final VertexAttribute quantized = VertexQuantizer.quantizeTextureCoords(createAttribute(2, values));
+		Assert.assertEquals(DataType.UNSIGNED_SHORT, quantized.getType());
+		final ByteBuffer data = quantized.getData();
+		for (int i = 0; i < values.size(); i++) {
+			Assert.assertEquals(values.get(i), (data.getShort(i * 2) & 0xffff) / 65535f, 1 / 131070f + 1e-7f);
+		}
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testTextureCoordsOutOfRange() {
+		VertexQuantizer.quantizeTextureCoords(createAttribute(2, new TFloatArrayList(new float[]{0.5f, 1.5f})));
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testNonFloatAttribute() {
+		VertexQuantizer.toHalfFloat(new VertexAttribute("ints", DataType.INT, 1));
+	}
+
+	@Test
+	public void testMemorySaving() {
+		final int vertexCount = 1000;
+		final TFloatList positions = new TFloatArrayList();
+		final TFloatList normals = new TFloatArrayList();
+		final TFloatList textureCoords = new TFloatArrayList();
+		for (int i = 0; i < vertexCount; i++) {
+			positions.add(new float[]{random.nextFloat(), random.nextFloat(), random.nextFloat()});
+			normals.add(new float[]{0, 1, 0});
+			textureCoords.add(new float[]{random.nextFloat(), random.nextFloat()});
+		}
+		final int before = vertexCount * (3 + 3 + 2) * 4;
+		final int after = VertexQuantizer.quantizePositions(createAttribute(3, positions)).getAttribute().getData().remaining()
+				+ VertexQuantizer.encodeOctahedral(createAttribute(3, normals), DataType.SHORT).getData().remaining()
+				+ VertexQuantizer.quantizeTextureCoords(createAttribute(2, textureCoords)).getData().remaining();
+		Assert.assertTrue(after <= before / 2);
+	}
+
+	private static VertexAttribute createAttribute(int size, TFloatList values) {
+		final VertexAttribute attribute = new VertexAttribute("attribute", DataType.FLOAT, size);
+		attribute.setData(values);
+		return attribute;
+	}
+
+	private static float snorm16(short value) {
+		return Math.max(value / 32767f, -1);
+	}
+
+	private static float snorm8(byte value) {
+		return Math.max(value / 127f, -1);
+	}
+
+	// Computed in double precision with atan2, since acos of a float dot product is too imprecise for small angles
+	private static float angle(Vector3f a, Vector3f b) {
+		final double crossX = (double) a.getY() * b.getZ() - (double) a.getZ() * b.getY();
+		final double crossY = (double) a.getZ() * b.getX() - (double) a.getX() * b.getZ();
+		final double crossZ = (double) a.getX() * b.getY() - (double) a.getY() * b.getX();
+		final double dot = (double) a.getX() * b.getX() + (double) a.getY() * b.getY() + (double) a.getZ() * b.getZ();
+		return (float) Math.toDegrees(Math.atan2(Math.sqrt(crossX * crossX + crossY * crossY + crossZ * crossZ), dot));
+	}
+}
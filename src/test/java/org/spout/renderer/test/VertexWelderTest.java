@@ -0,0 +1,153 @@
+/*
+ * This file is part of Caustic.
+ *
+ * Copyright (c) 2013 Spout LLC <http://www.spout.org/>
+ * Caustic is licensed under the Spout License Version 1.
+ *
+ * Caustic is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the Free
+ * Software Foundation, either version 3 of the License, or (at your option)
+ * any later version.
+ *
+ * In addition, 180 days after any changes are published, you can use the
+ * software, incorporating those changes, under the terms of the MIT license,
+ * as described in the Spout License Version 1.
+ *
+ * Caustic is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE.  See the GNU Lesser General Public License for
+ * more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License,
+ * the MIT license and the Spout License Version 1 along with this program.
+ * If not, see <http://www.gnu.org/licenses/> for the GNU Lesser General Public
+ * License and see <http://spout.in/licensev1> for the full license, including
+ * the MIT license.
+ */
+package org.spout.renderer.test;
+
+import java.nio.FloatBuffer;
+import java.util.Random;
+
+import gnu.trove.list.TFloatList;
+import gnu.trove.list.TIntList;
+import gnu.trove.list.array.TFloatArrayList;
+import gnu.trove.map.TIntFloatMap;
+import gnu.trove.map.hash.TIntFloatHashMap;
+import org.junit.Assert;
+import org.junit.Test;
+
+import org.spout.renderer.data.VertexAttribute;
+import org.spout.renderer.data.VertexAttribute.DataType;
+import org.spout.renderer.data.VertexData;
+import org.spout.renderer.util.VertexWelder;
+
+public class VertexWelderTest {
+	private static final int GRID_SIZE = 100;
+	private static final int GRID_VERTICES = (GRID_SIZE + 1) * (GRID_SIZE + 1);
+
+	@Test
+	public void testExactWeld() {
+		final VertexData data = createTriangleSoup(0, false);
+		final TFloatList before = getTrianglePositions(data);
+		Assert.assertEquals(GRID_SIZE * GRID_SIZE * 6, data.getAttribute(0).getData().remaining() / 12);
+		Assert.assertEquals(GRID_VERTICES, VertexWelder.weld(data));
+		Assert.assertEquals(GRID_VERTICES * 12, data.getAttribute(0).getData().remaining());
+		Assert.assertEquals(GRID_VERTICES * 8, data.getAttribute(1).getData().remaining());
+		Assert.assertEquals(before, getTrianglePositions(data));
+		// Welding again changes nothing
+		Assert.assertEquals(GRID_VERTICES, VertexWelder.weld(data));
+	}
+
+	@Test
+	public void testEpsilonWeld() {
+		final float noise = 1e-3f;
+		final VertexData data = createTriangleSoup(noise, false);
+		final TFloatList before = getTrianglePositions(data);
+		// Without an epsilon the noise prevents most of the welding
+		Assert.assertTrue(VertexWelder.weld(data) > GRID_VERTICES * 2);
+		final float epsilon = 0.01f;
+		final TIntFloatMap epsilons = new TIntFloatHashMap();
+		epsilons.put(0, epsilon);
+		// The grid positions are a multiple of the epsilon, so the noise never crosses a rounding boundary
+		Assert.assertEquals(GRID_VERTICES, VertexWelder.weld(data, epsilons));
+		final TFloatList after = getTrianglePositions(data);
+		for (int i = 0; i < before.size(); i++) {
+			Assert.assertEquals(before.get(i), after.get(i), epsilon);
+		}
+	}
+
+	@Test
+	public void testAttributesPreventWeld() {
+		// Each quad has its own texture coordinates, so only the vertices shared inside a quad can be merged
+		final VertexData data = createTriangleSoup(0, true);
+		Assert.assertEquals(GRID_SIZE * GRID_SIZE * 4, VertexWelder.weld(data));
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testMissingVertex() {
+		final VertexData data = createTriangleSoup(0, false);
+		data.getIndices().add(GRID_SIZE * GRID_SIZE * 6);
+		VertexWelder.weld(data);
+	}
+
+	@Test
+	public void testLargeMesh() {
+		// One million vertices, each used twice
+		final int count = 500000;
+		final TFloatList positions = new TFloatArrayList(count * 6);
+		for (int copy = 0; copy < 2; copy++) {
+			for (int i = 0; i < count; i++) {
+				positions.add(new float[]{i, i * 2, i * 3});
+			}
+		}
+		final VertexData data = new VertexData();
+		final VertexAttribute attribute = new VertexAttribute("positions", DataType.FLOAT, 3);
+		attribute.setData(positions);
+		data.addAttribute(0, attribute);
+		Assert.assertEquals(count, VertexWelder.weld(data));
+	}
+
+	private static VertexData createTriangleSoup(float noise, boolean perQuadTextureCoords) {
+		final Random random = new Random(42);
+		final TFloatList positions = new TFloatArrayList();
+		final TFloatList textureCoords = new TFloatArrayList();
+		final VertexData data = new VertexData();
+		final TIntList indices = data.getIndices();
+		final int[][] corners = {{0, 0}, {1, 0}, {0, 1}, {1, 0}, {1, 1}, {0, 1}};
+		for (int y = 0; y < GRID_SIZE; y++) {
+			for (int x = 0; x < GRID_SIZE; x++) {
+				for (int c = 0; c < corners.length; c++) {
+					final int cornerX = x + corners[c][0];
+					final int cornerY = y + corners[c][1];
+					positions.add(new float[]{cornerX / 10f + (random.nextFloat() - 0.5f) * noise, cornerY / 10f, 0});
+					if (perQuadTextureCoords) {
+						textureCoords.add(new float[]{corners[c][0], corners[c][1]});
+					} else {
+						textureCoords.add(new float[]{cornerX / (float) GRID_SIZE, cornerY / (float) GRID_SIZE});
+					}
+					indices.add(indices.size());
+				}
+			}
+		}
+		final VertexAttribute positionsAttribute = new VertexAttribute("positions", DataType.FLOAT, 3);
+		positionsAttribute.setData(positions);
+		data.addAttribute(0, positionsAttribute);
+		final VertexAttribute textureCoordsAttribute = new VertexAttribute("textureCoords", DataType.FLOAT, 2);
+		textureCoordsAttribute.setData(textureCoords);
+		data.addAttribute(1, textureCoordsAttribute);
+		return data;
+	}
+
+	private static TFloatList getTrianglePositions(VertexData data) {
+		final FloatBuffer positions = data.getAttribute(0).getData().asFloatBuffer();
+		final TIntList indices = data.getIndices();
+		final TFloatList list = new TFloatArrayList();
+		for (int i = 0; i < indices.size(); i++) {
+			for (int c = 0; c < 3; c++) {
+				list.add(positions.get(indices.get(i) * 3 + c));
+			}
+		}
+		return list;
+	}
+}